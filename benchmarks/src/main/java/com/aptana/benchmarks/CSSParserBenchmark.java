@@ -0,0 +1,58 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aptana.css.core.parsing.CSSParser;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+
+/**
+ * Full parses of real world style sheets with {@link CSSParser}.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class CSSParserBenchmark
+{
+	@Param({ "yui.css", "wp-admin.css", "github-formatted.css", "github-minimized.css" })
+	public String fixture;
+
+	private String source;
+	private CSSParser parser;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		source = Fixtures.read("css", fixture);
+		parser = new CSSParser();
+	}
+
+	@Benchmark
+	public ParseResult parse() throws Exception
+	{
+		return parser.parse(new ParseState(source));
+	}
+}
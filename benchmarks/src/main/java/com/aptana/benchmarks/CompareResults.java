@@ -0,0 +1,220 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.aptana.core.util.IOUtil;
+
+/**
+ * Compares two JMH result files written with <code>-rf json</code> and fails when a benchmark got slower:
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.aptana.benchmarks.CompareResults baseline.json current.json [-threshold 0.1]
+ * </pre>
+ *
+ * A benchmark regressed when its score is worse than the baseline by more than the threshold (10% by default) and by
+ * more than the two scores' error margins combined, so noise alone doesn't fail a build. Benchmarks that only exist in
+ * one of the files are reported but don't fail. The exit code is 1 when something regressed, 2 on bad input.
+ */
+@SuppressWarnings("nls")
+public class CompareResults
+{
+	private static final double DEFAULT_THRESHOLD = 0.1;
+
+	/**
+	 * One benchmark's primary score.
+	 */
+	static class Score
+	{
+		final double value;
+		final double error;
+		final String unit;
+		final boolean higherIsBetter;
+
+		Score(double value, double error, String unit, boolean higherIsBetter)
+		{
+			this.value = value;
+			this.error = error;
+			this.unit = unit;
+			this.higherIsBetter = higherIsBetter;
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		String baseline = null;
+		String current = null;
+		double threshold = DEFAULT_THRESHOLD;
+		for (int i = 0; i < args.length; i++)
+		{
+			if ("-threshold".equals(args[i]) && i + 1 < args.length)
+			{
+				threshold = Double.parseDouble(args[++i]);
+			}
+			else if (baseline == null)
+			{
+				baseline = args[i];
+			}
+			else
+			{
+				current = args[i];
+			}
+		}
+		if (baseline == null || current == null)
+		{
+			System.err.println("Usage: CompareResults <baseline.json> <current.json> [-threshold <fraction>]");
+			System.exit(2);
+		}
+
+		try
+		{
+			int regressions = compare(read(baseline), read(current), threshold);
+			System.exit(regressions > 0 ? 1 : 0);
+		}
+		catch (Exception e)
+		{
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Prints a line per benchmark and returns the number of regressions.
+	 *
+	 * @param baseline
+	 * @param current
+	 * @param threshold
+	 * @return
+	 */
+	static int compare(Map<String, Score> baseline, Map<String, Score> current, double threshold)
+	{
+		int regressions = 0;
+		for (Map.Entry<String, Score> entry : current.entrySet())
+		{
+			String name = entry.getKey();
+			Score now = entry.getValue();
+			Score before = baseline.get(name);
+			if (before == null)
+			{
+				System.out.println(MessageFormat.format("NEW        {0}: {1}", name, format(now)));
+				continue;
+			}
+
+			// positive when it got worse, relative to the baseline
+			double change = (now.value - before.value) / before.value;
+			if (now.higherIsBetter)
+			{
+				change = -change;
+			}
+			double margin = Math.abs(now.value - before.value) - (now.error + before.error);
+
+			String status;
+			if (change > threshold && margin > 0)
+			{
+				status = "REGRESSION";
+				regressions++;
+			}
+			else if (change < -threshold && margin > 0)
+			{
+				status = "IMPROVED  ";
+			}
+			else
+			{
+				status = "OK        ";
+			}
+			System.out.println(MessageFormat.format("{0} {1}: {2} -> {3} ({4,number,+0.0%;-0.0%})", status, name,
+					format(before), format(now), change));
+		}
+		for (String name : baseline.keySet())
+		{
+			if (!current.containsKey(name))
+			{
+				System.out.println(MessageFormat.format("MISSING    {0}", name));
+			}
+		}
+		System.out.println(MessageFormat.format("{0} regression(s) beyond {1,number,0.#%}", regressions, threshold));
+		return regressions;
+	}
+
+	/**
+	 * Reads the primary scores of a JMH JSON result file, keyed by benchmark name, mode and parameters.
+	 *
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	static Map<String, Score> read(String fileName) throws IOException, ParseException
+	{
+		InputStream stream = new FileInputStream(fileName);
+		Object json;
+		try
+		{
+			json = new JSONParser().parse(new InputStreamReader(stream, IOUtil.UTF_8));
+		}
+		finally
+		{
+			stream.close();
+		}
+		if (!(json instanceof JSONArray))
+		{
+			throw new IOException(fileName + " is not a JMH JSON result file");
+		}
+
+		Map<String, Score> scores = new TreeMap<String, Score>();
+		for (Object element : (JSONArray) json)
+		{
+			JSONObject result = (JSONObject) element;
+			String mode = (String) result.get("mode");
+			StringBuilder name = new StringBuilder((String) result.get("benchmark"));
+			name.append(" [").append(mode);
+			JSONObject params = (JSONObject) result.get("params");
+			if (params != null)
+			{
+				for (Object param : new TreeMap<Object, Object>(params).entrySet())
+				{
+					name.append(", ").append(param);
+				}
+			}
+			name.append(']');
+
+			JSONObject metric = (JSONObject) result.get("primaryMetric");
+			scores.put(name.toString(), new Score(toDouble(metric.get("score")), toDouble(metric.get("scoreError")),
+					(String) metric.get("scoreUnit"), "thrpt".equals(mode)));
+		}
+		return scores;
+	}
+
+	private static double toDouble(Object value)
+	{
+		if (value instanceof Number)
+		{
+			return ((Number) value).doubleValue();
+		}
+		// JMH writes "NaN" when there were too few iterations to compute an error
+		return 0;
+	}
+
+	private static String format(Score score)
+	{
+		return MessageFormat.format("{0,number,0.###} +/- {1,number,0.###} {2}", score.value, score.error,
+				score.unit);
+	}
+}
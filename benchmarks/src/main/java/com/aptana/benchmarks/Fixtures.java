@@ -0,0 +1,95 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.aptana.core.util.IOUtil;
+
+/**
+ * The source corpora the benchmarks run on. They're copied into the jar from the performance directories of the test
+ * plugins, and from the bundled themes for scope selectors.
+ */
+public class Fixtures
+{
+	private static final String ROOT = "/fixtures/"; //$NON-NLS-1$
+
+	private Fixtures()
+	{
+	}
+
+	/**
+	 * Reads a fixture, e.g. <code>read("js", "tiny_mce.js")</code>.
+	 *
+	 * @param kind
+	 * @param name
+	 * @return
+	 * @throws IOException
+	 */
+	public static String read(String kind, String name) throws IOException
+	{
+		InputStream stream = open(kind, name);
+		try
+		{
+			return IOUtil.read(stream, IOUtil.UTF_8);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/**
+	 * Returns the scope selectors the given theme colors tokens with, i.e. the part of each rule after the '^'.
+	 *
+	 * @param theme
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<String> readThemeSelectors(String theme) throws IOException
+	{
+		Properties properties = new Properties();
+		InputStream stream = open("themes", theme + ".properties"); //$NON-NLS-1$ //$NON-NLS-2$
+		try
+		{
+			properties.load(new InputStreamReader(stream, IOUtil.UTF_8));
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		List<String> selectors = new ArrayList<String>();
+		for (Object value : properties.values())
+		{
+			String rule = (String) value;
+			int index = rule.lastIndexOf('^');
+			if (index != -1)
+			{
+				selectors.add(rule.substring(index + 1));
+			}
+		}
+		return selectors;
+	}
+
+	private static InputStream open(String kind, String name) throws IOException
+	{
+		String path = ROOT + kind + '/' + name;
+		InputStream stream = Fixtures.class.getResourceAsStream(path);
+		if (stream == null)
+		{
+			throw new IOException("Missing fixture " + path); //$NON-NLS-1$
+		}
+		return stream;
+	}
+}
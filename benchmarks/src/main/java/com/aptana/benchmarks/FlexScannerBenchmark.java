@@ -0,0 +1,94 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import beaver.Symbol;
+
+import com.aptana.css.core.parsing.CSSFlexScanner;
+import com.aptana.js.core.parsing.JSFlexScanner;
+
+/**
+ * Tokenizes whole files with the JFlex generated scanners that feed the parsers. The fixture names the language and
+ * the file, e.g. "js/tiny_mce.js".
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FlexScannerBenchmark
+{
+	@Param({ "js/jquery-1.6.4.js", "js/dojo.js.uncompressed.js", "js/three.min.js", "css/github-formatted.css",
+			"css/wp-admin.css" })
+	public String fixture;
+
+	private String source;
+	private JSFlexScanner jsScanner;
+	private CSSFlexScanner cssScanner;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		int index = fixture.indexOf('/');
+		String kind = fixture.substring(0, index);
+		source = Fixtures.read(kind, fixture.substring(index + 1));
+		if ("js".equals(kind))
+		{
+			jsScanner = new JSFlexScanner();
+			jsScanner.setCollectComments(false);
+		}
+		else
+		{
+			cssScanner = new CSSFlexScanner();
+			cssScanner.setCollectComments(false);
+		}
+	}
+
+	@Benchmark
+	public int scan() throws Exception
+	{
+		int count = 0;
+		if (jsScanner != null)
+		{
+			jsScanner.setSource(source);
+			Symbol symbol = jsScanner.nextToken();
+			while (symbol != null && symbol.getId() != 0)
+			{
+				count++;
+				symbol = jsScanner.nextToken();
+			}
+		}
+		else
+		{
+			cssScanner.setSource(source);
+			Symbol symbol = cssScanner.nextToken();
+			while (symbol != null && symbol.getId() != 0)
+			{
+				count++;
+				symbol = cssScanner.nextToken();
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aptana.editor.html.parsing.HTMLParseState;
+import com.aptana.editor.html.parsing.HTMLParser;
+import com.aptana.parsing.ParseResult;
+
+/**
+ * Full parses of HTML pages with {@link HTMLParser}, including the style and script blocks it hands to the CSS and JS
+ * parsers.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class HTMLParserBenchmark
+{
+	@Param({ "amazon.html", "reddit.html", "reddit-no-css-no-js.html" })
+	public String fixture;
+
+	private String source;
+	private Parsers parsers;
+	private HTMLParser parser;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		source = Fixtures.read("html", fixture);
+		parsers = new Parsers();
+		parsers.install();
+		parser = new HTMLParser();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		parsers.uninstall();
+	}
+
+	@Benchmark
+	public ParseResult parse() throws Exception
+	{
+		return parser.parse(new HTMLParseState(source));
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aptana.editor.html.parsing.HTMLParseState;
+import com.aptana.editor.html.parsing.HTMLParser;
+import com.aptana.parsing.ParseEdit;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * {@link HTMLParser} reparses after a markup edit, which recycle the style and script blocks of the previous tree,
+ * against a full parse of the edited page, which parses the blocks in parallel. An edit at the end of the page leaves
+ * the blocks in place, so they are shared with the previous tree; an edit at the start moves all of them, so they are
+ * copied to their new offsets.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class HTMLReparseBenchmark
+{
+	private static final String INSERTED = "<p></p>";
+
+	@Param({ "amazon.html", "reddit.html" })
+	public String fixture;
+
+	private String source;
+	private String editedAtStart;
+	private String editedAtEnd;
+	private ParseEdit editAtStart;
+	private ParseEdit editAtEnd;
+	private Parsers parsers;
+	private HTMLParser parser;
+	private IParseRootNode previous;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		source = Fixtures.read("html", fixture);
+		editedAtStart = INSERTED + source;
+		editedAtEnd = source + INSERTED;
+		editAtStart = ParseEdit.compute(source, editedAtStart);
+		editAtEnd = ParseEdit.compute(source, editedAtEnd);
+		parsers = new Parsers();
+		parsers.install();
+		parser = new HTMLParser();
+		// a tree built by a reparse keeps its blocks around for the next one
+		previous = parser.reparse(new HTMLParseState(source), null, null).getRootNode();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		parsers.uninstall();
+	}
+
+	@Benchmark
+	public ParseResult reparseInPlace() throws Exception
+	{
+		return parser.reparse(new HTMLParseState(editedAtEnd), previous, editAtEnd);
+	}
+
+	@Benchmark
+	public ParseResult reparseMoved() throws Exception
+	{
+		return parser.reparse(new HTMLParseState(editedAtStart), previous, editAtStart);
+	}
+
+	@Benchmark
+	public ParseResult parse() throws Exception
+	{
+		return parser.parse(new HTMLParseState(editedAtEnd));
+	}
+}
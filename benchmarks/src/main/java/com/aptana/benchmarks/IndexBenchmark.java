@@ -0,0 +1,170 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import beaver.Symbol;
+
+import com.aptana.core.util.FileUtil;
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+import com.aptana.internal.index.core.DiskIndex;
+import com.aptana.internal.index.core.IDiskIndex;
+import com.aptana.internal.index.core.MappedDiskIndex;
+import com.aptana.internal.index.core.MemoryIndex;
+import com.aptana.internal.index.core.PatternCache;
+import com.aptana.js.core.parsing.JSFlexScanner;
+import com.aptana.js.core.parsing.JSTokenType;
+
+/**
+ * Queries against and merges into the index, for both disk formats. The index is filled with the identifiers of a few
+ * JS libraries, spread over documents and categories the way the JS indexer files them, so keys and postings have
+ * realistic sizes and distributions.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IndexBenchmark
+{
+	private static final String[] FIXTURES = { "jquery-1.6.4.js", "dojo.js.uncompressed.js", "tiny_mce.js",
+			"ext-all-debug.js" };
+	private static final String[] CATEGORIES = { "function", "property", "type", "require" };
+	private static final int TOKENS_PER_DOCUMENT = 250;
+
+	@Param({ "mapped", "legacy" })
+	public String format;
+
+	private File directory;
+	private MemoryIndex memoryIndex;
+	private MemoryIndex emptyMemoryIndex;
+	private MemoryIndex changedDocument;
+	private IDiskIndex diskIndex;
+	private PatternCache patterns;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		memoryIndex = new MemoryIndex();
+		emptyMemoryIndex = new MemoryIndex();
+		changedDocument = new MemoryIndex();
+		patterns = new PatternCache(100);
+
+		for (String fixture : FIXTURES)
+		{
+			addIdentifiers(memoryIndex, fixture, Fixtures.read("js", fixture));
+		}
+		// an edit re-indexes one document of about the same size
+		addIdentifiers(changedDocument, "changed.js", Fixtures.read("js", "jquery-1.6.4.js"));
+
+		directory = File.createTempFile("index-benchmark", null);
+		directory.delete();
+		directory.mkdirs();
+		String path = new File(directory, "benchmark.index").getPath();
+		if ("legacy".equals(format))
+		{
+			DiskIndex legacy = new DiskIndex(path);
+			legacy.initialize(false);
+			diskIndex = legacy.mergeWith(memoryIndex);
+		}
+		else
+		{
+			diskIndex = MappedDiskIndex.open(path, false).mergeWith(memoryIndex);
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		FileUtil.deleteRecursively(directory);
+	}
+
+	private static void addIdentifiers(MemoryIndex index, String fixture, String source) throws Exception
+	{
+		JSFlexScanner scanner = new JSFlexScanner();
+		scanner.setCollectComments(false);
+		scanner.setSource(source);
+
+		short identifier = JSTokenType.IDENTIFIER.getIndex();
+		int count = 0;
+		Symbol symbol = scanner.nextToken();
+		while (symbol != null && symbol.getId() != 0)
+		{
+			if (symbol.getId() == identifier)
+			{
+				String key = (String) symbol.value;
+				String document = fixture + '/' + (count / TOKENS_PER_DOCUMENT);
+				index.addEntry(CATEGORIES[Math.abs(key.hashCode()) % CATEGORIES.length], key, document);
+				count++;
+			}
+			symbol = scanner.nextToken();
+		}
+	}
+
+	@Benchmark
+	public Map<String, QueryResult> memoryPrefixQuery()
+	{
+		return memoryIndex.addQueryResults(CATEGORIES, "get", SearchPattern.PREFIX_MATCH, null, patterns);
+	}
+
+	@Benchmark
+	public Map<String, QueryResult> diskExactQuery() throws Exception
+	{
+		return diskIndex.addQueryResults(CATEGORIES, "length", SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE,
+				emptyMemoryIndex, patterns);
+	}
+
+	@Benchmark
+	public Map<String, QueryResult> diskPrefixQuery() throws Exception
+	{
+		return diskIndex.addQueryResults(CATEGORIES, "get", SearchPattern.PREFIX_MATCH, emptyMemoryIndex, patterns);
+	}
+
+	@Benchmark
+	public Map<String, QueryResult> diskPatternQuery() throws Exception
+	{
+		return diskIndex.addQueryResults(CATEGORIES, "*Element*", SearchPattern.PATTERN_MATCH, emptyMemoryIndex,
+				patterns);
+	}
+
+	@Benchmark
+	public Map<String, QueryResult> diskEverythingQuery() throws Exception
+	{
+		// content assist's "list all" case
+		return diskIndex.addQueryResults(new String[] { "type" }, "", SearchPattern.PREFIX_MATCH, emptyMemoryIndex,
+				patterns);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public IDiskIndex mergeChangedDocument() throws Exception
+	{
+		// merging the same document again replaces it, so the index stays the same size across invocations
+		diskIndex = diskIndex.mergeWith(changedDocument);
+		return diskIndex;
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aptana.js.core.parsing.GraalJSParser;
+import com.aptana.js.core.parsing.JSParseState;
+import com.aptana.parsing.ParseResult;
+
+/**
+ * Full parses of JS libraries with {@link GraalJSParser}, as done when a file is opened or built.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class JSParserBenchmark
+{
+	@Param({ "jquery-1.6.4.js", "dojo.js.uncompressed.js", "tiny_mce.js", "three.min.js" })
+	public String fixture;
+
+	private String source;
+	private GraalJSParser parser;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		source = Fixtures.read("js", fixture);
+		parser = new GraalJSParser();
+	}
+
+	@Benchmark
+	public ParseResult parse() throws Exception
+	{
+		return parser.parse(new JSParseState(source));
+	}
+}
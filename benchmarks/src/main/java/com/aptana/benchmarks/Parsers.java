@@ -0,0 +1,103 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.aptana.core.util.ThreadLocalObjectPool;
+import com.aptana.css.core.ICSSConstants;
+import com.aptana.css.core.parsing.CSSParser;
+import com.aptana.editor.html.core.IHTMLConstants;
+import com.aptana.editor.html.parsing.HTMLParser;
+import com.aptana.js.core.IJSConstants;
+import com.aptana.js.core.parsing.GraalJSParser;
+import com.aptana.parsing.IParser;
+import com.aptana.parsing.IParserPool;
+import com.aptana.parsing.ParserPoolFactory;
+import com.aptana.parsing.ParserPoolFactoryHook;
+import com.aptana.parsing.ParsingEngine;
+
+/**
+ * Stands in for the parser extension point, which needs a running platform. Maps the JS, CSS and HTML content types to
+ * the parsers the plugins contribute for them.
+ */
+public class Parsers implements ParsingEngine.IParserPoolProvider
+{
+	private abstract static class Pool extends ThreadLocalObjectPool<IParser> implements IParserPool
+	{
+		@Override
+		public boolean validate(IParser o)
+		{
+			return true;
+		}
+
+		@Override
+		public void expire(IParser o)
+		{
+			// nothing to clean up
+		}
+	}
+
+	private final Map<String, IParserPool> pools;
+
+	public Parsers()
+	{
+		pools = new HashMap<String, IParserPool>();
+		pools.put(IJSConstants.CONTENT_TYPE_JS, new Pool()
+		{
+			@Override
+			public IParser create()
+			{
+				return new GraalJSParser();
+			}
+		});
+		pools.put(ICSSConstants.CONTENT_TYPE_CSS, new Pool()
+		{
+			@Override
+			public IParser create()
+			{
+				return new CSSParser();
+			}
+		});
+		pools.put(IHTMLConstants.CONTENT_TYPE_HTML, new Pool()
+		{
+			@Override
+			public IParser create()
+			{
+				return new HTMLParser();
+			}
+		});
+	}
+
+	/**
+	 * Routes {@link ParserPoolFactory}'s static parse methods, which parsers use for nested languages, to these pools.
+	 */
+	public void install()
+	{
+		ParserPoolFactoryHook.setParserPoolProvider(this);
+	}
+
+	public void uninstall()
+	{
+		ParserPoolFactoryHook.setParserPoolProvider(null);
+		for (IParserPool pool : pools.values())
+		{
+			pool.dispose();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ParsingEngine.IParserPoolProvider#getParserPool(java.lang.String)
+	 */
+	public IParserPool getParserPool(String contentTypeId)
+	{
+		return pools.get(contentTypeId);
+	}
+}
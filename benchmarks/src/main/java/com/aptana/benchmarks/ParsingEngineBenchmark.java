@@ -0,0 +1,92 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aptana.css.core.ICSSConstants;
+import com.aptana.js.core.IJSConstants;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ParsingEngine;
+
+/**
+ * The cost of going through {@link ParsingEngine}'s cache: a hit, a miss that parses and caches the new source, and a
+ * parse that bypasses the cache for comparison.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ParsingEngineBenchmark
+{
+	@Param({ "js/jquery-1.6.4.js", "css/github-formatted.css" })
+	public String fixture;
+
+	private String contentType;
+	private String source;
+	private Parsers parsers;
+	private ParsingEngine engine;
+	private int edits;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		int index = fixture.indexOf('/');
+		String kind = fixture.substring(0, index);
+		contentType = "js".equals(kind) ? IJSConstants.CONTENT_TYPE_JS : ICSSConstants.CONTENT_TYPE_CSS;
+		source = Fixtures.read(kind, fixture.substring(index + 1));
+		parsers = new Parsers();
+		engine = new ParsingEngine(parsers);
+		engine.parse(contentType, new ParseState(source));
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		engine.dispose();
+		parsers.uninstall();
+	}
+
+	@Benchmark
+	public ParseResult cacheHit() throws Exception
+	{
+		return engine.parse(contentType, new ParseState(source));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ParseResult cacheMiss() throws Exception
+	{
+		// a typing edit: the source differs from everything cached so far
+		return engine.parse(contentType, new ParseState(source + "\n/* " + (edits++) + " */"));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ParseResult uncached() throws Exception
+	{
+		return engine.parseUncached(contentType, new ParseState(source));
+	}
+}
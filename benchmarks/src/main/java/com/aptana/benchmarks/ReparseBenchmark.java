@@ -0,0 +1,85 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aptana.css.core.parsing.CSSParser;
+import com.aptana.js.core.parsing.GraalJSParser;
+import com.aptana.parsing.IIncrementalParser;
+import com.aptana.parsing.ParseEdit;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * An incremental reparse after typing in the middle of a file, against a full parse of the edited file. The reparse
+ * includes copying the path to the edit and everything following it, which keeps the previous tree intact.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ReparseBenchmark
+{
+	@Param({ "js/jquery-1.6.4.js", "css/github-formatted.css" })
+	public String fixture;
+
+	private IIncrementalParser parser;
+	private String source;
+	private ParseEdit edit;
+	private IParseRootNode previous;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		int index = fixture.indexOf('/');
+		String kind = fixture.substring(0, index);
+		String original = Fixtures.read(kind, fixture.substring(index + 1));
+		parser = "js".equals(kind) ? new GraalJSParser() : new CSSParser();
+		previous = parser.parse(new ParseState(original)).getRootNode();
+
+		// a space typed after an opening brace halfway through the file leaves its structure alone
+		int offset = original.indexOf('{', original.length() / 2) + 1;
+		source = original.substring(0, offset) + ' ' + original.substring(offset);
+		edit = ParseEdit.compute(original, source);
+
+		if (reparse() == null)
+		{
+			throw new IllegalStateException("The edit of " + fixture + " isn't reparsed incrementally");
+		}
+	}
+
+	@Benchmark
+	public ParseResult reparse() throws Exception
+	{
+		// the previous tree is left alone, so every invocation starts from the same one
+		return parser.reparse(new ParseState(source), previous, edit);
+	}
+
+	@Benchmark
+	public ParseResult parse() throws Exception
+	{
+		return parser.parse(new ParseState(source));
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.aptana.scope.IScopeSelector;
+import com.aptana.scope.ScopeSelector;
+import com.aptana.scope.ScopeSelectorMatcher;
+
+/**
+ * Matches the scopes the HTML, CSS and JS scanners produce against the selectors of a theme, which is what coloring a
+ * document costs per token. Each invocation matches all of {@link #SCOPES}.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ScopeSelectorBenchmark
+{
+	private static final String[] SCOPES = {
+			"text.html.basic meta.tag.block.any.html entity.name.tag.block.any.html",
+			"text.html.basic meta.tag.inline.any.html entity.other.attribute-name.html",
+			"text.html.basic meta.tag.inline.any.html string.quoted.double.html",
+			"text.html.basic comment.block.html",
+			"text.html.basic source.js.embedded.html meta.function.js entity.name.function.js",
+			"text.html.basic source.css.embedded.html meta.property-list.css support.type.property-name.css",
+			"source.js keyword.control.js",
+			"source.js storage.type.js",
+			"source.js constant.numeric.js",
+			"source.js string.quoted.double.js",
+			"source.js string.regexp.js constant.character.escape.js",
+			"source.js comment.block.documentation.js",
+			"source.js support.function.dom.js",
+			"source.js meta.function.js variable.parameter.function.js",
+			"source.js invalid.illegal.js",
+			"source.css meta.selector.css entity.other.attribute-name.class.css",
+			"source.css meta.property-list.css meta.property-value.css constant.other.color.rgb-value.css",
+			"source.css meta.property-list.css meta.property-value.css support.constant.property-value.css",
+			"source.css comment.block.css",
+			"source.css meta.at-rule.media.css keyword.control.at-rule.media.css" };
+
+	@Param({ "aptana_studio", "pastels_on_dark" })
+	public String theme;
+
+	private List<IScopeSelector> selectors;
+	private ScopeSelectorMatcher matcher;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		selectors = new ArrayList<IScopeSelector>();
+		for (String selector : Fixtures.readThemeSelectors(theme))
+		{
+			selectors.add(new ScopeSelector(selector));
+		}
+		matcher = new ScopeSelectorMatcher(selectors);
+	}
+
+	@Benchmark
+	public void matches(Blackhole blackhole)
+	{
+		for (String scope : SCOPES)
+		{
+			for (IScopeSelector selector : selectors)
+			{
+				blackhole.consume(selector.matches(scope));
+			}
+		}
+	}
+
+	@Benchmark
+	public void bestMatch(Blackhole blackhole)
+	{
+		for (String scope : SCOPES)
+		{
+			blackhole.consume(ScopeSelector.bestMatch(selectors, scope));
+		}
+	}
+
+	@Benchmark
+	public void matcherBestMatch(Blackhole blackhole)
+	{
+		for (String scope : SCOPES)
+		{
+			blackhole.consume(matcher.bestMatch(scope));
+		}
+	}
+
+	@Benchmark
+	public void matcherBestMatchCold(Blackhole blackhole)
+	{
+		// a theme or document type switch builds a new matcher and misses its cache
+		ScopeSelectorMatcher cold = new ScopeSelectorMatcher(selectors);
+		for (String scope : SCOPES)
+		{
+			blackhole.consume(cold.bestMatch(scope));
+		}
+	}
+}
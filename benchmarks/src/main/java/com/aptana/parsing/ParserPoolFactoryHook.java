@@ -0,0 +1,30 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+/**
+ * Lets the benchmarks reach {@link ParserPoolFactory#setParserPoolProvider(ParsingEngine.IParserPoolProvider)}, which
+ * is package private so that it isn't part of the parsing plugin's API. The benchmarks run on a flat class path, where
+ * this class shares the package of the factory.
+ */
+public final class ParserPoolFactoryHook
+{
+	private ParserPoolFactoryHook()
+	{
+	}
+
+	/**
+	 * See {@link ParserPoolFactory#setParserPoolProvider(ParsingEngine.IParserPoolProvider)}.
+	 * 
+	 * @param provider
+	 */
+	public static void setParserPoolProvider(ParsingEngine.IParserPoolProvider provider)
+	{
+		ParserPoolFactory.setParserPoolProvider(provider);
+	}
+}
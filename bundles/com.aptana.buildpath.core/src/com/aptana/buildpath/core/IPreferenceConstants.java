@@ -0,0 +1,18 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.buildpath.core;
+
+public interface IPreferenceConstants
+{
+	/**
+	 * The number of threads the unified builder uses to run build participants over files. A value of 1 builds files
+	 * one at a time on the builder thread.
+	 */
+	public static final String BUILD_WORKER_COUNT = "BUILD_WORKER_COUNT"; //$NON-NLS-1$
+	public static final int DEFAULT_BUILD_WORKER_COUNT = 1;
+}
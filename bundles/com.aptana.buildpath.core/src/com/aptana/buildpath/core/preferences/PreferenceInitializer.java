@@ -0,0 +1,30 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.buildpath.core.preferences;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+
+import com.aptana.buildpath.core.BuildPathCorePlugin;
+import com.aptana.buildpath.core.IPreferenceConstants;
+
+public class PreferenceInitializer extends AbstractPreferenceInitializer
+{
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer#initializeDefaultPreferences()
+	 */
+	@Override
+	public void initializeDefaultPreferences()
+	{
+		IEclipsePreferences prefs = DefaultScope.INSTANCE.getNode(BuildPathCorePlugin.PLUGIN_ID);
+
+		prefs.putInt(IPreferenceConstants.BUILD_WORKER_COUNT, IPreferenceConstants.DEFAULT_BUILD_WORKER_COUNT);
+	}
+}
@@ -12,9 +12,18 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -33,12 +42,18 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
 
 import com.aptana.buildpath.core.BuildPathCorePlugin;
 import com.aptana.buildpath.core.BuildPathManager;
 import com.aptana.buildpath.core.IBuildPathEntry;
+import com.aptana.buildpath.core.IPreferenceConstants;
 import com.aptana.core.CorePlugin;
 import com.aptana.core.IDebugScopes;
 import com.aptana.core.IFilter;
@@ -63,6 +78,12 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 {
 
 	public static final String ID = "com.aptana.ide.core.unifiedBuilder"; //$NON-NLS-1$
+
+	/**
+	 * The number of files whose markers are updated in one workspace operation during a parallel build.
+	 */
+	private static final int MARKER_BATCH_SIZE = 50;
+
 	private boolean traceParticipantsEnabled = false;
 
 	public UnifiedBuilder()
@@ -507,6 +528,13 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
+		int workers = getWorkerCount();
+		if (workers > 1 && files.size() > 1)
+		{
+			doBuildFilesInParallel(participants, files, workers, monitor);
+			return;
+		}
+
 		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
 		for (IFile file : files)
 		{
@@ -533,6 +561,209 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		sub.done();
 	}
 
+	/**
+	 * Builds the files on a pool of worker threads. Each file gets a single {@link BuildContext} that is run through
+	 * its participants in priority order, exactly as in the sequential build. Participants keep per-file state in
+	 * fields, so a participant instance only ever works on one file at a time; different files can be in different
+	 * participants concurrently. Since the index participant is a single instance this also serializes the writes to
+	 * the project index.
+	 * <p>
+	 * Everything that needs a scheduling rule stays on the builder thread, which owns the build's rule: file contents
+	 * are loaded (and refreshed) here before a file is handed to a worker, and the resulting problems are turned into
+	 * markers here as well, {@link #MARKER_BATCH_SIZE} files per workspace operation. At most a few files per worker
+	 * are in flight at a time, so ASTs are not held for the whole project.
+	 * </p>
+	 * 
+	 * @param participants
+	 * @param files
+	 * @param workers
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void doBuildFilesInParallel(List<IBuildParticipant> participants, Collection<IFile> files, int workers,
+			IProgressMonitor monitor) throws CoreException
+	{
+		IBuildParticipantManager manager = getBuildParticipantManager();
+		if (manager == null)
+		{
+			return;
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
+		// workers only ever look at cancellation, which is safe to share across threads unlike a SubMonitor
+		final IProgressMonitor workerMonitor = new NullProgressMonitor();
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new BuildThreadFactory());
+		CompletionService<BuildContext> completion = new ExecutorCompletionService<BuildContext>(executor);
+		Map<IFile, Map<String, Collection<IProblem>>> pendingMarkers = new LinkedHashMap<IFile, Map<String, Collection<IProblem>>>(
+				MARKER_BATCH_SIZE);
+		int maxInFlight = 2 * workers;
+		int inFlight = 0;
+
+		try
+		{
+			for (IFile file : files)
+			{
+				if (sub.isCanceled())
+				{
+					break;
+				}
+
+				final BuildContext context = new BuildContext(file);
+				final List<IBuildParticipant> filteredParticipants = manager.filterParticipants(participants,
+						context.getContentType());
+				if (CollectionsUtil.isEmpty(filteredParticipants))
+				{
+					sub.worked(15);
+					continue;
+				}
+
+				// reading the contents refreshes the file, which requires the rule we hold
+				context.getContents();
+				sub.worked(3);
+
+				while (inFlight >= maxInFlight)
+				{
+					collectBuiltFile(completion, pendingMarkers, sub.newChild(12));
+					inFlight--;
+				}
+
+				completion.submit(new Callable<BuildContext>()
+				{
+					public BuildContext call() throws Exception
+					{
+						buildFileOnWorker(context, filteredParticipants, workerMonitor);
+						return context;
+					}
+				});
+				inFlight++;
+
+				if (pendingMarkers.size() >= MARKER_BATCH_SIZE)
+				{
+					updateMarkers(pendingMarkers, sub.newChild(0));
+				}
+			}
+
+			while (inFlight > 0)
+			{
+				if (sub.isCanceled())
+				{
+					workerMonitor.setCanceled(true);
+				}
+				collectBuiltFile(completion, pendingMarkers, sub.newChild(12));
+				inFlight--;
+			}
+
+			updateMarkers(pendingMarkers, sub.newChild(0));
+		}
+		finally
+		{
+			workerMonitor.setCanceled(true);
+			executor.shutdown();
+		}
+		sub.done();
+	}
+
+	/**
+	 * Waits for the next file to finish building and queues its problems for the next marker batch.
+	 * 
+	 * @param completion
+	 * @param pendingMarkers
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void collectBuiltFile(CompletionService<BuildContext> completion,
+			Map<IFile, Map<String, Collection<IProblem>>> pendingMarkers, IProgressMonitor monitor)
+			throws CoreException
+	{
+		try
+		{
+			BuildContext context = completion.take().get();
+			Map<String, Collection<IProblem>> problems = context.getProblems();
+			if (!CollectionsUtil.isEmpty(problems))
+			{
+				pendingMarkers.put(context.getFile(), problems);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new CoreException(new Status(IStatus.CANCEL, BuildPathCorePlugin.PLUGIN_ID, e.getMessage(), e));
+		}
+		catch (ExecutionException e)
+		{
+			// surface participant failures the same way the sequential build does
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException)
+			{
+				throw (CoreException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new CoreException(new Status(IStatus.ERROR, BuildPathCorePlugin.PLUGIN_ID, e.getMessage(), cause));
+		}
+		finally
+		{
+			if (monitor != null)
+			{
+				monitor.done();
+			}
+		}
+	}
+
+	private void buildFileOnWorker(BuildContext context, List<IBuildParticipant> participants,
+			IProgressMonitor monitor)
+	{
+		// parse up front, outside of any participant, so workers parse concurrently. The context hands the same AST
+		// to every participant. Failures are left for the participants to report, as they would be sequentially.
+		try
+		{
+			context.getAST();
+		}
+		catch (CoreException e)
+		{
+			// ignore
+		}
+
+		for (IBuildParticipant participant : participants)
+		{
+			if (monitor.isCanceled())
+			{
+				return;
+			}
+
+			long startTime = System.nanoTime();
+			synchronized (participant)
+			{
+				participant.buildFile(context, monitor);
+			}
+			if (traceParticipantsEnabled)
+			{
+				double endTime = ((double) System.nanoTime() - startTime) / 1000000;
+				IdeLog.logTrace(
+						BuildPathCorePlugin.getDefault(),
+						MessageFormat
+								.format("Executed build participant ''{0}'' on ''{1}'' in {2} ms.", participant.getName(), context.getURI(), endTime), IDebugScopes.BUILDER_PARTICIPANTS); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * The number of threads to build files with, from the {@link IPreferenceConstants#BUILD_WORKER_COUNT} preference.
+	 * 
+	 * @return
+	 */
+	protected int getWorkerCount()
+	{
+		return Platform.getPreferencesService().getInt(BuildPathCorePlugin.PLUGIN_ID,
+				IPreferenceConstants.BUILD_WORKER_COUNT, IPreferenceConstants.DEFAULT_BUILD_WORKER_COUNT, null);
+	}
+
 	/**
 	 * FIXME This is a holy hell of a mess! We map from IFiles to IFileStores, then filter on that, then map back! Can't
 	 * we make the IIndexFilterParticipants also operate on IFiles? It seems like the only impl does anyways.
@@ -659,6 +890,52 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		}
 	}
 
+	/**
+	 * Replaces the markers of a batch of files in a single workspace operation, then clears the batch.
+	 * 
+	 * @param problemsByFile
+	 * @param monitor
+	 */
+	private void updateMarkers(Map<IFile, Map<String, Collection<IProblem>>> problemsByFile, IProgressMonitor monitor)
+	{
+		if (problemsByFile.isEmpty())
+		{
+			return;
+		}
+
+		final Map<IFile, Map<String, Collection<IProblem>>> batch = new LinkedHashMap<IFile, Map<String, Collection<IProblem>>>(
+				problemsByFile);
+		problemsByFile.clear();
+
+		ISchedulingRule rule = null;
+		for (IFile file : batch.keySet())
+		{
+			rule = MultiRule.combine(rule, getMarkerRule(file));
+		}
+
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable()
+		{
+			public void run(IProgressMonitor monitor)
+			{
+				SubMonitor sub = SubMonitor.convert(monitor, batch.size());
+				for (Map.Entry<IFile, Map<String, Collection<IProblem>>> entry : batch.entrySet())
+				{
+					updateMarkers(entry.getKey(), entry.getValue(), sub.newChild(1));
+				}
+				sub.done();
+			}
+		};
+
+		try
+		{
+			ResourcesPlugin.getWorkspace().run(runnable, rule, IWorkspace.AVOID_UPDATE, monitor);
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(BuildPathCorePlugin.getDefault(), "Error updating markers", e); //$NON-NLS-1$
+		}
+	}
+
 	/**
 	 * @param resource
 	 * @return
@@ -721,6 +998,21 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		sub.done();
 	}
 
+	/**
+	 * Names the parallel build's worker threads and makes them daemons so a stuck participant can't keep the VM alive.
+	 */
+	private static class BuildThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "Unified Builder Worker " + count.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 	/**
 	 * Collects all files with infinite depth. Used to grab all files inside an {@link IProject} for full builds.
 	 * 
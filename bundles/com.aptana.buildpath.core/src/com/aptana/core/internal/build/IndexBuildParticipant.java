@@ -113,53 +113,58 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 				return;
 			}
 
-			// wipe the index for the file first
-			deleteFile(context, sub.newChild(10));
-
-			List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(context);
-			if (!CollectionsUtil.isEmpty(indexers))
+			// a file's entries are replaced as a unit; parallel builds must not interleave writes to the same index
+			Index index = fIndex;
+			synchronized (index)
 			{
-				int workPerIndexer = 90 / indexers.size();
-				for (IFileStoreIndexingParticipant indexer : indexers)
+				// wipe the index for the file first
+				deleteFile(context, sub.newChild(10));
+
+				List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(context);
+				if (!CollectionsUtil.isEmpty(indexers))
 				{
-					try
+					int workPerIndexer = 90 / indexers.size();
+					for (IFileStoreIndexingParticipant indexer : indexers)
 					{
-						long startTime = 0;
-						if (index_trace_enabled)
+						try
 						{
-							startTime = System.nanoTime();
+							long startTime = 0;
+							if (index_trace_enabled)
+							{
+								startTime = System.nanoTime();
+							}
+							indexer.index(context, index, sub.newChild(workPerIndexer));
+							if (index_trace_enabled)
+							{
+								double endTime = ((double) System.nanoTime() - startTime) / 1000000;
+								IdeLog.logTrace(
+										BuildPathCorePlugin.getDefault(),
+										MessageFormat
+												.format("Indexed file ''{0}'' via ''{1}'' in {2} ms.", context.getURI(), indexer.getClass().getName(), endTime), IDebugScopes.BUILDER_INDEXER); //$NON-NLS-1$
+							}
 						}
-						indexer.index(context, fIndex, sub.newChild(workPerIndexer));
-						if (index_trace_enabled)
+						catch (CoreException e)
 						{
-							double endTime = ((double) System.nanoTime() - startTime) / 1000000;
-							IdeLog.logTrace(
-									BuildPathCorePlugin.getDefault(),
-									MessageFormat
-											.format("Indexed file ''{0}'' via ''{1}'' in {2} ms.", context.getURI(), indexer.getClass().getName(), endTime), IDebugScopes.BUILDER_INDEXER); //$NON-NLS-1$
+							IdeLog.logError(BuildPathCorePlugin.getDefault(), MessageFormat.format(
+									"Failed to index file {0} with indexer {1}", context.getURI(), indexer.getClass() //$NON-NLS-1$
+											.getName()), e);
 						}
-					}
-					catch (CoreException e)
-					{
-						IdeLog.logError(BuildPathCorePlugin.getDefault(), MessageFormat.format(
-								"Failed to index file {0} with indexer {1}", context.getURI(), indexer.getClass() //$NON-NLS-1$
-										.getName()), e);
-					}
 
-					// stop indexing if it has been canceled
-					if (sub.isCanceled())
-					{
-						break;
+						// stop indexing if it has been canceled
+						if (sub.isCanceled())
+						{
+							break;
+						}
 					}
 				}
-			}
-			else
-			{
-				if (advanced_trace_enabled)
+				else
 				{
-					IdeLog.logTrace(
-							BuildPathCorePlugin.getDefault(),
-							MessageFormat.format("No indexers available for file ''{0}''", context.getURI()), IDebugScopes.BUILDER_ADVANCED); //$NON-NLS-1$
+					if (advanced_trace_enabled)
+					{
+						IdeLog.logTrace(
+								BuildPathCorePlugin.getDefault(),
+								MessageFormat.format("No indexers available for file ''{0}''", context.getURI()), IDebugScopes.BUILDER_ADVANCED); //$NON-NLS-1$
+					}
 				}
 			}
 		}
@@ -39,6 +39,8 @@ public class Messages extends NLS // NO_UCD
 	public static String BaseConnectionFileManager_PermissionDenied0;
 	public static String BaseConnectionFileManager_putting_changes;
 
+	public static String PooledConnectionFileManager_closing_connections;
+
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
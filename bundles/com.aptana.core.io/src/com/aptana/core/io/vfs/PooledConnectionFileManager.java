@@ -0,0 +1,501 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.core.io.vfs;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import com.aptana.ide.core.io.ConnectionContext;
+import com.aptana.ide.core.io.CoreIOPlugin;
+
+/**
+ * Spreads the operations of a single connection point over up to N connections, so that listings and transfers
+ * issued from different threads run side by side instead of queueing on the lock of one
+ * {@link BaseConnectionFileManager}. Each member keeps its own file info cache; when one member changes a path, the
+ * others drop what they have cached for that path before their next operation.
+ *
+ * @author Max Stepanov
+ */
+public abstract class PooledConnectionFileManager implements IConnectionFileManager
+{
+
+	private static final long WAIT_INTERVAL = 500;
+
+	private static final class Member
+	{
+		private final BaseConnectionFileManager manager;
+		/**
+		 * Set while a thread is inside one of the manager's operations.
+		 */
+		private boolean busy;
+		/**
+		 * Streams opened through this manager that haven't been closed yet.
+		 */
+		private int openStreams;
+		/**
+		 * Paths changed through other members since this one last ran.
+		 */
+		private final Set<IPath> stalePaths = new HashSet<IPath>();
+
+		private Member(BaseConnectionFileManager manager)
+		{
+			this.manager = manager;
+		}
+	}
+
+	private final int maxConnections;
+	private final List<Member> members = new ArrayList<Member>();
+
+	/**
+	 * @param maxConnections
+	 *            the number of connections to open at most
+	 */
+	protected PooledConnectionFileManager(int maxConnections)
+	{
+		this.maxConnections = Math.max(1, maxConnections);
+	}
+
+	/**
+	 * Returns the number of operations that can run at the same time.
+	 *
+	 * @return
+	 */
+	public int getMaxConnections()
+	{
+		return maxConnections;
+	}
+
+	/**
+	 * Creates and initializes a new member of the pool. It's connected lazily, by the first operation run on it.
+	 *
+	 * @return
+	 */
+	protected abstract BaseConnectionFileManager createConnectionFileManager();
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#connect(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public void connect(IProgressMonitor monitor) throws CoreException
+	{
+		Member member = checkOut(monitor);
+		try
+		{
+			member.manager.connect(monitor);
+		}
+		finally
+		{
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#isConnected()
+	 */
+	public boolean isConnected()
+	{
+		synchronized (members)
+		{
+			return !members.isEmpty() && members.get(0).manager.isConnected();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#disconnect(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public void disconnect(IProgressMonitor monitor) throws CoreException
+	{
+		List<Member> all;
+		synchronized (members)
+		{
+			all = new ArrayList<Member>(members);
+		}
+		monitor = Policy.monitorFor(monitor);
+		monitor.beginTask(Messages.PooledConnectionFileManager_closing_connections, all.size());
+		try
+		{
+			for (Member member : all)
+			{
+				member.manager.disconnect(Policy.subMonitorFor(monitor, 1));
+			}
+		}
+		finally
+		{
+			monitor.done();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#getCanonicalURI(org.eclipse.core.runtime.IPath)
+	 */
+	public URI getCanonicalURI(IPath path)
+	{
+		BaseConnectionFileManager manager;
+		synchronized (members)
+		{
+			if (members.isEmpty())
+			{
+				members.add(new Member(createConnectionFileManager()));
+			}
+			manager = members.get(0).manager;
+		}
+		return manager.getCanonicalURI(path);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#fetchInfo(org.eclipse.core.runtime.IPath, int,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public IExtendedFileInfo fetchInfo(IPath path, int options, IProgressMonitor monitor) throws CoreException
+	{
+		Member member = checkOut(monitor);
+		try
+		{
+			return member.manager.fetchInfo(path, options, monitor);
+		}
+		finally
+		{
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#childNames(org.eclipse.core.runtime.IPath, int,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public String[] childNames(IPath path, int options, IProgressMonitor monitor) throws CoreException
+	{
+		Member member = checkOut(monitor);
+		try
+		{
+			return member.manager.childNames(path, options, monitor);
+		}
+		finally
+		{
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#childInfos(org.eclipse.core.runtime.IPath, int,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public IExtendedFileInfo[] childInfos(IPath path, int options, IProgressMonitor monitor) throws CoreException
+	{
+		Member member = checkOut(monitor);
+		try
+		{
+			return member.manager.childInfos(path, options, monitor);
+		}
+		finally
+		{
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#openInputStream(org.eclipse.core.runtime.IPath, int,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public InputStream openInputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException
+	{
+		final Member member = checkOut(monitor);
+		try
+		{
+			InputStream stream = member.manager.openInputStream(path, options, monitor);
+			streamOpened(member);
+			return new FilterInputStream(stream)
+			{
+				private boolean closed;
+
+				@Override
+				public void close() throws IOException
+				{
+					try
+					{
+						super.close();
+					}
+					finally
+					{
+						if (!closed)
+						{
+							closed = true;
+							streamClosed(member);
+						}
+					}
+				}
+			};
+		}
+		finally
+		{
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#openOutputStream(org.eclipse.core.runtime.IPath, int,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public OutputStream openOutputStream(final IPath path, int options, IProgressMonitor monitor)
+			throws CoreException
+	{
+		final Member member = checkOut(monitor);
+		try
+		{
+			OutputStream stream = member.manager.openOutputStream(path, options, monitor);
+			invalidate(member, path);
+			streamOpened(member);
+			return new FilterOutputStream(stream)
+			{
+				private boolean closed;
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException
+				{
+					out.write(b, off, len);
+				}
+
+				@Override
+				public void close() throws IOException
+				{
+					try
+					{
+						super.close();
+					}
+					finally
+					{
+						if (!closed)
+						{
+							closed = true;
+							// others may have listed the file while it was being written
+							invalidate(member, path);
+							streamClosed(member);
+						}
+					}
+				}
+			};
+		}
+		finally
+		{
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#delete(org.eclipse.core.runtime.IPath, int,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public void delete(IPath path, int options, IProgressMonitor monitor) throws CoreException
+	{
+		Member member = checkOut(monitor);
+		try
+		{
+			member.manager.delete(path, options, monitor);
+		}
+		finally
+		{
+			invalidate(member, path);
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#mkdir(org.eclipse.core.runtime.IPath, int,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public void mkdir(IPath path, int options, IProgressMonitor monitor) throws CoreException
+	{
+		Member member = checkOut(monitor);
+		try
+		{
+			member.manager.mkdir(path, options, monitor);
+		}
+		finally
+		{
+			invalidate(member, path);
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#putInfo(org.eclipse.core.runtime.IPath,
+	 * org.eclipse.core.filesystem.IFileInfo, int, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public void putInfo(IPath path, IFileInfo info, int options, IProgressMonitor monitor) throws CoreException
+	{
+		Member member = checkOut(monitor);
+		try
+		{
+			member.manager.putInfo(path, info, options, monitor);
+		}
+		finally
+		{
+			invalidate(member, path);
+			checkIn(member);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#move(org.eclipse.core.runtime.IPath,
+	 * org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public void move(IPath sourcePath, IPath destinationPath, int options, IProgressMonitor monitor)
+			throws CoreException
+	{
+		Member member = checkOut(monitor);
+		try
+		{
+			member.manager.move(sourcePath, destinationPath, options, monitor);
+		}
+		finally
+		{
+			invalidate(member, sourcePath);
+			invalidate(member, destinationPath);
+			checkIn(member);
+		}
+	}
+
+	/**
+	 * Picks the member to run the next operation on: an idle one if possible, otherwise a new one while the pool may
+	 * still grow. Members with streams open are shared rather than waited for, since the caller may be the one who has
+	 * to close them. Only if every member is in the middle of an operation does this block.
+	 */
+	private Member checkOut(IProgressMonitor monitor)
+	{
+		monitor = Policy.monitorFor(monitor);
+		Member candidate;
+		IPath[] stalePaths;
+		synchronized (members)
+		{
+			while (true)
+			{
+				candidate = null;
+				for (Member member : members)
+				{
+					if (!member.busy && (candidate == null || member.openStreams < candidate.openStreams))
+					{
+						candidate = member;
+					}
+				}
+				if ((candidate == null || candidate.openStreams > 0) && canGrow())
+				{
+					candidate = new Member(createConnectionFileManager());
+					members.add(candidate);
+				}
+				if (candidate != null)
+				{
+					break;
+				}
+				Policy.checkCanceled(monitor);
+				try
+				{
+					members.wait(WAIT_INTERVAL);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new OperationCanceledException();
+				}
+			}
+			candidate.busy = true;
+			ConnectionContext context = CoreIOPlugin.getConnectionContext(this);
+			if (context != null)
+			{
+				CoreIOPlugin.setConnectionContext(candidate.manager, context);
+			}
+			stalePaths = candidate.stalePaths.toArray(new IPath[candidate.stalePaths.size()]);
+			candidate.stalePaths.clear();
+		}
+		// nobody else can run on the member now
+		for (IPath path : stalePaths)
+		{
+			candidate.manager.clearCache(path);
+		}
+		return candidate;
+	}
+
+	/**
+	 * Extra connections are only opened once the first one is up, so the user is prompted for the password once and the
+	 * others pick it up from the authentication manager.
+	 */
+	private boolean canGrow()
+	{
+		if (members.isEmpty())
+		{
+			return true;
+		}
+		return members.size() < maxConnections && members.get(0).manager.isConnected();
+	}
+
+	private void checkIn(Member member)
+	{
+		synchronized (members)
+		{
+			member.busy = false;
+			members.notifyAll();
+		}
+	}
+
+	private void streamOpened(Member member)
+	{
+		synchronized (members)
+		{
+			member.openStreams++;
+		}
+	}
+
+	private void streamClosed(Member member)
+	{
+		synchronized (members)
+		{
+			member.openStreams--;
+			members.notifyAll();
+		}
+	}
+
+	private void invalidate(Member source, IPath path)
+	{
+		synchronized (members)
+		{
+			for (Member member : members)
+			{
+				if (member != source)
+				{
+					member.stalePaths.add(path);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A cache that may be read and written from any number of threads without locking, holding at most a fixed number of
+ * entries. Once full, the oldest entries are dropped first (insertion order, not access order: lookups stay free of
+ * writes). Null keys and values are not supported.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class BoundedConcurrentCache<K, V>
+{
+	private final int maxSize;
+	private final ConcurrentHashMap<K, V> map;
+	private final Queue<K> insertionOrder;
+
+	/**
+	 * BoundedConcurrentCache
+	 *
+	 * @param maxSize
+	 *            The maximum number of entries held
+	 */
+	public BoundedConcurrentCache(int maxSize)
+	{
+		if (maxSize <= 0)
+		{
+			throw new IllegalArgumentException("Maximum size must be positive"); //$NON-NLS-1$
+		}
+		this.maxSize = maxSize;
+		this.map = new ConcurrentHashMap<K, V>(Math.min(maxSize, 256));
+		this.insertionOrder = new ConcurrentLinkedQueue<K>();
+	}
+
+	/**
+	 * Returns the value cached for the key, or null.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public V get(K key)
+	{
+		return map.get(key);
+	}
+
+	/**
+	 * Caches the value for the key, dropping the oldest entries if that takes the cache past its maximum size.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(K key, V value)
+	{
+		if (map.put(key, value) == null)
+		{
+			insertionOrder.add(key);
+			while (map.size() > maxSize)
+			{
+				K oldest = insertionOrder.poll();
+				if (oldest == null)
+				{
+					break;
+				}
+				map.remove(oldest);
+			}
+		}
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear()
+	{
+		map.clear();
+		insertionOrder.clear();
+	}
+
+	/**
+	 * @return The current number of entries
+	 */
+	public int size()
+	{
+		return map.size();
+	}
+}
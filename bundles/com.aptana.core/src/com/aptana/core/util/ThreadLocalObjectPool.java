@@ -0,0 +1,271 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An object pool that doesn't lock. Each thread keeps the last instance it checked in, so a thread that checks out and
+ * back in repeatedly always gets its own instance back without touching any shared state. Instances checked in while
+ * the thread already has one cached go on a lock-free stack shared by all threads, where the others can pick them up.
+ * <p>
+ * There is no reaper thread: idle instances are expired lazily, when a check in notices that the last sweep is older
+ * than the expiration time. As with {@link ReapingObjectPool}, an idle instance past its expiration time is kept if
+ * {@link #validate(Object)} says so. Instances are not validated on check out.
+ *
+ * @param <T>
+ */
+public abstract class ThreadLocalObjectPool<T> implements IObjectPool<T>
+{
+	private static final int DEFAULT_EXPIRATION = 30000; // 30 seconds
+
+	/**
+	 * An idle instance and when it was checked in.
+	 */
+	private static class Entry<T>
+	{
+		final T value;
+		final long time;
+
+		Entry(T value, long time)
+		{
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * A node of the shared stack.
+	 */
+	private static class Node<T>
+	{
+		final Entry<T> entry;
+		volatile Node<T> next;
+
+		Node(Entry<T> entry)
+		{
+			this.entry = entry;
+		}
+	}
+
+	/**
+	 * The instance cached by a thread. Other threads only ever take the entry out of it, when sweeping or disposing.
+	 */
+	private static class Slot<T> extends AtomicReference<Entry<T>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		final WeakReference<Thread> owner;
+
+		Slot(Thread owner)
+		{
+			this.owner = new WeakReference<Thread>(owner);
+		}
+
+		boolean isDead()
+		{
+			Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	private final long expirationTime;
+	private final ThreadLocal<Slot<T>> local;
+	private final Queue<Slot<T>> slots;
+	private final AtomicReference<Node<T>> shared;
+	private final AtomicInteger idle;
+	private final AtomicLong lastSweep;
+	private volatile boolean disposed;
+
+	public ThreadLocalObjectPool()
+	{
+		this(DEFAULT_EXPIRATION);
+	}
+
+	/**
+	 * @param expirationTime
+	 *            how long an instance may stay idle, in milliseconds; -1 to never expire them
+	 */
+	public ThreadLocalObjectPool(int expirationTime)
+	{
+		this.expirationTime = expirationTime;
+		this.slots = new ConcurrentLinkedQueue<Slot<T>>();
+		this.shared = new AtomicReference<Node<T>>();
+		this.idle = new AtomicInteger();
+		this.lastSweep = new AtomicLong(System.currentTimeMillis());
+		this.local = new ThreadLocal<Slot<T>>()
+		{
+			@Override
+			protected Slot<T> initialValue()
+			{
+				Slot<T> slot = new Slot<T>(Thread.currentThread());
+				slots.add(slot);
+				return slot;
+			}
+		};
+	}
+
+	public abstract T create();
+
+	public abstract boolean validate(T o);
+
+	public abstract void expire(T o);
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.util.IObjectPool#checkOut()
+	 */
+	public T checkOut()
+	{
+		Entry<T> entry = local.get().getAndSet(null);
+		if (entry == null)
+		{
+			entry = pop();
+		}
+		if (entry != null)
+		{
+			idle.decrementAndGet();
+			return entry.value;
+		}
+		return create();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.util.IObjectPool#checkIn(java.lang.Object)
+	 */
+	public void checkIn(T t)
+	{
+		if (t == null)
+		{
+			return;
+		}
+		if (disposed)
+		{
+			expire(t);
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		Entry<T> entry = new Entry<T>(t, now);
+		idle.incrementAndGet();
+		if (!local.get().compareAndSet(null, entry))
+		{
+			push(new Node<T>(entry));
+		}
+
+		long last = lastSweep.get();
+		if (expirationTime != -1 && now - last > expirationTime && lastSweep.compareAndSet(last, now))
+		{
+			sweep(now, false);
+		}
+	}
+
+	/**
+	 * Expires all idle instances. Instances checked in afterwards are expired right away.
+	 */
+	public void dispose()
+	{
+		disposed = true;
+		sweep(System.currentTimeMillis(), true);
+	}
+
+	/**
+	 * Returns the number of idle instances held in the pool, waiting to expire or get re-used.
+	 *
+	 * @return
+	 */
+	protected int idleItems()
+	{
+		return idle.get();
+	}
+
+	private void push(Node<T> node)
+	{
+		Node<T> head;
+		do
+		{
+			head = shared.get();
+			node.next = head;
+		}
+		while (!shared.compareAndSet(head, node));
+	}
+
+	private Entry<T> pop()
+	{
+		Node<T> head;
+		do
+		{
+			head = shared.get();
+			if (head == null)
+			{
+				return null;
+			}
+		}
+		while (!shared.compareAndSet(head, head.next));
+		return head.entry;
+	}
+
+	/**
+	 * Expires the idle instances that are past their expiration time and don't validate, or all of them. The shared
+	 * stack is detached as a whole while it's being swept, so concurrent check outs simply miss those instances.
+	 */
+	private void sweep(long now, boolean all)
+	{
+		Iterator<Slot<T>> iterator = slots.iterator();
+		while (iterator.hasNext())
+		{
+			Slot<T> slot = iterator.next();
+			Entry<T> entry = slot.get();
+			if (entry != null && (all || isExpired(entry, now)) && slot.compareAndSet(entry, null))
+			{
+				idle.decrementAndGet();
+				expire(entry.value);
+			}
+			if (slot.isDead())
+			{
+				// the thread can't check its instance out anymore
+				iterator.remove();
+				entry = slot.getAndSet(null);
+				if (entry != null)
+				{
+					idle.decrementAndGet();
+					expire(entry.value);
+				}
+			}
+		}
+
+		Node<T> node = shared.getAndSet(null);
+		while (node != null)
+		{
+			Node<T> next = node.next;
+			if (all || isExpired(node.entry, now))
+			{
+				idle.decrementAndGet();
+				expire(node.entry.value);
+			}
+			else
+			{
+				// nodes are never pushed twice, so a concurrent pop can't mistake a re-pushed node for its old head
+				push(new Node<T>(node.entry));
+			}
+			node = next;
+		}
+	}
+
+	private boolean isExpired(Entry<T> entry, long now)
+	{
+		return now - entry.time > expirationTime && !validate(entry.value);
+	}
+}
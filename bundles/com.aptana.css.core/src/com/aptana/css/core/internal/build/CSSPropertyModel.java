@@ -0,0 +1,127 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.css.core.internal.build;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.aptana.css.core.model.PropertyElement;
+import com.aptana.css.core.model.ValueElement;
+
+/**
+ * The properties of the CSS metadata, reduced to what the validator checks declarations against: the property names,
+ * and for each property whose values are all listed as keywords, the set of those keywords. Properties that take
+ * lengths, colors, URLs or anything else (i.e. whose values include "*" or a "&lt;type&gt;") accept any value.
+ */
+class CSSPropertyModel
+{
+	private static final Pattern KEYWORD = Pattern.compile("[a-z][a-z0-9_-]*"); //$NON-NLS-1$
+
+	/**
+	 * Keywords every property accepts.
+	 */
+	@SuppressWarnings("nls")
+	private static final Set<String> GLOBAL_KEYWORDS = new HashSet<String>(Arrays.asList("inherit", "initial",
+			"unset"));
+
+	/**
+	 * Maps each property name to its keywords, or to null if its values aren't restricted to keywords.
+	 */
+	private final Map<String, Set<String>> fProperties;
+
+	/**
+	 * CSSPropertyModel
+	 *
+	 * @param properties
+	 *            The properties of the metadata
+	 * @param extraProperties
+	 *            Names of properties the metadata doesn't know about yet, which accept any value
+	 */
+	CSSPropertyModel(Collection<PropertyElement> properties, String... extraProperties)
+	{
+		fProperties = new HashMap<String, Set<String>>(properties.size() + extraProperties.length);
+		for (PropertyElement property : properties)
+		{
+			fProperties.put(property.getName().toLowerCase(), getKeywords(property));
+		}
+		for (String name : extraProperties)
+		{
+			if (!fProperties.containsKey(name))
+			{
+				fProperties.put(name, null);
+			}
+		}
+	}
+
+	private static Set<String> getKeywords(PropertyElement property)
+	{
+		Collection<ValueElement> values = property.getValues();
+		if (values.isEmpty())
+		{
+			return null;
+		}
+
+		Set<String> keywords = new HashSet<String>(values.size());
+		for (ValueElement value : values)
+		{
+			String name = value.getName().toLowerCase();
+			if (!isKeyword(name))
+			{
+				return null;
+			}
+			keywords.add(name);
+		}
+		return keywords;
+	}
+
+	/**
+	 * Determine if the text of a term is a plain (i.e. not vendor specific) keyword.
+	 *
+	 * @param text
+	 * @return
+	 */
+	static boolean isKeyword(String text)
+	{
+		return KEYWORD.matcher(text).matches();
+	}
+
+	boolean isEmpty()
+	{
+		return fProperties.isEmpty();
+	}
+
+	/**
+	 * @param name
+	 *            A lower case property name
+	 * @return
+	 */
+	boolean isKnownProperty(String name)
+	{
+		return fProperties.containsKey(name);
+	}
+
+	/**
+	 * Determine if a keyword is a valid value of a known property.
+	 *
+	 * @param name
+	 *            A lower case property name
+	 * @param keyword
+	 *            A lower case keyword
+	 * @return
+	 */
+	boolean isValidKeyword(String name, String keyword)
+	{
+		Set<String> keywords = fProperties.get(name);
+		return keywords == null || keywords.contains(keyword) || GLOBAL_KEYWORDS.contains(keyword);
+	}
+}
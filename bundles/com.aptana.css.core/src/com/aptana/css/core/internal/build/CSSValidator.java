@@ -18,8 +18,14 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
 import org.w3c.css.css.StyleSheet;
 import org.w3c.css.css.StyleSheetParser;
 import org.w3c.css.parser.CssError;
@@ -38,9 +44,24 @@ import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.IOUtil;
 import com.aptana.css.core.CSSCorePlugin;
 import com.aptana.css.core.ICSSConstants;
+import com.aptana.css.core.index.CSSIndexQueryHelper;
+import com.aptana.css.core.model.PropertyElement;
+import com.aptana.css.core.parsing.ast.CSSDeclarationNode;
+import com.aptana.css.core.parsing.ast.CSSErrorDeclarationNode;
+import com.aptana.css.core.parsing.ast.CSSExpressionNode;
+import com.aptana.css.core.parsing.ast.CSSFontFaceNode;
+import com.aptana.css.core.parsing.ast.CSSPageNode;
+import com.aptana.css.core.parsing.ast.CSSParseRootNode;
+import com.aptana.css.core.parsing.ast.CSSTermNode;
+import com.aptana.css.core.parsing.ast.CSSTreeWalker;
+import com.aptana.css.core.preferences.IPreferenceConstants;
 import com.aptana.index.core.build.BuildContext;
+import com.aptana.parsing.ast.IParseRootNode;
 
 /**
+ * Checks the declarations of the AST against the properties and values of the CSS metadata. In strict mode (see
+ * {@link IPreferenceConstants#W3C_STRICT_VALIDATION}) the source is run through the W3C validator instead.
+ * 
  * @author cwilliams
  */
 public class CSSValidator extends AbstractBuildParticipant
@@ -52,7 +73,7 @@ public class CSSValidator extends AbstractBuildParticipant
 	private static final String CONFIG_FILE = "AptanaCSSConfig.properties"; //$NON-NLS-1$
 	private static final String PROFILES_CONFIG_FILE = "AptanaCSSProfiles.properties"; //$NON-NLS-1$
 
-	// CSS3 properties that the validator doesn't recognize yet and need to be ignored
+	// CSS3 properties that the validator (and our metadata) doesn't recognize yet and need to be ignored
 	@SuppressWarnings("nls")
 	private static final String[] CSS3_PROPERTIES = { "behavior", "box-shadow", "box-sizing", "column-count",
 			"column-width", "column-gap", "column-rule", "border-radius", "background-clip", "background-origin",
@@ -77,12 +98,110 @@ public class CSSValidator extends AbstractBuildParticipant
 			".*Too many values or values are not recognized.*", Pattern.quote(
 					"Value Error : background (http://www.w3.org/TR/REC-CSS2/colors.html#propdef-background) , is an incorrect operator :") };
 
-	static
+	private static boolean fgProfileLoaded;
+
+	/**
+	 * The metadata properties and the filters (along with the expressions they were compiled from), kept for the
+	 * duration of a build.
+	 */
+	private CSSPropertyModel fModel;
+	private List<String> fFilterExpressions;
+	private Pattern fFilter;
+
+	/**
+	 * Reports the declarations whose property or keyword value the metadata doesn't know about.
+	 */
+	private class DeclarationValidator extends CSSTreeWalker
 	{
-		loadAptanaCSSProfile();
+		private final CSSPropertyModel model;
+		private final Pattern filter;
+		private final String sourcePath;
+		private final IDocument document;
+		private final List<IProblem> items;
+
+		DeclarationValidator(CSSPropertyModel model, Pattern filter, String source, String sourcePath,
+				List<IProblem> items)
+		{
+			this.model = model;
+			this.filter = filter;
+			this.sourcePath = sourcePath;
+			this.document = new Document(source);
+			this.items = items;
+		}
+
+		@Override
+		public void visit(CSSDeclarationNode node)
+		{
+			String identifier = node.getIdentifier();
+			if (identifier == null)
+			{
+				return;
+			}
+			String name = identifier.toLowerCase();
+			if (!CSSPropertyModel.isKeyword(name))
+			{
+				// vendor specific properties and hacks like *zoom or _height
+				return;
+			}
+
+			if (!model.isKnownProperty(name))
+			{
+				report(MessageFormat.format(Messages.CSSValidator_UnknownProperty, identifier),
+						node.getStartingOffset(), identifier.length());
+				return;
+			}
+
+			CSSExpressionNode value = node.getAssignedValue();
+			if (value instanceof CSSTermNode)
+			{
+				String text = value.getText();
+				String keyword = text.toLowerCase();
+				if (CSSPropertyModel.isKeyword(keyword) && !model.isValidKeyword(name, keyword))
+				{
+					report(MessageFormat.format(Messages.CSSValidator_InvalidValue, identifier, text),
+							value.getStartingOffset(), text.length());
+				}
+			}
+		}
+
+		@Override
+		public void visit(CSSErrorDeclarationNode node)
+		{
+			// already reported by the parser
+		}
+
+		@Override
+		public void visit(CSSFontFaceNode node)
+		{
+			// holds descriptors, not properties
+		}
+
+		@Override
+		public void visit(CSSPageNode node)
+		{
+			// holds descriptors, not properties
+		}
+
+		private void report(String message, int offset, int length)
+		{
+			if (filter.matcher(message).matches())
+			{
+				return;
+			}
+			int line = -1;
+			try
+			{
+				line = document.getLineOfOffset(offset) + 1;
+			}
+			catch (BadLocationException e)
+			{
+				// ignore
+			}
+			items.add(createWarning(message, line, offset, length, sourcePath));
+		}
 	}
 
-	private void processErrorsInReport(Errors errors, String sourcePath, List<IProblem> items, List<String> filters)
+	private void processErrorsInReport(Errors errors, String sourcePath, List<IProblem> items, Pattern filter)
 	{
 		CssError[] cssErrors = errors.getErrors();
 		for (CssError cssError : cssErrors)
@@ -99,23 +218,20 @@ public class CSSValidator extends AbstractBuildParticipant
 				message = "Parse Error"; // to retain backwards compat on message //$NON-NLS-1$
 			}
 			int lineNumber = cssError.getLine();
-			if (!isIgnored(message, filters) && !containsCSS3Property(message) && !containsCSS3AtRule(message)
-					&& !isFiltered(message))
+			if (!filter.matcher(message).matches())
 			{
 				items.add(createError(message, lineNumber, 0, 0, sourcePath));
 			}
 		}
 	}
 
-	private void processWarningsInReport(Warnings warnings, String sourcePath, List<IProblem> items,
-			List<String> filters)
+	private void processWarningsInReport(Warnings warnings, String sourcePath, List<IProblem> items, Pattern filter)
 	{
 		Warning[] warningsArray = warnings.getWarnings();
 		for (Warning warning : warningsArray)
 		{
 			String message = warning.getWarningMessage();
-			if (!isIgnored(message, filters) && !containsCSS3Property(message) && !containsCSS3AtRule(message)
-					&& !isFiltered(message))
+			if (!filter.matcher(message).matches())
 			{
 				items.add(createWarning(message, warning.getLine(), 0, 0, sourcePath));
 			}
@@ -128,8 +244,14 @@ public class CSSValidator extends AbstractBuildParticipant
 	 * @throws IOException
 	 *             if profile loading fails
 	 */
-	private static void loadAptanaCSSProfile()
+	private static synchronized void loadAptanaCSSProfile()
 	{
+		if (fgProfileLoaded)
+		{
+			return;
+		}
+		fgProfileLoaded = true;
+
 		InputStream configStream = CSSValidator.class.getResourceAsStream(CONFIG_FILE);
 		InputStream profilesStream = CSSValidator.class.getResourceAsStream(PROFILES_CONFIG_FILE);
 
@@ -180,6 +302,8 @@ public class CSSValidator extends AbstractBuildParticipant
 	 */
 	private static StyleSheet getReport(String source, URI path)
 	{
+		loadAptanaCSSProfile();
+
 		StyleSheetParser parser = new StyleSheetParser();
 		ApplContext ac = new ApplContext("en"); //$NON-NLS-1$
 		ac.setProfile(APTANA_PROFILE);
@@ -203,40 +327,115 @@ public class CSSValidator extends AbstractBuildParticipant
 		return stylesheet;
 	}
 
-	private static boolean containsCSS3Property(String message)
+	@Override
+	public synchronized void buildStarting(IProject project, int kind, IProgressMonitor monitor)
 	{
-		for (String property : CSS3_PROPERTIES)
+		// pick up changes to the metadata and the filters
+		fModel = null;
+		fFilter = null;
+	}
+
+	/**
+	 * Whether to run the W3C validator instead of checking the AST against the metadata.
+	 * 
+	 * @return
+	 */
+	protected boolean isStrict()
+	{
+		return getPreferenceBoolean(IPreferenceConstants.W3C_STRICT_VALIDATION);
+	}
+
+	/**
+	 * The properties of the CSS metadata.
+	 * 
+	 * @return
+	 */
+	protected List<PropertyElement> getProperties()
+	{
+		return new CSSIndexQueryHelper().getProperties();
+	}
+
+	private synchronized CSSPropertyModel getModel()
+	{
+		if (fModel == null)
 		{
-			if (message.indexOf("Property " + property) > -1) //$NON-NLS-1$
+			CSSPropertyModel model = new CSSPropertyModel(getProperties(), CSS3_PROPERTIES);
+			if (model.isEmpty())
 			{
-				return true;
+				// the metadata isn't indexed yet, try again next time
+				return model;
 			}
+			fModel = model;
 		}
-		return false;
+		return fModel;
 	}
 
-	private static boolean containsCSS3AtRule(String message)
+	/**
+	 * Compiles the user's filter expressions, along with the messages we always ignore, into a single pattern that
+	 * matches any message to be filtered out. It's recompiled when the filters change.
+	 * 
+	 * @return
+	 */
+	private synchronized Pattern getFilter()
 	{
-		for (String rule : CSS3_AT_RULES)
+		List<String> expressions = getFilters();
+		if (fFilter != null && expressions.equals(fFilterExpressions))
 		{
-			if (message.indexOf(MessageFormat.format("the at-rule {0} is not implemented", rule)) > -1) //$NON-NLS-1$
+			return fFilter;
+		}
+
+		StringBuilder builder = new StringBuilder();
+		for (String expression : expressions)
+		{
+			try
 			{
-				return true;
+				Pattern.compile(expression);
 			}
+			catch (PatternSyntaxException e)
+			{
+				IdeLog.logWarning(CSSCorePlugin.getDefault(),
+						MessageFormat.format(Messages.CSSValidator_ERR_InvalidFilter, expression), e);
+				continue;
+			}
+			appendAlternative(builder, expression);
+		}
+		for (String property : CSS3_PROPERTIES)
+		{
+			appendAlternative(builder, containing("Property " + property)); //$NON-NLS-1$
+		}
+		for (String rule : CSS3_AT_RULES)
+		{
+			appendAlternative(builder,
+					containing(MessageFormat.format("the at-rule {0} is not implemented", rule))); //$NON-NLS-1$
 		}
-		return false;
+		for (String filtered : FILTERED_MESSAGES)
+		{
+			appendAlternative(builder, containing(filtered));
+		}
+
+		fFilterExpressions = new ArrayList<String>(expressions);
+		fFilter = Pattern.compile(builder.toString());
+		return fFilter;
 	}
 
-	private static boolean isFiltered(String message)
+	private static void appendAlternative(StringBuilder builder, String expression)
 	{
-		for (String filtered : FILTERED_MESSAGES)
+		if (builder.length() > 0)
 		{
-			if (message.indexOf(filtered) > -1)
-			{
-				return true;
-			}
+			builder.append('|');
 		}
-		return false;
+		builder.append("(?:").append(expression).append(')'); //$NON-NLS-1$
+	}
+
+	/**
+	 * An expression matching any message that contains the text.
+	 * 
+	 * @param text
+	 * @return
+	 */
+	private static String containing(String text)
+	{
+		return "(?s:.*)" + Pattern.quote(text) + "(?s:.*)"; //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
 	public void buildFile(BuildContext context, IProgressMonitor monitor)
@@ -251,11 +450,31 @@ public class CSSValidator extends AbstractBuildParticipant
 		String source = context.getContents();
 		URI uri = context.getURI();
 		String path = uri.toString();
+		Pattern filter = getFilter();
 
-		StyleSheet sheet = getReport(source, uri);
-		List<String> filters = getFilters();
-		processErrorsInReport(sheet.getErrors(), path, problems, filters);
-		processWarningsInReport(sheet.getWarnings(), path, problems, filters);
+		if (isStrict())
+		{
+			StyleSheet sheet = getReport(source, uri);
+			processErrorsInReport(sheet.getErrors(), path, problems, filter);
+			processWarningsInReport(sheet.getWarnings(), path, problems, filter);
+		}
+		else
+		{
+			CSSPropertyModel model = getModel();
+			IParseRootNode ast = null;
+			try
+			{
+				ast = context.getAST();
+			}
+			catch (CoreException e)
+			{
+				// the parser validator reports the parse errors
+			}
+			if (!model.isEmpty() && ast instanceof CSSParseRootNode)
+			{
+				new DeclarationValidator(model, filter, source, path, problems).visit((CSSParseRootNode) ast);
+			}
+		}
 
 		context.putProblems(ICSSConstants.W3C_PROBLEM, problems);
 	}
@@ -18,7 +18,10 @@ public class Messages extends NLS
 	public static String AptanaCSSStyle_ERR_CreatingNewInstance;
 	public static String AptanaCSSStyle_ERR_UnableToLoadProperties;
 	public static String CSSValidator_ERR_FailToLoadProfile;
+	public static String CSSValidator_ERR_InvalidFilter;
 	public static String CSSValidator_ERR_InvalidPath;
+	public static String CSSValidator_InvalidValue;
+	public static String CSSValidator_UnknownProperty;
 
 	static
 	{
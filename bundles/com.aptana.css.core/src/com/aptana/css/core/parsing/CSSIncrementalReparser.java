@@ -0,0 +1,66 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.css.core.parsing;
+
+import com.aptana.css.core.parsing.ast.CSSRuleNode;
+import com.aptana.parsing.IncrementalReparser;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * Reparses the rule set around an edit. A rule is a valid stylesheet by itself, so its text is handed to the regular
+ * parser unchanged.
+ */
+class CSSIncrementalReparser extends IncrementalReparser
+{
+	private final CSSParser fParser;
+
+	/**
+	 * CSSIncrementalReparser
+	 *
+	 * @param parser
+	 */
+	CSSIncrementalReparser(CSSParser parser)
+	{
+		fParser = parser;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#isReparseBoundary(com.aptana.parsing.ast.IParseNode,
+	 * java.lang.String, int, int)
+	 */
+	@Override
+	protected boolean isReparseBoundary(IParseNode node, String source, int start, int end)
+	{
+		return node.getClass() == CSSRuleNode.class && end < source.length() && source.charAt(end) == '}';
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#parseFragment(java.lang.String, int)
+	 */
+	@Override
+	protected IParseRootNode parseFragment(String source, int offset) throws Exception
+	{
+		// the parser doesn't move comments by a starting offset, so do all the shifting here
+		ParseResult result = fParser.parse(new ParseState(source));
+		IParseRootNode root = result.getRootNode();
+
+		if (root == null || !result.getErrors().isEmpty())
+		{
+			return null;
+		}
+
+		addOffset(root, offset);
+
+		return root;
+	}
+}
@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import com.aptana.css.core.ICSSConstants;
 import java.util.List;
 import com.aptana.parsing.IParser;
+import com.aptana.parsing.IIncrementalParser;
+import com.aptana.parsing.ParseEdit;
 import com.aptana.parsing.ParseResult;
 import com.aptana.css.core.parsing.ast.*;
 import com.aptana.parsing.IParseState;
@@ -22,7 +24,7 @@ import com.aptana.parsing.ast.ParseRootNode;
  * from the grammar specification "CSS.grammar".
  */
 @SuppressWarnings({ "unchecked", "rawtypes" })
-public class CSSParser extends Parser implements IParser {
+public class CSSParser extends Parser implements IIncrementalParser {
 
 	static final ParsingTables PARSING_TABLES = new ParsingTables(
 		"U9pDM7jyJdKO$vxNXjbIKMoLQg5OgzSkREFLsjPCmapt#qqQOTIYt5A4GXRTTACB4Y9HIBe" +
@@ -105,6 +107,16 @@ public class CSSParser extends Parser implements IParser {
         return working.getImmutableResult();
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.aptana.parsing.IIncrementalParser#reparse(com.aptana.parsing.IParseState,
+     * com.aptana.parsing.ast.IParseRootNode, com.aptana.parsing.ParseEdit)
+     */
+    public synchronized ParseResult reparse(IParseState parseState, IParseRootNode previous, ParseEdit edit) throws java.lang.Exception
+    {
+        return new CSSIncrementalReparser(this).reparse(parseState, previous, edit);
+    }
+
 
 	protected synchronized void parse(IParseState parseState, WorkingParseResult working) throws java.lang.Exception
 	{
@@ -9,6 +9,8 @@ package com.aptana.css.core.parsing.ast;
 
 import java.util.List;
 
+import com.aptana.parsing.util.ParseUtil;
+
 /**
  * CSSMsViewPort
  */
@@ -49,6 +51,24 @@ public class CSSMsViewPort extends CSSNode
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#copyNode()
+	 */
+	@Override
+	public CSSMsViewPort copyNode()
+	{
+		CSSMsViewPort result = (CSSMsViewPort) super.copyNode();
+
+		result.fDeclarations = fDeclarations.clone();
+		for (int i = 0; i < fDeclarations.length; i++)
+		{
+			result.fDeclarations[i] = ParseUtil.copy(fDeclarations[i]);
+		}
+
+		return result;
+	}
+
 	/**
 	 * getDeclarations
 	 * 
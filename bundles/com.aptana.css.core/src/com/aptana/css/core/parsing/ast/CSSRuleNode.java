@@ -11,6 +11,7 @@ import java.util.List;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
 
 public class CSSRuleNode extends CSSNode
 {
@@ -77,6 +78,30 @@ public class CSSRuleNode extends CSSNode
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#copyNode()
+	 */
+	@Override
+	public CSSRuleNode copyNode()
+	{
+		CSSRuleNode result = (CSSRuleNode) super.copyNode();
+
+		result.fSelectors = fSelectors.clone();
+		for (int i = 0; i < fSelectors.length; i++)
+		{
+			result.fSelectors[i] = ParseUtil.copy(fSelectors[i]);
+		}
+
+		result.fDeclarations = fDeclarations.clone();
+		for (int i = 0; i < fDeclarations.length; i++)
+		{
+			result.fDeclarations[i] = ParseUtil.copy(fDeclarations[i]);
+		}
+
+		return result;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.css.parsing.ast.CSSNode#equals(java.lang.Object)
@@ -17,4 +17,10 @@ public interface IPreferenceConstants
 	 */
 	String CSS_INDEX_VERSION = "CSS_INDEX_VERSION"; //$NON-NLS-1$
 
+	/**
+	 * The value is a boolean used to indicate if the CSS Stylesheet validator runs the W3C validator over the source,
+	 * rather than checking the parsed declarations against our CSS metadata.
+	 */
+	String W3C_STRICT_VALIDATION = "W3C_STRICT_VALIDATION"; //$NON-NLS-1$
+
 }
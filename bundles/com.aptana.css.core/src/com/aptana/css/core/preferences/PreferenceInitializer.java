@@ -34,6 +34,8 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer
 		prefs.putBoolean(PreferenceUtil.getEnablementPreferenceKey(CSSValidator.ID, BuildType.RECONCILE), true);
 		prefs.put(PreferenceUtil.getFiltersKey(CSSValidator.ID),
 				StringUtil.join(AbstractBuildParticipant.FILTER_DELIMITER, CSSValidator.DEFAULT_FILTERS));
+		// Check against our metadata rather than running the W3C validator
+		prefs.putBoolean(IPreferenceConstants.W3C_STRICT_VALIDATION, false);
 
 		// Set up CSS Parser validator to be on for build and reconcile
 		prefs.putBoolean(PreferenceUtil.getEnablementPreferenceKey(CSSParserValidator.ID, BuildType.BUILD), true);
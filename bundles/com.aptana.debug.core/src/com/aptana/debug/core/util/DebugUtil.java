@@ -10,10 +10,12 @@ package com.aptana.debug.core.util;
 import java.io.IOException;
 import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.net.ServerSocket;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -144,10 +146,18 @@ public final class DebugUtil
 		return port;
 	}
 
+	/**
+	 * Opens a server socket through a channel, so the sockets it accepts can also be used with non-blocking I/O.
+	 * 
+	 * @param port
+	 * @return
+	 * @throws IOException
+	 */
 	public static ServerSocket allocateServerSocket(int port) throws IOException
 	{
-		ServerSocket socket = new ServerSocket(port);
+		ServerSocket socket = ServerSocketChannel.open().socket();
 		socket.setReuseAddress(true);
+		socket.bind(new InetSocketAddress(port));
 		if (!EclipseUtil.isDebugOptionEnabled((IDebugScopes.DEBUG)))
 		{
 			socket.setSoTimeout(SOCKET_TIMEOUT);
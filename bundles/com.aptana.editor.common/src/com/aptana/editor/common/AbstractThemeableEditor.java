@@ -282,6 +282,13 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 	 */
 	private Object modificationStampLock = new Object();
 
+	/**
+	 * The source and result of the last parse, which the next parse updates incrementally. Guarded by lastParseLock.
+	 */
+	private String lastParsedSource;
+	private ParseResult lastParseResult;
+	private final Object lastParseLock = new Object();
+
 	/**
 	 * AbstractThemeableEditor
 	 */
@@ -361,10 +368,21 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 	protected void installOccurrencesUpdater()
 	{
 		// Initialize the occurrences annotations marker
-		occurrencesUpdater = new CommonOccurrencesUpdater(this);
+		occurrencesUpdater = createOccurrencesUpdater();
 		occurrencesUpdater.initialize(getPreferenceStore());
 	}
 
+	/**
+	 * Creates the updater marking occurrences of the selected word. Subclasses may return one that knows what the
+	 * language's names refer to.
+	 * 
+	 * @return
+	 */
+	protected CommonOccurrencesUpdater createOccurrencesUpdater()
+	{
+		return new CommonOccurrencesUpdater(this);
+	}
+
 	@Override
 	protected void initializeDragAndDrop(ISourceViewer viewer)
 	{
@@ -1160,6 +1178,11 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 			lastAstForModificationStamp = null;
 
 		}
+		synchronized (lastParseLock)
+		{
+			lastParsedSource = null;
+			lastParseResult = null;
+		}
 		super.doSetInput(input);
 	}
 
@@ -1183,11 +1206,33 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 	}
 
 	/**
-	 * Override this method to calculate the ast (while maintaining the document time based cache).
+	 * Override this method to calculate the ast (while maintaining the document time based cache). By default the
+	 * new ast is built from the previous one when the content type's parser supports incremental reparsing; the
+	 * previous ast itself is never modified, since getAST() has already handed it out.
 	 */
 	protected ParseResult doGetAST(IDocument document) throws Exception
 	{
-		return ParserPoolFactory.parse(getContentType(), document.get());
+		String source = document.get();
+		String previousSource;
+		ParseResult previousResult;
+
+		synchronized (lastParseLock)
+		{
+			// hand the previous tree to this parse only, a concurrent one starts from scratch
+			previousSource = lastParsedSource;
+			previousResult = lastParseResult;
+			lastParsedSource = null;
+			lastParseResult = null;
+		}
+
+		ParseResult result = ParserPoolFactory.reparse(getContentType(), source, previousSource, previousResult);
+
+		synchronized (lastParseLock)
+		{
+			lastParsedSource = source;
+			lastParseResult = result;
+		}
+		return result;
 	}
 
 	/**
@@ -7,7 +7,9 @@
  */
 package com.aptana.editor.common;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -21,10 +23,12 @@ import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISynchronizable;
 import org.eclipse.jface.text.ITextInputListener;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.IAnnotationModel;
 import org.eclipse.jface.text.source.IAnnotationModelExtension;
@@ -41,6 +45,7 @@ import org.eclipse.ui.texteditor.IDocumentProvider;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.editor.common.preferences.IPreferenceConstants;
+import com.aptana.editor.common.text.WordOccurrenceIndex;
 
 /**
  * CommonOccurrenceUpdater
@@ -73,6 +78,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			if (oldInput != null) {
 				oldInput.removeDocumentListener(this);
 			}
+			wordIndex.disconnect();
 		}
 
 		/*
@@ -83,6 +89,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			if (newInput != null) {
 				newInput.addDocumentListener(this);
 			}
+			wordIndex.connect(newInput);
 		}
 
 		/**
@@ -99,6 +106,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			if (document != null) {
 				document.addDocumentListener(this);
 			}
+			wordIndex.connect(document);
 		}
 
 		/**
@@ -115,6 +123,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			if (document != null) {
 				document.removeDocumentListener(this);
 			}
+			wordIndex.disconnect();
 		}
 
 	}
@@ -200,22 +209,16 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 				String word = getWord();
 
 				if (word != null && word.length() > 0) {
-					String source = document.get();
-					Pattern wordPattern = createWordPattern(word);
-					Matcher matcher = wordPattern.matcher(source);
-
-					while (matcher.find()) {
-						if (monitor.isCanceled()) {
-							status = Status.CANCEL_STATUS;
-							break;
+					List<IRegion> occurrences = findOccurrences(document, selection, word, monitor);
+
+					if (occurrences == null) {
+						status = Status.CANCEL_STATUS;
+					} else {
+						for (IRegion occurrence : occurrences) {
+							// @formatter:off
+							annotationMap.put(new Annotation(ANNOTION_ID, false, ANNOTION_DESCRIPTION), new Position(occurrence.getOffset(), occurrence.getLength()));
+							// @formatter:on
 						}
-
-						int start = matcher.start();
-						int length = matcher.end() - start;
-
-						// @formatter:off
-						annotationMap.put(new Annotation(ANNOTION_ID, false, ANNOTION_DESCRIPTION), new Position(start, length));
-						// @formatter:on
 					}
 				}
 			}
@@ -247,6 +250,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 	private Annotation[] annotations;
 	private FindOccurrencesJob findOccurrencesJob;
 	private CancelerJob cancelerJob;
+	private final WordOccurrenceIndex wordIndex;
 
 	/**
 	 * CommonOccurrencesUpdater
@@ -255,6 +259,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 	 */
 	public CommonOccurrencesUpdater(AbstractThemeableEditor editor) {
 		this.editor = editor;
+		this.wordIndex = new WordOccurrenceIndex();
 	}
 
 	/**
@@ -279,6 +284,53 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		return Pattern.compile(regexSource);
 	}
 
+	/**
+	 * Returns the regions to mark for the selection, in document order, or null if the search was canceled. The word
+	 * is the selection grown to whole words at both ends. When it is a single word, the occurrences come from the
+	 * word index kept for the document; anything else is searched for in the document's text.
+	 * 
+	 * @param document
+	 * @param selection
+	 * @param word
+	 * @param monitor
+	 * @return
+	 */
+	protected List<IRegion> findOccurrences(IDocument document, ITextSelection selection, String word,
+			IProgressMonitor monitor) {
+		if (WordOccurrenceIndex.isWord(word) && wordIndex.getDocument() == document) {
+			List<IRegion> occurrences = wordIndex.getOccurrences(word);
+
+			if (occurrences != null) {
+				return occurrences;
+			}
+		}
+
+		return searchOccurrences(document, word, monitor);
+	}
+
+	/**
+	 * searchOccurrences
+	 * 
+	 * @param document
+	 * @param word
+	 * @param monitor
+	 * @return
+	 */
+	private List<IRegion> searchOccurrences(IDocument document, String word, IProgressMonitor monitor) {
+		List<IRegion> result = new ArrayList<IRegion>();
+		Matcher matcher = createWordPattern(word).matcher(document.get());
+
+		while (matcher.find()) {
+			if (monitor.isCanceled()) {
+				return null;
+			}
+
+			result.add(new Region(matcher.start(), matcher.end() - matcher.start()));
+		}
+
+		return result;
+	}
+
 	/**
 	 * getAnnotationModel
 	 * 
@@ -341,6 +393,15 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		return editor.getDocumentProvider();
 	}
 
+	/**
+	 * getEditor
+	 * 
+	 * @return
+	 */
+	protected AbstractThemeableEditor getEditor() {
+		return editor;
+	}
+
 	/**
 	 * getEditorInput
 	 * 
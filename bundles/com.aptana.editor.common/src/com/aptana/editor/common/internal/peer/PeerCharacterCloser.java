@@ -9,9 +9,7 @@ package com.aptana.editor.common.internal.peer;
 
 import java.text.MessageFormat;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Stack;
 
 import org.eclipse.jface.text.BadLocationException;
@@ -41,11 +39,8 @@ import org.eclipse.ui.texteditor.link.EditorLinkedModeUI;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.editor.common.CommonEditorPlugin;
-import com.aptana.scope.IScopeSelector;
-import com.aptana.scope.ScopeSelector;
 import com.aptana.scripting.model.BundleManager;
 import com.aptana.scripting.model.SmartTypingPairsElement;
-import com.aptana.scripting.model.filters.ScopeFilter;
 
 /**
  * A class that can be installed on a ITextViewer and will auto-insert the closing peer character for typical paired
@@ -224,29 +219,12 @@ public class PeerCharacterCloser implements VerifyKeyListener, ILinkedModeListen
 
 	protected List<Character> getPairs(String scope)
 	{
-		ScopeFilter filter = new ScopeFilter(scope);
-		List<SmartTypingPairsElement> pairs = BundleManager.getInstance().getPairs(filter);
-		if (pairs == null || pairs.isEmpty())
+		SmartTypingPairsElement pairs = BundleManager.getInstance().getBestMatchingPairs(scope);
+		if (pairs == null)
 		{
 			return Collections.emptyList();
 		}
-		Map<IScopeSelector, SmartTypingPairsElement> map = new HashMap<IScopeSelector, SmartTypingPairsElement>();
-		for (SmartTypingPairsElement pe : pairs)
-		{
-			IScopeSelector ss = pe.getScopeSelector();
-			if (ss == null)
-			{
-				continue;
-			}
-			map.put(ss, pe);
-		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
-		SmartTypingPairsElement yay = map.get(bestMatch);
-		if (yay == null)
-		{
-			return Collections.emptyList();
-		}
-		return yay.getPairs();
+		return pairs.getPairs();
 	}
 
 	protected String getScopeAtOffset(IDocument document, final int offset) throws BadLocationException
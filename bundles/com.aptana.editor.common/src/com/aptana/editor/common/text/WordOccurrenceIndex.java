@@ -0,0 +1,360 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+/**
+ * The words of a document, hashed to the lines they occur on, so finding every occurrence of a word doesn't mean
+ * scanning the whole document. A word is a run of characters for which {@link Character#isUnicodeIdentifierPart(char)}
+ * holds.
+ * <p>
+ * Once connected, the index follows the document's changes by re-reading just the lines an edit touched. Lines hold
+ * their words by offset within the line, so edits never have to shift the offsets of later lines.
+ * </p>
+ */
+public class WordOccurrenceIndex implements IDocumentListener
+{
+	/**
+	 * The words of one line and where they start within it.
+	 */
+	private static class Line
+	{
+		int number;
+		int[] starts;
+		String[] words;
+	}
+
+	private static final Comparator<Line> LINE_ORDER = new Comparator<Line>()
+	{
+		public int compare(Line o1, Line o2)
+		{
+			return o1.number - o2.number;
+		}
+	};
+
+	private IDocument document;
+	private final List<Line> lines;
+	private final Map<String, Set<Line>> linesByWord;
+
+	/**
+	 * The lines the pending change replaces, and whether the index is out of step with the document.
+	 */
+	private int firstLine;
+	private int lastLine;
+	private boolean stale;
+
+	/**
+	 * WordOccurrenceIndex
+	 */
+	public WordOccurrenceIndex()
+	{
+		this.lines = new ArrayList<Line>();
+		this.linesByWord = new HashMap<String, Set<Line>>();
+	}
+
+	/**
+	 * Returns true if the text is a single word, i.e. something this index can look up.
+	 *
+	 * @param text
+	 * @return
+	 */
+	public static boolean isWord(String text)
+	{
+		if (text == null || text.length() == 0)
+		{
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (!Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Indexes the document and starts following its changes. Disconnects from any previous document first.
+	 *
+	 * @param document
+	 */
+	public synchronized void connect(IDocument document)
+	{
+		disconnect();
+		if (document != null)
+		{
+			this.document = document;
+			document.addDocumentListener(this);
+			rebuild();
+		}
+	}
+
+	/**
+	 * Stops following the document and drops its words.
+	 */
+	public synchronized void disconnect()
+	{
+		if (document != null)
+		{
+			document.removeDocumentListener(this);
+			document = null;
+		}
+		lines.clear();
+		linesByWord.clear();
+		stale = false;
+	}
+
+	/**
+	 * @return The document indexed, or null
+	 */
+	public synchronized IDocument getDocument()
+	{
+		return document;
+	}
+
+	/**
+	 * Returns the regions of all occurrences of the word, in document order, or null if the index can't answer right
+	 * now, e.g. because the document is in the middle of a change.
+	 *
+	 * @param word
+	 * @return
+	 */
+	public synchronized List<IRegion> getOccurrences(String word)
+	{
+		if (document == null || stale)
+		{
+			return null;
+		}
+
+		Set<Line> wordLines = linesByWord.get(word);
+		if (wordLines == null)
+		{
+			return new ArrayList<IRegion>(0);
+		}
+
+		List<Line> sorted = new ArrayList<Line>(wordLines);
+		Collections.sort(sorted, LINE_ORDER);
+		List<IRegion> result = new ArrayList<IRegion>();
+		try
+		{
+			for (Line line : sorted)
+			{
+				int lineOffset = document.getLineOffset(line.number);
+				for (int i = 0; i < line.words.length; i++)
+				{
+					if (word.equals(line.words[i]))
+					{
+						result.add(new Region(lineOffset + line.starts[i], word.length()));
+					}
+				}
+			}
+		}
+		catch (BadLocationException e)
+		{
+			// we're out of step with the document, start over
+			rebuild();
+			return null;
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentAboutToBeChanged(DocumentEvent event)
+	{
+		if (event.getDocument() != document)
+		{
+			return;
+		}
+		try
+		{
+			firstLine = document.getLineOfOffset(event.getOffset());
+			lastLine = document.getLineOfOffset(event.getOffset() + event.getLength());
+		}
+		catch (BadLocationException e)
+		{
+			firstLine = -1;
+		}
+		stale = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentChanged(DocumentEvent event)
+	{
+		if (event.getDocument() != document)
+		{
+			return;
+		}
+		if (firstLine < 0 || lastLine >= lines.size())
+		{
+			rebuild();
+			return;
+		}
+
+		String text = event.getText();
+		int newLastLine;
+		try
+		{
+			newLastLine = document.getLineOfOffset(event.getOffset() + ((text == null) ? 0 : text.length()));
+		}
+		catch (BadLocationException e)
+		{
+			rebuild();
+			return;
+		}
+
+		// drop the replaced lines, then read their replacements
+		List<Line> replaced = lines.subList(firstLine, lastLine + 1);
+		for (Line line : replaced)
+		{
+			removeWords(line);
+		}
+		replaced.clear();
+
+		List<Line> added = new ArrayList<Line>(newLastLine - firstLine + 1);
+		for (int number = firstLine; number <= newLastLine; number++)
+		{
+			Line line = readLine(number);
+			if (line == null)
+			{
+				rebuild();
+				return;
+			}
+			added.add(line);
+		}
+		lines.addAll(firstLine, added);
+
+		if (newLastLine != lastLine)
+		{
+			for (int i = newLastLine + 1; i < lines.size(); i++)
+			{
+				lines.get(i).number = i;
+			}
+		}
+		stale = false;
+	}
+
+	private void rebuild()
+	{
+		lines.clear();
+		linesByWord.clear();
+		stale = false;
+
+		int count = document.getNumberOfLines();
+		for (int number = 0; number < count; number++)
+		{
+			Line line = readLine(number);
+			if (line == null)
+			{
+				// the document changed under us; the change's events will get us back in step
+				lines.clear();
+				linesByWord.clear();
+				stale = true;
+				return;
+			}
+			lines.add(line);
+		}
+	}
+
+	/**
+	 * Reads and hashes the words of a line, or returns null if the line doesn't exist.
+	 */
+	private Line readLine(int number)
+	{
+		String source;
+		try
+		{
+			IRegion region = document.getLineInformation(number);
+			source = document.get(region.getOffset(), region.getLength());
+		}
+		catch (BadLocationException e)
+		{
+			return null;
+		}
+
+		List<String> words = new ArrayList<String>();
+		List<Integer> starts = new ArrayList<Integer>();
+		int length = source.length();
+		int i = 0;
+		while (i < length)
+		{
+			if (Character.isUnicodeIdentifierPart(source.charAt(i)))
+			{
+				int start = i;
+				while (i < length && Character.isUnicodeIdentifierPart(source.charAt(i)))
+				{
+					i++;
+				}
+				words.add(source.substring(start, i));
+				starts.add(start);
+			}
+			else
+			{
+				i++;
+			}
+		}
+
+		Line line = new Line();
+		line.number = number;
+		line.words = words.toArray(new String[words.size()]);
+		line.starts = new int[starts.size()];
+		for (int j = 0; j < line.starts.length; j++)
+		{
+			line.starts[j] = starts.get(j);
+		}
+
+		for (String word : line.words)
+		{
+			Set<Line> wordLines = linesByWord.get(word);
+			if (wordLines == null)
+			{
+				wordLines = new HashSet<Line>();
+				linesByWord.put(word, wordLines);
+			}
+			wordLines.add(line);
+		}
+		return line;
+	}
+
+	private void removeWords(Line line)
+	{
+		for (String word : line.words)
+		{
+			Set<Line> wordLines = linesByWord.get(word);
+			if (wordLines != null)
+			{
+				wordLines.remove(line);
+				if (wordLines.isEmpty())
+				{
+					linesByWord.remove(word);
+				}
+			}
+		}
+	}
+}
@@ -126,7 +126,8 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 
 	public void reconcile(DirtyRegion dirtyRegion, IRegion subRegion)
 	{
-		// we can't do incremental yet
+		// Queued dirty regions are merged approximations of the edits, so rather than using them the editor diffs the
+		// sources when fullReconcile() asks it for the AST, and reparses only the code around the change.
 	}
 
 	public void setDocument(IDocument document)
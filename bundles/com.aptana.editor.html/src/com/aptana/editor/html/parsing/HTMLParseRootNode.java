@@ -17,12 +17,27 @@ import com.aptana.parsing.ast.ParseRootNode;
  */
 public class HTMLParseRootNode extends ParseRootNode
 {
+	/**
+	 * The parsed script and style blocks, which the next reparse in the same editor may recycle. Only set on trees
+	 * built by HTMLParser#reparse().
+	 */
+	private transient HTMLSubLanguageCache fSubLanguageCache;
 
 	HTMLParseRootNode(int start, int end)
 	{
 		super(new Symbol[0], start, end);
 	}
 
+	HTMLSubLanguageCache getSubLanguageCache()
+	{
+		return fSubLanguageCache;
+	}
+
+	void setSubLanguageCache(HTMLSubLanguageCache cache)
+	{
+		fSubLanguageCache = cache;
+	}
+
 	public String getLanguage()
 	{
 		return IHTMLConstants.CONTENT_TYPE_HTML;
@@ -15,10 +15,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.rules.ITokenScanner;
 
 import beaver.Scanner.Exception;
@@ -29,6 +36,7 @@ import com.aptana.css.core.ICSSConstants;
 import com.aptana.css.core.parsing.ast.CSSDeclarationNode;
 import com.aptana.css.core.parsing.ast.CSSRuleNode;
 import com.aptana.editor.html.core.IHTMLConstants;
+import com.aptana.editor.html.parsing.HTMLSubLanguageCache.Block;
 import com.aptana.editor.html.parsing.ast.HTMLCommentNode;
 import com.aptana.editor.html.parsing.ast.HTMLElementNode;
 import com.aptana.editor.html.parsing.ast.HTMLNode;
@@ -39,20 +47,150 @@ import com.aptana.editor.html.parsing.lexer.HTMLTokens;
 import com.aptana.js.core.IJSConstants;
 import com.aptana.parsing.AbstractParser;
 import com.aptana.parsing.IParseState;
+import com.aptana.parsing.IRecyclingParser;
+import com.aptana.parsing.ParseEdit;
 import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ParserPoolFactory;
 import com.aptana.parsing.WorkingParseResult;
 import com.aptana.parsing.ast.IParseError;
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
 import com.aptana.parsing.ast.ParseError;
 import com.aptana.parsing.ast.ParseRootNode;
 import com.aptana.parsing.lexer.IRange;
 import com.aptana.parsing.lexer.Range;
 import com.aptana.parsing.util.ParseUtil;
 
-public class HTMLParser extends AbstractParser
+public class HTMLParser extends AbstractParser implements IRecyclingParser
 {
+	/**
+	 * A script or style block being parsed, possibly on another thread, until its AST is added to the tree.
+	 */
+	private static class SubLanguageParse implements Callable<Block>
+	{
+		private final HTMLSpecialNode node;
+		private final String language;
+		private final String text;
+		private final int start;
+		private final int end;
+		private final boolean exclusive;
+		private String key;
+		private Block block;
+		private FutureTask<Block> task;
+
+		SubLanguageParse(HTMLSpecialNode node, String language, String text, int start, int end, boolean exclusive)
+		{
+			this.node = node;
+			this.language = language;
+			this.text = text;
+			this.start = start;
+			this.end = end;
+			this.exclusive = exclusive;
+		}
+
+		public Block call() throws java.lang.Exception
+		{
+			try
+			{
+				ParseState subParseState = new ParseState(text, start);
+				// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
+				// A tree of a reparse gets reparented into a tree that is handed out, so it mustn't be shared through
+				// the cache
+				ParseResult subParseResult = exclusive ? ParserPoolFactory.parseUncached(language, subParseState)
+						: ParserPoolFactory.parse(language, subParseState);
+				IParseNode root = subParseResult.getRootNode();
+				List<IParseError> errors = new ArrayList<IParseError>(subParseResult.getErrors().size());
+				for (IParseError subError : subParseResult.getErrors())
+				{
+					// Shift the line/offsets based on the starting offset/line of the sub-language!
+					errors.add(new ParseError(language, start + subError.getOffset(), subError.getLength(), subError
+							.getMessage(), subError.getSeverity()));
+				}
+				if (root == null)
+				{
+					root = new HTMLTextNode(text, start, end);
+				}
+				return new Block(start, root, errors);
+			}
+			catch (java.lang.Exception e)
+			{
+				return null;
+			}
+		}
+
+		/**
+		 * Start the parse in the background if it's worth it, or do it right away.
+		 */
+		void schedule()
+		{
+			if (text.length() < MINIMUM_CHARS_TO_PARSE_IN_BACKGROUND)
+			{
+				block = call();
+			}
+			else
+			{
+				task = new FutureTask<Block>(this);
+				getSubLanguageExecutor().execute(task);
+			}
+		}
+
+		/**
+		 * Wait for the parse, or do it on the calling thread when no worker picked it up yet.
+		 * 
+		 * @return The parsed block or null if the parse failed
+		 */
+		Block join()
+		{
+			if (task != null)
+			{
+				// does nothing if a worker got to it first
+				task.run();
+				try
+				{
+					block = task.get();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				catch (ExecutionException e)
+				{
+					// call() doesn't throw
+				}
+				task = null;
+			}
+			return block;
+		}
+	}
+
+	/**
+	 * Blocks shorter than this are parsed on the parsing thread, since handing them off would cost more than it saves.
+	 */
+	private static final int MINIMUM_CHARS_TO_PARSE_IN_BACKGROUND = 2048;
+
+	/**
+	 * Parses script and style blocks while the markup is being scanned. Lazily created.
+	 */
+	private static ExecutorService fgSubLanguageExecutor;
+
+	private static synchronized ExecutorService getSubLanguageExecutor()
+	{
+		if (fgSubLanguageExecutor == null)
+		{
+			int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			fgSubLanguageExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "HTML Sub-language Parser"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return fgSubLanguageExecutor;
+	}
 
 	private static final String ATTR_TYPE = "type"; //$NON-NLS-1$
 	private static final String ATTR_LANG = "language"; //$NON-NLS-1$
@@ -78,6 +216,45 @@ public class HTMLParser extends AbstractParser
 	private List<IParseNode> fCommentNodes;
 	private boolean previousSymbolSkipped;
 	private WorkingParseResult fWorkingParseResult;
+	private List<SubLanguageParse> fSubLanguageParses;
+
+	/**
+	 * The blocks of the previous tree that may be recycled, and the blocks of the tree being built. Only set while
+	 * reparsing.
+	 */
+	private HTMLSubLanguageCache fPreviousBlocks;
+	private HTMLSubLanguageCache fBlocks;
+
+	/**
+	 * Parses the whole source again, but takes the ASTs of script and style blocks whose content did not change from
+	 * the previous tree's cache instead of parsing them. Blocks are matched by content rather than through the edit,
+	 * so a block also gets recycled when it only moved, in which case it's copied to its new offset. Blocks that stayed
+	 * in place are shared with the previous tree. The trees returned by this method keep their blocks around for the
+	 * next reparse. The previous tree and its cache are left as they are.
+	 */
+	public synchronized ParseResult reparse(IParseState parseState, IParseRootNode previous, ParseEdit edit)
+			throws java.lang.Exception
+	{
+		if (previous instanceof HTMLParseRootNode)
+		{
+			HTMLSubLanguageCache cache = ((HTMLParseRootNode) previous).getSubLanguageCache();
+			if (cache != null)
+			{
+				// blocks are taken out of a copy, the previous tree may be reparsed again
+				fPreviousBlocks = new HTMLSubLanguageCache(cache);
+			}
+		}
+		fBlocks = new HTMLSubLanguageCache();
+		try
+		{
+			return parse(parseState);
+		}
+		finally
+		{
+			fPreviousBlocks = null;
+			fBlocks = null;
+		}
+	}
 
 	/**
 	 * parse
@@ -88,6 +265,7 @@ public class HTMLParser extends AbstractParser
 		fScanner = new HTMLParserScanner();
 		fElementStack = new Stack<IParseNode>();
 		fCommentNodes = new ArrayList<IParseNode>();
+		fSubLanguageParses = new ArrayList<SubLanguageParse>();
 		fWorkingParseResult = working;
 
 		String source = parseState.getSource();
@@ -110,11 +288,14 @@ public class HTMLParser extends AbstractParser
 			fCurrentElement = root;
 
 			parseAll(source);
+			joinSubLanguageParses();
 			root.setCommentNodes(fCommentNodes.toArray(new IParseNode[fCommentNodes.size()]));
+			root.setSubLanguageCache(fBlocks);
 		}
 		finally
 		{
 			// clear for garbage collection
+			fSubLanguageParses = null;
 			fWorkingParseResult = null;
 			fMonitor = null;
 			fScanner = null;
@@ -180,14 +361,17 @@ public class HTMLParser extends AbstractParser
 			((HTMLTokenScanner) tokenScanner).setInsideSpecialTag(false);
 		}
 
-		IParseNode[] nested = getParseResult(language, start, end);
+		HTMLSpecialNode node = null;
 		if (fCurrentElement != null)
 		{
-			HTMLSpecialNode node = new HTMLSpecialNode(startTag, nested, startTag.getStart(), fCurrentSymbol.getEnd());
+			// the nested AST is filled in once all the blocks are parsed
+			node = new HTMLSpecialNode(startTag, HTMLParserConstants.NO_PARSE_NODES, startTag.getStart(),
+					fCurrentSymbol.getEnd());
 			node.setEndNode(fCurrentSymbol.getStart(), fCurrentSymbol.getEnd());
 			parseAttribute(node, startTag);
 			fCurrentElement.addChild(node);
 		}
+		startSubLanguageParse(node, language, start, end);
 	}
 
 	protected HTMLElementNode processCurrentTag()
@@ -269,35 +453,84 @@ public class HTMLParser extends AbstractParser
 		return false;
 	}
 
-	private IParseNode[] getParseResult(String language, int start, int end)
+	/**
+	 * Start parsing a script or style block, unless the previous tree has a block with the same content.
+	 * 
+	 * @param node
+	 *            The node to add the block's AST to, may be null
+	 * @param language
+	 * @param start
+	 * @param end
+	 */
+	private void startSubLanguageParse(HTMLSpecialNode node, String language, int start, int end)
 	{
-		if (start <= end)
+		if (start > end)
 		{
-			try
+			return;
+		}
+
+		String text;
+		try
+		{
+			text = fScanner.getSource().get(start, end - start + 1);
+		}
+		catch (BadLocationException e)
+		{
+			return;
+		}
+
+		if (language == null)
+		{
+			// nothing to parse it with
+			if (node != null)
 			{
-				String text = fScanner.getSource().get(start, end - start + 1);
+				node.setChildren(new IParseNode[] { new HTMLTextNode(text, start, end) });
+			}
+			return;
+		}
 
-				ParseState subParseState = new ParseState(text,start);
-				// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
-				ParseResult subParseResult = ParserPoolFactory.parse(language, subParseState);
-				IParseNode node = subParseResult.getRootNode();
-				for (IParseError subError : subParseResult.getErrors())
-				{
-					// Shift the line/offsets based on the starting offset/line of the sub-language!
-					fWorkingParseResult.addError(new ParseError(language, start + subError.getOffset(), subError
-							.getLength(), subError.getMessage(), subError.getSeverity()));
-				}
-				if (node == null)
-				{
-					node = new HTMLTextNode(text, start, end);
-				}
-				return new IParseNode[] { node };
+		SubLanguageParse parse = new SubLanguageParse(node, language, text, start, end, fBlocks != null);
+		if (fBlocks != null)
+		{
+			parse.key = HTMLSubLanguageCache.getKey(language, text);
+			Block previous = (fPreviousBlocks == null) ? null : fPreviousBlocks.remove(parse.key);
+			if (previous != null)
+			{
+				parse.block = previous.moveTo(start);
 			}
-			catch (java.lang.Exception e)
+		}
+		if (parse.block == null)
+		{
+			parse.schedule();
+		}
+		fSubLanguageParses.add(parse);
+	}
+
+	/**
+	 * Add the ASTs and errors of all the script and style blocks, in document order.
+	 */
+	private void joinSubLanguageParses()
+	{
+		for (SubLanguageParse parse : fSubLanguageParses)
+		{
+			Block block = parse.join();
+			if (block == null)
+			{
+				continue;
+			}
+			if (parse.node != null)
+			{
+				parse.node.setChildren(new IParseNode[] { block.node });
+			}
+			for (IParseError error : block.errors)
+			{
+				fWorkingParseResult.addError(error);
+			}
+			if (fBlocks != null)
 			{
+				fBlocks.put(parse.key, block);
 			}
 		}
-		return HTMLParserConstants.NO_PARSE_NODES;
 	}
 
 	private void processComment()
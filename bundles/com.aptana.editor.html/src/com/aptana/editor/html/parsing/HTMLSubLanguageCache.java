@@ -0,0 +1,184 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.html.parsing;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseError;
+import com.aptana.parsing.util.ParseUtil;
+
+/**
+ * The ASTs of the script and style blocks of an HTML document, keyed by a digest of their language and text. Each
+ * block can be taken out once, to be added to the tree of the next version of the document.
+ * <p>
+ * The blocks are the very ones of the document's tree, and trees are never modified once handed out. So a block that
+ * didn't move is shared by the trees (and caches) of successive versions of the document, its AST having the newest
+ * tree for parent. Only a block that moved gets copied, see {@link Block#moveTo(int)}.
+ * </p>
+ */
+class HTMLSubLanguageCache
+{
+	/**
+	 * A parsed block: its AST and errors, located at the block's offset. Blocks are immutable.
+	 */
+	static class Block
+	{
+		final int offset;
+		final IParseNode node;
+		final List<IParseError> errors;
+
+		Block(int offset, IParseNode node, List<IParseError> errors)
+		{
+			this.offset = offset;
+			this.node = node;
+			this.errors = errors;
+		}
+
+		/**
+		 * Get the block located at the specified offset: this one if it's already there, or a copy of its AST and
+		 * errors moved there. The block itself is left as is.
+		 * 
+		 * @param newOffset
+		 * @return The block or null if the AST couldn't be copied
+		 */
+		Block moveTo(int newOffset)
+		{
+			int delta = newOffset - offset;
+			if (delta == 0)
+			{
+				return this;
+			}
+
+			IParseNode copy = ParseUtil.copy(node);
+			if (copy == null)
+			{
+				return null;
+			}
+
+			ParseUtil.addOffset(copy, delta);
+			if (copy instanceof IParseRootNode)
+			{
+				for (IParseNode comment : ((IParseRootNode) copy).getCommentNodes())
+				{
+					ParseUtil.addOffset(comment, delta);
+				}
+			}
+
+			List<IParseError> moved = new ArrayList<IParseError>(errors.size());
+			for (IParseError error : errors)
+			{
+				moved.add(new ParseError(error.getLangauge(), error.getOffset() + delta, error.getLength(), error
+						.getMessage(), error.getSeverity()));
+			}
+			return new Block(newOffset, copy, moved);
+		}
+	}
+
+	private final Map<String, LinkedList<Block>> fBlocks = new HashMap<String, LinkedList<Block>>();
+
+	HTMLSubLanguageCache()
+	{
+	}
+
+	/**
+	 * Make a cache holding the same blocks as the specified one, so blocks can be taken out of it while the original
+	 * stays with its tree.
+	 * 
+	 * @param cache
+	 */
+	HTMLSubLanguageCache(HTMLSubLanguageCache cache)
+	{
+		for (Map.Entry<String, LinkedList<Block>> entry : cache.fBlocks.entrySet())
+		{
+			fBlocks.put(entry.getKey(), new LinkedList<Block>(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Compute the key of a block of the specified language and text.
+	 * 
+	 * @param language
+	 * @param text
+	 * @return
+	 */
+	static String getKey(String language, String text)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			digest.update(language.getBytes(IOUtil.UTF_8));
+			digest.update((byte) 0);
+			digest.update(text.getBytes(IOUtil.UTF_8));
+
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest())
+			{
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+				builder.append(Character.forDigit(b & 0xF, 16));
+			}
+			return builder.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Add a block.
+	 * 
+	 * @param key
+	 * @param block
+	 */
+	void put(String key, Block block)
+	{
+		LinkedList<Block> blocks = fBlocks.get(key);
+		if (blocks == null)
+		{
+			blocks = new LinkedList<Block>();
+			fBlocks.put(key, blocks);
+		}
+		blocks.add(block);
+	}
+
+	/**
+	 * Take out a block with the specified key, so identical blocks are not handed out twice.
+	 * 
+	 * @param key
+	 * @return The block or null if there is none
+	 */
+	Block remove(String key)
+	{
+		LinkedList<Block> blocks = fBlocks.get(key);
+		if (blocks == null)
+		{
+			return null;
+		}
+		Block block = blocks.removeFirst();
+		if (blocks.isEmpty())
+		{
+			fBlocks.remove(key);
+		}
+		return block;
+	}
+}
@@ -35,12 +35,14 @@ import com.aptana.core.util.replace.RegexPatternReplacer;
 import com.aptana.core.util.replace.SimpleTextPatternReplacer;
 import com.aptana.editor.common.AbstractThemeableEditor;
 import com.aptana.editor.common.CommonEditorPlugin;
+import com.aptana.editor.common.CommonOccurrencesUpdater;
 import com.aptana.editor.common.text.reconciler.IFoldingComputer;
 import com.aptana.editor.js.actions.IJSActions;
 import com.aptana.editor.js.actions.OpenDeclarationAction;
 import com.aptana.editor.js.contentassist.JSModelFormatter;
 import com.aptana.editor.js.internal.JSModelUtil;
 import com.aptana.editor.js.internal.text.JSFoldingComputer;
+import com.aptana.editor.js.internal.text.JSOccurrencesUpdater;
 import com.aptana.editor.js.outline.JSOutlineContentProvider;
 import com.aptana.editor.js.outline.JSOutlineLabelProvider;
 import com.aptana.js.core.IJSConstants;
@@ -358,6 +360,12 @@ public class JSSourceEditor extends AbstractThemeableEditor
 		return new JSFoldingComputer(this, document);
 	}
 
+	@Override
+	protected CommonOccurrencesUpdater createOccurrencesUpdater()
+	{
+		return new JSOccurrencesUpdater(this);
+	}
+
 	@Override
 	public String getContentType()
 	{
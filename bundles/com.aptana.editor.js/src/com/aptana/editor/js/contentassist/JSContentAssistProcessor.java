@@ -417,16 +417,21 @@ public class JSContentAssistProcessor extends CommonContentAssistProcessor
 				replaceLength = replaceRange.getLength();
 			}
 
-			if (property.getOwningType().startsWith("$module")) //$NON-NLS-1$
+			// properties come straight from (cached) query results and are shared, so they must not be modified here
+			String location = overriddenLocation;
+			if (StringUtil.isEmpty(location) && property.getOwningType().startsWith("$module")) //$NON-NLS-1$
 			{
 				IPath path = getQueryHelper().getModulePath(property.getOwningType());
-				property.setOwningType(path.toOSString());
+				if (path != null)
+				{
+					location = path.toOSString();
+				}
 			}
 			PropertyElementProposal proposal = new PropertyElementProposal(property, offset, replaceLength, projectURI);
 			proposal.setTriggerCharacters(getProposalTriggerCharacters());
-			if (!StringUtil.isEmpty(overriddenLocation))
+			if (!StringUtil.isEmpty(location))
 			{
-				proposal.setFileLocation(overriddenLocation);
+				proposal.setFileLocation(location);
 			}
 
 			Image[] userAgents = UserAgentManager.getInstance().getUserAgentImages(getProject(), userAgentNames);
@@ -725,14 +730,8 @@ public class JSContentAssistProcessor extends CommonContentAssistProcessor
 	@SuppressWarnings("unchecked")
 	protected void addTypeProperties(Set<ICompletionProposal> proposals, String typeName, int offset, boolean isInstance)
 	{
-		// grab all ancestors of the specified type
-		List<String> allTypes = getQueryHelper().getTypeAncestorNames(typeName);
-
-		// include the type in the list as well
-		allTypes.add(0, typeName);
-
-		// add properties and methods
-		Collection<PropertyElement> properties = getQueryHelper().getTypeMembers(allTypes);
+		// add properties and methods of the type and all its ancestors
+		Collection<PropertyElement> properties = getQueryHelper().getTypeMembersInHierarchy(typeName);
 		URI projectURI = getProjectURI();
 		List<IFilter<PropertyElement>> propertyFilters = CollectionsUtil.newList(isNotConstructorFilter,
 				isVisibleFilter);
@@ -0,0 +1,99 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.internal.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.jface.text.Region;
+
+import com.aptana.editor.common.AbstractThemeableEditor;
+import com.aptana.editor.common.CommonOccurrencesUpdater;
+import com.aptana.js.core.inferencing.JSOccurrencesIndex;
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.lexer.IRange;
+
+/**
+ * Marks the references to the variable under the caret, told apart by the scope declaring them, instead of every
+ * occurrence of its name. Everything that isn't a variable reference, like property names, strings and comments, is
+ * marked by word as usual.
+ */
+public class JSOccurrencesUpdater extends CommonOccurrencesUpdater
+{
+	private IParseRootNode indexedAST;
+	private long indexedStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	private JSOccurrencesIndex index;
+
+	/**
+	 * JSOccurrencesUpdater
+	 *
+	 * @param editor
+	 */
+	public JSOccurrencesUpdater(AbstractThemeableEditor editor)
+	{
+		super(editor);
+	}
+
+	@Override
+	protected List<IRegion> findOccurrences(IDocument document, ITextSelection selection, String word,
+			IProgressMonitor monitor)
+	{
+		JSOccurrencesIndex occurrencesIndex = getIndex(document);
+		if (occurrencesIndex != null)
+		{
+			// the caret may sit just past the name
+			int offset = selection.getOffset();
+			List<IRange> ranges = occurrencesIndex.getOccurrences(offset);
+			if (ranges == null && offset > 0 && selection.getLength() == 0)
+			{
+				ranges = occurrencesIndex.getOccurrences(offset - 1);
+			}
+			if (ranges != null)
+			{
+				List<IRegion> result = new ArrayList<IRegion>(ranges.size());
+				for (IRange range : ranges)
+				{
+					result.add(new Region(range.getStartingOffset(), range.getLength()));
+				}
+				return result;
+			}
+		}
+		return super.findOccurrences(document, selection, word, monitor);
+	}
+
+	/**
+	 * Returns the index of the current AST, building it once per document revision, or null if the editor has no JS
+	 * AST for the document.
+	 */
+	private synchronized JSOccurrencesIndex getIndex(IDocument document)
+	{
+		// read the stamp first, so an AST of a later revision is never cached under this one
+		long stamp = (document instanceof IDocumentExtension4) ? ((IDocumentExtension4) document)
+				.getModificationStamp() : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		IParseRootNode ast = getEditor().getAST();
+		if (!(ast instanceof JSParseRootNode))
+		{
+			return null;
+		}
+
+		if (index == null || ast != indexedAST || stamp != indexedStamp
+				|| stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP)
+		{
+			index = new JSOccurrencesIndex((JSParseRootNode) ast);
+			indexedAST = ast;
+			indexedStamp = stamp;
+		}
+		return index;
+	}
+}
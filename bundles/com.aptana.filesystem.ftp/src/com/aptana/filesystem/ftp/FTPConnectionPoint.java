@@ -19,6 +19,9 @@ import org.eclipse.core.runtime.Platform;
 import com.aptana.core.epl.IMemento;
 import com.aptana.core.io.vfs.IConnectionFileManager;
 import com.aptana.filesystem.ftp.internal.FTPConnectionFileManager;
+import com.aptana.filesystem.ftp.internal.PooledFTPConnectionFileManager;
+import com.aptana.filesystem.ftp.preferences.FTPPreferenceInitializer;
+import com.aptana.filesystem.ftp.preferences.IFTPPreferenceConstants;
 import com.aptana.ide.core.io.ConnectionContext;
 import com.aptana.ide.core.io.ConnectionPoint;
 import com.aptana.ide.core.io.CoreIOPlugin;
@@ -419,7 +422,10 @@ public class FTPConnectionPoint extends ConnectionPoint implements IBaseFTPConne
 			}
 			if (connectionFileManager == null)
 			{
-				connectionFileManager = new FTPConnectionFileManager();
+				int maxConnections = Platform.getPreferencesService().getInt(FTPPlugin.PLUGIN_ID,
+						IFTPPreferenceConstants.MAX_CONNECTIONS, FTPPreferenceInitializer.DEFAULT_MAX_CONNECTIONS, null);
+				connectionFileManager = (maxConnections > 1) ? new PooledFTPConnectionFileManager(maxConnections)
+						: new FTPConnectionFileManager();
 			}
 			ConnectionContext context = CoreIOPlugin.getConnectionContext(this);
 			if (context != null)
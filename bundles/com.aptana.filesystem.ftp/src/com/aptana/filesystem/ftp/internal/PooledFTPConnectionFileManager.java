@@ -0,0 +1,74 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.filesystem.ftp.internal;
+
+import org.eclipse.core.runtime.IPath;
+
+import com.aptana.core.io.vfs.BaseConnectionFileManager;
+import com.aptana.core.io.vfs.PooledConnectionFileManager;
+import com.aptana.filesystem.ftp.IFTPConnectionFileManager;
+
+/**
+ * Opens up to N control connections to the same FTP site, each one an {@link FTPConnectionFileManager} of its own.
+ *
+ * @author Max Stepanov
+ */
+public class PooledFTPConnectionFileManager extends PooledConnectionFileManager implements IFTPConnectionFileManager
+{
+
+	private String host;
+	private int port;
+	private IPath basePath;
+	private String login;
+	private char[] password;
+	private boolean passive;
+	private String transferType;
+	private String encoding;
+	private String timezone;
+
+	/**
+	 * @param maxConnections
+	 */
+	public PooledFTPConnectionFileManager(int maxConnections)
+	{
+		super(maxConnections);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.filesystem.ftp.IFTPConnectionFileManager#init(java.lang.String, int,
+	 * org.eclipse.core.runtime.IPath, java.lang.String, char[], boolean, java.lang.String, java.lang.String,
+	 * java.lang.String)
+	 */
+	public void init(String host, int port, IPath basePath, String login, char[] password, boolean passive,
+			String transferType, String encoding, String timezone)
+	{
+		this.host = host;
+		this.port = port;
+		this.basePath = basePath;
+		this.login = login;
+		this.password = password;
+		this.passive = passive;
+		this.transferType = transferType;
+		this.encoding = encoding;
+		this.timezone = timezone;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.PooledConnectionFileManager#createConnectionFileManager()
+	 */
+	@Override
+	protected BaseConnectionFileManager createConnectionFileManager()
+	{
+		FTPConnectionFileManager manager = new FTPConnectionFileManager();
+		manager.init(host, port, basePath, login, password, passive, transferType, encoding, timezone);
+		return manager;
+	}
+}
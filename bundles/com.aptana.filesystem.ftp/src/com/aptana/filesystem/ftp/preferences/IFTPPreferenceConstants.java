@@ -9,4 +9,8 @@ package com.aptana.filesystem.ftp.preferences;
 
 public interface IFTPPreferenceConstants {
 	public static final String KEEP_ALIVE_TIME = "KeepAliveTime"; //$NON-NLS-1$
+	/**
+	 * How many connections an FTP or SFTP site may have open at once. Anything above 1 enables the connection pool.
+	 */
+	public static final String MAX_CONNECTIONS = "MaxConnections"; //$NON-NLS-1$
 }
@@ -17,6 +17,10 @@ import org.eclipse.core.runtime.Platform;
 
 import com.aptana.core.epl.IMemento;
 import com.aptana.core.io.vfs.IConnectionFileManager;
+import com.aptana.filesystem.ftp.FTPPlugin;
+import com.aptana.filesystem.ftp.preferences.FTPPreferenceInitializer;
+import com.aptana.filesystem.ftp.preferences.IFTPPreferenceConstants;
+import com.aptana.filesystem.secureftp.internal.PooledSFTPConnectionFileManager;
 import com.aptana.filesystem.secureftp.internal.SFTPConnectionFileManager;
 import com.aptana.ide.core.io.ConnectionContext;
 import com.aptana.ide.core.io.ConnectionPoint;
@@ -426,7 +430,10 @@ public class SFTPConnectionPoint extends ConnectionPoint implements ISFTPConnect
 			}
 			if (connectionFileManager == null)
 			{
-				connectionFileManager = new SFTPConnectionFileManager();
+				int maxConnections = Platform.getPreferencesService().getInt(FTPPlugin.PLUGIN_ID,
+						IFTPPreferenceConstants.MAX_CONNECTIONS, FTPPreferenceInitializer.DEFAULT_MAX_CONNECTIONS, null);
+				connectionFileManager = (maxConnections > 1) ? new PooledSFTPConnectionFileManager(maxConnections)
+						: new SFTPConnectionFileManager();
 			}
 			ConnectionContext context = CoreIOPlugin.getConnectionContext(this);
 			if (context != null)
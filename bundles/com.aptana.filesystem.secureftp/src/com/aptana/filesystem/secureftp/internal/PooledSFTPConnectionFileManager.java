@@ -0,0 +1,76 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.filesystem.secureftp.internal;
+
+import org.eclipse.core.runtime.IPath;
+
+import com.aptana.core.io.vfs.BaseConnectionFileManager;
+import com.aptana.core.io.vfs.PooledConnectionFileManager;
+import com.aptana.filesystem.secureftp.ISFTPConnectionFileManager;
+
+/**
+ * Opens up to N SSH sessions to the same SFTP site, each one an {@link SFTPConnectionFileManager} of its own. An
+ * SSHFTPClient drives a single SFTP channel, so extra sessions are what let operations overlap.
+ *
+ * @author Max Stepanov
+ */
+public class PooledSFTPConnectionFileManager extends PooledConnectionFileManager implements
+		ISFTPConnectionFileManager
+{
+
+	private String host;
+	private int port;
+	private IPath basePath;
+	private IPath keyFilePath;
+	private String login;
+	private char[] password;
+	private String transferType;
+	private String encoding;
+	private String compression;
+
+	/**
+	 * @param maxConnections
+	 */
+	public PooledSFTPConnectionFileManager(int maxConnections)
+	{
+		super(maxConnections);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.filesystem.secureftp.ISFTPConnectionFileManager#init(java.lang.String, int,
+	 * org.eclipse.core.runtime.IPath, org.eclipse.core.runtime.IPath, java.lang.String, char[], java.lang.String,
+	 * java.lang.String, java.lang.String)
+	 */
+	public void init(String host, int port, IPath basePath, IPath keyFilePath, String login, char[] password,
+			String transferType, String encoding, String compression)
+	{
+		this.host = host;
+		this.port = port;
+		this.basePath = basePath;
+		this.keyFilePath = keyFilePath;
+		this.login = login;
+		this.password = password;
+		this.transferType = transferType;
+		this.encoding = encoding;
+		this.compression = compression;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.PooledConnectionFileManager#createConnectionFileManager()
+	 */
+	@Override
+	protected BaseConnectionFileManager createConnectionFileManager()
+	{
+		SFTPConnectionFileManager manager = new SFTPConnectionFileManager();
+		manager.init(host, port, basePath, keyFilePath, login, password, transferType, encoding, compression);
+		return manager;
+	}
+}
@@ -7,6 +7,8 @@
  */
 package com.aptana.filewatcher;
 
+import java.io.IOException;
+
 import net.contentobjects.jnotify.IJNotify;
 import net.contentobjects.jnotify.JNotifyException;
 import net.contentobjects.jnotify.JNotifyListener;
@@ -14,6 +16,7 @@ import net.contentobjects.jnotify.JNotifyListener;
 import org.eclipse.core.runtime.Platform;
 import org.osgi.framework.Bundle;
 
+import com.aptana.filewatcher.nio.WatchServiceNotifier;
 import com.aptana.filewatcher.poller.PollingNotifier;
 
 public class FileWatcher
@@ -26,6 +29,11 @@ public class FileWatcher
 	{
 		if (_instance == null)
 		{
+			if (Platform.OS_LINUX.equals(Platform.getOS()))
+			{
+				// inotify as well, but without the native library and with events coalesced into batches
+				_instance = createWatchServiceNotifier();
+			}
 			String className = null;
 			if (Platform.OS_LINUX.equals(Platform.getOS()))
 			{
@@ -39,7 +47,7 @@ public class FileWatcher
 			{
 				className = "net.contentobjects.jnotify.macosx.JNotifyAdapterMacOSX"; //$NON-NLS-1$
 			}
-			if (className != null)
+			if (_instance == null && className != null)
 			{
 				try
 				{
@@ -51,6 +59,11 @@ public class FileWatcher
 					FileWatcherPlugin.log(e);
 				}
 			}
+			if (_instance == null && Platform.OS_WIN32.equals(Platform.getOS()))
+			{
+				// The JDK polls on Mac OS X, so there the polling notifier below is just as good
+				_instance = createWatchServiceNotifier();
+			}
 			if (_instance == null)
 			{
 				_instance = new PollingNotifier();
@@ -59,6 +72,19 @@ public class FileWatcher
 		return _instance;
 	}
 
+	private static IJNotify createWatchServiceNotifier()
+	{
+		try
+		{
+			return new WatchServiceNotifier();
+		}
+		catch (IOException e)
+		{
+			FileWatcherPlugin.log(e);
+			return null;
+		}
+	}
+
 	public static int addWatch(String path, int mask, boolean watchSubtree, final JNotifyListener listener)
 			throws JNotifyException
 	{
@@ -0,0 +1,778 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher.nio;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.contentobjects.jnotify.IJNotify;
+import net.contentobjects.jnotify.JNotifyException;
+import net.contentobjects.jnotify.JNotifyListener;
+
+import com.aptana.filewatcher.FileWatcherPlugin;
+
+/**
+ * A pure Java implementation on top of the java.nio.file {@link WatchService}.
+ * <p>
+ * A WatchService only reports changes to the direct children of a registered directory, so subtree watches register
+ * every directory beneath their root. Only the root is registered by {@link #addWatch(String, int, boolean, boolean,
+ * JNotifyListener)} itself; the watcher thread works through the rest of the tree a batch at a time, and registers
+ * directories created later as their creation is reported. The entries of every registered directory are remembered,
+ * so when the service reports an overflow for a directory, that directory alone is listed again and compared with what
+ * was last seen.
+ * </p>
+ * <p>
+ * Events are not delivered as they come in. They are coalesced per file (a file created and deleted again isn't
+ * reported at all, a file modified a hundred times is reported once) and delivered in one batch once the file system
+ * has been quiet for {@link #QUIET_PERIOD} ms, or at the latest {@link #MAX_DELAY} ms after the first of them. Renames
+ * show up as a deletion and a creation. As with the native adapters, listeners get the watch's root path and the path
+ * of the file relative to it.
+ * </p>
+ *
+ * @author cwilliams
+ */
+public class WatchServiceNotifier implements IJNotify
+{
+
+	/**
+	 * How long the file system needs to be quiet before a batch of events is delivered.
+	 */
+	private static final long QUIET_PERIOD = 100;
+
+	/**
+	 * The longest events are held back, so a steady stream of changes still gets reported.
+	 */
+	private static final long MAX_DELAY = 1000;
+
+	/**
+	 * Returned by {@link #getTimeout()} when the watcher thread has nothing to do but wait for the next event.
+	 */
+	private static final long NO_TIMEOUT = -1;
+
+	/**
+	 * The number of directories the watcher thread registers before it looks at events again.
+	 */
+	private static final int REGISTRATIONS_PER_PASS = 256;
+
+	/**
+	 * Marks subdirectories in a snapshot, in place of a modification time.
+	 */
+	private static final Long DIRECTORY = Long.valueOf(-1);
+
+	private static class Watch
+	{
+		private final int id;
+		private final String rootPath;
+		private final Path root;
+		private final int mask;
+		private final boolean watchSubtree;
+		private final JNotifyListener listener;
+
+		private Watch(int id, String rootPath, Path root, int mask, boolean watchSubtree, JNotifyListener listener)
+		{
+			this.id = id;
+			this.rootPath = rootPath;
+			this.root = root;
+			this.mask = mask;
+			this.watchSubtree = watchSubtree;
+			this.listener = listener;
+		}
+
+		/**
+		 * @return true if changes to the children of the directory concern this watch
+		 */
+		private boolean covers(Path directory)
+		{
+			return watchSubtree ? directory.startsWith(root) : directory.equals(root);
+		}
+	}
+
+	/**
+	 * A directory waiting to be registered.
+	 */
+	private static class Registration
+	{
+		private final Path directory;
+
+		/**
+		 * True for directories created after their parent was registered: anything already in them was created after
+		 * the watch was added, and gets reported once the directory is registered.
+		 */
+		private final boolean reportContents;
+
+		private Registration(Path directory, boolean reportContents)
+		{
+			this.directory = directory;
+			this.reportContents = reportContents;
+		}
+	}
+
+	/**
+	 * The coalesced events of one watch, taken out of the pending events for delivery.
+	 */
+	private static class Batch
+	{
+		private final Watch watch;
+		private final Map<String, Integer> events;
+
+		private Batch(Watch watch, Map<String, Integer> events)
+		{
+			this.watch = watch;
+			this.events = events;
+		}
+	}
+
+	private static class WatchException extends JNotifyException
+	{
+		private static final long serialVersionUID = 1L;
+
+		private WatchException(String message, int errorCode)
+		{
+			super(message, errorCode);
+		}
+
+		public int getErrorCode()
+		{
+			return _systemErrorCode;
+		}
+	}
+
+	private final WatchService service;
+	private final Thread thread;
+
+	// All of the following is guarded by this
+
+	/**
+	 * True while the watcher thread blocks until the next event, and has to be interrupted to register directories.
+	 */
+	private boolean waiting;
+
+	private int nextId;
+	private final Map<Integer, Watch> watches = new HashMap<Integer, Watch>();
+	private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+	private final Map<Path, WatchKey> keys = new HashMap<Path, WatchKey>();
+
+	/**
+	 * The entries of each registered directory when last seen: modification times of files, {@link #DIRECTORY} for
+	 * subdirectories.
+	 */
+	private final Map<Path, Map<String, Long>> snapshots = new HashMap<Path, Map<String, Long>>();
+	private final LinkedList<Registration> registrations = new LinkedList<Registration>();
+
+	/**
+	 * Events not delivered yet, per watch and then per path relative to the watch's root.
+	 */
+	private final Map<Watch, Map<String, Integer>> pending = new LinkedHashMap<Watch, Map<String, Integer>>();
+	private long firstPending;
+	private long lastPending;
+	private boolean loggedRegistrationFailure;
+
+	public WatchServiceNotifier() throws IOException
+	{
+		service = FileSystems.getDefault().newWatchService();
+		thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				watch();
+			}
+		}, "File Watcher"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Subtrees are always watched recursively, so <code>recursive</code> is ignored as it is by the Linux adapter.
+	 */
+	public int addWatch(String path, int mask, boolean watchSubtree, boolean recursive, JNotifyListener listener)
+			throws JNotifyException
+	{
+		Path root = Paths.get(path).toAbsolutePath().normalize();
+		synchronized (this)
+		{
+			Watch watch = new Watch(nextId++, path, root, mask, watchSubtree, listener);
+			watches.put(watch.id, watch);
+			if (!keys.containsKey(root))
+			{
+				try
+				{
+					register(root, false);
+				}
+				catch (IOException e)
+				{
+					watches.remove(watch.id);
+					throw new WatchException(MessageFormat.format("Unable to watch {0}: {1}", path, e), //$NON-NLS-1$
+							getErrorCode(e));
+				}
+			}
+			else if (watchSubtree)
+			{
+				// someone else watches the root, but maybe not its subdirectories
+				for (Map.Entry<String, Long> entry : snapshots.get(root).entrySet())
+				{
+					if (DIRECTORY.equals(entry.getValue()))
+					{
+						registrations.add(new Registration(root.resolve(entry.getKey()), false));
+					}
+				}
+			}
+			if (waiting && !registrations.isEmpty())
+			{
+				// the subtree gets registered by the watcher thread
+				thread.interrupt();
+			}
+			return watch.id;
+		}
+	}
+
+	public synchronized boolean removeWatch(int wd) throws JNotifyException
+	{
+		Watch watch = watches.remove(wd);
+		if (watch == null)
+		{
+			return false;
+		}
+		pending.remove(watch);
+
+		// stop watching the directories nobody is interested in anymore
+		Iterator<Map.Entry<Path, WatchKey>> iterator = keys.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Path, WatchKey> entry = iterator.next();
+			Path directory = entry.getKey();
+			if (directory.startsWith(watch.root) && !isWatched(directory))
+			{
+				WatchKey key = entry.getValue();
+				key.cancel();
+				iterator.remove();
+				directories.remove(key);
+				snapshots.remove(directory);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The watcher thread: waits for events, records them, registers directories and delivers due batches.
+	 */
+	private void watch()
+	{
+		while (true)
+		{
+			WatchKey key;
+			try
+			{
+				long timeout = getTimeout();
+				key = (timeout == NO_TIMEOUT) ? service.take() : service.poll(timeout, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				// woken up to register directories
+				key = null;
+			}
+			catch (ClosedWatchServiceException e)
+			{
+				return;
+			}
+
+			List<Batch> batches;
+			synchronized (this)
+			{
+				waiting = false;
+				// clear an interrupt that came after the wait had ended anyway
+				Thread.interrupted();
+				while (key != null)
+				{
+					processEvents(key);
+					key = service.poll();
+				}
+				registerPending();
+				batches = takeDueBatches();
+			}
+			deliver(batches);
+		}
+	}
+
+	/**
+	 * @return how long to wait for events before there's something else to do, or {@link #NO_TIMEOUT} to wait until
+	 *         the next one
+	 */
+	private synchronized long getTimeout()
+	{
+		if (!registrations.isEmpty())
+		{
+			return 0;
+		}
+		if (pending.isEmpty())
+		{
+			waiting = true;
+			return NO_TIMEOUT;
+		}
+		long due = Math.min(lastPending + QUIET_PERIOD, firstPending + MAX_DELAY);
+		return Math.max(0, due - System.currentTimeMillis());
+	}
+
+	private void processEvents(WatchKey key)
+	{
+		Path directory = directories.get(key);
+		if (directory == null)
+		{
+			// cancelled while its events were queued
+			return;
+		}
+
+		for (WatchEvent<?> event : key.pollEvents())
+		{
+			WatchEvent.Kind<?> kind = event.kind();
+			if (kind == OVERFLOW)
+			{
+				rescan(directory);
+				continue;
+			}
+			String name = event.context().toString();
+			if (kind == ENTRY_CREATE)
+			{
+				created(directory, name);
+			}
+			else if (kind == ENTRY_DELETE)
+			{
+				deleted(directory, name);
+			}
+			else if (kind == ENTRY_MODIFY)
+			{
+				modified(directory, name);
+			}
+		}
+
+		if (!key.reset())
+		{
+			// the directory is gone, its deletion is reported by its parent
+			forget(directory);
+		}
+	}
+
+	private void created(Path directory, String name)
+	{
+		Map<String, Long> snapshot = snapshots.get(directory);
+		Path path = directory.resolve(name);
+		Long modified = getModificationTime(path);
+		if (snapshot == null || modified == null)
+		{
+			// gone again already
+			return;
+		}
+
+		Long previous = snapshot.put(name, modified);
+		record(directory, name, (previous == null) ? FILE_CREATED : FILE_MODIFIED);
+		if (DIRECTORY.equals(modified) && isWatched(path))
+		{
+			registrations.add(new Registration(path, true));
+		}
+	}
+
+	private void deleted(Path directory, String name)
+	{
+		Map<String, Long> snapshot = snapshots.get(directory);
+		if (snapshot == null)
+		{
+			return;
+		}
+		Long previous = snapshot.remove(name);
+		if (previous == null)
+		{
+			// deleted before we saw its creation, so it was never reported
+			return;
+		}
+		if (DIRECTORY.equals(previous))
+		{
+			forget(directory.resolve(name));
+		}
+		record(directory, name, FILE_DELETED);
+	}
+
+	private void modified(Path directory, String name)
+	{
+		Map<String, Long> snapshot = snapshots.get(directory);
+		Long modified = getModificationTime(directory.resolve(name));
+		if (snapshot == null || modified == null || DIRECTORY.equals(modified))
+		{
+			// Changes inside subdirectories are reported by the subdirectories themselves
+			return;
+		}
+		snapshot.put(name, modified);
+		record(directory, name, FILE_MODIFIED);
+	}
+
+	/**
+	 * Events for the directory were lost: compare its entries with the last snapshot.
+	 */
+	private void rescan(Path directory)
+	{
+		Map<String, Long> snapshot = snapshots.get(directory);
+		Map<String, Long> current = list(directory);
+		if (snapshot == null || current == null)
+		{
+			return;
+		}
+
+		for (String name : new ArrayList<String>(snapshot.keySet()))
+		{
+			if (!current.containsKey(name))
+			{
+				deleted(directory, name);
+			}
+		}
+		for (Map.Entry<String, Long> entry : current.entrySet())
+		{
+			String name = entry.getKey();
+			Long previous = snapshot.get(name);
+			if (previous == null)
+			{
+				created(directory, name);
+			}
+			else if (!previous.equals(entry.getValue()) && !DIRECTORY.equals(entry.getValue()))
+			{
+				snapshot.put(name, entry.getValue());
+				record(directory, name, FILE_MODIFIED);
+			}
+		}
+	}
+
+	private void registerPending()
+	{
+		for (int i = 0; i < REGISTRATIONS_PER_PASS && !registrations.isEmpty(); i++)
+		{
+			Registration registration = registrations.removeFirst();
+			if (keys.containsKey(registration.directory) || !isWatched(registration.directory))
+			{
+				continue;
+			}
+			try
+			{
+				register(registration.directory, registration.reportContents);
+			}
+			catch (IOException e)
+			{
+				// Most likely the inotify watch limit. Log it once, the rest of the tree will fail the same way.
+				if (!loggedRegistrationFailure)
+				{
+					loggedRegistrationFailure = true;
+					FileWatcherPlugin.log(
+							MessageFormat.format("Unable to watch {0}", registration.directory), e); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
+	/**
+	 * Registers a directory, takes its snapshot and queues those of its subdirectories that are watched too.
+	 */
+	private void register(Path directory, boolean reportContents) throws IOException
+	{
+		WatchKey key = directory.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+		directories.put(key, directory);
+		keys.put(directory, key);
+
+		// listed after registering, so nothing created in between is missed
+		Map<String, Long> snapshot = list(directory);
+		if (snapshot == null)
+		{
+			snapshot = new HashMap<String, Long>();
+		}
+		snapshots.put(directory, snapshot);
+
+		for (Map.Entry<String, Long> entry : snapshot.entrySet())
+		{
+			String name = entry.getKey();
+			if (reportContents)
+			{
+				record(directory, name, FILE_CREATED);
+			}
+			if (DIRECTORY.equals(entry.getValue()))
+			{
+				Path child = directory.resolve(name);
+				if (isWatched(child))
+				{
+					registrations.add(new Registration(child, reportContents));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops a directory that's been deleted, along with whatever was registered beneath it.
+	 */
+	private void forget(Path directory)
+	{
+		Iterator<Map.Entry<Path, WatchKey>> iterator = keys.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Path, WatchKey> entry = iterator.next();
+			if (entry.getKey().startsWith(directory))
+			{
+				WatchKey key = entry.getValue();
+				key.cancel();
+				iterator.remove();
+				directories.remove(key);
+				snapshots.remove(entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * @return true if changes to the children of the directory concern any watch
+	 */
+	private boolean isWatched(Path directory)
+	{
+		for (Watch watch : watches.values())
+		{
+			if (watch.covers(directory))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds an event for a child of a directory to the pending events of every watch covering the directory, merged
+	 * with whatever is already pending for the same file.
+	 */
+	private void record(Path directory, String name, int kind)
+	{
+		Path path = directory.resolve(name);
+		boolean recorded = false;
+		for (Watch watch : watches.values())
+		{
+			if (!watch.covers(directory))
+			{
+				continue;
+			}
+			Map<String, Integer> events = pending.get(watch);
+			if (events == null)
+			{
+				events = new LinkedHashMap<String, Integer>();
+				pending.put(watch, events);
+			}
+			coalesce(events, watch.root.relativize(path).toString(), kind);
+			recorded = true;
+		}
+
+		if (recorded)
+		{
+			long now = System.currentTimeMillis();
+			if (firstPending == 0)
+			{
+				firstPending = now;
+			}
+			lastPending = now;
+		}
+	}
+
+	private static void coalesce(Map<String, Integer> events, String name, int kind)
+	{
+		Integer previous = events.get(name);
+		if (previous == null)
+		{
+			events.put(name, kind);
+			return;
+		}
+		switch (previous)
+		{
+			case FILE_CREATED:
+				if (kind == FILE_DELETED)
+				{
+					// never existed as far as the listeners know
+					events.remove(name);
+				}
+				break;
+
+			case FILE_DELETED:
+				// replaced
+				events.put(name, (kind == FILE_CREATED) ? FILE_MODIFIED : kind);
+				break;
+
+			default:
+				if (kind == FILE_DELETED)
+				{
+					events.put(name, FILE_DELETED);
+				}
+				break;
+		}
+	}
+
+	private List<Batch> takeDueBatches()
+	{
+		if (firstPending == 0)
+		{
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (now - lastPending < QUIET_PERIOD && now - firstPending < MAX_DELAY)
+		{
+			return null;
+		}
+
+		List<Batch> batches = new ArrayList<Batch>(pending.size());
+		for (Map.Entry<Watch, Map<String, Integer>> entry : pending.entrySet())
+		{
+			batches.add(new Batch(entry.getKey(), entry.getValue()));
+		}
+		pending.clear();
+		firstPending = 0;
+		return batches;
+	}
+
+	/**
+	 * Hands batches to the listeners. Called without holding the lock, so listeners may add and remove watches.
+	 */
+	private void deliver(List<Batch> batches)
+	{
+		if (batches == null)
+		{
+			return;
+		}
+		for (Batch batch : batches)
+		{
+			Watch watch = batch.watch;
+			for (Map.Entry<String, Integer> event : batch.events.entrySet())
+			{
+				int kind = event.getValue();
+				if ((watch.mask & kind) == 0)
+				{
+					continue;
+				}
+				try
+				{
+					switch (kind)
+					{
+						case FILE_CREATED:
+							watch.listener.fileCreated(watch.id, watch.rootPath, event.getKey());
+							break;
+
+						case FILE_DELETED:
+							watch.listener.fileDeleted(watch.id, watch.rootPath, event.getKey());
+							break;
+
+						default:
+							watch.listener.fileModified(watch.id, watch.rootPath, event.getKey());
+							break;
+					}
+				}
+				catch (RuntimeException e)
+				{
+					FileWatcherPlugin.log(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the entries of the directory like they're kept in snapshots, or null if it can't be listed
+	 */
+	private static Map<String, Long> list(Path directory)
+	{
+		Map<String, Long> entries = new HashMap<String, Long>();
+		DirectoryStream<Path> stream = null;
+		try
+		{
+			stream = Files.newDirectoryStream(directory);
+			for (Path child : stream)
+			{
+				Long modified = getModificationTime(child);
+				if (modified != null)
+				{
+					entries.put(child.getFileName().toString(), modified);
+				}
+			}
+			return entries;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		finally
+		{
+			if (stream != null)
+			{
+				try
+				{
+					stream.close();
+				}
+				catch (IOException e) // $codepro.audit.disable emptyCatchClause
+				{
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the modification time of a file, {@link #DIRECTORY} for directories, or null if it doesn't exist
+	 */
+	private static Long getModificationTime(Path path)
+	{
+		try
+		{
+			// symbolic links aren't followed, a link to a parent would register the same tree forever
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+			return attributes.isDirectory() ? DIRECTORY : attributes.lastModifiedTime().toMillis();
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	private static int getErrorCode(IOException e)
+	{
+		if (e instanceof NoSuchFileException || e instanceof NotDirectoryException)
+		{
+			return JNotifyException.ERROR_NO_SUCH_FILE_OR_DIRECTORY;
+		}
+		if (e instanceof AccessDeniedException)
+		{
+			return JNotifyException.ERROR_PERMISSION_DENIED;
+		}
+		String message = e.getMessage();
+		if (message != null && message.contains("inotify")) //$NON-NLS-1$
+		{
+			// "User limit of inotify watches reached"
+			return JNotifyException.ERROR_WATCH_LIMIT_REACHED;
+		}
+		return JNotifyException.ERROR_UNSPECIFIED;
+	}
+}
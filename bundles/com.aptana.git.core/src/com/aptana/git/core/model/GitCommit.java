@@ -45,6 +45,7 @@ public class GitCommit
 	private String authorEmail;
 	private List<String> parentShas;
 	private String comment;
+	private boolean commentPending;
 	private List<Diff> diffs;
 
 	public GitCommit(GitRepository repository, String sha)
@@ -108,8 +109,13 @@ public class GitCommit
 		return author;
 	}
 
-	public String getComment()
+	public synchronized String getComment()
 	{
+		if (commentPending)
+		{
+			comment = repository.readCommitMessage(sha);
+			commentPending = false;
+		}
 		return comment;
 	}
 
@@ -122,9 +128,19 @@ public class GitCommit
 		return builder.toString();
 	}
 
-	void setComment(String comment)
+	synchronized void setComment(String comment)
 	{
 		this.comment = comment;
+		this.commentPending = false;
+	}
+
+	/**
+	 * Have {@link #getComment()} read the message from the repository the first time it's called, for commits created
+	 * without one.
+	 */
+	synchronized void setCommentPending()
+	{
+		this.commentPending = true;
 	}
 
 	public synchronized List<Diff> getDiff()
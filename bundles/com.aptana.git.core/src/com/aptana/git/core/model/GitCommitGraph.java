@@ -0,0 +1,1167 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.text.MessageFormat;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.osgi.framework.Version;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.git.core.GitPlugin;
+import com.aptana.git.core.IDebugScopes;
+
+/**
+ * The commits reachable from a repository's branches, tags, remote branches and HEAD: SHA, parents, author, time and
+ * subject of each, in parallel arrays, plus a generation number (one more than that of the highest parent).
+ * <p>
+ * Commits are kept in an order where parents always come before their children, so walking the arrays backwards from a
+ * commit is a topological walk of its history. {@link #update(IProgressMonitor)} only asks git for the commits that
+ * aren't known yet, by excluding the current tips of the graph, and appends them. The graph is persisted to an
+ * append-only file, a batch of commits at a time, each batch closed by a checkpoint record; after a crash the file is
+ * cut back to the last checkpoint.
+ * </p>
+ * Full commit messages aren't kept; {@link GitCommit#getComment()} reads them from the object database when asked.
+ * Subjects, which take up most of the space, are only held until they have been written; after that they're read
+ * from the file for the commits of a window as it's asked for. Everything else stays in memory for ancestry queries.
+ */
+public class GitCommitGraph
+{
+	/**
+	 * The commits reachable from one commit, newest first (children before parents), read a window at a time. Only
+	 * the order is held; commits are created as they're asked for.
+	 */
+	public class View
+	{
+		private final int[] order;
+
+		private View(int[] order)
+		{
+			this.order = order;
+		}
+
+		/**
+		 * @return the number of commits in the history
+		 */
+		public int size()
+		{
+			return order.length;
+		}
+
+		/**
+		 * Returns a window of the history.
+		 *
+		 * @param offset
+		 * @param count
+		 * @return
+		 */
+		public List<GitCommit> getCommits(int offset, int count)
+		{
+			int end = Math.min(order.length, offset + count);
+			List<GitCommit> result = new ArrayList<GitCommit>(Math.max(0, end - offset));
+			for (int i = offset; i < end; i++)
+			{
+				result.add(commit(order[i]));
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the history as a list that only creates the commits that are asked for. Each call of get() creates
+		 * a new commit, so callers going over the whole list should ask for windows instead.
+		 *
+		 * @return
+		 */
+		public List<GitCommit> asList()
+		{
+			return new AbstractList<GitCommit>()
+			{
+				@Override
+				public GitCommit get(int index)
+				{
+					return commit(order[index]);
+				}
+
+				@Override
+				public int size()
+				{
+					return order.length;
+				}
+			};
+		}
+	}
+
+	/**
+	 * A commit as git log lists it.
+	 */
+	private static class Record
+	{
+		byte[] sha;
+		byte[][] parents;
+		long time;
+		String author;
+		String email;
+		String subject;
+	}
+
+	/**
+	 * Keeps track of the position in the persisted graph while it's read.
+	 */
+	private static class CountingInputStream extends FilterInputStream
+	{
+		private long count;
+
+		CountingInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int read = super.read();
+			if (read != -1)
+			{
+				count++;
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int read = super.read(b, off, len);
+			if (read > 0)
+			{
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+
+	private static final int MAGIC = 0x41474347; // "AGCG"
+	private static final int VERSION = 1;
+	private static final int COMMIT = 1;
+	private static final int CHECKPOINT = 2;
+
+	private static final int SHA_LENGTH = 20;
+	/**
+	 * writeUTF can't write more than 64k bytes, and a subject that long is of no use in a table anyway.
+	 */
+	private static final int MAX_SUBJECT_LENGTH = 4096;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * For %B and --ignore-missing.
+	 */
+	private static final Version MIN_GIT_VERSION = Version.parseVersion("1.7.3"); //$NON-NLS-1$
+
+	// @formatter:off
+	private static final String FORMAT = "--pretty=format:%H\01%P\01%at\01%an\01%ae\01%B"; //$NON-NLS-1$
+	// @formatter:on
+
+	private final GitRepository repository;
+	private final File file;
+
+	private boolean loaded;
+	private Set<String> lastRefs;
+
+	private int size;
+	private byte[] shas;
+	/**
+	 * The parents of commit i are parents[parentStarts[i]] up to parents[parentStarts[i + 1]]. A parent that's in the
+	 * graph is stored as its index; one that isn't (i.e. beyond a shallow clone's boundary) as -(k + 1), where k is
+	 * its index in externalParents.
+	 */
+	private int[] parentStarts;
+	private int[] parents;
+	private List<String> externalParents;
+	private long[] times;
+	private String[] authors;
+	private String[] emails;
+	/**
+	 * The subjects not written to the file yet. Once a subject is, its entry is dropped and subjectOffsets holds where
+	 * to read it from.
+	 */
+	private String[] subjects;
+	private long[] subjectOffsets;
+	private int[] generations;
+	/**
+	 * Open addressing hash of the SHAs, holding index + 1, so 0 marks a free slot.
+	 */
+	private int[] table;
+	/**
+	 * Author names and emails repeat a lot, so share them.
+	 */
+	private Map<String, String> names;
+	/**
+	 * Reads subjects from the file; opened on first use.
+	 */
+	private RandomAccessFile reader;
+
+	/**
+	 * GitCommitGraph
+	 *
+	 * @param repository
+	 * @param file
+	 *            Where to persist the graph, or null to keep it in memory only
+	 */
+	GitCommitGraph(GitRepository repository, File file)
+	{
+		this.repository = repository;
+		this.file = file;
+		clear();
+	}
+
+	/**
+	 * Adds the commits made since the last update. The first update of a session loads the persisted graph first.
+	 *
+	 * @param monitor
+	 * @return
+	 */
+	public synchronized IStatus update(IProgressMonitor monitor)
+	{
+		SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
+		try
+		{
+			if (!loaded)
+			{
+				load();
+				loaded = true;
+			}
+			subMonitor.worked(10);
+
+			// Nothing to ask git for if no ref moved
+			Set<String> refs = readRefs();
+			if (refs != null && refs.equals(lastRefs))
+			{
+				return Status.OK_STATUS;
+			}
+
+			IStatus status = fetch(subMonitor.newChild(90));
+			if (status.isOK())
+			{
+				lastRefs = refs;
+			}
+			return status;
+		}
+		finally
+		{
+			subMonitor.done();
+		}
+	}
+
+	/**
+	 * @return the number of commits in the graph
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param sha
+	 * @return whether the commit is in the graph
+	 */
+	public synchronized boolean contains(String sha)
+	{
+		return indexOf(sha) != -1;
+	}
+
+	/**
+	 * Returns the generation number of a commit: 1 for a root commit, otherwise one more than that of its highest
+	 * parent. 0 if the commit isn't in the graph.
+	 *
+	 * @param sha
+	 * @return
+	 */
+	public synchronized int getGeneration(String sha)
+	{
+		int index = indexOf(sha);
+		return (index == -1) ? 0 : generations[index];
+	}
+
+	/**
+	 * Whether the first commit is in the history of (or is) the second. Only walks back as far as the generation number
+	 * of the first commit.
+	 *
+	 * @param ancestor
+	 * @param descendant
+	 * @return
+	 */
+	public synchronized boolean isAncestor(String ancestor, String descendant)
+	{
+		int target = indexOf(ancestor);
+		int start = indexOf(descendant);
+		if (target == -1 || start == -1 || target > start)
+		{
+			return false;
+		}
+
+		int generation = generations[target];
+		BitSet seen = new BitSet(start + 1);
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = start;
+		seen.set(start);
+		while (top > 0)
+		{
+			int index = stack[--top];
+			if (index == target)
+			{
+				return true;
+			}
+			for (int j = parentStarts[index]; j < parentStarts[index + 1]; j++)
+			{
+				int parent = parents[j];
+				// an ancestor has a lower index and a lower generation than its descendants
+				if (parent >= target && !seen.get(parent) && generations[parent] >= generation)
+				{
+					seen.set(parent);
+					if (top == stack.length)
+					{
+						stack = grow(stack, top * 2);
+					}
+					stack[top++] = parent;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the history of a commit, or null if it isn't in the graph.
+	 *
+	 * @param sha
+	 * @return
+	 */
+	public synchronized View view(String sha)
+	{
+		int tip = indexOf(sha);
+		if (tip == -1)
+		{
+			return null;
+		}
+
+		// Parents come before children, so one backwards pass finds everything reachable
+		BitSet reachable = new BitSet(tip + 1);
+		reachable.set(tip);
+		int[] order = new int[tip + 1];
+		int count = 0;
+		for (int i = tip; i >= 0; i--)
+		{
+			if (reachable.get(i))
+			{
+				order[count++] = i;
+				for (int j = parentStarts[i]; j < parentStarts[i + 1]; j++)
+				{
+					if (parents[j] >= 0)
+					{
+						reachable.set(parents[j]);
+					}
+				}
+			}
+		}
+		return new View(grow(order, count));
+	}
+
+	/**
+	 * Closes the file the subjects are read from. The graph may still be used afterwards; it opens the file again
+	 * when needed.
+	 */
+	public synchronized void dispose()
+	{
+		closeReader();
+	}
+
+	synchronized GitCommit commit(int index)
+	{
+		GitCommit commit = new GitCommit(repository, GitObjectDatabase.toHex(shas, index * SHA_LENGTH));
+		List<String> parentSHAs = new ArrayList<String>(parentStarts[index + 1] - parentStarts[index]);
+		for (int j = parentStarts[index]; j < parentStarts[index + 1]; j++)
+		{
+			parentSHAs.add(parentSHA(parents[j]));
+		}
+		if (!parentSHAs.isEmpty())
+		{
+			commit.setParents(parentSHAs);
+		}
+		commit.setAuthor(authors[index]);
+		commit.setAuthorEmail(emails[index]);
+		commit.setSubject(subject(index));
+		commit.setTimestamp(GitRevList.toTimestamp(times[index]));
+		commit.setCommentPending();
+		return commit;
+	}
+
+	private String subject(int index)
+	{
+		if (subjects[index] != null)
+		{
+			return subjects[index];
+		}
+		try
+		{
+			if (reader == null)
+			{
+				reader = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			}
+			reader.seek(subjectOffsets[index]);
+			return reader.readUTF();
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(GitPlugin.getDefault(), e);
+			closeReader();
+			return StringUtil.EMPTY;
+		}
+	}
+
+	private void closeReader()
+	{
+		if (reader != null)
+		{
+			try
+			{
+				reader.close();
+			}
+			catch (IOException e)
+			{
+				// ignore
+			}
+			reader = null;
+		}
+	}
+
+	private String parentSHA(int parent)
+	{
+		if (parent >= 0)
+		{
+			return GitObjectDatabase.toHex(shas, parent * SHA_LENGTH);
+		}
+		return externalParents.get(-parent - 1);
+	}
+
+	/**
+	 * Fingerprints the refs, so we can tell whether anything could have been committed since the last update.
+	 *
+	 * @return the SHAs of HEAD and every ref, or null if they can't be read
+	 */
+	private Set<String> readRefs()
+	{
+		try
+		{
+			Set<String> refs = new HashSet<String>();
+			for (GitRefDatabase.Ref ref : repository.refDatabase().refs())
+			{
+				refs.add(ref.name + ' ' + ref.sha);
+			}
+			refs.add(GitRepository.HEAD + ' ' + repository.refDatabase().resolve(GitRepository.HEAD));
+			return refs;
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(GitPlugin.getDefault(), e, IDebugScopes.DEBUG);
+			return null;
+		}
+	}
+
+	/**
+	 * Asks git for the commits reachable from the refs but not from the current tips of the graph, and appends them.
+	 */
+	private IStatus fetch(IProgressMonitor monitor)
+	{
+		SubMonitor subMonitor = SubMonitor.convert(monitor, IProgressMonitor.UNKNOWN);
+		if (GitExecutable.instance().version().compareTo(MIN_GIT_VERSION) < 0)
+		{
+			return new Status(IStatus.ERROR, GitPlugin.getPluginId(), MessageFormat.format(
+					"git {0} or later is needed for the commit graph", MIN_GIT_VERSION)); //$NON-NLS-1$
+		}
+
+		// @formatter:off
+		List<String> arguments = CollectionsUtil.newList(
+			"log", //$NON-NLS-1$
+			"-z", //$NON-NLS-1$
+			"--topo-order", //$NON-NLS-1$
+			"--stdin", //$NON-NLS-1$
+			"--ignore-missing", //$NON-NLS-1$
+			FORMAT,
+			"--branches", //$NON-NLS-1$
+			"--tags", //$NON-NLS-1$
+			"--remotes"); //$NON-NLS-1$
+		// @formatter:on
+		try
+		{
+			if (repository.refDatabase().resolve(GitRepository.HEAD) != null)
+			{
+				arguments.add(GitRepository.HEAD);
+			}
+			else if (repository.refDatabase().refs().isEmpty())
+			{
+				// nothing committed yet; git log would complain about HEAD
+				return Status.OK_STATUS;
+			}
+		}
+		catch (IOException e)
+		{
+			// let git sort out HEAD
+			arguments.add(GitRepository.HEAD);
+		}
+
+		if (!repository.enterRead())
+		{
+			return new Status(IStatus.ERROR, GitPlugin.getPluginId(),
+					"Failed to acquire read lock on the git repository."); //$NON-NLS-1$
+		}
+
+		// Newest first, as git lists them
+		List<Record> fetched = new ArrayList<Record>();
+		try
+		{
+			Process p = GitExecutable.instance().run(repository.workingDirectory(),
+					arguments.toArray(new String[arguments.size()]));
+
+			// Everything we have is an ancestor of a tip, so excluding the tips excludes all of it. A tip may have
+			// been pruned since (i.e. an abandoned branch), which --ignore-missing lets through.
+			OutputStream stdin = new BufferedOutputStream(p.getOutputStream());
+			for (String tip : tips())
+			{
+				stdin.write(('^' + tip + '\n').getBytes(IOUtil.UTF_8));
+			}
+			stdin.close();
+
+			InputStream stdout = new BufferedInputStream(p.getInputStream());
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			while (readRecord(stdout, buffer))
+			{
+				if (subMonitor.isCanceled())
+				{
+					p.destroy();
+					return Status.CANCEL_STATUS;
+				}
+				Record record = parseRecord(buffer.toByteArray());
+				if (record != null)
+				{
+					fetched.add(record);
+				}
+				subMonitor.worked(1);
+			}
+
+			int exitCode = p.waitFor();
+			if (exitCode != 0)
+			{
+				return new Status(IStatus.ERROR, GitPlugin.getPluginId(), MessageFormat.format(
+						"git log exited with {0} while updating the commit graph", exitCode)); //$NON-NLS-1$
+			}
+		}
+		catch (Exception e)
+		{
+			return new Status(IStatus.ERROR, GitPlugin.getPluginId(), e.getMessage(), e);
+		}
+		finally
+		{
+			repository.exitRead();
+		}
+
+		if (!fetched.isEmpty())
+		{
+			// Oldest first, so parents are added before their children
+			int from = size;
+			for (int i = fetched.size() - 1; i >= 0; i--)
+			{
+				Record record = fetched.get(i);
+				add(record.sha, record.parents, record.time, record.author, record.email, record.subject, -1);
+			}
+			append(from);
+		}
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * The commits of the graph no other commit of the graph has as its parent.
+	 */
+	private List<String> tips()
+	{
+		boolean[] hasChild = new boolean[size];
+		for (int j = 0; j < parentStarts[size]; j++)
+		{
+			if (parents[j] >= 0)
+			{
+				hasChild[parents[j]] = true;
+			}
+		}
+		List<String> tips = new ArrayList<String>();
+		for (int i = 0; i < size; i++)
+		{
+			if (!hasChild[i])
+			{
+				tips.add(GitObjectDatabase.toHex(shas, i * SHA_LENGTH));
+			}
+		}
+		return tips;
+	}
+
+	/**
+	 * Reads up to the next NUL into the buffer.
+	 *
+	 * @return false at the end of the stream
+	 */
+	private static boolean readRecord(InputStream stream, ByteArrayOutputStream buffer) throws IOException
+	{
+		buffer.reset();
+		int read = stream.read();
+		if (read == -1)
+		{
+			return false;
+		}
+		while (read != -1 && read != 0)
+		{
+			buffer.write(read);
+			read = stream.read();
+		}
+		return true;
+	}
+
+	/**
+	 * Splits a record of {@link #FORMAT} into SHA, parent SHAs, time, author, email and subject.
+	 */
+	private Record parseRecord(byte[] bytes) throws IOException
+	{
+		String[] fields = new String(bytes, IOUtil.UTF_8).split("\01", 6); //$NON-NLS-1$
+		if (fields.length < 6 || fields[0].length() != 40)
+		{
+			IdeLog.logError(GitPlugin.getDefault(), "Error loading commits: malformed log output", IDebugScopes.DEBUG); //$NON-NLS-1$
+			return null;
+		}
+
+		Record record = new Record();
+		record.sha = GitObjectDatabase.toBytes(fields[0]);
+		String[] parentSHAs = StringUtil.isEmpty(fields[1]) ? new String[0] : fields[1].split(" "); //$NON-NLS-1$
+		record.parents = new byte[parentSHAs.length][];
+		for (int i = 0; i < parentSHAs.length; i++)
+		{
+			record.parents[i] = GitObjectDatabase.toBytes(parentSHAs[i]);
+		}
+		record.time = Long.parseLong(fields[2].trim());
+		record.author = fields[3];
+		record.email = fields[4];
+		// Same subject as the history always showed: the first line of the message
+		record.subject = StringUtil.LINE_SPLITTER.split(fields[5])[0];
+		return record;
+	}
+
+	private void clear()
+	{
+		closeReader();
+		size = 0;
+		shas = new byte[INITIAL_CAPACITY * SHA_LENGTH];
+		parentStarts = new int[INITIAL_CAPACITY + 1];
+		parents = new int[INITIAL_CAPACITY];
+		externalParents = new ArrayList<String>();
+		times = new long[INITIAL_CAPACITY];
+		authors = new String[INITIAL_CAPACITY];
+		emails = new String[INITIAL_CAPACITY];
+		subjects = new String[INITIAL_CAPACITY];
+		subjectOffsets = new long[INITIAL_CAPACITY];
+		generations = new int[INITIAL_CAPACITY];
+		table = new int[INITIAL_CAPACITY * 2];
+		names = new HashMap<String, String>();
+	}
+
+	/**
+	 * Adds a commit, with either its subject or the position of the subject in the file.
+	 */
+	private void add(byte[] sha, byte[][] parentSHAs, long time, String author, String email, String subject,
+			long subjectOffset)
+	{
+		// A commit we already have can come again when the only tip above it was pruned
+		if (indexOf(sha, 0) != -1)
+		{
+			return;
+		}
+
+		if (size == times.length)
+		{
+			int capacity = size * 2;
+			shas = grow(shas, capacity * SHA_LENGTH);
+			parentStarts = grow(parentStarts, capacity + 1);
+			times = grow(times, capacity);
+			authors = grow(authors, capacity);
+			emails = grow(emails, capacity);
+			subjects = grow(subjects, capacity);
+			subjectOffsets = grow(subjectOffsets, capacity);
+			generations = grow(generations, capacity);
+		}
+		int parentEnd = parentStarts[size] + parentSHAs.length;
+		if (parentEnd > parents.length)
+		{
+			parents = grow(parents, Math.max(parentEnd, parents.length * 2));
+		}
+
+		int generation = 1;
+		int j = parentStarts[size];
+		for (byte[] parentSHA : parentSHAs)
+		{
+			int parent = indexOf(parentSHA, 0);
+			if (parent == -1)
+			{
+				externalParents.add(GitObjectDatabase.toHex(parentSHA, 0));
+				parent = -externalParents.size();
+			}
+			else
+			{
+				generation = Math.max(generation, generations[parent] + 1);
+			}
+			parents[j++] = parent;
+		}
+		parentStarts[size + 1] = j;
+
+		System.arraycopy(sha, 0, shas, size * SHA_LENGTH, SHA_LENGTH);
+		times[size] = time;
+		authors[size] = share(author);
+		emails[size] = share(email);
+		if (subject != null && subject.length() > MAX_SUBJECT_LENGTH)
+		{
+			subject = subject.substring(0, MAX_SUBJECT_LENGTH);
+		}
+		subjects[size] = subject;
+		subjectOffsets[size] = subjectOffset;
+		generations[size] = generation;
+		size++;
+
+		if (size * 2 > table.length)
+		{
+			rehash(table.length * 2);
+		}
+		else
+		{
+			insert(size - 1);
+		}
+	}
+
+	private String share(String name)
+	{
+		String shared = names.get(name);
+		if (shared == null)
+		{
+			names.put(name, name);
+			shared = name;
+		}
+		return shared;
+	}
+
+	private int indexOf(String sha)
+	{
+		if (sha == null || sha.length() != 40)
+		{
+			return -1;
+		}
+		try
+		{
+			return indexOf(GitObjectDatabase.toBytes(sha), 0);
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+	private int indexOf(byte[] sha, int offset)
+	{
+		int mask = table.length - 1;
+		int slot = GitObjectDatabase.readInt(sha, offset) & mask;
+		while (true)
+		{
+			int entry = table[slot];
+			if (entry == 0)
+			{
+				return -1;
+			}
+			if (shaEquals(entry - 1, sha, offset))
+			{
+				return entry - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private boolean shaEquals(int index, byte[] sha, int offset)
+	{
+		int start = index * SHA_LENGTH;
+		for (int i = 0; i < SHA_LENGTH; i++)
+		{
+			if (shas[start + i] != sha[offset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void insert(int index)
+	{
+		int mask = table.length - 1;
+		int slot = GitObjectDatabase.readInt(shas, index * SHA_LENGTH) & mask;
+		while (table[slot] != 0)
+		{
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = index + 1;
+	}
+
+	private void rehash(int capacity)
+	{
+		table = new int[capacity];
+		for (int i = 0; i < size; i++)
+		{
+			insert(i);
+		}
+	}
+
+	/**
+	 * Reads the persisted graph, up to its last checkpoint.
+	 */
+	private void load()
+	{
+		if (file == null || !file.isFile())
+		{
+			return;
+		}
+
+		int checkpoint = 0;
+		boolean valid = true;
+		boolean complete = false;
+		DataInputStream in = null;
+		try
+		{
+			CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+			in = new DataInputStream(counter);
+			if (in.readInt() != MAGIC || in.readInt() != VERSION
+					|| !repository.gitDir().getAbsolutePath().equals(in.readUTF()))
+			{
+				valid = false;
+			}
+			while (valid)
+			{
+				int type = in.read();
+				if (type == -1)
+				{
+					complete = true;
+					break;
+				}
+				if (type == COMMIT)
+				{
+					readCommit(in, counter);
+				}
+				else if (type == CHECKPOINT && in.readInt() == size)
+				{
+					checkpoint = size;
+				}
+				else
+				{
+					throw new IOException(MessageFormat.format("Corrupt commit graph {0}", file)); //$NON-NLS-1$
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// a batch cut short; keep what was checkpointed
+			IdeLog.logWarning(GitPlugin.getDefault(), e, IDebugScopes.DEBUG);
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+			}
+		}
+
+		if (!valid)
+		{
+			clear();
+			file.delete();
+		}
+		else if (!complete || checkpoint != size)
+		{
+			// drop the partial batch from the file too, or the next one would be appended after it
+			truncate(checkpoint);
+			rewrite();
+		}
+	}
+
+	private void readCommit(DataInputStream in, CountingInputStream counter) throws IOException
+	{
+		byte[] sha = new byte[SHA_LENGTH];
+		in.readFully(sha);
+		byte[][] parentSHAs = new byte[in.readUnsignedByte()][];
+		for (int i = 0; i < parentSHAs.length; i++)
+		{
+			parentSHAs[i] = new byte[SHA_LENGTH];
+			in.readFully(parentSHAs[i]);
+		}
+		long time = in.readLong();
+		String author = in.readUTF();
+		String email = in.readUTF();
+		// leave the subject in the file
+		long subjectOffset = counter.count;
+		int length = in.readUnsignedShort();
+		if (in.skipBytes(length) != length)
+		{
+			throw new EOFException();
+		}
+		add(sha, parentSHAs, time, author, email, null, subjectOffset);
+	}
+
+	private void truncate(int newSize)
+	{
+		// Commits past the checkpoint are newer than everything before it, so nothing before refers to them
+		size = newSize;
+		rehash(table.length);
+	}
+
+	/**
+	 * Appends the commits from the given index on as one batch. Writes the whole file if it isn't there yet.
+	 */
+	private void append(int from)
+	{
+		if (file == null)
+		{
+			return;
+		}
+		if (!file.isFile())
+		{
+			rewrite();
+			return;
+		}
+
+		long length = file.length();
+		long[] offsets = null;
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+			offsets = writeCommits(out, from, length);
+			out.close();
+			out = null;
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(GitPlugin.getDefault(), e);
+			offsets = null;
+		}
+		finally
+		{
+			close(out);
+		}
+
+		if (offsets != null)
+		{
+			written(from, offsets);
+		}
+		else
+		{
+			// the next load would cut it back to the last checkpoint anyway, but the batch has to be written again,
+			// so start over with the next update. Keep the subjects that are only in the file until then.
+			readSubjects();
+			closeReader();
+			file.delete();
+		}
+	}
+
+	private void rewrite()
+	{
+		File parent = file.getParentFile();
+		if (parent != null && !parent.isDirectory())
+		{
+			parent.mkdirs();
+		}
+		// the file we read the subjects from is about to be replaced
+		readSubjects();
+		closeReader();
+
+		File temp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(repository.gitDir().getAbsolutePath());
+			long[] offsets = writeCommits(out, 0, 0);
+			out.close();
+			out = null;
+			file.delete();
+			if (!temp.renameTo(file))
+			{
+				throw new IOException(MessageFormat.format("Unable to rename {0} to {1}", temp, file)); //$NON-NLS-1$
+			}
+			written(0, offsets);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(GitPlugin.getDefault(), e);
+			temp.delete();
+		}
+		finally
+		{
+			close(out);
+		}
+	}
+
+	/**
+	 * Reads the subjects that are only in the file back into memory.
+	 */
+	private void readSubjects()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			if (subjects[i] == null)
+			{
+				subjects[i] = subject(i);
+			}
+		}
+	}
+
+	/**
+	 * Drops the subjects of the commits from the given index on, now that they can be read from the file.
+	 */
+	private void written(int from, long[] offsets)
+	{
+		for (int i = from; i < size; i++)
+		{
+			subjectOffsets[i] = offsets[i - from];
+			subjects[i] = null;
+		}
+	}
+
+	/**
+	 * Writes the commits from the given index on, followed by a checkpoint.
+	 *
+	 * @param out
+	 * @param from
+	 * @param start
+	 *            the position in the file of the first byte written to the stream
+	 * @return the position of each commit's subject in the file
+	 */
+	private long[] writeCommits(DataOutputStream out, int from, long start) throws IOException
+	{
+		long[] offsets = new long[size - from];
+		for (int i = from; i < size; i++)
+		{
+			out.writeByte(COMMIT);
+			out.write(shas, i * SHA_LENGTH, SHA_LENGTH);
+			out.writeByte(parentStarts[i + 1] - parentStarts[i]);
+			for (int j = parentStarts[i]; j < parentStarts[i + 1]; j++)
+			{
+				int parent = parents[j];
+				if (parent >= 0)
+				{
+					out.write(shas, parent * SHA_LENGTH, SHA_LENGTH);
+				}
+				else
+				{
+					out.write(GitObjectDatabase.toBytes(externalParents.get(-parent - 1)));
+				}
+			}
+			out.writeLong(times[i]);
+			out.writeUTF(authors[i]);
+			out.writeUTF(emails[i]);
+			offsets[i - from] = start + out.size();
+			out.writeUTF(subject(i));
+		}
+		out.writeByte(CHECKPOINT);
+		out.writeInt(size);
+		return offsets;
+	}
+
+	private static void close(OutputStream out)
+	{
+		if (out != null)
+		{
+			try
+			{
+				out.close();
+			}
+			catch (IOException e)
+			{
+				// ignore
+			}
+		}
+	}
+
+	private static int[] grow(int[] array, int length)
+	{
+		int[] result = new int[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	private static long[] grow(long[] array, int length)
+	{
+		long[] result = new long[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	private static byte[] grow(byte[] array, int length)
+	{
+		byte[] result = new byte[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	private static String[] grow(String[] array, int length)
+	{
+		String[] result = new String[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+}
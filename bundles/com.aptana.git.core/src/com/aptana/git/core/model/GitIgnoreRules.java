@@ -0,0 +1,313 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * Evaluates the same ignore rules as "git ls-files --others --exclude-standard": .gitignore files in the working
+ * tree, $GIT_DIR/info/exclude and the user's core.excludesfile. Per-directory files are read lazily and cached, so an
+ * instance should only live as long as one pass over the working tree.
+ *
+ * @author cwilliams
+ */
+class GitIgnoreRules
+{
+
+	private static final String INFO_EXCLUDE = "info/exclude"; //$NON-NLS-1$
+
+	/**
+	 * A single line of an ignore file.
+	 */
+	private static final class Rule
+	{
+		private final Pattern pattern;
+		private final boolean negated;
+		private final boolean directoryOnly;
+		/**
+		 * Rules without a slash match the name at any depth, others match the path relative to the ignore file.
+		 */
+		private final boolean matchName;
+
+		private Rule(Pattern pattern, boolean negated, boolean directoryOnly, boolean matchName)
+		{
+			this.pattern = pattern;
+			this.negated = negated;
+			this.directoryOnly = directoryOnly;
+			this.matchName = matchName;
+		}
+
+		private boolean matches(String relativePath, String name, boolean isDirectory)
+		{
+			if (directoryOnly && !isDirectory)
+			{
+				return false;
+			}
+			return pattern.matcher(matchName ? name : relativePath).matches();
+		}
+	}
+
+	private final File workingDirectory;
+	private final List<Rule> excludeRules;
+	private final List<Rule> globalRules;
+	private final Map<String, List<Rule>> directoryRules = new HashMap<String, List<Rule>>();
+
+	/**
+	 * @param workingDirectory
+	 * @param gitDir
+	 *            the (common) git dir holding info/exclude
+	 * @param globalExcludes
+	 *            the core.excludesfile, may be null
+	 */
+	GitIgnoreRules(File workingDirectory, File gitDir, File globalExcludes)
+	{
+		this.workingDirectory = workingDirectory;
+		this.excludeRules = readRules(new File(gitDir, INFO_EXCLUDE));
+		this.globalRules = (globalExcludes == null) ? Collections.<Rule> emptyList() : readRules(globalExcludes);
+	}
+
+	/**
+	 * Determines if a path is ignored. Callers walking the tree are expected to have checked the parent directories
+	 * already: as in git, nothing underneath an ignored directory can be re-included.
+	 *
+	 * @param path
+	 *            path relative to the working directory, using '/' separators
+	 * @param isDirectory
+	 * @return
+	 */
+	boolean isIgnored(String path, boolean isDirectory)
+	{
+		int lastSlash = path.lastIndexOf('/');
+		String name = path.substring(lastSlash + 1);
+
+		// The closest .gitignore wins, and within a file the last matching line wins
+		String dir = (lastSlash == -1) ? StringUtil.EMPTY : path.substring(0, lastSlash);
+		while (true)
+		{
+			String relativePath = (dir.length() == 0) ? path : path.substring(dir.length() + 1);
+			Boolean result = match(rulesFor(dir), relativePath, name, isDirectory);
+			if (result != null)
+			{
+				return result;
+			}
+			if (dir.length() == 0)
+			{
+				break;
+			}
+			int slash = dir.lastIndexOf('/');
+			dir = (slash == -1) ? StringUtil.EMPTY : dir.substring(0, slash);
+		}
+
+		Boolean result = match(excludeRules, path, name, isDirectory);
+		if (result == null)
+		{
+			result = match(globalRules, path, name, isDirectory);
+		}
+		return result != null && result;
+	}
+
+	private static Boolean match(List<Rule> rules, String relativePath, String name, boolean isDirectory)
+	{
+		for (int i = rules.size() - 1; i >= 0; i--)
+		{
+			Rule rule = rules.get(i);
+			if (rule.matches(relativePath, name, isDirectory))
+			{
+				return !rule.negated;
+			}
+		}
+		return null;
+	}
+
+	private List<Rule> rulesFor(String dir)
+	{
+		List<Rule> rules = directoryRules.get(dir);
+		if (rules == null)
+		{
+			File base = (dir.length() == 0) ? workingDirectory : new File(workingDirectory, dir);
+			rules = readRules(new File(base, GitRepository.GITIGNORE));
+			directoryRules.put(dir, rules);
+		}
+		return rules;
+	}
+
+	private static List<Rule> readRules(File file)
+	{
+		if (!file.isFile())
+		{
+			return Collections.emptyList();
+		}
+		String contents;
+		try
+		{
+			contents = IOUtil.read(new FileInputStream(file), IOUtil.UTF_8); // $codepro.audit.disable closeWhereCreated
+		}
+		catch (FileNotFoundException e)
+		{
+			return Collections.emptyList();
+		}
+		if (contents == null)
+		{
+			return Collections.emptyList();
+		}
+
+		List<Rule> rules = new ArrayList<Rule>();
+		for (String line : StringUtil.tokenize(contents, "\n")) //$NON-NLS-1$
+		{
+			Rule rule = parseRule(line);
+			if (rule != null)
+			{
+				rules.add(rule);
+			}
+		}
+		return rules;
+	}
+
+	/**
+	 * Parses a line of an ignore file, see gitignore(5).
+	 *
+	 * @param line
+	 * @return the rule, or null for blank lines and comments
+	 */
+	private static Rule parseRule(String line)
+	{
+		// Trailing whitespace is dropped unless escaped
+		int end = line.length();
+		while (end > 0 && Character.isWhitespace(line.charAt(end - 1))
+				&& !(end > 1 && line.charAt(end - 2) == '\\'))
+		{
+			end--;
+		}
+		String pattern = line.substring(0, end);
+		if (pattern.length() == 0 || pattern.charAt(0) == '#')
+		{
+			return null;
+		}
+
+		boolean negated = false;
+		if (pattern.charAt(0) == '!')
+		{
+			negated = true;
+			pattern = pattern.substring(1);
+		}
+		boolean directoryOnly = false;
+		if (pattern.endsWith("/")) //$NON-NLS-1$
+		{
+			directoryOnly = true;
+			pattern = pattern.substring(0, pattern.length() - 1);
+		}
+		boolean matchName = pattern.indexOf('/') == -1;
+		if (pattern.startsWith("/")) //$NON-NLS-1$
+		{
+			pattern = pattern.substring(1);
+		}
+		if (pattern.length() == 0)
+		{
+			return null;
+		}
+		return new Rule(Pattern.compile(toRegex(pattern)), negated, directoryOnly, matchName);
+	}
+
+	/**
+	 * Converts a glob (with git's "**" extension) into a regular expression.
+	 */
+	private static String toRegex(String glob)
+	{
+		StringBuilder regex = new StringBuilder();
+		int length = glob.length();
+		int i = 0;
+		while (i < length)
+		{
+			char c = glob.charAt(i);
+			switch (c)
+			{
+				case '*':
+					boolean atSegmentStart = (i == 0 || glob.charAt(i - 1) == '/');
+					if (atSegmentStart && glob.startsWith("**", i)) //$NON-NLS-1$
+					{
+						if (i + 2 == length)
+						{
+							// trailing "/**" matches everything inside
+							regex.append(".*"); //$NON-NLS-1$
+							i += 2;
+							continue;
+						}
+						if (glob.charAt(i + 2) == '/')
+						{
+							// leading "**/" or "/**/" match zero or more directories
+							regex.append("(?:.*/)?"); //$NON-NLS-1$
+							i += 3;
+							continue;
+						}
+					}
+					regex.append("[^/]*"); //$NON-NLS-1$
+					while (i + 1 < length && glob.charAt(i + 1) == '*')
+					{
+						i++;
+					}
+					break;
+
+				case '?':
+					regex.append("[^/]"); //$NON-NLS-1$
+					break;
+
+				case '[':
+					int close = glob.indexOf(']', i + 2);
+					if (close == -1)
+					{
+						regex.append("\\["); //$NON-NLS-1$
+						break;
+					}
+					regex.append('[');
+					int j = i + 1;
+					if (glob.charAt(j) == '!' || glob.charAt(j) == '^')
+					{
+						regex.append('^');
+						j++;
+					}
+					for (; j < close; j++)
+					{
+						char member = glob.charAt(j);
+						if (member == '\\' || member == '[' || member == '&')
+						{
+							regex.append('\\');
+						}
+						regex.append(member);
+					}
+					regex.append(']');
+					i = close;
+					break;
+
+				case '\\':
+					if (i + 1 < length)
+					{
+						i++;
+						regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+					}
+					break;
+
+				default:
+					regex.append(Pattern.quote(String.valueOf(c)));
+					break;
+			}
+			i++;
+		}
+		return regex.toString();
+	}
+}
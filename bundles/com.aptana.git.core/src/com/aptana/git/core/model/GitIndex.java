@@ -9,6 +9,7 @@ package com.aptana.git.core.model;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -98,6 +99,11 @@ public class GitIndex
 	 */
 	private GitIndexRefreshJob refreshJob;
 
+	/**
+	 * Reads the index, HEAD and working tree in-process so a refresh doesn't have to spawn git.
+	 */
+	private GitStatusReader statusReader;
+
 	GitIndex(GitRepository repository)
 	{
 		Assert.isNotNull(repository, "GitIndex requires a repository"); //$NON-NLS-1$
@@ -155,6 +161,101 @@ public class GitIndex
 		}
 		this.notify = notify;
 
+		final Set<String> portablePathStrings = new HashSet<String>(CollectionsUtil.map(filePaths,
+				new IMap<IPath, String>()
+				{
+					public String map(IPath item)
+					{
+						return item.toPortableString();
+					}
+				}));
+
+		// Now create a new temporary list so we can build it up...
+		Map<IPath, ChangedFile> newChangedFiles;
+		MultiStatus errors = new MultiStatus(GitPlugin.PLUGIN_ID, 1,
+				"Errors occurred while grabbing changed file listings", null); //$NON-NLS-1$
+		try
+		{
+			newChangedFiles = statusReader().changedFiles(portablePathStrings);
+		}
+		catch (IOException e)
+		{
+			// Expected for repositories using things we don't handle in-process (i.e. symbolic links), so only trace
+			IdeLog.logTrace(GitPlugin.getDefault(), MessageFormat.format(
+					"Unable to read the index of {0} directly, asking git for changed files", workingDirectory()), e, //$NON-NLS-1$
+					IDebugScopes.DEBUG);
+			newChangedFiles = new HashMap<IPath, ChangedFile>();
+			IStatus result = refreshWithGit(portablePathStrings, newChangedFiles, errors, monitor);
+			if (result != null)
+			{
+				return result;
+			}
+		}
+
+		// Copy the last full list of changed files we built up on refresh. Used to pass along the delta
+		// FIXME I think the values here may have already changed! I saw a file that had staged changes but no unstaged
+		// prior to commit
+		// but here it showed true for both (which should have only gotten modified by a pre-commit hook)
+		Collection<ChangedFile> preRefresh;
+		synchronized (this.changedFilesLock)
+		{
+			// Make a copy of the changed file listing, pre-refresh
+			if (this.changedFiles != null)
+			{
+				preRefresh = new ArrayList<ChangedFile>(this.changedFiles.size());
+				for (ChangedFile file : this.changedFiles)
+				{
+					preRefresh.add(file.clone());
+				}
+			}
+			else
+			{
+				preRefresh = new ArrayList<ChangedFile>(0);
+			}
+
+			// Now wipe any existing ChangedFile entries for any of the filePaths and add the ones we generated in
+			// dictionary
+			if (CollectionsUtil.isEmpty(filePaths))
+			{
+				this.changedFiles = new ArrayList<ChangedFile>();
+			}
+			else
+			{
+				this.changedFiles = CollectionsUtil.filter(this.changedFiles, new IFilter<ChangedFile>()
+				{
+					public boolean include(ChangedFile item)
+					{
+						return !portablePathStrings.contains(item.getRelativePath().toPortableString());
+					}
+				});
+			}
+			if (!CollectionsUtil.isEmpty(newChangedFiles))
+			{
+				this.changedFiles.addAll(newChangedFiles.values());
+			}
+		}
+
+		// Don't hold onto temp list in memory!
+		newChangedFiles = null;
+
+		postIndexChange(preRefresh, this.changedFiles);
+		sub.done();
+		if (!errors.isOK())
+		{
+			return errors;
+		}
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Gathers the changed files by running git: refreshes the stat data in the index, then lists the staged, unstaged
+	 * and untracked files. Only used when the index can't be read in-process.
+	 * 
+	 * @return a status if the refresh should stop right away, null if it should go on with the files collected
+	 */
+	private IStatus refreshWithGit(Set<String> portablePathStrings, Map<IPath, ChangedFile> newChangedFiles,
+			MultiStatus errors, IProgressMonitor monitor)
+	{
 		// If we don't run this, we end up showing files as unstaged when they're no longer modified!
 		IStatus result;
 		synchronized (this)
@@ -174,15 +275,6 @@ public class GitIndex
 			return result;
 		}
 
-		final Set<String> portablePathStrings = new HashSet<String>(CollectionsUtil.map(filePaths,
-				new IMap<IPath, String>()
-				{
-					public String map(IPath item)
-					{
-						return item.toPortableString();
-					}
-				}));
-
 		Set<Callable<Map<IPath, ChangedFile>>> jobs = new HashSet<Callable<Map<IPath, ChangedFile>>>(3);
 		jobs.add(new UntrackedFilesRefreshJob(this, portablePathStrings));
 		jobs.add(new UnstagedFilesRefreshJob(this, portablePathStrings));
@@ -194,12 +286,7 @@ public class GitIndex
 			return Status.CANCEL_STATUS;
 		}
 
-		// Now create a new temporary list so we can build it up...
-		Map<IPath, ChangedFile> newChangedFiles = new HashMap<IPath, ChangedFile>();
-
 		// Schedule all the jobs
-		MultiStatus errors = new MultiStatus(GitPlugin.PLUGIN_ID, 1,
-				"Errors occurred while grabbing changed file listings", null); //$NON-NLS-1$
 		try
 		{
 			if (es.isShutdown())
@@ -270,60 +357,17 @@ public class GitIndex
 		{
 			IdeLog.logWarning(GitPlugin.getDefault(), e);
 		}
+		return null;
+	}
 
-		// Copy the last full list of changed files we built up on refresh. Used to pass along the delta
-		// FIXME I think the values here may have already changed! I saw a file that had staged changes but no unstaged
-		// prior to commit
-		// but here it showed true for both (which should have only gotten modified by a pre-commit hook)
-		Collection<ChangedFile> preRefresh;
-		synchronized (this.changedFilesLock)
-		{
-			// Make a copy of the changed file listing, pre-refresh
-			if (this.changedFiles != null)
-			{
-				preRefresh = new ArrayList<ChangedFile>(this.changedFiles.size());
-				for (ChangedFile file : this.changedFiles)
-				{
-					preRefresh.add(file.clone());
-				}
-			}
-			else
-			{
-				preRefresh = new ArrayList<ChangedFile>(0);
-			}
-
-			// Now wipe any existing ChangedFile entries for any of the filePaths and add the ones we generated in
-			// dictionary
-			if (CollectionsUtil.isEmpty(filePaths))
-			{
-				this.changedFiles = new ArrayList<ChangedFile>();
-			}
-			else
-			{
-				this.changedFiles = CollectionsUtil.filter(this.changedFiles, new IFilter<ChangedFile>()
-				{
-					public boolean include(ChangedFile item)
-					{
-						return !portablePathStrings.contains(item.getRelativePath().toPortableString());
-					}
-				});
-			}
-			if (!CollectionsUtil.isEmpty(newChangedFiles))
-			{
-				this.changedFiles.addAll(newChangedFiles.values());
-			}
-		}
-
-		// Don't hold onto temp list in memory!
-		newChangedFiles = null;
-
-		postIndexChange(preRefresh, this.changedFiles);
-		sub.done();
-		if (!errors.isOK())
+	private synchronized GitStatusReader statusReader()
+	{
+		if (statusReader == null)
 		{
-			return errors;
+			statusReader = new GitStatusReader(repository, repository.gitDir(), workingDirectory().toFile(),
+					repository.refDatabase(), repository.objectDatabase());
 		}
-		return Status.OK_STATUS;
+		return statusReader;
 	}
 
 	private void postIndexChange(Collection<ChangedFile> preChangeFiles, Collection<ChangedFile> postChangeFiles)
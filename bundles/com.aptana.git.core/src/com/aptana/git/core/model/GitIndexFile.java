@@ -0,0 +1,330 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * A parsed copy of the git index (.git/index), versions 2 through 4. Holds the entries along with the valid nodes of
+ * the cached tree extension, which lets callers skip whole directories that match a tree.
+ *
+ * @author cwilliams
+ */
+class GitIndexFile
+{
+
+	private static final int SIGNATURE = 0x44495243; // "DIRC"
+	private static final int EXT_TREE = 0x54524545; // "TREE"
+	private static final int EXT_LINK = 0x6c696e6b; // "link"
+	private static final int EXT_SPARSE = 0x73646972; // "sdir"
+
+	private static final int FLAG_ASSUME_VALID = 0x8000;
+	private static final int FLAG_EXTENDED = 0x4000;
+	private static final int FLAG_STAGE_MASK = 0x3000;
+	private static final int FLAG_STAGE_SHIFT = 12;
+	private static final int EXTENDED_SKIP_WORKTREE = 0x4000;
+	private static final int EXTENDED_INTENT_TO_ADD = 0x2000;
+
+	/**
+	 * Size of an entry up to the path, without the extended flags.
+	 */
+	private static final int ENTRY_HEADER_SIZE = 62;
+
+	/**
+	 * A single entry of the index. One path can have up to three entries (stages 1-3) while it's unmerged.
+	 */
+	static final class Entry
+	{
+		final String path;
+		final int mode;
+		final String sha;
+		final int stage;
+		final int mtimeSeconds;
+		final int size;
+		final boolean assumeValid;
+		final boolean skipWorktree;
+		final boolean intentToAdd;
+
+		private Entry(String path, int mode, String sha, int stage, int mtimeSeconds, int size, boolean assumeValid,
+				boolean skipWorktree, boolean intentToAdd)
+		{
+			this.path = path;
+			this.mode = mode;
+			this.sha = sha;
+			this.stage = stage;
+			this.mtimeSeconds = mtimeSeconds;
+			this.size = size;
+			this.assumeValid = assumeValid;
+			this.skipWorktree = skipWorktree;
+			this.intentToAdd = intentToAdd;
+		}
+	}
+
+	private final List<Entry> entries;
+	private final Map<String, String> cachedTrees;
+	private final long lastModified;
+
+	private GitIndexFile(List<Entry> entries, Map<String, String> cachedTrees, long lastModified)
+	{
+		this.entries = entries;
+		this.cachedTrees = cachedTrees;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * The entries, sorted by path and then stage as git keeps them.
+	 *
+	 * @return
+	 */
+	List<Entry> entries()
+	{
+		return entries;
+	}
+
+	/**
+	 * The tree name for each directory (relative to the repo root, "" being the root itself) whose cached tree is still
+	 * valid. Directories that were touched since the last write-tree aren't present.
+	 *
+	 * @return
+	 */
+	Map<String, String> cachedTrees()
+	{
+		return cachedTrees;
+	}
+
+	/**
+	 * The modification time of the index file when it was read. Entries modified in the same second (or later) are
+	 * "racily clean" and can't be trusted on their stat data alone.
+	 *
+	 * @return
+	 */
+	long lastModified()
+	{
+		return lastModified;
+	}
+
+	/**
+	 * Reads an index file. A missing file is an empty index (i.e. a new repository).
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the index is corrupt or uses a feature we can't read (split or sparse indices)
+	 */
+	static GitIndexFile read(File file) throws IOException
+	{
+		long lastModified = file.lastModified();
+		if (!file.isFile())
+		{
+			return new GitIndexFile(Collections.<Entry> emptyList(), Collections.<String, String> emptyMap(),
+					lastModified);
+		}
+
+		byte[] data = GitObjectDatabase.readFully(file);
+		if (data.length < 12 + 20 || GitObjectDatabase.readInt(data, 0) != SIGNATURE)
+		{
+			throw new IOException(MessageFormat.format("{0} is not a git index", file)); //$NON-NLS-1$
+		}
+		verifyChecksum(data, file);
+
+		int version = GitObjectDatabase.readInt(data, 4);
+		if (version < 2 || version > 4)
+		{
+			throw new IOException(MessageFormat.format("Unsupported index version {0}", version)); //$NON-NLS-1$
+		}
+		int count = GitObjectDatabase.readInt(data, 8);
+
+		List<Entry> entries = new ArrayList<Entry>(count);
+		int position = 12;
+		byte[] previousName = new byte[0];
+		for (int i = 0; i < count; i++)
+		{
+			int start = position;
+			int mtimeSeconds = GitObjectDatabase.readInt(data, position + 8);
+			int mode = GitObjectDatabase.readInt(data, position + 24);
+			int size = GitObjectDatabase.readInt(data, position + 36);
+			String sha = GitObjectDatabase.toHex(data, position + 40);
+			int flags = ((data[position + 60] & 0xff) << 8) | (data[position + 61] & 0xff);
+			position += ENTRY_HEADER_SIZE;
+
+			int extended = 0;
+			if ((flags & FLAG_EXTENDED) != 0)
+			{
+				extended = ((data[position] & 0xff) << 8) | (data[position + 1] & 0xff);
+				position += 2;
+			}
+
+			byte[] name;
+			if (version == 4)
+			{
+				// Path is prefix compressed: strip N bytes off the end of the previous path, then append the suffix
+				int[] cursor = { position };
+				int strip = readOffsetVarint(data, cursor);
+				position = cursor[0];
+				int end = indexOf(data, (byte) 0, position);
+				int keep = previousName.length - strip;
+				name = new byte[keep + end - position];
+				System.arraycopy(previousName, 0, name, 0, keep);
+				System.arraycopy(data, position, name, keep, end - position);
+				position = end + 1;
+			}
+			else
+			{
+				int end = indexOf(data, (byte) 0, position);
+				name = new byte[end - position];
+				System.arraycopy(data, position, name, 0, name.length);
+				// Entries are NUL padded to a multiple of 8 bytes, with at least one NUL
+				position = start + ((end - start + 8) & ~7);
+			}
+			previousName = name;
+
+			if ((mode & 0170000) == 0040000)
+			{
+				// Directory entries only show up in sparse indices
+				throw new IOException("Sparse indices are not supported"); //$NON-NLS-1$
+			}
+
+			entries.add(new Entry(new String(name, IOUtil.UTF_8), mode, sha, (flags & FLAG_STAGE_MASK)
+					>> FLAG_STAGE_SHIFT, mtimeSeconds, size, (flags & FLAG_ASSUME_VALID) != 0,
+					(extended & EXTENDED_SKIP_WORKTREE) != 0, (extended & EXTENDED_INTENT_TO_ADD) != 0));
+		}
+
+		// Extensions run until the trailing checksum
+		Map<String, String> cachedTrees = Collections.emptyMap();
+		int end = data.length - 20;
+		while (position + 8 <= end)
+		{
+			int signature = GitObjectDatabase.readInt(data, position);
+			int size = GitObjectDatabase.readInt(data, position + 4);
+			position += 8;
+			if (signature == EXT_TREE)
+			{
+				cachedTrees = new HashMap<String, String>();
+				readCachedTree(data, new int[] { position }, StringUtil.EMPTY, cachedTrees);
+			}
+			else if (signature == EXT_LINK || signature == EXT_SPARSE)
+			{
+				throw new IOException("Split and sparse indices are not supported"); //$NON-NLS-1$
+			}
+			else if (signature >>> 24 < 'A' || signature >>> 24 > 'Z')
+			{
+				// Extensions starting with an upper case letter are optional and safe to skip, anything else changes
+				// how the entries have to be interpreted
+				throw new IOException(MessageFormat.format("Unsupported index extension {0}", //$NON-NLS-1$
+						Integer.toHexString(signature)));
+			}
+			position += size;
+		}
+
+		return new GitIndexFile(entries, cachedTrees, lastModified);
+	}
+
+	/**
+	 * Reads one node of the cached tree and, recursively, its subtrees. Each node is "<path>\0<entry count>
+	 * <subtree count>\n" followed by the tree name, unless the entry count is -1 (meaning the node is invalid).
+	 */
+	private static void readCachedTree(byte[] data, int[] cursor, String parent, Map<String, String> trees)
+			throws IOException
+	{
+		int position = cursor[0];
+		int nul = indexOf(data, (byte) 0, position);
+		String name = new String(data, position, nul - position, IOUtil.UTF_8);
+		position = nul + 1;
+		int space = indexOf(data, (byte) ' ', position);
+		int entryCount = Integer.parseInt(new String(data, position, space - position, IOUtil.UTF_8));
+		position = space + 1;
+		int newline = indexOf(data, (byte) '\n', position);
+		int subtreeCount = Integer.parseInt(new String(data, position, newline - position, IOUtil.UTF_8));
+		position = newline + 1;
+
+		String path;
+		if (parent.length() == 0)
+		{
+			path = name;
+		}
+		else
+		{
+			path = parent + '/' + name;
+		}
+		if (entryCount >= 0)
+		{
+			trees.put(path, GitObjectDatabase.toHex(data, position));
+			position += 20;
+		}
+
+		cursor[0] = position;
+		for (int i = 0; i < subtreeCount; i++)
+		{
+			readCachedTree(data, cursor, path, trees);
+		}
+	}
+
+	/**
+	 * Git's variable length offset encoding, as used for v4 path compression and OFS_DELTA.
+	 */
+	private static int readOffsetVarint(byte[] data, int[] cursor)
+	{
+		int position = cursor[0];
+		int c = data[position++] & 0xff;
+		int value = c & 0x7f;
+		while ((c & 0x80) != 0)
+		{
+			c = data[position++] & 0xff;
+			value = ((value + 1) << 7) + (c & 0x7f);
+		}
+		cursor[0] = position;
+		return value;
+	}
+
+	private static int indexOf(byte[] data, byte b, int from) throws IOException
+	{
+		for (int i = from; i < data.length; i++)
+		{
+			if (data[i] == b)
+			{
+				return i;
+			}
+		}
+		throw new IOException("Truncated git index"); //$NON-NLS-1$
+	}
+
+	private static void verifyChecksum(byte[] data, File file) throws IOException
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			digest.update(data, 0, data.length - 20);
+			byte[] expected = new byte[20];
+			System.arraycopy(data, data.length - 20, expected, 0, 20);
+			// An all zero checksum means git was told to skip it (index.skipHash)
+			if (!Arrays.equals(expected, new byte[20]) && !Arrays.equals(expected, digest.digest()))
+			{
+				throw new IOException(MessageFormat.format("Bad checksum for {0}", file)); //$NON-NLS-1$
+			}
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			IOException ioe = new IOException(e.getMessage());
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+}
@@ -0,0 +1,839 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * Reads objects straight out of a repository's object directory: loose objects and pack files (with both kinds of
+ * deltas), plus any alternates. Only used for reads; anything that writes to the repo still goes through the git
+ * executable.
+ *
+ * @author cwilliams
+ */
+class GitObjectDatabase
+{
+
+	/**
+	 * Object types, as numbered in pack files.
+	 */
+	static final int OBJ_COMMIT = 1;
+	static final int OBJ_TREE = 2;
+	static final int OBJ_BLOB = 3;
+	static final int OBJ_TAG = 4;
+	private static final int OBJ_OFS_DELTA = 6;
+	private static final int OBJ_REF_DELTA = 7;
+
+	private static final String[] TYPE_NAMES = { null, "commit", "tree", "blob", "tag" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	private static final String OBJECTS = "objects"; //$NON-NLS-1$
+	private static final String PACK = "pack"; //$NON-NLS-1$
+	private static final String IDX_EXTENSION = ".idx"; //$NON-NLS-1$
+	private static final String PACK_EXTENSION = ".pack"; //$NON-NLS-1$
+	private static final String ALTERNATES = "info/alternates"; //$NON-NLS-1$
+	private static final String ENCODING_HEADER = "encoding "; //$NON-NLS-1$
+
+	/**
+	 * Git's default limit on delta chain length is 50, anything much longer than that is a corrupt pack.
+	 */
+	private static final int MAX_DELTA_DEPTH = 1000;
+
+	/**
+	 * An object read out of the database.
+	 */
+	static final class GitObject
+	{
+		final int type;
+		final byte[] data;
+
+		private GitObject(int type, byte[] data)
+		{
+			this.type = type;
+			this.data = data;
+		}
+
+	}
+
+	/**
+	 * A pack file along with its parsed index.
+	 */
+	private static final class Pack
+	{
+		private final File packFile;
+		private final long lastModified;
+		/**
+		 * First level lookup table: number of objects whose first byte is <= the index.
+		 */
+		private final int[] fanout;
+		/**
+		 * Sorted object names, 20 bytes each.
+		 */
+		private final byte[] names;
+		private final long[] offsets;
+
+		private Pack(File packFile, long lastModified, int[] fanout, byte[] names, long[] offsets)
+		{
+			this.packFile = packFile;
+			this.lastModified = lastModified;
+			this.fanout = fanout;
+			this.names = names;
+			this.offsets = offsets;
+		}
+
+		long find(byte[] sha)
+		{
+			int first = sha[0] & 0xff;
+			int low = (first == 0) ? 0 : fanout[first - 1];
+			int high = fanout[first] - 1;
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				int cmp = compare(names, mid * 20, sha);
+				if (cmp < 0)
+				{
+					low = mid + 1;
+				}
+				else if (cmp > 0)
+				{
+					high = mid - 1;
+				}
+				else
+				{
+					return offsets[mid];
+				}
+			}
+			return -1;
+		}
+
+		private static int compare(byte[] names, int offset, byte[] sha)
+		{
+			for (int i = 0; i < 20; i++)
+			{
+				int a = names[offset + i] & 0xff;
+				int b = sha[i] & 0xff;
+				if (a != b)
+				{
+					return a - b;
+				}
+			}
+			return 0;
+		}
+	}
+
+	private final File objectsDir;
+	private List<GitObjectDatabase> alternates;
+
+	/**
+	 * Packs keyed by the path of their .pack file. Reloaded when the pack directory changes.
+	 */
+	private Map<String, Pack> packs;
+	private long packDirModified = -1;
+
+	GitObjectDatabase(File gitDir)
+	{
+		this.objectsDir = new File(gitDir, OBJECTS);
+	}
+
+	/**
+	 * Alternates of alternates aren't followed.
+	 */
+	private GitObjectDatabase(File objectsDir, List<GitObjectDatabase> alternates)
+	{
+		this.objectsDir = objectsDir;
+		this.alternates = alternates;
+	}
+
+	/**
+	 * Reads the object with the given (40 character hex) name, resolving any deltas.
+	 *
+	 * @param sha
+	 * @return the object, or null if it isn't in the database
+	 * @throws IOException
+	 *             if the object exists but can't be read
+	 */
+	synchronized GitObject read(String sha) throws IOException
+	{
+		File loose = looseFile(sha);
+		if (loose.isFile())
+		{
+			return readLoose(loose, false);
+		}
+
+		byte[] raw = toBytes(sha);
+		for (Pack pack : packs())
+		{
+			long offset = pack.find(raw);
+			if (offset != -1)
+			{
+				return readPacked(pack, offset, false);
+			}
+		}
+
+		for (GitObjectDatabase alternate : alternates())
+		{
+			GitObject object = alternate.read(sha);
+			if (object != null)
+			{
+				return object;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Determines the type of an object without inflating all of it (or its delta bases).
+	 *
+	 * @param sha
+	 * @return one of the OBJ_* constants, or -1 if the object isn't in the database
+	 * @throws IOException
+	 */
+	synchronized int readType(String sha) throws IOException
+	{
+		File loose = looseFile(sha);
+		if (loose.isFile())
+		{
+			return readLoose(loose, true).type;
+		}
+
+		byte[] raw = toBytes(sha);
+		for (Pack pack : packs())
+		{
+			long offset = pack.find(raw);
+			if (offset != -1)
+			{
+				return readPacked(pack, offset, true).type;
+			}
+		}
+
+		for (GitObjectDatabase alternate : alternates())
+		{
+			int type = alternate.readType(sha);
+			if (type != -1)
+			{
+				return type;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The name git uses for an object type, i.e. "commit".
+	 *
+	 * @param type
+	 * @return
+	 */
+	static String typeName(int type)
+	{
+		return TYPE_NAMES[type];
+	}
+
+	/**
+	 * Returns the name of the tree a commit points at.
+	 *
+	 * @param commitSHA
+	 * @return
+	 * @throws IOException
+	 */
+	String readCommitTree(String commitSHA) throws IOException
+	{
+		GitObject commit = read(commitSHA);
+		if (commit == null || commit.type != OBJ_COMMIT)
+		{
+			throw new IOException(MessageFormat.format("{0} is not a commit", commitSHA)); //$NON-NLS-1$
+		}
+		// The first line is always "tree <sha>"
+		return new String(commit.data, 5, 40, IOUtil.UTF_8);
+	}
+
+	/**
+	 * Returns the message of a commit, i.e. what <code>git log --format=%B</code> shows, decoded as the commit's
+	 * encoding header says (UTF-8 if it has none).
+	 *
+	 * @param commitSHA
+	 * @return
+	 * @throws IOException
+	 */
+	String readCommitMessage(String commitSHA) throws IOException
+	{
+		GitObject commit = read(commitSHA);
+		if (commit == null || commit.type != OBJ_COMMIT)
+		{
+			throw new IOException(MessageFormat.format("{0} is not a commit", commitSHA)); //$NON-NLS-1$
+		}
+
+		// Headers, one per line, then a blank line and the message. Continuation lines of multi-line headers (i.e.
+		// gpgsig) start with a space.
+		byte[] data = commit.data;
+		String encoding = IOUtil.UTF_8;
+		int i = 0;
+		while (i < data.length && data[i] != '\n')
+		{
+			int end = i;
+			while (end < data.length && data[end] != '\n')
+			{
+				end++;
+			}
+			String header = new String(data, i, end - i, IOUtil.UTF_8);
+			if (header.startsWith(ENCODING_HEADER))
+			{
+				encoding = header.substring(ENCODING_HEADER.length()).trim();
+			}
+			i = end + 1;
+		}
+		int start = Math.min(i + 1, data.length);
+		try
+		{
+			return new String(data, start, data.length - start, encoding);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return new String(data, start, data.length - start, IOUtil.UTF_8);
+		}
+	}
+
+	/**
+	 * Follows an annotated tag to the object it points at. Tags of tags are followed all the way down.
+	 *
+	 * @param tagSHA
+	 * @return
+	 * @throws IOException
+	 */
+	String peelTag(String tagSHA) throws IOException
+	{
+		String sha = tagSHA;
+		for (int depth = 0; depth < MAX_DELTA_DEPTH; depth++)
+		{
+			GitObject object = read(sha);
+			if (object == null || object.type != OBJ_TAG)
+			{
+				return sha;
+			}
+			// The first line is always "object <sha>"
+			sha = new String(object.data, 7, 40, IOUtil.UTF_8);
+		}
+		throw new IOException(MessageFormat.format("Tag {0} nests too deeply", tagSHA)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Lists the entries of a tree object.
+	 *
+	 * @param treeSHA
+	 * @param visitor
+	 * @throws IOException
+	 */
+	void readTree(String treeSHA, ITreeVisitor visitor) throws IOException
+	{
+		GitObject tree = read(treeSHA);
+		if (tree == null || tree.type != OBJ_TREE)
+		{
+			throw new IOException(MessageFormat.format("{0} is not a tree", treeSHA)); //$NON-NLS-1$
+		}
+
+		// Each entry is "<octal mode> <name>\0<20 byte sha>"
+		byte[] data = tree.data;
+		int i = 0;
+		while (i < data.length)
+		{
+			int mode = 0;
+			while (data[i] != ' ')
+			{
+				mode = (mode << 3) + (data[i++] - '0');
+			}
+			int nameStart = ++i;
+			while (data[i] != 0)
+			{
+				i++;
+			}
+			String name = new String(data, nameStart, i - nameStart, IOUtil.UTF_8);
+			i++;
+			visitor.visit(mode, name, toHex(data, i));
+			i += 20;
+		}
+	}
+
+	/**
+	 * Receives the entries of a tree, in the order they're stored.
+	 */
+	interface ITreeVisitor
+	{
+		void visit(int mode, String name, String sha) throws IOException;
+	}
+
+	private File looseFile(String sha)
+	{
+		return new File(new File(objectsDir, sha.substring(0, 2)), sha.substring(2));
+	}
+
+	private GitObject readLoose(File file, boolean headerOnly) throws IOException
+	{
+		InputStream in = new InflaterInputStream(new FileInputStream(file));
+		try
+		{
+			// Header is "<type> <size>\0"
+			StringBuilder header = new StringBuilder();
+			int c;
+			while ((c = in.read()) > 0) // $codepro.audit.disable assignmentInCondition
+			{
+				header.append((char) c);
+			}
+			int space = header.indexOf(" "); //$NON-NLS-1$
+			if (c != 0 || space == -1)
+			{
+				throw new IOException(MessageFormat.format("Corrupt loose object {0}", file)); //$NON-NLS-1$
+			}
+			int type = typeFromName(header.substring(0, space));
+			if (headerOnly)
+			{
+				return new GitObject(type, null);
+			}
+
+			int size = Integer.parseInt(header.substring(space + 1));
+			byte[] data = new byte[size];
+			int read = 0;
+			while (read < size)
+			{
+				int count = in.read(data, read, size - read);
+				if (count == -1)
+				{
+					throw new IOException(MessageFormat.format("Truncated loose object {0}", file)); //$NON-NLS-1$
+				}
+				read += count;
+			}
+			return new GitObject(type, data);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private GitObject readPacked(Pack pack, long offset, boolean headerOnly) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(pack.packFile, "r"); //$NON-NLS-1$
+		try
+		{
+			// Walk down the delta chain to the base object, remembering each delta along the way
+			List<byte[]> deltas = new ArrayList<byte[]>();
+			for (int depth = 0; depth < MAX_DELTA_DEPTH; depth++)
+			{
+				file.seek(offset);
+				int c = file.read();
+				int type = (c >> 4) & 7;
+				long size = c & 0x0f;
+				int shift = 4;
+				while ((c & 0x80) != 0)
+				{
+					c = file.read();
+					size += (long) (c & 0x7f) << shift;
+					shift += 7;
+				}
+
+				switch (type)
+				{
+					case OBJ_COMMIT:
+					case OBJ_TREE:
+					case OBJ_BLOB:
+					case OBJ_TAG:
+						if (headerOnly)
+						{
+							return new GitObject(type, null);
+						}
+						byte[] data = inflate(file, (int) size);
+						for (int i = deltas.size() - 1; i >= 0; i--)
+						{
+							data = applyDelta(data, deltas.get(i));
+						}
+						return new GitObject(type, data);
+
+					case OBJ_OFS_DELTA:
+						c = file.read();
+						long distance = c & 0x7f;
+						while ((c & 0x80) != 0)
+						{
+							c = file.read();
+							distance = ((distance + 1) << 7) + (c & 0x7f);
+						}
+						if (!headerOnly)
+						{
+							deltas.add(inflate(file, (int) size));
+						}
+						offset -= distance;
+						break;
+
+					case OBJ_REF_DELTA:
+						byte[] base = new byte[20];
+						file.readFully(base);
+						if (!headerOnly)
+						{
+							deltas.add(inflate(file, (int) size));
+						}
+						offset = pack.find(base);
+						if (offset == -1)
+						{
+							// Thin packs aren't kept on disk, so the base has to live in this pack
+							throw new IOException(MessageFormat.format("Missing delta base {0} in {1}", //$NON-NLS-1$
+									toHex(base, 0), pack.packFile));
+						}
+						break;
+
+					default:
+						throw new IOException(MessageFormat.format("Unknown object type {0} at {1} in {2}", type, //$NON-NLS-1$
+								offset, pack.packFile));
+				}
+			}
+			throw new IOException(MessageFormat.format("Delta chain too long in {0}", pack.packFile)); //$NON-NLS-1$
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Inflates a zlib stream starting at the file's current position.
+	 */
+	private static byte[] inflate(RandomAccessFile file, int size) throws IOException
+	{
+		byte[] result = new byte[size];
+		byte[] buffer = new byte[Math.min(Math.max(size, 64), 8192)];
+		Inflater inflater = new Inflater();
+		try
+		{
+			int done = 0;
+			while (done < size)
+			{
+				if (inflater.needsInput())
+				{
+					int count = file.read(buffer);
+					if (count == -1)
+					{
+						throw new IOException("Unexpected end of pack file"); //$NON-NLS-1$
+					}
+					inflater.setInput(buffer, 0, count);
+				}
+				int count = inflater.inflate(result, done, size - done);
+				if (count == 0 && (inflater.finished() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				done += count;
+			}
+			if (done != size)
+			{
+				throw new IOException(MessageFormat.format("Expected {0} bytes but inflated {1}", size, done)); //$NON-NLS-1$
+			}
+			return result;
+		}
+		catch (DataFormatException e)
+		{
+			IOException ioe = new IOException(e.getMessage());
+			ioe.initCause(e);
+			throw ioe;
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Applies a git delta to a base object.
+	 */
+	private static byte[] applyDelta(byte[] base, byte[] delta) throws IOException
+	{
+		int[] position = new int[1];
+		int baseSize = readDeltaSize(delta, position);
+		if (baseSize != base.length)
+		{
+			throw new IOException("Delta base size mismatch"); //$NON-NLS-1$
+		}
+		int resultSize = readDeltaSize(delta, position);
+		byte[] result = new byte[resultSize];
+
+		int i = position[0];
+		int out = 0;
+		while (i < delta.length)
+		{
+			int op = delta[i++] & 0xff;
+			if ((op & 0x80) != 0)
+			{
+				// copy from base: which offset and size bytes follow is encoded in the low bits of the op
+				int copyOffset = 0;
+				int copySize = 0;
+				for (int bit = 0; bit < 4; bit++)
+				{
+					if ((op & (1 << bit)) != 0)
+					{
+						copyOffset |= (delta[i++] & 0xff) << (bit * 8);
+					}
+				}
+				for (int bit = 0; bit < 3; bit++)
+				{
+					if ((op & (0x10 << bit)) != 0)
+					{
+						copySize |= (delta[i++] & 0xff) << (bit * 8);
+					}
+				}
+				if (copySize == 0)
+				{
+					copySize = 0x10000;
+				}
+				System.arraycopy(base, copyOffset, result, out, copySize);
+				out += copySize;
+			}
+			else if (op != 0)
+			{
+				// insert the next op bytes
+				System.arraycopy(delta, i, result, out, op);
+				i += op;
+				out += op;
+			}
+			else
+			{
+				throw new IOException("Invalid delta opcode"); //$NON-NLS-1$
+			}
+		}
+
+		if (out != resultSize)
+		{
+			throw new IOException("Delta result size mismatch"); //$NON-NLS-1$
+		}
+		return result;
+	}
+
+	private static int readDeltaSize(byte[] delta, int[] position)
+	{
+		int size = 0;
+		int shift = 0;
+		int c;
+		do
+		{
+			c = delta[position[0]++] & 0xff;
+			size |= (c & 0x7f) << shift;
+			shift += 7;
+		}
+		while ((c & 0x80) != 0);
+		return size;
+	}
+
+	private Iterable<Pack> packs() throws IOException
+	{
+		File packDir = new File(objectsDir, PACK);
+		long modified = packDir.lastModified();
+		if (packs != null && modified == packDirModified)
+		{
+			return packs.values();
+		}
+
+		Map<String, Pack> newPacks = new HashMap<String, Pack>();
+		String[] names = packDir.list();
+		if (names != null)
+		{
+			Arrays.sort(names);
+			for (String name : names)
+			{
+				if (!name.endsWith(IDX_EXTENSION))
+				{
+					continue;
+				}
+				File packFile = new File(packDir, name.substring(0, name.length() - IDX_EXTENSION.length())
+						+ PACK_EXTENSION);
+				if (!packFile.isFile())
+				{
+					continue;
+				}
+				// Reuse the index we already parsed if the pack hasn't been rewritten
+				Pack existing = (packs == null) ? null : packs.get(packFile.getPath());
+				if (existing != null && existing.lastModified == packFile.lastModified())
+				{
+					newPacks.put(packFile.getPath(), existing);
+				}
+				else
+				{
+					newPacks.put(packFile.getPath(), readPackIndex(new File(packDir, name), packFile));
+				}
+			}
+		}
+		packs = newPacks;
+		packDirModified = modified;
+		return packs.values();
+	}
+
+	private static Pack readPackIndex(File idxFile, File packFile) throws IOException
+	{
+		long lastModified = packFile.lastModified();
+		byte[] idx = readFully(idxFile);
+		int[] fanout = new int[256];
+
+		// Version 2+ indices start with "\377tOc", version 1 starts with the fanout table
+		boolean v2 = idx.length >= 8 && (idx[0] & 0xff) == 0xff && idx[1] == 't' && idx[2] == 'O' && idx[3] == 'c';
+		if (v2)
+		{
+			int version = readInt(idx, 4);
+			if (version != 2)
+			{
+				throw new IOException(MessageFormat.format("Unsupported pack index version {0} in {1}", version, //$NON-NLS-1$
+						idxFile));
+			}
+			for (int i = 0; i < 256; i++)
+			{
+				fanout[i] = readInt(idx, 8 + i * 4);
+			}
+			int count = fanout[255];
+			int namesStart = 8 + 256 * 4;
+			int offsetsStart = namesStart + count * 20 + count * 4;
+			int largeOffsetsStart = offsetsStart + count * 4;
+
+			byte[] names = new byte[count * 20];
+			System.arraycopy(idx, namesStart, names, 0, names.length);
+			long[] offsets = new long[count];
+			for (int i = 0; i < count; i++)
+			{
+				int offset = readInt(idx, offsetsStart + i * 4);
+				if (offset < 0)
+				{
+					// MSB set means this is an index into the table of 8 byte offsets
+					int large = largeOffsetsStart + (offset & 0x7fffffff) * 8;
+					offsets[i] = ((long) readInt(idx, large) << 32) | (readInt(idx, large + 4) & 0xffffffffL);
+				}
+				else
+				{
+					offsets[i] = offset;
+				}
+			}
+			return new Pack(packFile, lastModified, fanout, names, offsets);
+		}
+
+		for (int i = 0; i < 256; i++)
+		{
+			fanout[i] = readInt(idx, i * 4);
+		}
+		int count = fanout[255];
+		byte[] names = new byte[count * 20];
+		long[] offsets = new long[count];
+		// Version 1 entries are a 4 byte offset followed by the 20 byte name
+		for (int i = 0; i < count; i++)
+		{
+			int entry = 256 * 4 + i * 24;
+			offsets[i] = readInt(idx, entry) & 0xffffffffL;
+			System.arraycopy(idx, entry + 4, names, i * 20, 20);
+		}
+		return new Pack(packFile, lastModified, fanout, names, offsets);
+	}
+
+	private synchronized List<GitObjectDatabase> alternates()
+	{
+		if (alternates == null)
+		{
+			alternates = new ArrayList<GitObjectDatabase>(0);
+			File file = new File(objectsDir, ALTERNATES);
+			if (file.isFile())
+			{
+				try
+				{
+					String contents = IOUtil.read(new FileInputStream(file)); // $codepro.audit.disable closeWhereCreated
+					for (String line : StringUtil.tokenize(contents, "\n")) //$NON-NLS-1$
+					{
+						line = line.trim();
+						if (line.length() == 0 || line.charAt(0) == '#')
+						{
+							continue;
+						}
+						File alternate = new File(line);
+						if (!alternate.isAbsolute())
+						{
+							alternate = new File(objectsDir, line);
+						}
+						alternates.add(new GitObjectDatabase(alternate, new ArrayList<GitObjectDatabase>(0)));
+					}
+				}
+				catch (FileNotFoundException e) // $codepro.audit.disable emptyCatchClause
+				{
+					// ignore
+				}
+			}
+		}
+		return alternates;
+	}
+
+	private static int typeFromName(String name) throws IOException
+	{
+		for (int i = OBJ_COMMIT; i <= OBJ_TAG; i++)
+		{
+			if (TYPE_NAMES[i].equals(name))
+			{
+				return i;
+			}
+		}
+		throw new IOException(MessageFormat.format("Unknown object type {0}", name)); //$NON-NLS-1$
+	}
+
+	static byte[] readFully(File file) throws IOException
+	{
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+			IOUtil.pipe(in, out);
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	static int readInt(byte[] data, int offset)
+	{
+		return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16) | ((data[offset + 2] & 0xff) << 8)
+				| (data[offset + 3] & 0xff);
+	}
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	static String toHex(byte[] data, int offset)
+	{
+		char[] hex = new char[40];
+		for (int i = 0; i < 20; i++)
+		{
+			int b = data[offset + i] & 0xff;
+			hex[i * 2] = HEX[b >> 4];
+			hex[i * 2 + 1] = HEX[b & 0x0f];
+		}
+		return new String(hex);
+	}
+
+	static byte[] toBytes(String sha)
+	{
+		byte[] raw = new byte[20];
+		for (int i = 0; i < 20; i++)
+		{
+			raw[i] = (byte) Integer.parseInt(sha.substring(i * 2, i * 2 + 2), 16);
+		}
+		return raw;
+	}
+}
@@ -0,0 +1,286 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * Reads HEAD, loose refs and packed-refs directly from the git dir. Linked worktrees are handled by reading HEAD from
+ * the worktree's own git dir and everything else from the common dir.
+ *
+ * @author cwilliams
+ */
+class GitRefDatabase
+{
+
+	private static final String SYMREF_PREFIX = "ref: "; //$NON-NLS-1$
+	private static final String PACKED_REFS = "packed-refs"; //$NON-NLS-1$
+	private static final String COMMONDIR = "commondir"; //$NON-NLS-1$
+	private static final String DOT_LOCK = ".lock"; //$NON-NLS-1$
+
+	/**
+	 * Git gives up on symbolic refs nested deeper than this.
+	 */
+	private static final int MAX_SYMREF_DEPTH = 5;
+
+	/**
+	 * A ref and the object it points at.
+	 */
+	static final class Ref
+	{
+		final String name;
+		final String sha;
+		/**
+		 * What the ref points at once annotated tags are peeled, if packed-refs told us. Null if unknown.
+		 */
+		final String peeled;
+
+		private Ref(String name, String sha, String peeled)
+		{
+			this.name = name;
+			this.sha = sha;
+			this.peeled = peeled;
+		}
+	}
+
+	private final File gitDir;
+	private final File commonDir;
+
+	/**
+	 * Last parsed packed-refs, and the stat data of the file it came from.
+	 */
+	private Map<String, Ref> packedRefs;
+	private long packedRefsModified;
+	private long packedRefsLength;
+
+	GitRefDatabase(File gitDir)
+	{
+		this.gitDir = gitDir;
+		this.commonDir = commonDir(gitDir);
+	}
+
+	/**
+	 * The directory holding the objects, refs and config. Same as the git dir, except for linked worktrees.
+	 *
+	 * @return
+	 */
+	File getCommonDir()
+	{
+		return commonDir;
+	}
+
+	/**
+	 * Returns the ref HEAD points at (i.e. "refs/heads/master"), or null if HEAD is detached.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	String readSymbolicHead() throws IOException
+	{
+		String head = readRefFile(new File(gitDir, GitRepository.HEAD));
+		if (head != null && head.startsWith(SYMREF_PREFIX))
+		{
+			return head.substring(SYMREF_PREFIX.length()).trim();
+		}
+		return null;
+	}
+
+	/**
+	 * Resolves HEAD or a full ref name ("refs/heads/master") down to a SHA, following symbolic refs.
+	 *
+	 * @param name
+	 * @return the SHA, or null if the ref doesn't exist (e.g. HEAD of a repository without commits)
+	 * @throws IOException
+	 */
+	synchronized String resolve(String name) throws IOException
+	{
+		String refName = name;
+		for (int depth = 0; depth < MAX_SYMREF_DEPTH; depth++)
+		{
+			File dir = GitRepository.HEAD.equals(refName) ? gitDir : commonDir;
+			String contents = readRefFile(new File(dir, refName));
+			if (contents == null)
+			{
+				Ref packed = packedRefs().get(refName);
+				return (packed == null) ? null : packed.sha;
+			}
+			if (!contents.startsWith(SYMREF_PREFIX))
+			{
+				return contents.trim();
+			}
+			refName = contents.substring(SYMREF_PREFIX.length()).trim();
+		}
+		throw new IOException(MessageFormat.format("Symbolic ref {0} nests too deeply", name)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Lists every ref under refs/, sorted by name. Loose refs win over packed ones, and symbolic refs (such as
+	 * refs/remotes/origin/HEAD) are resolved to the SHA of their target.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	synchronized List<Ref> refs() throws IOException
+	{
+		Map<String, Ref> all = new TreeMap<String, Ref>(packedRefs());
+		List<String> symbolic = new ArrayList<String>();
+		collectLooseRefs(new File(commonDir, GitRef.REFS), GitRef.REFS, all, symbolic);
+
+		for (String name : symbolic)
+		{
+			String sha = resolve(name);
+			if (sha == null)
+			{
+				// dangling symbolic ref
+				all.remove(name);
+			}
+			else
+			{
+				all.put(name, new Ref(name, sha, null));
+			}
+		}
+		return new ArrayList<Ref>(all.values());
+	}
+
+	private void collectLooseRefs(File dir, String prefix, Map<String, Ref> refs, List<String> symbolic)
+			throws IOException
+	{
+		File[] children = dir.listFiles();
+		if (children == null)
+		{
+			return;
+		}
+		for (File child : children)
+		{
+			String name = prefix + child.getName();
+			if (child.isDirectory())
+			{
+				collectLooseRefs(child, name + '/', refs, symbolic);
+				continue;
+			}
+			if (name.endsWith(DOT_LOCK))
+			{
+				continue;
+			}
+
+			String contents = readRefFile(child);
+			if (contents == null)
+			{
+				// deleted out from under us
+				continue;
+			}
+			if (contents.startsWith(SYMREF_PREFIX))
+			{
+				symbolic.add(name);
+			}
+			else
+			{
+				refs.put(name, new Ref(name, contents.trim(), null));
+			}
+		}
+	}
+
+	private Map<String, Ref> packedRefs() throws IOException
+	{
+		File file = new File(commonDir, PACKED_REFS);
+		if (!file.isFile())
+		{
+			return Collections.emptyMap();
+		}
+		if (packedRefs != null && file.lastModified() == packedRefsModified && file.length() == packedRefsLength)
+		{
+			return packedRefs;
+		}
+
+		long modified = file.lastModified();
+		long length = file.length();
+		String contents = IOUtil.read(new FileInputStream(file)); // $codepro.audit.disable closeWhereCreated
+		Map<String, Ref> refs = new TreeMap<String, Ref>();
+		Ref last = null;
+		// Lines are "<sha> <ref name>", optionally followed by "^<peeled sha>" for annotated tags
+		for (String line : StringUtil.tokenize(contents, "\n")) //$NON-NLS-1$
+		{
+			if (line.length() == 0 || line.charAt(0) == '#')
+			{
+				continue;
+			}
+			if (line.charAt(0) == '^')
+			{
+				if (last != null)
+				{
+					last = new Ref(last.name, last.sha, line.substring(1).trim());
+					refs.put(last.name, last);
+				}
+				continue;
+			}
+			int space = line.indexOf(' ');
+			if (space != 40)
+			{
+				throw new IOException(MessageFormat.format("Malformed line in {0}: {1}", file, line)); //$NON-NLS-1$
+			}
+			last = new Ref(line.substring(41).trim(), line.substring(0, 40), null);
+			refs.put(last.name, last);
+		}
+
+		packedRefs = refs;
+		packedRefsModified = modified;
+		packedRefsLength = length;
+		return packedRefs;
+	}
+
+	/**
+	 * @return the trimmed contents of the file, or null if it doesn't exist
+	 */
+	private static String readRefFile(File file) throws IOException
+	{
+		if (!file.isFile())
+		{
+			return null;
+		}
+		String contents = IOUtil.read(new FileInputStream(file)); // $codepro.audit.disable closeWhereCreated
+		if (contents == null)
+		{
+			throw new IOException(MessageFormat.format("Unable to read {0}", file)); //$NON-NLS-1$
+		}
+		return contents.trim();
+	}
+
+	private static File commonDir(File gitDir)
+	{
+		File file = new File(gitDir, COMMONDIR);
+		if (!file.isFile())
+		{
+			return gitDir;
+		}
+		try
+		{
+			String path = readRefFile(file);
+			File common = new File(path);
+			if (!common.isAbsolute())
+			{
+				common = new File(gitDir, path);
+			}
+			return common.getCanonicalFile();
+		}
+		catch (IOException e)
+		{
+			return gitDir;
+		}
+	}
+}
@@ -155,11 +155,6 @@ public class GitRepository
 	 */
 	public static final String GITIGNORE = ".gitignore"; //$NON-NLS-1$
 
-	/**
-	 * File used to associate SHAs and refs when git pack-refs has been used.
-	 */
-	private static final String PACKED_REFS = "packed-refs"; //$NON-NLS-1$
-
 	/**
 	 * The file used to write the commit message.
 	 */
@@ -203,6 +198,12 @@ public class GitRepository
 
 	public static final String GIT_DIR = ".git"; //$NON-NLS-1$
 
+	/**
+	 * Folder of the plugin state area holding the persisted commit graphs, and the extension of their files.
+	 */
+	private static final String COMMIT_GRAPHS = "commit-graphs"; //$NON-NLS-1$
+	private static final String COMMIT_GRAPH_EXTENSION = ".graph"; //$NON-NLS-1$
+
 	/**
 	 * Regexp used to grab list of remote names out of .git/config.
 	 */
@@ -237,6 +238,9 @@ public class GitRepository
 	private boolean hasChanged;
 	private GitRevSpecifier currentBranch;
 	private Set<Integer> fileWatcherIds = new HashSet<Integer>();
+	private GitRefDatabase refDatabase;
+	private GitObjectDatabase objectDatabase;
+	private GitCommitGraph commitGraph;
 	private int remoteDirCreationWatchId = -1;
 	private Set<IGitRepositoryListener> listeners;
 
@@ -944,22 +948,20 @@ public class GitRepository
 
 		refs = new HashMap<String, List<GitRef>>();
 
-		IStatus result = execute(ReadWrite.READ, "for-each-ref", //$NON-NLS-1$
-				"--format=%(refname) %(objecttype) %(objectname) %(*objectname)", "refs"); //$NON-NLS-1$ //$NON-NLS-2$
-
-		String output = result.getMessage();
-		List<String> lines = StringUtil.tokenize(output, "\n"); //$NON-NLS-1$
-
-		for (String line : lines)
+		List<List<String>> refLines;
+		try
 		{
-			// If its an empty line, skip it (e.g. with empty repositories)
-			if (line.length() == 0)
-			{
-				continue;
-			}
-
-			List<String> components = StringUtil.tokenize(line, " "); //$NON-NLS-1$
+			refLines = readRefs();
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(GitPlugin.getDefault(),
+					"Unable to read refs from the git dir, falling back to for-each-ref", e, IDebugScopes.DEBUG); //$NON-NLS-1$
+			refLines = forEachRef();
+		}
 
+		for (List<String> components : refLines)
+		{
 			// First do the ref matching. If this ref is new, add it to our ref list
 			GitRef newRef = GitRef.refFromString(components.get(0));
 			GitRevSpecifier revSpec = new GitRevSpecifier(newRef);
@@ -979,6 +981,56 @@ public class GitRepository
 		return ret;
 	}
 
+	/**
+	 * Reads the refs straight from the git dir, in the same form as {@link #forEachRef()}: the ref name, the type of
+	 * object it points at, the object's SHA and (for annotated tags) the SHA of the object the tag points at.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private List<List<String>> readRefs() throws IOException
+	{
+		GitObjectDatabase objects = objectDatabase();
+		List<GitRefDatabase.Ref> allRefs = refDatabase().refs();
+		List<List<String>> result = new ArrayList<List<String>>(allRefs.size());
+		for (GitRefDatabase.Ref ref : allRefs)
+		{
+			int type = objects.readType(ref.sha);
+			if (type == -1)
+			{
+				// Broken ref, git skips these too
+				continue;
+			}
+			List<String> components = CollectionsUtil.newList(ref.name, GitObjectDatabase.typeName(type), ref.sha);
+			if (type == GitObjectDatabase.OBJ_TAG)
+			{
+				components.add((ref.peeled != null) ? ref.peeled : objects.peelTag(ref.sha));
+			}
+			result.add(components);
+		}
+		return result;
+	}
+
+	private List<List<String>> forEachRef()
+	{
+		IStatus result = execute(ReadWrite.READ, "for-each-ref", //$NON-NLS-1$
+				"--format=%(refname) %(objecttype) %(objectname) %(*objectname)", "refs"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		String output = result.getMessage();
+		List<String> lines = StringUtil.tokenize(output, "\n"); //$NON-NLS-1$
+		List<List<String>> refLines = new ArrayList<List<String>>(lines.size());
+		for (String line : lines)
+		{
+			// If its an empty line, skip it (e.g. with empty repositories)
+			if (line.length() == 0)
+			{
+				continue;
+			}
+			refLines.add(StringUtil.tokenize(line, " ")); //$NON-NLS-1$
+		}
+		return refLines;
+	}
+
 	private GitRevSpecifier addBranch(GitRevSpecifier rev)
 	{
 		if (rev.parameters().isEmpty())
@@ -1019,6 +1071,18 @@ public class GitRepository
 
 	private String parseSymbolicReference(String reference)
 	{
+		if (HEAD.equals(reference))
+		{
+			try
+			{
+				return refDatabase().readSymbolicHead();
+			}
+			catch (IOException e)
+			{
+				IdeLog.logWarning(GitPlugin.getDefault(), e, IDebugScopes.DEBUG);
+			}
+		}
+
 		IStatus result = execute(ReadWrite.READ, "symbolic-ref", "-q", reference); //$NON-NLS-1$ //$NON-NLS-2$
 		if (result == null || !result.isOK())
 		{
@@ -1721,6 +1785,16 @@ public class GitRepository
 			index.dispose();
 			index = null;
 		}
+		// close the file the graph reads subjects from
+		GitCommitGraph graph;
+		synchronized (this)
+		{
+			graph = commitGraph;
+		}
+		if (graph != null)
+		{
+			graph.dispose();
+		}
 		// clear up the listeners to this repo
 		if (listeners != null)
 		{
@@ -1790,6 +1864,89 @@ public class GitRepository
 		return gitDirPath().append(string).toFile();
 	}
 
+	File gitDir()
+	{
+		return gitDirPath().toFile();
+	}
+
+	/**
+	 * Reader for HEAD, loose and packed refs, used in place of spawning git for read-only ref queries.
+	 * 
+	 * @return
+	 */
+	synchronized GitRefDatabase refDatabase()
+	{
+		if (refDatabase == null)
+		{
+			refDatabase = new GitRefDatabase(gitDir());
+		}
+		return refDatabase;
+	}
+
+	/**
+	 * Reader for the objects of this repository. Keeps the parsed pack indices around between calls.
+	 * 
+	 * @return
+	 */
+	synchronized GitObjectDatabase objectDatabase()
+	{
+		if (objectDatabase == null)
+		{
+			objectDatabase = new GitObjectDatabase(refDatabase().getCommonDir());
+		}
+		return objectDatabase;
+	}
+
+	/**
+	 * The cached commit graph of this repository. Call {@link GitCommitGraph#update(IProgressMonitor)} before querying
+	 * it to pick up new commits.
+	 * 
+	 * @return
+	 */
+	public synchronized GitCommitGraph commitGraph()
+	{
+		if (commitGraph == null)
+		{
+			commitGraph = new GitCommitGraph(this, commitGraphFile());
+		}
+		return commitGraph;
+	}
+
+	/**
+	 * Where the commit graph of this repository is persisted, in the plugin's state area and named after the git
+	 * directory. Null if the plugin isn't running.
+	 */
+	private File commitGraphFile()
+	{
+		GitPlugin plugin = GitPlugin.getDefault();
+		if (plugin == null)
+		{
+			return null;
+		}
+		IPath dir = plugin.getStateLocation().append(COMMIT_GRAPHS);
+		return dir.append(StringUtil.md5(gitDir().getAbsolutePath()) + COMMIT_GRAPH_EXTENSION).toFile();
+	}
+
+	/**
+	 * Reads the full message of a commit, going to git if the object database can't.
+	 * 
+	 * @param sha
+	 * @return the message, or null if there's no such commit
+	 */
+	String readCommitMessage(String sha)
+	{
+		try
+		{
+			return objectDatabase().readCommitMessage(sha);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(GitPlugin.getDefault(), e, IDebugScopes.DEBUG);
+		}
+		IStatus status = execute(ReadWrite.READ, "log", "-1", "--pretty=format:%B", sha); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return (status != null && status.isOK()) ? status.getMessage() : null;
+	}
+
 	private IPath gitDirPath()
 	{
 		File file = new File(fileURL);
@@ -1905,30 +2062,17 @@ public class GitRepository
 	 */
 	public String toSHA(GitRef ref)
 	{
-		File sha1File = gitFile(ref.ref());
-		// If the file doesn't exist, it's inside packed-refs!
 		try
 		{
-			if (!sha1File.isFile())
-			{
-				File packedRefs = gitFile(PACKED_REFS);
-				String packedRefContents = IOUtil.read(new FileInputStream(packedRefs)); // $codepro.audit.disable
-																							// closeWhereCreated
-				// each line is 40 char sha, space, ref name
-				int index = packedRefContents.indexOf(ref.ref());
-				if (index != -1)
-				{
-					return new String(packedRefContents.substring(index - 41, index - 1));
-				}
-			}
-			else
+			String sha = refDatabase().resolve(ref.ref());
+			if (sha != null)
 			{
-				return IOUtil.read(new FileInputStream(sha1File)).trim(); // $codepro.audit.disable closeWhereCreated
+				return sha;
 			}
 		}
-		catch (FileNotFoundException e) // $codepro.audit.disable emptyCatchClause
+		catch (IOException e)
 		{
-			// ignore
+			IdeLog.logWarning(GitPlugin.getDefault(), e, IDebugScopes.DEBUG);
 		}
 		return ref.ref();
 	}
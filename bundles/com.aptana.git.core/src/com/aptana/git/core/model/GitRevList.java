@@ -15,6 +15,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -36,6 +37,14 @@ public class GitRevList
 
 	private static final int NO_LIMIT = -1;
 
+	private static final Pattern SHA_PATTERN = Pattern.compile("[0-9a-f]{40}"); //$NON-NLS-1$
+	private static final Pattern INVALID_REF_CHARS = Pattern.compile("[\\x00-\\x20~^:?*\\[\\\\]"); //$NON-NLS-1$
+	/**
+	 * Where git looks for a short ref name, in order.
+	 */
+	private static final String[] REF_PREFIXES = { GitRef.REFS, GitRef.REFS_TAGS, GitRef.REFS_HEADS,
+			GitRef.REFS_REMOTES };
+
 	public GitRevList(GitRepository repo)
 	{
 		repository = repo;
@@ -61,6 +70,28 @@ public class GitRevList
 	 */
 	public IStatus walkRevisionListWithSpecifier(GitRevSpecifier rev, int max, IProgressMonitor monitor)
 	{
+		return walkRevisionListWithSpecifier(rev, 0, max, monitor);
+	}
+
+	/**
+	 * Walks a revision to collect a window of its commits in reverse chronological order: up to max results, skipping
+	 * the first offset ones. Plain revisions are served from the repository's commit graph, which creates only the
+	 * commits of the window.
+	 * 
+	 * @param rev
+	 * @param offset
+	 *            The number of commits to skip
+	 * @param max
+	 *            Maximum number of results to return. {@link #NO_LIMIT} represent no limit.
+	 */
+	public IStatus walkRevisionListWithSpecifier(GitRevSpecifier rev, int offset, int max, IProgressMonitor monitor)
+	{
+		IStatus graphStatus = walkCommitGraph(rev, offset, max, monitor);
+		if (graphStatus != null)
+		{
+			return graphStatus;
+		}
+
 		int units = max;
 		if (units == -1)
 		{
@@ -90,6 +121,10 @@ public class GitRevList
 		{
 			arguments.add("-" + max); // only last N revs //$NON-NLS-1$
 		}
+		if (offset > 0)
+		{
+			arguments.add("--skip=" + offset); //$NON-NLS-1$
+		}
 
 		String formatString;
 		if (useRaw)
@@ -268,6 +303,108 @@ public class GitRevList
 		return Status.OK_STATUS;
 	}
 
+	/**
+	 * Serves the history of a plain revision (HEAD, a branch, tag or full SHA, with no paths or options) from the
+	 * repository's commit graph, which only has to ask git for the commits made since it was last updated. Without a
+	 * limit the commits are a list that creates each commit as it's asked for, so views should only ask for the rows
+	 * they show.
+	 * 
+	 * @return the status, or null if the graph can't answer and git log has to
+	 */
+	private IStatus walkCommitGraph(GitRevSpecifier rev, int offset, int max, IProgressMonitor monitor)
+	{
+		if (rev != null && !rev.isSimpleRef())
+		{
+			return null;
+		}
+		String sha = resolveCommit((rev == null) ? GitRepository.HEAD : rev.parameters().get(0));
+		if (sha == null)
+		{
+			return null;
+		}
+
+		long start = System.currentTimeMillis();
+		GitCommitGraph graph = repository.commitGraph();
+		IStatus status = graph.update(monitor);
+		if (status.getSeverity() == IStatus.CANCEL)
+		{
+			return status;
+		}
+		if (!status.isOK())
+		{
+			IdeLog.logWarning(GitPlugin.getDefault(), status.getMessage(), status.getException(), IDebugScopes.DEBUG);
+			return null;
+		}
+
+		GitCommitGraph.View view = graph.view(sha);
+		if (view == null)
+		{
+			return null;
+		}
+		if (max > 0)
+		{
+			this.commits = view.getCommits(offset, max);
+		}
+		else
+		{
+			List<GitCommit> history = view.asList();
+			this.commits = (offset > 0) ? history.subList(Math.min(offset, history.size()), history.size()) : history;
+		}
+
+		long duration = System.currentTimeMillis() - start;
+		logInfo(MessageFormat.format("Loaded {0} commits from the commit graph in {1} ms", commits.size(), duration)); //$NON-NLS-1$
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Resolves HEAD, a full SHA, or a ref name as git would (trying refs/, refs/tags/, refs/heads/ and refs/remotes/
+	 * in turn) to a commit SHA, without spawning git.
+	 * 
+	 * @param revision
+	 * @return the SHA, or null if the revision is anything else (a path, an abbreviated SHA, an expression...)
+	 */
+	private String resolveCommit(String revision)
+	{
+		if (StringUtil.isEmpty(revision) || revision.charAt(0) == '.' || revision.charAt(0) == '/'
+				|| revision.contains("..") || INVALID_REF_CHARS.matcher(revision).find()) //$NON-NLS-1$
+		{
+			return null;
+		}
+		try
+		{
+			String sha = null;
+			if (SHA_PATTERN.matcher(revision).matches())
+			{
+				sha = revision;
+			}
+			else if (GitRepository.HEAD.equals(revision) || revision.startsWith(GitRef.REFS))
+			{
+				sha = repository.refDatabase().resolve(revision);
+			}
+			else
+			{
+				for (String prefix : REF_PREFIXES)
+				{
+					sha = repository.refDatabase().resolve(prefix + revision);
+					if (sha != null)
+					{
+						break;
+					}
+				}
+				if (sha == null)
+				{
+					sha = repository.refDatabase().resolve(GitRef.REFS_REMOTES + revision + '/' + GitRepository.HEAD);
+				}
+			}
+			return (sha == null) ? null : repository.objectDatabase().peelTag(sha);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(GitPlugin.getDefault(), e, IDebugScopes.DEBUG);
+			return null;
+		}
+	}
+
 	private void logInfo(String string)
 	{
 		if (GitPlugin.getDefault() != null)
@@ -303,8 +440,19 @@ public class GitRevList
 				break;
 			}
 		}
+		return toTimestamp(Long.parseLong(builder.toString()));
+	}
+
+	/**
+	 * Converts a commit time, in seconds since the epoch, to the timestamp of a {@link GitCommit}.
+	 * 
+	 * @param seconds
+	 * @return
+	 */
+	static long toTimestamp(long seconds)
+	{
 		// Since we get time in seconds since epoch, not ms we need to multiply by 1000
-		long time = Long.parseLong(builder.toString()) * 1000;
+		long time = seconds * 1000;
 		// HACK for some reason my times are 5 minutes off the console/GitX. Adjust 5 mins
 		return time + (5 * 60 * 1000);
 	}
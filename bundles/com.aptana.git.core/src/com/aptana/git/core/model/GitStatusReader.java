@@ -0,0 +1,677 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * Computes the staged, unstaged and untracked files of a repository in-process, the same listings GitIndex used to
+ * get from "diff-index --cached HEAD", "diff-files" and "ls-files --others --exclude-standard" after an
+ * "update-index --refresh".
+ * <p>
+ * Working tree files are compared to the index by size and modification time first, and only hashed when that isn't
+ * conclusive (the entry is racily clean, or the index was written with a truncated size). Hashes are remembered per
+ * stat data, so a file that stays dirty is only read once. Whole directories whose cached tree in the index matches
+ * HEAD are skipped when looking for staged changes.
+ * <p>
+ * Things git does that we don't (symbolic links in the index, content filters and line ending conversion on a file
+ * whose contents differ, split or sparse indices) make {@link #changedFiles(Set)} throw an {@link IOException} so the
+ * caller can fall back to the git executable.
+ *
+ * @author cwilliams
+ */
+class GitStatusReader
+{
+
+	private static final String NULL_MODE = "000000"; //$NON-NLS-1$
+	private static final String NULL_SHA = "0000000000000000000000000000000000000000"; //$NON-NLS-1$
+
+	private static final int TYPE_MASK = 0170000;
+	private static final int TYPE_TREE = 0040000;
+	private static final int TYPE_SYMLINK = 0120000;
+	private static final int TYPE_GITLINK = 0160000;
+
+	private static final String INDEX = "index"; //$NON-NLS-1$
+	private static final String CONFIG = "config"; //$NON-NLS-1$
+	private static final String GITATTRIBUTES = ".gitattributes"; //$NON-NLS-1$
+	private static final String INFO_ATTRIBUTES = "info/attributes"; //$NON-NLS-1$
+	private static final String GITDIR_PREFIX = "gitdir:"; //$NON-NLS-1$
+
+	/**
+	 * Blob hash of a working tree file, along with the stat data it was computed for.
+	 */
+	private static final class CachedHash
+	{
+		private final long length;
+		private final long lastModified;
+		private final String sha;
+
+		private CachedHash(long length, long lastModified, String sha)
+		{
+			this.length = length;
+			this.lastModified = lastModified;
+			this.sha = sha;
+		}
+	}
+
+	/**
+	 * A blob (or gitlink) in HEAD's tree.
+	 */
+	private static final class TreeEntry
+	{
+		private final int mode;
+		private final String sha;
+
+		private TreeEntry(int mode, String sha)
+		{
+			this.mode = mode;
+			this.sha = sha;
+		}
+	}
+
+	/**
+	 * Restricts a refresh to a set of paths (files or directories) relative to the working directory.
+	 */
+	private static final class PathFilter
+	{
+		private final Set<String> paths;
+
+		private PathFilter(Set<String> paths)
+		{
+			this.paths = paths;
+		}
+
+		private boolean includes(String path)
+		{
+			if (paths.isEmpty())
+			{
+				return true;
+			}
+			String current = path;
+			while (true)
+			{
+				if (paths.contains(current))
+				{
+					return true;
+				}
+				int slash = current.lastIndexOf('/');
+				if (slash == -1)
+				{
+					return false;
+				}
+				current = current.substring(0, slash);
+			}
+		}
+
+		private boolean mayContain(String dir)
+		{
+			if (paths.isEmpty() || dir.length() == 0 || includes(dir))
+			{
+				return true;
+			}
+			String prefix = dir + '/';
+			for (String path : paths)
+			{
+				if (path.startsWith(prefix))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private final GitRepository repository;
+	private final File gitDir;
+	private final File workingDirectory;
+	private final GitRefDatabase refs;
+	private final GitObjectDatabase objects;
+	private final Map<String, CachedHash> hashes = new HashMap<String, CachedHash>();
+
+	GitStatusReader(GitRepository repository, File gitDir, File workingDirectory, GitRefDatabase refs,
+			GitObjectDatabase objects)
+	{
+		this.repository = repository;
+		this.gitDir = gitDir;
+		this.workingDirectory = workingDirectory;
+		this.refs = refs;
+		this.objects = objects;
+	}
+
+	/**
+	 * Builds the changed file listing, merging staged and unstaged changes of the same path into one entry.
+	 *
+	 * @param filePaths
+	 *            portable paths relative to the working directory to limit the listing to; empty for everything
+	 * @return
+	 * @throws IOException
+	 *             if the repository can't be read, or uses something we can't evaluate in-process
+	 */
+	synchronized Map<IPath, ChangedFile> changedFiles(Set<String> filePaths) throws IOException
+	{
+		PathFilter filter = new PathFilter(filePaths);
+		GitIndexFile index = GitIndexFile.read(new File(gitDir, INDEX));
+
+		Map<IPath, ChangedFile> result = new HashMap<IPath, ChangedFile>();
+		addAll(result, stagedFiles(index, filter));
+		addAll(result, unstagedFiles(index, filter));
+		addAll(result, untrackedFiles(index, filter));
+		return result;
+	}
+
+	/**
+	 * Adds files to the listing. When a path is already there, the entry that's already there decides the status, so
+	 * a staged status (and the HEAD blob to unstage to) wins over the working tree's.
+	 */
+	private static void addAll(Map<IPath, ChangedFile> result, Map<IPath, ChangedFile> files)
+	{
+		for (Map.Entry<IPath, ChangedFile> entry : files.entrySet())
+		{
+			ChangedFile existing = result.get(entry.getKey());
+			result.put(entry.getKey(), (existing == null) ? entry.getValue() : existing.merge(entry.getValue()));
+		}
+	}
+
+	/**
+	 * HEAD vs the index.
+	 */
+	private Map<IPath, ChangedFile> stagedFiles(GitIndexFile index, PathFilter filter) throws IOException
+	{
+		String head = refs.resolve(GitRepository.HEAD);
+		if (head == null)
+		{
+			// No commits yet. Same as diff-index failing on the unknown revision, report nothing as staged.
+			return Collections.emptyMap();
+		}
+
+		Map<String, String> cachedTrees = index.cachedTrees();
+		String rootTree = objects.readCommitTree(head);
+		if (rootTree.equals(cachedTrees.get(StringUtil.EMPTY)))
+		{
+			return Collections.emptyMap();
+		}
+
+		// Flatten HEAD, except for directories the index says are unchanged
+		Map<String, TreeEntry> headEntries = new HashMap<String, TreeEntry>();
+		Set<String> unchangedDirs = new HashSet<String>();
+		readTree(rootTree, StringUtil.EMPTY, cachedTrees, filter, headEntries, unchangedDirs);
+
+		Map<IPath, ChangedFile> result = new HashMap<IPath, ChangedFile>();
+		String lastPath = null;
+		for (GitIndexFile.Entry entry : index.entries())
+		{
+			if (entry.path.equals(lastPath) || !filter.includes(entry.path) || isUnder(entry.path, unchangedDirs))
+			{
+				continue;
+			}
+			lastPath = entry.path;
+
+			TreeEntry headEntry = headEntries.remove(entry.path);
+			String mode = (headEntry == null) ? NULL_MODE : toModeString(headEntry.mode);
+			String sha = (headEntry == null) ? NULL_SHA : headEntry.sha;
+
+			if (entry.stage != 0)
+			{
+				put(result, entry.path, ChangedFile.Status.UNMERGED, mode, sha, true);
+			}
+			else if (entry.intentToAdd)
+			{
+				continue;
+			}
+			else if (headEntry == null)
+			{
+				put(result, entry.path, ChangedFile.Status.NEW, mode, sha, true);
+			}
+			else if (!headEntry.sha.equals(entry.sha) || headEntry.mode != entry.mode)
+			{
+				put(result, entry.path, ChangedFile.Status.MODIFIED, mode, sha, true);
+			}
+		}
+
+		// Whatever is left in HEAD isn't in the index anymore
+		for (Map.Entry<String, TreeEntry> removed : headEntries.entrySet())
+		{
+			put(result, removed.getKey(), ChangedFile.Status.DELETED, toModeString(removed.getValue().mode),
+					removed.getValue().sha, true);
+		}
+		return result;
+	}
+
+	private void readTree(String treeSHA, final String prefix, final Map<String, String> cachedTrees,
+			final PathFilter filter, final Map<String, TreeEntry> headEntries, final Set<String> unchangedDirs)
+			throws IOException
+	{
+		objects.readTree(treeSHA, new GitObjectDatabase.ITreeVisitor()
+		{
+			public void visit(int mode, String name, String sha) throws IOException
+			{
+				String path = prefix + name;
+				if ((mode & TYPE_MASK) == TYPE_TREE)
+				{
+					if (!filter.mayContain(path))
+					{
+						return;
+					}
+					if (sha.equals(cachedTrees.get(path)))
+					{
+						unchangedDirs.add(path);
+						return;
+					}
+					readTree(sha, path + '/', cachedTrees, filter, headEntries, unchangedDirs);
+				}
+				else if (filter.includes(path))
+				{
+					headEntries.put(path, new TreeEntry(mode, sha));
+				}
+			}
+		});
+	}
+
+	/**
+	 * The index vs the working tree.
+	 */
+	private Map<IPath, ChangedFile> unstagedFiles(GitIndexFile index, PathFilter filter) throws IOException
+	{
+		long indexModifiedSeconds = index.lastModified() / 1000;
+		Boolean conversions = null;
+
+		Map<IPath, ChangedFile> result = new HashMap<IPath, ChangedFile>();
+		String lastPath = null;
+		for (GitIndexFile.Entry entry : index.entries())
+		{
+			if (entry.path.equals(lastPath) || !filter.includes(entry.path))
+			{
+				continue;
+			}
+			lastPath = entry.path;
+
+			if (entry.stage != 0)
+			{
+				put(result, entry.path, ChangedFile.Status.UNMERGED, NULL_MODE, NULL_SHA, false);
+				continue;
+			}
+			if (entry.intentToAdd)
+			{
+				put(result, entry.path, ChangedFile.Status.NEW, NULL_MODE, NULL_SHA, false);
+				continue;
+			}
+			if (entry.assumeValid || entry.skipWorktree)
+			{
+				continue;
+			}
+
+			String mode = toModeString(entry.mode);
+			File file = new File(workingDirectory, entry.path);
+			int type = entry.mode & TYPE_MASK;
+			if (type == TYPE_GITLINK)
+			{
+				if (!file.exists())
+				{
+					put(result, entry.path, ChangedFile.Status.DELETED, mode, entry.sha, false);
+				}
+				else if (isSubmoduleModified(file, entry.sha))
+				{
+					put(result, entry.path, ChangedFile.Status.MODIFIED, mode, entry.sha, false);
+				}
+				continue;
+			}
+			if (type == TYPE_SYMLINK)
+			{
+				throw new IOException(MessageFormat.format("Unable to check symbolic link {0}", entry.path)); //$NON-NLS-1$
+			}
+
+			if (!file.isFile())
+			{
+				put(result, entry.path, ChangedFile.Status.DELETED, mode, entry.sha, false);
+				continue;
+			}
+
+			long length = file.length();
+			long lastModified = file.lastModified();
+			boolean sizeMatches = (int) length == entry.size;
+			boolean racy = entry.mtimeSeconds >= indexModifiedSeconds;
+			if (sizeMatches && (int) (lastModified / 1000) == entry.mtimeSeconds && !racy)
+			{
+				continue;
+			}
+
+			if (conversions == null)
+			{
+				conversions = hasContentConversions(index);
+			}
+			// git writes a size of 0 for racily clean entries ("smudging" them), so those always need to be hashed.
+			// Otherwise a different size means different contents, unless the file gets converted on the way in.
+			if (!sizeMatches && entry.size != 0 && !conversions)
+			{
+				put(result, entry.path, ChangedFile.Status.MODIFIED, mode, entry.sha, false);
+				continue;
+			}
+
+			if (hash(entry.path, file, length, lastModified).equals(entry.sha))
+			{
+				continue;
+			}
+			if (conversions)
+			{
+				throw new IOException(MessageFormat.format("{0} may be subject to content conversion", entry.path)); //$NON-NLS-1$
+			}
+			put(result, entry.path, ChangedFile.Status.MODIFIED, mode, entry.sha, false);
+		}
+		return result;
+	}
+
+	/**
+	 * Files in the working tree that aren't in the index and aren't ignored.
+	 */
+	private Map<IPath, ChangedFile> untrackedFiles(GitIndexFile index, PathFilter filter) throws IOException
+	{
+		Set<String> tracked = new HashSet<String>(index.entries().size());
+		for (GitIndexFile.Entry entry : index.entries())
+		{
+			tracked.add(entry.path);
+		}
+
+		GitIgnoreRules ignores = new GitIgnoreRules(workingDirectory, refs.getCommonDir(), globalExcludesFile());
+		Map<IPath, ChangedFile> result = new HashMap<IPath, ChangedFile>();
+		collectUntracked(workingDirectory, StringUtil.EMPTY, tracked, ignores, filter, result);
+		return result;
+	}
+
+	private void collectUntracked(File dir, String prefix, Set<String> tracked, GitIgnoreRules ignores,
+			PathFilter filter, Map<IPath, ChangedFile> result)
+	{
+		String[] names = dir.list();
+		if (names == null)
+		{
+			return;
+		}
+		for (String name : names)
+		{
+			if (GitRepository.GIT_DIR.equals(name))
+			{
+				continue;
+			}
+			String path = prefix + name;
+			File file = new File(dir, name);
+			if (file.isDirectory())
+			{
+				// Nested repositories (submodules or not) are left alone
+				if (tracked.contains(path) || new File(file, GitRepository.GIT_DIR).exists()
+						|| !filter.mayContain(path) || ignores.isIgnored(path, true))
+				{
+					continue;
+				}
+				collectUntracked(file, path + '/', tracked, ignores, filter, result);
+			}
+			else if (!tracked.contains(path) && filter.includes(path) && !ignores.isIgnored(path, false))
+			{
+				IPath relativePath = Path.fromPortableString(path);
+				result.put(relativePath, new ChangedFile(repository, relativePath, ChangedFile.Status.NEW, null, null,
+						false, true));
+			}
+		}
+	}
+
+	private void put(Map<IPath, ChangedFile> result, String path, ChangedFile.Status status, String mode, String sha,
+			boolean staged)
+	{
+		IPath relativePath = Path.fromPortableString(path);
+		result.put(relativePath, new ChangedFile(repository, relativePath, status, mode, sha, staged, !staged));
+	}
+
+	private static boolean isUnder(String path, Set<String> dirs)
+	{
+		if (dirs.isEmpty())
+		{
+			return false;
+		}
+		int slash = path.lastIndexOf('/');
+		while (slash != -1)
+		{
+			path = path.substring(0, slash);
+			if (dirs.contains(path))
+			{
+				return true;
+			}
+			slash = path.lastIndexOf('/');
+		}
+		return false;
+	}
+
+	/**
+	 * A submodule is modified when its checked out commit isn't the one recorded in the index. Submodules that were
+	 * never initialized have no git dir and count as unmodified, as they do for git.
+	 */
+	private boolean isSubmoduleModified(File dir, String sha) throws IOException
+	{
+		File dotGit = new File(dir, GitRepository.GIT_DIR);
+		File subGitDir = null;
+		if (dotGit.isDirectory())
+		{
+			subGitDir = dotGit;
+		}
+		else if (dotGit.isFile())
+		{
+			// "gitdir: ../.git/modules/foo"
+			String contents = IOUtil.read(new FileInputStream(dotGit)); // $codepro.audit.disable closeWhereCreated
+			if (contents != null && contents.startsWith(GITDIR_PREFIX))
+			{
+				String path = contents.substring(GITDIR_PREFIX.length()).trim();
+				subGitDir = new File(path);
+				if (!subGitDir.isAbsolute())
+				{
+					subGitDir = new File(dir, path);
+				}
+			}
+		}
+		if (subGitDir == null || !subGitDir.isDirectory())
+		{
+			return false;
+		}
+		String head = new GitRefDatabase(subGitDir).resolve(GitRepository.HEAD);
+		return head != null && !head.equals(sha);
+	}
+
+	/**
+	 * Computes the blob name git would give the file's contents, reusing the last result if the file hasn't been
+	 * touched since. Results for files modified within the current second aren't kept, as another write within that
+	 * second wouldn't change the stat data we key on.
+	 */
+	private String hash(String path, File file, long length, long lastModified) throws IOException
+	{
+		CachedHash cached = hashes.get(path);
+		if (cached != null && cached.length == length && cached.lastModified == lastModified)
+		{
+			return cached.sha;
+		}
+
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			IOException ioe = new IOException(e.getMessage());
+			ioe.initCause(e);
+			throw ioe;
+		}
+		digest.update(MessageFormat.format("blob {0}\0", Long.toString(length)).getBytes(IOUtil.UTF_8)); //$NON-NLS-1$
+
+		long read = 0;
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = in.read(buffer)) != -1) // $codepro.audit.disable assignmentInCondition
+			{
+				digest.update(buffer, 0, count);
+				read += count;
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		if (read != length)
+		{
+			// written to while we were reading it
+			throw new IOException(MessageFormat.format("{0} changed while it was being read", path)); //$NON-NLS-1$
+		}
+
+		String sha = GitObjectDatabase.toHex(digest.digest(), 0);
+		if (lastModified / 1000 < System.currentTimeMillis() / 1000)
+		{
+			hashes.put(path, new CachedHash(length, lastModified, sha));
+		}
+		return sha;
+	}
+
+	/**
+	 * Whether any file could be changed by attributes (filters, eol, text) or core.autocrlf on its way into the
+	 * repository, in which case its raw contents hashing differently from the index proves nothing.
+	 */
+	private boolean hasContentConversions(GitIndexFile index)
+	{
+		String autocrlf = configValue("autocrlf"); //$NON-NLS-1$
+		if (autocrlf != null && !Boolean.FALSE.toString().equalsIgnoreCase(autocrlf))
+		{
+			return true;
+		}
+		if (new File(workingDirectory, GITATTRIBUTES).exists()
+				|| new File(refs.getCommonDir(), INFO_ATTRIBUTES).exists() || configValue("attributesfile") != null //$NON-NLS-1$
+				|| xdgConfigFile("attributes").exists()) //$NON-NLS-1$
+		{
+			return true;
+		}
+		for (GitIndexFile.Entry entry : index.entries())
+		{
+			if (entry.path.equals(GITATTRIBUTES) || entry.path.endsWith('/' + GITATTRIBUTES))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private File globalExcludesFile()
+	{
+		String value = configValue("excludesfile"); //$NON-NLS-1$
+		if (value == null)
+		{
+			return xdgConfigFile("ignore"); //$NON-NLS-1$
+		}
+		if (value.startsWith("~/")) //$NON-NLS-1$
+		{
+			return new File(System.getProperty("user.home"), value.substring(2)); //$NON-NLS-1$
+		}
+		return new File(value);
+	}
+
+	/**
+	 * Looks up a key of the [core] section, in the repository's config and then the user's.
+	 */
+	private String configValue(String key)
+	{
+		List<File> configs = new ArrayList<File>(3);
+		configs.add(new File(refs.getCommonDir(), CONFIG));
+		configs.add(new File(System.getProperty("user.home"), ".gitconfig")); //$NON-NLS-1$ //$NON-NLS-2$
+		configs.add(xdgConfigFile(CONFIG));
+
+		for (File config : configs)
+		{
+			String value = readCoreValue(config, key);
+			if (value != null)
+			{
+				return value;
+			}
+		}
+		return null;
+	}
+
+	private static String readCoreValue(File config, String key)
+	{
+		if (!config.isFile())
+		{
+			return null;
+		}
+		String contents;
+		try
+		{
+			contents = IOUtil.read(new FileInputStream(config)); // $codepro.audit.disable closeWhereCreated
+		}
+		catch (FileNotFoundException e)
+		{
+			return null;
+		}
+		if (contents == null)
+		{
+			return null;
+		}
+
+		String value = null;
+		boolean inCore = false;
+		for (String line : StringUtil.tokenize(contents, "\n")) //$NON-NLS-1$
+		{
+			line = line.trim();
+			if (line.startsWith("[")) //$NON-NLS-1$
+			{
+				inCore = line.equalsIgnoreCase("[core]"); //$NON-NLS-1$
+				continue;
+			}
+			if (!inCore)
+			{
+				continue;
+			}
+			int equals = line.indexOf('=');
+			String name = (equals == -1) ? line : line.substring(0, equals).trim();
+			if (name.equalsIgnoreCase(key))
+			{
+				// A key without a value is a boolean true. Later lines win.
+				value = (equals == -1) ? Boolean.TRUE.toString() : StringUtil.stripQuotes(line.substring(equals + 1)
+						.trim());
+			}
+		}
+		return value;
+	}
+
+	private static File xdgConfigFile(String name)
+	{
+		String xdgHome = System.getenv("XDG_CONFIG_HOME"); //$NON-NLS-1$
+		File base = StringUtil.isEmpty(xdgHome) ? new File(System.getProperty("user.home"), ".config") //$NON-NLS-1$ //$NON-NLS-2$
+				: new File(xdgHome);
+		return new File(new File(base, "git"), name); //$NON-NLS-1$
+	}
+
+	private static String toModeString(int mode)
+	{
+		String octal = Integer.toOctalString(mode);
+		return (octal.length() < NULL_MODE.length()) ? NULL_MODE.substring(octal.length()) + octal : octal;
+	}
+}
@@ -8,16 +8,18 @@
 package com.aptana.git.ui.internal.history;
 
 import java.text.SimpleDateFormat;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.BaseLabelProvider;
 import org.eclipse.jface.viewers.ColumnWeightData;
+import org.eclipse.jface.viewers.ILazyContentProvider;
 import org.eclipse.jface.viewers.ITableLabelProvider;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TableLayout;
 import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
@@ -39,7 +41,8 @@ import com.aptana.git.core.model.GitRef;
 
 /**
  * Table to show the list of commits for a resource in reverse chronological order. Custom paints the first column so
- * that we can draw the branching history graphically.
+ * that we can draw the branching history graphically. Rows are only fetched from the list of commits as they're shown,
+ * and the graph is only laid out as far down as the table has been scrolled.
  * 
  * @author cwilliams
  */
@@ -49,6 +52,11 @@ class CommitGraphTable extends TableViewer
 	private BranchPainter renderer;
 	private Map<GitCommit, GraphCellInfo> decorations;
 	private List<GitCommit> commits;
+	private GitGrapher grapher;
+	/**
+	 * The number of commits laid out by the grapher so far.
+	 */
+	private int decorated;
 
 	CommitGraphTable(Composite parent)
 	{
@@ -80,7 +88,7 @@ class CommitGraphTable extends TableViewer
 		date.setWidth(250);
 		layout.addColumnData(new ColumnWeightData(5, true));
 
-		setContentProvider(ArrayContentProvider.getInstance());
+		setContentProvider(new CommitContentProvider());
 		setLabelProvider(new CommitLabelProvider());
 
 		createPaintListener(table);
@@ -93,30 +101,61 @@ class CommitGraphTable extends TableViewer
 			}
 		});
 
-		table.addListener(SWT.SetData, new Listener()
-		{
-			public void handleEvent(Event event)
-			{
-				if (commits == null)
-					return;
-				TableItem item = (TableItem) event.item;
-				int index = table.indexOf(item);
-				item.setData(commits.get(index));
-			}
-		});
 	}
 
 	void setCommits(final List<GitCommit> commits)
 	{
 		this.commits = commits;
-		decorations = new GitGrapher().decorateCommits(commits);
+		decorations = new HashMap<GitCommit, GraphCellInfo>();
+		grapher = new GitGrapher();
+		decorated = 0;
 		setInput(commits);
+		setItemCount(commits.size());
 		if (!commits.isEmpty())
 		{
 			setSelection(new StructuredSelection(commits.get(0)));
 		}
 	}
 
+	/**
+	 * Lays out the graph down to the given row. Lanes depend on every commit above, so this goes through the commits
+	 * in order, but only once.
+	 * 
+	 * @param index
+	 */
+	private void decorateThrough(int index)
+	{
+		for (; decorated <= index; decorated++)
+		{
+			GitCommit commit = commits.get(decorated);
+			decorations.put(commit, grapher.decorateNext(commit));
+		}
+	}
+
+	/**
+	 * Hands the table a commit at a time, as rows become visible.
+	 */
+	private class CommitContentProvider implements ILazyContentProvider
+	{
+		public void updateElement(int index)
+		{
+			if (commits == null || index >= commits.size())
+			{
+				return;
+			}
+			decorateThrough(index);
+			replace(commits.get(index), index);
+		}
+
+		public void inputChanged(Viewer viewer, Object oldInput, Object newInput)
+		{
+		}
+
+		public void dispose()
+		{
+		}
+	}
+
 	/**
 	 * Tell SWT that we'll be painting the first column.
 	 * 
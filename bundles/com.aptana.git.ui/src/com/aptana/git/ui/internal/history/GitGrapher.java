@@ -56,6 +56,24 @@ class GitGrapher
 		return decorations;
 	}
 
+	/**
+	 * Decorates the next commit of a history, for callers that go through it a part at a time rather than all at once
+	 * like {@link #decorateCommits(List)}. The first commit decorated starts the lane colors over.
+	 * 
+	 * @param commit
+	 *            the commit following the ones decorated so far. The order is reverse chronological (newest to
+	 *            oldest).
+	 * @return
+	 */
+	GraphCellInfo decorateNext(GitCommit commit)
+	{
+		if (previous == null)
+		{
+			GitLane.resetColors();
+		}
+		return decorateCommit(commit);
+	}
+
 	/**
 	 * Does the actual dirty work of figuring out the lanes and lines for a commit. This method uses the shared state of
 	 * {@link #pl} and {@link #previous}. Must be called in reverse chronological order for commits!
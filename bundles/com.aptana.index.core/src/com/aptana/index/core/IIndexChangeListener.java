@@ -0,0 +1,44 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+/**
+ * Notified of changes to an {@link Index}, so data derived from its entries can be dropped per document rather than
+ * whenever the index changes at all. Notifications come after the change is visible to queries, on the thread that
+ * made it, which is often a build thread writing many entries in a row: implementations should be cheap.
+ *
+ * @see Index#addChangeListener(IIndexChangeListener)
+ */
+public interface IIndexChangeListener
+{
+	/**
+	 * An entry was added for a document.
+	 *
+	 * @param index
+	 * @param category
+	 * @param key
+	 * @param document
+	 */
+	void entryAdded(Index index, String category, String key, String document);
+
+	/**
+	 * All entries of a document were removed.
+	 *
+	 * @param index
+	 * @param document
+	 */
+	void documentRemoved(Index index, String document);
+
+	/**
+	 * Entries were removed without regard to their documents, e.g. whole categories dropped or the index reset.
+	 * Anything derived from the index should be considered stale.
+	 *
+	 * @param index
+	 */
+	void indexReset(Index index);
+}
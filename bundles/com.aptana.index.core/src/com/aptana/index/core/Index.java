@@ -14,127 +14,42 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 import java.util.zip.CRC32;
 
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import com.aptana.core.logging.IdeLog;
-import com.aptana.internal.index.core.DiskIndex;
+import com.aptana.internal.index.core.IDiskIndex;
+import com.aptana.internal.index.core.IndexManifest;
+import com.aptana.internal.index.core.MappedDiskIndex;
 import com.aptana.internal.index.core.MemoryIndex;
+import com.aptana.internal.index.core.PatternCache;
 
+/**
+ * An index is an immutable disk index plus the documents changed since it was written, held in memory. Queries read
+ * the current {@link Generation} without taking any locks. Once enough documents have changed, a background job writes
+ * them into a new disk index and then publishes a new generation; queries that started against the old generation
+ * finish against it.
+ */
 public class Index
 {
 	private static final int MATCH_RULE_INDEX_MASK = SearchPattern.EXACT_MATCH | SearchPattern.PREFIX_MATCH
 			| SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE | SearchPattern.REGEX_MATCH;
-	private static final Map<String, Pattern> PATTERNS = new HashMap<String, Pattern>();
+	private static final int PATTERN_CACHE_SIZE = 64;
+	private static final String MANIFEST_EXTENSION = ".manifest"; //$NON-NLS-1$
+	private static final PatternCache PATTERNS = new PatternCache(PATTERN_CACHE_SIZE);
 	// Separator to use after the container path
 	public static final char DEFAULT_SEPARATOR = '/';
 
-	/**
-	 * appendAsRegEx
-	 * 
-	 * @param pattern
-	 * @param buffer
-	 * @return
-	 */
-	private static StringBuffer appendAsRegEx(String pattern, StringBuffer buffer)
-	{
-		boolean isEscaped = false;
-
-		for (int i = 0; i < pattern.length(); i++)
-		{
-			char c = pattern.charAt(i);
-
-			switch (c)
-			{
-			// the backslash
-				case '\\':
-					// the backslash is escape char in string matcher
-					if (!isEscaped)
-					{
-						isEscaped = true;
-					}
-					else
-					{
-						buffer.append("\\\\"); //$NON-NLS-1$
-						isEscaped = false;
-					}
-					break;
-
-				// characters that need to be escaped in the regex.
-				case '(':
-				case ')':
-				case '{':
-				case '}':
-				case '.':
-				case '[':
-				case ']':
-				case '$':
-				case '^':
-				case '+':
-				case '|':
-					if (isEscaped)
-					{
-						buffer.append("\\\\"); //$NON-NLS-1$
-						isEscaped = false;
-					}
-					buffer.append('\\');
-					buffer.append(c);
-					break;
-
-				case '?':
-					if (!isEscaped)
-					{
-						buffer.append('.');
-					}
-					else
-					{
-						buffer.append('\\');
-						buffer.append(c);
-						isEscaped = false;
-					}
-					break;
-
-				case '*':
-					if (!isEscaped)
-					{
-						buffer.append(".*"); //$NON-NLS-1$
-					}
-					else
-					{
-						buffer.append('\\');
-						buffer.append(c);
-						isEscaped = false;
-					}
-					break;
-
-				default:
-					if (isEscaped)
-					{
-						buffer.append("\\\\"); //$NON-NLS-1$
-						isEscaped = false;
-					}
-					buffer.append(c);
-					break;
-			}
-		}
-
-		if (isEscaped)
-		{
-			buffer.append("\\\\"); //$NON-NLS-1$
-			isEscaped = false;
-		}
-
-		return buffer;
-	}
-
 	/**
 	 * computeIndexLocation
 	 * 
@@ -172,138 +87,140 @@ public class Index
 	 */
 	public static boolean isMatch(String pattern, String word, int matchRule)
 	{
-		if (pattern == null)
-		{
-			return true;
-		}
+		return PATTERNS.getMatcher(pattern, matchRule).matches(word);
+	}
 
-		int patternLength = pattern.length();
-		int wordLength = word.length();
+	/**
+	 * The state of the index at one point in time. The disk index never changes; the memory indexes only ever have
+	 * documents added, changed or removed, and newer layers hide whatever older layers hold for the same document.
+	 */
+	private static class Generation
+	{
+		final MappedDiskIndex diskIndex;
+		/**
+		 * The changes being written to disk, or null if no merge is in progress.
+		 */
+		final MemoryIndex mergingIndex;
+		final MemoryIndex memoryIndex;
 
-		if (patternLength == 0)
+		Generation(MappedDiskIndex diskIndex, MemoryIndex mergingIndex, MemoryIndex memoryIndex)
 		{
-			return matchRule != SearchPattern.EXACT_MATCH;
+			this.diskIndex = diskIndex;
+			this.mergingIndex = mergingIndex;
+			this.memoryIndex = memoryIndex;
 		}
 
-		switch (matchRule)
+		Map<String, QueryResult> query(String[] categories, String key, int rule, PatternCache patterns)
+				throws IOException
 		{
-			case SearchPattern.EXACT_MATCH:
-				return patternLength == wordLength && pattern.equalsIgnoreCase(word);
-
-			case SearchPattern.PREFIX_MATCH:
-				return patternLength <= wordLength && word.toLowerCase().startsWith(pattern.toLowerCase());
-
-			case SearchPattern.PATTERN_MATCH:
-				return patternMatch(pattern.toLowerCase(), word.toLowerCase());
+			Map<String, QueryResult> results;
 
-			case SearchPattern.REGEX_MATCH:
-				return regexPatternMatch(pattern, word, false);
-
-			case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
-				return patternLength == wordLength && pattern.equals(word);
-
-			case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
-				return patternLength <= wordLength && word.startsWith(pattern);
-
-			case SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE:
-				return patternMatch(pattern, word);
+			if (mergingIndex == null)
+			{
+				if (!memoryIndex.hasChanged())
+				{
+					return diskIndex.addQueryResults(categories, key, rule, null, patterns);
+				}
 
-			case SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE:
-				return regexPatternMatch(pattern, word, true);
-		}
+				results = diskIndex.addQueryResults(categories, key, rule, memoryIndex, patterns);
+				return memoryIndex.addQueryResults(categories, key, rule, results, patterns);
+			}
 
-		return false;
-	}
+			results = diskIndex.addQueryResults(categories, key, rule, mergingIndex, patterns);
+			results = mergingIndex.addQueryResults(categories, key, rule, results, patterns);
 
-	/**
-	 * isWordChar
-	 * 
-	 * @param c
-	 * @return
-	 */
-	private static boolean isWordChar(char c)
-	{
-		return Character.isLetterOrDigit(c);
-	}
+			if (memoryIndex.hasChanged())
+			{
+				results = memoryIndex.addQueryResults(categories, key, rule, hideChangedDocuments(results),
+						patterns);
+			}
 
-	/**
-	 * patternMatch
-	 * 
-	 * @param pattern
-	 * @param word
-	 * @return
-	 */
-	private static boolean patternMatch(String pattern, String word)
-	{
-		if (pattern.equals("*")) //$NON-NLS-1$
-		{
-			return true;
+			return results;
 		}
 
-		// see if we've cached a regex for this pattern already
-		Pattern p = PATTERNS.get(pattern);
-
-		// nope, so try and create one
-		if (p == null)
+		Set<String> queryDocumentNames(String substring) throws IOException
 		{
-			int len = pattern.length();
-			StringBuffer buffer = new StringBuffer(len + 10);
+			Set<String> results;
 
-			if (len > 0 && isWordChar(pattern.charAt(0)))
+			if (mergingIndex == null)
 			{
-				buffer.append("\\b"); //$NON-NLS-1$
+				if (!memoryIndex.hasChanged())
+				{
+					return diskIndex.addDocumentNames(substring, null);
+				}
+
+				results = diskIndex.addDocumentNames(substring, memoryIndex);
+				results.addAll(memoryIndex.addDocumentNames(substring));
+				return results;
 			}
 
-			appendAsRegEx(pattern, buffer);
+			results = diskIndex.addDocumentNames(substring, mergingIndex);
+			results.addAll(mergingIndex.addDocumentNames(substring));
 
-			if (len > 0 && isWordChar(pattern.charAt(len - 1)))
+			if (memoryIndex.hasChanged())
 			{
-				buffer.append("\\b"); //$NON-NLS-1$
+				for (Iterator<String> i = results.iterator(); i.hasNext();)
+				{
+					if (memoryIndex.isChanged(i.next()))
+					{
+						i.remove();
+					}
+				}
+				results.addAll(memoryIndex.addDocumentNames(substring));
 			}
 
-			String regex = buffer.toString();
-
-			p = Pattern.compile(regex);
-
-			PATTERNS.put(pattern, p);
+			return results;
 		}
 
-		return (p != null) ? p.matcher(word).find() : false;
-	}
-
-	/**
-	 * regexPatternMatch
-	 * 
-	 * @param regex
-	 * @param word
-	 * @return
-	 */
-	private static boolean regexPatternMatch(String regex, String word, boolean caseSensitive)
-	{
-		Pattern pattern = PATTERNS.get(regex);
-
-		if (pattern == null)
+		/**
+		 * Drops the documents the newest memory index has changed from results gathered from the older layers.
+		 */
+		private Map<String, QueryResult> hideChangedDocuments(Map<String, QueryResult> results)
 		{
-			try
+			if (results == null)
 			{
-				// compile the pattern
-				pattern = (caseSensitive) ? Pattern.compile(regex) : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-
-				// cache for later
-				PATTERNS.put(regex, pattern);
+				return null;
 			}
-			catch (PatternSyntaxException e)
+
+			Map<String, QueryResult> visible = new HashMap<String, QueryResult>(results.size());
+
+			for (QueryResult result : results.values())
 			{
+				QueryResult copy = new QueryResult(result.getWord());
+
+				for (String document : result.getDocuments())
+				{
+					if (!memoryIndex.isChanged(document))
+					{
+						copy.addDocumentName(document);
+					}
+				}
+
+				if (!copy.isEmpty())
+				{
+					visible.put(copy.getWord(), copy);
+				}
 			}
-		}
 
-		return (pattern != null) ? pattern.matcher(word).find() : false;
+			return visible;
+		}
 	}
 
-	private MemoryIndex memoryIndex;
-	private DiskIndex diskIndex;
-	ReadWriteLock monitor;
+	private volatile Generation generation;
+	/**
+	 * Serializes writers with each other and with the publishing of new generations.
+	 */
+	private final Object writeLock;
+	/**
+	 * Held for the whole of a merge, so only one runs at a time.
+	 */
+	private final Object mergeLock;
+	private final PatternCache patterns;
+	private final Job mergeJob;
 	private URI containerURI;
+	private volatile long modificationStamp;
+	private final ListenerList listeners;
+	private final IndexManifest manifest;
 
 	/**
 	 * Index
@@ -315,27 +232,29 @@ public class Index
 	protected Index(URI containerURI, boolean reuseExistingFile) throws IOException
 	{
 		this.containerURI = containerURI;
-
-		this.memoryIndex = new MemoryIndex();
-		this.monitor = new ReentrantReadWriteLock();
+		this.writeLock = new Object();
+		this.mergeLock = new Object();
+		this.patterns = new PatternCache(PATTERN_CACHE_SIZE);
+		this.mergeJob = new MergeJob();
+		this.listeners = new ListenerList();
 
 		// Convert to a filename we can use for the actual index on disk
 		IPath diskIndexPath = computeIndexLocation(containerURI);
 		if (diskIndexPath == null)
 		{
+			this.generation = new Generation(null, null, new MemoryIndex());
+			this.manifest = new IndexManifest(null);
+			this.manifest.clear(true);
 			return;
 		}
 		String diskIndexPathString = (diskIndexPath.getDevice() == null) ? diskIndexPath.toString() : diskIndexPath
 				.toOSString();
-		this.enterWrite();
-		try
-		{
-			this.diskIndex = new DiskIndex(diskIndexPathString);
-			this.diskIndex.initialize(reuseExistingFile);
-		}
-		finally
+		this.generation = new Generation(MappedDiskIndex.open(diskIndexPathString, reuseExistingFile), null,
+				new MemoryIndex());
+		this.manifest = new IndexManifest(new File(diskIndexPathString + MANIFEST_EXTENSION));
+		if (!reuseExistingFile)
 		{
-			this.exitWrite();
+			this.manifest.clear(true);
 		}
 	}
 
@@ -348,112 +267,88 @@ public class Index
 	 */
 	public void addEntry(String category, String key, URI containerRelativeURI)
 	{
-		this.enterWrite();
-		try
-		{
-			this.memoryIndex.addEntry(category, key, containerRelativeURI.toString());
-		}
-		finally
-		{
-			this.exitWrite();
-		}
-	}
+		MemoryIndex memoryIndex;
 
-	/**
-	 * deleteIndexFile
-	 */
-	void deleteIndexFile()
-	{
-		if (isTraceEnabled())
+		synchronized (this.writeLock)
 		{
-			logTrace(MessageFormat.format("Deleting index ''{0}''", this)); //$NON-NLS-1$
+			memoryIndex = this.generation.memoryIndex;
+			memoryIndex.addEntry(category, key, containerRelativeURI.toString());
+			this.modificationStamp++;
 		}
 
-		// TODO Enter write?
+		scheduleMerge(memoryIndex);
 
-		File indexFile = this.getIndexFile();
-		if (indexFile != null && indexFile.exists())
+		for (Object listener : this.listeners.getListeners())
 		{
-			indexFile.delete();
+			((IIndexChangeListener) listener).entryAdded(this, category, key, containerRelativeURI.toString());
 		}
 	}
 
-	protected static void logTrace(String msg)
-	{
-		IdeLog.logTrace(IndexPlugin.getDefault(), msg, IDebugScopes.INDEXER);
-	}
-
-	protected static boolean isTraceEnabled()
-	{
-		return IdeLog.isTraceEnabled(IndexPlugin.getDefault(), IDebugScopes.INDEXER);
-	}
-
 	/**
-	 * Blocks to acquire the read lock.
+	 * Adds a listener notified of entries added and removed from now on. Adding a listener twice has no effect.
+	 * 
+	 * @param listener
 	 */
-	private void enterRead()
+	public void addChangeListener(IIndexChangeListener listener)
 	{
-		if (this.monitor != null)
-		{
-			this.monitor.readLock().lock();
-		}
+		this.listeners.add(listener);
 	}
 
 	/**
-	 * Blocks to acquire the write lock
+	 * removeChangeListener
+	 * 
+	 * @param listener
 	 */
-	private void enterWrite()
+	public void removeChangeListener(IIndexChangeListener listener)
 	{
-		if (this.monitor != null)
-		{
-			this.monitor.writeLock().lock();
-		}
+		this.listeners.remove(listener);
 	}
 
-	private void exitRead()
+	private void fireIndexReset()
 	{
-		if (this.monitor != null)
+		for (Object listener : this.listeners.getListeners())
 		{
-			this.monitor.readLock().unlock();
+			((IIndexChangeListener) listener).indexReset(this);
 		}
 	}
 
 	/**
-	 * This method does not guarantee that it will acquire the write lock. A boolean is returned indicating success.
-	 * 
-	 * @return
+	 * Deletes the files of the index and drops its change listeners, after telling them the index was reset.
 	 */
-	private boolean exitReadEnterWrite()
+	void deleteIndexFile()
 	{
-		boolean result = false;
+		if (isTraceEnabled())
+		{
+			logTrace(MessageFormat.format("Deleting index ''{0}''", this)); //$NON-NLS-1$
+		}
+
+		this.mergeJob.cancel();
 
-		if (this.monitor != null)
+		// don't pull the file out from under a merge
+		synchronized (this.mergeLock)
 		{
-			monitor.readLock().unlock();
-			result = monitor.writeLock().tryLock();
+			IDiskIndex diskIndex = this.generation.diskIndex;
+			if (diskIndex != null)
+			{
+				diskIndex.getIndexFile().delete();
+				diskIndex.getDataFile().delete();
+			}
+			this.manifest.clear(false);
 		}
 
-		return result;
+		// nothing derived from a deleted index is of use anymore, and listeners mustn't keep it alive
+		fireIndexReset();
+		this.listeners.clear();
 	}
 
-	private void exitWrite()
+	protected static void logTrace(String msg)
 	{
-		if (this.monitor != null)
-		{
-			this.monitor.writeLock().unlock();
-		}
+		IdeLog.logTrace(IndexPlugin.getDefault(), msg, IDebugScopes.INDEXER);
 	}
 
-	/**
-	 * This operation is _not_ atomic. This method will block until the read lock is acquired.
-	 */
-	private void exitWriteEnterRead()
+	protected static boolean isTraceEnabled()
 	{
-		if (this.monitor != null)
-		{
-			exitWrite();
-			enterRead();
-		}
+		return IdeLog.isTraceEnabled(IndexPlugin.getDefault(), IDebugScopes.INDEXER);
 	}
 
 	/**
@@ -463,48 +358,60 @@ public class Index
 	 */
 	public List<String> getCategories()
 	{
+		Generation current = this.generation;
 		Set<String> categories = new HashSet<String>();
-		this.enterRead();
-		try
-		{
-			categories.addAll(this.memoryIndex.getCategories());
-			categories.addAll(this.diskIndex.getCategories());
-		}
-		finally
+
+		categories.addAll(current.memoryIndex.getCategories());
+		if (current.mergingIndex != null)
 		{
-			this.exitRead();
+			categories.addAll(current.mergingIndex.getCategories());
 		}
+		categories.addAll(current.diskIndex.getCategories());
+
 		return new ArrayList<String>(categories);
 	}
 
 	/**
-	 * getIndexFile
+	 * Returns the file holding the saved contents of the index. That's usually the index file, but may be a newer
+	 * generation of it, see {@link MappedDiskIndex}.
 	 * 
 	 * @return
 	 */
 	public File getIndexFile()
 	{
-		return this.diskIndex == null ? null : this.diskIndex.indexFile;
+		IDiskIndex diskIndex = this.generation.diskIndex;
+		return diskIndex == null ? null : diskIndex.getDataFile();
 	}
 
 	/**
-	 * @deprecated
+	 * Returns the fingerprints of the documents, as of when they were indexed.
+	 * 
 	 * @return
 	 */
-	public URI getRoot()
+	IndexManifest getManifest()
 	{
-		// TODO Remove this! JDT doesn't need it!
-		return containerURI;
+		return this.manifest;
 	}
 
 	/**
-	 * hasChanged
+	 * Returns a value that changes whenever entries are added to or removed from this index. Callers caching data
+	 * derived from query results can compare stamps to find out whether their cache is stale.
 	 * 
 	 * @return
 	 */
-	private boolean hasChanged()
+	public long getModificationStamp()
+	{
+		return this.modificationStamp;
+	}
+
+	/**
+	 * @deprecated
+	 * @return
+	 */
+	public URI getRoot()
 	{
-		return memoryIndex.hasChanged();
+		// TODO Remove this! JDT doesn't need it!
+		return containerURI;
 	}
 
 	/**
@@ -514,61 +421,31 @@ public class Index
 	 * @param key
 	 * @param matchRule
 	 * @return
-	 * @throws IOException
 	 */
 	public List<QueryResult> query(String[] categories, String key, int matchRule)
 	{
-		Map<String, QueryResult> results = null;
+		int rule = matchRule & MATCH_RULE_INDEX_MASK;
 
-		try
+		while (true)
 		{
-			// NOTE: I'd like to lock later in the method, but it would contort
-			// the IReadWriteMonitor interface, so we lock here and stick with
-			// the call to exitReadEnterWrite below
-			this.enterRead();
+			Generation current = this.generation;
 
-			if (this.memoryIndex.shouldMerge() && this.exitReadEnterWrite())
+			try
 			{
-				// in write...
-				try
-				{
-					this.save(false);
-				}
-				finally
-				{
-					this.exitWriteEnterRead();
-				}
-			}
-			// We're in read mode for monitor here now matter what...
-			int rule = matchRule & MATCH_RULE_INDEX_MASK;
+				Map<String, QueryResult> results = current.query(categories, key, rule, this.patterns);
 
-			if (this.memoryIndex.hasChanged())
-			{
-				results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
-				results = this.memoryIndex.addQueryResults(categories, key, rule, results);
-			}
-			else
-			{
-				results = this.diskIndex.addQueryResults(categories, key, rule, null);
+				return (results == null) ? null : new ArrayList<QueryResult>(results.values());
 			}
-		}
-		catch (IOException e)
-		{
-			if (e instanceof java.io.EOFException)
+			catch (IOException e)
 			{
-				e.printStackTrace();
+				// a merge may have retired the disk index while we were reading it, in which case try the new one
+				if (current == this.generation)
+				{
+					IdeLog.logError(IndexPlugin.getDefault(), e);
+					return null;
+				}
 			}
-			IdeLog.logError(IndexPlugin.getDefault(), e);
 		}
-		finally
-		{
-			this.exitRead();
-
-			// clear any cached regexes or patterns we might have used during the query
-			PATTERNS.clear();
-		}
-
-		return (results == null) ? null : new ArrayList<QueryResult>(results.values());
 	}
 
 	/**
@@ -576,25 +453,22 @@ public class Index
 	 */
 	public Set<String> queryDocumentNames(String substring) throws IOException
 	{
-		Set<String> results;
-		this.enterRead();
-		try
+		while (true)
 		{
-			if (this.memoryIndex.hasChanged())
+			Generation current = this.generation;
+
+			try
 			{
-				results = this.diskIndex.addDocumentNames(substring, this.memoryIndex);
-				results.addAll(this.memoryIndex.addDocumentNames(substring));
+				return current.queryDocumentNames(substring);
 			}
-			else
+			catch (IOException e)
 			{
-				results = this.diskIndex.addDocumentNames(substring, null);
+				if (current == this.generation)
+				{
+					throw e;
+				}
 			}
 		}
-		finally
-		{
-			this.exitRead();
-		}
-		return results;
 	}
 
 	/**
@@ -605,10 +479,12 @@ public class Index
 	public void remove(URI containerRelativeURI)
 	{
 		String documentName = containerRelativeURI.toString();
+		MemoryIndex memoryIndex;
 
-		this.enterRead();
-		try
+		synchronized (this.writeLock)
 		{
+			memoryIndex = this.generation.memoryIndex;
+
 			if (isTraceEnabled() && memoryIndex.hasDocument(documentName))
 			{
 				// @formatter:off
@@ -617,19 +493,17 @@ public class Index
 				// @formatter:on
 				logTrace(message);
 			}
+
+			memoryIndex.remove(documentName);
+			this.manifest.remove(documentName);
+			this.modificationStamp++;
 		}
-		finally
-		{
-			this.exitRead();
-			this.enterWrite(); // we must wait for write! DO NOT CALL exitReadEnterWrite!
-		}
-		try
-		{
-			this.memoryIndex.remove(documentName);
-		}
-		finally
+
+		scheduleMerge(memoryIndex);
+
+		for (Object listener : this.listeners.getListeners())
 		{
-			this.exitWrite();
+			((IIndexChangeListener) listener).documentRemoved(this, documentName);
 		}
 	}
 
@@ -640,24 +514,43 @@ public class Index
 	 */
 	public void removeCategories(String... categoryNames)
 	{
-		this.enterWrite();
-		try
-		{
-			this.memoryIndex.removeCategories(categoryNames);
-			this.diskIndex = this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(IndexPlugin.getDefault(), "An error occurred while removing categories from the index", e); //$NON-NLS-1$
-		}
-		finally
+		synchronized (this.mergeLock)
 		{
-			this.exitWrite();
+			Generation current;
+
+			synchronized (this.writeLock)
+			{
+				current = this.generation;
+				current.memoryIndex.removeCategories(categoryNames);
+				if (current.mergingIndex != null)
+				{
+					current.mergingIndex.removeCategories(categoryNames);
+				}
+				this.modificationStamp++;
+			}
+
+			try
+			{
+				MappedDiskIndex diskIndex = current.diskIndex.removeCategories(categoryNames, new MemoryIndex());
+
+				synchronized (this.writeLock)
+				{
+					Generation latest = this.generation;
+					this.generation = new Generation(diskIndex, latest.mergingIndex, latest.memoryIndex);
+				}
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(IndexPlugin.getDefault(),
+						"An error occurred while removing categories from the index", e); //$NON-NLS-1$
+			}
 		}
+
+		fireIndexReset();
 	}
 
 	/**
-	 * save
+	 * Writes all pending changes to disk, waiting for any background merge to finish first.
 	 * 
 	 * @throws IOException
 	 */
@@ -668,51 +561,114 @@ public class Index
 			logTrace(MessageFormat.format("Saving index ''{0}''", this)); //$NON-NLS-1$
 		}
 
-		this.save(true);
+		try
+		{
+			merge();
+		}
+		catch (Exception e)
+		{
+			IdeLog.logError(IndexPlugin.getDefault(), e);
+		}
 	}
 
 	/**
-	 * save
+	 * Writes the changes in memory to a new disk index. The memory index is swapped for an empty one up front so
+	 * writers carry on while the merge runs, and queries keep reading the old disk index plus the changes being merged
+	 * until the new generation is published. If the merge fails the changes stay in the generation and are retried by
+	 * the next merge.
+	 * <p>
+	 * The manifest is snapshotted along with the memory index and only written once the merge is done, so it never
+	 * holds the fingerprint of a document whose entries didn't make it to disk.
+	 * </p>
 	 * 
-	 * @param lock
 	 * @throws IOException
 	 */
-	private void save(boolean lock) throws IOException
+	private void merge() throws IOException
 	{
-		// NOTE: Unfortunately we need the ugly "lock" flag hack in order to
-		// prevent hanging when save is called from query
-		try
+		synchronized (this.mergeLock)
 		{
-			if (lock)
+			Generation current;
+			IndexManifest.Snapshot manifestSnapshot;
+
+			synchronized (this.writeLock)
 			{
-				this.enterWrite();
+				current = this.generation;
+
+				if (current.mergingIndex == null)
+				{
+					// no need to do anything if the memory index hasn't changed
+					if (!current.memoryIndex.hasChanged())
+					{
+						manifestSnapshot = this.manifest.snapshot();
+						current = null;
+					}
+					else
+					{
+						current = new Generation(current.diskIndex, current.memoryIndex, new MemoryIndex());
+						this.generation = current;
+						manifestSnapshot = this.manifest.snapshot();
+					}
+				}
+				else
+				{
+					// retrying a failed merge; the manifest may already cover changes only the memory index holds
+					manifestSnapshot = null;
+				}
 			}
 
-			// no need to do anything if the memory index hasn't changed
-			if (!hasChanged())
+			if (current == null)
 			{
+				// everything is on disk already
+				if (manifestSnapshot != null)
+				{
+					manifestSnapshot.write();
+				}
 				return;
 			}
 
-			int numberOfChanges = this.memoryIndex.numberOfChanges();
-			this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
-			this.memoryIndex = new MemoryIndex();
+			int numberOfChanges = current.mergingIndex.numberOfChanges();
+			MappedDiskIndex diskIndex;
+			try
+			{
+				diskIndex = current.diskIndex.mergeWith(current.mergingIndex);
+			}
+			catch (IOException e)
+			{
+				if (manifestSnapshot != null)
+				{
+					manifestSnapshot.discard();
+				}
+				throw e;
+			}
+
+			synchronized (this.writeLock)
+			{
+				this.generation = new Generation(diskIndex, null, this.generation.memoryIndex);
+			}
+
+			if (manifestSnapshot != null)
+			{
+				manifestSnapshot.write();
+			}
 
 			if (numberOfChanges > 1000)
 			{
 				System.gc(); // reclaim space if the MemoryIndex was very BIG
 			}
 		}
-		catch (Exception e)
-		{
-			IdeLog.logError(IndexPlugin.getDefault(), e);
-		}
-		finally
+	}
+
+	/**
+	 * Starts a background merge once the given memory index has collected enough changes. Scheduling a job that is
+	 * already waiting is a no-op, so this is cheap to call after every write.
+	 * 
+	 * @param memoryIndex
+	 */
+	private void scheduleMerge(MemoryIndex memoryIndex)
+	{
+		if (memoryIndex.shouldMerge())
 		{
-			if (lock)
-			{
-				this.exitWrite();
-			}
+			this.mergeJob.schedule();
 		}
 	}
 
@@ -737,8 +693,75 @@ public class Index
 	 */
 	public void reset() throws IOException
 	{
-		this.memoryIndex = new MemoryIndex();
-		this.diskIndex = new DiskIndex(this.diskIndex.indexFile.getCanonicalPath());
-		this.diskIndex.initialize(false/* do not reuse the index file */);
+		synchronized (this.mergeLock)
+		{
+			synchronized (this.writeLock)
+			{
+				// do not reuse the index file
+				MappedDiskIndex diskIndex = MappedDiskIndex.open(this.generation.diskIndex.getIndexFile()
+						.getCanonicalPath(), false);
+				this.generation = new Generation(diskIndex, null, new MemoryIndex());
+				this.manifest.clear(true);
+				this.modificationStamp++;
+			}
+		}
+
+		fireIndexReset();
+	}
+
+	/**
+	 * Replaces the memory and disk indexes with a prebuilt disk index file, which is then queried in place. The file is
+	 * moved next to the current index file, so it should be created in the same directory.
+	 *
+	 * @param indexFile
+	 * @throws IOException
+	 *             if the file is not a valid index. The current contents are kept in that case.
+	 */
+	void replaceWith(File indexFile) throws IOException
+	{
+		synchronized (this.mergeLock)
+		{
+			synchronized (this.writeLock)
+			{
+				MappedDiskIndex diskIndex = this.generation.diskIndex;
+				if (diskIndex == null)
+				{
+					throw new IOException(MessageFormat.format("{0} has no index file", this)); //$NON-NLS-1$
+				}
+				this.generation = new Generation(diskIndex.replaceWithFile(indexFile), null, new MemoryIndex());
+				// the documents of a prebuilt index were never fingerprinted
+				this.manifest.clear(false);
+				this.modificationStamp++;
+			}
+		}
+
+		fireIndexReset();
+	}
+
+	/**
+	 * Merges the changes in memory to disk off of the threads that made them.
+	 */
+	private class MergeJob extends Job
+	{
+		MergeJob()
+		{
+			super(MessageFormat.format("Merging {0}", Index.this)); //$NON-NLS-1$
+			setSystem(true);
+			setPriority(Job.LONG);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor)
+		{
+			try
+			{
+				merge();
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(IndexPlugin.getDefault(), e);
+			}
+			return Status.OK_STATUS;
+		}
 	}
 }
@@ -12,9 +12,11 @@ import java.net.URI;
 import java.text.MessageFormat;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -22,15 +24,16 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 
-import com.aptana.core.IFilter;
 import com.aptana.core.IMap;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
+import com.aptana.internal.index.core.IndexManifest;
 
 /**
  * This class takes the URI of a container. It collects all the files underneath the container recursively, and then
- * attempts to index the diff since our last index. this involves wiping entries for files/documents that no longer
- * exist, and re-indexing files that have been modified since the last time we modified our index file.
+ * attempts to index the diff since our last index. This involves wiping entries for documents whose files no longer
+ * exist, and re-indexing files whose fingerprint (time, size and digest of the contents) differs from the one recorded
+ * in the index's manifest when they were last indexed.
  * 
  * @author cwilliams
  */
@@ -66,8 +69,9 @@ public class IndexContainerJob extends IndexRequestJob
 
 		try
 		{
-			// Collect the full set of files in the project...
-			Set<IFileStore> files = IndexUtil.getAllFiles(getContainerFileStore(), sub.newChild(100));
+			// Collect the full set of files in the project. A walk that fails throws rather than returning part of
+			// them, which would remove the rest from the index below.
+			Map<IFileStore, IFileInfo> files = IndexUtil.getAllFileInfos(getContainerFileStore(), sub.newChild(100));
 			if (sub.isCanceled())
 			{
 				return Status.CANCEL_STATUS;
@@ -75,16 +79,34 @@ public class IndexContainerJob extends IndexRequestJob
 
 			// Collect any "special" files contributed for the container URI. Mostly this is to allow files associated
 			// with IProjects to be included in indexing
-			files.addAll(getContributedFiles(getContainerURI()));
+			for (IFileStore file : getContributedFiles(getContainerURI()))
+			{
+				IFileInfo info = file.fetchInfo();
+				if (info.exists())
+				{
+					files.put(file, info);
+				}
+			}
 
-			// Checks what's in the index, and if any of the files in there no longer exist, we now remove them...
-			Set<String> documents = index.queryDocumentNames(null);
+			// If any of the documents we know of no longer exist, we now remove them...
+			IndexManifest manifest = index.getManifest();
+			Set<String> documents;
+			if (manifest.isComplete())
+			{
+				documents = manifest.getDocumentNames();
+			}
+			else
+			{
+				// An index from before we had manifests, so check everything in there once
+				documents = index.queryDocumentNames(null);
+			}
 			sub.worked(25);
 			if (sub.isCanceled())
 			{
 				return Status.CANCEL_STATUS;
 			}
-			removeDeletedFiles(index, documents, files, sub.newChild(75));
+			removeDeletedFiles(index, documents, files.keySet(), sub.newChild(75));
+			manifest.setComplete();
 
 			// Ok, we removed files, and now if there's none left in project we can just end here.
 			if (CollectionsUtil.isEmpty(files))
@@ -92,26 +114,16 @@ public class IndexContainerJob extends IndexRequestJob
 				return Status.OK_STATUS;
 			}
 
-			// Should check timestamp of index versus timestamps of files, only index files that are out of date
-			// (for Ruby)!
-			long timestamp = 0L;
-			if (!CollectionsUtil.isEmpty(documents))
-			{
-				// If there's nothing in the index, index everything; otherwise use last modified time of index to
-				// filter...
-				timestamp = index.getIndexFile().lastModified();
-			}
-
+			// Only index files that changed since they were last indexed
+			Set<IFileStore> changed = filterUnchangedFiles(index, files, sub.newChild(50));
 			if (sub.isCanceled())
 			{
 				return Status.CANCEL_STATUS;
 			}
-			files = filterFilesByTimestamp(timestamp, files);
-			sub.worked(50);
 
-			if (!CollectionsUtil.isEmpty(files))
+			if (!CollectionsUtil.isEmpty(changed))
 			{
-				indexFileStores(index, files, sub.newChild(750));
+				indexFileStores(index, changed, sub.newChild(750));
 			}
 		}
 		catch (CoreException e)
@@ -176,23 +188,36 @@ public class IndexContainerJob extends IndexRequestJob
 	}
 
 	/**
-	 * Filters the set of {@link IFileStore}s to those whose lastMod is at or after the passed in mod timestamp.
+	 * Filters the files down to those whose fingerprint differs from the one the manifest recorded when they were last
+	 * indexed, including those that were never indexed.
 	 * 
-	 * @param indexLastModified
+	 * @param index
 	 * @param files
+	 *            the files and their current infos
+	 * @param monitor
 	 * @return
 	 */
-	protected Set<IFileStore> filterFilesByTimestamp(final long indexLastModified, Set<IFileStore> files)
+	protected Set<IFileStore> filterUnchangedFiles(Index index, Map<IFileStore, IFileInfo> files,
+			IProgressMonitor monitor)
 	{
-		Set<IFileStore> filtered = new HashSet<IFileStore>(files.size());
-		CollectionsUtil.filter(files, filtered, new IFilter<IFileStore>()
+		IndexManifest manifest = index.getManifest();
+		SubMonitor sub = SubMonitor.convert(monitor, files.size());
+		Set<IFileStore> changed = new HashSet<IFileStore>();
+		for (Map.Entry<IFileStore, IFileInfo> entry : files.entrySet())
 		{
-			public boolean include(IFileStore item)
+			if (sub.isCanceled())
 			{
-				return item.fetchInfo().getLastModified() >= indexLastModified;
+				break;
 			}
-		});
-		return filtered;
+			IFileStore file = entry.getKey();
+			if (!manifest.isCurrent(file.toURI().toString(), file, entry.getValue()))
+			{
+				changed.add(file);
+			}
+			sub.worked(1);
+		}
+		sub.done();
+		return changed;
 	}
 
-}
\ No newline at end of file
+}
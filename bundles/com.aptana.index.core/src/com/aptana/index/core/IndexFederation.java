@@ -0,0 +1,339 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.BoundedConcurrentCache;
+import com.aptana.core.util.CollectionsUtil;
+
+/**
+ * Runs a query against an ordered list of indices, e.g. a project's index, the indices of its build path entries and
+ * the core metadata index, as if they were one. The indices are queried in parallel and their results merged in index
+ * order, dropping results an earlier index already returned.
+ * <p>
+ * A query given a key has its per-index results cached for as long as that index doesn't change (see
+ * {@link Index#getModificationStamp()}), so asking again after a change to the project index only queries the project
+ * index again. Cached results are handed to every caller asking the same query, so callers must treat them as
+ * read-only, including the elements in them.
+ */
+public class IndexFederation
+{
+	/**
+	 * The work done against each index.
+	 *
+	 * @param <T>
+	 */
+	public interface IIndexQuery<T>
+	{
+		/**
+		 * Returns the matches in the given index. May be called from any thread, for several indices at once.
+		 *
+		 * @param index
+		 * @return
+		 */
+		List<T> query(Index index);
+	}
+
+	/**
+	 * Identifies the results of one query against one generation of an index.
+	 */
+	private static class CacheKey
+	{
+		private final Index index;
+		private final long stamp;
+		private final Object query;
+
+		CacheKey(Index index, long stamp, Object query)
+		{
+			this.index = index;
+			this.stamp = stamp;
+			this.query = query;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (System.identityHashCode(index) * 31 + (int) (stamp ^ (stamp >>> 32))) * 31 + query.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof CacheKey))
+			{
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return index == other.index && stamp == other.stamp && query.equals(other.query);
+		}
+	}
+
+	/**
+	 * Sized for the handful of queries a round of content assist makes against each index of a few projects.
+	 */
+	private static final int CACHE_SIZE = 1024;
+
+	private static final BoundedConcurrentCache<CacheKey, List<?>> fgCache = new BoundedConcurrentCache<CacheKey, List<?>>(
+			CACHE_SIZE);
+
+	private static ExecutorService fgExecutor;
+
+	private static synchronized ExecutorService getExecutor()
+	{
+		if (fgExecutor == null)
+		{
+			int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+			fgExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "Index Query"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return fgExecutor;
+	}
+
+	/**
+	 * Drops all cached results.
+	 */
+	public static void clearCache()
+	{
+		fgCache.clear();
+	}
+
+	private final List<Index> indices;
+
+	/**
+	 * IndexFederation
+	 *
+	 * @param indices
+	 *            The indices to query, in the order their results should be returned. Null entries are ignored.
+	 */
+	public IndexFederation(Index... indices)
+	{
+		this(Arrays.asList(indices));
+	}
+
+	/**
+	 * IndexFederation
+	 *
+	 * @param indices
+	 *            The indices to query, in the order their results should be returned. Null entries are ignored.
+	 */
+	public IndexFederation(List<Index> indices)
+	{
+		List<Index> list = new ArrayList<Index>(indices.size());
+		for (Index index : indices)
+		{
+			if (index != null)
+			{
+				list.add(index);
+			}
+		}
+		this.indices = Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * @return The indices queried, in order
+	 */
+	public List<Index> getIndices()
+	{
+		return indices;
+	}
+
+	/**
+	 * Returns the results of every index, uncached.
+	 *
+	 * @param query
+	 * @return
+	 */
+	public <T> List<T> query(IIndexQuery<T> query)
+	{
+		return query(null, query, -1);
+	}
+
+	/**
+	 * Returns the results of every index.
+	 *
+	 * @param key
+	 *            Identifies the query for caching: two queries with equal keys must return the same results for the
+	 *            same index. Null to not cache.
+	 * @param query
+	 * @return
+	 */
+	public <T> List<T> query(Object key, IIndexQuery<T> query)
+	{
+		return query(key, query, -1);
+	}
+
+	/**
+	 * Returns the first result, i.e. the first match of the earliest index that has one, or null.
+	 *
+	 * @param key
+	 *            See {@link #query(Object, IIndexQuery)}
+	 * @param query
+	 * @return
+	 */
+	public <T> T queryFirst(Object key, IIndexQuery<T> query)
+	{
+		List<T> results = query(key, query, 1);
+		return results.isEmpty() ? null : results.get(0);
+	}
+
+	/**
+	 * Returns up to <code>limit</code> results. Once the earlier indices have returned enough, the later ones are left
+	 * unqueried, or their queries abandoned if they're already running.
+	 *
+	 * @param key
+	 *            See {@link #query(Object, IIndexQuery)}
+	 * @param query
+	 * @param limit
+	 *            The maximum number of results, or -1 for all
+	 * @return
+	 */
+	public <T> List<T> query(Object key, IIndexQuery<T> query, int limit)
+	{
+		if (indices.isEmpty() || limit == 0)
+		{
+			return new ArrayList<T>(0);
+		}
+
+		// Start all but the first index on the pool; this thread does the first and any the pool hasn't reached yet
+		List<FutureTask<List<T>>> tasks = new ArrayList<FutureTask<List<T>>>(indices.size());
+		for (int i = 0; i < indices.size(); i++)
+		{
+			FutureTask<List<T>> task = new FutureTask<List<T>>(createTask(indices.get(i), key, query));
+			tasks.add(task);
+			if (i > 0)
+			{
+				getExecutor().execute(task);
+			}
+		}
+
+		List<T> results = new ArrayList<T>();
+		Set<T> seen = null;
+		try
+		{
+			for (FutureTask<List<T>> task : tasks)
+			{
+				List<T> items = join(task);
+				if (CollectionsUtil.isEmpty(items))
+				{
+					continue;
+				}
+
+				// An index holds each word once, so only results from different indices can repeat
+				if (results.isEmpty())
+				{
+					results.addAll(items);
+				}
+				else
+				{
+					if (seen == null)
+					{
+						seen = new HashSet<T>(results);
+					}
+					for (T item : items)
+					{
+						if (seen.add(item))
+						{
+							results.add(item);
+						}
+					}
+				}
+
+				if (limit > 0 && results.size() >= limit)
+				{
+					return new ArrayList<T>(results.subList(0, limit));
+				}
+			}
+		}
+		finally
+		{
+			for (FutureTask<List<T>> task : tasks)
+			{
+				task.cancel(false);
+			}
+		}
+		return results;
+	}
+
+	private <T> Callable<List<T>> createTask(final Index index, final Object key, final IIndexQuery<T> query)
+	{
+		return new Callable<List<T>>()
+		{
+			@SuppressWarnings("unchecked")
+			public List<T> call() throws Exception
+			{
+				if (key == null)
+				{
+					return query.query(index);
+				}
+
+				// Read the stamp first: if the index changes while we query, the results are cached under the old
+				// stamp and never handed out again
+				CacheKey cacheKey = new CacheKey(index, index.getModificationStamp(), key);
+				List<T> results = (List<T>) fgCache.get(cacheKey);
+				if (results == null)
+				{
+					results = query.query(index);
+					if (results != null)
+					{
+						results = Collections.unmodifiableList(new ArrayList<T>(results));
+						fgCache.put(cacheKey, results);
+					}
+				}
+				return results;
+			}
+		};
+	}
+
+	/**
+	 * Waits for the task, running it here if no pool thread has picked it up yet. A failing index is logged and
+	 * contributes no results.
+	 */
+	private <T> List<T> join(FutureTask<List<T>> task)
+	{
+		task.run();
+		try
+		{
+			return task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (CancellationException e)
+		{
+			return null;
+		}
+		catch (ExecutionException e)
+		{
+			IdeLog.logError(IndexPlugin.getDefault(), e.getCause());
+			return null;
+		}
+	}
+}
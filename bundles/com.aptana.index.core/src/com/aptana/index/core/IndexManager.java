@@ -17,7 +17,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
@@ -368,21 +367,16 @@ public class IndexManager
 	}
 
 	/**
-	 * Recreates the index for a given path, keeping the same read-write monitor. Returns the new empty index or null if
-	 * it didn't exist before. Warning: Does not check whether index is consistent (not being used)
+	 * Recreates the index for a given path. Returns the new empty index or null if it could not be created. Warning:
+	 * Does not check whether index is consistent (not being used)
 	 */
 	public synchronized Index recreateIndex(URI path)
 	{
 		try
 		{
 			// Path is already canonical
-			Index index = getIndex(path);
-
-			ReadWriteLock monitor = index == null ? null : index.monitor;
-
-			index = new Index(path, false);
+			Index index = new Index(path, false);
 			indexes.put(path, index);
-			index.monitor = monitor;
 			return index;
 		}
 		catch (IOException e)
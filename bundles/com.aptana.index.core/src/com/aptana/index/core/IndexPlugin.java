@@ -13,6 +13,7 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.osgi.framework.BundleContext;
 
 import com.aptana.core.util.ArrayUtil;
+import com.aptana.internal.index.core.ParseCache;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -22,8 +23,19 @@ public class IndexPlugin extends Plugin
 
 	public static final String PLUGIN_ID = "com.aptana.index.core"; //$NON-NLS-1$
 
+	/**
+	 * Directory under the state location holding the parse cache.
+	 */
+	private static final String PARSE_CACHE_DIRECTORY = "parseCache"; //$NON-NLS-1$
+
+	/**
+	 * How much disk space stored ASTs may use.
+	 */
+	private static final long PARSE_CACHE_SIZE = 64 * 1024 * 1024;
+
 	private static IndexPlugin plugin;
 	private IndexManager fManager;
+	private ParseCache fParseCache;
 
 	/**
 	 * Returns the shared instance
@@ -72,6 +84,7 @@ public class IndexPlugin extends Plugin
 		}
 
 		fManager = null;
+		fParseCache = null;
 		plugin = null;
 		super.stop(context);
 	}
@@ -84,4 +97,19 @@ public class IndexPlugin extends Plugin
 		}
 		return fManager;
 	}
+
+	/**
+	 * Returns the cache of parse results kept in the workspace metadata, which lets builds skip parsing files that are
+	 * unchanged since an earlier session.
+	 *
+	 * @return
+	 */
+	public synchronized ParseCache getParseCache()
+	{
+		if (fParseCache == null)
+		{
+			fParseCache = new ParseCache(getStateLocation().append(PARSE_CACHE_DIRECTORY).toFile(), PARSE_CACHE_SIZE);
+		}
+		return fParseCache;
+	}
 }
@@ -186,15 +186,16 @@ public abstract class IndexReader
 	}
 
 	/**
-	 * populateElement
+	 * Populates an element from its serialized JSON value and attaches the documents it was found in.
 	 * 
 	 * @param <T>
 	 * @param element
 	 * @param value
+	 * @param documents
 	 * @return
 	 */
 	@SuppressWarnings("rawtypes")
-	private <T extends Convertible & IndexDocument> T populateElement(T element, String value, Set<String> documents)
+	protected <T extends Convertible & IndexDocument> T populateElement(T element, String value, Set<String> documents)
 	{
 		if (element != null && value != null)
 		{
@@ -25,6 +25,7 @@ import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.index.core.build.BuildContext;
 import com.aptana.index.core.filter.IIndexFilterParticipant;
+import com.aptana.internal.index.core.IndexManifest;
 
 abstract class IndexRequestJob extends Job
 {
@@ -153,7 +154,8 @@ abstract class IndexRequestJob extends Job
 
 	/**
 	 * Indexes a set of {@link IFileStore}s with the appropriate {@link IFileStoreIndexingParticipant}s that apply to
-	 * the content types (matching is done via filename/extension).
+	 * the content types (matching is done via filename/extension). The fingerprint of each file is recorded in the
+	 * index's manifest once it has been indexed.
 	 * 
 	 * @param index
 	 * @param fileStores
@@ -184,8 +186,12 @@ abstract class IndexRequestJob extends Job
 				{
 					throw new CoreException(Status.CANCEL_STATUS);
 				}
+				// Take the fingerprint before the indexers read the file, so changes made meanwhile aren't missed
+				IndexManifest.Fingerprint fingerprint = getFingerprint(file);
+
 				// First cleanup old index entries for file
-				index.remove(file.toURI());
+				URI uri = file.toURI();
+				index.remove(uri);
 				sub.worked(1);
 
 				// Now run indexers on file
@@ -210,6 +216,10 @@ abstract class IndexRequestJob extends Job
 						}
 					}
 				}
+				if (fingerprint != null)
+				{
+					index.getManifest().put(uri.toString(), fingerprint);
+				}
 				// Update remaining units
 				remaining--;
 				sub.setWorkRemaining(remaining * 11);
@@ -221,6 +231,19 @@ abstract class IndexRequestJob extends Job
 		}
 	}
 
+	private IndexManifest.Fingerprint getFingerprint(IFileStore file)
+	{
+		try
+		{
+			return IndexManifest.Fingerprint.of(file, file.fetchInfo());
+		}
+		catch (CoreException e)
+		{
+			// so it gets indexed again next time
+			return null;
+		}
+	}
+
 	protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
 	{
 		IndexManager indexManager = getIndexManager();
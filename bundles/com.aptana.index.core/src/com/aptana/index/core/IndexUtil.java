@@ -7,6 +7,7 @@
  */
 package com.aptana.index.core;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -14,12 +15,22 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 
 import com.aptana.core.IMap;
@@ -33,6 +44,11 @@ import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
  */
 public class IndexUtil
 {
+	/**
+	 * The number of directories listed at once when walking a container.
+	 */
+	private static final int WALK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
 	/**
 	 * This method tries to cast the specified object to an array. If that is successful, then a new list will be
 	 * generated. Each array element that is a Map will be passed into the fromJSON on the new instance of T.
@@ -165,61 +181,144 @@ public class IndexUtil
 	 * 
 	 * @param file
 	 * @param monitor
-	 * @return
+	 * @return the files found, or an empty set if the walk failed
+	 * @see #getAllFileInfos(IFileStore, IProgressMonitor)
 	 */
 	public static Set<IFileStore> getAllFiles(IFileStore file, IProgressMonitor monitor)
 	{
-		// TODO We should likely call IFileSystem.fetchTree and use that if it doesn't return null (because that is more
-		// efficient in some schemes)!
-		SubMonitor sub = SubMonitor.convert(monitor, 10);
-		Set<IFileStore> files = new HashSet<IFileStore>(0);
 		try
 		{
-			if (file == null)
+			return new HashSet<IFileStore>(getAllFileInfos(file, monitor).keySet());
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(IndexPlugin.getDefault(), e);
+			return new HashSet<IFileStore>(0);
+		}
+	}
+
+	/**
+	 * Collects all files underneath an {@link IFileStore}, along with their infos. Directories are listed on a pool of
+	 * threads, one task per directory, since walking a large tree is mostly waiting on the file system. Directories
+	 * that can't be listed are logged and skipped. If the monitor is canceled, the files found so far are returned.
+	 * 
+	 * @param file
+	 * @param monitor
+	 * @return
+	 * @throws CoreException
+	 *             if the walk failed or was interrupted. The files found so far are dropped rather than returned, since
+	 *             callers treat the result as the complete contents of the tree.
+	 */
+	public static Map<IFileStore, IFileInfo> getAllFileInfos(IFileStore file, IProgressMonitor monitor)
+			throws CoreException
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, 100);
+		final Map<IFileStore, IFileInfo> files = new ConcurrentHashMap<IFileStore, IFileInfo>();
+		if (file == null)
+		{
+			return files;
+		}
+		IFileInfo info = file.fetchInfo();
+		if (!info.exists())
+		{
+			return files;
+		}
+		if (!info.isDirectory())
+		{
+			// it's a file that exists, base case, add it.
+			files.put(file, info);
+			return files;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(WALK_THREADS, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
 			{
-				return files;
+				Thread thread = new Thread(r, "Index File Walk"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
 			}
-			IFileInfo info = file.fetchInfo(EFS.NONE, sub.newChild(1));
-			if (!info.exists())
+		});
+		CompletionService<List<IFileStore>> completion = new ExecutorCompletionService<List<IFileStore>>(executor);
+		try
+		{
+			completion.submit(createListTask(file, files));
+			int pending = 1;
+			int listed = 0;
+			while (pending > 0 && !sub.isCanceled())
 			{
-				return files;
+				List<IFileStore> directories = completion.take().get();
+				pending--;
+				for (IFileStore directory : directories)
+				{
+					completion.submit(createListTask(directory, files));
+					pending++;
+				}
+				// we don't know the size of the tree up front
+				sub.setWorkRemaining(pending + (++listed));
+				sub.worked(1);
 			}
-			// We know it exists...
-			if (info.isDirectory())
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new CoreException(Status.CANCEL_STATUS);
+		}
+		catch (ExecutionException e)
+		{
+			throw new CoreException(new Status(IStatus.ERROR, IndexPlugin.PLUGIN_ID, MessageFormat.format(
+					"Failed to list the files under {0}", file), e.getCause())); //$NON-NLS-1$
+		}
+		finally
+		{
+			executor.shutdownNow();
+			sub.done();
+		}
+		return files;
+	}
+
+	/**
+	 * Lists a directory, adding its files to the given map and returning its sub-directories.
+	 */
+	private static Callable<List<IFileStore>> createListTask(final IFileStore directory,
+			final Map<IFileStore, IFileInfo> files)
+	{
+		return new Callable<List<IFileStore>>()
+		{
+			public List<IFileStore> call() throws Exception
 			{
+				List<IFileStore> directories = new ArrayList<IFileStore>();
 				try
 				{
-					// Now try to dive into directory and add all children recursively
-					IFileStore[] fileList = file.childStores(EFS.NONE, sub.newChild(2));
-					if (ArrayUtil.isEmpty(fileList))
+					IFileInfo[] infos = directory.childInfos(EFS.NONE, null);
+					if (ArrayUtil.isEmpty(infos))
 					{
-						return files;
+						return directories;
 					}
-					for (IFileStore child : fileList)
+					for (IFileInfo info : infos)
 					{
-						files.addAll(getAllFiles(child, sub.newChild(7)));
+						if (!info.exists())
+						{
+							continue;
+						}
+						IFileStore child = directory.getChild(info.getName());
+						if (info.isDirectory())
+						{
+							directories.add(child);
+						}
+						else
+						{
+							files.put(child, info);
+						}
 					}
 				}
 				catch (CoreException e)
 				{
 					IdeLog.logError(IndexPlugin.getDefault(), e);
 				}
+				return directories;
 			}
-			else
-			{
-				// it's a file that exists, base case, add it.
-				return CollectionsUtil.newSet(file);
-			}
-		}
-		catch (CoreException e)
-		{
-			IdeLog.logError(IndexPlugin.getDefault(), e);
-		}
-		finally
-		{
-			sub.done();
-		}
-		return files;
+		};
 	}
 
 	private IndexUtil()
@@ -7,19 +7,24 @@
  */
 package com.aptana.index.core;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.CRC32;
 
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.IJobManager;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
@@ -30,6 +35,7 @@ import org.osgi.service.prefs.BackingStoreException;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.EclipseUtil;
+import com.aptana.core.util.IOUtil;
 
 /**
  * MetadataLoader
@@ -157,12 +163,23 @@ public abstract class MetadataLoader<T extends MetadataReader> extends Job
 	}
 
 	/**
-	 * Rebuild the current language's metadata index. Note that the old index is not automatically removed. This is
-	 * typically done in writeIndex
+	 * Rebuild the current language's metadata index, from the snapshot shipped with the bundle if there is an up to
+	 * date one. Note that the old index is not automatically removed when parsing the metadata files. This is typically
+	 * done in writeIndex
 	 * 
 	 * @param monitor
 	 */
 	protected void rebuildMetadataIndex(IProgressMonitor monitor)
+	{
+		if (this.loadSnapshot())
+		{
+			return;
+		}
+
+		this.parseMetadataFiles(monitor);
+	}
+
+	private void parseMetadataFiles(IProgressMonitor monitor)
 	{
 		T reader = this.createMetadataReader();
 
@@ -171,6 +188,178 @@ public abstract class MetadataLoader<T extends MetadataReader> extends Job
 		this.writeIndex(reader);
 	}
 
+	/**
+	 * Return the location of the prebuilt metadata index within the bundle. See {@link #writeSnapshot(File)}.
+	 * 
+	 * @return
+	 */
+	protected String getSnapshotFile()
+	{
+		return "/metadata/metadata.snapshot"; //$NON-NLS-1$
+	}
+
+	/**
+	 * Replace the index with the snapshot shipped with the bundle, unless it is missing or was built from different
+	 * metadata.
+	 * 
+	 * @return true if the index has been replaced
+	 */
+	private boolean loadSnapshot()
+	{
+		URL url = FileLocator.find(this.getBundle(), new Path(this.getSnapshotFile()), null);
+		Index index = this.getIndex();
+
+		if (url == null || index == null || index.getIndexFile() == null)
+		{
+			return false;
+		}
+
+		// extract next to the index, so it can be moved into place
+		File file = new File(index.getIndexFile().getPath() + ".snapshot"); //$NON-NLS-1$
+
+		try
+		{
+			InputStream stream = url.openStream();
+			boolean extracted;
+
+			try
+			{
+				extracted = MetadataSnapshot.extract(stream, this.getIndexVersion(), this.getMetadataChecksum(), file);
+			}
+			finally
+			{
+				stream.close();
+			}
+
+			if (!extracted)
+			{
+				IdeLog.logInfo(IndexPlugin.getDefault(),
+						MessageFormat.format("Ignoring out of date metadata snapshot {0}", url), IDebugScopes.INDEXER); //$NON-NLS-1$
+				return false;
+			}
+
+			index.replaceWith(file);
+			return true;
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(IndexPlugin.getDefault(),
+					MessageFormat.format("Unable to load metadata snapshot {0}", url), e); //$NON-NLS-1$
+			file.delete();
+			return false;
+		}
+	}
+
+	/**
+	 * Whether the bundle ships a snapshot that was built from different metadata, and so would be ignored. Snapshots
+	 * are committed along with the metadata files, and the tests use this to catch a metadata change that wasn't
+	 * followed by a new snapshot. See {@link #writeSnapshot(File)}.
+	 * 
+	 * @return false if the snapshot is current, or there is none
+	 * @throws IOException
+	 */
+	public boolean hasOutOfDateSnapshot() throws IOException
+	{
+		URL url = FileLocator.find(this.getBundle(), new Path(this.getSnapshotFile()), null);
+
+		if (url == null)
+		{
+			return false;
+		}
+
+		InputStream stream = url.openStream();
+
+		try
+		{
+			return !MetadataSnapshot.isCurrent(stream, this.getIndexVersion(), this.getMetadataChecksum());
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/**
+	 * Parse the metadata files into the index and write the result as a snapshot, which is used instead of the
+	 * metadata files once it's shipped as {@link #getSnapshotFile()} within the bundle. This is meant to be run
+	 * whenever the metadata changes, and the snapshot committed, see
+	 * {@link com.aptana.internal.index.core.MetadataSnapshotApplication}.
+	 * 
+	 * @param bundleDirectory
+	 *            the root of the bundle's sources
+	 * @return the snapshot file
+	 * @throws IOException
+	 */
+	public File writeSnapshot(File bundleDirectory) throws IOException
+	{
+		IJobManager jobManager = Job.getJobManager();
+		ISchedulingRule rule = this.getRule();
+
+		// don't race the loader scheduled on startup
+		jobManager.beginRule(rule, null);
+
+		try
+		{
+			this.parseMetadataFiles(new NullProgressMonitor());
+
+			Index index = this.getIndex();
+
+			index.save();
+
+			File file = new File(bundleDirectory, this.getSnapshotFile());
+
+			MetadataSnapshot.write(file, this.getIndexVersion(), this.getMetadataChecksum(), index.getIndexFile());
+
+			return file;
+		}
+		finally
+		{
+			jobManager.endRule(rule);
+		}
+	}
+
+	/**
+	 * Checksum of the metadata files, so that a snapshot is only used with the metadata it was built from.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private long getMetadataChecksum() throws IOException
+	{
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8192];
+
+		for (String resource : this.getMetadataFiles())
+		{
+			URL url = FileLocator.find(this.getBundle(), new Path(resource), null);
+
+			if (url == null)
+			{
+				continue;
+			}
+
+			crc.update(resource.getBytes(IOUtil.UTF_8));
+
+			InputStream stream = url.openStream();
+
+			try
+			{
+				int read;
+
+				while ((read = stream.read(buffer)) != -1)
+				{
+					crc.update(buffer, 0, read);
+				}
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+
+		return crc.getValue();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
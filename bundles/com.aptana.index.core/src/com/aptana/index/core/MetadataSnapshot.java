@@ -0,0 +1,139 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.aptana.core.util.IOUtil;
+
+/**
+ * A metadata index built ahead of time and shipped inside the bundle that owns the metadata, so the metadata files
+ * don't have to be parsed at runtime. The snapshot is a small header followed by the disk index file itself, which is
+ * copied into place and then memory mapped like any other index:
+ *
+ * <pre>
+ * signature      UTF string
+ * index version  double, the version of the metadata index the snapshot was built for
+ * checksum       long, CRC32 of the metadata files the snapshot was built from
+ * index          the disk index file
+ * </pre>
+ *
+ * A snapshot whose version or checksum doesn't match is ignored, and the metadata files are parsed instead.
+ */
+class MetadataSnapshot
+{
+	static final String SIGNATURE = "METADATA SNAPSHOT 1"; //$NON-NLS-1$
+
+	private MetadataSnapshot()
+	{
+	}
+
+	/**
+	 * Writes a snapshot of an index file.
+	 *
+	 * @param file
+	 * @param indexVersion
+	 * @param checksum
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	static void write(File file, double indexVersion, long checksum, File indexFile) throws IOException
+	{
+		File parent = file.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Failed to create " + parent); //$NON-NLS-1$
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			out.writeUTF(SIGNATURE);
+			out.writeDouble(indexVersion);
+			out.writeLong(checksum);
+			InputStream in = new FileInputStream(indexFile);
+			try
+			{
+				IOUtil.pipe(in, out);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Copies the index file out of a snapshot, if the snapshot matches the given version and checksum.
+	 *
+	 * @param snapshot
+	 * @param indexVersion
+	 * @param checksum
+	 * @param indexFile
+	 * @return whether the index file has been written
+	 * @throws IOException
+	 */
+	static boolean extract(InputStream snapshot, double indexVersion, long checksum, File indexFile)
+			throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(snapshot));
+		if (!readHeader(in, indexVersion, checksum))
+		{
+			return false;
+		}
+
+		OutputStream out = new FileOutputStream(indexFile);
+		boolean written = false;
+		try
+		{
+			IOUtil.pipe(in, out);
+			written = true;
+		}
+		finally
+		{
+			out.close();
+			if (!written)
+			{
+				indexFile.delete();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether a snapshot was built for the given version and checksum, without reading the index file it holds.
+	 *
+	 * @param snapshot
+	 * @param indexVersion
+	 * @param checksum
+	 * @return
+	 * @throws IOException
+	 */
+	static boolean isCurrent(InputStream snapshot, double indexVersion, long checksum) throws IOException
+	{
+		return readHeader(new DataInputStream(snapshot), indexVersion, checksum);
+	}
+
+	private static boolean readHeader(DataInputStream in, double indexVersion, long checksum) throws IOException
+	{
+		return SIGNATURE.equals(in.readUTF()) && in.readDouble() == indexVersion && in.readLong() == checksum;
+	}
+}
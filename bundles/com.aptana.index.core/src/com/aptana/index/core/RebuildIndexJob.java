@@ -8,12 +8,16 @@
 package com.aptana.index.core;
 
 import java.net.URI;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.IProgressMonitor;
 
 /**
- * Special subclass of IndexContainerJob that ignores the index timestamp and forces all files to be re-indexed.
+ * Special subclass of IndexContainerJob that ignores the recorded fingerprints and forces all files to be re-indexed.
  * 
  * @author cwilliams
  */
@@ -26,9 +30,10 @@ public class RebuildIndexJob extends IndexContainerJob
 	}
 
 	@Override
-	protected Set<IFileStore> filterFilesByTimestamp(long indexLastModified, Set<IFileStore> files)
+	protected Set<IFileStore> filterUnchangedFiles(Index index, Map<IFileStore, IFileInfo> files,
+			IProgressMonitor monitor)
 	{
-		return files;
+		return new HashSet<IFileStore>(files.keySet());
 	}
 
 }
@@ -35,10 +35,12 @@ import com.aptana.core.util.IOUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.IDebugScopes;
 import com.aptana.index.core.IndexPlugin;
+import com.aptana.internal.index.core.ParseCache;
 import com.aptana.parsing.IParseState;
 import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ParserPoolFactory;
+import com.aptana.parsing.ParsingEngine;
 import com.aptana.parsing.WorkingParseResult;
 import com.aptana.parsing.ast.IParseError;
 import com.aptana.parsing.ast.IParseRootNode;
@@ -90,9 +92,18 @@ public class BuildContext
 		return file.getLocationURI();
 	}
 
-	public IParseRootNode getAST() throws CoreException
+	/**
+	 * Returns the AST of the file's contents. The contents don't change over the life of a context, so the file is only
+	 * parsed the first time; every participant building the file shares that result until {@link #resetAST()}.
+	 */
+	public synchronized IParseRootNode getAST() throws CoreException
 	{
-		return getAST(new ParseState(getContents())).getRootNode();
+		ParseResult result = fParseResult;
+		if (result == null)
+		{
+			result = getAST(new ParseState(getContents()));
+		}
+		return result.getRootNode();
 	}
 
 	/**
@@ -137,7 +148,46 @@ public class BuildContext
 	protected ParseResult parse(String contentType, IParseState parseState, WorkingParseResult working)
 			throws Exception
 	{
-		return ParserPoolFactory.parse(contentType, parseState);
+		ParseCache cache = getParseCache(contentType, parseState);
+		if (cache == null)
+		{
+			return ParserPoolFactory.parse(contentType, parseState);
+		}
+
+		// the parse wipes the source out of the state
+		String key = cache.getKey(contentType, parseState.getSource());
+		ParseResult result = cache.get(key);
+		if (result == null)
+		{
+			result = ParserPoolFactory.parse(contentType, parseState);
+			if (result != null)
+			{
+				cache.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the persistent cache if the result of this parse may be kept across sessions. That's only the case for a
+	 * plain parse of a whole file's contents on disk: parse states of subclasses carry options that change the AST, and
+	 * reconciles parse editor contents that are likely to change again before they get saved. Small files parse faster
+	 * than their entry could be read back.
+	 */
+	private ParseCache getParseCache(String contentType, IParseState parseState)
+	{
+		if (contentType == null || isReconcile() || parseState.getClass() != ParseState.class
+				|| parseState.getStartingOffset() != 0 || !ArrayUtil.isEmpty(parseState.getSkippedRanges()))
+		{
+			return null;
+		}
+		String source = parseState.getSource();
+		if (source == null || source.length() < ParsingEngine.MINIMUM_NUMBER_OF_CHARS_TO_ENTER_CACHE)
+		{
+			return null;
+		}
+		IndexPlugin plugin = IndexPlugin.getDefault();
+		return (plugin == null) ? null : plugin.getParseCache();
 	}
 
 	public synchronized void resetAST()
@@ -34,17 +34,22 @@ import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexPlugin;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
+import com.aptana.internal.index.core.PatternCache.WordMatcher;
 
 /**
  * Yuck this needs to be a random access file that stores the index of documents, category names, and the relationship
  * between them. We need to be careful to allow for quick access into the categories when reading, and to keep filesize
  * down if possible.
+ * <p>
+ * This is the legacy "INDEX VERSION 0.1" format. Index files are now written by {@link MappedDiskIndex}; this class is
+ * only used to read existing 0.1 files so they can be migrated.
+ * </p>
  * 
  * @author cwilliams
  */
-public class DiskIndex
+public class DiskIndex implements IDiskIndex
 {
-	private static final String SIGNATURE = "INDEX VERSION 0.1"; //$NON-NLS-1$
+	static final String SIGNATURE = "INDEX VERSION 0.1"; //$NON-NLS-1$
 	private static final int CHUNK_SIZE = 100;
 	private static final int RE_INDEXED = -1;
 	private static final int DELETED = -2;
@@ -224,11 +229,12 @@ public class DiskIndex
 	 * @param key
 	 * @param matchRule
 	 * @param memoryIndex
+	 * @param patterns
 	 * @return
 	 * @throws IOException
 	 */
 	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
-			MemoryIndex memoryIndex) throws IOException
+			MemoryIndex memoryIndex, PatternCache patterns) throws IOException
 	{
 		// assumes sender has called startQuery() & will call stopQuery() when finished
 		if (this.categoryOffsets == null)
@@ -317,6 +323,8 @@ public class DiskIndex
 					break;
 
 				default:
+					WordMatcher matcher = patterns.getMatcher(key, matchRule);
+
 					for (int i = 0, l = categories.length; i < l; i++)
 					{
 						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
@@ -325,7 +333,7 @@ public class DiskIndex
 						{
 							for (String word : wordsToDocNumbers.keySet())
 							{
-								if (word != null && Index.isMatch(key, word, matchRule))
+								if (word != null && matcher.matches(word))
 								{
 									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
 								}
@@ -585,6 +593,24 @@ public class DiskIndex
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#getIndexFile()
+	 */
+	public File getIndexFile()
+	{
+		return this.indexFile;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#getDataFile()
+	 */
+	public File getDataFile()
+	{
+		return this.indexFile;
+	}
+
 	/**
 	 * getCategories
 	 * 
@@ -991,7 +1017,7 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized List<String> readAllDocumentNames() throws IOException
+	synchronized List<String> readAllDocumentNames() throws IOException
 	{
 		if (this.numberOfChunks <= 0)
 		{
@@ -1031,7 +1057,7 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers)
+	synchronized Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers)
 			throws IOException
 	{
 		// result will be null if categoryName is unknown
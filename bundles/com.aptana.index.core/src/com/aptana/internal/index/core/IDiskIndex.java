@@ -0,0 +1,100 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aptana.index.core.QueryResult;
+
+/**
+ * The on-disk half of an index. Implementations are immutable between merges: every call to
+ * {@link #mergeWith(MemoryIndex)} returns the instance that should be used from then on. Queries are safe from multiple
+ * threads.
+ */
+public interface IDiskIndex
+{
+	/**
+	 * Returns the file backing this index.
+	 *
+	 * @return
+	 */
+	File getIndexFile();
+
+	/**
+	 * Returns the file the data of this index is read from. That's the index file, unless the index file couldn't be
+	 * replaced when this instance was written.
+	 *
+	 * @return
+	 */
+	File getDataFile();
+
+	/**
+	 * Adds the names of the documents on disk that start with the given substring (all documents if null), skipping
+	 * any document that has been added, changed or deleted in the memory index.
+	 *
+	 * @param substring
+	 * @param memoryIndex
+	 * @return
+	 * @throws IOException
+	 */
+	Set<String> addDocumentNames(String substring, MemoryIndex memoryIndex) throws IOException;
+
+	/**
+	 * Adds the words matching key in the given categories, skipping any document that has been added, changed or
+	 * deleted in the memory index.
+	 *
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @param memoryIndex
+	 * @param patterns
+	 *            compiles the patterns of pattern and regex queries
+	 * @return
+	 * @throws IOException
+	 */
+	Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule, MemoryIndex memoryIndex,
+			PatternCache patterns) throws IOException;
+
+	/**
+	 * getCategories
+	 *
+	 * @return
+	 */
+	List<String> getCategories();
+
+	/**
+	 * getDocuments
+	 *
+	 * @return
+	 */
+	List<String> getDocuments();
+
+	/**
+	 * Writes the contents of the memory index to disk. Queries may keep using this instance while the merge runs, but
+	 * only one merge may run at a time.
+	 *
+	 * @param memoryIndex
+	 * @return
+	 * @throws IOException
+	 */
+	IDiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException;
+
+	/**
+	 * Drops the given categories while merging the memory index to disk.
+	 *
+	 * @param categoryNames
+	 * @param memoryIndex
+	 * @return
+	 * @throws IOException
+	 */
+	IDiskIndex removeCategories(String[] categoryNames, MemoryIndex memoryIndex) throws IOException;
+}
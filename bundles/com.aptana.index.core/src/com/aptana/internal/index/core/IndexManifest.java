@@ -0,0 +1,469 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.index.core.IDebugScopes;
+import com.aptana.index.core.IndexPlugin;
+
+/**
+ * The fingerprint (modification time, size and a digest of the contents) of every document in an index, as of when it
+ * was last indexed. Comparing the files of a container against their fingerprints tells exactly which documents need
+ * to be indexed again and which were deleted, without relying on the index file's timestamp or querying the index for
+ * its document names.
+ * <p>
+ * A file whose time or size changed is only considered changed once its digest differs too, so touching a file or
+ * checking out the same contents again doesn't get it indexed again.
+ * </p>
+ * The manifest is written next to the index file. It is only ever written from a {@link #snapshot()} taken while the
+ * index holds no changes newer than the snapshot, so it never claims a document the index file doesn't hold yet.
+ * Access is synchronized.
+ */
+public class IndexManifest
+{
+	/**
+	 * Increment whenever the layout of the file changes
+	 */
+	private static final int VERSION = 1;
+	private static final int MAGIC = 0x41494d46; // AIMF
+
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+	private static final String DIGEST_ALGORITHM = "SHA-1"; //$NON-NLS-1$
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The state of a file when it was indexed.
+	 */
+	public static final class Fingerprint
+	{
+		final long lastModified;
+		final long length;
+		final byte[] digest;
+
+		Fingerprint(long lastModified, long length, byte[] digest)
+		{
+			this.lastModified = lastModified;
+			this.length = length;
+			this.digest = digest;
+		}
+
+		/**
+		 * Reads the contents of the file to compute its fingerprint. The info should have been fetched before the
+		 * contents are read, so a change made in between shows as a newer time next time around.
+		 *
+		 * @param file
+		 * @param info
+		 * @return
+		 * @throws CoreException
+		 *             if the file can't be read
+		 */
+		public static Fingerprint of(IFileStore file, IFileInfo info) throws CoreException
+		{
+			return new Fingerprint(info.getLastModified(), info.getLength(), digest(file));
+		}
+
+		boolean hasSameStamp(IFileInfo info)
+		{
+			return lastModified == info.getLastModified() && length == info.getLength();
+		}
+	}
+
+	/**
+	 * The entries of a manifest at one point in time, to be written once the index changes they describe are on disk.
+	 */
+	public final class Snapshot
+	{
+		private final Map<String, Fingerprint> entries;
+		private final boolean complete;
+		private final int generation;
+
+		private Snapshot(Map<String, Fingerprint> entries, boolean complete, int generation)
+		{
+			this.entries = entries;
+			this.complete = complete;
+			this.generation = generation;
+		}
+
+		/**
+		 * Writes the snapshot, unless the manifest was cleared since it was taken.
+		 */
+		public void write()
+		{
+			synchronized (IndexManifest.this)
+			{
+				if (generation != clears)
+				{
+					return;
+				}
+			}
+			if (!IndexManifest.this.write(this.entries, this.complete))
+			{
+				discard();
+			}
+		}
+
+		/**
+		 * Gives up on writing the snapshot, so the next one is taken even if nothing changes until then.
+		 */
+		public void discard()
+		{
+			synchronized (IndexManifest.this)
+			{
+				dirty = true;
+			}
+		}
+	}
+
+	private final File file;
+	private Map<String, Fingerprint> entries;
+	private boolean complete;
+	private boolean dirty;
+
+	/**
+	 * Counts the calls to {@link #clear(boolean)}, so a snapshot taken before one is never written after it.
+	 */
+	private int clears;
+
+	/**
+	 * IndexManifest
+	 *
+	 * @param file
+	 *            the file holding the manifest, or null to keep it in memory only
+	 */
+	public IndexManifest(File file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * Returns true if every document of the index has an entry, i.e. the documents of a container that have no file
+	 * any more can be told from the manifest alone. This isn't the case for indexes written before there was a
+	 * manifest, until one full pass over their container has removed the documents nothing in the container accounts
+	 * for.
+	 *
+	 * @return
+	 */
+	public synchronized boolean isComplete()
+	{
+		load();
+		return complete;
+	}
+
+	/**
+	 * Records that every document of the index now has an entry.
+	 */
+	public synchronized void setComplete()
+	{
+		load();
+		if (!complete)
+		{
+			complete = true;
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Returns the names of the documents that have an entry.
+	 *
+	 * @return
+	 */
+	public synchronized Set<String> getDocumentNames()
+	{
+		load();
+		return new HashSet<String>(entries.keySet());
+	}
+
+	/**
+	 * Returns true if the file still has the fingerprint recorded for the document. Files with a new time or size but
+	 * the same contents are current too, and get their entry updated so the next check doesn't read them again.
+	 *
+	 * @param documentName
+	 * @param file
+	 * @param info
+	 * @return
+	 */
+	public boolean isCurrent(String documentName, IFileStore file, IFileInfo info)
+	{
+		Fingerprint fingerprint;
+		synchronized (this)
+		{
+			load();
+			fingerprint = entries.get(documentName);
+		}
+		if (fingerprint == null)
+		{
+			return false;
+		}
+		if (fingerprint.hasSameStamp(info))
+		{
+			return true;
+		}
+		if (fingerprint.length != info.getLength())
+		{
+			return false;
+		}
+
+		byte[] digest;
+		try
+		{
+			digest = digest(file);
+		}
+		catch (CoreException e)
+		{
+			return false;
+		}
+		if (!Arrays.equals(fingerprint.digest, digest))
+		{
+			return false;
+		}
+
+		synchronized (this)
+		{
+			// unless the document was indexed again in the meantime
+			if (entries.get(documentName) == fingerprint)
+			{
+				entries.put(documentName, new Fingerprint(info.getLastModified(), info.getLength(), digest));
+				dirty = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the fingerprint of a document that was just indexed.
+	 *
+	 * @param documentName
+	 * @param fingerprint
+	 */
+	public synchronized void put(String documentName, Fingerprint fingerprint)
+	{
+		load();
+		entries.put(documentName, fingerprint);
+		dirty = true;
+	}
+
+	/**
+	 * Drops the entry of a document removed from the index.
+	 *
+	 * @param documentName
+	 */
+	public synchronized void remove(String documentName)
+	{
+		load();
+		if (entries.remove(documentName) != null)
+		{
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Drops all entries and deletes the file, for when the index has been emptied or replaced.
+	 *
+	 * @param complete
+	 *            whether the index is empty now, rather than holding documents the manifest knows nothing about
+	 */
+	public synchronized void clear(boolean complete)
+	{
+		entries = new HashMap<String, Fingerprint>();
+		this.complete = complete;
+		this.dirty = true;
+		this.clears++;
+		if (file != null)
+		{
+			delete(file);
+		}
+	}
+
+	/**
+	 * Takes a copy of the entries to write, or returns null if nothing changed since the last snapshot.
+	 *
+	 * @return
+	 */
+	public synchronized Snapshot snapshot()
+	{
+		if (!dirty || file == null)
+		{
+			return null;
+		}
+		dirty = false;
+		return new Snapshot(new HashMap<String, Fingerprint>(entries), complete, clears);
+	}
+
+	private void load()
+	{
+		if (entries != null)
+		{
+			return;
+		}
+		entries = new HashMap<String, Fingerprint>();
+		complete = false;
+		if (file == null || !file.isFile())
+		{
+			return;
+		}
+
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				return;
+			}
+			boolean wasComplete = in.readBoolean();
+			int count = in.readInt();
+			Map<String, Fingerprint> read = new HashMap<String, Fingerprint>(Math.max(16, count * 4 / 3));
+			for (int i = 0; i < count; i++)
+			{
+				String documentName = in.readUTF();
+				long lastModified = in.readLong();
+				long length = in.readLong();
+				byte[] digest = new byte[in.readUnsignedByte()];
+				in.readFully(digest);
+				read.put(documentName, new Fingerprint(lastModified, length, digest));
+			}
+			entries = read;
+			complete = wasComplete;
+		}
+		catch (IOException e)
+		{
+			// start over; the index will be checked against its container in full once
+			IdeLog.logInfo(IndexPlugin.getDefault(), MessageFormat.format("Ignoring unreadable manifest {0}", file), //$NON-NLS-1$
+					e, IDebugScopes.INDEXER);
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	private boolean write(Map<String, Fingerprint> snapshot, boolean wasComplete)
+	{
+		File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+		DataOutputStream out = null;
+		boolean written = false;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeBoolean(wasComplete);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<String, Fingerprint> entry : snapshot.entrySet())
+			{
+				Fingerprint fingerprint = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(fingerprint.lastModified);
+				out.writeLong(fingerprint.length);
+				out.writeByte(fingerprint.digest.length);
+				out.write(fingerprint.digest);
+			}
+			out.close();
+			out = null;
+			// renameTo doesn't replace existing files everywhere
+			delete(file);
+			written = tempFile.renameTo(file);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(IndexPlugin.getDefault(), MessageFormat.format("Unable to write {0}", file), e); //$NON-NLS-1$
+		}
+		finally
+		{
+			close(out);
+			if (!written)
+			{
+				delete(tempFile);
+			}
+		}
+		return written;
+	}
+
+	private static byte[] digest(IFileStore file) throws CoreException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// every Java platform is required to provide SHA-1
+			throw new IllegalStateException(e);
+		}
+
+		InputStream in = file.openInputStream(EFS.NONE, null);
+		try
+		{
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				digest.update(buffer, 0, read);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new CoreException(new Status(IStatus.ERROR, IndexPlugin.PLUGIN_ID, e.getMessage(), e));
+		}
+		finally
+		{
+			close(in);
+		}
+		return digest.digest();
+	}
+
+	private static void close(Closeable closeable)
+	{
+		if (closeable != null)
+		{
+			try
+			{
+				closeable.close();
+			}
+			catch (IOException e)
+			{
+				// ignore
+			}
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file.exists() && !file.delete())
+		{
+			file.deleteOnExit();
+		}
+	}
+}
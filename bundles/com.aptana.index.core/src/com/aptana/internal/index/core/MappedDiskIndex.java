@@ -0,0 +1,1211 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+import com.aptana.internal.index.core.PatternCache.WordMatcher;
+
+/**
+ * An on-disk index read through a memory mapped file. Keys are stored sorted and prefix compressed in blocks, with a
+ * sparse directory of the first key of each block, so queries binary search to the relevant block and only decode the
+ * entries and posting lists they actually need. Nothing is materialized on the heap besides the block directories and
+ * the document name blocks that have been touched. See {@link MappedIndexWriter} for the layout.
+ * <p>
+ * Instances are immutable; {@link #mergeWith(MemoryIndex)} writes a new file and returns a new instance. Files written
+ * in the legacy {@link DiskIndex} format are migrated when opened.
+ * </p>
+ */
+public class MappedDiskIndex implements IDiskIndex
+{
+	static final String SIGNATURE = "INDEX VERSION 0.2"; //$NON-NLS-1$
+	static final int BLOCK_SIZE = 64;
+
+	/**
+	 * Suffix (followed by a number) of the files a new version of an index is moved to when the index file can't be
+	 * replaced because it is still mapped, see {@link #replaceWith(File)}.
+	 */
+	static final String GENERATION_SUFFIX = ".gen"; //$NON-NLS-1$
+
+	/**
+	 * Opens the index stored in the given file, creating an empty one if it doesn't exist or shouldn't be reused.
+	 * Legacy index files are rewritten in the current format.
+	 *
+	 * @param fileName
+	 * @param reuseExistingFile
+	 * @return
+	 * @throws IOException
+	 *             if the file is corrupt or in an unknown format
+	 */
+	public static MappedDiskIndex open(String fileName, boolean reuseExistingFile) throws IOException
+	{
+		File file = new File(fileName);
+
+		if (reuseExistingFile)
+		{
+			// the latest version may have been left in a generation file
+			File dataFile = file;
+			File generation = getLatestGeneration(file);
+
+			if (generation != null && !moveTo(generation, file))
+			{
+				dataFile = generation;
+			}
+
+			if (dataFile.exists())
+			{
+				String signature = readSignature(dataFile);
+
+				if (SIGNATURE.equals(signature))
+				{
+					MappedDiskIndex index = new MappedDiskIndex(file, dataFile);
+					index.map();
+					deleteStaleGenerations(file, dataFile);
+					return index;
+				}
+				if (DiskIndex.SIGNATURE.equals(signature))
+				{
+					return migrate(file);
+				}
+
+				throw new IOException(Messages.DiskIndex_Wrong_Format);
+			}
+		}
+
+		// an existing file is replaced by the empty index below
+
+		File tmpFile = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		MappedIndexWriter writer = new MappedIndexWriter(tmpFile);
+
+		try
+		{
+			writer.open(Collections.<String> emptyList());
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			writer.abort();
+			tmpFile.delete();
+			throw new IOException(Messages.DiskIndex_Unable_To_Create_Index_File + file);
+		}
+
+		return new MappedDiskIndex(file).replaceWith(tmpFile);
+	}
+
+	/**
+	 * Rewrites a legacy "INDEX VERSION 0.1" file in the current format. Document numbers are positions in the sorted
+	 * document names in both formats, so posting lists can be copied across unchanged.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	private static MappedDiskIndex migrate(File file) throws IOException
+	{
+		DiskIndex legacy = new DiskIndex(file.getPath());
+		legacy.initialize(true);
+
+		File tmpFile = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		MappedIndexWriter writer = new MappedIndexWriter(tmpFile);
+
+		try
+		{
+			writer.open(legacy.readAllDocumentNames());
+
+			for (String categoryName : new TreeSet<String>(legacy.getCategories()))
+			{
+				Map<String, Object> table = legacy.readCategoryTable(categoryName, true);
+
+				if (table == null || table.isEmpty())
+				{
+					continue;
+				}
+
+				writer.beginCategory(categoryName);
+
+				for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(table).entrySet())
+				{
+					IntArray docNumbers = new IntArray();
+
+					for (Integer docNumber : (List<Integer>) entry.getValue())
+					{
+						docNumbers.add(docNumber);
+					}
+
+					docNumbers.sortUnique();
+					writer.addEntry(entry.getKey(), docNumbers.values, docNumbers.size);
+				}
+
+				writer.endCategory();
+			}
+
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			writer.abort();
+			tmpFile.delete();
+			throw e;
+		}
+
+		return new MappedDiskIndex(file).replaceWith(tmpFile);
+	}
+
+	/**
+	 * Reads the signature at the start of the file in either the legacy or the current encoding.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private static String readSignature(File file) throws IOException
+	{
+		byte[] bytes = new byte[64];
+		int length = 0;
+		InputStream stream = new FileInputStream(file);
+
+		try
+		{
+			int read;
+
+			while (length < bytes.length && (read = stream.read(bytes, length, bytes.length - length)) != -1)
+			{
+				length += read;
+			}
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		// legacy: 2 byte length, followed by ASCII
+		if (length >= 2)
+		{
+			int size = ((bytes[0] & 0xFF) << 8) + (bytes[1] & 0xFF);
+
+			if (size > 0 && size <= length - 2)
+			{
+				String signature = new String(bytes, 2, size, "ISO-8859-1"); //$NON-NLS-1$
+
+				if (DiskIndex.SIGNATURE.equals(signature))
+				{
+					return signature;
+				}
+			}
+		}
+
+		// current: varint length, followed by varint chars (all single bytes for ASCII)
+		if (length >= 1)
+		{
+			int size = bytes[0] & 0xFF;
+
+			if (size > 0 && size < 0x80 && size <= length - 1)
+			{
+				return new String(bytes, 1, size, "ISO-8859-1"); //$NON-NLS-1$
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the generation file with the highest number, or null if there is none.
+	 *
+	 * @param indexFile
+	 * @return
+	 */
+	private static File getLatestGeneration(File indexFile)
+	{
+		File latest = null;
+		long latestNumber = 0;
+
+		for (Map.Entry<Long, File> entry : getGenerations(indexFile).entrySet())
+		{
+			if (latest == null || entry.getKey() > latestNumber)
+			{
+				latest = entry.getValue();
+				latestNumber = entry.getKey();
+			}
+		}
+
+		return latest;
+	}
+
+	/**
+	 * Returns a generation file numbered higher than all existing ones.
+	 *
+	 * @param indexFile
+	 * @return
+	 */
+	private static File getNextGeneration(File indexFile)
+	{
+		long next = 1;
+
+		for (Long number : getGenerations(indexFile).keySet())
+		{
+			next = Math.max(next, number + 1);
+		}
+
+		return new File(indexFile.getPath() + GENERATION_SUFFIX + next);
+	}
+
+	private static Map<Long, File> getGenerations(File indexFile)
+	{
+		Map<Long, File> generations = new HashMap<Long, File>();
+		File directory = indexFile.getAbsoluteFile().getParentFile();
+		String prefix = indexFile.getName() + GENERATION_SUFFIX;
+		String[] names = (directory == null) ? null : directory.list();
+
+		if (names != null)
+		{
+			for (String name : names)
+			{
+				if (name.length() > prefix.length() && name.startsWith(prefix))
+				{
+					try
+					{
+						generations.put(Long.parseLong(name.substring(prefix.length())), new File(directory, name));
+					}
+					catch (NumberFormatException e)
+					{
+						// not one of ours
+					}
+				}
+			}
+		}
+
+		return generations;
+	}
+
+	/**
+	 * Deletes the generation files other than the current one. Files that are still mapped by instances in use can't
+	 * be deleted on some platforms; those are tried again next time.
+	 *
+	 * @param indexFile
+	 * @param current
+	 */
+	private static void deleteStaleGenerations(File indexFile, File current)
+	{
+		for (File generation : getGenerations(indexFile).values())
+		{
+			if (!generation.equals(current))
+			{
+				generation.delete();
+			}
+		}
+	}
+
+	/**
+	 * Moves a file over another one, deleting the target first if needed.
+	 *
+	 * @param source
+	 * @param target
+	 * @return false if the target couldn't be replaced, e.g. because it is still mapped
+	 */
+	private static boolean moveTo(File source, File target)
+	{
+		if (source.renameTo(target))
+		{
+			return true;
+		}
+
+		// Windows won't rename over an existing file
+		return (!target.exists() || target.delete()) && source.renameTo(target);
+	}
+
+	private final File indexFile;
+
+	/**
+	 * The file that is mapped: the index file, or a generation file while the index file couldn't be replaced.
+	 */
+	private final File dataFile;
+
+	/**
+	 * Never cleared: readers that got hold of this instance keep reading from it, even after it was replaced. The
+	 * mapping goes away once the instance is collected.
+	 */
+	private ByteBuffer buffer;
+
+	private int documentCount;
+	private BlockDirectory documentDirectory;
+	private AtomicReferenceArray<String[]> documentBlocks;
+
+	private Map<String, int[]> categoryFooter;
+	private ConcurrentHashMap<String, BlockDirectory> categoryDirectories;
+	private String[] categoriesToDiscard;
+
+	/**
+	 * MappedDiskIndex
+	 *
+	 * @param indexFile
+	 */
+	private MappedDiskIndex(File indexFile)
+	{
+		this(indexFile, indexFile);
+	}
+
+	/**
+	 * MappedDiskIndex
+	 *
+	 * @param indexFile
+	 * @param dataFile
+	 */
+	private MappedDiskIndex(File indexFile, File dataFile)
+	{
+		this.indexFile = indexFile;
+		this.dataFile = dataFile;
+	}
+
+	/**
+	 * Maps the file and reads the footer. Block directories and document names are decoded lazily.
+	 *
+	 * @throws IOException
+	 */
+	private void map() throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(this.dataFile, "r"); //$NON-NLS-1$
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+
+			if (size < 4 || size > Integer.MAX_VALUE)
+			{
+				throw new IOException(MessageFormat.format("Corrupt index file ''{0}'', size {1}", this.dataFile, size)); //$NON-NLS-1$
+			}
+
+			// the mapping stays valid after the channel is closed
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		finally
+		{
+			file.close();
+		}
+
+		try
+		{
+			Cursor cursor = new Cursor(this.buffer, 0);
+
+			if (!SIGNATURE.equals(cursor.readString()))
+			{
+				throw new IOException(Messages.DiskIndex_Wrong_Format);
+			}
+
+			cursor.position = this.buffer.getInt(this.buffer.limit() - 4);
+
+			this.documentCount = cursor.readVarInt();
+			this.documentDirectory = readDirectory(cursor.readInt(), this.documentCount);
+			this.documentBlocks = new AtomicReferenceArray<String[]>(this.documentDirectory.offsets.length);
+
+			int categoryCount = cursor.readVarInt();
+			this.categoryFooter = new HashMap<String, int[]>(categoryCount);
+			this.categoryDirectories = new ConcurrentHashMap<String, BlockDirectory>(categoryCount);
+
+			for (int i = 0; i < categoryCount; i++)
+			{
+				String name = cursor.readString();
+				int entryCount = cursor.readVarInt();
+				int directoryOffset = cursor.readInt();
+
+				this.categoryFooter.put(name, new int[] { entryCount, directoryOffset });
+			}
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			this.buffer = null;
+			throw new IOException(MessageFormat.format("Corrupt index file ''{0}''", this.dataFile)); //$NON-NLS-1$
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#getIndexFile()
+	 */
+	public File getIndexFile()
+	{
+		return this.indexFile;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#getDataFile()
+	 */
+	public File getDataFile()
+	{
+		return this.dataFile;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#getCategories()
+	 */
+	public List<String> getCategories()
+	{
+		return new ArrayList<String>(this.categoryFooter.keySet());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#getDocuments()
+	 */
+	public List<String> getDocuments()
+	{
+		List<String> result = new ArrayList<String>(this.documentCount);
+
+		for (int i = 0; i < this.documentBlocks.length(); i++)
+		{
+			result.addAll(Arrays.asList(getDocumentBlock(i)));
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#addDocumentNames(java.lang.String,
+	 * com.aptana.internal.index.core.MemoryIndex)
+	 */
+	public Set<String> addDocumentNames(String substring, MemoryIndex memoryIndex) throws IOException
+	{
+		// must skip over documents which have been added/changed/deleted in the memory index
+		Map<String, Map<String, Set<String>>> docsToRefs = (memoryIndex == null) ? null : memoryIndex
+				.getDocumentsToReferences();
+		Set<String> results = new HashSet<String>();
+
+		try
+		{
+			// names are sorted, so all matches are contiguous starting in the block that could hold the prefix
+			int block = (substring == null) ? 0 : this.documentDirectory.findBlock(substring);
+
+			for (; block < this.documentBlocks.length(); block++)
+			{
+				for (String docName : getDocumentBlock(block))
+				{
+					if (substring != null && !docName.startsWith(substring))
+					{
+						if (docName.compareTo(substring) > 0)
+						{
+							return results;
+						}
+						continue;
+					}
+					if (docsToRefs == null || !docsToRefs.containsKey(docName))
+					{
+						results.add(docName);
+					}
+				}
+			}
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw corrupt(e);
+		}
+
+		return results;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#addQueryResults(java.lang.String[], java.lang.String, int,
+	 * com.aptana.internal.index.core.MemoryIndex, com.aptana.internal.index.core.PatternCache)
+	 */
+	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
+			MemoryIndex memoryIndex, PatternCache patterns) throws IOException
+	{
+		// Add perf fixes for common ways of searching for everything:
+		// PREFIX_MATCH with an empty key
+		if ((matchRule == SearchPattern.PREFIX_MATCH || matchRule == (SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE))
+				&& StringUtil.EMPTY.equals(key))
+		{
+			key = null;
+		}
+		// PATTERN_MATCH with a key of "*"
+		else if ((matchRule == SearchPattern.PATTERN_MATCH || matchRule == (SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE))
+				&& "*".equals(key)) //$NON-NLS-1$
+		{
+			key = null;
+		}
+
+		Map<String, Map<String, Set<String>>> docsToRefs = (memoryIndex == null) ? null : memoryIndex
+				.getDocumentsToReferences();
+		Map<String, QueryResult> results = null; // initialized if needed
+		WordMatcher matcher = patterns.getMatcher(key, matchRule);
+
+		try
+		{
+			for (String category : categories)
+			{
+				BlockDirectory directory = getCategoryDirectory(category);
+
+				if (directory != null)
+				{
+					results = addQueryResults(directory, key, matchRule, matcher, docsToRefs, results);
+				}
+			}
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw corrupt(e);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Scans the blocks of a single category. Exact and prefix case-sensitive lookups start at the block found by binary
+	 * search and stop as soon as the sorted keys move past the key; every other rule has to visit every key.
+	 *
+	 * @param directory
+	 * @param key
+	 * @param matchRule
+	 * @param matcher
+	 * @param docsToRefs
+	 * @param results
+	 * @return
+	 */
+	private Map<String, QueryResult> addQueryResults(BlockDirectory directory, String key, int matchRule,
+			WordMatcher matcher, Map<String, Map<String, Set<String>>> docsToRefs, Map<String, QueryResult> results)
+	{
+		boolean exact = (matchRule == (SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE));
+		boolean prefix = (matchRule == (SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE));
+		boolean sorted = key != null && (exact || prefix);
+		int block = sorted ? directory.findBlock(key) : 0;
+
+		for (; block < directory.offsets.length; block++)
+		{
+			Cursor cursor = new Cursor(this.buffer, directory.offsets[block]);
+			int count = cursor.readVarInt();
+			String word = null;
+
+			for (int i = 0; i < count; i++)
+			{
+				word = cursor.readKey(word);
+
+				int postingsLength = cursor.readVarInt();
+				boolean matches;
+
+				if (key == null)
+				{
+					matches = true;
+				}
+				else if (sorted)
+				{
+					int comparison = word.compareTo(key);
+
+					if (comparison < 0)
+					{
+						cursor.position += postingsLength;
+						continue;
+					}
+
+					matches = exact ? comparison == 0 : word.startsWith(key);
+
+					if (!matches)
+					{
+						return results;
+					}
+				}
+				else
+				{
+					matches = matcher.matches(word);
+				}
+
+				if (matches)
+				{
+					if (results == null)
+					{
+						results = new HashMap<String, QueryResult>(13);
+					}
+
+					addQueryResult(results, word, new Cursor(this.buffer, cursor.position), docsToRefs);
+
+					if (exact)
+					{
+						return results;
+					}
+				}
+
+				cursor.position += postingsLength;
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Decodes a posting list and adds the documents that the memory index doesn't override.
+	 *
+	 * @param results
+	 * @param word
+	 * @param postings
+	 * @param docsToRefs
+	 */
+	private void addQueryResult(Map<String, QueryResult> results, String word, Cursor postings,
+			Map<String, Map<String, Set<String>>> docsToRefs)
+	{
+		QueryResult result = results.get(word);
+
+		if (result == null)
+		{
+			result = new QueryResult(word);
+		}
+
+		int count = postings.readVarInt();
+		int docNumber = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			docNumber += postings.readVarInt();
+
+			String docName = getDocumentName(docNumber);
+
+			if (docsToRefs == null || !docsToRefs.containsKey(docName))
+			{
+				result.addDocumentName(docName);
+			}
+		}
+
+		if (!result.isEmpty())
+		{
+			results.put(word, result);
+		}
+	}
+
+	/**
+	 * Returns the block directory for a category, decoding it the first time it is used.
+	 *
+	 * @param categoryName
+	 * @return null if the category isn't in this index
+	 */
+	private BlockDirectory getCategoryDirectory(String categoryName)
+	{
+		BlockDirectory directory = this.categoryDirectories.get(categoryName);
+
+		if (directory == null)
+		{
+			int[] footer = this.categoryFooter.get(categoryName);
+
+			if (footer == null)
+			{
+				return null;
+			}
+
+			directory = readDirectory(footer[1], footer[0]);
+			this.categoryDirectories.put(categoryName, directory);
+		}
+
+		return directory;
+	}
+
+	private BlockDirectory readDirectory(int offset, int entryCount)
+	{
+		Cursor cursor = new Cursor(this.buffer, offset);
+		int blockCount = cursor.readVarInt();
+		BlockDirectory directory = new BlockDirectory(blockCount, entryCount);
+
+		for (int i = 0; i < blockCount; i++)
+		{
+			directory.offsets[i] = cursor.readInt();
+			directory.firstKeys[i] = cursor.readString();
+		}
+
+		return directory;
+	}
+
+	private String getDocumentName(int docNumber)
+	{
+		return getDocumentBlock(docNumber / BLOCK_SIZE)[docNumber % BLOCK_SIZE];
+	}
+
+	private String[] getDocumentBlock(int block)
+	{
+		String[] names = this.documentBlocks.get(block);
+
+		if (names == null)
+		{
+			int size = Math.min(BLOCK_SIZE, this.documentCount - block * BLOCK_SIZE);
+			Cursor cursor = new Cursor(this.buffer, this.documentDirectory.offsets[block]);
+			String previous = null;
+
+			names = new String[size];
+
+			for (int i = 0; i < size; i++)
+			{
+				names[i] = previous = cursor.readKey(previous);
+			}
+
+			// racing threads decode identical blocks, so it doesn't matter whose copy wins
+			this.documentBlocks.set(block, names);
+		}
+
+		return names;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#mergeWith(com.aptana.internal.index.core.MemoryIndex)
+	 */
+	public MappedDiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException
+	{
+		Map<String, Map<String, Set<String>>> changed = memoryIndex.getDocumentsToReferences();
+		List<String> oldNames = getDocuments();
+
+		// compute the new sorted document names; changed documents are dropped and re-added from the memory index
+		Set<String> names = new HashSet<String>(oldNames.size() + changed.size());
+
+		for (String oldName : oldNames)
+		{
+			if (!changed.containsKey(oldName))
+			{
+				names.add(oldName);
+			}
+		}
+		for (Map.Entry<String, Map<String, Set<String>>> entry : changed.entrySet())
+		{
+			if (entry.getKey() != null && entry.getValue() != null)
+			{
+				names.add(entry.getKey());
+			}
+		}
+
+		if (oldNames.isEmpty() && names.isEmpty() && this.categoriesToDiscard == null)
+		{
+			return this; // nothing to do... memory index contained deleted documents that had never been saved
+		}
+
+		List<String> sortedNames = new ArrayList<String>(names);
+		Collections.sort(sortedNames);
+		names = null;
+
+		Map<String, Integer> newPositions = new HashMap<String, Integer>(sortedNames.size());
+
+		for (int i = 0; i < sortedNames.size(); i++)
+		{
+			newPositions.put(sortedNames.get(i), i);
+		}
+
+		// maps an old document number to its new one, or -1 if it was deleted or re-indexed
+		int[] positions = new int[oldNames.size()];
+
+		for (int i = 0; i < positions.length; i++)
+		{
+			String oldName = oldNames.get(i);
+			positions[i] = changed.containsKey(oldName) ? -1 : newPositions.get(oldName);
+		}
+
+		Set<String> categoryNames = new TreeSet<String>(this.categoryFooter.keySet());
+		categoryNames.addAll(memoryIndex.getCategories());
+
+		if (this.categoriesToDiscard != null)
+		{
+			categoryNames.removeAll(Arrays.asList(this.categoriesToDiscard));
+		}
+
+		File tmpFile = new File(this.indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+		MappedIndexWriter writer = new MappedIndexWriter(tmpFile);
+
+		try
+		{
+			writer.open(sortedNames);
+
+			for (String categoryName : categoryNames)
+			{
+				mergeCategory(writer, categoryName, positions, changed, newPositions);
+			}
+
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			writer.abort();
+			tmpFile.delete();
+			throw e;
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			writer.abort();
+			tmpFile.delete();
+			throw corrupt(e);
+		}
+
+		return replaceWith(tmpFile);
+	}
+
+	/**
+	 * Writes the union of the on-disk and in-memory entries of one category.
+	 */
+	private void mergeCategory(MappedIndexWriter writer, String categoryName, int[] positions,
+			Map<String, Map<String, Set<String>>> changed, Map<String, Integer> newPositions) throws IOException
+	{
+		TreeMap<String, IntArray> wordsToDocs = new TreeMap<String, IntArray>();
+		BlockDirectory directory = getCategoryDirectory(categoryName);
+
+		if (directory != null)
+		{
+			for (int block = 0; block < directory.offsets.length; block++)
+			{
+				Cursor cursor = new Cursor(this.buffer, directory.offsets[block]);
+				int count = cursor.readVarInt();
+				String word = null;
+
+				for (int i = 0; i < count; i++)
+				{
+					word = cursor.readKey(word);
+					cursor.readVarInt(); // byte length of the postings
+
+					IntArray docs = null;
+					int postingCount = cursor.readVarInt();
+					int docNumber = 0;
+
+					for (int j = 0; j < postingCount; j++)
+					{
+						docNumber += cursor.readVarInt();
+
+						int position = positions[docNumber];
+
+						if (position >= 0)
+						{
+							if (docs == null)
+							{
+								docs = new IntArray();
+							}
+							docs.add(position);
+						}
+					}
+
+					// skip words which no longer have any references
+					if (docs != null)
+					{
+						wordsToDocs.put(word, docs);
+					}
+				}
+			}
+		}
+
+		for (Map.Entry<String, Map<String, Set<String>>> entry : changed.entrySet())
+		{
+			Map<String, Set<String>> categoriesToWords = entry.getValue();
+
+			if (categoriesToWords == null)
+			{
+				continue;
+			}
+
+			Set<String> words = categoriesToWords.get(categoryName);
+
+			if (words == null)
+			{
+				continue;
+			}
+
+			int position = newPositions.get(entry.getKey());
+
+			for (String word : words)
+			{
+				if (word == null)
+				{
+					continue;
+				}
+
+				IntArray docs = wordsToDocs.get(word);
+
+				if (docs == null)
+				{
+					wordsToDocs.put(word, docs = new IntArray());
+				}
+
+				docs.add(position);
+			}
+		}
+
+		if (wordsToDocs.isEmpty())
+		{
+			return;
+		}
+
+		writer.beginCategory(categoryName);
+
+		for (Map.Entry<String, IntArray> entry : wordsToDocs.entrySet())
+		{
+			IntArray docs = entry.getValue();
+			docs.sortUnique();
+			writer.addEntry(entry.getKey(), docs.values, docs.size);
+		}
+
+		writer.endCategory();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.internal.index.core.IDiskIndex#removeCategories(java.lang.String[],
+	 * com.aptana.internal.index.core.MemoryIndex)
+	 */
+	public MappedDiskIndex removeCategories(String[] categoryNames, MemoryIndex memoryIndex) throws IOException
+	{
+		this.categoriesToDiscard = categoryNames;
+
+		try
+		{
+			return mergeWith(memoryIndex);
+		}
+		finally
+		{
+			this.categoriesToDiscard = null;
+		}
+	}
+
+	/**
+	 * Replaces the contents of this index with a complete index file written elsewhere, such as a prebuilt snapshot.
+	 * The file is moved into place, so it should be on the same file system as this index.
+	 *
+	 * @param indexFile
+	 * @return
+	 * @throws IOException
+	 *             if the file is not a valid index
+	 */
+	public MappedDiskIndex replaceWithFile(File indexFile) throws IOException
+	{
+		// check before giving up the current file
+		if (!SIGNATURE.equals(readSignature(indexFile)))
+		{
+			throw new IOException(Messages.DiskIndex_Wrong_Format);
+		}
+
+		return replaceWith(indexFile);
+	}
+
+	/**
+	 * Moves the freshly written file into place and maps it. This instance is left as is, so readers still holding it
+	 * keep working.
+	 * <p>
+	 * Windows won't replace nor delete a file that is still mapped, and there's no way to unmap one explicitly: the
+	 * mapping only goes away once every instance using it was collected. Until then, new versions are moved to
+	 * generation files next to the index file instead. The latest one is moved into place by the next replacement or
+	 * {@link #open(String, boolean)} that finds the index file free, and the stale ones are deleted once they are no
+	 * longer mapped.
+	 * </p>
+	 *
+	 * @param tmpFile
+	 * @return
+	 * @throws IOException
+	 */
+	private MappedDiskIndex replaceWith(File tmpFile) throws IOException
+	{
+		File newDataFile = this.indexFile;
+
+		if (!moveTo(tmpFile, this.indexFile))
+		{
+			newDataFile = getNextGeneration(this.indexFile);
+
+			if (!tmpFile.renameTo(newDataFile))
+			{
+				tmpFile.delete();
+				throw new IOException("Failed to rename index file " + this.indexFile); //$NON-NLS-1$
+			}
+		}
+
+		MappedDiskIndex result = new MappedDiskIndex(this.indexFile, newDataFile);
+		result.map();
+		deleteStaleGenerations(this.indexFile, newDataFile);
+
+		return result;
+	}
+
+	private IOException corrupt(IndexOutOfBoundsException e)
+	{
+		IOException ioe = new IOException(MessageFormat.format("Corrupt index file ''{0}''", this.dataFile)); //$NON-NLS-1$
+		ioe.initCause(e);
+		return ioe;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return MessageFormat.format("{0} ({1} documents)", this.indexFile, this.documentCount); //$NON-NLS-1$
+	}
+
+	/**
+	 * The sparse directory of a sorted run of blocks: the file offset and first key of each block.
+	 */
+	private static class BlockDirectory
+	{
+		final int[] offsets;
+		final String[] firstKeys;
+		final int entryCount;
+
+		BlockDirectory(int blockCount, int entryCount)
+		{
+			this.offsets = new int[blockCount];
+			this.firstKeys = new String[blockCount];
+			this.entryCount = entryCount;
+		}
+
+		/**
+		 * Returns the last block whose first key is less than or equal to key, i.e. the only block that may contain key
+		 * or the first key that has key as a prefix.
+		 *
+		 * @param key
+		 * @return
+		 */
+		int findBlock(String key)
+		{
+			int index = Arrays.binarySearch(this.firstKeys, key);
+
+			if (index >= 0)
+			{
+				return index;
+			}
+
+			return Math.max(0, -index - 2);
+		}
+	}
+
+	/**
+	 * A read position in the mapped buffer. Only absolute gets are used on the buffer so any number of threads can read
+	 * it at once.
+	 */
+	private static class Cursor
+	{
+		private final ByteBuffer buffer;
+		int position;
+
+		Cursor(ByteBuffer buffer, int position)
+		{
+			this.buffer = buffer;
+			this.position = position;
+		}
+
+		int readInt()
+		{
+			int value = this.buffer.getInt(this.position);
+			this.position += 4;
+			return value;
+		}
+
+		int readVarInt()
+		{
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do
+			{
+				b = this.buffer.get(this.position++);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			}
+			while (b < 0);
+
+			return value;
+		}
+
+		String readString()
+		{
+			int length = readVarInt();
+			char[] chars = new char[length];
+
+			for (int i = 0; i < length; i++)
+			{
+				chars[i] = (char) readVarInt();
+			}
+
+			return new String(chars);
+		}
+
+		/**
+		 * Reads a prefix compressed key.
+		 *
+		 * @param previous
+		 *            the preceding key in the block, null for the first one
+		 * @return
+		 */
+		String readKey(String previous)
+		{
+			int shared = readVarInt();
+			int suffixLength = readVarInt();
+			char[] chars = new char[shared + suffixLength];
+
+			if (shared > 0)
+			{
+				previous.getChars(0, shared, chars, 0);
+			}
+			for (int i = shared; i < chars.length; i++)
+			{
+				chars[i] = (char) readVarInt();
+			}
+
+			return new String(chars);
+		}
+	}
+
+	/**
+	 * A growable int array used to collect posting lists while merging.
+	 */
+	private static class IntArray
+	{
+		int[] values = new int[4];
+		int size;
+
+		void add(int value)
+		{
+			if (this.size == this.values.length)
+			{
+				int[] grown = new int[this.size << 1];
+				System.arraycopy(this.values, 0, grown, 0, this.size);
+				this.values = grown;
+			}
+
+			this.values[this.size++] = value;
+		}
+
+		void sortUnique()
+		{
+			Arrays.sort(this.values, 0, this.size);
+
+			int unique = 0;
+
+			for (int i = 0; i < this.size; i++)
+			{
+				if (unique == 0 || this.values[unique - 1] != this.values[i])
+				{
+					this.values[unique++] = this.values[i];
+				}
+			}
+
+			this.size = unique;
+		}
+	}
+}
@@ -0,0 +1,404 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the block-structured index format read by {@link MappedDiskIndex}. The layout is:
+ *
+ * <pre>
+ * signature
+ * document name blocks
+ * for each category: key blocks, then the category's block directory
+ * document block directory
+ * footer: document count, offset of document directory, category count, then (name, entry count, directory offset)
+ * int offset of footer (last 4 bytes of the file)
+ * </pre>
+ *
+ * A block holds up to {@link MappedDiskIndex#BLOCK_SIZE} sorted entries. The first entry of a block is written in full,
+ * every following entry only stores the suffix that differs from its predecessor. A directory lists the file offset and
+ * first key of every block so readers can binary search to the block holding a key. Each key entry is followed by the
+ * byte length of its posting list and the posting list itself: the number of documents followed by the sorted document
+ * numbers, delta encoded. All numbers and characters are written as unsigned varints.
+ */
+class MappedIndexWriter
+{
+	private final File file;
+	private OutputStream stream;
+	private int offset;
+
+	private final List<Integer> docBlockOffsets;
+	private final List<String> docBlockKeys;
+	private int documentCount;
+	private int documentDirectoryOffset;
+
+	private final List<String> categoryNames;
+	private final List<Integer> categoryEntryCounts;
+	private final List<Integer> categoryDirectoryOffsets;
+
+	private String currentCategory;
+	private List<Integer> blockOffsets;
+	private List<String> blockKeys;
+	private int entryCount;
+	private String previousKey;
+	private List<byte[]> pendingEntries;
+
+	private final ByteArray scratch;
+
+	/**
+	 * MappedIndexWriter
+	 *
+	 * @param file
+	 */
+	MappedIndexWriter(File file)
+	{
+		this.file = file;
+		this.docBlockOffsets = new ArrayList<Integer>();
+		this.docBlockKeys = new ArrayList<String>();
+		this.categoryNames = new ArrayList<String>();
+		this.categoryEntryCounts = new ArrayList<Integer>();
+		this.categoryDirectoryOffsets = new ArrayList<Integer>();
+		this.scratch = new ByteArray();
+	}
+
+	/**
+	 * Opens the file and writes the signature and the sorted document names. Document numbers used in posting lists
+	 * are positions in this list.
+	 *
+	 * @param sortedDocumentNames
+	 * @throws IOException
+	 */
+	void open(List<String> sortedDocumentNames) throws IOException
+	{
+		this.stream = new BufferedOutputStream(new FileOutputStream(this.file, false));
+		this.offset = 0;
+
+		writeRawString(MappedDiskIndex.SIGNATURE);
+
+		this.documentCount = sortedDocumentNames.size();
+		String previous = null;
+
+		for (int i = 0; i < this.documentCount; i++)
+		{
+			String name = sortedDocumentNames.get(i);
+
+			if (i % MappedDiskIndex.BLOCK_SIZE == 0)
+			{
+				this.docBlockOffsets.add(this.offset);
+				this.docBlockKeys.add(name);
+				previous = null;
+			}
+
+			scratch.reset();
+			writeKey(scratch, previous, name);
+			write(scratch);
+			previous = name;
+		}
+
+		this.documentDirectoryOffset = this.offset;
+		writeDirectory(this.docBlockOffsets, this.docBlockKeys);
+	}
+
+	/**
+	 * Starts a new category. Keys must then be added in ascending {@link String#compareTo(String)} order.
+	 *
+	 * @param categoryName
+	 */
+	void beginCategory(String categoryName)
+	{
+		this.currentCategory = categoryName;
+		this.blockOffsets = new ArrayList<Integer>();
+		this.blockKeys = new ArrayList<String>();
+		this.pendingEntries = new ArrayList<byte[]>(MappedDiskIndex.BLOCK_SIZE);
+		this.entryCount = 0;
+		this.previousKey = null;
+	}
+
+	/**
+	 * Adds a key and the documents containing it to the current category.
+	 *
+	 * @param key
+	 * @param sortedDocumentNumbers
+	 *            ascending, without duplicates
+	 * @param length
+	 *            the number of valid entries in sortedDocumentNumbers
+	 * @throws IOException
+	 */
+	void addEntry(String key, int[] sortedDocumentNumbers, int length) throws IOException
+	{
+		if (this.previousKey != null && this.previousKey.compareTo(key) >= 0)
+		{
+			throw new IOException(MessageFormat.format(
+					"Keys out of order in category ''{0}'': ''{1}'' after ''{2}''", this.currentCategory, key, //$NON-NLS-1$
+					this.previousKey));
+		}
+
+		if (this.pendingEntries.size() == MappedDiskIndex.BLOCK_SIZE)
+		{
+			flushBlock();
+		}
+
+		boolean first = this.pendingEntries.isEmpty();
+
+		if (first)
+		{
+			this.blockKeys.add(key);
+		}
+
+		scratch.reset();
+		writeKey(scratch, first ? null : this.previousKey, key);
+
+		ByteArray postings = new ByteArray();
+		postings.writeVarInt(length);
+
+		int last = 0;
+
+		for (int i = 0; i < length; i++)
+		{
+			postings.writeVarInt(sortedDocumentNumbers[i] - last);
+			last = sortedDocumentNumbers[i];
+		}
+
+		scratch.writeVarInt(postings.size());
+		scratch.write(postings);
+
+		this.pendingEntries.add(scratch.toByteArray());
+		this.previousKey = key;
+		this.entryCount++;
+	}
+
+	/**
+	 * Writes the remaining block and the block directory of the current category.
+	 *
+	 * @throws IOException
+	 */
+	void endCategory() throws IOException
+	{
+		flushBlock();
+
+		this.categoryNames.add(this.currentCategory);
+		this.categoryEntryCounts.add(this.entryCount);
+		this.categoryDirectoryOffsets.add(this.offset);
+		writeDirectory(this.blockOffsets, this.blockKeys);
+
+		this.currentCategory = null;
+		this.blockOffsets = null;
+		this.blockKeys = null;
+		this.pendingEntries = null;
+	}
+
+	/**
+	 * Writes the footer and closes the file.
+	 *
+	 * @throws IOException
+	 */
+	void close() throws IOException
+	{
+		try
+		{
+			int footerOffset = this.offset;
+
+			scratch.reset();
+			scratch.writeVarInt(this.documentCount);
+			scratch.writeInt(this.documentDirectoryOffset);
+			scratch.writeVarInt(this.categoryNames.size());
+
+			for (int i = 0; i < this.categoryNames.size(); i++)
+			{
+				scratch.writeString(this.categoryNames.get(i));
+				scratch.writeVarInt(this.categoryEntryCounts.get(i));
+				scratch.writeInt(this.categoryDirectoryOffsets.get(i));
+			}
+
+			scratch.writeInt(footerOffset);
+			write(scratch);
+		}
+		finally
+		{
+			this.stream.close();
+		}
+	}
+
+	/**
+	 * Closes the file without writing the footer, used when writing failed part way through.
+	 */
+	void abort()
+	{
+		if (this.stream != null)
+		{
+			try
+			{
+				this.stream.close();
+			}
+			catch (IOException e)
+			{
+				// ignore, the file is about to be deleted
+			}
+		}
+	}
+
+	private void flushBlock() throws IOException
+	{
+		if (this.pendingEntries.isEmpty())
+		{
+			return;
+		}
+
+		this.blockOffsets.add(this.offset);
+
+		scratch.reset();
+		scratch.writeVarInt(this.pendingEntries.size());
+		write(scratch);
+
+		for (byte[] entry : this.pendingEntries)
+		{
+			this.stream.write(entry);
+			this.offset += entry.length;
+		}
+
+		this.pendingEntries.clear();
+	}
+
+	private void writeDirectory(List<Integer> offsets, List<String> firstKeys) throws IOException
+	{
+		scratch.reset();
+		scratch.writeVarInt(offsets.size());
+
+		for (int i = 0; i < offsets.size(); i++)
+		{
+			scratch.writeInt(offsets.get(i));
+			scratch.writeString(firstKeys.get(i));
+		}
+
+		write(scratch);
+	}
+
+	private void writeKey(ByteArray out, String previous, String key)
+	{
+		int shared = 0;
+
+		if (previous != null)
+		{
+			int max = Math.min(previous.length(), key.length());
+
+			while (shared < max && previous.charAt(shared) == key.charAt(shared))
+			{
+				shared++;
+			}
+		}
+
+		out.writeVarInt(shared);
+		out.writeVarInt(key.length() - shared);
+
+		for (int i = shared; i < key.length(); i++)
+		{
+			out.writeVarInt(key.charAt(i));
+		}
+	}
+
+	private void writeRawString(String value) throws IOException
+	{
+		scratch.reset();
+		scratch.writeString(value);
+		write(scratch);
+	}
+
+	private void write(ByteArray bytes) throws IOException
+	{
+		bytes.writeTo(this.stream);
+		this.offset += bytes.size();
+	}
+
+	/**
+	 * A growable byte buffer with varint helpers. Avoids the synchronization of ByteArrayOutputStream.
+	 */
+	private static class ByteArray
+	{
+		private byte[] bytes = new byte[256];
+		private int size;
+
+		void reset()
+		{
+			this.size = 0;
+		}
+
+		int size()
+		{
+			return this.size;
+		}
+
+		void writeByte(int b)
+		{
+			if (this.size == this.bytes.length)
+			{
+				byte[] grown = new byte[this.bytes.length << 1];
+				System.arraycopy(this.bytes, 0, grown, 0, this.size);
+				this.bytes = grown;
+			}
+
+			this.bytes[this.size++] = (byte) b;
+		}
+
+		void writeVarInt(int value)
+		{
+			while ((value & ~0x7F) != 0)
+			{
+				writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			writeByte(value);
+		}
+
+		void writeInt(int value)
+		{
+			writeByte(value >>> 24);
+			writeByte(value >>> 16);
+			writeByte(value >>> 8);
+			writeByte(value);
+		}
+
+		void writeString(String value)
+		{
+			writeVarInt(value.length());
+
+			for (int i = 0; i < value.length(); i++)
+			{
+				writeVarInt(value.charAt(i));
+			}
+		}
+
+		void write(ByteArray other)
+		{
+			for (int i = 0; i < other.size; i++)
+			{
+				writeByte(other.bytes[i]);
+			}
+		}
+
+		byte[] toByteArray()
+		{
+			byte[] copy = new byte[this.size];
+			System.arraycopy(this.bytes, 0, copy, 0, this.size);
+			return copy;
+		}
+
+		void writeTo(OutputStream out) throws IOException
+		{
+			out.write(this.bytes, 0, this.size);
+		}
+	}
+}
@@ -7,29 +7,44 @@
  */
 package com.aptana.internal.index.core;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import com.aptana.index.core.Index;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
+import com.aptana.internal.index.core.PatternCache.WordMatcher;
 
+/**
+ * The documents added, changed or removed since the disk index was last merged. Readers may query a memory index while
+ * a writer adds to it, so every table is a concurrent one; a reader sees each entry either before or after it was
+ * added. Writers are expected to be serialized by the owning index.
+ */
 public class MemoryIndex
 {
 	private static final int MERGE_THRESHOLD = 100;
-	private HashMap<String, Map<String, Set<String>>> documentsToTable;
+
+	/**
+	 * Marks a removed document. Concurrent maps can't hold null values.
+	 */
+	private static final Map<String, Set<String>> REMOVED = new HashMap<String, Set<String>>(0);
+
+	private ConcurrentMap<String, Map<String, Set<String>>> documentsToTable;
 
 	/**
 	 * MemoryIndex
 	 */
 	public MemoryIndex()
 	{
-		documentsToTable = new HashMap<String, Map<String, Set<String>>>();
+		documentsToTable = new ConcurrentHashMap<String, Map<String, Set<String>>>();
 	}
 
 	/**
@@ -47,14 +62,14 @@ public class MemoryIndex
 		{
 			if (substring == null)
 			{ // add all new/changed documents
-				if (entry.getValue() != null)
+				if (entry.getValue() != REMOVED)
 				{
 					results.add(entry.getKey());
 				}
 			}
 			else
 			{
-				if (entry.getValue() != null && (entry.getKey()).startsWith(substring, 0))
+				if (entry.getValue() != REMOVED && (entry.getKey()).startsWith(substring, 0))
 				{
 					results.add(entry.getKey());
 				}
@@ -75,9 +90,9 @@ public class MemoryIndex
 	{
 		Map<String, Set<String>> categoriesToWords = documentsToTable.get(filePath);
 
-		if (categoriesToWords == null)
+		if (categoriesToWords == null || categoriesToWords == REMOVED)
 		{
-			categoriesToWords = new HashMap<String, Set<String>>();
+			categoriesToWords = new ConcurrentHashMap<String, Set<String>>();
 			documentsToTable.put(filePath, categoriesToWords);
 		}
 
@@ -85,7 +100,7 @@ public class MemoryIndex
 
 		if (words == null)
 		{
-			words = new HashSet<String>();
+			words = new ConcurrentSet();
 			categoriesToWords.put(category, words);
 		}
 
@@ -99,21 +114,24 @@ public class MemoryIndex
 	 * @param key
 	 * @param matchRules
 	 * @param results
+	 * @param patterns
 	 * @return
 	 */
 	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRules,
-			Map<String, QueryResult> results)
+			Map<String, QueryResult> results, PatternCache patterns)
 	{
 		if (results == null)
 		{
 			results = new HashMap<String, QueryResult>();
 		}
 
+		WordMatcher matcher = patterns.getMatcher(key, matchRules);
+
 		for (Map.Entry<String, Map<String, Set<String>>> entry : documentsToTable.entrySet())
 		{
 			Map<String, Set<String>> categoriesToWords = entry.getValue();
 
-			if (categoriesToWords == null)
+			if (categoriesToWords == REMOVED)
 			{
 				continue;
 			}
@@ -147,7 +165,7 @@ public class MemoryIndex
 					// Otherwise we need to check each word individually
 					for (String word : words)
 					{
-						if (Index.isMatch(key, word, matchRules))
+						if (matcher.matches(word))
 						{
 							QueryResult result = results.get(word);
 
@@ -178,10 +196,7 @@ public class MemoryIndex
 
 		for (Map<String, Set<String>> value : documentsToTable.values())
 		{
-			if (value != null)
-			{
-				categories.addAll(value.keySet());
-			}
+			categories.addAll(value.keySet());
 		}
 
 		return new ArrayList<String>(categories);
@@ -195,17 +210,19 @@ public class MemoryIndex
 	 */
 	Map<String, Set<String>> getCategoriesForDocument(String docname)
 	{
-		return documentsToTable.get(docname);
+		Map<String, Set<String>> table = documentsToTable.get(docname);
+		return (table == REMOVED) ? null : table;
 	}
 
 	/**
-	 * getDocumentsToReferences
+	 * Returns a read-only view of the changed documents, mapping each one to its category table or to null if the
+	 * document was removed.
 	 * 
 	 * @return
 	 */
 	Map<String, Map<String, Set<String>>> getDocumentsToReferences()
 	{
-		return Collections.unmodifiableMap(documentsToTable);
+		return new DocumentsView();
 	}
 
 	/**
@@ -226,7 +243,20 @@ public class MemoryIndex
 	 */
 	public boolean hasDocument(String documentName)
 	{
-		return documentsToTable.get(documentName) != null;
+		Map<String, Set<String>> table = documentsToTable.get(documentName);
+		return table != null && table != REMOVED;
+	}
+
+	/**
+	 * Returns true if the document has been added, changed or removed in this index, and so hides whatever an older
+	 * index holds for it.
+	 * 
+	 * @param documentName
+	 * @return
+	 */
+	public boolean isChanged(String documentName)
+	{
+		return documentsToTable.containsKey(documentName);
 	}
 
 	/**
@@ -246,7 +276,7 @@ public class MemoryIndex
 	 */
 	public void remove(String documentName)
 	{
-		this.documentsToTable.put(documentName, null);
+		this.documentsToTable.put(documentName, REMOVED);
 	}
 
 	/**
@@ -258,7 +288,7 @@ public class MemoryIndex
 	{
 		for (Map<String, Set<String>> categoriesToWords : documentsToTable.values())
 		{
-			if (categoriesToWords != null)
+			if (categoriesToWords != REMOVED)
 			{
 				for (String category : categoryNames)
 				{
@@ -277,4 +307,138 @@ public class MemoryIndex
 	{
 		return numberOfChanges() >= MERGE_THRESHOLD;
 	}
+
+	/**
+	 * A set safe for iteration while another thread adds to it.
+	 */
+	private static class ConcurrentSet extends AbstractSet<String>
+	{
+		private final ConcurrentHashMap<String, Boolean> map = new ConcurrentHashMap<String, Boolean>();
+
+		@Override
+		public boolean add(String e)
+		{
+			return map.put(e, Boolean.TRUE) == null;
+		}
+
+		@Override
+		public boolean contains(Object o)
+		{
+			return map.containsKey(o);
+		}
+
+		@Override
+		public boolean remove(Object o)
+		{
+			return map.remove(o) != null;
+		}
+
+		@Override
+		public Iterator<String> iterator()
+		{
+			return map.keySet().iterator();
+		}
+
+		@Override
+		public int size()
+		{
+			return map.size();
+		}
+	}
+
+	/**
+	 * A read-only entry of {@link DocumentsView}.
+	 */
+	private static class DocumentEntry implements Map.Entry<String, Map<String, Set<String>>>
+	{
+		private final String document;
+		private final Map<String, Set<String>> table;
+
+		DocumentEntry(String document, Map<String, Set<String>> table)
+		{
+			this.document = document;
+			this.table = table;
+		}
+
+		public String getKey()
+		{
+			return document;
+		}
+
+		public Map<String, Set<String>> getValue()
+		{
+			return table;
+		}
+
+		public Map<String, Set<String>> setValue(Map<String, Set<String>> value)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Presents removed documents as null values, the way the disk indexes expect them.
+	 */
+	private class DocumentsView extends AbstractMap<String, Map<String, Set<String>>>
+	{
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return documentsToTable.containsKey(key);
+		}
+
+		@Override
+		public Map<String, Set<String>> get(Object key)
+		{
+			Map<String, Set<String>> table = documentsToTable.get(key);
+			return (table == REMOVED) ? null : table;
+		}
+
+		@Override
+		public int size()
+		{
+			return documentsToTable.size();
+		}
+
+		@Override
+		public Set<Map.Entry<String, Map<String, Set<String>>>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<String, Map<String, Set<String>>>>()
+			{
+				@Override
+				public Iterator<Map.Entry<String, Map<String, Set<String>>>> iterator()
+				{
+					final Iterator<Map.Entry<String, Map<String, Set<String>>>> entries = documentsToTable.entrySet()
+							.iterator();
+
+					return new Iterator<Map.Entry<String, Map<String, Set<String>>>>()
+					{
+						public boolean hasNext()
+						{
+							return entries.hasNext();
+						}
+
+						public Map.Entry<String, Map<String, Set<String>>> next()
+						{
+							Map.Entry<String, Map<String, Set<String>>> entry = entries.next();
+							Map<String, Set<String>> table = entry.getValue();
+
+							return new DocumentEntry(entry.getKey(), (table == REMOVED) ? null : table);
+						}
+
+						public void remove()
+						{
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size()
+				{
+					return documentsToTable.size();
+				}
+			};
+		}
+	}
 }
@@ -0,0 +1,93 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.osgi.framework.Bundle;
+
+import com.aptana.index.core.MetadataLoader;
+
+/**
+ * Writes the metadata snapshots that are shipped inside the bundles, see {@link MetadataLoader#writeSnapshot(File)}.
+ * Run headless with a scratch workspace:
+ *
+ * <pre>
+ * -application com.aptana.index.core.metadataSnapshots -data &lt;workspace&gt; -output &lt;bundles directory&gt;
+ *     -loader &lt;bundle id&gt;/&lt;loader class&gt; ...
+ * </pre>
+ *
+ * Each snapshot is written into the sources of the bundle that defines the loader, below the output directory, to be
+ * committed with the metadata it was built from. <code>mvn verify -DskipTests -Pmetadata-snapshots</code> runs it
+ * from releng/com.aptana.studio.metadata.snapshots. The tests of each bundle fail while its snapshot is out of date,
+ * see {@link MetadataLoader#hasOutOfDateSnapshot()}.
+ */
+public class MetadataSnapshotApplication implements IApplication
+{
+	private static final String OUTPUT_ARG = "-output"; //$NON-NLS-1$
+	private static final String LOADER_ARG = "-loader"; //$NON-NLS-1$
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.equinox.app.IApplication#start(org.eclipse.equinox.app.IApplicationContext)
+	 */
+	public Object start(IApplicationContext context) throws Exception
+	{
+		String[] args = Platform.getApplicationArgs();
+		File output = null;
+		List<String> loaders = new ArrayList<String>();
+
+		for (int i = 0; i < args.length - 1; i++)
+		{
+			if (OUTPUT_ARG.equals(args[i]))
+			{
+				output = new File(args[++i]);
+			}
+			else if (LOADER_ARG.equals(args[i]))
+			{
+				loaders.add(args[++i]);
+			}
+		}
+		if (output == null || loaders.isEmpty())
+		{
+			System.err.println("Usage: " + OUTPUT_ARG + " <bundles directory> " + LOADER_ARG //$NON-NLS-1$ //$NON-NLS-2$
+					+ " <bundle id>/<loader class> ..."); //$NON-NLS-1$
+			return Integer.valueOf(1);
+		}
+
+		for (String loader : loaders)
+		{
+			int index = loader.indexOf('/');
+			String bundleId = loader.substring(0, index);
+			Bundle bundle = Platform.getBundle(bundleId);
+			if (bundle == null)
+			{
+				throw new IllegalArgumentException("Unknown bundle " + bundleId); //$NON-NLS-1$
+			}
+			MetadataLoader<?> instance = (MetadataLoader<?>) bundle.loadClass(loader.substring(index + 1))
+					.newInstance();
+			File file = instance.writeSnapshot(new File(output, bundleId));
+			System.out.println("Wrote " + file); //$NON-NLS-1$
+		}
+		return IApplication.EXIT_OK;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.equinox.app.IApplication#stop()
+	 */
+	public void stop()
+	{
+		// nothing to do
+	}
+}
@@ -0,0 +1,512 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.core.runtime.Platform;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+import com.aptana.core.build.IProblem.Severity;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.IDebugScopes;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseError;
+
+/**
+ * Keeps parse results on disk, keyed by content type and a digest of the parsed source, so files that haven't changed
+ * since the last session don't need to go through their parser again. Each entry holds the parse errors and the
+ * serialized AST, deflated.
+ * <p>
+ * Every class in a stored AST is tagged with the symbolic name and version of the bundle it was loaded from. An entry
+ * is only restored while all of those bundles are still installed at the same version, which both locates the node
+ * classes of other plugins and drops entries written by older parsers. Once the entries grow past the maximum size,
+ * the least recently used ones are deleted.
+ * </p>
+ * Safe for use by concurrent builds.
+ */
+public class ParseCache
+{
+	/**
+	 * Increment whenever the layout of an entry changes
+	 */
+	private static final int VERSION = 1;
+
+	private static final String ENTRY_EXTENSION = ".ast"; //$NON-NLS-1$
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	/**
+	 * Eviction deletes entries until the cache is back down to this fraction of its maximum size, so a full cache isn't
+	 * scanned again on the very next write.
+	 */
+	private static final double EVICTION_TARGET = 0.75;
+
+	/**
+	 * Writes the bundle of each class ahead of its descriptor.
+	 */
+	private static class BundleTaggingOutputStream extends ObjectOutputStream
+	{
+		BundleTaggingOutputStream(OutputStream out) throws IOException
+		{
+			super(out);
+		}
+
+		@Override
+		protected void annotateClass(Class<?> cl) throws IOException
+		{
+			Bundle bundle = FrameworkUtil.getBundle(cl);
+			if (bundle == null)
+			{
+				// system classes
+				writeUTF(StringUtil.EMPTY);
+			}
+			else
+			{
+				writeUTF(bundle.getSymbolicName());
+				writeUTF(bundle.getVersion().toString());
+			}
+		}
+	}
+
+	/**
+	 * Loads each class from the bundle it was tagged with, as long as that bundle still has the same version.
+	 */
+	private static class BundleResolvingInputStream extends ObjectInputStream
+	{
+		BundleResolvingInputStream(InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+		{
+			String symbolicName = readUTF();
+			if (symbolicName.length() == 0)
+			{
+				return super.resolveClass(desc);
+			}
+			String version = readUTF();
+			Bundle bundle = Platform.getBundle(symbolicName);
+			if (bundle == null || !version.equals(bundle.getVersion().toString()))
+			{
+				throw new InvalidClassException(desc.getName(), MessageFormat.format(
+						"Written by {0} {1}", symbolicName, version)); //$NON-NLS-1$
+			}
+			return loadClass(bundle, desc.getName());
+		}
+
+		private static Class<?> loadClass(Bundle bundle, String name) throws ClassNotFoundException
+		{
+			int dimensions = 0;
+			while (name.charAt(dimensions) == '[')
+			{
+				dimensions++;
+			}
+			if (dimensions == 0)
+			{
+				return bundle.loadClass(name);
+			}
+			// "[[Lcom.aptana.parsing.ast.IParseNode;", arrays of primitives are never tagged with a bundle
+			Class<?> componentType = bundle.loadClass(name.substring(dimensions + 1, name.length() - 1));
+			return Array.newInstance(componentType, new int[dimensions]).getClass();
+		}
+	}
+
+	private final File directory;
+	private final long maxSize;
+
+	/**
+	 * Total size of the entries, -1 until the directory has been scanned. Access should be synchronized on this.
+	 */
+	private long size = -1;
+
+	/**
+	 * ParseCache
+	 *
+	 * @param directory
+	 *            the directory holding the entries
+	 * @param maxSize
+	 *            the number of bytes the entries may take up before the least recently used ones are deleted
+	 */
+	public ParseCache(File directory, long maxSize)
+	{
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Computes the key for a source of the given content type.
+	 *
+	 * @param contentTypeId
+	 * @param source
+	 * @return
+	 */
+	public String getKey(String contentTypeId, String source)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			digest.update(contentTypeId.getBytes(IOUtil.UTF_8));
+			digest.update((byte) 0);
+			digest.update(source.getBytes(IOUtil.UTF_8));
+			return StringUtil.pad(new BigInteger(1, digest.digest()).toString(16), 40, '0');
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// every Java platform is required to provide SHA-1 and UTF-8
+			throw new IllegalStateException(e);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Restores the result stored for a key.
+	 *
+	 * @param key
+	 *            a key computed by {@link #getKey(String, String)}
+	 * @return the result, or null if there is no usable entry for the key
+	 */
+	public ParseResult get(String key)
+	{
+		File file = getEntry(key);
+		if (!file.isFile())
+		{
+			return null;
+		}
+
+		ObjectInputStream in = null;
+		try
+		{
+			in = new BundleResolvingInputStream(new InflaterInputStream(new BufferedInputStream(new FileInputStream(
+					file))));
+			if (in.readInt() != VERSION)
+			{
+				throw new InvalidClassException(MessageFormat.format("Unknown version of {0}", file)); //$NON-NLS-1$
+			}
+			int errorCount = in.readInt();
+			List<IParseError> errors = new ArrayList<IParseError>(errorCount);
+			for (int i = 0; i < errorCount; i++)
+			{
+				errors.add(readError(in));
+			}
+			IParseRootNode root = (IParseRootNode) in.readObject();
+
+			// bump the entry, eviction goes by modification time
+			file.setLastModified(System.currentTimeMillis());
+			return new ParseResult(root, errors);
+		}
+		catch (FileNotFoundException e)
+		{
+			// evicted in the meantime
+			return null;
+		}
+		catch (Exception e)
+		{
+			// Stale classes, or a corrupt file. Either way the entry can't be used again.
+			IdeLog.logInfo(IndexPlugin.getDefault(),
+					MessageFormat.format("Dropping unusable parse cache entry {0}", file), e, IDebugScopes.INDEXER); //$NON-NLS-1$
+		}
+		catch (StackOverflowError e)
+		{
+			IdeLog.logInfo(IndexPlugin.getDefault(),
+					MessageFormat.format("Dropping parse cache entry {0} with too deep an AST", file), //$NON-NLS-1$
+					IDebugScopes.INDEXER);
+		}
+		finally
+		{
+			close(in);
+		}
+		delete(file);
+		return null;
+	}
+
+	/**
+	 * Stores a result under a key. Results without an AST, or with nodes that aren't serializable, aren't stored.
+	 *
+	 * @param key
+	 *            a key computed by {@link #getKey(String, String)}
+	 * @param result
+	 */
+	public void put(String key, ParseResult result)
+	{
+		IParseRootNode root = result.getRootNode();
+		if (root == null)
+		{
+			// i.e. no parser was available, which may not be the case next session
+			return;
+		}
+		File file = getEntry(key);
+		if (file.isFile())
+		{
+			// same content type and source, so it holds the same result
+			return;
+		}
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			return;
+		}
+
+		File tempFile = new File(directory, key + Thread.currentThread().getId() + TEMP_EXTENSION);
+		ObjectOutputStream out = null;
+		boolean written = false;
+		try
+		{
+			out = new BundleTaggingOutputStream(new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(
+					tempFile))));
+			out.writeInt(VERSION);
+			List<IParseError> errors = result.getErrors();
+			out.writeInt(errors.size());
+			for (IParseError error : errors)
+			{
+				writeError(out, error);
+			}
+			out.writeObject(root);
+			out.close();
+			out = null;
+			written = tempFile.renameTo(file);
+		}
+		catch (IOException e)
+		{
+			// NotSerializableException for trees holding anything besides nodes, symbols and strings
+			IdeLog.logInfo(IndexPlugin.getDefault(),
+					MessageFormat.format("Unable to cache AST of {0}", root.getLanguage()), e, IDebugScopes.INDEXER); //$NON-NLS-1$
+		}
+		catch (StackOverflowError e)
+		{
+			IdeLog.logInfo(IndexPlugin.getDefault(),
+					MessageFormat.format("AST of {0} is too deep to cache", root.getLanguage()), //$NON-NLS-1$
+					IDebugScopes.INDEXER);
+		}
+		finally
+		{
+			close(out);
+			if (!written)
+			{
+				delete(tempFile);
+			}
+		}
+
+		if (written)
+		{
+			added(file.length());
+		}
+	}
+
+	/**
+	 * Deletes every entry.
+	 */
+	public synchronized void clear()
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		size = 0;
+	}
+
+	private File getEntry(String key)
+	{
+		return new File(directory, key + ENTRY_EXTENSION);
+	}
+
+	private synchronized void added(long length)
+	{
+		if (size == -1)
+		{
+			// the first write of the session, and it's already included
+			size = totalSize(listEntries());
+		}
+		else
+		{
+			size += length;
+		}
+		if (size > maxSize)
+		{
+			evict();
+		}
+	}
+
+	/**
+	 * Deletes the least recently used entries until the cache is back under its target size.
+	 */
+	private void evict()
+	{
+		File[] entries = listEntries();
+		final long[] lastModified = new long[entries.length];
+		Integer[] order = new Integer[entries.length];
+		for (int i = 0; i < entries.length; i++)
+		{
+			lastModified[i] = entries[i].lastModified();
+			order[i] = i;
+		}
+		// take the times once, other threads keep bumping entries while we sort
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer o1, Integer o2)
+			{
+				long t1 = lastModified[o1];
+				long t2 = lastModified[o2];
+				return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+			}
+		});
+
+		size = totalSize(entries);
+		long target = (long) (maxSize * EVICTION_TARGET);
+		for (int i = 0; i < order.length && size > target; i++)
+		{
+			File entry = entries[order[i]];
+			long length = entry.length();
+			if (entry.delete())
+			{
+				size -= length;
+			}
+		}
+	}
+
+	private File[] listEntries()
+	{
+		File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return new File[0];
+		}
+		List<File> entries = new ArrayList<File>(files.length);
+		for (File file : files)
+		{
+			if (file.getName().endsWith(ENTRY_EXTENSION))
+			{
+				entries.add(file);
+			}
+		}
+		return entries.toArray(new File[entries.size()]);
+	}
+
+	private static long totalSize(File[] entries)
+	{
+		long total = 0;
+		for (File entry : entries)
+		{
+			total += entry.length();
+		}
+		return total;
+	}
+
+	private static void writeError(ObjectOutputStream out, IParseError error) throws IOException
+	{
+		writeString(out, error.getLangauge());
+		out.writeInt(error.getOffset());
+		out.writeInt(error.getLength());
+		out.writeInt(error.getLineNumber());
+		out.writeInt(error.getSeverity().intValue());
+		writeString(out, error.getMessage());
+	}
+
+	private static IParseError readError(ObjectInputStream in) throws IOException
+	{
+		String language = readString(in);
+		int offset = in.readInt();
+		int length = in.readInt();
+		int lineNumber = in.readInt();
+		Severity severity = Severity.create(in.readInt());
+		String message = readString(in);
+
+		ParseError error = new ParseError(language, offset, length, message, severity);
+		error.setLineNumber(lineNumber);
+		return error;
+	}
+
+	private static void writeString(ObjectOutputStream out, String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if (value != null)
+		{
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(ObjectInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void close(InputStream in)
+	{
+		if (in != null)
+		{
+			try
+			{
+				in.close();
+			}
+			catch (IOException e) // $codepro.audit.disable emptyCatchClause
+			{
+				// ignore
+			}
+		}
+	}
+
+	private static void close(OutputStream out)
+	{
+		if (out != null)
+		{
+			try
+			{
+				out.close();
+			}
+			catch (IOException e) // $codepro.audit.disable emptyCatchClause
+			{
+				// ignore
+			}
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file.exists() && !file.delete())
+		{
+			file.deleteOnExit();
+		}
+	}
+}
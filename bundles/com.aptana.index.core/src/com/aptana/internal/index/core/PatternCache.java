@@ -0,0 +1,327 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.aptana.core.util.BoundedConcurrentCache;
+import com.aptana.index.core.SearchPattern;
+
+/**
+ * Creates the matchers used to test index words against query keys, keeping the regular expressions compiled for
+ * pattern and regex queries in a bounded cache. Content assist tends to repeat the same handful of patterns, so a small
+ * cache kept across queries saves recompiling them for every query. Lookups don't lock, so concurrent queries don't
+ * wait on each other; two of them may compile the same pattern once in a while.
+ */
+public class PatternCache
+{
+	private final BoundedConcurrentCache<String, Pattern> patterns;
+
+	/**
+	 * PatternCache
+	 * 
+	 * @param maxSize
+	 *            the number of compiled patterns to keep
+	 */
+	public PatternCache(int maxSize)
+	{
+		this.patterns = new BoundedConcurrentCache<String, Pattern>(maxSize);
+	}
+
+	/**
+	 * appendAsRegEx
+	 * 
+	 * @param pattern
+	 * @param buffer
+	 * @return
+	 */
+	private static StringBuffer appendAsRegEx(String pattern, StringBuffer buffer)
+	{
+		boolean isEscaped = false;
+
+		for (int i = 0; i < pattern.length(); i++)
+		{
+			char c = pattern.charAt(i);
+
+			switch (c)
+			{
+			// the backslash
+				case '\\':
+					// the backslash is escape char in string matcher
+					if (!isEscaped)
+					{
+						isEscaped = true;
+					}
+					else
+					{
+						buffer.append("\\\\"); //$NON-NLS-1$
+						isEscaped = false;
+					}
+					break;
+
+				// characters that need to be escaped in the regex.
+				case '(':
+				case ')':
+				case '{':
+				case '}':
+				case '.':
+				case '[':
+				case ']':
+				case '$':
+				case '^':
+				case '+':
+				case '|':
+					if (isEscaped)
+					{
+						buffer.append("\\\\"); //$NON-NLS-1$
+						isEscaped = false;
+					}
+					buffer.append('\\');
+					buffer.append(c);
+					break;
+
+				case '?':
+					if (!isEscaped)
+					{
+						buffer.append('.');
+					}
+					else
+					{
+						buffer.append('\\');
+						buffer.append(c);
+						isEscaped = false;
+					}
+					break;
+
+				case '*':
+					if (!isEscaped)
+					{
+						buffer.append(".*"); //$NON-NLS-1$
+					}
+					else
+					{
+						buffer.append('\\');
+						buffer.append(c);
+						isEscaped = false;
+					}
+					break;
+
+				default:
+					if (isEscaped)
+					{
+						buffer.append("\\\\"); //$NON-NLS-1$
+						isEscaped = false;
+					}
+					buffer.append(c);
+					break;
+			}
+		}
+
+		if (isEscaped)
+		{
+			buffer.append("\\\\"); //$NON-NLS-1$
+			isEscaped = false;
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * isWordChar
+	 * 
+	 * @param c
+	 * @return
+	 */
+	private static boolean isWordChar(char c)
+	{
+		return Character.isLetterOrDigit(c);
+	}
+
+	/**
+	 * Matches words against a single query key. Resolved once per query so the cache isn't consulted for every word
+	 * that is scanned.
+	 */
+	public static class WordMatcher
+	{
+		private final String key;
+		private final int matchRule;
+		private final Pattern pattern;
+
+		private WordMatcher(String key, int matchRule, Pattern pattern)
+		{
+			this.key = key;
+			this.matchRule = matchRule;
+			this.pattern = pattern;
+		}
+
+		/**
+		 * matches
+		 * 
+		 * @param word
+		 * @return
+		 */
+		public boolean matches(String word)
+		{
+			if (key == null)
+			{
+				return true;
+			}
+
+			int patternLength = key.length();
+			int wordLength = word.length();
+
+			if (patternLength == 0)
+			{
+				return matchRule != SearchPattern.EXACT_MATCH;
+			}
+
+			switch (matchRule)
+			{
+				case SearchPattern.EXACT_MATCH:
+					return patternLength == wordLength && key.equalsIgnoreCase(word);
+
+				case SearchPattern.PREFIX_MATCH:
+					return patternLength <= wordLength && word.toLowerCase().startsWith(key.toLowerCase());
+
+				case SearchPattern.PATTERN_MATCH:
+					return pattern == null || pattern.matcher(word.toLowerCase()).find();
+
+				case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
+					return patternLength == wordLength && key.equals(word);
+
+				case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
+					return patternLength <= wordLength && word.startsWith(key);
+
+				case SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE:
+					return pattern == null || pattern.matcher(word).find();
+
+				case SearchPattern.REGEX_MATCH:
+				case SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE:
+					return pattern != null && pattern.matcher(word).find();
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a matcher for the given key and match rule, compiling (or reusing) the regular expression it needs.
+	 * 
+	 * @param key
+	 * @param matchRule
+	 * @return
+	 */
+	public WordMatcher getMatcher(String key, int matchRule)
+	{
+		Pattern pattern = null;
+
+		if (key != null && key.length() > 0)
+		{
+			switch (matchRule)
+			{
+				case SearchPattern.PATTERN_MATCH:
+					pattern = getWildcardPattern(key.toLowerCase());
+					break;
+
+				case SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE:
+					pattern = getWildcardPattern(key);
+					break;
+
+				case SearchPattern.REGEX_MATCH:
+					pattern = getRegexPattern(key, false);
+					break;
+
+				case SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE:
+					pattern = getRegexPattern(key, true);
+					break;
+			}
+		}
+
+		return new WordMatcher(key, matchRule, pattern);
+	}
+
+	/**
+	 * Returns the regex for a wildcard pattern, or null if the pattern matches everything.
+	 * 
+	 * @param pattern
+	 * @return
+	 */
+	private Pattern getWildcardPattern(String pattern)
+	{
+		if (pattern.equals("*")) //$NON-NLS-1$
+		{
+			return null;
+		}
+
+		// pattern and regex keys share the cache, so tag them by kind
+		String cacheKey = 'p' + pattern;
+		Pattern p = this.patterns.get(cacheKey);
+
+		if (p == null)
+		{
+			int len = pattern.length();
+			StringBuffer buffer = new StringBuffer(len + 10);
+
+			if (len > 0 && isWordChar(pattern.charAt(0)))
+			{
+				buffer.append("\\b"); //$NON-NLS-1$
+			}
+
+			appendAsRegEx(pattern, buffer);
+
+			if (len > 0 && isWordChar(pattern.charAt(len - 1)))
+			{
+				buffer.append("\\b"); //$NON-NLS-1$
+			}
+
+			p = Pattern.compile(buffer.toString());
+			this.patterns.put(cacheKey, p);
+		}
+
+		return p;
+	}
+
+	/**
+	 * Returns the compiled regex, or null if it isn't valid.
+	 * 
+	 * @param regex
+	 * @param caseSensitive
+	 * @return
+	 */
+	private Pattern getRegexPattern(String regex, boolean caseSensitive)
+	{
+		String cacheKey = (caseSensitive ? 'R' : 'r') + regex;
+		Pattern pattern = this.patterns.get(cacheKey);
+
+		if (pattern == null)
+		{
+			try
+			{
+				pattern = (caseSensitive) ? Pattern.compile(regex) : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+				this.patterns.put(cacheKey, pattern);
+			}
+			catch (PatternSyntaxException e)
+			{
+				// never matches
+			}
+		}
+
+		return pattern;
+	}
+
+	/**
+	 * Returns the number of compiled patterns currently cached.
+	 * 
+	 * @return
+	 */
+	public int size()
+	{
+		return this.patterns.size();
+	}
+}
@@ -12,10 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
@@ -28,6 +25,7 @@ import com.aptana.core.IFilter;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.Index;
+import com.aptana.index.core.IndexFederation;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
 import com.aptana.index.core.QueryResult;
@@ -39,6 +37,7 @@ import com.aptana.js.core.model.FunctionElement;
 import com.aptana.js.core.model.PropertyElement;
 import com.aptana.js.core.model.TypeElement;
 import com.aptana.js.internal.core.index.JSIndexReader;
+import com.aptana.js.internal.core.index.JSTypeGraph;
 
 /**
  * This class is intended to silently query the types/functions/properties/events for a given project. It uses the
@@ -68,7 +67,7 @@ public class JSIndexQueryHelper
 	/**
 	 * The in-order list of indices to query.
 	 */
-	private List<Index> indices;
+	private IndexFederation indices;
 
 	/**
 	 * The project we're operating on. This may be null.
@@ -101,13 +100,7 @@ public class JSIndexQueryHelper
 
 	private JSIndexQueryHelper(Index... indices)
 	{
-		this.indices = CollectionsUtil.filter(Arrays.asList(indices), new IFilter<Index>()
-		{
-			public boolean include(Index item)
-			{
-				return item != null;
-			}
-		});
+		this.indices = new IndexFederation(indices);
 		this._reader = new JSIndexReader();
 	}
 
@@ -139,6 +132,14 @@ public class JSIndexQueryHelper
 		return BuildPathManager.getInstance();
 	}
 
+	/**
+	 * Builds the key the federation caches a query's results under.
+	 */
+	private static List<Object> key(Object... parts)
+	{
+		return Arrays.asList(parts);
+	}
+
 	/**
 	 * Attempts to get a specific member off the global type. Attempts to determine the correct global type to query
 	 * based on the project and filename passed in (Global or Window)
@@ -165,12 +166,7 @@ public class JSIndexQueryHelper
 		for (String type : types)
 		{
 			// TODO Search all types at once
-			for (Index index : indices)
-			{
-				// FIXME Search both categories at once?
-				properties.addAll(_reader.getFunctions(index, type, memberName));
-				properties.addAll(_reader.getProperties(index, type, memberName));
-			}
+			properties.addAll(getTypeMembers(type, memberName));
 		}
 
 		return properties;
@@ -203,61 +199,52 @@ public class JSIndexQueryHelper
 	 * @param includeMembers
 	 * @return
 	 */
-	public Collection<TypeElement> getTypes(String typeName, boolean includeMembers)
+	public Collection<TypeElement> getTypes(final String typeName, final boolean includeMembers)
 	{
-		ArrayList<TypeElement> types = new ArrayList<TypeElement>();
-		for (Index index : indices)
-		{
-			types.addAll(_reader.getType(index, typeName, includeMembers));
-		}
-		types.trimToSize();
-		return types;
+		return indices.query(key("types", typeName, includeMembers), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<TypeElement>()
+				{
+					public List<TypeElement> query(Index index)
+					{
+						return _reader.getType(index, typeName, includeMembers);
+					}
+				});
 	}
 
 	/**
-	 * getTypeAncestorNames
+	 * Returns the ancestors of the given type, breadth first. The list is the caller's to modify.
 	 * 
-	 * @param index
 	 * @param typeName
 	 * @return
 	 */
 	public List<String> getTypeAncestorNames(String typeName)
 	{
-		// Using linked hash set to preserve the order items were added to set
-		Set<String> types = new LinkedHashSet<String>();
-
-		// Using linked list since it provides a queue interface
-		Queue<String> queue = new LinkedList<String>();
-
-		// prime the queue
-		queue.offer(typeName);
-
-		while (!queue.isEmpty())
+		if (StringUtil.isEmpty(typeName))
 		{
-			String name = queue.poll();
-			Collection<TypeElement> typeList = getTypes(name, false);
-
-			if (typeList != null)
-			{
-				for (TypeElement type : typeList)
-				{
-					for (String parentType : type.getParentTypes())
-					{
-						if (!types.contains(parentType))
-						{
-							types.add(parentType);
+			return new ArrayList<String>();
+		}
+		return new ArrayList<String>(getHierarchy(typeName).getAncestors());
+	}
 
-							if (!JSTypeConstants.OBJECT_TYPE.equals(parentType))
-							{
-								queue.offer(parentType);
-							}
-						}
-					}
-				}
-			}
+	/**
+	 * Gets all the functions and properties of the given type and of its ancestors, the type's own first. The list and
+	 * its elements are shared through a cache and must not be modified; copy an element to change it.
+	 * 
+	 * @param typeName
+	 * @return
+	 */
+	public List<PropertyElement> getTypeMembersInHierarchy(String typeName)
+	{
+		if (StringUtil.isEmpty(typeName))
+		{
+			return Collections.emptyList();
 		}
+		return getHierarchy(typeName).getMembers();
+	}
 
-		return new ArrayList<String>(types);
+	private JSTypeGraph.Hierarchy getHierarchy(String typeName)
+	{
+		return JSTypeGraph.getDefault().getHierarchy(indices.getIndices(), typeName);
 	}
 
 	/**
@@ -267,15 +254,19 @@ public class JSIndexQueryHelper
 	 * @param memberName
 	 * @return
 	 */
-	public Collection<PropertyElement> getTypeMembers(String typeName, String memberName)
+	public Collection<PropertyElement> getTypeMembers(final String typeName, final String memberName)
 	{
-		ArrayList<PropertyElement> properties = new ArrayList<PropertyElement>();
-		for (Index index : indices)
-		{
-			properties.addAll(_reader.getFunctions(index, typeName, memberName));
-			properties.addAll(_reader.getProperties(index, typeName, memberName));
-		}
-		return properties;
+		return indices.query(key("members", typeName, memberName), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<PropertyElement>()
+				{
+					public List<PropertyElement> query(Index index)
+					{
+						List<PropertyElement> properties = new ArrayList<PropertyElement>();
+						properties.addAll(_reader.getFunctions(index, typeName, memberName));
+						properties.addAll(_reader.getProperties(index, typeName, memberName));
+						return properties;
+					}
+				});
 	}
 
 	/**
@@ -284,22 +275,25 @@ public class JSIndexQueryHelper
 	 * @param typeNames
 	 * @return
 	 */
-	public Collection<PropertyElement> getTypeMembers(List<String> typeNames)
+	public Collection<PropertyElement> getTypeMembers(final List<String> typeNames)
 	{
 		if (CollectionsUtil.isEmpty(typeNames))
 		{
 			return Collections.emptyList();
 		}
-		ArrayList<PropertyElement> properties = new ArrayList<PropertyElement>();
 		// FIXME Can we search both functions and properties at the same time?
 		// FIXME What about "sub-types" that aren't hung explicitly off owning type? i.e. "Global.console"
-		for (Index index : indices)
-		{
-			properties.addAll(_reader.getFunctions(index, typeNames));
-			properties.addAll(_reader.getProperties(index, typeNames));
-		}
-		properties.trimToSize();
-		return properties;
+		return indices.query(key("members", new ArrayList<String>(typeNames)), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<PropertyElement>()
+				{
+					public List<PropertyElement> query(Index index)
+					{
+						List<PropertyElement> properties = new ArrayList<PropertyElement>();
+						properties.addAll(_reader.getFunctions(index, typeNames));
+						properties.addAll(_reader.getProperties(index, typeNames));
+						return properties;
+					}
+				});
 	}
 
 	/**
@@ -309,19 +303,20 @@ public class JSIndexQueryHelper
 	 * @param typeName
 	 * @return
 	 */
-	public Collection<PropertyElement> getTypeProperties(String typeName)
+	public Collection<PropertyElement> getTypeProperties(final String typeName)
 	{
 		if (StringUtil.isEmpty(typeName))
 		{
 			return Collections.emptyList();
 		}
-		ArrayList<PropertyElement> properties = new ArrayList<PropertyElement>();
-		for (Index index : indices)
-		{
-			properties.addAll(_reader.getProperties(index, typeName));
-		}
-		properties.trimToSize();
-		return properties;
+		return indices.query(key("properties", typeName), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<PropertyElement>()
+				{
+					public List<PropertyElement> query(Index index)
+					{
+						return _reader.getProperties(index, typeName);
+					}
+				});
 	}
 
 	/**
@@ -332,15 +327,16 @@ public class JSIndexQueryHelper
 	 * @param eventName
 	 * @return
 	 */
-	public List<EventElement> getEvents(String owningType, String eventName)
+	public List<EventElement> getEvents(final String owningType, final String eventName)
 	{
-		ArrayList<EventElement> events = new ArrayList<EventElement>();
-		for (Index index : indices)
-		{
-			events.addAll(_reader.getEvents(index, owningType, eventName));
-		}
-		events.trimToSize();
-		return events;
+		return indices.query(key("events", owningType, eventName), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<EventElement>()
+				{
+					public List<EventElement> query(Index index)
+					{
+						return _reader.getEvents(index, owningType, eventName);
+					}
+				});
 	}
 
 	/**
@@ -357,71 +353,78 @@ public class JSIndexQueryHelper
 		}
 
 		// TODO Do smart lookup of the index that should contain the file?
-		for (Index index : indices)
+		final String fileURI = absolutePath.toFile().toURI().toString();
+		return indices.queryFirst(null, new IndexFederation.IIndexQuery<String>()
 		{
-			// Look up our mapping from generated type names to documents
-			List<QueryResult> results = index.query(new String[] { IJSIndexConstants.MODULE_DEFINITION }, "*", //$NON-NLS-1$
-					SearchPattern.PATTERN_MATCH);
-			final String fileURI = absolutePath.toFile().toURI().toString();
-			// Find the module declared in the file we resolved to...
-			QueryResult match = CollectionsUtil.find(results, new IFilter<QueryResult>()
+			public List<String> query(Index index)
 			{
-				public boolean include(QueryResult item)
+				// Look up our mapping from generated type names to documents
+				List<QueryResult> results = index.query(new String[] { IJSIndexConstants.MODULE_DEFINITION }, "*", //$NON-NLS-1$
+						SearchPattern.PATTERN_MATCH);
+				// Find the module declared in the file we resolved to...
+				QueryResult match = CollectionsUtil.find(results, new IFilter<QueryResult>()
 				{
-					return item.getDocuments().contains(fileURI);
+					public boolean include(QueryResult item)
+					{
+						return item.getDocuments().contains(fileURI);
+					}
+				});
+				if (match == null)
+				{
+					return Collections.emptyList();
 				}
-			});
-			if (match != null)
-			{
 				// Now use the stored generated type name...
-				return match.getWord() + DOT_EXPORTS;
+				return CollectionsUtil.newList(match.getWord() + DOT_EXPORTS);
 			}
-		}
-		return null;
+		});
 	}
 
-	public List<EventElement> getEvents(List<String> owningTypes)
+	public List<EventElement> getEvents(final List<String> owningTypes)
 	{
-		ArrayList<EventElement> events = new ArrayList<EventElement>();
-		for (Index index : indices)
-		{
-			events.addAll(_reader.getEvents(index, owningTypes));
-		}
-		events.trimToSize();
-		return events;
+		return indices.query(key("events", new ArrayList<String>(owningTypes)), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<EventElement>()
+				{
+					public List<EventElement> query(Index index)
+					{
+						return _reader.getEvents(index, owningTypes);
+					}
+				});
 	}
 
-	public List<PropertyElement> getProperties(List<String> allTypes)
+	public List<PropertyElement> getProperties(final List<String> allTypes)
 	{
-		ArrayList<PropertyElement> properties = new ArrayList<PropertyElement>();
-		for (Index index : indices)
-		{
-			properties.addAll(_reader.getProperties(index, allTypes));
-		}
-		properties.trimToSize();
-		return properties;
+		return indices.query(key("properties", new ArrayList<String>(allTypes)), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<PropertyElement>()
+				{
+					public List<PropertyElement> query(Index index)
+					{
+						return _reader.getProperties(index, allTypes);
+					}
+				});
 	}
 
-	public List<FunctionElement> getFunctions(String typeName, String propertyName)
+	public List<FunctionElement> getFunctions(final String typeName, final String propertyName)
 	{
-		ArrayList<FunctionElement> functions = new ArrayList<FunctionElement>();
-		for (Index index : indices)
-		{
-			functions.addAll(_reader.getFunctions(index, typeName, propertyName));
-		}
-		functions.trimToSize();
-		return functions;
+		return indices.query(key("functions", typeName, propertyName), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<FunctionElement>()
+				{
+					public List<FunctionElement> query(Index index)
+					{
+						return _reader.getFunctions(index, typeName, propertyName);
+					}
+				});
 	}
 
-	public List<PropertyElement> getProperties(String typeName, String propertyName)
+	public List<PropertyElement> getProperties(final String typeName, final String propertyName)
 	{
-		ArrayList<PropertyElement> properties = new ArrayList<PropertyElement>();
-		for (Index index : indices)
-		{
-			properties.addAll(_reader.getProperties(index, typeName, propertyName));
-		}
-		properties.trimToSize();
-		return properties;
+		return indices.query(key("properties", typeName, propertyName), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<PropertyElement>()
+				{
+					public List<PropertyElement> query(Index index)
+					{
+						return _reader.getProperties(index, typeName, propertyName);
+					}
+				});
 	}
 
 	/**
@@ -434,15 +437,16 @@ public class JSIndexQueryHelper
 	 *            or exact matching)
 	 * @return
 	 */
-	public Collection<String> getTypeNames(String pattern, int matchFlags)
+	public Collection<String> getTypeNames(final String pattern, final int matchFlags)
 	{
-		ArrayList<String> properties = new ArrayList<String>();
-		for (Index index : indices)
-		{
-			properties.addAll(_reader.getTypeNames(index, pattern, matchFlags));
-		}
-		properties.trimToSize();
-		return properties;
+		return indices.query(key("typeNames", pattern, matchFlags), //$NON-NLS-1$
+				new IndexFederation.IIndexQuery<String>()
+				{
+					public List<String> query(Index index)
+					{
+						return _reader.getTypeNames(index, pattern, matchFlags);
+					}
+				});
 	}
 
 	/**
@@ -454,20 +458,20 @@ public class JSIndexQueryHelper
 	 *            it's hierarchy in-order.
 	 * @param methodName
 	 *            The name of the method/function we're trying to find.
-	 * @return null if no such method found, otherwise first instance we find.
+	 * @return null if no such method found, otherwise first instance we find. It is shared through a cache and must
+	 *         not be modified.
 	 */
 	public FunctionElement findFunctionInHierarchy(String typeName, String methodName)
 	{
-		List<String> types = getTypeAncestorNames(typeName);
-		types.add(0, typeName);
-		for (String type : types)
+		if (StringUtil.isEmpty(typeName) || StringUtil.isEmpty(methodName))
+		{
+			return null;
+		}
+		for (PropertyElement member : getHierarchy(typeName).getMembers(methodName))
 		{
-			// TODO Can we search against all the types simultaneously, then order results by hierarchy and return
-			// first match? This would drop number of queries from N to 1...
-			Collection<FunctionElement> functions = getFunctions(type, methodName);
-			if (!CollectionsUtil.isEmpty(functions))
+			if (member instanceof FunctionElement)
 			{
-				return functions.iterator().next();
+				return (FunctionElement) member;
 			}
 		}
 		return null;
@@ -488,30 +492,34 @@ public class JSIndexQueryHelper
 			generatedModuleId = generatedModuleId.substring(0, generatedModuleId.length() - DOT_EXPORTS.length());
 		}
 
-		for (Index index : indices)
+		final String moduleId = generatedModuleId;
+		IPath path = indices.queryFirst(null, new IndexFederation.IIndexQuery<IPath>()
 		{
-			// Look up our mapping from generated type names to documents
-			List<QueryResult> results = index.query(new String[] { IJSIndexConstants.MODULE_DEFINITION },
-					generatedModuleId, SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE);
-			if (results != null && !results.isEmpty())
+			public List<IPath> query(Index index)
 			{
-				QueryResult match = results.get(0);
-				Set<String> docs = match.getDocuments();
-				if (docs != null && !docs.isEmpty())
+				// Look up our mapping from generated type names to documents
+				List<QueryResult> results = index.query(new String[] { IJSIndexConstants.MODULE_DEFINITION }, moduleId,
+						SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE);
+				if (results != null && !results.isEmpty())
 				{
-					String uri = docs.iterator().next();
-					String root = index.getRoot().toString();
-					if (uri.startsWith(root))
+					QueryResult match = results.get(0);
+					Set<String> docs = match.getDocuments();
+					if (docs != null && !docs.isEmpty())
 					{
-						uri = uri.substring(root.length());
+						String uri = docs.iterator().next();
+						String root = index.getRoot().toString();
+						if (uri.startsWith(root))
+						{
+							uri = uri.substring(root.length());
+						}
+						// Remove the .js extension
+						return CollectionsUtil.newList(Path.fromOSString(uri).removeFileExtension());
 					}
-					// Remove the .js extension
-					return Path.fromOSString(uri).removeFileExtension();
 				}
-
+				return Collections.emptyList();
 			}
-		}
-		return Path.EMPTY;
+		});
+		return (path == null) ? Path.EMPTY : path;
 	}
 
 }
@@ -0,0 +1,213 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.inferencing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.js.core.parsing.ast.JSFunctionNode;
+import com.aptana.js.core.parsing.ast.JSGetPropertyNode;
+import com.aptana.js.core.parsing.ast.JSIdentifierNode;
+import com.aptana.js.core.parsing.ast.JSNameValuePairNode;
+import com.aptana.js.core.parsing.ast.JSParametersNode;
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.js.core.parsing.ast.JSTreeWalker;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.lexer.IRange;
+import com.aptana.parsing.lexer.Range;
+
+/**
+ * The variable references of a JS file, hashed by name, for marking occurrences. Two references are occurrences of the
+ * same variable when they resolve to the same declaring {@link JSScope}, so a local that shadows a global, or the same
+ * name declared in two functions, are told apart. References to names nothing declares are grouped by name alone.
+ * <p>
+ * The index is built from one AST and doesn't follow later changes to it.
+ * </p>
+ */
+public class JSOccurrencesIndex
+{
+	/**
+	 * One variable reference, and the offset from which to look up the scope declaring it.
+	 */
+	private static class Reference
+	{
+		final String name;
+		final IRange range;
+		final int scopeOffset;
+
+		Reference(String name, IRange range, int scopeOffset)
+		{
+			this.name = name;
+			this.range = range;
+			this.scopeOffset = scopeOffset;
+		}
+	}
+
+	private final JSScope globals;
+	private final Map<String, List<Reference>> references;
+	/**
+	 * All references ascending by offset, and their start offsets for binary searches.
+	 */
+	private final Reference[] sorted;
+	private final int[] starts;
+
+	/**
+	 * JSOccurrencesIndex
+	 *
+	 * @param ast
+	 */
+	public JSOccurrencesIndex(JSParseRootNode ast)
+	{
+		this.globals = ast.getGlobals();
+		this.references = new HashMap<String, List<Reference>>();
+
+		final List<Reference> all = new ArrayList<Reference>();
+		ast.accept(new JSTreeWalker()
+		{
+			@Override
+			public void visit(JSIdentifierNode node)
+			{
+				if (isVariable(node))
+				{
+					String name = node.getText();
+					Reference reference = new Reference(name, new Range(node.getStartingOffset(),
+							node.getEndingOffset()), getScopeOffset(node));
+					List<Reference> named = references.get(name);
+					if (named == null)
+					{
+						named = new ArrayList<Reference>();
+						references.put(name, named);
+					}
+					named.add(reference);
+					all.add(reference);
+				}
+			}
+		});
+
+		Collections.sort(all, new Comparator<Reference>()
+		{
+			public int compare(Reference o1, Reference o2)
+			{
+				return o1.range.getStartingOffset() - o2.range.getStartingOffset();
+			}
+		});
+		this.sorted = all.toArray(new Reference[all.size()]);
+		this.starts = new int[sorted.length];
+		for (int i = 0; i < starts.length; i++)
+		{
+			starts[i] = sorted[i].range.getStartingOffset();
+		}
+	}
+
+	/**
+	 * Returns the references to the variable referenced at the given offset, in document order, or null if there is
+	 * no variable reference there. Property names, as in <code>a.name</code> or <code>{ name: 1 }</code>, are not
+	 * variables.
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public List<IRange> getOccurrences(int offset)
+	{
+		// find the last reference starting at or before the offset
+		int index = Arrays.binarySearch(starts, offset);
+		if (index < 0)
+		{
+			index = -index - 2;
+		}
+		if (index < 0 || !sorted[index].range.contains(offset))
+		{
+			return null;
+		}
+		return getOccurrences(sorted[index].name, sorted[index].scopeOffset);
+	}
+
+	/**
+	 * Returns the references to the variable with the given name as seen from code at the given offset, in document
+	 * order.
+	 *
+	 * @param name
+	 * @param offset
+	 * @return
+	 */
+	public List<IRange> getOccurrences(String name, int offset)
+	{
+		List<Reference> named = references.get(name);
+		if (named == null)
+		{
+			return new ArrayList<IRange>(0);
+		}
+
+		JSScope declaringScope = getDeclaringScope(name, offset);
+		List<IRange> result = new ArrayList<IRange>();
+		for (Reference reference : named)
+		{
+			if (getDeclaringScope(name, reference.scopeOffset) == declaringScope)
+			{
+				result.add(reference.range);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the scope declaring the name that code at the offset sees, or null for undeclared names.
+	 */
+	private JSScope getDeclaringScope(String name, int offset)
+	{
+		JSScope scope = globals.getScopeAtOffset(offset);
+		return ((scope == null) ? globals : scope).getScopeWithSymbol(name);
+	}
+
+	/**
+	 * A function's scope only covers its body, so parameters are looked up from there.
+	 */
+	private static int getScopeOffset(JSIdentifierNode node)
+	{
+		IParseNode parent = node.getParent();
+		while (parent != null && !(parent instanceof JSFunctionNode))
+		{
+			if (parent instanceof JSParametersNode)
+			{
+				IParseNode function = parent.getParent();
+				if (function instanceof JSFunctionNode)
+				{
+					return ((JSFunctionNode) function).getBody().getStartingOffset();
+				}
+				break;
+			}
+			parent = parent.getParent();
+		}
+		return node.getStartingOffset();
+	}
+
+	private static boolean isVariable(JSIdentifierNode node)
+	{
+		// anonymous functions have an empty name
+		if (StringUtil.isEmpty(node.getText()))
+		{
+			return false;
+		}
+		IParseNode parent = node.getParent();
+		if (parent instanceof JSGetPropertyNode)
+		{
+			return ((JSGetPropertyNode) parent).getProperty() != node;
+		}
+		if (parent instanceof JSNameValuePairNode)
+		{
+			return ((JSNameValuePairNode) parent).getName() != node;
+		}
+		return true;
+	}
+}
@@ -12,7 +12,10 @@ import com.aptana.js.core.parsing.ast.IJSNodeTypes;
 import com.aptana.js.core.parsing.ast.JSCommentNode;
 import com.aptana.js.core.parsing.ast.JSParseRootNode;
 import com.aptana.parsing.AbstractParser;
+import com.aptana.parsing.IIncrementalParser;
 import com.aptana.parsing.IParseState;
+import com.aptana.parsing.ParseEdit;
+import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.WorkingParseResult;
 import com.aptana.parsing.ast.IParseError;
 import com.aptana.parsing.ast.IParseNode;
@@ -29,7 +32,7 @@ import com.oracle.js.parser.TokenType;
 import com.oracle.js.parser.ir.FunctionNode;
 import com.oracle.js.parser.ir.LexicalContext;
 
-public class GraalJSParser extends AbstractParser
+public class GraalJSParser extends AbstractParser implements IIncrementalParser
 {
 
 	private static final String DEFAULT_FILENAME = "filename.js"; //$NON-NLS-1$
@@ -79,6 +82,57 @@ public class GraalJSParser extends AbstractParser
 
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IIncrementalParser#reparse(com.aptana.parsing.IParseState,
+	 * com.aptana.parsing.ast.IParseRootNode, com.aptana.parsing.ParseEdit)
+	 */
+	public synchronized ParseResult reparse(IParseState parseState, IParseRootNode previous, ParseEdit edit)
+			throws Exception
+	{
+		return new JSIncrementalReparser(this).reparse(parseState, previous, edit);
+	}
+
+	/**
+	 * Parse a function expression on its own. The fragment is parsed as a module only: the strictest goal accepts
+	 * nothing that would be rejected by the document it came from, whichever goal that document was parsed with.
+	 * 
+	 * @param source
+	 * @return The fragment's AST or null if it had any error
+	 */
+	synchronized IParseRootNode parseFragment(String source)
+	{
+		final boolean[] failed = new boolean[1];
+		ScriptEnvironment env = ScriptEnvironment.builder().es6(true).strict(false).emptyStatements(true).build();
+		ErrorManager errorManager = new ErrorManager()
+		{
+			@Override
+			public void error(final ParserException e)
+			{
+				failed[0] = true;
+			}
+		};
+		CommentCollectingParser parser = new CommentCollectingParser(env, Source.sourceFor(DEFAULT_FILENAME,
+				source), errorManager);
+		FunctionNode result = parser.parseModule(DEFAULT_FILENAME, 0, source.length());
+
+		if (result == null || failed[0])
+		{
+			return null;
+		}
+
+		JSParseRootNode ast = (JSParseRootNode) convertAST(source, result);
+		if (ast == null)
+		{
+			return null;
+		}
+
+		ast.setCommentNodes(parser.getCommentNodes());
+		ast.setLocation(0, source.length() - 1);
+
+		return ast;
+	}
+
 	private IParseError handleError(Exception e)
 	{
 		// print the stack traces to a string!
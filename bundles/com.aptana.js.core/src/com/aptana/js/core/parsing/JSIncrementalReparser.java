@@ -0,0 +1,120 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import com.aptana.js.core.parsing.ast.JSFunctionNode;
+import com.aptana.js.core.parsing.ast.JSGeneratorFunctionNode;
+import com.aptana.js.core.parsing.ast.JSNode;
+import com.aptana.parsing.IncrementalReparser;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * Reparses the innermost <code>function</code> around an edit. The function's text is wrapped in parentheses so
+ * declarations and expressions alike parse as a lone function expression, whose children are then moved into the
+ * existing function node. That keeps the node's documentation and the way it is attached to its parent.
+ */
+class JSIncrementalReparser extends IncrementalReparser
+{
+	private static final String FUNCTION = "function"; //$NON-NLS-1$
+
+	private final GraalJSParser fParser;
+
+	/**
+	 * JSIncrementalReparser
+	 *
+	 * @param parser
+	 */
+	JSIncrementalReparser(GraalJSParser parser)
+	{
+		fParser = parser;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#isReparseBoundary(com.aptana.parsing.ast.IParseNode,
+	 * java.lang.String, int, int)
+	 */
+	@Override
+	protected boolean isReparseBoundary(IParseNode node, String source, int start, int end)
+	{
+		// arrow functions may not have a body block and methods don't start with the keyword
+		Class<?> type = node.getClass();
+
+		return (type == JSFunctionNode.class || type == JSGeneratorFunctionNode.class)
+				&& source.startsWith(FUNCTION, start) && end < source.length() && source.charAt(end) == '}';
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#parseFragment(java.lang.String, int)
+	 */
+	@Override
+	protected IParseRootNode parseFragment(String source, int offset) throws Exception
+	{
+		IParseRootNode result = fParser.parseFragment('(' + source + ')');
+
+		if (result != null)
+		{
+			addOffset(result, offset - 1);
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#getReplacement(com.aptana.parsing.ast.IParseRootNode,
+	 * com.aptana.parsing.ast.IParseNode)
+	 */
+	@Override
+	protected IParseNode getReplacement(IParseRootNode fragment, IParseNode node)
+	{
+		IParseNode result = super.getReplacement(fragment, node);
+
+		// a renamed function changes what its parent declares, so leave that to a full parse
+		if (result != null
+				&& (result.getChildCount() != node.getChildCount() || !result.getFirstChild().getText()
+						.equals(node.getFirstChild().getText())))
+		{
+			result = null;
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#replace(com.aptana.parsing.ast.IParseNode,
+	 * com.aptana.parsing.ast.IParseNode)
+	 */
+	@Override
+	protected void replace(IParseNode node, IParseNode replacement)
+	{
+		JSFunctionNode function = (JSFunctionNode) node;
+
+		function.setChildren(replacement.getChildren());
+		function.setLocation(replacement.getStartingOffset(), replacement.getEndingOffset());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#resize(com.aptana.parsing.ast.IParseNode, int, int)
+	 */
+	@Override
+	protected void resize(IParseNode node, int oldEnd, int delta)
+	{
+		super.resize(node, oldEnd, delta);
+
+		if (node instanceof JSNode)
+		{
+			// closing braces, parentheses and the like of an enclosing node follow the edit
+			((JSNode) node).addSymbolOffset(oldEnd + 1, delta);
+		}
+	}
+}
@@ -49,4 +49,17 @@ public abstract class JSAbstractForNode extends JSNode
 	{
 		return this._rightParenthesis;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._leftParenthesis = moveSymbol(this._leftParenthesis, from, offset);
+		this._rightParenthesis = moveSymbol(this._rightParenthesis, from, offset);
+	}
 }
@@ -57,4 +57,17 @@ public class JSArrayNode extends JSNode
 	{
 		return this._rightBracket;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._leftBracket = moveSymbol(this._leftBracket, from, offset);
+		this._rightBracket = moveSymbol(this._rightBracket, from, offset);
+	}
 }
@@ -114,4 +114,16 @@ public class JSAssignmentNode extends JSNode
 	{
 		return this.getChild(1);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._operator = moveSymbol(this._operator, from, offset);
+	}
 }
@@ -55,4 +55,16 @@ public abstract class JSBinaryOperatorNode extends JSNode
 	{
 		return this.getChild(1); //TODO: NPE
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._operator = moveSymbol(this._operator, from, offset);
+	}
 }
@@ -56,4 +56,16 @@ public class JSCaseNode extends JSNode
 	{
 		return this.getChild(0);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._colon = moveSymbol(this._colon, from, offset);
+	}
 }
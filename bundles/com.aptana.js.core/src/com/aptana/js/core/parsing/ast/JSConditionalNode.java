@@ -91,4 +91,17 @@ public class JSConditionalNode extends JSNode
 	{
 		return this.getChild(1);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._questionMark = moveSymbol(this._questionMark, from, offset);
+		this._colon = moveSymbol(this._colon, from, offset);
+	}
 }
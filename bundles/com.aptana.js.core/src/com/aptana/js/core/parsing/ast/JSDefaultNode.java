@@ -46,4 +46,16 @@ public class JSDefaultNode extends JSNode
 	{
 		return this._colon;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._colon = moveSymbol(this._colon, from, offset);
+	}
 }
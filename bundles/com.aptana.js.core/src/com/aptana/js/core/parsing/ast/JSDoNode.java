@@ -80,4 +80,17 @@ public class JSDoNode extends JSNode
 	{
 		return this._rightParenthesis;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._leftParenthesis = moveSymbol(this._leftParenthesis, from, offset);
+		this._rightParenthesis = moveSymbol(this._rightParenthesis, from, offset);
+	}
 }
@@ -79,4 +79,16 @@ public class JSForInNode extends JSAbstractForNode
 	{
 		return this.getChild(0);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._in = moveSymbol(this._in, from, offset);
+	}
 }
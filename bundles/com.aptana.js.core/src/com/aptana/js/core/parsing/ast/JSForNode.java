@@ -111,4 +111,17 @@ public class JSForNode extends JSAbstractForNode
 	{
 		return this._semicolon2;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._semicolon1 = moveSymbol(this._semicolon1, from, offset);
+		this._semicolon2 = moveSymbol(this._semicolon2, from, offset);
+	}
 }
@@ -55,4 +55,16 @@ public class JSGetElementNode extends JSBinaryOperatorNode
 	{
 		return this._rightBracket;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._rightBracket = moveSymbol(this._rightBracket, from, offset);
+	}
 }
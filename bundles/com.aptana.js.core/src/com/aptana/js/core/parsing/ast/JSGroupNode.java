@@ -57,4 +57,17 @@ public class JSGroupNode extends JSPreUnaryOperatorNode
 	{
 		return this._rightParenthesis;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._leftParenthesis = moveSymbol(this._leftParenthesis, from, offset);
+		this._rightParenthesis = moveSymbol(this._rightParenthesis, from, offset);
+	}
 }
@@ -90,4 +90,17 @@ public class JSIfNode extends JSNode
 	{
 		return this.getChild(1);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._leftParenthesis = moveSymbol(this._leftParenthesis, from, offset);
+		this._rightParenthesis = moveSymbol(this._rightParenthesis, from, offset);
+	}
 }
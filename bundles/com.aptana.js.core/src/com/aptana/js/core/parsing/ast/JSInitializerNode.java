@@ -21,4 +21,16 @@ public class JSInitializerNode extends JSNode
 	{
 		return (JSNode) getFirstChild();
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._equals = moveSymbol(this._equals, from, offset);
+	}
 }
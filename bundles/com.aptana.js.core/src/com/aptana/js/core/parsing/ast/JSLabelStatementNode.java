@@ -77,4 +77,16 @@ public abstract class JSLabelStatementNode extends JSNode
 
 		return hash * 31 + ((_label == null) ? 0 : _label.value.hashCode());
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._label = moveSymbol(this._label, from, offset);
+	}
 }
@@ -90,4 +90,16 @@ public class JSNameValuePairNode extends JSNode
 		}
 		return null;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._colon = moveSymbol(this._colon, from, offset);
+	}
 }
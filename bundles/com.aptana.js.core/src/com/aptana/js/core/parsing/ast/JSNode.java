@@ -462,6 +462,60 @@ public class JSNode extends ParseNode
 		fHash = -1;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#setLocation(int, int)
+	 */
+	@Override
+	public void setLocation(int start, int end)
+	{
+		super.setLocation(start, end);
+
+		// a node is resized in place when one of its descendants gets reparsed, which invalidates our children's hashes
+		fHash = -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		addSymbolOffset(Integer.MIN_VALUE, offset);
+	}
+
+	/**
+	 * Move the operator and punctuation symbols held by this node that start at or after the specified offset.
+	 * Subclasses holding symbols need to override this so their symbols follow the node when it moves.
+	 *
+	 * @param from
+	 * @param offset
+	 */
+	public void addSymbolOffset(int from, int offset)
+	{
+	}
+
+	/**
+	 * Return a copy of the symbol moved by offset characters if it starts at or after from
+	 *
+	 * @param symbol
+	 * @param from
+	 * @param offset
+	 * @return
+	 */
+	protected static Symbol moveSymbol(Symbol symbol, int from, int offset)
+	{
+		if (symbol == null || symbol.getStart() < from)
+		{
+			return symbol;
+		}
+
+		return new Symbol(symbol.getId(), symbol.getStart() + offset, symbol.getEnd() + offset, symbol.value);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.parsing.ast.ParseNode#toString()
@@ -59,4 +59,17 @@ public class JSObjectNode extends JSNode
 	{
 		return this._rightBrace;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._leftBrace = moveSymbol(this._leftBrace, from, offset);
+		this._rightBrace = moveSymbol(this._rightBrace, from, offset);
+	}
 }
@@ -119,4 +119,16 @@ public class JSPreUnaryOperatorNode extends JSNode
 	{
 		return this._operator;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._operator = moveSymbol(this._operator, from, offset);
+	}
 }
@@ -28,4 +28,15 @@ public class JSSpreadElementNode extends JSNode
 		return this._ellipsis;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._ellipsis = moveSymbol(this._ellipsis, from, offset);
+	}
 }
@@ -55,4 +55,16 @@ public class JSVarNode extends JSNode
 		IParseNode parent = getParent();
 		return parent != null && parent instanceof JSExportNode;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.parsing.ast.JSNode#addSymbolOffset(int, int)
+	 */
+	@Override
+	public void addSymbolOffset(int from, int offset)
+	{
+		super.addSymbolOffset(from, offset);
+
+		this._var = moveSymbol(this._var, from, offset);
+	}
 }
@@ -8,7 +8,6 @@
 package com.aptana.js.internal.core.index;
 
 import java.io.IOException;
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -16,7 +15,6 @@ import java.util.regex.Pattern;
 
 import com.aptana.core.IMap;
 import com.aptana.core.util.CollectionsUtil;
-import com.aptana.core.util.RegexUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexReader;
@@ -29,6 +27,7 @@ import com.aptana.js.core.model.FunctionElement;
 import com.aptana.js.core.model.PropertyElement;
 import com.aptana.js.core.model.TypeElement;
 import com.aptana.js.core.model.UserAgentElement;
+import com.aptana.js.internal.core.index.JSMemberStore.Member;
 
 // TODO Combine with JSIndexQueryHelper! They're both doing the same thing, but Query helper adds the JS Core index in to calls!
 public class JSIndexReader extends IndexReader
@@ -73,9 +72,9 @@ public class JSIndexReader extends IndexReader
 	 * @param event
 	 * @return
 	 */
-	protected EventElement createEvent(QueryResult event)
+	protected EventElement createEvent(Member event)
 	{
-		return this.populateElement(new EventElement(), event, 2);
+		return this.populateElement(new EventElement(), event.getPayload(), event.getDocuments());
 	}
 
 	/**
@@ -84,9 +83,9 @@ public class JSIndexReader extends IndexReader
 	 * @param function
 	 * @return
 	 */
-	protected FunctionElement createFunction(QueryResult function)
+	protected FunctionElement createFunction(Member function)
 	{
-		return this.populateElement(new FunctionElement(), function, 2);
+		return this.populateElement(new FunctionElement(), function.getPayload(), function.getDocuments());
 	}
 
 	/**
@@ -95,9 +94,9 @@ public class JSIndexReader extends IndexReader
 	 * @param property
 	 * @return
 	 */
-	protected PropertyElement createProperty(QueryResult property)
+	protected PropertyElement createProperty(Member property)
 	{
-		return this.populateElement(new PropertyElement(), property, 2);
+		return this.populateElement(new PropertyElement(), property.getPayload(), property.getDocuments());
 	}
 
 	/**
@@ -203,18 +202,12 @@ public class JSIndexReader extends IndexReader
 	{
 		if (index != null && !CollectionsUtil.isEmpty(owningTypes))
 		{
-			// read events
-			// @formatter:off
-			List<QueryResult> events = index.query(
-				new String[] { IJSIndexConstants.EVENT },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
-			// @formatter:on
+			List<Member> events = JSMemberStore.getStore(index).getMembers(IJSIndexConstants.EVENT,
+					this.stripGenericsFromTypes(owningTypes));
 
-			return CollectionsUtil.map(events, new IMap<QueryResult, EventElement>()
+			return CollectionsUtil.map(events, new IMap<Member, EventElement>()
 			{
-				public EventElement map(QueryResult item)
+				public EventElement map(Member item)
 				{
 					return createEvent(item);
 				}
@@ -250,18 +243,12 @@ public class JSIndexReader extends IndexReader
 	{
 		if (index != null && !StringUtil.isEmpty(owningType) && !StringUtil.isEmpty(eventName))
 		{
-			// read events
-			// @formatter:off
-			List<QueryResult> events = index.query(
-				new String[] { IJSIndexConstants.EVENT },
-				this.getMemberPattern(owningType, eventName),
-				SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
-			// @formatter:on
+			List<Member> events = JSMemberStore.getStore(index).getMembers(IJSIndexConstants.EVENT,
+					stripGenericsFromType(owningType), eventName);
 
-			return CollectionsUtil.map(events, new IMap<QueryResult, EventElement>()
+			return CollectionsUtil.map(events, new IMap<Member, EventElement>()
 			{
-				public EventElement map(QueryResult item)
+				public EventElement map(Member item)
 				{
 					return createEvent(item);
 				}
@@ -283,18 +270,12 @@ public class JSIndexReader extends IndexReader
 	{
 		if (index != null && !CollectionsUtil.isEmpty(owningTypes))
 		{
-			// read functions
-			// @formatter:off
-			List<QueryResult> functions = index.query(
-				new String[] { IJSIndexConstants.FUNCTION },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
-			// @formatter:on
+			List<Member> functions = JSMemberStore.getStore(index).getMembers(IJSIndexConstants.FUNCTION,
+					this.stripGenericsFromTypes(owningTypes));
 
-			return CollectionsUtil.map(functions, new IMap<QueryResult, FunctionElement>()
+			return CollectionsUtil.map(functions, new IMap<Member, FunctionElement>()
 			{
-				public FunctionElement map(QueryResult item)
+				public FunctionElement map(Member item)
 				{
 					return createFunction(item);
 				}
@@ -330,17 +311,12 @@ public class JSIndexReader extends IndexReader
 	{
 		if (index != null && !StringUtil.isEmpty(owningType) && !StringUtil.isEmpty(propertyName))
 		{
-			// @formatter:off
-			List<QueryResult> functions = index.query(
-				new String[] { IJSIndexConstants.FUNCTION },
-				this.getMemberPattern(owningType, propertyName),
-				SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
-			// @formatter:on
+			List<Member> functions = JSMemberStore.getStore(index).getMembers(IJSIndexConstants.FUNCTION,
+					stripGenericsFromType(owningType), propertyName);
 
-			return CollectionsUtil.map(functions, new IMap<QueryResult, FunctionElement>()
+			return CollectionsUtil.map(functions, new IMap<Member, FunctionElement>()
 			{
-				public FunctionElement map(QueryResult item)
+				public FunctionElement map(Member item)
 				{
 					return createFunction(item);
 				}
@@ -351,36 +327,20 @@ public class JSIndexReader extends IndexReader
 	}
 
 	/**
-	 * getMemberPattern
+	 * Strips generics from each of the given type names, see {@link #stripGenericsFromType(String)}
 	 * 
 	 * @param typeNames
 	 * @return
 	 */
-	private String getMemberPattern(List<String> typeNames)
+	private List<String> stripGenericsFromTypes(List<String> typeNames)
 	{
-		typeNames = CollectionsUtil.map(typeNames, new IMap<String, String>()
+		return CollectionsUtil.map(typeNames, new IMap<String, String>()
 		{
 			public String map(String item)
 			{
 				return stripGenericsFromType(item);
 			}
 		});
-		String typePattern = RegexUtil.createQuotedListPattern(typeNames);
-
-		return MessageFormat.format("^{1}{0}", new Object[] { this.getDelimiter(), typePattern }); //$NON-NLS-1$
-	}
-
-	/**
-	 * getMemberPattern
-	 * 
-	 * @param typeName
-	 * @param memberName
-	 * @return
-	 */
-	private String getMemberPattern(String typeName, String memberName)
-	{
-		return MessageFormat.format(
-				"{1}{0}{2}{0}", new Object[] { this.getDelimiter(), stripGenericsFromType(typeName), memberName }); //$NON-NLS-1$
 	}
 
 	/**
@@ -389,7 +349,7 @@ public class JSIndexReader extends IndexReader
 	 * @param typeName
 	 * @return
 	 */
-	private String stripGenericsFromType(String typeName)
+	static String stripGenericsFromType(String typeName)
 	{
 		if (typeName.startsWith(JSTypeConstants.GENERIC_ARRAY_OPEN))
 		{
@@ -410,18 +370,12 @@ public class JSIndexReader extends IndexReader
 	{
 		if (index != null && !CollectionsUtil.isEmpty(owningTypes))
 		{
-			// read properties
-			// @formatter:off
-			List<QueryResult> properties = index.query(
-				new String[] { IJSIndexConstants.PROPERTY },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
-			// @formatter:on
+			List<Member> properties = JSMemberStore.getStore(index).getMembers(IJSIndexConstants.PROPERTY,
+					this.stripGenericsFromTypes(owningTypes));
 
-			return CollectionsUtil.map(properties, new IMap<QueryResult, PropertyElement>()
+			return CollectionsUtil.map(properties, new IMap<Member, PropertyElement>()
 			{
-				public PropertyElement map(QueryResult item)
+				public PropertyElement map(Member item)
 				{
 					return createProperty(item);
 				}
@@ -457,17 +411,12 @@ public class JSIndexReader extends IndexReader
 	{
 		if (index != null && !StringUtil.isEmpty(owningType) && !StringUtil.isEmpty(propertyName))
 		{
-			// @formatter:off
-			List<QueryResult> properties = index.query(
-				new String[] { IJSIndexConstants.PROPERTY },
-				this.getMemberPattern(owningType, propertyName),
-				SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE
-			);
-			// @formatter:on
+			List<Member> properties = JSMemberStore.getStore(index).getMembers(IJSIndexConstants.PROPERTY,
+					stripGenericsFromType(owningType), propertyName);
 
-			return CollectionsUtil.map(properties, new IMap<QueryResult, PropertyElement>()
+			return CollectionsUtil.map(properties, new IMap<Member, PropertyElement>()
 			{
-				public PropertyElement map(QueryResult item)
+				public PropertyElement map(Member item)
 				{
 					return createProperty(item);
 				}
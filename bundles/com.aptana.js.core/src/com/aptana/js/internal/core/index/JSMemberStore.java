@@ -0,0 +1,522 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import com.aptana.index.core.IIndexChangeListener;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+import com.aptana.js.core.index.IJSIndexConstants;
+
+/**
+ * A structured view of the member categories (properties, functions and events) of a JS index. Member keys are written
+ * as <code>owningType\0name\0json</code>; this store splits each key into its fields once and keeps the members of
+ * each category hashed by owning type and sorted by name, so member lookups are a hash lookup plus, for name prefixes,
+ * a sorted sub-map rather than a regex scan over the whole category. The JSON payload is only decoded when a caller
+ * turns a {@link Member} into a model element.
+ * <p>
+ * The store follows the changes of the index through its {@link IIndexChangeListener} events: the owning types that
+ * got entries added, or that had members in removed documents, are read again from the index the next time the store
+ * is queried, the others are carried over. It is only built from scratch the first time, after the index was reset or
+ * when too many types changed at once, and is softly referenced so it can be dropped under memory pressure.
+ * </p>
+ */
+public class JSMemberStore implements IIndexChangeListener
+{
+	private static final String[] MEMBER_CATEGORIES = new String[] { IJSIndexConstants.PROPERTY,
+			IJSIndexConstants.FUNCTION, IJSIndexConstants.EVENT };
+
+	/**
+	 * Past this many changed owning types, reading every member again is cheaper than a query per type and category.
+	 */
+	private static final int MAX_CHANGED_TYPES = 128;
+
+	private static final Map<Index, JSMemberStore> STORES = new WeakHashMap<Index, JSMemberStore>();
+
+	/**
+	 * Returns the shared store for the given index.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public static JSMemberStore getStore(Index index)
+	{
+		synchronized (STORES)
+		{
+			JSMemberStore store = STORES.get(index);
+
+			if (store == null)
+			{
+				store = new JSMemberStore(index);
+				STORES.put(index, store);
+			}
+
+			return store;
+		}
+	}
+
+	/**
+	 * A single member entry from the index. Members are shared between callers and must not be modified.
+	 */
+	public static class Member
+	{
+		private final String owningType;
+		private final String name;
+		private final String payload;
+		private final Set<String> documents;
+
+		Member(String owningType, String name, String payload, Set<String> documents)
+		{
+			this.owningType = owningType;
+			this.name = name;
+			this.payload = payload;
+			this.documents = documents;
+		}
+
+		public String getOwningType()
+		{
+			return owningType;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * The serialized JSON form of the element.
+		 *
+		 * @return
+		 */
+		public String getPayload()
+		{
+			return payload;
+		}
+
+		public Set<String> getDocuments()
+		{
+			return documents;
+		}
+	}
+
+	/**
+	 * The members of an index at one point in time, keyed by category, then owning type, then name. Snapshots are not
+	 * modified once they are published.
+	 */
+	private static class Snapshot
+	{
+		final Map<String, Map<String, TreeMap<String, List<Member>>>> categories;
+
+		Snapshot()
+		{
+			this.categories = new HashMap<String, Map<String, TreeMap<String, List<Member>>>>(MEMBER_CATEGORIES.length);
+		}
+
+		/**
+		 * Copy a snapshot without the members of the given owning types. The members of the other types are shared.
+		 *
+		 * @param base
+		 * @param removedTypes
+		 */
+		Snapshot(Snapshot base, Set<String> removedTypes)
+		{
+			this();
+
+			for (Map.Entry<String, Map<String, TreeMap<String, List<Member>>>> entry : base.categories.entrySet())
+			{
+				Map<String, TreeMap<String, List<Member>>> types = new HashMap<String, TreeMap<String, List<Member>>>(
+						entry.getValue());
+				types.keySet().removeAll(removedTypes);
+				this.categories.put(entry.getKey(), types);
+			}
+		}
+
+		Map<String, TreeMap<String, List<Member>>> getTypes(String category)
+		{
+			Map<String, TreeMap<String, List<Member>>> types = this.categories.get(category);
+
+			if (types == null)
+			{
+				return Collections.emptyMap();
+			}
+
+			return types;
+		}
+
+		void add(String category, Member member)
+		{
+			Map<String, TreeMap<String, List<Member>>> types = this.categories.get(category);
+
+			if (types == null)
+			{
+				types = new HashMap<String, TreeMap<String, List<Member>>>();
+				this.categories.put(category, types);
+			}
+
+			TreeMap<String, List<Member>> names = types.get(member.owningType);
+
+			if (names == null)
+			{
+				names = new TreeMap<String, List<Member>>();
+				types.put(member.owningType, names);
+			}
+
+			List<Member> members = names.get(member.name);
+
+			if (members == null)
+			{
+				// the same owningType/name pair usually has a single entry, so start small
+				members = new ArrayList<Member>(1);
+				names.put(member.name, members);
+			}
+
+			members.add(member);
+		}
+	}
+
+	/**
+	 * Weakly held: the store is the value of its index's entry in {@link #STORES}, and would keep the entry alive.
+	 */
+	private final WeakReference<Index> index;
+	private volatile SoftReference<Snapshot> snapshot;
+
+	/**
+	 * The changes to the index since the snapshot was taken, guarded by themselves. {@link #changed} is set whenever
+	 * there are any, so queries don't need the lock otherwise.
+	 */
+	private final Object changesLock = new Object();
+	private Set<String> changedTypes;
+	private Set<String> removedDocuments;
+	private boolean reset;
+	private volatile boolean changed;
+
+	/**
+	 * Serializes updates of the snapshot, so that a query never gets a snapshot older than the changes another query
+	 * took over.
+	 */
+	private final Object updateLock = new Object();
+
+	/**
+	 * The owning types that have members in each document, to know which types to read again when a document is
+	 * removed. Only used while holding {@link #updateLock}.
+	 */
+	private final Map<String, Set<String>> typesByDocument;
+
+	/**
+	 * JSMemberStore
+	 *
+	 * @param index
+	 */
+	private JSMemberStore(Index index)
+	{
+		this.index = new WeakReference<Index>(index);
+		this.snapshot = new SoftReference<Snapshot>(null);
+		this.changedTypes = new HashSet<String>();
+		this.removedDocuments = new HashSet<String>();
+		this.typesByDocument = new HashMap<String, Set<String>>();
+
+		index.addChangeListener(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IIndexChangeListener#entryAdded(com.aptana.index.core.Index, java.lang.String,
+	 * java.lang.String, java.lang.String)
+	 */
+	public void entryAdded(Index index, String category, String key, String document)
+	{
+		if (!isMemberCategory(category))
+		{
+			return;
+		}
+
+		int nameStart = key.indexOf(IJSIndexConstants.DELIMITER);
+
+		synchronized (this.changesLock)
+		{
+			this.changedTypes.add((nameStart == -1) ? key : key.substring(0, nameStart));
+			this.changed = true;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IIndexChangeListener#documentRemoved(com.aptana.index.core.Index, java.lang.String)
+	 */
+	public void documentRemoved(Index index, String document)
+	{
+		synchronized (this.changesLock)
+		{
+			this.removedDocuments.add(document);
+			this.changed = true;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IIndexChangeListener#indexReset(com.aptana.index.core.Index)
+	 */
+	public void indexReset(Index index)
+	{
+		synchronized (this.changesLock)
+		{
+			this.reset = true;
+			this.changed = true;
+		}
+	}
+
+	/**
+	 * Returns all members of the given category belonging to any of the owning types.
+	 *
+	 * @param category
+	 *            one of {@link IJSIndexConstants#PROPERTY}, {@link IJSIndexConstants#FUNCTION} or
+	 *            {@link IJSIndexConstants#EVENT}
+	 * @param owningTypes
+	 * @return
+	 */
+	public List<Member> getMembers(String category, Collection<String> owningTypes)
+	{
+		Map<String, TreeMap<String, List<Member>>> types = getSnapshot().getTypes(category);
+		List<Member> result = new ArrayList<Member>();
+
+		for (String owningType : owningTypes)
+		{
+			TreeMap<String, List<Member>> names = types.get(owningType);
+
+			if (names != null)
+			{
+				for (List<Member> members : names.values())
+				{
+					result.addAll(members);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the members of the given category with exactly the given owning type and name.
+	 *
+	 * @param category
+	 * @param owningType
+	 * @param name
+	 * @return
+	 */
+	public List<Member> getMembers(String category, String owningType, String name)
+	{
+		TreeMap<String, List<Member>> names = getSnapshot().getTypes(category).get(owningType);
+
+		if (names != null)
+		{
+			List<Member> members = names.get(name);
+
+			if (members != null)
+			{
+				return Collections.unmodifiableList(members);
+			}
+		}
+
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Returns the current snapshot, bringing it up to date with the changes to the index first. Changes made while
+	 * updating are recorded again and picked up by the next call.
+	 *
+	 * @return
+	 */
+	private Snapshot getSnapshot()
+	{
+		Snapshot current = this.snapshot.get();
+
+		if (current != null && !this.changed)
+		{
+			return current;
+		}
+
+		synchronized (this.updateLock)
+		{
+			current = this.snapshot.get();
+
+			Set<String> types;
+			Set<String> documents;
+			boolean rebuild;
+
+			synchronized (this.changesLock)
+			{
+				if (current != null && !this.changed)
+				{
+					return current;
+				}
+
+				types = this.changedTypes;
+				documents = this.removedDocuments;
+				rebuild = current == null || this.reset;
+
+				this.changedTypes = new HashSet<String>();
+				this.removedDocuments = new HashSet<String>();
+				this.reset = false;
+				this.changed = false;
+			}
+
+			for (String document : documents)
+			{
+				Set<String> documentTypes = this.typesByDocument.remove(document);
+
+				if (documentTypes != null)
+				{
+					types.addAll(documentTypes);
+				}
+			}
+
+			if (rebuild || types.size() > MAX_CHANGED_TYPES)
+			{
+				current = build();
+			}
+			else if (!types.isEmpty())
+			{
+				current = update(current, types);
+			}
+
+			this.snapshot = new SoftReference<Snapshot>(current);
+
+			return current;
+		}
+	}
+
+	private Snapshot build()
+	{
+		Snapshot result = new Snapshot();
+
+		this.typesByDocument.clear();
+
+		for (String category : MEMBER_CATEGORIES)
+		{
+			addMembers(result, category, "*", SearchPattern.PATTERN_MATCH); //$NON-NLS-1$
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reads the members of the given owning types again, carrying the others over from the current snapshot.
+	 *
+	 * @param current
+	 * @param types
+	 * @return
+	 */
+	private Snapshot update(Snapshot current, Set<String> types)
+	{
+		Snapshot result = new Snapshot(current, types);
+
+		for (String type : types)
+		{
+			for (String category : MEMBER_CATEGORIES)
+			{
+				addMembers(result, category, type + IJSIndexConstants.DELIMITER, SearchPattern.PREFIX_MATCH
+						| SearchPattern.CASE_SENSITIVE);
+			}
+		}
+
+		return result;
+	}
+
+	private void addMembers(Snapshot snapshot, String category, String key, int matchRule)
+	{
+		Index index = this.index.get();
+
+		if (index == null)
+		{
+			return;
+		}
+
+		List<QueryResult> entries = index.query(new String[] { category }, key, matchRule);
+
+		if (entries == null)
+		{
+			return;
+		}
+
+		for (QueryResult entry : entries)
+		{
+			Member member = createMember(entry);
+
+			if (member != null)
+			{
+				snapshot.add(category, member);
+
+				for (String document : member.documents)
+				{
+					Set<String> documentTypes = this.typesByDocument.get(document);
+
+					if (documentTypes == null)
+					{
+						documentTypes = new HashSet<String>();
+						this.typesByDocument.put(document, documentTypes);
+					}
+
+					documentTypes.add(member.owningType);
+				}
+			}
+		}
+	}
+
+	private static boolean isMemberCategory(String category)
+	{
+		for (String memberCategory : MEMBER_CATEGORIES)
+		{
+			if (memberCategory.equals(category))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private Member createMember(QueryResult entry)
+	{
+		String key = entry.getWord();
+		int nameStart = key.indexOf(IJSIndexConstants.DELIMITER);
+
+		if (nameStart == -1)
+		{
+			return null;
+		}
+
+		int payloadStart = key.indexOf(IJSIndexConstants.DELIMITER, nameStart + 1);
+
+		if (payloadStart == -1)
+		{
+			return null;
+		}
+
+		// @formatter:off
+		return new Member(
+			key.substring(0, nameStart),
+			key.substring(nameStart + 1, payloadStart),
+			key.substring(payloadStart + 1),
+			entry.getDocuments()
+		);
+		// @formatter:on
+	}
+}
@@ -0,0 +1,430 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aptana.core.util.BoundedConcurrentCache;
+import com.aptana.index.core.IIndexChangeListener;
+import com.aptana.index.core.Index;
+import com.aptana.js.core.JSTypeConstants;
+import com.aptana.js.core.index.IJSIndexConstants;
+import com.aptana.js.core.model.BaseElement;
+import com.aptana.js.core.model.PropertyElement;
+import com.aptana.js.core.model.TypeElement;
+
+/**
+ * The resolved type hierarchies of an ordered list of indices: for a type, its ancestors and the members of the type
+ * and all its ancestors, also hashed by name. Hierarchies are built lazily from per-index tables of each type's parents
+ * and own members, so after warm-up looking one up is a hash lookup plus a staleness check per index.
+ * <p>
+ * The per-index tables listen to their index (see {@link IIndexChangeListener}) and only drop the types a changed
+ * document contributed to: an entry added for a type drops that type, a removed document drops the types its entries
+ * were loaded from. A hierarchy is rebuilt, from the remaining tables, once any of its indices had a type dropped.
+ * </p>
+ * Elements handed out are shared between callers and must not be modified.
+ */
+public class JSTypeGraph
+{
+	/**
+	 * What one index says about a type: its parents and its functions and properties.
+	 */
+	private static class TypeInfo
+	{
+		final List<String> parents;
+		final List<PropertyElement> members;
+		final Set<String> documents;
+
+		TypeInfo(List<String> parents, List<PropertyElement> members, Set<String> documents)
+		{
+			this.parents = parents;
+			this.members = members;
+			this.documents = documents;
+		}
+	}
+
+	/**
+	 * The types of one index, loaded as they're asked for.
+	 */
+	private static class IndexTypes implements IIndexChangeListener
+	{
+		private final JSIndexReader reader;
+		private final Map<String, TypeInfo> types;
+		private final ConcurrentHashMap<String, Set<String>> typesByDocument;
+		/**
+		 * Bumped whenever a type is dropped, so hierarchies built from this index can tell they may be stale.
+		 */
+		private final AtomicLong version;
+
+		IndexTypes()
+		{
+			this.reader = new JSIndexReader();
+			this.types = new ConcurrentHashMap<String, TypeInfo>();
+			this.typesByDocument = new ConcurrentHashMap<String, Set<String>>();
+			this.version = new AtomicLong();
+		}
+
+		long getVersion()
+		{
+			return version.get();
+		}
+
+		TypeInfo get(Index index, String typeName)
+		{
+			TypeInfo info = types.get(typeName);
+			if (info != null)
+			{
+				return info;
+			}
+
+			// read the version first: if the type is dropped while we load it, we must not keep what we loaded
+			long loadVersion = version.get();
+			info = load(index, typeName);
+			types.put(typeName, info);
+			for (String document : info.documents)
+			{
+				Set<String> names = typesByDocument.get(document);
+				if (names == null)
+				{
+					names = Collections.synchronizedSet(new HashSet<String>());
+					Set<String> existing = typesByDocument.putIfAbsent(document, names);
+					if (existing != null)
+					{
+						names = existing;
+					}
+				}
+				names.add(typeName);
+			}
+			if (version.get() != loadVersion)
+			{
+				types.remove(typeName);
+			}
+			return info;
+		}
+
+		private TypeInfo load(Index index, String typeName)
+		{
+			Set<String> parents = new LinkedHashSet<String>();
+			Set<String> documents = new HashSet<String>();
+			for (TypeElement type : reader.getType(index, typeName, false))
+			{
+				parents.addAll(type.getParentTypes());
+				addDocuments(documents, type);
+			}
+
+			List<PropertyElement> members = new ArrayList<PropertyElement>();
+			members.addAll(reader.getFunctions(index, typeName));
+			members.addAll(reader.getProperties(index, typeName));
+			for (PropertyElement member : members)
+			{
+				addDocuments(documents, member);
+			}
+
+			return new TypeInfo(new ArrayList<String>(parents), members, documents);
+		}
+
+		private void addDocuments(Set<String> documents, BaseElement element)
+		{
+			List<String> elementDocuments = element.getDocuments();
+			if (elementDocuments != null)
+			{
+				documents.addAll(elementDocuments);
+			}
+		}
+
+		private void invalidate(String typeName)
+		{
+			types.remove(typeName);
+			// bump even when the type wasn't loaded yet, a load may be underway
+			version.incrementAndGet();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.index.core.IIndexChangeListener#entryAdded(com.aptana.index.core.Index, java.lang.String,
+		 * java.lang.String, java.lang.String)
+		 */
+		public void entryAdded(Index index, String category, String key, String document)
+		{
+			if (IJSIndexConstants.TYPE.equals(category) || IJSIndexConstants.FUNCTION.equals(category)
+					|| IJSIndexConstants.PROPERTY.equals(category))
+			{
+				// the first column is the type's name, or the owning type's for members
+				int delimiter = key.indexOf(IJSIndexConstants.DELIMITER);
+				invalidate((delimiter == -1) ? key : key.substring(0, delimiter));
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.index.core.IIndexChangeListener#documentRemoved(com.aptana.index.core.Index,
+		 * java.lang.String)
+		 */
+		public void documentRemoved(Index index, String document)
+		{
+			Set<String> names = typesByDocument.remove(document);
+			if (names != null)
+			{
+				synchronized (names)
+				{
+					for (String name : names)
+					{
+						invalidate(name);
+					}
+				}
+			}
+			// a type may be loading from this document without having recorded it yet
+			version.incrementAndGet();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.index.core.IIndexChangeListener#indexReset(com.aptana.index.core.Index)
+		 */
+		public void indexReset(Index index)
+		{
+			types.clear();
+			typesByDocument.clear();
+			version.incrementAndGet();
+		}
+	}
+
+	/**
+	 * A type and its ancestors across a list of indices. Hierarchies and their members are cached and shared by every
+	 * caller, so the members must not be modified.
+	 */
+	public static class Hierarchy
+	{
+		private final List<String> ancestors;
+		private final List<PropertyElement> members;
+		private final Map<String, List<PropertyElement>> membersByName;
+		private final long[] versions;
+
+		Hierarchy(List<String> ancestors, List<PropertyElement> members, long[] versions)
+		{
+			this.ancestors = Collections.unmodifiableList(ancestors);
+			this.members = Collections.unmodifiableList(members);
+			this.membersByName = new HashMap<String, List<PropertyElement>>();
+			for (PropertyElement member : members)
+			{
+				List<PropertyElement> named = membersByName.get(member.getName());
+				if (named == null)
+				{
+					named = new ArrayList<PropertyElement>(1);
+					membersByName.put(member.getName(), named);
+				}
+				named.add(member);
+			}
+			this.versions = versions;
+		}
+
+		/**
+		 * The ancestors, breadth first and nearest first, not including the type itself.
+		 *
+		 * @return
+		 */
+		public List<String> getAncestors()
+		{
+			return ancestors;
+		}
+
+		/**
+		 * The functions and properties of the type, then of each ancestor in the order of {@link #getAncestors()}.
+		 * Within a type, members of earlier indices come first.
+		 *
+		 * @return
+		 */
+		public List<PropertyElement> getMembers()
+		{
+			return members;
+		}
+
+		/**
+		 * The members with the given name, in the order of {@link #getMembers()}.
+		 *
+		 * @param name
+		 * @return
+		 */
+		public List<PropertyElement> getMembers(String name)
+		{
+			List<PropertyElement> named = membersByName.get(name);
+			return (named == null) ? Collections.<PropertyElement> emptyList() : Collections.unmodifiableList(named);
+		}
+	}
+
+	private static class HierarchyKey
+	{
+		private final List<Index> indices;
+		private final String typeName;
+
+		HierarchyKey(List<Index> indices, String typeName)
+		{
+			this.indices = indices;
+			this.typeName = typeName;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return indices.hashCode() * 31 + typeName.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof HierarchyKey))
+			{
+				return false;
+			}
+			HierarchyKey other = (HierarchyKey) obj;
+			return typeName.equals(other.typeName) && indices.equals(other.indices);
+		}
+	}
+
+	private static final int HIERARCHY_CACHE_SIZE = 2048;
+
+	private static JSTypeGraph fgInstance;
+
+	/**
+	 * Returns the graph shared by the inferrer and content assist.
+	 *
+	 * @return
+	 */
+	public static synchronized JSTypeGraph getDefault()
+	{
+		if (fgInstance == null)
+		{
+			fgInstance = new JSTypeGraph();
+		}
+		return fgInstance;
+	}
+
+	private final Map<Index, IndexTypes> indexTypes;
+	private final BoundedConcurrentCache<HierarchyKey, Hierarchy> hierarchies;
+
+	/**
+	 * JSTypeGraph
+	 */
+	JSTypeGraph()
+	{
+		this.indexTypes = new WeakHashMap<Index, IndexTypes>();
+		this.hierarchies = new BoundedConcurrentCache<HierarchyKey, Hierarchy>(HIERARCHY_CACHE_SIZE);
+	}
+
+	/**
+	 * Returns the hierarchy of the given type, as defined by the given indices. Earlier indices take precedence in the
+	 * order of parents and members.
+	 *
+	 * @param indices
+	 * @param typeName
+	 * @return
+	 */
+	public Hierarchy getHierarchy(List<Index> indices, String typeName)
+	{
+		String name = JSIndexReader.stripGenericsFromType(typeName);
+		List<IndexTypes> tables = getIndexTypes(indices);
+		HierarchyKey key = new HierarchyKey(indices, name);
+
+		Hierarchy hierarchy = hierarchies.get(key);
+		if (hierarchy != null && isCurrent(hierarchy, tables))
+		{
+			return hierarchy;
+		}
+
+		hierarchy = build(indices, tables, name);
+		hierarchies.put(key, hierarchy);
+		return hierarchy;
+	}
+
+	private boolean isCurrent(Hierarchy hierarchy, List<IndexTypes> tables)
+	{
+		for (int i = 0; i < tables.size(); i++)
+		{
+			if (hierarchy.versions[i] != tables.get(i).getVersion())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Hierarchy build(List<Index> indices, List<IndexTypes> tables, String typeName)
+	{
+		// read the versions first, so changes made while building make the result stale
+		long[] versions = new long[tables.size()];
+		for (int i = 0; i < versions.length; i++)
+		{
+			versions[i] = tables.get(i).getVersion();
+		}
+
+		// Using linked hash set to preserve the order items were added to set
+		Set<String> ancestors = new LinkedHashSet<String>();
+		Queue<String> queue = new LinkedList<String>();
+		queue.offer(typeName);
+		while (!queue.isEmpty())
+		{
+			String name = queue.poll();
+			for (int i = 0; i < tables.size(); i++)
+			{
+				for (String parentType : tables.get(i).get(indices.get(i), name).parents)
+				{
+					if (ancestors.add(parentType) && !JSTypeConstants.OBJECT_TYPE.equals(parentType))
+					{
+						queue.offer(parentType);
+					}
+				}
+			}
+		}
+
+		List<PropertyElement> members = new ArrayList<PropertyElement>();
+		List<String> types = new ArrayList<String>(ancestors.size() + 1);
+		types.add(typeName);
+		types.addAll(ancestors);
+		for (String name : types)
+		{
+			for (int i = 0; i < tables.size(); i++)
+			{
+				members.addAll(tables.get(i).get(indices.get(i), name).members);
+			}
+		}
+
+		return new Hierarchy(new ArrayList<String>(ancestors), members, versions);
+	}
+
+	private List<IndexTypes> getIndexTypes(List<Index> indices)
+	{
+		List<IndexTypes> result = new ArrayList<IndexTypes>(indices.size());
+		synchronized (indexTypes)
+		{
+			for (Index index : indices)
+			{
+				IndexTypes types = indexTypes.get(index);
+				if (types == null)
+				{
+					types = new IndexTypes();
+					indexTypes.put(index, types);
+					index.addChangeListener(types);
+				}
+				result.add(types);
+			}
+		}
+		return result;
+	}
+}
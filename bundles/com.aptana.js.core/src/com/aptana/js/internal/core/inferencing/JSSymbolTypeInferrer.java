@@ -9,7 +9,6 @@ package com.aptana.js.internal.core.inferencing;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -430,25 +429,19 @@ public class JSSymbolTypeInferrer
 	 */
 	private Map<String, PropertyElement> getTypePropertyMap(Set<String> types)
 	{
-		// create a unique set of type names and their ancestor types
-		Set<String> ancestors = new HashSet<String>();
-
-		for (String type : types)
-		{
-			ancestors.add(type);
-			ancestors.addAll(queryHelper.getTypeAncestorNames(type));
-		}
-
-		// grab property elements for all collected types
-		List<String> typesAndAncestors = new ArrayList<String>(ancestors);
-		Collection<PropertyElement> typeMembers = queryHelper.getTypeMembers(typesAndAncestors);
-
-		// generate map of property name to its property element
+		// generate map of property name to its property element, from the types and their ancestors. A type's members
+		// come before its ancestors', so keep the first one of each name
 		Map<String, PropertyElement> propertyMap = new HashMap<String, PropertyElement>();
 
-		for (PropertyElement propertyElement : typeMembers)
+		for (String type : types)
 		{
-			propertyMap.put(propertyElement.getName(), propertyElement);
+			for (PropertyElement propertyElement : queryHelper.getTypeMembersInHierarchy(type))
+			{
+				if (!propertyMap.containsKey(propertyElement.getName()))
+				{
+					propertyMap.put(propertyElement.getName(), propertyElement);
+				}
+			}
 		}
 
 		return propertyMap;
@@ -47,9 +47,9 @@ import com.aptana.js.debug.core.internal.ProtocolLogger;
 import com.aptana.js.debug.core.internal.browsers.BrowserUtil;
 import com.aptana.js.debug.core.internal.browsers.Firefox;
 import com.aptana.js.debug.core.internal.browsers.InternetExplorer;
-import com.aptana.js.debug.core.internal.model.DebugConnection;
 import com.aptana.js.debug.core.internal.model.JSDebugProcess;
 import com.aptana.js.debug.core.internal.model.JSDebugTarget;
+import com.aptana.js.debug.core.internal.model.PipelinedDebugConnection;
 import com.aptana.webserver.core.IServer;
 import com.aptana.webserver.core.IServer.State;
 import com.aptana.webserver.core.SimpleWebServer;
@@ -476,8 +476,8 @@ public class JSLaunchConfigurationDelegate extends LaunchConfigurationDelegate
 				try
 				{
 					JSDebugProcess debugProcess = new JSDebugProcess(launch, browserExecutable, null);
-					DebugConnection controller = DebugConnection.createConnection(socket, new ProtocolLogger(
-							"jsdebugger", JSDebugPlugin.PLUGIN_ID)); //$NON-NLS-1$
+					PipelinedDebugConnection controller = PipelinedDebugConnection.createConnection(socket,
+							new ProtocolLogger("jsdebugger", JSDebugPlugin.PLUGIN_ID)); //$NON-NLS-1$
 					debugTarget = new JSDebugTarget(launch, debugProcess, urlMapper, controller, mode);
 					monitor.subTask(MessageFormat.format(Messages.JSLaunchConfigurationDelegate_OpeningPage, launchURL));
 					debugTarget.openURL(launchURL);
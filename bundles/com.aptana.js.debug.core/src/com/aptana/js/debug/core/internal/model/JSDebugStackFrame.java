@@ -9,6 +9,7 @@ package com.aptana.js.debug.core.internal.model;
 
 import java.net.URI;
 import java.text.MessageFormat;
+import java.util.concurrent.Future;
 
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IDebugTarget;
@@ -32,6 +33,7 @@ public class JSDebugStackFrame extends JSDebugElement implements IJSStackFrame {
 	private final URI sourceFile;
 	private int sourceLine;
 	private IVariable[] variables;
+	private Future<String[]> pendingVariables;
 
 	/* package */long pc;
 	/* package */int scriptTag;
@@ -305,6 +307,7 @@ public class JSDebugStackFrame extends JSDebugElement implements IJSStackFrame {
 
 	/* package */void invalidate() {
 		frameId = -1;
+		dropPendingVariables();
 	}
 
 	/* package */void invalidate(int frameId, int sourceLine, long pc) {
@@ -312,6 +315,7 @@ public class JSDebugStackFrame extends JSDebugElement implements IJSStackFrame {
 		this.sourceLine = sourceLine;
 		this.pc = pc;
 		variables = null;
+		dropPendingVariables();
 	}
 
 	/* package */String getThreadId() {
@@ -336,11 +340,40 @@ public class JSDebugStackFrame extends JSDebugElement implements IJSStackFrame {
 			return;
 		}
 		JSDebugTarget target = getJSDebugTarget();
-		String command = MessageFormat.format(FRAME_0, frameId);
-		variables = target.loadVariables(thread.getThreadId(), command);
+		Future<String[]> response = pendingVariables;
+		pendingVariables = null;
+		if (response != null) {
+			setVariables(target.loadVariables(thread.getThreadId(), getQualifier(), response));
+		} else {
+			setVariables(target.loadVariables(thread.getThreadId(), getQualifier()));
+		}
+	}
+
+	/**
+	 * Sends the variables request ahead of {@link #getVariables()}, if the connection is pipelined.
+	 */
+	/* package */void requestVariables() throws DebugException {
+		if (variables == null && isValid() && pendingVariables == null) {
+			pendingVariables = getJSDebugTarget().requestVariables(thread.getThreadId(), getQualifier());
+		}
+	}
+
+	private void dropPendingVariables() {
+		if (pendingVariables != null) {
+			pendingVariables.cancel(false);
+			pendingVariables = null;
+		}
+	}
+
+	private String getQualifier() {
+		return MessageFormat.format(FRAME_0, frameId);
+	}
+
+	private void setVariables(IVariable[] variables) {
 		for (IVariable var : variables) {
 			((JSDebugVariable) var).flags |= JSDebugVariable.FLAGS_TOPLEVEL;
 		}
+		this.variables = variables;
 	}
 
 	private boolean isValid() {
@@ -23,6 +23,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -88,6 +93,7 @@ import com.aptana.js.debug.core.model.IJSDebugConnectionHandler;
 import com.aptana.js.debug.core.model.IJSDebugTarget;
 import com.aptana.js.debug.core.model.IJSExceptionBreakpoint;
 import com.aptana.js.debug.core.model.IJSLineBreakpoint;
+import com.aptana.js.debug.core.model.IJSPipelinedConnection;
 import com.aptana.js.debug.core.model.IJSScriptElement;
 import com.aptana.js.debug.core.model.JSDebugModel;
 import com.aptana.js.debug.core.model.provisional.IJSWatchpoint;
@@ -1574,9 +1580,85 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		{
 			return new IVariable[0];
 		}
+		String[] args = connection.sendCommandAndWait(getVariablesCommand(threadId, qualifier));
+		return parseVariables(threadId, qualifier, args);
+	}
+
+	/**
+	 * Sends the variables request of a qualifier without waiting for the response, so it travels while the caller does
+	 * other work. See {@link #loadVariables(String, String, Future)}.
+	 * 
+	 * @param threadId
+	 * @param qualifier
+	 * @return the pending response, or <code>null</code> if the connection isn't pipelined or the thread isn't
+	 *         suspended
+	 * @throws DebugException
+	 */
+	protected Future<String[]> requestVariables(String threadId, String qualifier) throws DebugException
+	{
+		if (!(connection instanceof IJSPipelinedConnection) || !isThreadSuspended(threadId))
+		{
+			return null;
+		}
+		return ((IJSPipelinedConnection) connection).sendCommandAsync(getVariablesCommand(threadId, qualifier));
+	}
+
+	/**
+	 * Loads the variables of a qualifier from a response requested by {@link #requestVariables(String, String)}.
+	 * 
+	 * @param threadId
+	 * @param qualifier
+	 * @param response
+	 * @return IVariable[]
+	 * @throws DebugException
+	 */
+	protected IVariable[] loadVariables(String threadId, String qualifier, Future<String[]> response)
+			throws DebugException
+	{
+		String[] args = getResponse(response, System.currentTimeMillis() + DebugConnection.COMMAND_TIMEOUT);
+		return parseVariables(threadId, qualifier, args);
+	}
+
+	/**
+	 * Waits for a response until the deadline, like {@link IJSConnection#sendCommandAndWait(String)} does.
+	 * 
+	 * @return the response arguments, or <code>null</code> if there's no response in time
+	 * @throws DebugException
+	 */
+	private String[] getResponse(Future<String[]> response, long deadline) throws DebugException
+	{
+		try
+		{
+			return response.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			response.cancel(false);
+		}
+		catch (CancellationException e)
+		{
+		}
+		catch (InterruptedException e)
+		{
+			response.cancel(false);
+			throwDebugException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throwDebugException(e);
+		}
+		return null;
+	}
+
+	private String getVariablesCommand(String threadId, String qualifier)
+	{
+		return MessageFormat.format(protocolVersion >= 2 ? VARIABLES_0_V2 : VARIABLES_0, threadId,
+				Util.encodeData(qualifier));
+	}
+
+	private IVariable[] parseVariables(String threadId, String qualifier, String[] args)
+	{
 		List<IVariable> list = new ArrayList<IVariable>();
-		String[] args = connection.sendCommandAndWait(MessageFormat.format(protocolVersion >= 2 ? VARIABLES_0_V2
-				: VARIABLES_0, threadId, Util.encodeData(qualifier)));
 		if (args != null)
 		{
 			for (int i = 1; i < args.length; ++i)
@@ -563,6 +563,11 @@ public class JSDebugThread extends JSDebugElement implements IThread
 			}
 			stackFrames = (IStackFrame[]) frames.toArray(new IStackFrame[frames.size()]);
 			validateFrames = false;
+			if (stackFrames.length > 0)
+			{
+				// the top frame is shown as soon as the thread suspends, the others only if they're selected
+				((JSDebugStackFrame) stackFrames[0]).requestVariables();
+			}
 		}
 	}
 
@@ -0,0 +1,631 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.debug.core.internal.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.ILaunch;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.js.debug.core.JSDebugPlugin;
+import com.aptana.js.debug.core.internal.ProtocolLogger;
+import com.aptana.js.debug.core.model.IJSDebugConnectionHandler;
+import com.aptana.js.debug.core.model.IJSPipelinedConnection;
+
+/**
+ * A debug connection that speaks the same protocol as {@link DebugConnection}, but never blocks a caller on another
+ * caller's request. Commands are queued and written by a single I/O thread, which sleeps in the selector until the
+ * socket can be read or written. Responses complete the futures of their request ids, so any number of requests can
+ * be outstanding at the same time.
+ * <p>
+ * Sockets that weren't opened through a channel can't be used with a selector. For those, the I/O thread blocks on
+ * the socket's input instead, and commands are written directly.
+ */
+public class PipelinedDebugConnection implements IJSPipelinedConnection
+{
+
+	private static final String ARGS_SPLIT = "\\*"; //$NON-NLS-1$
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The platform encoding, like the readers and writers of {@link DebugConnection}.
+	 */
+	private final Charset charset = Charset.defaultCharset();
+
+	private Socket socket;
+	private SocketChannel channel;
+	private Selector selector;
+	private OutputStream output;
+	private volatile boolean connected = false;
+	private volatile boolean terminated = false;
+	private ProtocolLogger logger;
+
+	private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final ConcurrentMap<String, Response> responses = new ConcurrentHashMap<String, Response>();
+	private final AtomicLong lastReqId = new AtomicLong(System.currentTimeMillis());
+
+	private IJSDebugConnectionHandler handler;
+
+	// reader state, accessed from the I/O thread only
+	private final StringBuilder header = new StringBuilder();
+	private final StringBuilder body = new StringBuilder();
+	private int messageSize = -1;
+
+	/**
+	 * @throws DebugException
+	 */
+	public static PipelinedDebugConnection createConnection(Socket socket, ProtocolLogger logger)
+			throws DebugException
+	{
+		PipelinedDebugConnection connection = new PipelinedDebugConnection();
+		try
+		{
+			connection.initialize(socket, logger, null);
+		}
+		catch (IOException e)
+		{
+			DebugConnection.throwDebugException(e);
+		}
+		return connection;
+	}
+
+	/**
+	 * Constructs a new Debug Connection. Note that {@link #initialize(Socket, ProtocolLogger, ILaunch)} has to be
+	 * called after.
+	 */
+	public PipelinedDebugConnection()
+	{
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.debug.core.model.IJSConnection#initialize(java.net.Socket,
+	 * com.aptana.js.debug.core.internal.ProtocolLogger, org.eclipse.debug.core.ILaunch)
+	 */
+	public void initialize(Socket socket, ProtocolLogger logger, ILaunch launch) throws IOException
+	{
+		this.socket = socket;
+		this.logger = logger;
+		channel = socket.getChannel();
+		if (channel != null)
+		{
+			channel.configureBlocking(false);
+			selector = Selector.open();
+			channel.register(selector, SelectionKey.OP_READ);
+		}
+		else
+		{
+			output = socket.getOutputStream();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.debug.core.model.IJSConnection#initialize(java.net.InetSocketAddress,
+	 * com.aptana.js.debug.core.internal.ProtocolLogger, org.eclipse.debug.core.ILaunch)
+	 */
+	public void initialize(InetSocketAddress inetSocketAddress, ProtocolLogger logger, ILaunch launch)
+			throws IOException
+	{
+		initialize(SocketChannel.open(inetSocketAddress).socket(), logger, launch);
+	}
+
+	public void start(IJSDebugConnectionHandler handler)
+	{
+		this.handler = handler;
+
+		connected = true;
+		new Thread("Aptana: JS Debugger") { //$NON-NLS-1$
+			public void run()
+			{
+				try
+				{
+					if (selector != null)
+					{
+						runSelector();
+					}
+					else
+					{
+						runBlocking();
+					}
+				}
+				catch (ClosedSelectorException e)
+				{
+					// disposed
+				}
+				catch (CancelledKeyException e)
+				{
+					// disposed
+				}
+				catch (IOException e)
+				{
+					// the connection is gone
+				}
+				finally
+				{
+					if (logger != null)
+					{
+						logger.close();
+					}
+					completeAll();
+					handleConnectionTerminated();
+				}
+			}
+
+		}.start();
+	}
+
+	private void runSelector() throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		CharsetDecoder decoder = newDecoder();
+		SelectionKey key = channel.keyFor(selector);
+		try
+		{
+			while (channel.isOpen())
+			{
+				selector.select();
+				if (key.isValid() && key.isReadable())
+				{
+					int n = channel.read(buffer);
+					if (n == -1)
+					{
+						break;
+					}
+					decode(decoder, buffer, chars);
+				}
+				selector.selectedKeys().clear();
+				if (key.isValid())
+				{
+					key.interestOps(flushWriteQueue() ? SelectionKey.OP_READ : SelectionKey.OP_READ
+							| SelectionKey.OP_WRITE);
+				}
+			}
+		}
+		finally
+		{
+			selector.close();
+		}
+	}
+
+	private void runBlocking() throws IOException
+	{
+		// the reader only returns when there is data, a short timeout would turn it into polling
+		socket.setSoTimeout(0);
+		ReadableByteChannel input = Channels.newChannel(socket.getInputStream());
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		CharsetDecoder decoder = newDecoder();
+		while (input.read(buffer) != -1)
+		{
+			decode(decoder, buffer, chars);
+		}
+	}
+
+	private CharsetDecoder newDecoder()
+	{
+		return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Writes as much of the queued commands as the socket takes without blocking.
+	 *
+	 * @return whether everything has been written
+	 * @throws IOException
+	 */
+	private boolean flushWriteQueue() throws IOException
+	{
+		ByteBuffer buffer;
+		while ((buffer = writeQueue.peek()) != null)
+		{
+			channel.write(buffer);
+			if (buffer.hasRemaining())
+			{
+				return false;
+			}
+			writeQueue.poll();
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes the bytes read so far, handling every message they complete. Bytes of an incomplete character stay in
+	 * the buffer for the next read.
+	 */
+	private void decode(CharsetDecoder decoder, ByteBuffer buffer, CharBuffer chars)
+	{
+		buffer.flip();
+		while (true)
+		{
+			boolean overflow = decoder.decode(buffer, chars, false).isOverflow();
+			chars.flip();
+			parse(chars);
+			chars.clear();
+			if (!overflow)
+			{
+				break;
+			}
+		}
+		buffer.compact();
+	}
+
+	/**
+	 * Messages are the length followed by '*' and that many characters. Anything else in front of the length is
+	 * skipped, as {@link DebugConnection#readMessage()} does.
+	 */
+	private void parse(CharBuffer chars)
+	{
+		while (chars.hasRemaining())
+		{
+			if (messageSize < 0)
+			{
+				char ch = chars.get();
+				if (ch == '*' && header.length() > 0)
+				{
+					try
+					{
+						messageSize = Integer.parseInt(header.toString());
+						body.setLength(0);
+					}
+					catch (NumberFormatException e)
+					{
+					}
+					header.setLength(0);
+				}
+				else if (ch >= '0' && ch <= '9')
+				{
+					header.append(ch);
+				}
+				else if (header.length() > 0)
+				{
+					header.setLength(0);
+				}
+			}
+			else
+			{
+				int n = Math.min(messageSize - body.length(), chars.remaining());
+				// a char buffer's char sequence starts at its position
+				body.append(chars, 0, n);
+				chars.position(chars.position() + n);
+			}
+			if (messageSize >= 0 && body.length() == messageSize)
+			{
+				messageSize = -1;
+				String message = body.toString();
+				if (logger != null)
+				{
+					logger.log(true, message);
+				}
+				try
+				{
+					handleMessage(message);
+				}
+				catch (Exception e)
+				{
+					JSDebugPlugin.log(e);
+				}
+			}
+		}
+	}
+
+	private void handleMessage(String message)
+	{
+		if (message.endsWith("*")) { //$NON-NLS-1$
+			message += "* "; //$NON-NLS-1$
+		}
+		handler.handleMessage(message);
+
+		if (!connected)
+		{
+			return;
+		}
+		/* check if action comes to waiting commands */
+		String[] args = message.split(ARGS_SPLIT);
+		Response response = responses.remove(args[0]);
+		if (response != null)
+		{
+			response.complete(args);
+		}
+	}
+
+	private void completeAll()
+	{
+		for (String reqid : new ArrayList<String>(responses.keySet()))
+		{
+			Response response = responses.remove(reqid);
+			if (response != null)
+			{
+				response.complete(null);
+			}
+		}
+	}
+
+	/**
+	 * handleConnectionTerminated
+	 */
+	private synchronized void handleConnectionTerminated()
+	{
+		if (terminated)
+		{
+			return;
+		}
+		terminated = true;
+		handler.handleShutdown();
+	}
+
+	public void stop()
+	{
+		if (!connected)
+		{
+			return;
+		}
+		connected = false;
+		completeAll();
+	}
+
+	public void dispose() throws IOException
+	{
+		if (socket != null)
+		{
+			socket.close();
+			if (selector != null)
+			{
+				selector.wakeup();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.debug.core.model.IJSDebugConnection#getSocket()
+	 */
+	public Socket getSocket()
+	{
+		return socket;
+	}
+
+	public boolean isConnected()
+	{
+		return connected;
+	}
+
+	public boolean isTerminated()
+	{
+		return terminated;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.debug.core.model.IJSConnection#sendCommand(java.lang.String)
+	 */
+	public void sendCommand(String command) throws DebugException
+	{
+		write(format(StringUtil.EMPTY, command));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.debug.core.model.IJSConnection#sendCommandAndWait(java.lang.String)
+	 */
+	public String[] sendCommandAndWait(String command) throws DebugException
+	{
+		if (!connected)
+		{
+			return null;
+		}
+		Response response = send(Collections.singletonList(command)).get(0);
+		try
+		{
+			return response.get(DebugConnection.COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			response.cancel(false);
+		}
+		catch (InterruptedException e)
+		{
+			response.cancel(false);
+			DebugConnection.throwDebugException(e);
+		}
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.debug.core.model.IJSPipelinedConnection#sendCommandAsync(java.lang.String)
+	 */
+	public Future<String[]> sendCommandAsync(String command) throws DebugException
+	{
+		return send(Collections.singletonList(command)).get(0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.debug.core.model.IJSPipelinedConnection#sendCommandsAsync(java.util.List)
+	 */
+	public List<Future<String[]>> sendCommandsAsync(List<String> commands) throws DebugException
+	{
+		return new ArrayList<Future<String[]>>(send(commands));
+	}
+
+	/**
+	 * Writes all the commands at once.
+	 */
+	private List<Response> send(List<String> commands) throws DebugException
+	{
+		List<Response> result = new ArrayList<Response>(commands.size());
+		StringBuilder messages = new StringBuilder();
+		for (String command : commands)
+		{
+			Response response = new Response(Long.toString(lastReqId.incrementAndGet()));
+			if (connected)
+			{
+				responses.put(response.reqid, response);
+				messages.append(format(response.reqid, command));
+			}
+			else
+			{
+				response.complete(null);
+			}
+			result.add(response);
+		}
+		if (messages.length() > 0)
+		{
+			try
+			{
+				write(messages.toString());
+			}
+			catch (DebugException e)
+			{
+				for (Response response : result)
+				{
+					response.cancel(false);
+				}
+				throw e;
+			}
+		}
+		return result;
+	}
+
+	private String format(String reqid, String command)
+	{
+		String message = MessageFormat.format("{0}*{1}*{2}", //$NON-NLS-1$
+				Integer.toString(command.length() + reqid.length() + 1), reqid, command);
+		if (logger != null)
+		{
+			logger.log(false, message);
+		}
+		return message;
+	}
+
+	private void write(String messages) throws DebugException
+	{
+		byte[] bytes = messages.getBytes(charset);
+		if (selector == null)
+		{
+			try
+			{
+				synchronized (output)
+				{
+					output.write(bytes);
+					output.flush();
+				}
+			}
+			catch (IOException e)
+			{
+				DebugConnection.throwDebugException(e);
+			}
+			return;
+		}
+		if (!channel.isOpen())
+		{
+			DebugConnection.throwDebugException(new IOException("Connection closed")); //$NON-NLS-1$
+		}
+		writeQueue.add(ByteBuffer.wrap(bytes));
+		selector.wakeup();
+	}
+
+	/**
+	 * The response to a request, completed from the I/O thread.
+	 */
+	private class Response implements Future<String[]>
+	{
+		private final String reqid;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile String[] args;
+		private volatile boolean cancelled;
+
+		private Response(String reqid)
+		{
+			this.reqid = reqid;
+		}
+
+		private void complete(String[] args)
+		{
+			this.args = args;
+			done.countDown();
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			if (!responses.remove(reqid, this))
+			{
+				return false;
+			}
+			cancelled = true;
+			done.countDown();
+			return true;
+		}
+
+		public boolean isCancelled()
+		{
+			return cancelled;
+		}
+
+		public boolean isDone()
+		{
+			return done.getCount() == 0;
+		}
+
+		public String[] get() throws InterruptedException
+		{
+			done.await();
+			return getArgs();
+		}
+
+		public String[] get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException
+		{
+			if (!done.await(timeout, unit))
+			{
+				throw new TimeoutException();
+			}
+			return getArgs();
+		}
+
+		private String[] getArgs()
+		{
+			if (cancelled)
+			{
+				throw new CancellationException();
+			}
+			return args;
+		}
+	}
+}
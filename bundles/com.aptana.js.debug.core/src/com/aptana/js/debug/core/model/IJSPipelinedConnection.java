@@ -0,0 +1,39 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.debug.core.model;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.eclipse.debug.core.DebugException;
+
+/**
+ * A connection that doesn't need to wait for a response before sending the next command. Every command gets its own
+ * request id, and the responses are matched to the commands by that id, in whatever order they arrive.
+ */
+public interface IJSPipelinedConnection extends IJSConnection
+{
+	/**
+	 * Sends a string command without waiting for the response.
+	 *
+	 * @param command
+	 * @return the response arguments when they arrive. The result is <code>null</code> if the connection is stopped
+	 *         or lost before that.
+	 * @throws DebugException
+	 */
+	Future<String[]> sendCommandAsync(String command) throws DebugException;
+
+	/**
+	 * Sends several string commands at once, without waiting for any of the responses.
+	 *
+	 * @param commands
+	 * @return the responses, in the order of the commands. See {@link #sendCommandAsync(String)}.
+	 * @throws DebugException
+	 */
+	List<Future<String[]>> sendCommandsAsync(List<String> commands) throws DebugException;
+}
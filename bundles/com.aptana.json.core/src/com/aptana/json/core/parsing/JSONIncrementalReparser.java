@@ -0,0 +1,80 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.json.core.parsing;
+
+import com.aptana.json.core.parsing.ast.JSONArrayNode;
+import com.aptana.json.core.parsing.ast.JSONObjectNode;
+import com.aptana.parsing.IncrementalReparser;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * Reparses the object or array around an edit. Any JSON value is a complete document, so the container's text is
+ * parsed as is.
+ */
+class JSONIncrementalReparser extends IncrementalReparser
+{
+	private final JSONParser fParser;
+
+	/**
+	 * JSONIncrementalReparser
+	 *
+	 * @param parser
+	 */
+	JSONIncrementalReparser(JSONParser parser)
+	{
+		fParser = parser;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#isReparseBoundary(com.aptana.parsing.ast.IParseNode,
+	 * java.lang.String, int, int)
+	 */
+	@Override
+	protected boolean isReparseBoundary(IParseNode node, String source, int start, int end)
+	{
+		if (end >= source.length())
+		{
+			return false;
+		}
+
+		char first = source.charAt(start);
+		char last = source.charAt(end);
+
+		if (node instanceof JSONObjectNode)
+		{
+			return first == '{' && last == '}';
+		}
+
+		if (node instanceof JSONArrayNode)
+		{
+			return first == '[' && last == ']';
+		}
+
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#parseFragment(java.lang.String, int)
+	 */
+	@Override
+	protected IParseRootNode parseFragment(String source, int offset) throws Exception
+	{
+		// the parser ignores starting offsets
+		IParseRootNode result = fParser.parseFragment(source);
+
+		if (result != null)
+		{
+			addOffset(result, offset);
+		}
+
+		return result;
+	}
+}
@@ -7,6 +7,9 @@ import com.aptana.json.core.parsing.ast.*;
 import com.aptana.parsing.ast.IParseRootNode;
 import beaver.*;
 import com.aptana.parsing.IParser;
+import com.aptana.parsing.IIncrementalParser;
+import com.aptana.parsing.ParseEdit;
+import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ast.IParseNode;
 import com.aptana.parsing.IParseState;
 
@@ -16,7 +19,7 @@ import com.aptana.parsing.IParseState;
  * from the grammar specification "JSON.grammar".
  */
 @SuppressWarnings({ "unchecked", "rawtypes", "nls" })
-public class JSONParser extends Parser implements IParser {
+public class JSONParser extends Parser implements IIncrementalParser {
 
 	static final ParsingTables PARSING_TABLES = new ParsingTables(
 		"U9o5aTjIma0GHCyICAAG10AYm9DMyQ0Fy05#d1yiA7Y$ZfquKa1ftDIftivaDrqpmALzSi0" +
@@ -25,15 +28,20 @@ public class JSONParser extends Parser implements IParser {
 		"ragpeo$nJxitTxirLxisPxiKMyUnBsuA#jBSIjknCBcjYfowWa2zI$yILiacacYgNHAWleR" +
 		"gTir4MaA1O7U5r9NGne=");
 
+    // set when the last parse had to recover from an error, see parseFragment
+    private boolean fRecovered;
+
     // suppress parser error reporting and let the custom error recovery mechanism handle it
-    private static class JSONEvents extends Events
+    private class JSONEvents extends Events
     {
         public void scannerError(Scanner.Exception e)
         {
+            fRecovered = true;
         }
 
         public void syntaxError(Symbol token)
         {
+            fRecovered = true;
         }
 
         public void unexpectedTokenRemoved(Symbol token)
@@ -61,6 +69,28 @@ public class JSONParser extends Parser implements IParser {
         return working.getImmutableResult();
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.aptana.parsing.IIncrementalParser#reparse(com.aptana.parsing.IParseState,
+     * com.aptana.parsing.ast.IParseRootNode, com.aptana.parsing.ParseEdit)
+     */
+    public synchronized ParseResult reparse(IParseState parseState, IParseRootNode previous, ParseEdit edit) throws java.lang.Exception
+    {
+        return new JSONIncrementalReparser(this).reparse(parseState, previous, edit);
+    }
+
+    /**
+     * Parse a lone JSON value, returning null when the parser had to recover from a syntax error
+     */
+    synchronized IParseRootNode parseFragment(String source) throws java.lang.Exception
+    {
+        fRecovered = false;
+
+        IParseRootNode result = parse(new ParseState(source)).getRootNode();
+
+        return (fRecovered) ? null : result;
+    }
+
     /*
      * (non-Javadoc)
      * @see com.aptana.parsing.IParser#parse(com.aptana.parsing.IParseState)
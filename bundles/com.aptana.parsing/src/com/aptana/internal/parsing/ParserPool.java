@@ -10,12 +10,16 @@ package com.aptana.internal.parsing;
 import org.eclipse.core.runtime.IConfigurationElement;
 
 import com.aptana.core.logging.IdeLog;
-import com.aptana.core.util.ReapingObjectPool;
+import com.aptana.core.util.ThreadLocalObjectPool;
 import com.aptana.parsing.IParser;
 import com.aptana.parsing.IParserPool;
 import com.aptana.parsing.ParsingPlugin;
 
-public class ParserPool extends ReapingObjectPool<IParser> implements IParserPool
+/**
+ * Parsers are checked out from reconcilers, builders and nested language parses on many threads at once, so they're
+ * pooled per thread instead of behind a single lock.
+ */
+public class ParserPool extends ThreadLocalObjectPool<IParser> implements IParserPool
 {
 
 	private IConfigurationElement parserExtension;
@@ -23,7 +27,6 @@ public class ParserPool extends ReapingObjectPool<IParser> implements IParserPoo
 	public ParserPool(IConfigurationElement parserExtension)
 	{
 		this.parserExtension = parserExtension;
-		start();
 	}
 
 	@Override
@@ -44,7 +47,7 @@ public class ParserPool extends ReapingObjectPool<IParser> implements IParserPoo
 	public boolean validate(IParser o)
 	{
 		// Always keep one available parser
-		return unlockedItems() == 1;
+		return idleItems() == 1;
 	}
 
 	@Override
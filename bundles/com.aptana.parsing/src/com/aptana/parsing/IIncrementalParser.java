@@ -0,0 +1,34 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * A parser that can bring the AST of a previous version of a source up to date by reparsing only the part touched by
+ * an edit.
+ */
+public interface IIncrementalParser extends IParser
+{
+	/**
+	 * Bring the previous AST up to date with the source in the specified parse state. The previous AST is never
+	 * modified, since others may still be reading it: the result has a new root, which may share the nodes the edit
+	 * left alone with the previous AST. A null return means the edit could not be handled locally and the caller should
+	 * fall back to {@link #parse(IParseState)}.
+	 *
+	 * @param parseState
+	 *            The state holding the new source
+	 * @param previous
+	 *            The error-free AST of the source before the edit, parsed with the same starting offset
+	 * @param edit
+	 *            The change between the previous source and the new one
+	 * @return
+	 * @throws Exception
+	 */
+	public ParseResult reparse(IParseState parseState, IParseRootNode previous, ParseEdit edit) throws Exception; // $codepro.audit.disable declaredExceptions
+}
@@ -0,0 +1,20 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+/**
+ * An incremental parser that always parses the whole source, but recycles subtrees of the previous AST whose text is
+ * unchanged (along with their errors) instead of parsing them again. The previous tree may still be in use, so it must
+ * be left as is and the new tree gets copies of the recycled subtrees. Like other incremental parsers it is only handed
+ * previous results without errors, and it is called with a null previous root and edit whenever it can't recycle (e.g.
+ * for the first parse of an editor) so that the trees it returns can be recycled later on. Its
+ * {@link #reparse(IParseState, com.aptana.parsing.ast.IParseRootNode, ParseEdit)} never returns null.
+ */
+public interface IRecyclingParser extends IIncrementalParser
+{
+}
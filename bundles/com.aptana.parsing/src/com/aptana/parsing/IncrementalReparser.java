@@ -0,0 +1,360 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseNode;
+import com.aptana.parsing.ast.ParseRootNode;
+import com.aptana.parsing.util.ParseUtil;
+
+/**
+ * The language independent half of an {@link IIncrementalParser}. An edit is handled by finding the deepest node
+ * whose first and last characters survived the edit and which the language can parse on its own (a function, a
+ * block, a rule...), parsing the new text of that node by itself and splicing the result into a new tree. The previous
+ * tree is never modified, since others may still be reading it: the new root shares the nodes preceding the edit with
+ * it, and only copies the path down to the reparsed node and the nodes following the edit, which are shifted. Whenever
+ * the fragment does not parse cleanly into a single node of the same kind, null is returned so the caller falls back
+ * to a full parse.
+ */
+public abstract class IncrementalReparser
+{
+	/**
+	 * Move a fragment's nodes and comments from fragment relative to absolute offsets
+	 *
+	 * @param root
+	 * @param offset
+	 */
+	protected static void addOffset(IParseRootNode root, int offset)
+	{
+		if (offset == 0)
+		{
+			return;
+		}
+
+		ParseUtil.addOffset(root, offset);
+
+		for (IParseNode comment : root.getCommentNodes())
+		{
+			ParseUtil.addOffset(comment, offset);
+		}
+	}
+
+	/**
+	 * reparse
+	 *
+	 * @see IIncrementalParser#reparse(IParseState, IParseRootNode, ParseEdit)
+	 * @param parseState
+	 * @param previous
+	 * @param edit
+	 * @return
+	 */
+	public ParseResult reparse(IParseState parseState, IParseRootNode previous, ParseEdit edit)
+	{
+		String source = parseState.getSource();
+
+		if (source == null || previous == null || edit == null || !(previous instanceof ParseRootNode))
+		{
+			return null;
+		}
+
+		int startingOffset = parseState.getStartingOffset();
+		int delta = edit.getDelta();
+		int editStart = startingOffset + edit.getOffset();
+		int editEnd = editStart + edit.getRemovedLength();
+		IParseNode target = findReparseTarget(previous, editStart, editEnd, source, startingOffset, delta);
+
+		if (target == null)
+		{
+			return null;
+		}
+
+		int start = target.getStartingOffset();
+		int oldEnd = target.getEndingOffset();
+		int newEnd = oldEnd + delta;
+		IParseRootNode fragment;
+
+		try
+		{
+			fragment = parseFragment(source.substring(start - startingOffset, newEnd - startingOffset + 1), start);
+		}
+		catch (Exception e)
+		{
+			// the text being typed is rarely valid, so this is an expected outcome
+			IdeLog.logTrace(ParsingPlugin.getDefault(), e.getMessage(), e, IDebugScopes.PARSING);
+			fragment = null;
+		}
+
+		if (fragment == null)
+		{
+			return null;
+		}
+
+		IParseNode replacement = getReplacement(fragment, target);
+
+		if (replacement == null || replacement.getStartingOffset() != start || replacement.getEndingOffset() != newEnd)
+		{
+			return null;
+		}
+
+		ParseNode copy = ((ParseNode) target).copyNode();
+		ParseRootNode root = (ParseRootNode) copyPath(previous, target, copy, oldEnd);
+
+		updateComments(root, fragment.getCommentNodes(), start, oldEnd, delta);
+		resize(root, oldEnd, delta);
+		shift(root, copy, oldEnd, delta);
+		replace(copy, replacement);
+
+		return new ParseResult(root, Collections.<IParseError> emptyList());
+	}
+
+	/**
+	 * Copy the ancestors of the reparsed node up to the root along with everything that follows the edit, since
+	 * those get resized and shifted. The nodes preceding the edit are shared with the previous tree, and now have the
+	 * copies for parents.
+	 *
+	 * @param root
+	 * @param target
+	 * @param copy
+	 *            The copy standing in for the reparsed node, without children since the replacement provides them
+	 * @param oldEnd
+	 * @return The copy of the root
+	 */
+	private IParseNode copyPath(IParseNode root, IParseNode target, ParseNode copy, int oldEnd)
+	{
+		IParseNode node = target;
+		ParseNode result = copy;
+
+		while (node != root) // $codepro.audit.disable useEquals
+		{
+			IParseNode parent = node.getParent();
+			IParseNode[] children = parent.getChildren().clone();
+
+			for (int i = 0; i < children.length; i++)
+			{
+				if (children[i] == node) // $codepro.audit.disable useEquals
+				{
+					children[i] = result;
+				}
+				else if (children[i].getEndingOffset() >= oldEnd)
+				{
+					children[i] = ParseUtil.copy(children[i]);
+				}
+			}
+
+			result = ((ParseNode) parent).copyNode();
+			result.setChildren(children);
+			node = parent;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Find the deepest reparse boundary containing the edit, excluding its first and last characters
+	 *
+	 * @param root
+	 * @param editStart
+	 * @param editEnd
+	 *            The exclusive end of the removed text in the previous source
+	 * @param source
+	 * @param startingOffset
+	 * @param delta
+	 * @return
+	 */
+	private IParseNode findReparseTarget(IParseNode root, int editStart, int editEnd, String source,
+			int startingOffset, int delta)
+	{
+		IParseNode result = null;
+		IParseNode node = root;
+
+		while (node != null)
+		{
+			IParseNode next = null;
+
+			for (IParseNode child : node.getChildren())
+			{
+				if (child.getStartingOffset() < editStart && editEnd <= child.getEndingOffset())
+				{
+					next = child;
+					break;
+				}
+			}
+
+			if (next != null
+					&& isReparseBoundary(next, source, next.getStartingOffset() - startingOffset,
+							next.getEndingOffset() + delta - startingOffset))
+			{
+				result = next;
+			}
+
+			node = next;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Replace the comments that were inside the reparsed node with the fragment's comments and move those that follow
+	 * it
+	 *
+	 * @param root
+	 * @param fragmentComments
+	 * @param start
+	 * @param oldEnd
+	 * @param delta
+	 */
+	private void updateComments(ParseRootNode root, IParseNode[] fragmentComments, int start, int oldEnd, int delta)
+	{
+		IParseNode[] comments = root.getCommentNodes();
+		List<IParseNode> result = new ArrayList<IParseNode>(comments.length + fragmentComments.length);
+		boolean added = false;
+
+		for (IParseNode comment : comments)
+		{
+			if (comment.getEndingOffset() < start)
+			{
+				result.add(comment);
+			}
+			else if (comment.getStartingOffset() > oldEnd)
+			{
+				if (!added)
+				{
+					Collections.addAll(result, fragmentComments);
+					added = true;
+				}
+
+				IParseNode moved = ParseUtil.copy(comment);
+
+				ParseUtil.addOffset(moved, delta);
+				result.add(moved);
+			}
+		}
+
+		if (!added)
+		{
+			Collections.addAll(result, fragmentComments);
+		}
+
+		root.setCommentNodes(result.toArray(new IParseNode[result.size()]));
+	}
+
+	/**
+	 * Stretch the ancestors of the reparsed node and move everything that follows it
+	 *
+	 * @param parent
+	 * @param target
+	 * @param oldEnd
+	 * @param delta
+	 */
+	private void shift(IParseNode parent, IParseNode target, int oldEnd, int delta)
+	{
+		for (IParseNode child : parent.getChildren())
+		{
+			if (child == target) // $codepro.audit.disable useEquals
+			{
+				continue;
+			}
+
+			if (child.getStartingOffset() > oldEnd)
+			{
+				ParseUtil.addOffset(child, delta);
+			}
+			else if (child.getEndingOffset() >= oldEnd)
+			{
+				resize(child, oldEnd, delta);
+				shift(child, target, oldEnd, delta);
+			}
+		}
+	}
+
+	/**
+	 * Determine if the specified node can be reparsed on its own. The start and end offsets locate the node's text in
+	 * the new source, assuming it contains the edit.
+	 *
+	 * @param node
+	 * @param source
+	 * @param start
+	 * @param end
+	 *            The inclusive end of the node's text in source
+	 * @return
+	 */
+	protected abstract boolean isReparseBoundary(IParseNode node, String source, int start, int end);
+
+	/**
+	 * Parse the new text of a reparse boundary. The returned root and its comments must be located at absolute
+	 * offsets, see {@link #addOffset(IParseRootNode, int)}.
+	 *
+	 * @param source
+	 * @param offset
+	 *            The absolute offset of the first character of source
+	 * @return The fragment's AST or null if the fragment had errors
+	 * @throws Exception
+	 */
+	protected abstract IParseRootNode parseFragment(String source, int offset) throws Exception; // $codepro.audit.disable declaredExceptions
+
+	/**
+	 * Find the node in a fragment's AST that stands in for the node that was reparsed. By default this is the first
+	 * node of the same class found by descending through single children.
+	 *
+	 * @param fragment
+	 * @param node
+	 * @return The replacement or null if the fragment does not contain exactly one such node
+	 */
+	protected IParseNode getReplacement(IParseRootNode fragment, IParseNode node)
+	{
+		IParseNode current = fragment;
+
+		while (current.getChildCount() == 1)
+		{
+			current = current.getFirstChild();
+
+			if (current.getClass() == node.getClass()) // $codepro.audit.disable useEquals
+			{
+				return current;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Splice the replacement into the tree in place of the reparsed node
+	 *
+	 * @param node
+	 * @param replacement
+	 */
+	protected void replace(IParseNode node, IParseNode replacement)
+	{
+		IParseNode parent = node.getParent();
+
+		parent.replaceChild(parent.getChildIndex(node), replacement);
+	}
+
+	/**
+	 * Move the end of a node containing the edit by delta characters
+	 *
+	 * @param node
+	 * @param oldEnd
+	 *            The end of the reparsed node before the edit. Anything past it within this node moves too
+	 * @param delta
+	 */
+	protected void resize(IParseNode node, int oldEnd, int delta)
+	{
+		if (node instanceof ParseNode)
+		{
+			((ParseNode) node).setLocation(node.getStartingOffset(), node.getEndingOffset() + delta);
+		}
+	}
+}
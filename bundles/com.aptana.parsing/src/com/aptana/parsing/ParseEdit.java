@@ -0,0 +1,131 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import java.text.MessageFormat;
+
+/**
+ * A single contiguous change between two versions of a source: removedLength characters starting at offset were
+ * replaced with insertedLength characters. Offsets are relative to the start of the source, not to the starting offset
+ * of a parse state.
+ */
+public final class ParseEdit
+{
+	private final int fOffset;
+	private final int fRemovedLength;
+	private final int fInsertedLength;
+
+	/**
+	 * Compute the smallest single edit that turns oldSource into newSource by trimming their common prefix and suffix.
+	 * Several edits made between two reconciles collapse into one edit covering all of them.
+	 *
+	 * @param oldSource
+	 * @param newSource
+	 * @return The edit or null if both sources are equal
+	 */
+	public static ParseEdit compute(String oldSource, String newSource)
+	{
+		int oldLength = oldSource.length();
+		int newLength = newSource.length();
+		int maxPrefix = Math.min(oldLength, newLength);
+		int prefix = 0;
+
+		while (prefix < maxPrefix && oldSource.charAt(prefix) == newSource.charAt(prefix))
+		{
+			prefix++;
+		}
+
+		if (prefix == oldLength && prefix == newLength)
+		{
+			return null;
+		}
+
+		// don't let the suffix overlap the prefix in either source
+		int maxSuffix = maxPrefix - prefix;
+		int suffix = 0;
+
+		while (suffix < maxSuffix
+				&& oldSource.charAt(oldLength - suffix - 1) == newSource.charAt(newLength - suffix - 1))
+		{
+			suffix++;
+		}
+
+		return new ParseEdit(prefix, oldLength - prefix - suffix, newLength - prefix - suffix);
+	}
+
+	/**
+	 * ParseEdit
+	 *
+	 * @param offset
+	 * @param removedLength
+	 * @param insertedLength
+	 */
+	public ParseEdit(int offset, int removedLength, int insertedLength)
+	{
+		if (offset < 0 || removedLength < 0 || insertedLength < 0)
+		{
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Invalid edit: offset={0}, removed={1}, inserted={2}", offset, removedLength, insertedLength)); //$NON-NLS-1$
+		}
+
+		fOffset = offset;
+		fRemovedLength = removedLength;
+		fInsertedLength = insertedLength;
+	}
+
+	/**
+	 * The change in source length caused by this edit
+	 *
+	 * @return
+	 */
+	public int getDelta()
+	{
+		return fInsertedLength - fRemovedLength;
+	}
+
+	/**
+	 * getInsertedLength
+	 *
+	 * @return
+	 */
+	public int getInsertedLength()
+	{
+		return fInsertedLength;
+	}
+
+	/**
+	 * getOffset
+	 *
+	 * @return
+	 */
+	public int getOffset()
+	{
+		return fOffset;
+	}
+
+	/**
+	 * getRemovedLength
+	 *
+	 * @return
+	 */
+	public int getRemovedLength()
+	{
+		return fRemovedLength;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return MessageFormat.format("ParseEdit[offset={0}, removed={1}, inserted={2}]", fOffset, fRemovedLength, //$NON-NLS-1$
+				fInsertedLength);
+	}
+}
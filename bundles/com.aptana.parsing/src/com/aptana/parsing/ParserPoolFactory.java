@@ -33,6 +33,7 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	private Map<String, IConfigurationElement> parsers;
 	private Map<String, IParserPool> pools;
 	private final ParsingEngine fParsingEngine;
+	private final ParsingEngine.IParserPoolProvider fParserPoolProvider;
 
 	/**
 	 * Singleton!
@@ -49,6 +50,22 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 		return INSTANCE;
 	}
 
+	/**
+	 * Makes the static parse methods take their parsers from the given provider instead of the parser extension point,
+	 * so that parsers which parse nested languages through this class can run outside of the platform. Pass null to go
+	 * back to the contributed parsers. Not API: only the benchmarks use it, from a class of their own in this package.
+	 * 
+	 * @param provider
+	 */
+	static synchronized void setParserPoolProvider(ParsingEngine.IParserPoolProvider provider)
+	{
+		if (INSTANCE != null)
+		{
+			INSTANCE.dispose();
+		}
+		INSTANCE = (provider == null) ? null : new ParserPoolFactory(provider);
+	}
+
 	/**
 	 * Returns a map from language to parser extension. We don't want instances of parsers yet, just info on how to
 	 * generate instances, which we can with the configuration element.
@@ -88,6 +105,12 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	 */
 	private ParserPoolFactory()
 	{
+		this(null);
+	}
+
+	private ParserPoolFactory(ParsingEngine.IParserPoolProvider parserPoolProvider)
+	{
+		fParserPoolProvider = parserPoolProvider;
 		fParsingEngine = new ParsingEngine(this);
 	}
 
@@ -127,6 +150,11 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	 */
 	public synchronized IParserPool getParserPool(String contentTypeId)
 	{
+		if (fParserPoolProvider != null)
+		{
+			return fParserPoolProvider.getParserPool(contentTypeId);
+		}
+
 		IContentTypeManager ctm = Platform.getContentTypeManager();
 		IContentType contentType = ctm.getContentType(contentTypeId);
 		IParserPool result = null;
@@ -230,6 +258,35 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 		return getInstance().fParsingEngine.parse(contentTypeId, parseState);
 	}
 
+	/**
+	 * Parse without going through the cache, see {@link ParsingEngine#parseUncached(String, IParseState)}.
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @return
+	 */
+	public static ParseResult parseUncached(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		return getInstance().fParsingEngine.parseUncached(contentTypeId, parseState);
+	}
+
+	/**
+	 * Parse the source by updating the AST of a previous version of it in place. Pass a null previous result for the
+	 * first parse. See {@link ParsingEngine#reparse(String, IParseState, String, ParseResult)}.
+	 *
+	 * @param contentTypeId
+	 * @param source
+	 * @param previousSource
+	 * @param previousResult
+	 * @return
+	 */
+	public static ParseResult reparse(String contentTypeId, String source, String previousSource,
+			ParseResult previousResult) throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		return getInstance().fParsingEngine.reparse(contentTypeId, new ParseState(source), previousSource,
+				previousResult);
+	}
+
 	/**
 	 * To be used to force the cache to be cleaned. Primarily used for testing, but also if some settings/prefs change
 	 * and we need to wipe cached parse results that conatin markers/warnings/etc.
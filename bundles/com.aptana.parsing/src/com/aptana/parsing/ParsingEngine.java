@@ -397,6 +397,113 @@ public class ParsingEngine
 
 	}
 
+	/**
+	 * Parse the source of the parse state by updating the result of parsing a previous version of it, when the parser
+	 * for the content type is an {@link IIncrementalParser}. Such results never go through the cache. The previous
+	 * result is never modified, since others (outline, folding, occurrences...) may still be reading it: every result
+	 * has a root of its own, which may share the nodes the edit left alone with the previous one. Content types
+	 * without an incremental parser get a regular (cached) parse.
+	 *
+	 * @param contentTypeId
+	 * @param parseState
+	 * @param previousSource
+	 *            The source that produced previousResult, or null to do a full parse
+	 * @param previousResult
+	 *            The result of the previous call, or null to do a full parse
+	 * @return
+	 * @throws Exception
+	 */
+	public ParseResult reparse(String contentTypeId, IParseState parseState, String previousSource,
+			ParseResult previousResult) throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		try
+		{
+			String source = parseState.getSource();
+
+			if (contentTypeId == null || source == null)
+			{
+				return ParseResult.EMPTY;
+			}
+
+			IParserPool pool = fParserPoolProvider.getParserPool(contentTypeId);
+			IParser parser = (pool == null) ? null : pool.checkOut();
+
+			if (!(parser instanceof IIncrementalParser))
+			{
+				if (parser != null)
+				{
+					pool.checkIn(parser);
+				}
+
+				// trees of other parsers are never modified, so they may as well be shared through the cache
+				return parse(contentTypeId, parseState);
+			}
+
+			try
+			{
+				boolean recycling = parser instanceof IRecyclingParser;
+
+				// a tree built by error recovery may not be reproducible piecewise, so only start from clean ones
+				if (previousSource != null && previousResult != null && previousResult.getRootNode() != null
+						&& previousResult.getErrors().isEmpty())
+				{
+					ParseEdit edit = ParseEdit.compute(previousSource, source);
+					if (edit == null)
+					{
+						return previousResult;
+					}
+
+					ParseResult result = ((IIncrementalParser) parser).reparse(parseState, previousResult.getRootNode(),
+							edit);
+					if (result != null)
+					{
+						return result;
+					}
+				}
+
+				if (recycling)
+				{
+					// so that the result can be recycled by the next reparse
+					return ((IIncrementalParser) parser).reparse(parseState, null, null);
+				}
+				return parser.parse(parseState);
+			}
+			finally
+			{
+				pool.checkIn(parser);
+			}
+		}
+		finally
+		{
+			parseState.clearEditState();
+		}
+	}
+
+	/**
+	 * Parse without going through the cache, so the caller gets a tree nobody else holds and may modify it (e.g. move
+	 * it to other offsets).
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @return
+	 * @throws Exception
+	 */
+	public ParseResult parseUncached(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		try
+		{
+			if (contentTypeId == null || parseState.getSource() == null)
+			{
+				return ParseResult.EMPTY;
+			}
+			return noCacheParse(contentTypeId, parseState);
+		}
+		finally
+		{
+			parseState.clearEditState();
+		}
+	}
+
 	private ParseResult noCacheParse(String contentTypeId, IParseState parseState) throws Exception
 	{
 		IParserPool pool = null;
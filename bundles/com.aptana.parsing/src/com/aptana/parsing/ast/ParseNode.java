@@ -7,6 +7,7 @@
  */
 package com.aptana.parsing.ast;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -19,10 +20,12 @@ import com.aptana.parsing.lexer.Range;
 import beaver.spec.ast.Node;
 import beaver.spec.ast.TreeWalker;
 
-public abstract class ParseNode extends Node implements IParseNode
+public abstract class ParseNode extends Node implements IParseNode, Cloneable
 {
-	protected static final class NameNode implements INameNode
+	protected static final class NameNode implements INameNode, Serializable
 	{
+		private static final long serialVersionUID = 1L;
+
 		private final String fName;
 		private final int fStart;
 		private final int fEnd;
@@ -106,6 +109,35 @@ public abstract class ParseNode extends Node implements IParseNode
 		}
 	}
 
+	/**
+	 * Make a copy of this node without its parent and children, see
+	 * {@link com.aptana.parsing.util.ParseUtil#copy(IParseNode)} for copying a whole subtree. Anything else the node
+	 * moves along with itself in {@link #addOffset(int)} must be copied too, so subclasses holding such nodes override
+	 * this method to give the copy its own.
+	 * 
+	 * @return
+	 */
+	public ParseNode copyNode()
+	{
+		ParseNode result;
+
+		try
+		{
+			result = (ParseNode) clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// we're Cloneable
+			throw new IllegalStateException(e);
+		}
+
+		result.fChildren = NO_CHILDREN;
+		result.fChildrenCount = 0;
+		result.fParent = null;
+
+		return result;
+	}
+
 	/**
 	 * addOffset
 	 * 
@@ -7,13 +7,17 @@
  */
 package com.aptana.parsing.ast;
 
+import java.io.Serializable;
+
 import com.aptana.parsing.lexer.IRange;
 
 /**
  * @author Kevin Lindsey
  */
-public class ParseNodeAttribute implements IParseNodeAttribute
+public class ParseNodeAttribute implements IParseNodeAttribute, Serializable
 {
+	private static final long serialVersionUID = 1L;
+
 	private final IParseNode _parent;
 	private final String _name;
 	private final String _value;
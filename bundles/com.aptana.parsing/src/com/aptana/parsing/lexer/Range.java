@@ -7,10 +7,13 @@
  */
 package com.aptana.parsing.lexer;
 
+import java.io.Serializable;
 import java.text.MessageFormat;
 
-public class Range implements IRange
+public class Range implements IRange, Serializable
 {
+	private static final long serialVersionUID = 1L;
+
 	public static final Range EMPTY = new Range(0, -1);
 
 	private int fStart;
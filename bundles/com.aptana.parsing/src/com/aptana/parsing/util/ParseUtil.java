@@ -305,6 +305,62 @@ public class ParseUtil
 		}
 	}
 
+	/**
+	 * Make a deep copy of the specified node and its descendants (and comments, for roots), so the copy can be
+	 * modified while others keep reading the original. The copy has no parent. Nodes are copied one by one through
+	 * {@link ParseNode#copyNode()}, without recursion, so trees of any depth can be copied.
+	 * 
+	 * @param node
+	 *            The node to copy
+	 * @return The copy or null if the node isn't a {@link ParseNode}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends IParseNode> T copy(T node)
+	{
+		if (!(node instanceof ParseNode))
+		{
+			return null;
+		}
+
+		ParseNode result = ((ParseNode) node).copyNode();
+		LinkedList<ParseNode[]> stack = new LinkedList<ParseNode[]>();
+
+		stack.add(new ParseNode[] { (ParseNode) node, result });
+
+		while (!stack.isEmpty())
+		{
+			ParseNode[] pair = stack.removeLast();
+			IParseNode[] children = pair[0].getChildren();
+			IParseNode[] copies = new IParseNode[children.length];
+
+			for (int i = 0; i < children.length; i++)
+			{
+				ParseNode child = (ParseNode) children[i];
+				ParseNode copy = child.copyNode();
+
+				copies[i] = copy;
+				stack.add(new ParseNode[] { child, copy });
+			}
+
+			pair[1].setChildren(copies);
+		}
+
+		if (result instanceof ParseRootNode)
+		{
+			IParseNode[] comments = ((ParseRootNode) result).getCommentNodes();
+			IParseNode[] copies = new IParseNode[comments.length];
+
+			for (int i = 0; i < comments.length; i++)
+			{
+				copies[i] = copy(comments[i]);
+			}
+
+			((ParseRootNode) result).setCommentNodes(copies);
+		}
+
+		return (T) result;
+	}
+
 	/**
 	 * Trim memory usage for the specified node (and its descendants).
 	 * 
@@ -27,6 +27,16 @@ public class NameSelector extends SelectorNode
 		this._name = name;
 	}
 
+	/**
+	 * getName
+	 * 
+	 * @return
+	 */
+	public String getName()
+	{
+		return this._name;
+	}
+
 	public List<Integer> getMatchResults()
 	{
 		// This is always just one segment, so only one value, and it is the length of this match
@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.RandomAccess;
 
 import beaver.Symbol;
 
@@ -36,6 +37,8 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 	 * tie), e.g. text source string wins over source string.</li>
 	 * </ol>
 	 * 
+	 * Callers that look up many scopes against the same selectors should use a {@link ScopeSelectorMatcher} instead.
+	 * 
 	 * @param selectors
 	 * @param scope
 	 * @return
@@ -46,12 +49,20 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 
 		if (!CollectionsUtil.isEmpty(selectors))
 		{
-			List<IScopeSelector> reversed = new ArrayList<IScopeSelector>(selectors);
-
-			Collections.reverse(reversed);
+			// walk backwards so that ties go to the last selector, without copying the collection when we can
+			List<IScopeSelector> list;
+			if (selectors instanceof List && selectors instanceof RandomAccess)
+			{
+				list = (List<IScopeSelector>) selectors;
+			}
+			else
+			{
+				list = new ArrayList<IScopeSelector>(selectors);
+			}
 
-			for (IScopeSelector selector : reversed)
+			for (int i = list.size() - 1; i >= 0; i--)
 			{
+				IScopeSelector selector = list.get(i);
 				if (selector != null && selector.matches(scope))
 				{
 					if (bestMatch == null)
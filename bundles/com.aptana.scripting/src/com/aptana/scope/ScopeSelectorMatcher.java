@@ -0,0 +1,339 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scope;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aptana.core.util.BoundedConcurrentCache;
+
+/**
+ * A fixed set of scope selectors compiled for repeated {@link ScopeSelector#bestMatch(Collection, String)} lookups.
+ * Build one whenever the set of selectors changes (i.e. per theme, or per bundle load) and query it as often as needed.
+ * <p>
+ * Every name a selector requires is indexed in a trie keyed by the dot-separated segments of the name. A lookup walks
+ * each step of the scope through the trie once, which yields the few selectors that can possibly match; only those are
+ * evaluated, and they are ranked exactly as bestMatch would rank them (ties go to the selector that came last).
+ * Results are kept in a bounded cache, so repeated lookups of a scope don't take any lock. The same goes for
+ * {@link #getMatches(String)}, which filters rather than ranks.
+ */
+public class ScopeSelectorMatcher
+{
+	private static final int DEFAULT_CACHE_SIZE = 1000;
+
+	/**
+	 * Entry to signal a scope matched by none of the selectors, since the cache can't hold null.
+	 */
+	private static final IScopeSelector NO_MATCH = new MatchAnyScopeSelector();
+
+	private static class TrieNode
+	{
+		private Map<String, TrieNode> children;
+		private List<Integer> selectors;
+
+		TrieNode getChild(String segment)
+		{
+			return (children == null) ? null : children.get(segment);
+		}
+
+		TrieNode addChild(String segment)
+		{
+			if (children == null)
+			{
+				children = new HashMap<String, TrieNode>();
+			}
+			TrieNode child = children.get(segment);
+			if (child == null)
+			{
+				child = new TrieNode();
+				children.put(segment, child);
+			}
+			return child;
+		}
+
+		void addSelector(int index)
+		{
+			if (selectors == null)
+			{
+				selectors = new ArrayList<Integer>(2);
+			}
+			selectors.add(index);
+		}
+	}
+
+	private final IScopeSelector[] selectors;
+	private final Set<IScopeSelector> selectorSet;
+	private final TrieNode root;
+
+	/**
+	 * Selectors that don't require any particular name, and so are candidates for every scope.
+	 */
+	private final BitSet unconstrained;
+	private final BoundedConcurrentCache<String, IScopeSelector> cache;
+	private final BoundedConcurrentCache<String, Set<IScopeSelector>> matchesCache;
+
+	/**
+	 * ScopeSelectorMatcher
+	 * 
+	 * @param selectors
+	 *            The selectors to choose from, in the order bestMatch would be given them. Null entries are ignored
+	 */
+	public ScopeSelectorMatcher(Collection<? extends IScopeSelector> selectors)
+	{
+		this(selectors, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * ScopeSelectorMatcher
+	 * 
+	 * @param selectors
+	 *            The selectors to choose from, in the order bestMatch would be given them. Null entries are ignored
+	 * @param cacheSize
+	 *            The number of scopes whose best match is remembered
+	 */
+	public ScopeSelectorMatcher(Collection<? extends IScopeSelector> selectors, int cacheSize)
+	{
+		this.selectors = selectors.toArray(new IScopeSelector[selectors.size()]);
+		this.selectorSet = new HashSet<IScopeSelector>(selectors);
+		this.root = new TrieNode();
+		this.unconstrained = new BitSet(this.selectors.length);
+		this.cache = new BoundedConcurrentCache<String, IScopeSelector>(cacheSize);
+		this.matchesCache = new BoundedConcurrentCache<String, Set<IScopeSelector>>(cacheSize);
+
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < this.selectors.length; i++)
+		{
+			IScopeSelector selector = this.selectors[i];
+			if (selector == null)
+			{
+				continue;
+			}
+			names.clear();
+			if (!(selector instanceof ScopeSelector)
+					|| !collectRequiredNames(((ScopeSelector) selector).getRoot(), names))
+			{
+				unconstrained.set(i);
+				continue;
+			}
+			for (String name : names)
+			{
+				TrieNode node = root;
+				for (String segment : name.split("\\.")) //$NON-NLS-1$
+				{
+					node = node.addChild(segment);
+				}
+				node.addSelector(i);
+			}
+		}
+	}
+
+	/**
+	 * Collects names such that the node can only match a scope in which a step starts with one of them. Returns false
+	 * if there's no such set, i.e. the node must always be evaluated. A node that can never match leaves the list
+	 * untouched.
+	 * 
+	 * @param node
+	 * @param names
+	 * @return
+	 */
+	private static boolean collectRequiredNames(ISelectorNode node, List<String> names)
+	{
+		if (node == null)
+		{
+			return true;
+		}
+		if (node instanceof NameSelector)
+		{
+			String name = ((NameSelector) node).getName();
+			if (name != null && name.length() > 0)
+			{
+				names.add(name);
+			}
+			return true;
+		}
+		if (node instanceof GroupSelector)
+		{
+			return collectRequiredNames(((GroupSelector) node).getChild(), names);
+		}
+		if (node instanceof DescendantSelector || node instanceof IntersectionSelector)
+		{
+			// both sides have to match, so the deepest one is enough to rule a selector out
+			return collectRequiredNames(((BinarySelector) node).getRightChild(), names);
+		}
+		if (node instanceof NegativeLookaheadSelector)
+		{
+			return collectRequiredNames(((BinarySelector) node).getLeftChild(), names);
+		}
+		if (node instanceof OrSelector)
+		{
+			BinarySelector or = (BinarySelector) node;
+			return collectRequiredNames(or.getLeftChild(), names)
+					&& collectRequiredNames(or.getRightChild(), names);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the same selector {@link ScopeSelector#bestMatch(Collection, String)} would return for this matcher's
+	 * selectors.
+	 * 
+	 * @param scope
+	 * @return The best matching selector, or null if none of them matches
+	 */
+	public IScopeSelector bestMatch(String scope)
+	{
+		if (scope == null)
+		{
+			return null;
+		}
+		IScopeSelector result = cache.get(scope);
+		if (result == null)
+		{
+			result = computeBestMatch(scope);
+			cache.put(scope, (result == null) ? NO_MATCH : result);
+		}
+		return (result == NO_MATCH) ? null : result;
+	}
+
+	/**
+	 * Returns true if the selector (or an equal one) is one of this matcher's selectors, i.e. whether
+	 * {@link #getMatches(String)} can tell if it matches.
+	 * 
+	 * @param selector
+	 * @return
+	 */
+	public boolean contains(IScopeSelector selector)
+	{
+		return selector != null && selectorSet.contains(selector);
+	}
+
+	/**
+	 * Returns all of this matcher's selectors that match the scope.
+	 * 
+	 * @param scope
+	 * @return An unmodifiable set of the matching selectors
+	 */
+	public Set<IScopeSelector> getMatches(String scope)
+	{
+		if (scope == null)
+		{
+			return Collections.emptySet();
+		}
+		Set<IScopeSelector> result = matchesCache.get(scope);
+		if (result == null)
+		{
+			result = computeMatches(scope);
+			matchesCache.put(scope, result);
+		}
+		return result;
+	}
+
+	private synchronized Set<IScopeSelector> computeMatches(String scope)
+	{
+		BitSet candidates = (BitSet) unconstrained.clone();
+		collectCandidates(scope, candidates);
+
+		Set<IScopeSelector> result = new HashSet<IScopeSelector>();
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+		{
+			if (selectors[i].matches(scope))
+			{
+				result.add(selectors[i]);
+			}
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Selectors keep the state of their last match (which is what they're ranked on), so evaluation has to be
+	 * serialized.
+	 * 
+	 * @param scope
+	 * @return
+	 */
+	private synchronized IScopeSelector computeBestMatch(String scope)
+	{
+		BitSet candidates = (BitSet) unconstrained.clone();
+		collectCandidates(scope, candidates);
+
+		int[] indices = new int[candidates.cardinality()];
+		int count = 0;
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+		{
+			indices[count++] = i;
+		}
+
+		IScopeSelector bestMatch = null;
+		for (int i = count - 1; i >= 0; i--)
+		{
+			IScopeSelector selector = selectors[indices[i]];
+			if (selector.matches(scope) && (bestMatch == null || selector.compareTo(bestMatch) > 0))
+			{
+				bestMatch = selector;
+			}
+		}
+		return bestMatch;
+	}
+
+	/**
+	 * Walks every whitespace-separated step of the scope down the trie, one dot-separated segment at a time, marking
+	 * the selectors of each node passed.
+	 * 
+	 * @param scope
+	 * @param candidates
+	 */
+	private void collectCandidates(String scope, BitSet candidates)
+	{
+		int length = scope.length();
+		int start = 0;
+		TrieNode node = root;
+		for (int i = 0; i <= length; i++)
+		{
+			char c = (i < length) ? scope.charAt(i) : ' ';
+			boolean endOfStep = isStepSeparator(c);
+			if (c != '.' && !endOfStep)
+			{
+				continue;
+			}
+			if (node != null && (c == '.' || i > start))
+			{
+				node = node.getChild(scope.substring(start, i));
+				if (node != null && node.selectors != null)
+				{
+					for (Integer index : node.selectors)
+					{
+						candidates.set(index);
+					}
+				}
+			}
+			start = i + 1;
+			if (endOfStep)
+			{
+				node = root;
+			}
+		}
+	}
+
+	/**
+	 * Matches the whitespace class {@link MatchContext} splits scopes on.
+	 * 
+	 * @param c
+	 * @return
+	 */
+	private static boolean isStepSeparator(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+}
@@ -147,8 +147,11 @@ public abstract class AbstractBundleElement extends AbstractElement
 
 		if (ObjectUtil.areNotEqual(this._scope, scope))
 		{
-			this._scope = BundleManager.getInstance().sharedString(scope);
+			BundleManager manager = BundleManager.getInstance();
+
+			this._scope = manager.sharedString(scope);
 			this._scopeSelector = null;
+			manager.elementScopesChanged();
 		}
 	}
 
@@ -0,0 +1,1069 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.scripting.IDebugScopes;
+import com.aptana.scripting.ScriptingActivator;
+
+/**
+ * Stores the elements of a loaded bundle in a binary file so later sessions can restore the bundle without evaluating
+ * its scripts. A cache file begins with a fingerprint of every file that went into the bundle: its scripts, its
+ * localization files and the libraries those scripts required. The cache is only used while each file still has the
+ * length and modification time recorded for it. If only the modification time differs, the file's checksum decides,
+ * so a touched but unchanged file does not invalidate the cache.
+ * <p>
+ * Only bundles made up entirely of commands, snippets, snippet categories, menus, smart typing pairs and build paths
+ * are cached. Anything that needs a live Ruby object (environments, folding and indentation regular expressions,
+ * Ruby-valued properties, ...) keeps the bundle on the script path. Invoke blocks are the exception: a cached command
+ * only records the platforms it has blocks for and its position in its script. The first time a block is needed, the
+ * script is evaluated again without touching the bundle and the blocks are taken from the command at that position.
+ * </p>
+ */
+class BundleCacher
+{
+	/**
+	 * Increment whenever the layout of the cache file changes
+	 */
+	private static final int VERSION = 2;
+
+	private static final String CACHE_FILE_EXTENSION = ".cache"; //$NON-NLS-1$
+
+	// element kinds
+	private static final byte COMMAND = 1;
+	private static final byte SNIPPET = 2;
+	private static final byte SNIPPET_CATEGORY = 3;
+	private static final byte MENU = 4;
+	private static final byte SMART_TYPING_PAIRS = 5;
+	private static final byte BUILD_PATH = 6;
+
+	// custom property value types
+	private static final byte NULL_VALUE = 0;
+	private static final byte STRING_VALUE = 1;
+	private static final byte STRING_ARRAY_VALUE = 2;
+	private static final byte BOOLEAN_VALUE = 3;
+	private static final byte LONG_VALUE = 4;
+
+	/**
+	 * Thrown while writing when a bundle contains something the cache can't represent
+	 */
+	private static class UncacheableException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		UncacheableException(String message)
+		{
+			super(message);
+		}
+	}
+
+	private final BundleManager manager;
+	private final File cacheDirectory;
+	private final String stamp;
+
+	/**
+	 * BundleCacher
+	 *
+	 * @param manager
+	 *            The bundle manager whose bundles are cached and restored
+	 * @param cacheDirectory
+	 *            The directory holding the cache files
+	 * @param stamp
+	 *            Identifies everything besides the bundle's own files that affects the elements a bundle defines, like
+	 *            the scripting framework version and the locale. Caches written with a different stamp are ignored
+	 */
+	BundleCacher(BundleManager manager, File cacheDirectory, String stamp)
+	{
+		this.manager = manager;
+		this.cacheDirectory = cacheDirectory;
+		this.stamp = stamp;
+	}
+
+	/**
+	 * Write the bundle currently loaded from the specified directory to its cache file. Any existing cache file is
+	 * removed if the bundle can't be cached.
+	 *
+	 * @param bundleDirectory
+	 * @return true if the cache file was written
+	 */
+	boolean cache(File bundleDirectory)
+	{
+		File cacheFile = getCacheFile(bundleDirectory);
+		List<BundleElement> bundles = getBundles(bundleDirectory);
+
+		if (bundles.size() != 1)
+		{
+			cacheFile.delete();
+			return false;
+		}
+
+		BundleElement bundle = bundles.get(0);
+		List<File> sources = getSources(bundleDirectory);
+		File tempFile = new File(cacheFile.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = null;
+		boolean written = false;
+
+		try
+		{
+			if (!this.cacheDirectory.isDirectory() && !this.cacheDirectory.mkdirs())
+			{
+				return false;
+			}
+
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+			out.writeInt(VERSION);
+			writeString(out, this.stamp);
+			writeString(out, bundleDirectory.getAbsolutePath());
+			writeFingerprints(out, sources);
+			writeFingerprints(out, getLibraries(sources));
+			writeLibraryReferences(out, sources);
+			writeBundle(out, bundle, sources);
+
+			out.close();
+			out = null;
+
+			cacheFile.delete();
+			written = tempFile.renameTo(cacheFile);
+		}
+		catch (UncacheableException e)
+		{
+			showCacheInfo(MessageFormat.format("Not caching {0}: {1}", bundleDirectory, e.getMessage())); //$NON-NLS-1$
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(ScriptingActivator.getDefault(),
+					MessageFormat.format(Messages.BundleCacher_SerializationExceptionDeletingCacheFile, cacheFile), e);
+		}
+		finally
+		{
+			if (out != null)
+			{
+				try
+				{
+					out.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+			}
+
+			if (!written)
+			{
+				tempFile.delete();
+				cacheFile.delete();
+			}
+		}
+
+		return written;
+	}
+
+	/**
+	 * Remove the cache file of the specified bundle directory
+	 *
+	 * @param bundleDirectory
+	 */
+	void delete(File bundleDirectory)
+	{
+		getCacheFile(bundleDirectory).delete();
+	}
+
+	/**
+	 * Restore the bundle in the specified directory from its cache file and add it to the bundle manager
+	 *
+	 * @param bundleDirectory
+	 * @return The restored bundle or null if there is no up to date cache for the directory
+	 */
+	BundleElement load(File bundleDirectory)
+	{
+		File cacheFile = getCacheFile(bundleDirectory);
+
+		// restoring on top of a loaded bundle would leave us with two copies of every element
+		if (!cacheFile.isFile() || this.manager.hasBundleAtPath(bundleDirectory))
+		{
+			return null;
+		}
+
+		List<AbstractElement> created = new ArrayList<AbstractElement>();
+		DataInputStream in = null;
+
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+
+			// @formatter:off
+			if (in.readInt() != VERSION
+				|| !this.stamp.equals(readString(in))
+				|| !bundleDirectory.getAbsolutePath().equals(readString(in))
+				|| !readFingerprints(in, getSources(bundleDirectory), bundleDirectory)
+				|| !readFingerprints(in, null, bundleDirectory))
+			{
+				return null;
+			}
+			// @formatter:on
+
+			Map<String, String[]> libraryReferences = readLibraryReferences(in);
+			BundleElement bundle = readBundle(in, created);
+			List<AbstractBundleElement> children = readChildren(in, created);
+
+			this.manager.addBundle(bundle);
+
+			for (AbstractBundleElement child : children)
+			{
+				bundle.addChild(child);
+			}
+
+			LibraryCrossReference xref = LibraryCrossReference.getInstance();
+
+			for (Map.Entry<String, String[]> entry : libraryReferences.entrySet())
+			{
+				xref.registerLibraryReference(entry.getKey(), entry.getValue());
+			}
+
+			return bundle;
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(ScriptingActivator.getDefault(),
+					MessageFormat.format(Messages.BundleCacher_LoadingCacheError, bundleDirectory), e);
+
+			for (AbstractElement element : created)
+			{
+				AbstractElement.unregisterElement(element);
+			}
+
+			cacheFile.delete();
+
+			return null;
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the files whose content determines the elements of the bundle in the specified directory: its scripts in
+	 * load order followed by its localization files
+	 *
+	 * @param bundleDirectory
+	 * @return
+	 */
+	private List<File> getSources(File bundleDirectory)
+	{
+		List<File> result = new ArrayList<File>(this.manager.getBundleScripts(bundleDirectory));
+
+		result.addAll(this.manager.localizationFiles(bundleDirectory));
+
+		return result;
+	}
+
+	private List<BundleElement> getBundles(File bundleDirectory)
+	{
+		List<BundleElement> result = new ArrayList<BundleElement>();
+
+		// getBundleFromPath only returns the last bundle, so look for all bundles defined by the bundle script
+		for (AbstractElement element : AbstractElement.getElementsByPath(new File(bundleDirectory,
+				BundleManager.BUNDLE_FILE).getAbsolutePath()))
+		{
+			if (element instanceof BundleElement)
+			{
+				result.add((BundleElement) element);
+			}
+		}
+
+		return result;
+	}
+
+	private List<File> getLibraries(List<File> sources)
+	{
+		List<File> result = new ArrayList<File>();
+		LibraryCrossReference xref = LibraryCrossReference.getInstance();
+
+		for (File source : sources)
+		{
+			for (String library : xref.getLibrariesFromPath(source.getAbsolutePath()))
+			{
+				File file = new File(library);
+
+				if (!result.contains(file))
+				{
+					result.add(file);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private File getCacheFile(File bundleDirectory)
+	{
+		return new File(this.cacheDirectory, StringUtil.md5(bundleDirectory.getAbsolutePath()) + CACHE_FILE_EXTENSION);
+	}
+
+	private void writeFingerprints(DataOutputStream out, List<File> files) throws IOException
+	{
+		out.writeInt(files.size());
+
+		for (File file : files)
+		{
+			writeString(out, file.getAbsolutePath());
+			out.writeLong(file.length());
+			out.writeLong(file.lastModified());
+			out.writeLong(checksum(file));
+		}
+	}
+
+	/**
+	 * Read a list of file fingerprints and check them against the current state of the file system
+	 *
+	 * @param in
+	 * @param expectedFiles
+	 *            The files the list must contain, in order, or null if the list may name any files
+	 * @param bundleDirectory
+	 * @return true if all files are unchanged
+	 * @throws IOException
+	 */
+	private boolean readFingerprints(DataInputStream in, List<File> expectedFiles, File bundleDirectory)
+			throws IOException
+	{
+		int count = in.readInt();
+
+		if (expectedFiles != null && expectedFiles.size() != count)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < count; i++)
+		{
+			File file = new File(readString(in));
+			long length = in.readLong();
+			long lastModified = in.readLong();
+			long checksum = in.readLong();
+
+			if (expectedFiles != null && !expectedFiles.get(i).getAbsoluteFile().equals(file))
+			{
+				return false;
+			}
+
+			if (!file.isFile())
+			{
+				showCacheInfo(MessageFormat.format(Messages.BundleCacher_FileReferencedInCacheMissingMsg, file,
+						bundleDirectory));
+				return false;
+			}
+
+			if (file.length() != length || (file.lastModified() != lastModified && checksum(file) != checksum))
+			{
+				showCacheInfo(MessageFormat.format(Messages.BundleCacher_OutOfDateCacheMsg, file));
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void writeLibraryReferences(DataOutputStream out, List<File> sources) throws IOException
+	{
+		LibraryCrossReference xref = LibraryCrossReference.getInstance();
+		Map<String, String[]> references = new HashMap<String, String[]>();
+
+		for (File source : sources)
+		{
+			String path = source.getAbsolutePath();
+			String[] libraries = xref.getLibrariesFromPath(path);
+
+			if (libraries.length > 0)
+			{
+				references.put(path, libraries);
+			}
+		}
+
+		out.writeInt(references.size());
+
+		for (Map.Entry<String, String[]> entry : references.entrySet())
+		{
+			writeString(out, entry.getKey());
+			writeStrings(out, entry.getValue());
+		}
+	}
+
+	private Map<String, String[]> readLibraryReferences(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		Map<String, String[]> result = new HashMap<String, String[]>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			String path = readString(in);
+			List<String> libraries = readStrings(in);
+
+			result.put(path, libraries.toArray(new String[libraries.size()]));
+		}
+
+		return result;
+	}
+
+	private void writeBundle(DataOutputStream out, BundleElement bundle, List<File> sources) throws IOException
+	{
+		// these hold RubyRegexp instances which we can't restore without a Ruby runtime
+		if (!bundle.getFoldingStartMarkers().isEmpty() || !bundle.getFoldingStopMarkers().isEmpty()
+				|| !bundle.getIncreaseIndentMarkers().isEmpty() || !bundle.getDecreaseIndentMarkers().isEmpty())
+		{
+			throw new UncacheableException("folding or indentation markers"); //$NON-NLS-1$
+		}
+
+		writeString(out, bundle.getPath());
+		writeString(out, bundle.getDisplayName());
+		writeString(out, bundle.getAuthor());
+		writeString(out, bundle.getCopyright());
+		writeString(out, bundle.getDescription());
+		writeString(out, bundle.getLicense());
+		writeString(out, bundle.getLicenseUrl());
+		writeString(out, bundle.getRepository());
+		writeStrings(out, bundle.getFileTypes());
+		writeStringMap(out, bundle.getFileTypeRegistry());
+		writeProperties(out, bundle.getCustomProperties());
+
+		List<AbstractBundleElement> children = bundle.getChildren();
+		List<String> sourcePaths = new ArrayList<String>(sources.size());
+
+		for (File source : sources)
+		{
+			sourcePaths.add(source.getAbsolutePath());
+		}
+
+		out.writeInt(children.size());
+
+		for (AbstractBundleElement child : children)
+		{
+			// elements defined outside of the fingerprinted files could change without us noticing
+			if (!sourcePaths.contains(child.getPath()))
+			{
+				throw new UncacheableException("element defined in " + child.getPath()); //$NON-NLS-1$
+			}
+
+			writeElement(out, child);
+		}
+	}
+
+	private BundleElement readBundle(DataInputStream in, List<AbstractElement> created) throws IOException
+	{
+		BundleElement bundle = new BundleElement(readString(in));
+		created.add(bundle);
+
+		bundle.setDisplayName(readString(in));
+		bundle.setAuthor(readString(in));
+		bundle.setCopyright(readString(in));
+		bundle.setDescription(readString(in));
+		bundle.setLicense(readString(in));
+		bundle.setLicenseUrl(readString(in));
+		bundle.setRepository(readString(in));
+
+		bundle.setFileTypes(readStrings(in));
+		bundle.setFileTypeRegistry(readStringMap(in));
+		bundle.setCustomProperties(readProperties(in));
+
+		return bundle;
+	}
+
+	private List<AbstractBundleElement> readChildren(DataInputStream in, List<AbstractElement> created)
+			throws IOException
+	{
+		int count = in.readInt();
+		List<AbstractBundleElement> result = new ArrayList<AbstractBundleElement>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			result.add(readElement(in, created));
+		}
+
+		return result;
+	}
+
+	private void writeElement(DataOutputStream out, AbstractBundleElement element) throws IOException
+	{
+		// NOTE: we compare classes rather than using instanceof so sub-types we don't know about aren't cached as their
+		// parent type
+		Class<?> type = element.getClass();
+
+		if (type == CommandElement.class)
+		{
+			out.writeByte(COMMAND);
+		}
+		else if (type == SnippetElement.class)
+		{
+			out.writeByte(SNIPPET);
+		}
+		else if (type == SnippetCategoryElement.class)
+		{
+			out.writeByte(SNIPPET_CATEGORY);
+		}
+		else if (type == MenuElement.class)
+		{
+			out.writeByte(MENU);
+		}
+		else if (type == SmartTypingPairsElement.class)
+		{
+			out.writeByte(SMART_TYPING_PAIRS);
+		}
+		else if (type == BuildPathElement.class)
+		{
+			out.writeByte(BUILD_PATH);
+		}
+		else
+		{
+			throw new UncacheableException(element.getElementName());
+		}
+
+		writeString(out, element.getPath());
+		writeString(out, element.getDisplayName());
+		writeString(out, element.getScope());
+		writeProperties(out, element.getCustomProperties());
+
+		if (element instanceof CommandElement)
+		{
+			writeCommand(out, (CommandElement) element);
+
+			if (element instanceof SnippetElement)
+			{
+				SnippetElement snippet = (SnippetElement) element;
+
+				writeString(out, snippet.getExpansion());
+				writeString(out, snippet.getCategory());
+				writeStrings(out, snippet.getTags());
+				writeString(out, snippet.getIconPath());
+				writeString(out, snippet.getDescription());
+			}
+		}
+		else if (element instanceof SnippetCategoryElement)
+		{
+			writeString(out, ((SnippetCategoryElement) element).getIconPath());
+		}
+		else if (element instanceof MenuElement)
+		{
+			MenuElement menu = (MenuElement) element;
+			List<MenuElement> children = menu.getChildren();
+
+			writeString(out, menu.getCommandName());
+			out.writeInt(children.size());
+
+			for (MenuElement child : children)
+			{
+				writeElement(out, child);
+			}
+		}
+		else if (element instanceof SmartTypingPairsElement)
+		{
+			List<Character> pairs = ((SmartTypingPairsElement) element).getPairs();
+
+			if (pairs == null)
+			{
+				out.writeInt(-1);
+			}
+			else
+			{
+				out.writeInt(pairs.size());
+
+				for (Character pair : pairs)
+				{
+					out.writeChar(pair);
+				}
+			}
+		}
+		else if (element instanceof BuildPathElement)
+		{
+			writeString(out, ((BuildPathElement) element).getBuildPath());
+		}
+	}
+
+	private AbstractBundleElement readElement(DataInputStream in, List<AbstractElement> created) throws IOException
+	{
+		byte kind = in.readByte();
+		String path = readString(in);
+		AbstractBundleElement element;
+
+		switch (kind)
+		{
+			case COMMAND:
+				element = new CommandElement(path);
+				break;
+
+			case SNIPPET:
+				element = new SnippetElement(path);
+				break;
+
+			case SNIPPET_CATEGORY:
+				element = new SnippetCategoryElement(path);
+				break;
+
+			case MENU:
+				element = new MenuElement(path);
+				break;
+
+			case SMART_TYPING_PAIRS:
+				element = new SmartTypingPairsElement(path);
+				break;
+
+			case BUILD_PATH:
+				element = new BuildPathElement(path);
+				break;
+
+			default:
+				throw new IOException("Unknown element kind: " + kind); //$NON-NLS-1$
+		}
+
+		created.add(element);
+
+		element.setDisplayName(readString(in));
+		element.setScope(readString(in));
+		element.setCustomProperties(readProperties(in));
+
+		if (element instanceof CommandElement)
+		{
+			readCommand(in, (CommandElement) element);
+
+			if (element instanceof SnippetElement)
+			{
+				SnippetElement snippet = (SnippetElement) element;
+
+				snippet.setExpansion(readString(in));
+				snippet.setCategory(readString(in));
+				snippet.setTags(readStrings(in));
+				snippet.setIconPath(readString(in));
+				snippet.setDescription(readString(in));
+			}
+		}
+		else if (element instanceof SnippetCategoryElement)
+		{
+			((SnippetCategoryElement) element).setIconPath(readString(in));
+		}
+		else if (element instanceof MenuElement)
+		{
+			MenuElement menu = (MenuElement) element;
+
+			menu.setCommandName(readString(in));
+
+			int count = in.readInt();
+
+			for (int i = 0; i < count; i++)
+			{
+				menu.addMenu((MenuElement) readElement(in, created));
+			}
+		}
+		else if (element instanceof SmartTypingPairsElement)
+		{
+			int count = in.readInt();
+
+			if (count >= 0)
+			{
+				List<Character> pairs = new ArrayList<Character>(count);
+
+				for (int i = 0; i < count; i++)
+				{
+					pairs.add(in.readChar());
+				}
+
+				((SmartTypingPairsElement) element).setPairs(pairs);
+			}
+		}
+		else if (element instanceof BuildPathElement)
+		{
+			((BuildPathElement) element).setBuildPath(readString(in));
+		}
+
+		return element;
+	}
+
+	private void writeCommand(DataOutputStream out, CommandElement command) throws IOException
+	{
+		Map<Platform, String> invokes = command.getInvokeStrings();
+		out.writeInt(invokes.size());
+
+		for (Map.Entry<Platform, String> entry : invokes.entrySet())
+		{
+			writeString(out, entry.getKey().getName());
+			writeString(out, entry.getValue());
+		}
+
+		Set<Platform> blockPlatforms = command.getInvokeBlockPlatforms();
+		out.writeInt(blockPlatforms.size());
+
+		for (Platform platform : blockPlatforms)
+		{
+			writeString(out, platform.getName());
+		}
+
+		out.writeInt(command.getDefinitionIndex());
+
+		Map<Platform, List<String>> keyBindings = command.getKeyBindingMap();
+
+		if (keyBindings == null)
+		{
+			out.writeInt(0);
+		}
+		else
+		{
+			out.writeInt(keyBindings.size());
+
+			for (Map.Entry<Platform, List<String>> entry : keyBindings.entrySet())
+			{
+				writeString(out, entry.getKey().getName());
+				writeStrings(out, entry.getValue());
+			}
+		}
+
+		InputType[] inputTypes = command.getInputTypes();
+		out.writeInt(inputTypes.length);
+
+		for (InputType inputType : inputTypes)
+		{
+			if (inputType == null)
+			{
+				throw new UncacheableException("undefined input type"); //$NON-NLS-1$
+			}
+
+			writeString(out, inputType.getName());
+		}
+
+		IPath workingDirectoryPath = command.getWorkingDirectoryPath();
+
+		writeString(out, command.getInputPath());
+		writeString(out, command.getOutputType());
+		writeString(out, command.getOutputPath());
+		out.writeBoolean(command.isAsync());
+		writeString(out, command.getRunType());
+		writeString(out, command.getWorkingDirectoryType().getName());
+		writeString(out, (workingDirectoryPath != null) ? workingDirectoryPath.toPortableString() : null);
+	}
+
+	private void readCommand(DataInputStream in, CommandElement command) throws IOException
+	{
+		int count = in.readInt();
+
+		for (int i = 0; i < count; i++)
+		{
+			command.setInvoke(readString(in), readString(in));
+		}
+
+		count = in.readInt();
+
+		for (int i = 0; i < count; i++)
+		{
+			command.setCachedInvokeBlock(readString(in));
+		}
+
+		command.setDefinitionIndex(in.readInt());
+
+		count = in.readInt();
+
+		if (count > 0)
+		{
+			Map<Platform, List<String>> keyBindings = new HashMap<Platform, List<String>>(count);
+
+			for (int i = 0; i < count; i++)
+			{
+				keyBindings.put(Platform.get(readString(in)), readStrings(in));
+			}
+
+			command.setKeyBindingMap(keyBindings);
+		}
+
+		count = in.readInt();
+
+		String[] inputTypes = new String[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			inputTypes[i] = readString(in);
+		}
+
+		command.setInputType(inputTypes);
+		command.setInputPath(readString(in));
+		command.setOutputType(readString(in));
+		command.setOutputPath(readString(in));
+		command.setAsync(in.readBoolean());
+		command.setRunType(readString(in));
+		command.setWorkingDirectoryType(readString(in));
+
+		String workingDirectoryPath = readString(in);
+
+		if (workingDirectoryPath != null)
+		{
+			command.setWorkingDirectoryPath(Path.fromPortableString(workingDirectoryPath));
+		}
+	}
+
+	private void writeProperties(DataOutputStream out, Map<String, Object> properties) throws IOException
+	{
+		if (properties == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+
+		out.writeInt(properties.size());
+
+		for (Map.Entry<String, Object> entry : properties.entrySet())
+		{
+			Object value = entry.getValue();
+
+			writeString(out, entry.getKey());
+
+			if (value == null)
+			{
+				out.writeByte(NULL_VALUE);
+			}
+			else if (value instanceof String)
+			{
+				out.writeByte(STRING_VALUE);
+				writeString(out, (String) value);
+			}
+			else if (value instanceof String[])
+			{
+				out.writeByte(STRING_ARRAY_VALUE);
+				writeStrings(out, (String[]) value);
+			}
+			else if (value instanceof Boolean)
+			{
+				out.writeByte(BOOLEAN_VALUE);
+				out.writeBoolean((Boolean) value);
+			}
+			else if (value instanceof Long || value instanceof Integer)
+			{
+				// NOTE: JRuby hands us Fixnums as Longs
+				out.writeByte(LONG_VALUE);
+				out.writeLong(((Number) value).longValue());
+			}
+			else
+			{
+				throw new UncacheableException("property " + entry.getKey()); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private Map<String, Object> readProperties(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+
+		if (count < 0)
+		{
+			return null;
+		}
+
+		Map<String, Object> result = new HashMap<String, Object>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			String key = readString(in);
+			byte type = in.readByte();
+
+			switch (type)
+			{
+				case NULL_VALUE:
+					result.put(key, null);
+					break;
+
+				case STRING_VALUE:
+					result.put(key, readString(in));
+					break;
+
+				case STRING_ARRAY_VALUE:
+					List<String> values = readStrings(in);
+					result.put(key, values.toArray(new String[values.size()]));
+					break;
+
+				case BOOLEAN_VALUE:
+					result.put(key, in.readBoolean());
+					break;
+
+				case LONG_VALUE:
+					result.put(key, in.readLong());
+					break;
+
+				default:
+					throw new IOException("Unknown property type: " + type); //$NON-NLS-1$
+			}
+		}
+
+		return result;
+	}
+
+	private void writeStringMap(DataOutputStream out, Map<String, String> map) throws IOException
+	{
+		out.writeInt(map.size());
+
+		for (Map.Entry<String, String> entry : map.entrySet())
+		{
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+
+	private Map<String, String> readStringMap(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		Map<String, String> result = new HashMap<String, String>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			result.put(readString(in), readString(in));
+		}
+
+		return result;
+	}
+
+	private void writeStrings(DataOutputStream out, String[] values) throws IOException
+	{
+		out.writeInt(values.length);
+
+		for (String value : values)
+		{
+			writeString(out, value);
+		}
+	}
+
+	private void writeStrings(DataOutputStream out, List<?> values) throws IOException
+	{
+		out.writeInt(values.size());
+
+		for (Object value : values)
+		{
+			writeString(out, (value != null) ? value.toString() : null);
+		}
+	}
+
+	private List<String> readStrings(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		List<String> result = new ArrayList<String>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			result.add(readString(in));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Write a possibly null string. We don't use writeUTF since it is limited to 64k, which a snippet expansion could
+	 * conceivably exceed.
+	 *
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	private void writeString(DataOutputStream out, String value) throws IOException
+	{
+		if (value == null)
+		{
+			out.writeInt(-1);
+		}
+		else
+		{
+			byte[] bytes = value.getBytes(IOUtil.UTF_8);
+
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private String readString(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+
+		if (length < 0)
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+
+		return new String(bytes, IOUtil.UTF_8);
+	}
+
+	private long checksum(File file) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		InputStream in = null;
+
+		try
+		{
+			in = new FileInputStream(file);
+
+			byte[] buffer = new byte[8192];
+			int count;
+
+			while ((count = in.read(buffer)) != -1)
+			{
+				crc.update(buffer, 0, count);
+			}
+		}
+		catch (FileNotFoundException e)
+		{
+			return -1;
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+			}
+		}
+
+		return crc.getValue();
+	}
+
+	private void showCacheInfo(String message)
+	{
+		IdeLog.logInfo(ScriptingActivator.getDefault(), message, IDebugScopes.SHOW_BUNDLE_LOAD_INFO);
+	}
+}
@@ -82,13 +82,14 @@ public class BundleElement extends AbstractElement
 	}
 
 	/**
-	 * addChild
+	 * addChild. Elements defined by a script being evaluated by {@link BundleManager#evaluateDetached(File)} are
+	 * ignored
 	 * 
 	 * @param element
 	 */
 	public void addChild(AbstractBundleElement element)
 	{
-		if (element != null)
+		if (element != null && !BundleManager.getInstance().isEvaluatingDetached(element.getPath()))
 		{
 			// removes the equivalent element if one exists
 			_children.remove(element);
@@ -103,6 +104,7 @@ public class BundleElement extends AbstractElement
 			}
 
 			element.setOwningBundle(this);
+			BundleManager.getInstance().elementScopesChanged();
 
 			if (context != null)
 			{
@@ -369,6 +371,8 @@ public class BundleElement extends AbstractElement
 		{
 			this._decreaseIndentMarkers = indentMarkers;
 		}
+
+		BundleManager.getInstance().scopedMarkersChanged();
 	}
 
 	/**
@@ -535,6 +539,8 @@ public class BundleElement extends AbstractElement
 		{
 			this._foldingStartMarkers = startMarkers;
 		}
+
+		BundleManager.getInstance().scopedMarkersChanged();
 	}
 
 	/**
@@ -572,6 +578,8 @@ public class BundleElement extends AbstractElement
 		{
 			this._foldingStopMarkers = stopMarkers;
 		}
+
+		BundleManager.getInstance().scopedMarkersChanged();
 	}
 
 	/**
@@ -609,6 +617,8 @@ public class BundleElement extends AbstractElement
 		{
 			this._increaseIndentMarkers = indentMarkers;
 		}
+
+		BundleManager.getInstance().scopedMarkersChanged();
 	}
 
 	/**
@@ -856,6 +866,8 @@ public class BundleElement extends AbstractElement
 		boolean removed = this._children.remove(element);
 		if (removed)
 		{
+			BundleManager.getInstance().elementScopesChanged();
+
 			if (context != null)
 			{
 				context.updateElementContext();
@@ -944,6 +956,8 @@ public class BundleElement extends AbstractElement
 
 				this._foldingStopMarkers.put(new ScopeSelector(scope), endRegexp);
 			}
+
+			BundleManager.getInstance().scopedMarkersChanged();
 		}
 	}
 
@@ -980,6 +994,8 @@ public class BundleElement extends AbstractElement
 
 				this._decreaseIndentMarkers.put(new ScopeSelector(scope), endRegexp);
 			}
+
+			BundleManager.getInstance().scopedMarkersChanged();
 		}
 	}
 
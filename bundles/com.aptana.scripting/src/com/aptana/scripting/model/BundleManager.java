@@ -18,9 +18,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.resources.IProject;
@@ -49,6 +54,7 @@ import com.aptana.core.util.ResourceUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.scope.IScopeSelector;
 import com.aptana.scope.ScopeSelector;
+import com.aptana.scope.ScopeSelectorMatcher;
 import com.aptana.scripting.IDebugScopes;
 import com.aptana.scripting.IScriptingSystemProperties;
 import com.aptana.scripting.ScriptLogger;
@@ -57,6 +63,7 @@ import com.aptana.scripting.ScriptingEngine;
 import com.aptana.scripting.model.filters.AndFilter;
 import com.aptana.scripting.model.filters.IModelFilter;
 import com.aptana.scripting.model.filters.IsExecutableCommandFilter;
+import com.aptana.scripting.model.filters.ScopeFilter;
 
 public class BundleManager
 {
@@ -75,6 +82,11 @@ public class BundleManager
 	 */
 	private static final String USE_BUNDLE_CACHE = "use.bundle.cache"; //$NON-NLS-1$
 
+	/**
+	 * The directory, relative to the plugin state location, holding the bundle cache files
+	 */
+	private static final String BUNDLE_CACHE_DIRECTORY = "bundle-cache"; //$NON-NLS-1$
+
 	private class BundleLoadJob extends Job
 	{
 
@@ -93,9 +105,20 @@ public class BundleManager
 		{
 			List<File> bundleScripts = getBundleScripts(bundleDirectory);
 			SubMonitor sub = SubMonitor.convert(monitor, bundleScripts.size() + 1);
+			BundleCacher cacher = (useCache()) ? getBundleCacher() : null;
 			try
 			{
-				if (bundleScripts.size() > 0)
+				if (bundleScripts.size() > 0 && cacher != null && cacher.load(bundleDirectory) != null)
+				{
+					showBundleLoadInfo("loaded from cache: " + bundleDirectory); //$NON-NLS-1$
+
+					// let listeners know about the scripts as if we had evaluated them
+					for (File script : bundleScripts)
+					{
+						fireScriptLoadedEvent(script);
+					}
+				}
+				else if (bundleScripts.size() > 0)
 				{
 					showBundleLoadInfo("cached failed, loading files directly: " + bundleDirectory); //$NON-NLS-1$
 
@@ -130,6 +153,11 @@ public class BundleManager
 							sub.worked(1);
 						}
 					}
+
+					if (cacher != null)
+					{
+						cacher.cache(bundleDirectory);
+					}
 				}
 			}
 			finally
@@ -180,6 +208,82 @@ public class BundleManager
 		}
 	}
 
+	/**
+	 * The scoped regular expressions bundles can define, each looked up by the best matching scope selector
+	 */
+	private enum MarkerType
+	{
+		DECREASE_INDENT
+		{
+			Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry)
+			{
+				return entry.getDecreaseIndentMarkers();
+			}
+		},
+		FOLDING_START
+		{
+			Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry)
+			{
+				return entry.getFoldingStartMarkers();
+			}
+		},
+		FOLDING_STOP
+		{
+			Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry)
+			{
+				return entry.getFoldingStopMarkers();
+			}
+		},
+		INCREASE_INDENT
+		{
+			Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry)
+			{
+				return entry.getIncreaseIndentMarkers();
+			}
+		};
+
+		abstract Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry);
+	}
+
+	/**
+	 * The markers of one type across all bundles, along with their selectors compiled for lookups. Only valid for the
+	 * generation of bundles it was gathered from.
+	 */
+	private static class ScopedMarkers
+	{
+		final long generation;
+		final Map<ScopeSelector, RubyRegexp> markers;
+		final ScopeSelectorMatcher matcher;
+
+		ScopedMarkers(long generation, Map<ScopeSelector, RubyRegexp> markers)
+		{
+			this.generation = generation;
+			this.markers = markers;
+			this.matcher = new ScopeSelectorMatcher(markers.keySet());
+		}
+	}
+
+	/**
+	 * The scope selectors of the visible elements, compiled for {@link ScopeFilter}s, and the smart typing pairs by
+	 * their selector. Only valid for the generation of elements it was gathered from.
+	 */
+	private static class ScopedElements
+	{
+		final long generation;
+		final ScopeSelectorMatcher matcher;
+		final Map<IScopeSelector, SmartTypingPairsElement> pairs;
+		final ScopeSelectorMatcher pairsMatcher;
+
+		ScopedElements(long generation, Set<IScopeSelector> selectors,
+				Map<IScopeSelector, SmartTypingPairsElement> pairs)
+		{
+			this.generation = generation;
+			this.matcher = new ScopeSelectorMatcher(selectors);
+			this.pairs = pairs;
+			this.pairsMatcher = new ScopeSelectorMatcher(pairs.keySet());
+		}
+	}
+
 	// split patterns
 	private static final Pattern DOT_PATTERN = Pattern.compile("\\."); //$NON-NLS-1$
 	private static final Pattern STAR_PATTERN = Pattern.compile("\\*"); //$NON-NLS-1$
@@ -423,12 +527,42 @@ public class BundleManager
 	 */
 	private Map<String, String> _stringPool;
 
+	/**
+	 * Lazily created by {@link #getBundleCacher()}
+	 */
+	private BundleCacher _bundleCacher;
+
 	/**
 	 * The number of bundles to load in parallel. Uninitialized value is -1. After initialization, value must be an
 	 * integer, value of 1 (meaning only load one at a time sequentially) or greater.
 	 */
 	private int fBundlesToLoadInParallel = -1;
 
+	/**
+	 * Bumped whenever bundles or their folding/indentation markers change, to invalidate {@link #_scopedMarkers}
+	 */
+	private final AtomicLong _markersGeneration = new AtomicLong();
+
+	/**
+	 * Compiled markers by type, built on first lookup after a change
+	 */
+	private final Map<MarkerType, ScopedMarkers> _scopedMarkers = new ConcurrentHashMap<MarkerType, ScopedMarkers>();
+
+	/**
+	 * Bumped whenever elements are added or removed or their scope changes, to invalidate {@link #_scopedElements}
+	 */
+	private final AtomicLong _elementScopesGeneration = new AtomicLong();
+
+	/**
+	 * Compiled element scopes, built on first lookup after a change
+	 */
+	private volatile ScopedElements _scopedElements;
+
+	/**
+	 * Paths of the scripts being evaluated by {@link #evaluateDetached(File)}
+	 */
+	private final Set<String> _detachedScripts = new HashSet<String>();
+
 	/**
 	 * Create a new instance of BundleManager and initialize its internal structure. Note that this constructor is
 	 * private so it can only be instantiated within a static method in this class
@@ -490,6 +624,9 @@ public class BundleManager
 					entry.addBundle(bundle);
 				}
 			}
+
+			this.scopedMarkersChanged();
+			this.elementScopesChanged();
 		}
 	}
 
@@ -1317,22 +1454,7 @@ public class BundleManager
 	 */
 	public RubyRegexp getDecreaseIndentRegexp(String scope)
 	{
-		Map<IScopeSelector, RubyRegexp> map = new HashMap<IScopeSelector, RubyRegexp>();
-		for (String bundleName : this.getBundleNames())
-		{
-			BundleEntry bundleEntry = this.getBundleEntry(bundleName);
-			map.putAll(bundleEntry.getDecreaseIndentMarkers());
-		}
-		if (map.isEmpty())
-		{
-			return null;
-		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
-		if (bestMatch == null)
-		{
-			return null;
-		}
-		return map.get(bestMatch);
+		return this.getScopedRegexp(MarkerType.DECREASE_INDENT, scope);
 	}
 
 	/**
@@ -1396,22 +1518,7 @@ public class BundleManager
 	 */
 	public RubyRegexp getFoldingStartRegexp(String scope)
 	{
-		Map<IScopeSelector, RubyRegexp> map = new HashMap<IScopeSelector, RubyRegexp>();
-		for (String bundleName : this.getBundleNames())
-		{
-			BundleEntry bundleEntry = this.getBundleEntry(bundleName);
-			map.putAll(bundleEntry.getFoldingStartMarkers());
-		}
-		if (map.isEmpty())
-		{
-			return null;
-		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
-		if (bestMatch == null)
-		{
-			return null;
-		}
-		return map.get(bestMatch);
+		return this.getScopedRegexp(MarkerType.FOLDING_START, scope);
 	}
 
 	/**
@@ -1422,22 +1529,7 @@ public class BundleManager
 	 */
 	public RubyRegexp getFoldingStopRegexp(String scope)
 	{
-		Map<IScopeSelector, RubyRegexp> map = new HashMap<IScopeSelector, RubyRegexp>();
-		for (String bundleName : this.getBundleNames())
-		{
-			BundleEntry bundleEntry = this.getBundleEntry(bundleName);
-			map.putAll(bundleEntry.getFoldingStopMarkers());
-		}
-		if (map.isEmpty())
-		{
-			return null;
-		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
-		if (bestMatch == null)
-		{
-			return null;
-		}
-		return map.get(bestMatch);
+		return this.getScopedRegexp(MarkerType.FOLDING_STOP, scope);
 	}
 
 	/**
@@ -1448,22 +1540,46 @@ public class BundleManager
 	 */
 	public RubyRegexp getIncreaseIndentRegexp(String scope)
 	{
-		Map<IScopeSelector, RubyRegexp> map = new HashMap<IScopeSelector, RubyRegexp>();
-		for (String bundleName : this.getBundleNames())
+		return this.getScopedRegexp(MarkerType.INCREASE_INDENT, scope);
+	}
+
+	/**
+	 * Return the regular expression of the given type whose scope selector best matches the scope
+	 * 
+	 * @param type
+	 * @param scope
+	 * @return The matching regular expression, or null if there's none
+	 */
+	private RubyRegexp getScopedRegexp(MarkerType type, String scope)
+	{
+		long generation = this._markersGeneration.get();
+		ScopedMarkers scopedMarkers = this._scopedMarkers.get(type);
+
+		if (scopedMarkers == null || scopedMarkers.generation != generation)
 		{
-			BundleEntry bundleEntry = this.getBundleEntry(bundleName);
-			map.putAll(bundleEntry.getIncreaseIndentMarkers());
+			Map<ScopeSelector, RubyRegexp> map = new HashMap<ScopeSelector, RubyRegexp>();
+			for (String bundleName : this.getBundleNames())
+			{
+				BundleEntry bundleEntry = this.getBundleEntry(bundleName);
+				if (bundleEntry != null)
+				{
+					map.putAll(type.getMarkers(bundleEntry));
+				}
+			}
+			scopedMarkers = new ScopedMarkers(generation, map);
+			this._scopedMarkers.put(type, scopedMarkers);
 		}
-		if (map.isEmpty())
+		if (scopedMarkers.markers.isEmpty())
 		{
 			return null;
 		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
+
+		IScopeSelector bestMatch = scopedMarkers.matcher.bestMatch(scope);
 		if (bestMatch == null)
 		{
 			return null;
 		}
-		return map.get(bestMatch);
+		return scopedMarkers.markers.get(bestMatch);
 	}
 
 	/**
@@ -2064,6 +2180,75 @@ public class BundleManager
 		this.fireScriptReloadedEvent(script);
 	}
 
+	/**
+	 * Evaluate the specified script without adding anything it defines to its bundle: no elements are replaced and no
+	 * events are fired. This is how commands restored from the bundle cache get at their invoke blocks, which only
+	 * exist in a Ruby runtime.
+	 * 
+	 * @param script
+	 *            The script to evaluate
+	 * @return The elements created by the script, in creation order. They are not registered
+	 */
+	List<AbstractElement> evaluateDetached(File script)
+	{
+		String path = script.getAbsolutePath();
+		Map<AbstractElement, Boolean> existing = new IdentityHashMap<AbstractElement, Boolean>();
+
+		for (AbstractElement element : AbstractElement.getElementsByPath(path))
+		{
+			existing.put(element, Boolean.TRUE);
+		}
+
+		synchronized (this._detachedScripts)
+		{
+			this._detachedScripts.add(path);
+		}
+
+		try
+		{
+			List<String> loadPaths = this.getBundleLoadPaths(this.getBundleDirectory(script));
+
+			// we need the elements right away, so we force synchronous execution here
+			getScriptingEngine().runScript(path, loadPaths, RunType.THREAD, false);
+		}
+		finally
+		{
+			synchronized (this._detachedScripts)
+			{
+				this._detachedScripts.remove(path);
+			}
+		}
+
+		List<AbstractElement> result = new ArrayList<AbstractElement>();
+
+		for (AbstractElement element : AbstractElement.getElementsByPath(path))
+		{
+			if (!existing.containsKey(element))
+			{
+				AbstractElement.unregisterElement(element);
+				result.add(element);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Determine if the specified script is being evaluated by {@link #evaluateDetached(File)}, in which case the
+	 * elements it defines must not be added to a bundle
+	 * 
+	 * @param path
+	 *            The absolute path of the script
+	 * @return
+	 */
+	boolean isEvaluatingDetached(String path)
+	{
+		synchronized (this._detachedScripts)
+		{
+			return this._detachedScripts.contains(path);
+		}
+	}
+
 	protected ScriptingEngine getScriptingEngine()
 	{
 		return ScriptingEngine.getInstance();
@@ -2112,6 +2297,8 @@ public class BundleManager
 				}
 			}
 
+			this.scopedMarkersChanged();
+			this.elementScopesChanged();
 			AbstractElement.unregisterElement(bundle);
 		}
 	}
@@ -2175,6 +2362,120 @@ public class BundleManager
 		{
 			this._entriesByName.clear();
 		}
+
+		this.scopedMarkersChanged();
+		this.elementScopesChanged();
+	}
+
+	/**
+	 * Invalidate the compiled folding and indentation markers. Called whenever bundles are added or removed, or a
+	 * bundle's markers are modified
+	 */
+	void scopedMarkersChanged()
+	{
+		this._markersGeneration.incrementAndGet();
+	}
+
+	/**
+	 * Invalidate the compiled element scopes. Called whenever bundles or elements are added or removed, or an
+	 * element's scope is modified
+	 */
+	void elementScopesChanged()
+	{
+		this._elementScopesGeneration.incrementAndGet();
+	}
+
+	/**
+	 * Return the scope selectors of the visible elements, compiled for lookups. Elements added since, or with a scope
+	 * changed since, may have a selector the matcher doesn't contain
+	 * 
+	 * @return
+	 */
+	public ScopeSelectorMatcher getElementScopeMatcher()
+	{
+		return this.getScopedElements().matcher;
+	}
+
+	/**
+	 * Return the visible smart typing pairs element whose scope selector best matches the specified scope
+	 * 
+	 * @param scope
+	 *            The scope to match
+	 * @return The matching element, or null if there's none
+	 */
+	public SmartTypingPairsElement getBestMatchingPairs(String scope)
+	{
+		ScopedElements scopedElements = this.getScopedElements();
+		IScopeSelector bestMatch = scopedElements.pairsMatcher.bestMatch(scope);
+
+		return (bestMatch != null) ? scopedElements.pairs.get(bestMatch) : null;
+	}
+
+	private ScopedElements getScopedElements()
+	{
+		long generation = this._elementScopesGeneration.get();
+		ScopedElements scopedElements = this._scopedElements;
+
+		if (scopedElements == null || scopedElements.generation != generation)
+		{
+			Set<IScopeSelector> selectors = new HashSet<IScopeSelector>();
+			Map<IScopeSelector, SmartTypingPairsElement> pairs = //
+			new LinkedHashMap<IScopeSelector, SmartTypingPairsElement>();
+
+			for (String bundleName : this.getBundleNames())
+			{
+				BundleEntry bundleEntry = this.getBundleEntry(bundleName);
+
+				if (bundleEntry != null)
+				{
+					for (BundleElement bundle : bundleEntry.getContributingBundles())
+					{
+						for (AbstractBundleElement element : bundle.getChildren())
+						{
+							selectors.add(element.getScopeSelector());
+						}
+					}
+				}
+
+				for (SmartTypingPairsElement pair : this.getBundlePairs(bundleName))
+				{
+					IScopeSelector selector = pair.getScopeSelector();
+
+					// later pairs win, like later selectors do
+					pairs.remove(selector);
+					pairs.put(selector, pair);
+				}
+			}
+
+			scopedElements = new ScopedElements(generation, selectors, pairs);
+			this._scopedElements = scopedElements;
+		}
+
+		return scopedElements;
+	}
+
+	/**
+	 * Return the cacher used to skip evaluating the scripts of unchanged bundles, or null if we're running outside of
+	 * the plugin and have nowhere to store the cache
+	 * 
+	 * @return
+	 */
+	synchronized BundleCacher getBundleCacher()
+	{
+		if (this._bundleCacher == null)
+		{
+			ScriptingActivator plugin = ScriptingActivator.getDefault();
+
+			if (plugin != null)
+			{
+				File cacheDirectory = plugin.getStateLocation().append(BUNDLE_CACHE_DIRECTORY).toFile();
+				String stamp = plugin.getBundle().getVersion() + "/" + Locale.getDefault(); //$NON-NLS-1$
+
+				this._bundleCacher = new BundleCacher(this, cacheDirectory, stamp);
+			}
+		}
+
+		return this._bundleCacher;
 	}
 
 	/**
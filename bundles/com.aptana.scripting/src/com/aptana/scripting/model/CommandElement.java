@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -8,12 +8,15 @@
 package com.aptana.scripting.model;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
@@ -25,6 +28,8 @@ import org.jruby.runtime.ThreadContext;
 import org.jruby.runtime.builtin.IRubyObject;
 
 import com.aptana.core.ShellExecutable;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.ObjectUtil;
 import com.aptana.core.util.SourcePrinter;
 import com.aptana.scripting.ScriptLogger;
 import com.aptana.scripting.ScriptUtils;
@@ -38,6 +43,8 @@ public class CommandElement extends AbstractBundleElement
 		String getInvoke();
 
 		RubyProc getInvokeBlock();
+
+		boolean isBlock();
 	}
 
 	private static final class Invoke implements InvokeUnion
@@ -59,6 +66,11 @@ public class CommandElement extends AbstractBundleElement
 			return null;
 		}
 
+		public boolean isBlock()
+		{
+			return false;
+		}
+
 		public String toString()
 		{
 			return "invoke= " + _invoke; //$NON-NLS-1$
@@ -84,6 +96,11 @@ public class CommandElement extends AbstractBundleElement
 			return this._invokeBlock;
 		}
 
+		public boolean isBlock()
+		{
+			return this._invokeBlock != null;
+		}
+
 		public String toString()
 		{
 			return "invoke <block>"; //$NON-NLS-1$
@@ -102,17 +119,66 @@ public class CommandElement extends AbstractBundleElement
 			return null;
 		}
 
+		public boolean isBlock()
+		{
+			return false;
+		}
+
 		public String toString()
 		{
 			return ""; //$NON-NLS-1$
 		}
 	};
 
+	/**
+	 * Stands in for an invoke block of a command restored from the bundle cache. The block itself only exists in a Ruby
+	 * runtime, so it is taken from the command created by evaluating the defining script again, detached from the
+	 * bundle.
+	 */
+	private final class CachedInvokeBlock implements InvokeUnion
+	{
+		private final Platform _platform;
+
+		private CachedInvokeBlock(Platform platform)
+		{
+			this._platform = platform;
+		}
+
+		public String getInvoke()
+		{
+			return null;
+		}
+
+		public RubyProc getInvokeBlock()
+		{
+			resolveCachedInvokeBlocks();
+
+			InvokeUnion union = getInvokeUnion();
+
+			return (union instanceof CachedInvokeBlock) ? null : union.getInvokeBlock();
+		}
+
+		public boolean isBlock()
+		{
+			return true;
+		}
+
+		public String toString()
+		{
+			return "invoke <cached block " + this._platform.getName() + ">"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
 	private static final InputType[] NO_TYPES = new InputType[0];
 	private static final String[] NO_KEY_BINDINGS = new String[0];
 	private static final String[] NO_TRIGGER_VALUES = new String[0];
 	private static final String TO_ENV_METHOD_NAME = "to_env"; //$NON-NLS-1$
 
+	/**
+	 * Serializes the evaluation of scripts for the invoke blocks of cached commands
+	 */
+	private static final Object CACHED_BLOCKS_LOCK = new Object();
+
 	private Map<Platform, InvokeUnion> _invokeUnionMap;
 	private Map<Platform, List<String>> _keyBindings;
 	private InputType[] _inputTypes;
@@ -126,6 +192,12 @@ public class CommandElement extends AbstractBundleElement
 	private IPath _workingDirectoryPath;
 	private WorkingDirectoryType _workingDirectoryType;
 
+	/**
+	 * The position of this command among the commands of its kind defined by its script, as recorded in the bundle
+	 * cache. -1 if the command wasn't restored from the cache
+	 */
+	private int _definitionIndex = -1;
+
 	/**
 	 * Snippet
 	 * 
@@ -171,6 +243,11 @@ public class CommandElement extends AbstractBundleElement
 	{
 		CommandResult result = null;
 
+		if (this.getInvokeUnion() instanceof CachedInvokeBlock)
+		{
+			this.resolveCachedInvokeBlocks();
+		}
+
 		if (this.isExecutable())
 		{
 			AbstractCommandRunner job = null;
@@ -229,6 +306,154 @@ public class CommandElement extends AbstractBundleElement
 		return result;
 	}
 
+	/**
+	 * Returns the position of this command among the commands of its kind defined by its script. Unlike the display
+	 * name, this identifies the command across evaluations of the script. Elements are registered in creation order,
+	 * so this is known for any registered command
+	 * 
+	 * @return The index, or -1 if this command is not registered
+	 */
+	int getDefinitionIndex()
+	{
+		if (this._definitionIndex == -1)
+		{
+			int index = 0;
+
+			for (AbstractElement element : AbstractElement.getElementsByPath(this.getPath()))
+			{
+				if (element == this)
+				{
+					return index;
+				}
+				if (element.getClass() == this.getClass())
+				{
+					index++;
+				}
+			}
+		}
+
+		return this._definitionIndex;
+	}
+
+	/**
+	 * Record the position of this command among the commands of its kind defined by its script. Used when restoring a
+	 * command from the bundle cache
+	 * 
+	 * @param index
+	 */
+	void setDefinitionIndex(int index)
+	{
+		this._definitionIndex = index;
+	}
+
+	/**
+	 * Replace the stand-ins for the invoke blocks of the cached commands defined by this command's script with the
+	 * blocks of the commands created by evaluating the script once more. The script is evaluated detached, so the bundle
+	 * is left alone and no events are fired. Commands are matched by their definition index. Cached blocks without a
+	 * match are dropped so we don't keep evaluating the script.
+	 */
+	private void resolveCachedInvokeBlocks()
+	{
+		synchronized (CACHED_BLOCKS_LOCK)
+		{
+			// another command of the same script may have done this for us in the meantime
+			if (!this.hasCachedInvokeBlocks())
+			{
+				return;
+			}
+
+			List<CommandElement> evaluated = new ArrayList<CommandElement>();
+
+			for (AbstractElement element : BundleManager.getInstance().evaluateDetached(new File(this.getPath())))
+			{
+				if (element.getClass() == this.getClass())
+				{
+					evaluated.add((CommandElement) element);
+				}
+			}
+
+			for (AbstractElement element : AbstractElement.getElementsByPath(this.getPath()))
+			{
+				if (element.getClass() == this.getClass())
+				{
+					CommandElement command = (CommandElement) element;
+
+					if (command.hasCachedInvokeBlocks())
+					{
+						int index = command.getDefinitionIndex();
+
+						command.adoptInvokeBlocks((0 <= index && index < evaluated.size()) ? evaluated.get(index) : null);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determine if this command has stand-ins for invoke blocks
+	 * 
+	 * @return
+	 */
+	private synchronized boolean hasCachedInvokeBlocks()
+	{
+		if (this._invokeUnionMap != null)
+		{
+			for (InvokeUnion union : this._invokeUnionMap.values())
+			{
+				if (union instanceof CachedInvokeBlock)
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Replace the stand-ins for invoke blocks with the blocks of the specified command, which was created by evaluating
+	 * this command's script
+	 * 
+	 * @param source
+	 *            The evaluated command, or null if there is none
+	 */
+	private synchronized void adoptInvokeBlocks(CommandElement source)
+	{
+		if (source != null && ObjectUtil.areNotEqual(source.getDisplayName(), this.getDisplayName()))
+		{
+			source = null;
+		}
+
+		if (source == null)
+		{
+			IdeLog.logWarning(ScriptingActivator.getDefault(), MessageFormat.format(
+					Messages.CommandElement_Cached_Command_Not_Found, this.getDisplayName(), this.getPath()));
+		}
+
+		for (Map.Entry<Platform, InvokeUnion> entry : new HashMap<Platform, InvokeUnion>(this._invokeUnionMap)
+				.entrySet())
+		{
+			if (entry.getValue() instanceof CachedInvokeBlock)
+			{
+				InvokeUnion union = (source != null) ? source.getInvokeUnion(entry.getKey()) : null;
+
+				if (union != null && union.isBlock())
+				{
+					this._invokeUnionMap.put(entry.getKey(), union);
+				}
+				else
+				{
+					this._invokeUnionMap.remove(entry.getKey());
+				}
+			}
+		}
+
+		if (source != null)
+		{
+			this.setRuntime(source.getRuntime());
+		}
+	}
+
 	/**
 	 * getElementName
 	 */
@@ -286,6 +511,17 @@ public class CommandElement extends AbstractBundleElement
 		setInputType(inputs.toArray(new String[inputs.size()]));
 	}
 
+	/**
+	 * Returns the invoke union set for exactly the specified platform
+	 * 
+	 * @param platform
+	 * @return The invoke union, or null if there is none
+	 */
+	private synchronized InvokeUnion getInvokeUnion(Platform platform)
+	{
+		return (this._invokeUnionMap != null) ? this._invokeUnionMap.get(platform) : null;
+	}
+
 	/**
 	 * getInvokeUnion
 	 * 
@@ -353,6 +589,54 @@ public class CommandElement extends AbstractBundleElement
 		}
 	}
 
+	/**
+	 * Returns the platforms for which this command has an invoke block, for the bundle cache
+	 * 
+	 * @return
+	 */
+	Set<Platform> getInvokeBlockPlatforms()
+	{
+		Set<Platform> result = new HashSet<Platform>();
+
+		if (this._invokeUnionMap != null)
+		{
+			for (Map.Entry<Platform, InvokeUnion> entry : this._invokeUnionMap.entrySet())
+			{
+				if (entry.getValue().isBlock())
+				{
+					result.add(entry.getKey());
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the invoke strings of this command by platform, for the bundle cache
+	 * 
+	 * @return
+	 */
+	Map<Platform, String> getInvokeStrings()
+	{
+		Map<Platform, String> result = new HashMap<Platform, String>();
+
+		if (this._invokeUnionMap != null)
+		{
+			for (Map.Entry<Platform, InvokeUnion> entry : this._invokeUnionMap.entrySet())
+			{
+				String invoke = entry.getValue().getInvoke();
+
+				if (invoke != null)
+				{
+					result.put(entry.getKey(), invoke);
+				}
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * getInvoke
 	 * 
@@ -533,6 +817,16 @@ public class CommandElement extends AbstractBundleElement
 		}
 	}
 
+	/**
+	 * Returns the working directory path as it was set, regardless of the working directory type
+	 * 
+	 * @return
+	 */
+	IPath getWorkingDirectoryPath()
+	{
+		return this._workingDirectoryPath;
+	}
+
 	public WorkingDirectoryType getWorkingDirectoryType()
 	{
 		return this._workingDirectoryType;
@@ -555,7 +849,7 @@ public class CommandElement extends AbstractBundleElement
 	 */
 	public boolean isBlockCommand()
 	{
-		return (this.getInvokeUnion().getInvokeBlock() != null);
+		return this.getInvokeUnion().isBlock();
 	}
 
 	/**
@@ -565,7 +859,7 @@ public class CommandElement extends AbstractBundleElement
 	 */
 	public boolean isExecutable()
 	{
-		return ((this.getInvoke() != null && this.getInvoke().length() > 0) || this.getInvokeBlock() != null);
+		return ((this.getInvoke() != null && this.getInvoke().length() > 0) || this.isBlockCommand());
 	}
 
 	/**
@@ -575,7 +869,7 @@ public class CommandElement extends AbstractBundleElement
 	 */
 	public boolean isShellCommand()
 	{
-		return (this.getInvokeBlock() == null && this.getInvoke() != null && this.getInvoke().length() > 0);
+		return (!this.isBlockCommand() && this.getInvoke() != null && this.getInvoke().length() > 0);
 	}
 
 	/**
@@ -668,7 +962,12 @@ public class CommandElement extends AbstractBundleElement
 		}
 
 		// output invoke block, if it is defined
-		if (includeBlocks && this.getInvokeBlock() != null)
+		if (includeBlocks && this.getInvokeUnion() instanceof CachedInvokeBlock)
+		{
+			// don't evaluate the script just to print the block
+			printer.printWithIndent("block: ").println("cached"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		else if (includeBlocks && this.getInvokeBlock() != null)
 		{
 			// Spit out something repeatable, for now just block type
 			printer.printWithIndent("block: ").println(this.getInvokeBlock().getBlock().type.toString()); //$NON-NLS-1$
@@ -870,6 +1169,17 @@ public class CommandElement extends AbstractBundleElement
 		this.setRuntime((block != null) ? block.getRuntime() : null);
 	}
 
+	/**
+	 * Mark this command as having an invoke block for the specified platform without having the block itself. Used when
+	 * restoring a command from the bundle cache
+	 * 
+	 * @param OS
+	 */
+	void setCachedInvokeBlock(String OS)
+	{
+		setInvokeUnion(OS, new CachedInvokeBlock(Platform.get(OS)));
+	}
+
 	/**
 	 * setKeyBinding
 	 * 
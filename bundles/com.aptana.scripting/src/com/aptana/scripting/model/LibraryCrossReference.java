@@ -48,9 +48,32 @@ public class LibraryCrossReference
 	{
 	}
 	
+	/**
+	 * getLibrariesFromPath
+	 *
+	 * @param scriptPath
+	 * @return
+	 */
+	public String[] getLibrariesFromPath(String scriptPath)
+	{
+		String[] result = NO_STRINGS;
+
+		synchronized (LIBS_BY_PATH)
+		{
+			Set<String> libraries = LIBS_BY_PATH.get(scriptPath);
+
+			if (libraries != null)
+			{
+				result = libraries.toArray(new String[libraries.size()]);
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * getPathsFromLibrary
-	 * 
+	 *
 	 * @param libraryPath
 	 * @return
 	 */
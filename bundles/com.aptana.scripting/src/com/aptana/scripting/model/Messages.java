@@ -16,7 +16,7 @@ public class Messages extends NLS
 	public static String BundleCacher_ComparingTimestampSubTaskName;
 	public static String BundleCacher_FileReferencedInCacheMissingMsg;
 	public static String BundleCacher_LoadCacheTaskName;
-	public static String BundleCacher_LoadingYAMLError;
+	public static String BundleCacher_LoadingCacheError;
 	public static String BundleCacher_OutOfDateCacheMsg;
 	public static String BundleCacher_SerializationExceptionDeletingCacheFile;
 
@@ -41,6 +41,7 @@ public class Messages extends NLS
 	public static String BundleMonitor_ERROR_REGISTERING_FILE_WATCHER;
 	public static String BundleMonitor_INVALID_WATCHER_PATH;
 
+	public static String CommandElement_Cached_Command_Not_Found;
 	public static String CommandElement_Error_Building_Env_Variables;
 	public static String CommandElement_Error_Creating_Contributor;
 	public static String CommandElement_Error_Executing_Command;
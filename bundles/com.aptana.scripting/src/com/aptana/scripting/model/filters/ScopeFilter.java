@@ -7,12 +7,21 @@
  */
 package com.aptana.scripting.model.filters;
 
+import com.aptana.scope.IScopeSelector;
+import com.aptana.scope.ScopeSelectorMatcher;
 import com.aptana.scripting.model.AbstractBundleElement;
 import com.aptana.scripting.model.AbstractElement;
+import com.aptana.scripting.model.BundleManager;
 
+/**
+ * Includes the elements whose scope selector matches any of the given scopes. Selectors are looked up in the
+ * manager's compiled element scopes, so each distinct selector is evaluated at most once per scope; only selectors the
+ * compiled scopes don't know yet are evaluated on their own.
+ */
 public class ScopeFilter implements IModelFilter
 {
 	private String[] _scopes;
+	private ScopeSelectorMatcher _matcher;
 	
 	/**
 	 * ScopeFilter
@@ -45,8 +54,28 @@ public class ScopeFilter implements IModelFilter
 		if (element instanceof AbstractBundleElement)
 		{
 			AbstractBundleElement abe = (AbstractBundleElement) element;
-			
-			result = abe.matches(this._scopes);
+			IScopeSelector selector = abe.getScopeSelector();
+
+			if (this._matcher == null)
+			{
+				this._matcher = BundleManager.getInstance().getElementScopeMatcher();
+			}
+
+			if (this._scopes != null && this._matcher.contains(selector))
+			{
+				for (String scope : this._scopes)
+				{
+					if (this._matcher.getMatches(scope).contains(selector))
+					{
+						result = true;
+						break;
+					}
+				}
+			}
+			else
+			{
+				result = abe.matches(this._scopes);
+			}
 		}
 		
 		return result;
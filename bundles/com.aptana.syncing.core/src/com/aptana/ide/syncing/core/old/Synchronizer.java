@@ -18,6 +18,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.CRC32;
 
 import org.eclipse.core.filesystem.EFS;
@@ -26,14 +34,18 @@ import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 
 import com.aptana.core.io.efs.EFSUtils;
 import com.aptana.core.io.efs.SyncUtils;
+import com.aptana.core.io.vfs.IConnectionFileManager;
 import com.aptana.core.io.vfs.IExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.io.vfs.PooledConnectionFileManager;
 import com.aptana.core.io.vfs.Policy;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.FileUtil;
@@ -740,6 +752,7 @@ public class Synchronizer implements ILoggable
 	public boolean downloadAndDelete(VirtualFileSyncPair[] fileList, boolean delete, IProgressMonitor monitor)
 	{
 		FileWatcher.avoidNotify();
+		Transfers transfers = null;
 		try
 		{
 			checkFileManagers();
@@ -755,6 +768,7 @@ public class Synchronizer implements ILoggable
 			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Downloading_Files,
 					fileList.length);
 			Policy.checkCanceled(subMonitor);
+			transfers = new Transfers(getMaxConcurrentTransfers(), subMonitor);
 
 			FILE_LOOP: for (int i = 0; i < fileList.length; i++)
 			{
@@ -803,14 +817,13 @@ public class Synchronizer implements ILoggable
 							break;
 
 						case SyncState.ServerItemOnly:
-							IFileStore targetClientFile = EFSUtils.createFile(_serverFileRoot,
+							final IFileStore targetClientFile = EFSUtils.createFile(_serverFileRoot,
 									item.getDestinationFile(), _clientFileRoot);
-							boolean exists = targetClientFile.fetchInfo().exists();
 							if (serverFileInfo.isDirectory())
 							{
 								logCreatedDirectory(targetClientFile);
 
-								if (!exists)
+								if (!targetClientFile.fetchInfo().exists())
 								{
 									targetClientFile.mkdir(EFS.NONE, null);
 									this._clientDirectoryCreatedCount++;
@@ -826,29 +839,32 @@ public class Synchronizer implements ILoggable
 							else
 							{
 								logDownloading(serverFile);
-								try
+								Transfer transfer = new Transfer(item)
 								{
-									SyncUtils
-											.copy(serverFile, serverFileInfo, targetClientFile, EFS.NONE, childMonitor);
-									Synchronizer.this._serverFileTransferedCount++;
-									_newFilesDownloaded.add(targetClientFile);
-									// update permissions for the newly created file
-									if (!exists)
+									@Override
+									protected void transfer(IProgressMonitor monitor) throws CoreException
 									{
-										updatePermissions(serverFile, targetClientFile, true,
-												PermissionDirection.DOWNLOAD, childMonitor);
+										boolean exists = targetClientFile.fetchInfo().exists();
+										SyncUtils.copy(serverFile, serverFileInfo, targetClientFile, EFS.NONE, monitor);
+										// update permissions for the newly created file
+										if (!exists)
+										{
+											updatePermissions(serverFile, targetClientFile, true,
+													PermissionDirection.DOWNLOAD, monitor);
+										}
 									}
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-									if (!syncError(item, e, childMonitor))
+
+									@Override
+									protected void done()
 									{
-										result = false;
-										break FILE_LOOP;
+										_serverFileTransferedCount++;
+										_newFilesDownloaded.add(targetClientFile);
 									}
+								};
+								if (!transfers.submit(transfer, childMonitor))
+								{
+									result = false;
+									break FILE_LOOP;
 								}
 							}
 							break;
@@ -873,21 +889,24 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								try
+								Transfer transfer = new Transfer(item)
 								{
-									SyncUtils.copy(serverFile, serverFileInfo, clientFile, EFS.NONE, childMonitor);
-									Synchronizer.this._serverFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-									if (!syncError(item, e, childMonitor))
+									@Override
+									protected void transfer(IProgressMonitor monitor) throws CoreException
 									{
-										result = false;
-										break FILE_LOOP;
+										SyncUtils.copy(serverFile, serverFileInfo, clientFile, EFS.NONE, monitor);
 									}
+
+									@Override
+									protected void done()
+									{
+										_serverFileTransferedCount++;
+									}
+								};
+								if (!transfers.submit(transfer, childMonitor))
+								{
+									result = false;
+									break FILE_LOOP;
 								}
 							}
 							break;
@@ -909,10 +928,15 @@ public class Synchronizer implements ILoggable
 				}
 			}
 
-			return result;
+			// waits for the transfers still in flight, even when stopping early
+			return transfers.finish() && result;
 		}
 		finally
 		{
+			if (transfers != null)
+			{
+				transfers.dispose();
+			}
 			FileWatcher.resumeNotify();
 		}
 	}
@@ -1324,6 +1348,7 @@ public class Synchronizer implements ILoggable
 	public boolean uploadAndDelete(VirtualFileSyncPair[] fileList, boolean delete, IProgressMonitor monitor)
 	{
 		FileWatcher.avoidNotify();
+		Transfers transfers = null;
 		try
 		{
 			checkFileManagers();
@@ -1337,6 +1362,7 @@ public class Synchronizer implements ILoggable
 
 			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Uploading_Files, fileList.length);
 			Policy.checkCanceled(subMonitor);
+			transfers = new Transfers(getMaxConcurrentTransfers(), subMonitor);
 
 			FILE_LOOP: for (int i = 0; i < fileList.length; i++)
 			{
@@ -1367,12 +1393,11 @@ public class Synchronizer implements ILoggable
 					{
 						case SyncState.ClientItemOnly:
 							// only exists on client; creates the item on server
-							IFileStore targetServerFile = EFSUtils.createFile(_clientFileRoot, item.getSourceFile(),
-									_serverFileRoot);
-							boolean exists = targetServerFile.fetchInfo().exists();
+							final IFileStore targetServerFile = EFSUtils.createFile(_clientFileRoot,
+									item.getSourceFile(), _serverFileRoot);
 							if (clientFileInfo.isDirectory())
 							{
-								if (!exists)
+								if (!targetServerFile.fetchInfo().exists())
 								{
 									targetServerFile.mkdir(EFS.NONE, null);
 									this._serverDirectoryCreatedCount++;
@@ -1387,33 +1412,33 @@ public class Synchronizer implements ILoggable
 							else
 							{
 								logUploading(clientFile);
-
-								try
+								Transfer transfer = new Transfer(item)
 								{
-									SyncUtils
-											.copy(clientFile, clientFileInfo, targetServerFile, EFS.NONE, childMonitor);
-									Synchronizer.this._clientFileTransferedCount++;
-									_newFilesUploaded.add(targetServerFile);
-									// update permissions for the newly created file
-									if (!exists)
+									@Override
+									protected void transfer(IProgressMonitor monitor) throws CoreException
 									{
-										updatePermissions(clientFile, targetServerFile, true,
-												PermissionDirection.UPLOAD, childMonitor);
+										boolean exists = targetServerFile.fetchInfo().exists();
+										SyncUtils.copy(clientFile, clientFileInfo, targetServerFile, EFS.NONE, monitor);
+										// update permissions for the newly created file
+										if (!exists)
+										{
+											updatePermissions(clientFile, targetServerFile, true,
+													PermissionDirection.UPLOAD, monitor);
+										}
 									}
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
 
-									if (!syncError(item, e, childMonitor))
+									@Override
+									protected void done()
 									{
-										result = false;
-										break FILE_LOOP;
+										_clientFileTransferedCount++;
+										_newFilesUploaded.add(targetServerFile);
 									}
+								};
+								if (!transfers.submit(transfer, childMonitor))
+								{
+									result = false;
+									break FILE_LOOP;
 								}
-
 							}
 							break;
 
@@ -1464,24 +1489,25 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(clientFile, clientFileInfo, serverFile, EFS.NONE, childMonitor);
-									Synchronizer.this._clientFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
+								Transfer transfer = new Transfer(item)
 								{
-									logError(e);
+									@Override
+									protected void transfer(IProgressMonitor monitor) throws CoreException
+									{
+										SyncUtils.copy(clientFile, clientFileInfo, serverFile, EFS.NONE, monitor);
+									}
 
-									if (!syncError(item, e, childMonitor))
+									@Override
+									protected void done()
 									{
-										result = false;
-										break FILE_LOOP;
+										_clientFileTransferedCount++;
 									}
+								};
+								if (!transfers.submit(transfer, childMonitor))
+								{
+									result = false;
+									break FILE_LOOP;
 								}
-
 							}
 							break;
 
@@ -1502,10 +1528,15 @@ public class Synchronizer implements ILoggable
 				}
 			}
 
-			return result;
+			// waits for the transfers still in flight, even when stopping early
+			return transfers.finish() && result;
 		}
 		finally
 		{
+			if (transfers != null)
+			{
+				transfers.dispose();
+			}
 			FileWatcher.resumeNotify();
 		}
 	}
@@ -1836,4 +1867,216 @@ public class Synchronizer implements ILoggable
 		}
 	}
 
+	/**
+	 * Returns how many files to transfer at once. Unless a side spreads its operations over a connection pool, files go
+	 * one at a time as before, since a single connection isn't meant to be driven from several threads.
+	 *
+	 * @return
+	 */
+	private int getMaxConcurrentTransfers()
+	{
+		int client = getMaxConnections(getClientFileManager());
+		int server = getMaxConnections(getServerFileManager());
+		if (client == 0)
+		{
+			return Math.max(server, 1);
+		}
+		if (server == 0)
+		{
+			return client;
+		}
+		return Math.min(client, server);
+	}
+
+	/**
+	 * @return the size of the connection point's pool, 1 if it has a single connection, or 0 if it doesn't go through
+	 *         a connection file manager at all (i.e. local files)
+	 */
+	private static int getMaxConnections(IConnectionPoint connectionPoint)
+	{
+		Object manager = connectionPoint.getAdapter(IConnectionFileManager.class);
+		if (manager instanceof PooledConnectionFileManager)
+		{
+			return ((PooledConnectionFileManager) manager).getMaxConnections();
+		}
+		return (manager == null) ? 0 : 1;
+	}
+
+	/**
+	 * The copy of a single file. The copy may run on a worker thread, but {@link #done()} and the sync events are always
+	 * fired on the thread driving the sync.
+	 */
+	private abstract static class Transfer implements Callable<Transfer>
+	{
+		private final VirtualFileSyncPair item;
+		private IProgressMonitor monitor;
+		private Exception error;
+
+		protected Transfer(VirtualFileSyncPair item)
+		{
+			this.item = item;
+		}
+
+		public Transfer call()
+		{
+			try
+			{
+				transfer(monitor);
+			}
+			catch (Exception e)
+			{
+				error = e;
+			}
+			return this;
+		}
+
+		protected abstract void transfer(IProgressMonitor monitor) throws CoreException;
+
+		protected abstract void done();
+	}
+
+	/**
+	 * Runs the transfers of one sync on up to N threads, while the caller carries on through the list of items. The
+	 * caller keeps creating directories itself, in order, so a directory always exists before any copy into it starts.
+	 * With a single thread each transfer simply runs on the caller's thread.
+	 */
+	private final class Transfers
+	{
+		private final int threads;
+		private final IProgressMonitor monitor;
+		private ExecutorService executor;
+		private CompletionService<Transfer> completionService;
+		private int pending;
+		private boolean succeeded = true;
+
+		private Transfers(int threads, IProgressMonitor monitor)
+		{
+			this.threads = threads;
+			this.monitor = monitor;
+			if (threads > 1)
+			{
+				executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+				{
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "Synchronizer transfer"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				completionService = new ExecutorCompletionService<Transfer>(executor);
+			}
+		}
+
+		/**
+		 * Starts a transfer, and reports the ones that finished in the meantime.
+		 *
+		 * @return false if the sync should stop
+		 */
+		private boolean submit(Transfer transfer, IProgressMonitor childMonitor)
+		{
+			if (executor == null)
+			{
+				transfer.monitor = childMonitor;
+				return complete(transfer.call(), childMonitor);
+			}
+
+			transfer.monitor = new NullProgressMonitor()
+			{
+				@Override
+				public boolean isCanceled()
+				{
+					return monitor.isCanceled();
+				}
+			};
+			completionService.submit(transfer);
+			pending++;
+
+			// no more than one transfer per thread is left queued, so that an error stops the sync soon enough
+			boolean proceed = true;
+			Transfer finished;
+			while ((finished = next(pending > threads)) != null)
+			{
+				proceed &= complete(finished, childMonitor);
+			}
+			return proceed;
+		}
+
+		/**
+		 * Waits for the remaining transfers and reports them.
+		 *
+		 * @return false if any of the transfers failed the sync
+		 */
+		private boolean finish()
+		{
+			Transfer finished;
+			while ((finished = next(pending > 0)) != null)
+			{
+				complete(finished, monitor);
+			}
+			return succeeded;
+		}
+
+		private void dispose()
+		{
+			if (executor != null)
+			{
+				executor.shutdownNow();
+			}
+		}
+
+		private Transfer next(boolean wait)
+		{
+			if (pending == 0)
+			{
+				return null;
+			}
+			try
+			{
+				Future<Transfer> future = wait ? completionService.take() : completionService.poll();
+				if (future == null)
+				{
+					return null;
+				}
+				pending--;
+				return future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			}
+			catch (ExecutionException e)
+			{
+				// Transfer.call() only lets errors through
+				throw (Error) e.getCause();
+			}
+		}
+
+		private boolean complete(Transfer transfer, IProgressMonitor monitor)
+		{
+			if (transfer.error == null)
+			{
+				transfer.done();
+				logSuccess();
+				syncDone(transfer.item, monitor);
+				return true;
+			}
+			if (transfer.error instanceof CoreException)
+			{
+				logError(transfer.error);
+			}
+			else
+			{
+				IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorDuringSync, transfer.error);
+				succeeded = false;
+			}
+			if (!syncError(transfer.item, transfer.error, monitor))
+			{
+				succeeded = false;
+				return false;
+			}
+			return true;
+		}
+	}
 }
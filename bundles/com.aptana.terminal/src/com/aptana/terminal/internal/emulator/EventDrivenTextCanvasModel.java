@@ -0,0 +1,195 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.terminal.internal.emulator;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.tm.internal.terminal.textcanvas.AbstractTextCanvasModel;
+import org.eclipse.tm.terminal.model.ITerminalTextDataSnapshot;
+
+/**
+ * A text canvas model that updates when the snapshot reports changes, instead of polling it from a timer like
+ * {@link org.eclipse.tm.internal.terminal.textcanvas.PollingTextCanvasModel}. The first change after an update
+ * schedules exactly one frame on the UI thread. Frames are at least {@link #MIN_FRAME_INTERVAL} ms apart, and further
+ * apart while output keeps coming or when drawing a frame gets expensive. An idle terminal only wakes the UI thread
+ * to blink the cursor.
+ */
+public class EventDrivenTextCanvasModel extends AbstractTextCanvasModel
+{
+	/**
+	 * About 60 frames per second.
+	 */
+	static final int MIN_FRAME_INTERVAL = 16;
+	static final int MAX_FRAME_INTERVAL = 100;
+	private static final int CURSOR_BLINK_INTERVAL = 500;
+
+	private final Display display;
+	private final ITerminalTextDataSnapshot.SnapshotOutOfDateListener snapshotListener;
+
+	/**
+	 * Whether a frame has been requested and not drawn yet. Set from the thread writing to the terminal, cleared on
+	 * the UI thread.
+	 */
+	private final AtomicBoolean frameScheduled = new AtomicBoolean();
+	private volatile boolean disposed;
+
+	// accessed from the UI thread only
+	private int frameInterval = MIN_FRAME_INTERVAL;
+	private long lastFrame;
+	private boolean cursorTimerArmed;
+
+	private final Runnable frameRequest = new Runnable()
+	{
+		public void run()
+		{
+			if (disposed)
+			{
+				return;
+			}
+			long wait = lastFrame + frameInterval - System.currentTimeMillis();
+			if (wait > 0)
+			{
+				display.timerExec((int) wait, frame);
+			}
+			else
+			{
+				frame.run();
+			}
+		}
+	};
+
+	private final Runnable frame = new Runnable()
+	{
+		public void run()
+		{
+			if (disposed)
+			{
+				return;
+			}
+			// changes made while drawing this frame schedule the next one
+			frameScheduled.set(false);
+			long start = System.currentTimeMillis();
+			boolean flooded = start - lastFrame <= 2 * frameInterval;
+			drawFrame();
+			long cost = System.currentTimeMillis() - start;
+			lastFrame = start;
+			adaptFrameInterval(flooded, cost);
+		}
+	};
+
+	private final Runnable cursorBlink = new Runnable()
+	{
+		public void run()
+		{
+			if (disposed || !isCursorEnabled())
+			{
+				cursorTimerArmed = false;
+				return;
+			}
+			update();
+			display.timerExec(CURSOR_BLINK_INTERVAL, this);
+		}
+	};
+
+	public EventDrivenTextCanvasModel(ITerminalTextDataSnapshot snapshot, Display display)
+	{
+		super(snapshot);
+		this.display = display;
+		snapshotListener = new ITerminalTextDataSnapshot.SnapshotOutOfDateListener()
+		{
+			public void snapshotOutOfDate(ITerminalTextDataSnapshot snapshot)
+			{
+				scheduleFrame();
+			}
+		};
+		snapshot.addListener(snapshotListener);
+		// pick up whatever changed before we started listening
+		scheduleFrame();
+	}
+
+	/**
+	 * Called with the terminal locked, so this only posts a request to the UI thread.
+	 */
+	private void scheduleFrame()
+	{
+		if (disposed || !frameScheduled.compareAndSet(false, true))
+		{
+			return;
+		}
+		try
+		{
+			display.asyncExec(frameRequest);
+		}
+		catch (SWTException e)
+		{
+			// the display is gone
+			disposed = true;
+		}
+	}
+
+	private void drawFrame()
+	{
+		ITerminalTextDataSnapshot snapshot = getSnapshot();
+		if (!snapshot.isOutOfDate())
+		{
+			// The change was outside the interest window: there is nothing to draw, but the snapshot only notifies
+			// again once it has been updated.
+			snapshot.updateSnapshot(false);
+		}
+		update();
+	}
+
+	/**
+	 * Back to back frames mean the terminal is flooded with output: draw less often, so the UI thread stays
+	 * responsive. The first frame after a pause is drawn as soon as possible.
+	 */
+	private void adaptFrameInterval(boolean flooded, long cost)
+	{
+		int interval = flooded ? frameInterval + frameInterval / 2 : MIN_FRAME_INTERVAL;
+		// don't spend more than about half of the time drawing
+		interval = (int) Math.max(interval, 2 * cost);
+		frameInterval = Math.min(Math.max(interval, MIN_FRAME_INTERVAL), MAX_FRAME_INTERVAL);
+	}
+
+	/**
+	 * The current minimum delay between frames, for the tests.
+	 */
+	int getFrameInterval()
+	{
+		return frameInterval;
+	}
+
+	@Override
+	public void setCursorEnabled(boolean visible)
+	{
+		super.setCursorEnabled(visible);
+		if (visible && !cursorTimerArmed && !disposed)
+		{
+			cursorTimerArmed = true;
+			display.timerExec(CURSOR_BLINK_INTERVAL, cursorBlink);
+		}
+	}
+
+	/**
+	 * Stops listening to the snapshot and cancels pending frames. Must be called from the UI thread.
+	 */
+	public void dispose()
+	{
+		disposed = true;
+		ITerminalTextDataSnapshot snapshot = getSnapshot();
+		snapshot.removeListener(snapshotListener);
+		snapshot.detach();
+		if (!display.isDisposed())
+		{
+			display.timerExec(-1, frame);
+			display.timerExec(-1, cursorBlink);
+		}
+	}
+}
@@ -20,6 +20,8 @@ import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.dnd.TextTransfer;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.MouseAdapter;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.widgets.Composite;
@@ -28,6 +30,7 @@ import org.eclipse.tm.internal.terminal.control.ITerminalListener;
 import org.eclipse.tm.internal.terminal.provisional.api.ITerminalConnector;
 import org.eclipse.tm.internal.terminal.textcanvas.ILinelRenderer;
 import org.eclipse.tm.internal.terminal.textcanvas.ITextCanvasModel;
+import org.eclipse.tm.terminal.model.ITerminalTextDataSnapshot;
 
 import com.aptana.core.util.IOUtil;
 import com.aptana.terminal.internal.hyperlink.HyperlinkManager;
@@ -147,9 +150,32 @@ public class VT100TerminalControl extends org.eclipse.tm.internal.terminal.emula
 	 */
 	@Override
 	protected org.eclipse.tm.internal.terminal.textcanvas.TextCanvas createTextCanvas(Composite parent,
-			ITextCanvasModel canvasModel, ILinelRenderer linelRenderer)
+			final ITextCanvasModel canvasModel, ILinelRenderer linelRenderer)
 	{
-		return new TextCanvas(parent, canvasModel, SWT.NONE, linelRenderer, hyperlinkManager);
+		TextCanvas textCanvas = new TextCanvas(parent, canvasModel, SWT.NONE, linelRenderer, hyperlinkManager);
+		if (canvasModel instanceof EventDrivenTextCanvasModel)
+		{
+			textCanvas.addDisposeListener(new DisposeListener()
+			{
+				public void widgetDisposed(DisposeEvent e)
+				{
+					((EventDrivenTextCanvasModel) canvasModel).dispose();
+				}
+			});
+		}
+		return textCanvas;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * org.eclipse.tm.internal.terminal.emulator.VT100TerminalControl#createTextCanvasModel(org.eclipse.tm.terminal.model
+	 * .ITerminalTextDataSnapshot)
+	 */
+	@Override
+	protected ITextCanvasModel createTextCanvasModel(ITerminalTextDataSnapshot snapshot)
+	{
+		return new EventDrivenTextCanvasModel(snapshot, getRootControl().getDisplay());
 	}
 
 	/*
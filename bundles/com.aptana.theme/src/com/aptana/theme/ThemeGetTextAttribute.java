@@ -9,18 +9,18 @@ package com.aptana.theme;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.jface.text.TextAttribute;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.RGB;
 
+import com.aptana.core.util.BoundedConcurrentCache;
 import com.aptana.core.util.ImmutableTuple;
 import com.aptana.scope.IScopeSelector;
 import com.aptana.scope.ScopeSelector;
+import com.aptana.scope.ScopeSelectorMatcher;
 
 /**
  * Helper class used to get the text attribute for a given scope (given the related theme). Should not be manipulated
@@ -38,12 +38,18 @@ import com.aptana.scope.ScopeSelector;
 	private final Theme theme;
 	private final RGB defaultFG;
 	private final RGB defaultBG;
-	private final Collection<IScopeSelector> selectors;
+	private final ScopeSelectorMatcher matcher;
 
 	/**
-	 * A cache to memoize the ultimate TextAttribute generated for a given fully qualified scope.
+	 * Upper bound on the number of scopes remembered by each of the caches below.
 	 */
-	private final Map<String, TextAttribute> cacheGetTextAttribute;
+	private static final int CACHE_SIZE = 2000;
+
+	/**
+	 * A cache to memoize the ultimate TextAttribute generated for a given fully qualified scope. Read without locking,
+	 * only computing a missing entry takes the lock.
+	 */
+	private final BoundedConcurrentCache<String, TextAttribute> cacheGetTextAttribute;
 	private static volatile ImmutableTuple<ScopeSelector, DelayedTextAttribute>[] scopeToAttribute;
 	private static volatile ImmutableTuple<ScopeSelector, DelayedTextAttribute>[] scopeToAttributeLight;
 	private static volatile ImmutableTuple<ScopeSelector, DelayedTextAttribute>[] scopeToAttributeDark;
@@ -51,7 +57,7 @@ import com.aptana.scope.ScopeSelector;
 	/**
 	 * A cache to memoize internally gotten delayed text attributes.
 	 */
-	private final Map<String, DelayedTextAttribute> cacheDelayedGetTextAttribute;
+	private final BoundedConcurrentCache<String, DelayedTextAttribute> cacheDelayedGetTextAttribute;
 
 	public ThemeGetTextAttribute(Theme theme)
 	{
@@ -59,11 +65,11 @@ import com.aptana.scope.ScopeSelector;
 		this.colorManager = theme.getColorManager();
 		this.defaultFG = theme.getForeground();
 		this.defaultBG = theme.getBackground();
-		this.cacheGetTextAttribute = new HashMap<String, TextAttribute>();
-		this.cacheDelayedGetTextAttribute = new HashMap<String, DelayedTextAttribute>();
+		this.cacheGetTextAttribute = new BoundedConcurrentCache<String, TextAttribute>(CACHE_SIZE);
+		this.cacheDelayedGetTextAttribute = new BoundedConcurrentCache<String, DelayedTextAttribute>(CACHE_SIZE);
 
 		List<ThemeRule> tokens = theme.getTokens();
-		selectors = new ArrayList<IScopeSelector>(tokens.size());
+		Collection<IScopeSelector> selectors = new ArrayList<IScopeSelector>(tokens.size());
 
 		for (ThemeRule rule : tokens)
 		{
@@ -73,22 +79,33 @@ import com.aptana.scope.ScopeSelector;
 			}
 			selectors.add(rule.getScopeSelector());
 		}
+		this.matcher = new ScopeSelectorMatcher(selectors, CACHE_SIZE);
 	}
 
 	/* default */IScopeSelector findMatch(String scope)
 	{
-		return ScopeSelector.bestMatch(selectors, scope);
+		return matcher.bestMatch(scope);
 	}
 
-	/* default */synchronized TextAttribute getTextAttribute(String scope)
+	/* default */TextAttribute getTextAttribute(String scope)
 	{
 		TextAttribute ta = cacheGetTextAttribute.get(scope);
 		if (ta != null)
 		{
 			return ta;
 		}
-		ta = internalGetTextAttribute(scope);
-		cacheGetTextAttribute.put(scope, ta);
+		return computeTextAttribute(scope);
+	}
+
+	private synchronized TextAttribute computeTextAttribute(String scope)
+	{
+		// May have been computed while we waited for the lock
+		TextAttribute ta = cacheGetTextAttribute.get(scope);
+		if (ta == null)
+		{
+			ta = internalGetTextAttribute(scope);
+			cacheGetTextAttribute.put(scope, ta);
+		}
 		return ta;
 	}
 
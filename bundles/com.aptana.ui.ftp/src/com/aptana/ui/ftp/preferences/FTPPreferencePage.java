@@ -44,6 +44,7 @@ public class FTPPreferencePage extends PreferencePage implements IWorkbenchPrefe
 	private UpdatePermissionsComposite uploadPermComposite;
 	private UpdatePermissionsComposite downloadPermComposite;
 	private Text fKeepAliveText;
+	private Text fMaxConnectionsText;
 
 	/**
 	 * Constructor.
@@ -75,6 +76,7 @@ public class FTPPreferencePage extends PreferencePage implements IWorkbenchPrefe
 
 		IEclipsePreferences prefs = InstanceScope.INSTANCE.getNode(FTPPlugin.PLUGIN_ID);
 		prefs.putInt(IFTPPreferenceConstants.KEEP_ALIVE_TIME, Integer.parseInt(fKeepAliveText.getText()));
+		prefs.putInt(IFTPPreferenceConstants.MAX_CONNECTIONS, Integer.parseInt(fMaxConnectionsText.getText()));
 		try
 		{
 			prefs.flush();
@@ -127,6 +129,23 @@ public class FTPPreferencePage extends PreferencePage implements IWorkbenchPrefe
 			}
 		});
 
+		label = new Label(keepAlive, SWT.NONE);
+		label.setText(Messages.FTPPreferencePage_LBL_MaxConnections);
+		fMaxConnectionsText = new Text(keepAlive, SWT.BORDER);
+		int maxConnections = Platform.getPreferencesService().getInt(FTPPlugin.PLUGIN_ID,
+				IFTPPreferenceConstants.MAX_CONNECTIONS, FTPPreferenceInitializer.DEFAULT_MAX_CONNECTIONS, null);
+		fMaxConnectionsText.setText(String.valueOf(maxConnections));
+		fMaxConnectionsText.setLayoutData(GridDataFactory.swtDefaults().align(SWT.FILL, SWT.CENTER).grab(true, false)
+				.create());
+		fMaxConnectionsText.addModifyListener(new ModifyListener()
+		{
+
+			public void modifyText(ModifyEvent e)
+			{
+				validate();
+			}
+		});
+
 		return main;
 	}
 
@@ -136,6 +155,7 @@ public class FTPPreferencePage extends PreferencePage implements IWorkbenchPrefe
 		uploadPermComposite.restoreDefaults();
 		downloadPermComposite.restoreDefaults();
 		fKeepAliveText.setText(String.valueOf(FTPPreferenceInitializer.DEFAULT_KEEP_ALIVE_MINUTES));
+		fMaxConnectionsText.setText(String.valueOf(FTPPreferenceInitializer.DEFAULT_MAX_CONNECTIONS));
 
 		super.performDefaults();
 	}
@@ -143,28 +163,32 @@ public class FTPPreferencePage extends PreferencePage implements IWorkbenchPrefe
 	private void validate()
 	{
 		String error = null;
-		String keepAliveMins = fKeepAliveText.getText();
-		if (StringUtil.isEmpty(keepAliveMins))
+		// makes sure the keep-alive time and the number of connections are positive integers
+		if (!isPositiveInteger(fKeepAliveText.getText()))
 		{
 			error = Messages.FTPPreferencePage_ERR_Invalid_KeepAlive_Time;
 		}
-		else
+		else if (!isPositiveInteger(fMaxConnectionsText.getText()))
 		{
-			// makes sure the keep-alive time is a positive integer
-			try
-			{
-				int mins = Integer.parseInt(keepAliveMins);
-				if (mins <= 0)
-				{
-					throw new NumberFormatException("negative"); //$NON-NLS-1$
-				}
-			}
-			catch (NumberFormatException e)
-			{
-				error = Messages.FTPPreferencePage_ERR_Invalid_KeepAlive_Time;
-			}
+			error = Messages.FTPPreferencePage_ERR_Invalid_MaxConnections;
 		}
 		setErrorMessage(error);
 		setValid(error == null);
 	}
+
+	private static boolean isPositiveInteger(String text)
+	{
+		if (StringUtil.isEmpty(text))
+		{
+			return false;
+		}
+		try
+		{
+			return Integer.parseInt(text) > 0;
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+	}
 }
@@ -18,8 +18,10 @@ public final class Messages extends NLS
 	private static final String BUNDLE_NAME = "com.aptana.ui.ftp.preferences.messages";//$NON-NLS-1$
 
 	public static String FTPPreferencePage_ERR_Invalid_KeepAlive_Time;
+	public static String FTPPreferencePage_ERR_Invalid_MaxConnections;
 	public static String FTPPreferencePage_LBL_Downloads;
 	public static String FTPPreferencePage_LBL_KeepAlive;
+	public static String FTPPreferencePage_LBL_MaxConnections;
 	public static String FTPPreferencePage_LBL_Uploads;
 	public static String FTPPreferencePage_Notes;
 
@@ -28,6 +28,16 @@ public interface IWebServerPreferenceConstants {
 	 */
 	String PREF_HTTP_SERVER_PORTS = PREFIX + ".http_server_ports"; //$NON-NLS-1$
 
+	/**
+	 * Number of IO threads used by built-in HTTP server, 0 to pick one based on the number of processors
+	 */
+	String PREF_HTTP_SERVER_IO_THREADS = PREFIX + ".http_server_io_threads"; //$NON-NLS-1$
+
+	/**
+	 * Whether built-in HTTP server keeps small files, their ETags and their gzipped contents in memory
+	 */
+	String PREF_HTTP_SERVER_FILE_CACHE = PREFIX + ".http_server_file_cache"; //$NON-NLS-1$
+
 	/**
 	 * Default IP address
 	 */
@@ -37,4 +47,14 @@ public interface IWebServerPreferenceConstants {
 	 * Default ports range
 	 */
 	int[] DEFAULT_HTTP_SERVER_PORTS_RANGE = new int[] { 8020, 8079 };
+
+	/**
+	 * Default number of IO threads
+	 */
+	int DEFAULT_HTTP_SERVER_IO_THREADS = 0;
+
+	/**
+	 * Default file cache setting
+	 */
+	boolean DEFAULT_HTTP_SERVER_FILE_CACHE = true;
 }
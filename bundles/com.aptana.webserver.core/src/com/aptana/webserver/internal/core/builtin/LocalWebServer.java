@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -39,6 +39,8 @@ import org.apache.http.protocol.ResponseConnControl;
 import org.apache.http.protocol.ResponseContent;
 import org.apache.http.protocol.ResponseDate;
 import org.apache.http.protocol.ResponseServer;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -69,10 +71,9 @@ public class LocalWebServer extends SimpleWebServer
 	private static final long SHUTDOWN_TIMEOUT = 2000;
 	private static final int SOCKET_BUFFER_SIZE = 16 * 1024; // $codepro.audit.disable
 																// multiplicationOrDivisionByPowersOf2
-	private static final int WORKER_COUNT = 2;
-
 	private Thread thread;
 	private ListeningIOReactor reactor;
+	private LocalWebServerFileCache fileCache;
 
 	protected int port;
 	private String hostName;
@@ -141,13 +142,21 @@ public class LocalWebServer extends SimpleWebServer
 	private void startServer(final InetAddress host, final int port)
 	{
 		updateState(State.STARTING);
+		if (WebServerPreferences.isFileCacheEnabled())
+		{
+			fileCache = new LocalWebServerFileCache();
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(
+					fileCache,
+					IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE
+							| IResourceChangeEvent.PRE_DELETE);
+		}
+		final LocalWebServerHttpRequestHandler requestHandler = new LocalWebServerHttpRequestHandler(this, fileCache);
 		thread = new Thread()
 		{
 			@Override
 			public void run()
 			{
-				runServer(new InetSocketAddress(host, port), new BasicAsyncRequestHandler(
-						new LocalWebServerHttpRequestHandler(LocalWebServer.this)));
+				runServer(new InetSocketAddress(host, port), new BasicAsyncRequestHandler(requestHandler));
 			}
 		};
 		thread.setDaemon(true);
@@ -197,7 +206,7 @@ public class LocalWebServer extends SimpleWebServer
 		// serviceHandler.setEventListener(new LocalWebServerLogger());
 
 		IOReactorConfig config = new IOReactorConfig();
-		config.setIoThreadCount(WORKER_COUNT);
+		config.setIoThreadCount(WebServerPreferences.getIOThreadCount());
 		config.setConnectTimeout(SOCKET_TIMEOUT);
 		config.setTcpNoDelay(true);
 		config.setSoKeepalive(true);
@@ -249,6 +258,12 @@ public class LocalWebServer extends SimpleWebServer
 				// ignore
 			}
 		}
+		if (fileCache != null)
+		{
+			ResourcesPlugin.getWorkspace().removeResourceChangeListener(fileCache);
+			fileCache.clear();
+			fileCache = null;
+		}
 		return Status.OK_STATUS;
 	}
 
@@ -0,0 +1,346 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.webserver.internal.core.builtin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.IOUtil;
+import com.aptana.webserver.core.WebServerCorePlugin;
+
+/**
+ * The contents of small files served by the built-in server, along with their strong ETag and, for text formats, their
+ * gzipped contents. The least recently used files are dropped once the contents exceed the capacity. Also keeps local
+ * copies of larger files from non-local stores, so they are only copied once.
+ * <p>
+ * An entry is only used while the file's modification time and length match. It is also dropped as soon as the
+ * workspace reports a change to the file.
+ */
+/* package */class LocalWebServerFileCache implements IResourceChangeListener
+{
+
+	/**
+	 * Files larger than this are streamed from disk.
+	 */
+	static final int MAX_ENTRY_SIZE = 256 * 1024; // $codepro.audit.disable multiplicationOrDivisionByPowersOf2
+	private static final long DEFAULT_CAPACITY = 16 * 1024 * 1024; // $codepro.audit.disable
+																	// multiplicationOrDivisionByPowersOf2
+	/**
+	 * Compressing smaller files doesn't pay off.
+	 */
+	private static final int MIN_GZIP_SIZE = 512;
+
+	static class Entry
+	{
+		final long lastModified;
+		final long length;
+		final String eTag;
+		final byte[] content;
+		/**
+		 * The gzipped content, or null if it's not worth compressing.
+		 */
+		final byte[] gzipped;
+
+		private Entry(long lastModified, long length, String eTag, byte[] content, byte[] gzipped)
+		{
+			this.lastModified = lastModified;
+			this.length = length;
+			this.eTag = eTag;
+			this.content = content;
+			this.gzipped = gzipped;
+		}
+
+		private int size()
+		{
+			return content.length + (gzipped == null ? 0 : gzipped.length);
+		}
+
+		private boolean matches(IFileInfo fileInfo)
+		{
+			return lastModified == fileInfo.getLastModified() && length == fileInfo.getLength();
+		}
+	}
+
+	private static class LocalCopy
+	{
+		final long lastModified;
+		final long length;
+		final File file;
+
+		private LocalCopy(long lastModified, long length, File file)
+		{
+			this.lastModified = lastModified;
+			this.length = length;
+			this.file = file;
+		}
+
+		private void delete()
+		{
+			if (!file.delete())
+			{
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	private final long capacity;
+	private final Map<URI, Entry> entries = new LinkedHashMap<URI, Entry>(16, 0.75f, true);
+	private final Map<URI, LocalCopy> localCopies = new HashMap<URI, LocalCopy>();
+	private long size;
+
+	LocalWebServerFileCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	LocalWebServerFileCache(long capacity)
+	{
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the cached contents of a file, reading them if needed.
+	 *
+	 * @param fileStore
+	 * @param fileInfo
+	 *            the current info of the file, at most {@link #MAX_ENTRY_SIZE} bytes long
+	 * @param compressible
+	 *            whether the gzipped contents should be prepared
+	 * @return
+	 * @throws CoreException
+	 * @throws IOException
+	 */
+	Entry get(IFileStore fileStore, IFileInfo fileInfo, boolean compressible) throws CoreException, IOException
+	{
+		URI uri = fileStore.toURI();
+		synchronized (this)
+		{
+			Entry entry = entries.get(uri);
+			if (entry != null)
+			{
+				if (entry.matches(fileInfo))
+				{
+					return entry;
+				}
+				remove(uri);
+			}
+		}
+
+		// read outside of the lock, concurrent requests for the same file just do it twice
+		byte[] content = read(fileStore, fileInfo);
+		byte[] gzipped = null;
+		if (compressible && content.length >= MIN_GZIP_SIZE)
+		{
+			gzipped = gzip(content);
+			if (gzipped.length >= content.length)
+			{
+				gzipped = null;
+			}
+		}
+		Entry entry = new Entry(fileInfo.getLastModified(), fileInfo.getLength(), '"' + digest(content) + '"',
+				content, gzipped);
+		put(uri, entry);
+		return entry;
+	}
+
+	/**
+	 * Returns a local copy of a file from a non-local store, copying it if needed.
+	 *
+	 * @param fileStore
+	 * @param fileInfo
+	 * @return
+	 * @throws CoreException
+	 */
+	File getLocalCopy(IFileStore fileStore, IFileInfo fileInfo) throws CoreException
+	{
+		URI uri = fileStore.toURI();
+		synchronized (this)
+		{
+			LocalCopy copy = localCopies.get(uri);
+			if (copy != null && copy.lastModified == fileInfo.getLastModified()
+					&& copy.length == fileInfo.getLength() && copy.file.exists())
+			{
+				return copy.file;
+			}
+		}
+		File file = fileStore.toLocalFile(EFS.CACHE, new NullProgressMonitor());
+		LocalCopy previous;
+		synchronized (this)
+		{
+			previous = localCopies.put(uri, new LocalCopy(fileInfo.getLastModified(), fileInfo.getLength(), file));
+		}
+		// requests still sending the previous copy keep their open channel to it
+		if (previous != null && !previous.file.equals(file))
+		{
+			previous.delete();
+		}
+		return file;
+	}
+
+	private synchronized void put(URI uri, Entry entry)
+	{
+		remove(uri);
+		entries.put(uri, entry);
+		size += entry.size();
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (size > capacity && iterator.hasNext())
+		{
+			size -= iterator.next().size();
+			iterator.remove();
+		}
+	}
+
+	synchronized void remove(URI uri)
+	{
+		Entry entry = entries.remove(uri);
+		if (entry != null)
+		{
+			size -= entry.size();
+		}
+		LocalCopy copy = localCopies.remove(uri);
+		if (copy != null)
+		{
+			copy.delete();
+		}
+	}
+
+	synchronized void clear()
+	{
+		entries.clear();
+		size = 0;
+		for (LocalCopy copy : localCopies.values())
+		{
+			copy.delete();
+		}
+		localCopies.clear();
+	}
+
+	synchronized long size()
+	{
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent
+	 * )
+	 */
+	public void resourceChanged(IResourceChangeEvent event)
+	{
+		IResourceDelta delta = event.getDelta();
+		if (delta == null)
+		{
+			// a project is about to be closed or deleted
+			clear();
+			return;
+		}
+		final List<URI> changed = new ArrayList<URI>();
+		try
+		{
+			delta.accept(new IResourceDeltaVisitor()
+			{
+				public boolean visit(IResourceDelta delta) throws CoreException
+				{
+					IResource resource = delta.getResource();
+					if (resource.getType() != IResource.FILE)
+					{
+						return true;
+					}
+					if (delta.getKind() != IResourceDelta.CHANGED
+							|| (delta.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED)) != 0)
+					{
+						URI location = resource.getLocationURI();
+						if (location != null)
+						{
+							changed.add(location);
+						}
+					}
+					return false;
+				}
+			});
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logWarning(WebServerCorePlugin.getDefault(), e);
+			clear();
+			return;
+		}
+		for (URI uri : changed)
+		{
+			remove(uri);
+		}
+	}
+
+	private static byte[] read(IFileStore fileStore, IFileInfo fileInfo) throws CoreException, IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream((int) fileInfo.getLength());
+		InputStream in = fileStore.openInputStream(EFS.NONE, new NullProgressMonitor());
+		try
+		{
+			IOUtil.pipe(in, out);
+		}
+		finally
+		{
+			in.close();
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 2);
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(content);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static String digest(byte[] content)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest(content))
+			{
+				builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+				builder.append(Character.forDigit(b & 0xF, 16));
+			}
+			return builder.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
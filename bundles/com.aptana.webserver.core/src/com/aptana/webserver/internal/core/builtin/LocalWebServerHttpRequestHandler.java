@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -15,17 +15,27 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
+import java.text.DateFormat;
 import java.text.MessageFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 import java.util.regex.Pattern;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.MethodNotSupportedException;
+import org.apache.http.NameValuePair;
 import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NFileEntity;
 import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.protocol.HTTP;
@@ -58,14 +68,32 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 
 	private final static Pattern PATTERN_INDEX = Pattern.compile("(index|default)\\.x?html?"); //$NON-NLS-1$
 
+	private final static String GZIP = "gzip"; //$NON-NLS-1$
+	private final static String GZIP_ETAG_SUFFIX = "-gz"; //$NON-NLS-1$
+	private final static String WEAK_PREFIX = "W/"; //$NON-NLS-1$
+	private final static String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz"; //$NON-NLS-1$
+	private final static TimeZone GMT = TimeZone.getTimeZone("GMT"); //$NON-NLS-1$
+
 	private IURIMapper uriMapper;
+	private final LocalWebServerFileCache cache;
 
 	/**
 	 * @param documentRoot
 	 */
 	protected LocalWebServerHttpRequestHandler(IURIMapper uriMapper)
+	{
+		this(uriMapper, null);
+	}
+
+	/**
+	 * @param uriMapper
+	 * @param cache
+	 *            the cache of small files and local copies, or null to read each file for every request
+	 */
+	protected LocalWebServerHttpRequestHandler(IURIMapper uriMapper, LocalWebServerFileCache cache)
 	{
 		this.uriMapper = uriMapper;
+		this.cache = cache;
 	}
 
 	private void handleRequest(HttpRequest request, HttpResponse response, boolean head) throws HttpException,
@@ -96,18 +124,84 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 		}
 		else
 		{
-			response.setStatusCode(HttpStatus.SC_OK);
-			if (head)
+			serveFile(request, response, head, fileStore, fileInfo);
+		}
+	}
+
+	private void serveFile(HttpRequest request, HttpResponse response, boolean head, IFileStore fileStore,
+			IFileInfo fileInfo) throws CoreException, IOException
+	{
+		ContentType contentType = getMimeType(fileStore.getName());
+		LocalWebServerFileCache.Entry entry = null;
+		String eTag;
+		if (cache != null && fileInfo.getLength() <= LocalWebServerFileCache.MAX_ENTRY_SIZE)
+		{
+			entry = cache.get(fileStore, fileInfo, isCompressible(contentType));
+			eTag = entry.eTag;
+		}
+		else
+		{
+			eTag = MessageFormat.format("\"{0}-{1}\"", Long.toHexString(fileInfo.getLength()), //$NON-NLS-1$
+					Long.toHexString(fileInfo.getLastModified()));
+		}
+
+		boolean gzip = false;
+		if (entry != null && entry.gzipped != null)
+		{
+			// the compressed and identity responses are different representations, each with its own strong tag
+			response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			gzip = acceptsGzip(request);
+			if (gzip)
+			{
+				eTag = toGzipETag(eTag);
+				response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+			}
+		}
+
+		response.setHeader(HttpHeaders.ETAG, eTag);
+		response.setHeader(HttpHeaders.LAST_MODIFIED, formatDate(fileInfo.getLastModified()));
+		// let the browser keep the files, but always check whether they changed
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache"); //$NON-NLS-1$
+		if (isNotModified(request, eTag, fileInfo.getLastModified()))
+		{
+			response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+			response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+			response.setEntity(null);
+			return;
+		}
+
+		response.setStatusCode(HttpStatus.SC_OK);
+		if (head)
+		{
+			response.setEntity(null);
+		}
+		else if (entry != null)
+		{
+			if (gzip)
+			{
+				response.setEntity(new NByteArrayEntity(entry.gzipped, contentType));
+			}
+			else
+			{
+				response.setEntity(new NByteArrayEntity(entry.content, contentType));
+			}
+		}
+		else
+		{
+			File file = fileStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
+			if (file != null)
 			{
-				response.setEntity(null);
+				// sent with FileChannel.transferTo()
+				response.setEntity(new NFileEntity(file, contentType));
+			}
+			else if (cache != null)
+			{
+				response.setEntity(new NFileEntity(cache.getLocalCopy(fileStore, fileInfo), contentType));
 			}
 			else
 			{
-				File file = fileStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
-				final File temporaryFile = (file == null) ? fileStore.toLocalFile(EFS.CACHE, new NullProgressMonitor())
-						: null;
-				response.setEntity(new NFileEntity((file != null) ? file : temporaryFile, getMimeType(fileStore
-						.getName()))
+				final File temporaryFile = fileStore.toLocalFile(EFS.CACHE, new NullProgressMonitor());
+				response.setEntity(new NFileEntity(temporaryFile, contentType)
 				{
 					@Override
 					public void close() throws IOException
@@ -118,7 +212,7 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 						}
 						finally
 						{
-							if (temporaryFile != null && !temporaryFile.delete())
+							if (!temporaryFile.delete())
 							{
 								temporaryFile.deleteOnExit();
 							}
@@ -129,6 +223,104 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 		}
 	}
 
+	/**
+	 * Evaluates the conditional headers of a GET or HEAD request. If-None-Match takes precedence over
+	 * If-Modified-Since, see RFC 2616, 14.26.
+	 *
+	 * @param request
+	 * @param eTag
+	 * @param lastModified
+	 * @return
+	 */
+	private static boolean isNotModified(HttpRequest request, String eTag, long lastModified)
+	{
+		Header ifNoneMatch = request.getFirstHeader(HttpHeaders.IF_NONE_MATCH);
+		if (ifNoneMatch != null)
+		{
+			for (String tag : ifNoneMatch.getValue().split(",")) //$NON-NLS-1$
+			{
+				tag = tag.trim();
+				if (tag.startsWith(WEAK_PREFIX))
+				{
+					tag = tag.substring(WEAK_PREFIX.length());
+				}
+				if ("*".equals(tag) || eTag.equals(tag)) //$NON-NLS-1$
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+		Header ifModifiedSince = request.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE);
+		if (ifModifiedSince != null)
+		{
+			try
+			{
+				// HTTP dates have a resolution of one second
+				return lastModified / 1000 <= createDateFormat().parse(ifModifiedSince.getValue()).getTime() / 1000;
+			}
+			catch (ParseException e)
+			{
+				// ignore the header
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Derives the tag of the gzip encoded representation from the tag of the file's identity representation.
+	 *
+	 * @param eTag
+	 *            a quoted strong entity tag
+	 * @return
+	 */
+	private static String toGzipETag(String eTag)
+	{
+		return eTag.substring(0, eTag.length() - 1) + GZIP_ETAG_SUFFIX + '"';
+	}
+
+	private static boolean acceptsGzip(HttpRequest request)
+	{
+		for (Header header : request.getHeaders(HttpHeaders.ACCEPT_ENCODING))
+		{
+			for (HeaderElement element : header.getElements())
+			{
+				if (GZIP.equalsIgnoreCase(element.getName()))
+				{
+					NameValuePair q = element.getParameterByName("q"); //$NON-NLS-1$
+					try
+					{
+						return q == null || Float.parseFloat(q.getValue()) > 0;
+					}
+					catch (NumberFormatException e)
+					{
+						return false;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isCompressible(ContentType contentType)
+	{
+		String mimeType = contentType.getMimeType();
+		return mimeType.startsWith("text/") || mimeType.endsWith("javascript") || mimeType.endsWith("json") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				|| mimeType.endsWith("xml"); //$NON-NLS-1$
+	}
+
+	private static String formatDate(long time)
+	{
+		return createDateFormat().format(new Date(time));
+	}
+
+	private static DateFormat createDateFormat()
+	{
+		DateFormat format = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+		format.setTimeZone(GMT);
+		return format;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.apache.http.protocol.HttpRequestHandler#handle(org.apache.http.HttpRequest,
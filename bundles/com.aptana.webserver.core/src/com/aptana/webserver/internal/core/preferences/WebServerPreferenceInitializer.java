@@ -34,6 +34,10 @@ public class WebServerPreferenceInitializer extends AbstractPreferenceInitialize
 		node.put(IWebServerPreferenceConstants.PREF_HTTP_SERVER_PORTS,
 				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_PORTS_RANGE[0]
 						+ "-" + IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_PORTS_RANGE[1]); //$NON-NLS-1$
+		node.putInt(IWebServerPreferenceConstants.PREF_HTTP_SERVER_IO_THREADS,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_IO_THREADS);
+		node.putBoolean(IWebServerPreferenceConstants.PREF_HTTP_SERVER_FILE_CACHE,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_FILE_CACHE);
 	}
 
 }
@@ -103,4 +103,36 @@ public class WebServerPreferences
 		return new int[] { portsStart, portsEnd };
 	}
 
+	/**
+	 * Returns preferences-specified number of IO threads of the local webserver
+	 * 
+	 * @return
+	 */
+	public static int getIOThreadCount()
+	{
+		int count = Platform.getPreferencesService().getInt(WebServerCorePlugin.PLUGIN_ID,
+				IWebServerPreferenceConstants.PREF_HTTP_SERVER_IO_THREADS,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_IO_THREADS,
+				new IScopeContext[] { InstanceScope.INSTANCE, DefaultScope.INSTANCE });
+		if (count <= 0)
+		{
+			// one per processor, but no less than the two used so far
+			count = Math.max(2, Runtime.getRuntime().availableProcessors());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns whether the local webserver should cache small files in memory
+	 * 
+	 * @return
+	 */
+	public static boolean isFileCacheEnabled()
+	{
+		return Platform.getPreferencesService().getBoolean(WebServerCorePlugin.PLUGIN_ID,
+				IWebServerPreferenceConstants.PREF_HTTP_SERVER_FILE_CACHE,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_FILE_CACHE,
+				new IScopeContext[] { InstanceScope.INSTANCE, DefaultScope.INSTANCE });
+	}
+
 }
@@ -27,6 +27,7 @@
  * Michael Scharf (Wind River) - [240098] The cursor should not blink when the terminal is disconnected
  * Anton Leherbauer (Wind River) - [335021] Middle mouse button copy/paste does not work with the terminal
  * Max Stepanov (Appcelerator) - [339768] Fix ANSI code for PgUp / PgDn
+ * Appcelerator, Inc. - Let subclasses provide the text canvas model
  *******************************************************************************/
 package org.eclipse.tm.internal.terminal.emulator;
 
@@ -72,6 +73,7 @@ import org.eclipse.tm.internal.terminal.control.ITerminalViewControl;
 import org.eclipse.tm.internal.terminal.control.impl.ITerminalControlForText;
 import org.eclipse.tm.internal.terminal.control.impl.TerminalMessages;
 import org.eclipse.tm.internal.terminal.control.impl.TerminalPlugin;
+import org.eclipse.tm.internal.terminal.model.SynchronizedTerminalTextData;
 import org.eclipse.tm.internal.terminal.provisional.api.ITerminalConnector;
 import org.eclipse.tm.internal.terminal.provisional.api.ITerminalControl;
 import org.eclipse.tm.internal.terminal.provisional.api.Logger;
@@ -330,6 +332,8 @@ public class VT100TerminalControl implements ITerminalControlForText, ITerminalC
 		disconnectTerminal();
 		fClipboard.dispose();
 		getTerminalText().dispose();
+		if(fTerminalModel instanceof SynchronizedTerminalTextData)
+			((SynchronizedTerminalTextData)fTerminalModel).dispose();
 	}
 
 	public void connectTerminal() {
@@ -607,7 +611,7 @@ public class VT100TerminalControl implements ITerminalControlForText, ITerminalC
 		ITerminalTextDataSnapshot snapshot=fTerminalModel.makeSnapshot();
 		// TODO how to get the initial size correctly!
 		snapshot.updateSnapshot(false);
-		ITextCanvasModel canvasModel=new PollingTextCanvasModel(snapshot);
+		ITextCanvasModel canvasModel=createTextCanvasModel(snapshot);
 		fCtlText=createTextCanvas(fWndParent,canvasModel,createLineRenderer(canvasModel));
 
 		fCtlText.setLayoutData(new GridData(GridData.FILL_BOTH));
@@ -631,6 +635,10 @@ public class VT100TerminalControl implements ITerminalControlForText, ITerminalC
 		setFont(JFaceResources.getTextFont());
 	}
 	
+	protected ITextCanvasModel createTextCanvasModel(ITerminalTextDataSnapshot snapshot) {
+		return new PollingTextCanvasModel(snapshot);
+	}
+	
 	protected TextCanvas createTextCanvas(Composite parent, ITextCanvasModel canvasModel, ILinelRenderer linelRenderer) {
 		return new TextCanvas(parent, canvasModel, SWT.NONE, linelRenderer);
 	}
@@ -97,4 +97,11 @@ public class SynchronizedTerminalTextData implements ITerminalTextData {
 	synchronized public void setMaxHeight(int height) {
 		fData.setMaxHeight(height);
 	}
+	/**
+	 * Releases the resources of the underlying {@link TerminalTextData}, if any.
+	 */
+	synchronized public void dispose() {
+		if(fData instanceof TerminalTextData)
+			((TerminalTextData)fData).dispose();
+	}
 }
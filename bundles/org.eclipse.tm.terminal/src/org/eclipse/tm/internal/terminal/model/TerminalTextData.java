@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.tm.internal.terminal.model;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -78,13 +79,33 @@ public class TerminalTextData implements ITerminalTextData {
 	}
 
 	public TerminalTextData() {
-		this(new TerminalTextDataFastScroll());
+		this(new TerminalTextDataRingBuffer());
 
+//		this(new TerminalTextDataFastScroll());
 //		this(new TerminalTextDataStore());
 	}
 	public TerminalTextData(ITerminalTextData data) {
 		fData=data;
 	}
+	/**
+	 * A model that moves lines more than <code>residentLines</code> lines above
+	 * the bottom to a temporary file. It must be disposed to delete the file.
+	 * @param directory where to create the file, which must only be accessible by the user
+	 * @param residentLines the number of lines always kept in memory
+	 * @see TerminalTextDataRingBuffer#setSpilling(File, int)
+	 */
+	public TerminalTextData(File directory, int residentLines) {
+		this(new TerminalTextDataRingBuffer());
+		((TerminalTextDataRingBuffer)fData).setSpilling(directory, residentLines);
+	}
+	/**
+	 * Deletes the file the scrollback may have been spilled to.
+	 * The model must not be used afterwards.
+	 */
+	public void dispose() {
+		if(fData instanceof TerminalTextDataRingBuffer)
+			((TerminalTextDataRingBuffer)fData).dispose();
+	}
 	public int getWidth() {
 		return fData.getWidth();
 	}
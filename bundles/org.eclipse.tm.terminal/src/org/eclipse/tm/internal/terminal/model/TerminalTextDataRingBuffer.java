@@ -0,0 +1,757 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.tm.internal.terminal.provisional.api.Logger;
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.ITerminalTextDataSnapshot;
+import org.eclipse.tm.terminal.model.LineSegment;
+import org.eclipse.tm.terminal.model.Style;
+
+/**
+ * A store for large scrollback. Like {@link TerminalTextDataFastScroll}, the
+ * lines live in a ring of {@link #getMaxHeight()} slots, so scrolling the
+ * entire {@link #getHeight()} only moves an offset. Each line is kept as a
+ * char array of the columns actually written to, and its styles as runs
+ * (pairs of end column and index into a palette of the styles used) instead
+ * of one {@link Style} reference per cell.
+ * <p>
+ * Optionally (see {@link #setSpilling(File, int)}) blocks of lines that
+ * scrolled far enough out of view are compressed and moved to a temporary
+ * file, which {@link #dispose()} deletes. They are read back on demand, and brought back into memory when they
+ * get modified.
+ * <p>
+ * This class is not thread safe.
+ */
+public class TerminalTextDataRingBuffer implements ITerminalTextData {
+	/**
+	 * The number of slots spilled at once.
+	 */
+	static final int BLOCK_SIZE=256;
+	private static final int RESIDENT=-1;
+
+	private char[][] fChars;
+	/**
+	 * Per line, the end column (exclusive) and palette index of each style
+	 * run. The runs cover exactly the columns of the line's chars.
+	 */
+	private int[][] fRuns;
+	private int fWidth;
+	private int fHeight;
+	private int fMaxHeight;
+	/**
+	 * The slot of line 0.
+	 */
+	private int fOffset;
+	private int fCursorColumn;
+	private int fCursorLine;
+
+	/**
+	 * The styles used so far. Index 0 is the null style.
+	 */
+	private Style[] fPalette=new Style[8];
+	private int fPaletteSize=1;
+	private final Map fPaletteIndex=new HashMap();
+
+	private TerminalTextDataSegmentFile fSegmentFile;
+	private int fResidentLines;
+	/**
+	 * The segment of each block of slots, or {@link #RESIDENT}.
+	 */
+	private int[] fBlockSegments;
+	private int fLinesSinceSpill;
+	/**
+	 * The last spilled block read back.
+	 */
+	private int fCachedBlock=-1;
+	private char[][] fCachedChars;
+	private int[][] fCachedRuns;
+
+	public TerminalTextDataRingBuffer(int maxHeight) {
+		fMaxHeight=maxHeight;
+		fChars=new char[maxHeight][];
+		fRuns=new int[maxHeight][];
+	}
+	public TerminalTextDataRingBuffer() {
+		this(1);
+	}
+	/**
+	 * This is used in asserts to throw an {@link RuntimeException}.
+	 * This is useful for tests.
+	 * @return never -- throws an exception
+	 */
+	private boolean throwRuntimeException() {
+		throw new RuntimeException();
+	}
+
+	/**
+	 * Lets blocks of lines that are more than <code>residentLines</code> lines
+	 * above the bottom be moved to a compressed file.
+	 * @param directory where to create the file, which must only be accessible
+	 * by the user (e.g. the plugin's state location): the scrollback may hold
+	 * anything that was typed or printed in the terminal
+	 * @param residentLines the number of lines always kept in memory, or 0 to keep everything in memory
+	 */
+	public void setSpilling(File directory, int residentLines) {
+		if(residentLines>0 && directory==null)
+			throw new IllegalArgumentException("no directory to spill to"); //$NON-NLS-1$
+		unspillAll();
+		if(fSegmentFile!=null)
+			fSegmentFile.close();
+		fResidentLines=residentLines;
+		if(residentLines>0) {
+			fSegmentFile=new TerminalTextDataSegmentFile(directory);
+			fBlockSegments=newBlockSegments(fMaxHeight);
+		} else {
+			fSegmentFile=null;
+			fBlockSegments=null;
+		}
+	}
+	/**
+	 * Deletes the file of spilled lines, if any. The lines in it are lost.
+	 */
+	public void dispose() {
+		if(fSegmentFile!=null) {
+			fSegmentFile.close();
+			fSegmentFile=null;
+			fBlockSegments=null;
+			invalidateCache();
+		}
+	}
+	/**
+	 * @return the number of blocks of lines currently on disk
+	 */
+	int getSpilledBlockCount() {
+		int n=0;
+		if(fBlockSegments!=null) {
+			for (int i = 0; i < fBlockSegments.length; i++) {
+				if(fBlockSegments[i]!=RESIDENT)
+					n++;
+			}
+		}
+		return n;
+	}
+
+	int getPositionOfLine(int line) {
+		return (line+fOffset)%fMaxHeight;
+	}
+	private int getLineOfPosition(int position) {
+		return (position-fOffset+fMaxHeight)%fMaxHeight;
+	}
+	private void moveOffset(int delta) {
+		assert Math.abs(delta)<fMaxHeight || throwRuntimeException();
+		fOffset=(fMaxHeight+fOffset+delta)%fMaxHeight;
+	}
+
+	public int getWidth() {
+		return fWidth;
+	}
+	public int getHeight() {
+		return fHeight;
+	}
+	public int getMaxHeight() {
+		return fMaxHeight;
+	}
+
+	public void setDimensions(int height, int width) {
+		assert height>=0 || throwRuntimeException();
+		assert width>=0 || throwRuntimeException();
+		if(height>fMaxHeight)
+			setMaxHeight(height);
+		// clean the new lines
+		for (int i = fHeight; i < height; i++) {
+			cleanPosition(getPositionOfLine(i));
+		}
+		fWidth=width;
+		fHeight=height;
+	}
+
+	public void setMaxHeight(int maxHeight) {
+		assert maxHeight>=fHeight || throwRuntimeException();
+		if(maxHeight==fMaxHeight)
+			return;
+		unspillAll();
+		// move everything to offset 0
+		char[][] chars=new char[maxHeight][];
+		int[][] runs=new int[maxHeight][];
+		for (int i = 0; i < fHeight; i++) {
+			int position=getPositionOfLine(i);
+			chars[i]=fChars[position];
+			runs[i]=fRuns[position];
+		}
+		fChars=chars;
+		fRuns=runs;
+		fOffset=0;
+		fMaxHeight=maxHeight;
+		if(fBlockSegments!=null)
+			fBlockSegments=newBlockSegments(maxHeight);
+	}
+
+	public void addLine() {
+		if(fHeight<fMaxHeight) {
+			setDimensions(fHeight+1, fWidth);
+		} else {
+			scroll(0,fHeight,-1);
+		}
+	}
+
+	public void scroll(int startLine, int size, int shift) {
+		assert (startLine>=0 && startLine+size<=fHeight) || throwRuntimeException();
+		if(shift>=fMaxHeight || -shift>=fMaxHeight) {
+			cleanLines(startLine, fHeight-startLine);
+			return;
+		}
+		if(size==fHeight && size==fMaxHeight) {
+			// the whole ring scrolls: only move the offset
+			moveOffset(-shift);
+			if(shift<0) {
+				cleanLines(Math.max(startLine, startLine+size+shift),Math.min(-shift, fHeight-startLine));
+			} else {
+				cleanLines(startLine, Math.min(shift, fHeight-startLine));
+			}
+		} else if(shift<0) {
+			// move the region up
+			// shift is negative!!
+			for (int i = startLine; i < startLine+size+shift; i++) {
+				moveLine(getPositionOfLine(i-shift), getPositionOfLine(i));
+			}
+			// then clean the opened lines
+			cleanLines(Math.max(startLine, startLine+size+shift),Math.min(-shift, fHeight-startLine));
+		} else {
+			for (int i = startLine+size-1; i >=startLine && i-shift>=0; i--) {
+				moveLine(getPositionOfLine(i-shift), getPositionOfLine(i));
+			}
+			cleanLines(startLine, Math.min(shift, fHeight-startLine));
+		}
+		fLinesSinceSpill+=Math.abs(shift);
+		if(fLinesSinceSpill>=BLOCK_SIZE) {
+			fLinesSinceSpill=0;
+			spillOldBlocks();
+		}
+	}
+	/**
+	 * Moves the data of a slot into another one. The source slot has to be
+	 * overwritten or cleaned afterwards.
+	 */
+	private void moveLine(int from, int to) {
+		if(from==to)
+			return;
+		makeResident(to);
+		if(isSpilled(from)) {
+			// the cached arrays must not be modified
+			char[] chars=getCharsOfPosition(from);
+			fChars[to]=chars==null ? null : (char[]) chars.clone();
+			int[] runs=getRunsOfPosition(from);
+			fRuns[to]=runs==null ? null : (int[]) runs.clone();
+		} else {
+			fChars[to]=fChars[from];
+			fRuns[to]=fRuns[from];
+		}
+	}
+	private void cleanLines(int line, int len) {
+		for (int i = line; i < line+len; i++) {
+			cleanPosition(getPositionOfLine(i));
+		}
+	}
+	private void cleanPosition(int position) {
+		makeResident(position);
+		fChars[position]=null;
+		fRuns[position]=null;
+	}
+	public void cleanLine(int line) {
+		assert (line>=0 && line<fHeight) || throwRuntimeException();
+		cleanPosition(getPositionOfLine(line));
+	}
+
+	public char getChar(int line, int column) {
+		assert (line>=0 && line<fHeight) || throwRuntimeException();
+		assert column<fWidth || throwRuntimeException();
+		char[] chars=getCharsOfPosition(getPositionOfLine(line));
+		if(chars==null||column>=chars.length)
+			return 0;
+		return chars[column];
+	}
+	public Style getStyle(int line, int column) {
+		assert (line>=0 && line<fHeight) || throwRuntimeException();
+		assert column<fWidth || throwRuntimeException();
+		int[] runs=getRunsOfPosition(getPositionOfLine(line));
+		if(runs!=null) {
+			for (int i = 0; i < runs.length; i+=2) {
+				if(column<runs[i])
+					return fPalette[runs[i+1]];
+			}
+		}
+		return null;
+	}
+	public char[] getChars(int line) {
+		assert (line>=0 && line<fHeight) || throwRuntimeException();
+		char[] chars=getCharsOfPosition(getPositionOfLine(line));
+		if(chars==null)
+			return null;
+		return (char[]) chars.clone();
+	}
+	public Style[] getStyles(int line) {
+		assert (line>=0 && line<fHeight) || throwRuntimeException();
+		int position=getPositionOfLine(line);
+		char[] chars=getCharsOfPosition(position);
+		if(chars==null)
+			return null;
+		int[] runs=getRunsOfPosition(position);
+		Style[] styles=new Style[chars.length];
+		int column=0;
+		for (int i = 0; i < runs.length; i+=2) {
+			Style style=fPalette[runs[i+1]];
+			for (; column < runs[i]; column++) {
+				styles[column]=style;
+			}
+		}
+		return styles;
+	}
+
+	public LineSegment[] getLineSegments(int line, int column, int len) {
+		assert (line>=0 && line<fHeight) || throwRuntimeException();
+		int position=getPositionOfLine(line);
+		char[] chars=getCharsOfPosition(position);
+		int[] runs=getRunsOfPosition(position);
+		int n=column+len;
+		char[] text=new char[Math.max(len, 0)];
+		if(chars!=null && column<chars.length)
+			System.arraycopy(chars, column, text, 0, Math.min(chars.length, n)-column);
+
+		List segments=new ArrayList();
+		int col=column;
+		Style style=null;
+		int run=0;
+		for (int i = column; i < n;) {
+			// find the run of column i, if the line is that long
+			while(runs!=null && run<runs.length && runs[run]<=i)
+				run+=2;
+			Style s=null;
+			int end=n;
+			if(runs!=null && run<runs.length) {
+				s=fPalette[runs[run+1]];
+				end=Math.min(runs[run], n);
+			}
+			if(i==column) {
+				style=s;
+			} else if(s!=style) {
+				segments.add(new LineSegment(col,new String(text,col-column,i-col),style));
+				style=s;
+				col=i;
+			}
+			i=end;
+		}
+		if(col < n) {
+			segments.add(new LineSegment(col,new String(text,col-column,n-col),style));
+		}
+		return (LineSegment[]) segments.toArray(new LineSegment[segments.size()]);
+	}
+
+	public void setChar(int line, int column, char c, Style style) {
+		assert (line>=0 && line<fHeight) || throwRuntimeException();
+		int position=getPositionOfLine(line);
+		char[] chars=ensureLineLength(position, column+1);
+		chars[column]=c;
+		setStyle(position, column, column+1, style);
+	}
+	public void setChars(int line, int column, char[] chars, Style style) {
+		setChars(line,column,chars,0,chars.length,style);
+	}
+	public void setChars(int line, int column, char[] chars, int start, int len, Style style) {
+		assert (line>=0 && line<fHeight) || throwRuntimeException();
+		int position=getPositionOfLine(line);
+		char[] lineChars=ensureLineLength(position, column+len);
+		System.arraycopy(chars, start, lineChars, column, len);
+		setStyle(position, column, column+len, style);
+	}
+	/**
+	 * Makes the chars of a line at least <code>length</code> long. The runs
+	 * are not extended.
+	 * @return the chars of the line
+	 */
+	private char[] ensureLineLength(int position, int length) {
+		if(length>fWidth)
+			throw new RuntimeException();
+		makeResident(position);
+		char[] chars=fChars[position];
+		if(chars==null) {
+			chars=new char[length];
+			fChars[position]=chars;
+		} else if(chars.length<length) {
+			char[] longer=new char[length];
+			System.arraycopy(chars, 0, longer, 0, chars.length);
+			chars=longer;
+			fChars[position]=chars;
+		}
+		return chars;
+	}
+	/**
+	 * Sets the style of the columns <code>from</code> to <code>to</code>
+	 * (exclusive), right after the chars were written.
+	 */
+	private void setStyle(int position, int from, int to, Style style) {
+		int index=getPaletteIndex(style);
+		int[] runs=fRuns[position];
+		if(runs==null)
+			runs=new int[0];
+		int n=runs.length;
+		int length=n==0 ? 0 : runs[n-2];
+		if(from==length && n>0 && runs[n-1]==index) {
+			// appending with the style of the last run
+			runs[n-2]=to;
+			return;
+		}
+		for (int i = 0; i < n; i+=2) {
+			if(from<runs[i]) {
+				if(runs[i+1]==index && to<=runs[i]) {
+					// nothing changes
+					return;
+				}
+				break;
+			}
+		}
+		int[] result=new int[n+6];
+		int m=0;
+		int start=0;
+		for (int i = 0; i < n && start<from; i+=2) {
+			m=appendRun(result, m, Math.min(runs[i], from), runs[i+1]);
+			start=runs[i];
+		}
+		if(length<from) {
+			// the columns skipped were never written to
+			m=appendRun(result, m, from, 0);
+		}
+		m=appendRun(result, m, to, index);
+		for (int i = 0; i < n; i+=2) {
+			if(runs[i]>to)
+				m=appendRun(result, m, runs[i], runs[i+1]);
+		}
+		if(m<result.length) {
+			int[] trimmed=new int[m];
+			System.arraycopy(result, 0, trimmed, 0, m);
+			result=trimmed;
+		}
+		fRuns[position]=result;
+	}
+	private static int appendRun(int[] runs, int n, int end, int index) {
+		if(n>0 && runs[n-1]==index) {
+			runs[n-2]=end;
+			return n;
+		}
+		runs[n]=end;
+		runs[n+1]=index;
+		return n+2;
+	}
+	private int getPaletteIndex(Style style) {
+		if(style==null)
+			return 0;
+		Integer index=(Integer) fPaletteIndex.get(style);
+		if(index!=null)
+			return index.intValue();
+		if(fPaletteSize==fPalette.length) {
+			Style[] palette=new Style[fPaletteSize*2];
+			System.arraycopy(fPalette, 0, palette, 0, fPaletteSize);
+			fPalette=palette;
+		}
+		fPalette[fPaletteSize]=style;
+		fPaletteIndex.put(style, new Integer(fPaletteSize));
+		return fPaletteSize++;
+	}
+	/**
+	 * Stores a line given as chars and one style per column.
+	 */
+	private void setLine(int position, char[] chars, Style[] styles) {
+		makeResident(position);
+		if(chars==null) {
+			fChars[position]=null;
+			fRuns[position]=null;
+			return;
+		}
+		int[] runs=new int[8];
+		int n=0;
+		for (int i = 0; i < chars.length; i++) {
+			int index=getPaletteIndex(styles!=null && i<styles.length ? styles[i] : null);
+			if(n==runs.length) {
+				int[] longer=new int[n*2];
+				System.arraycopy(runs, 0, longer, 0, n);
+				runs=longer;
+			}
+			n=appendRun(runs, n, i+1, index);
+		}
+		int[] trimmed=new int[n];
+		System.arraycopy(runs, 0, trimmed, 0, n);
+		fChars[position]=chars;
+		fRuns[position]=trimmed;
+	}
+
+	public void copy(ITerminalTextData source) {
+		dropSpilledBlocks();
+		int n=source.getHeight();
+		if(n>fMaxHeight) {
+			fMaxHeight=n;
+			if(fBlockSegments!=null)
+				fBlockSegments=newBlockSegments(n);
+		}
+		fChars=new char[fMaxHeight][];
+		fRuns=new int[fMaxHeight][];
+		fOffset=0;
+		fWidth=source.getWidth();
+		fHeight=n;
+		for (int i = 0; i < n; i++) {
+			copyLine(source, i, i);
+		}
+		fCursorLine=source.getCursorLine();
+		fCursorColumn=source.getCursorColumn();
+	}
+	public void copyLine(ITerminalTextData source, int sourceLine, int destLine) {
+		assert (destLine>=0 && destLine<fHeight) || throwRuntimeException();
+		int position=getPositionOfLine(destLine);
+		if(source==this) {
+			int from=getPositionOfLine(sourceLine);
+			if(from==position)
+				return;
+			char[] chars=getCharsOfPosition(from);
+			int[] runs=getRunsOfPosition(from);
+			makeResident(position);
+			fChars[position]=chars==null ? null : (char[]) chars.clone();
+			fRuns[position]=runs==null ? null : (int[]) runs.clone();
+		} else {
+			setLine(position, source.getChars(sourceLine), source.getStyles(sourceLine));
+		}
+	}
+	public void copyRange(ITerminalTextData source, int sourceStartLine, int destStartLine, int length) {
+		assert (destStartLine>=0 && destStartLine+length<=fHeight) || throwRuntimeException();
+		for (int i = 0; i < length; i++) {
+			copyLine(source, i+sourceStartLine, i+destStartLine);
+		}
+	}
+
+	public ITerminalTextDataSnapshot makeSnapshot() {
+		throw new UnsupportedOperationException();
+	}
+
+	public int getCursorColumn() {
+		return fCursorColumn;
+	}
+	public int getCursorLine() {
+		return fCursorLine;
+	}
+	public void setCursorColumn(int column) {
+		fCursorColumn=column;
+	}
+	public void setCursorLine(int line) {
+		fCursorLine=line;
+	}
+
+	/*
+	 * @return a text representation of the object.
+	 * Lines are separated by '\n'. No style information is returned.
+	 */
+	public String toString() {
+		StringBuffer buff=new StringBuffer();
+		for (int line = 0; line < getHeight(); line++) {
+			if(line>0)
+				buff.append("\n"); //$NON-NLS-1$
+			for (int column = 0; column < fWidth; column++) {
+				buff.append(getChar(line, column));
+			}
+		}
+		return buff.toString();
+	}
+
+	// spilling
+
+	private static int[] newBlockSegments(int maxHeight) {
+		int[] segments=new int[(maxHeight+BLOCK_SIZE-1)/BLOCK_SIZE];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i]=RESIDENT;
+		}
+		return segments;
+	}
+	private boolean isSpilled(int position) {
+		return fBlockSegments!=null && fBlockSegments[position/BLOCK_SIZE]!=RESIDENT;
+	}
+	private char[] getCharsOfPosition(int position) {
+		if(isSpilled(position)) {
+			readBlock(position/BLOCK_SIZE);
+			return fCachedChars[position%BLOCK_SIZE];
+		}
+		return fChars[position];
+	}
+	private int[] getRunsOfPosition(int position) {
+		if(isSpilled(position)) {
+			readBlock(position/BLOCK_SIZE);
+			return fCachedRuns[position%BLOCK_SIZE];
+		}
+		return fRuns[position];
+	}
+	/**
+	 * Brings the block of a slot back into memory, before it gets modified.
+	 */
+	private void makeResident(int position) {
+		if(isSpilled(position)) {
+			int block=position/BLOCK_SIZE;
+			readBlock(block);
+			int first=block*BLOCK_SIZE;
+			System.arraycopy(fCachedChars, 0, fChars, first, getBlockLength(block));
+			System.arraycopy(fCachedRuns, 0, fRuns, first, getBlockLength(block));
+			fSegmentFile.free(fBlockSegments[block]);
+			fBlockSegments[block]=RESIDENT;
+			invalidateCache();
+		}
+	}
+	private void unspillAll() {
+		if(fBlockSegments!=null) {
+			for (int block = 0; block < fBlockSegments.length; block++) {
+				makeResident(block*BLOCK_SIZE);
+			}
+		}
+	}
+	/**
+	 * Forgets the spilled lines, for when all lines are replaced.
+	 */
+	private void dropSpilledBlocks() {
+		if(fBlockSegments!=null) {
+			for (int block = 0; block < fBlockSegments.length; block++) {
+				if(fBlockSegments[block]!=RESIDENT) {
+					fSegmentFile.free(fBlockSegments[block]);
+					fBlockSegments[block]=RESIDENT;
+				}
+			}
+			invalidateCache();
+		}
+	}
+	private int getBlockLength(int block) {
+		return Math.min(BLOCK_SIZE, fMaxHeight-block*BLOCK_SIZE);
+	}
+	private void invalidateCache() {
+		fCachedBlock=-1;
+		fCachedChars=null;
+		fCachedRuns=null;
+	}
+	/**
+	 * Spills the blocks whose lines are all more than {@link #fResidentLines}
+	 * lines above the bottom.
+	 */
+	private void spillOldBlocks() {
+		if(fBlockSegments==null || fHeight-fResidentLines<BLOCK_SIZE)
+			return;
+		int lastOldLine=fHeight-fResidentLines-1;
+		for (int block = 0; block < fBlockSegments.length; block++) {
+			if(fBlockSegments[block]!=RESIDENT)
+				continue;
+			int first=block*BLOCK_SIZE;
+			int firstLine=getLineOfPosition(first);
+			int lastLine=getLineOfPosition(first+getBlockLength(block)-1);
+			// a block holding line 0 also holds the newest lines
+			if(lastLine<firstLine || lastLine>lastOldLine)
+				continue;
+			if(!spill(block))
+				return;
+		}
+	}
+	/**
+	 * @return false if spilling failed and has been turned off
+	 */
+	private boolean spill(int block) {
+		int first=block*BLOCK_SIZE;
+		int length=getBlockLength(block);
+		boolean empty=true;
+		for (int i = first; i < first+length && empty; i++) {
+			empty=fChars[i]==null;
+		}
+		if(empty)
+			return true;
+		try {
+			ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+			Deflater deflater=new Deflater(Deflater.BEST_SPEED);
+			DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater)));
+			for (int i = first; i < first+length; i++) {
+				char[] chars=fChars[i];
+				if(chars==null) {
+					out.writeInt(-1);
+					continue;
+				}
+				out.writeInt(chars.length);
+				for (int j = 0; j < chars.length; j++) {
+					out.writeChar(chars[j]);
+				}
+				int[] runs=fRuns[i];
+				out.writeInt(runs.length);
+				for (int j = 0; j < runs.length; j++) {
+					out.writeInt(runs[j]);
+				}
+			}
+			out.close();
+			deflater.end();
+			fBlockSegments[block]=fSegmentFile.write(bytes.toByteArray());
+		} catch (IOException e) {
+			Logger.logException(e);
+			// keep everything in memory from now on
+			unspillAll();
+			dispose();
+			return false;
+		}
+		for (int i = first; i < first+length; i++) {
+			fChars[i]=null;
+			fRuns[i]=null;
+		}
+		return true;
+	}
+	private void readBlock(int block) {
+		if(fCachedBlock==block)
+			return;
+		int length=getBlockLength(block);
+		char[][] chars=new char[length][];
+		int[][] runs=new int[length][];
+		try {
+			DataInputStream in=new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(fSegmentFile.read(fBlockSegments[block])))));
+			for (int i = 0; i < length; i++) {
+				int n=in.readInt();
+				if(n<0)
+					continue;
+				chars[i]=new char[n];
+				for (int j = 0; j < n; j++) {
+					chars[i][j]=in.readChar();
+				}
+				runs[i]=new int[in.readInt()];
+				for (int j = 0; j < runs[i].length; j++) {
+					runs[i][j]=in.readInt();
+				}
+			}
+			in.close();
+		} catch (IOException e) {
+			// the lines are lost
+			Logger.logException(e);
+			chars=new char[length][];
+			runs=new int[length][];
+		}
+		fCachedBlock=block;
+		fCachedChars=chars;
+		fCachedRuns=runs;
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * A temporary file holding segments of bytes. Segments are appended to the
+ * end of the file and identified by a small integer. The space of freed
+ * segments is reclaimed by rewriting the file once it is mostly garbage.
+ * <p>
+ * The file is only deleted by {@link #close()} (or when it gets rewritten),
+ * so the owner must close it.
+ * <p>
+ * This class is not thread safe.
+ */
+class TerminalTextDataSegmentFile {
+	/**
+	 * Don't bother compacting files with less garbage than that.
+	 */
+	private static final long MIN_GARBAGE_TO_COMPACT=1<<20;
+
+	private final File fDirectory;
+	private File fFile;
+	private RandomAccessFile fRandomAccessFile;
+	/**
+	 * Position and length of each segment. A length of -1 marks a free id.
+	 */
+	private long[] fPositions=new long[16];
+	private int[] fLengths=new int[16];
+	private int fIds;
+	private int[] fFreeIds=new int[16];
+	private int fFreeIdCount;
+	private long fEnd;
+	private long fLive;
+
+	/**
+	 * @param directory where to create the file. The file is as private as
+	 * the directory is, so it should only be accessible by the user.
+	 */
+	TerminalTextDataSegmentFile(File directory) {
+		fDirectory=directory;
+	}
+
+	/**
+	 * @param data
+	 * @return the id of the new segment
+	 * @throws IOException
+	 */
+	int write(byte[] data) throws IOException {
+		if(fRandomAccessFile==null) {
+			fFile=createFile();
+			fRandomAccessFile=new RandomAccessFile(fFile, "rw"); //$NON-NLS-1$
+		}
+		fRandomAccessFile.seek(fEnd);
+		fRandomAccessFile.write(data);
+		int id=allocateId();
+		fPositions[id]=fEnd;
+		fLengths[id]=data.length;
+		fEnd+=data.length;
+		fLive+=data.length;
+		return id;
+	}
+
+	byte[] read(int id) throws IOException {
+		byte[] data=new byte[fLengths[id]];
+		fRandomAccessFile.seek(fPositions[id]);
+		fRandomAccessFile.readFully(data);
+		return data;
+	}
+
+	void free(int id) {
+		fLive-=fLengths[id];
+		fLengths[id]=-1;
+		if(fFreeIdCount==fFreeIds.length) {
+			int[] ids=new int[fFreeIds.length*2];
+			System.arraycopy(fFreeIds, 0, ids, 0, fFreeIdCount);
+			fFreeIds=ids;
+		}
+		fFreeIds[fFreeIdCount++]=id;
+		if(fLive==0) {
+			// everything is garbage, start over at the beginning
+			fEnd=0;
+		} else if(fEnd-fLive>fLive && fEnd-fLive>MIN_GARBAGE_TO_COMPACT) {
+			try {
+				compact();
+			} catch (IOException e) {
+				// keep the garbage, the file is still consistent
+			}
+		}
+	}
+
+	/**
+	 * Closes and deletes the file. The segment file can be used again afterwards.
+	 */
+	void close() {
+		if(fRandomAccessFile!=null) {
+			try {
+				fRandomAccessFile.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			fFile.delete();
+			fRandomAccessFile=null;
+			fFile=null;
+		}
+		fIds=0;
+		fFreeIdCount=0;
+		fEnd=0;
+		fLive=0;
+	}
+
+	/**
+	 * @return the number of bytes on disk that belong to live segments
+	 */
+	long getLiveBytes() {
+		return fLive;
+	}
+
+	private File createFile() throws IOException {
+		return File.createTempFile("terminal", ".scrollback", fDirectory); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private int allocateId() {
+		if(fFreeIdCount>0)
+			return fFreeIds[--fFreeIdCount];
+		if(fIds==fLengths.length) {
+			long[] positions=new long[fIds*2];
+			System.arraycopy(fPositions, 0, positions, 0, fIds);
+			fPositions=positions;
+			int[] lengths=new int[fIds*2];
+			System.arraycopy(fLengths, 0, lengths, 0, fIds);
+			fLengths=lengths;
+		}
+		return fIds++;
+	}
+
+	/**
+	 * Copies the live segments to a new file, which replaces the current one
+	 * only once all of them made it.
+	 * @throws IOException
+	 */
+	private void compact() throws IOException {
+		File file=createFile();
+		RandomAccessFile out=new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		long[] positions=new long[fPositions.length];
+		long end=0;
+		try {
+			for (int id = 0; id < fIds; id++) {
+				if(fLengths[id]<0)
+					continue;
+				out.write(read(id));
+				positions[id]=end;
+				end+=fLengths[id];
+			}
+		} catch (IOException e) {
+			out.close();
+			file.delete();
+			throw e;
+		}
+		fRandomAccessFile.close();
+		fFile.delete();
+		fFile=file;
+		fRandomAccessFile=out;
+		fPositions=positions;
+		fEnd=end;
+	}
+}
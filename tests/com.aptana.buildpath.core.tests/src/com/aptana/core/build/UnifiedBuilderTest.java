@@ -137,6 +137,7 @@ public class UnifiedBuilderTest
 	private IBuildParticipant participant;
 	private IProject project;
 	private IResourceDelta delta;
+	private int workerCount = 1;
 
 	private Mockery context = new Mockery()
 	{
@@ -188,6 +189,12 @@ public class UnifiedBuilderTest
 			{
 				return true;
 			}
+
+			@Override
+			protected int getWorkerCount()
+			{
+				return workerCount;
+			}
 		};
 	}
 
@@ -293,6 +300,52 @@ public class UnifiedBuilderTest
 		// PROBLEM/TASK types?
 	}
 
+	@Test
+	public void testParallelFullBuildAddsMarkersToEveryFile() throws Exception
+	{
+		IFolder folder = project.getFolder("folder");
+		folder.create(true, true, null);
+
+		List<IFile> files = new ArrayList<IFile>();
+		files.add(project.getFile(IProjectDescription.DESCRIPTION_FILE_NAME));
+		for (int i = 0; i < 20; i++)
+		{
+			IFile file = folder.getFile("file" + i + ".txt");
+			file.create(new ByteArrayInputStream(("Hello world " + i).getBytes()), true, null);
+			files.add(file);
+		}
+
+		participant = new RequiredBuildParticipant()
+		{
+			private BuildContext current;
+
+			public void deleteFile(BuildContext context, IProgressMonitor monitor)
+			{
+			}
+
+			public void buildFile(BuildContext context, IProgressMonitor monitor)
+			{
+				// participants hold per-file state, the builder must never hand one two files at once
+				assertEquals(null, current);
+				current = context;
+				Collection<IProblem> problems = new ArrayList<IProblem>();
+				problems.add(createTask(context.getURI().toString(), context.getContents(), IMarker.PRIORITY_HIGH, 1,
+						0, 5));
+				context.putProblems(IMarkerConstants.TASK_MARKER, problems);
+				current = null;
+			}
+		};
+		workerCount = 4;
+		builder.build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
+
+		for (IFile file : files)
+		{
+			IMarker[] markers = file.findMarkers(IMarkerConstants.TASK_MARKER, true, IResource.DEPTH_ZERO);
+			assertEquals(file.getName(), 1, markers.length);
+			assertEquals(new BuildContext(file).getContents(), markers[0].getAttribute(IMarker.MESSAGE));
+		}
+	}
+
 	@Test
 	public void testIncrementalBuildWithNoDeltaDoesFullBuild() throws Exception
 	{
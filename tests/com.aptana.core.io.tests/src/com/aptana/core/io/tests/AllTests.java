@@ -10,13 +10,15 @@ package com.aptana.core.io.tests;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import com.aptana.core.io.vfs.PooledConnectionFileManagerTest;
 import com.aptana.ide.core.io.downloader.CoreIODownloaderTests;
 import com.aptana.ide.core.io.internal.auth.InternalAuthTests;
 import com.aptana.ide.core.io.preferences.CloakingUtilsTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ EFSUtilsTest.class, WorkspaceFileSystemTest.class, WorkspaceConnectionPointTest.class,
-		ConnectionPointManagerTest.class, CloakingUtilsTest.class, CoreIODownloaderTests.class, InternalAuthTests.class })
+		ConnectionPointManagerTest.class, CloakingUtilsTest.class, CoreIODownloaderTests.class, InternalAuthTests.class,
+		PooledConnectionFileManagerTest.class })
 public class AllTests
 {
 }
@@ -0,0 +1,339 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.io.vfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class PooledConnectionFileManagerTest
+{
+
+	/**
+	 * The remote side: file contents by absolute path.
+	 */
+	private Map<IPath, byte[]> files;
+	private CyclicBarrier barrier;
+	private TestPool pool;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		files = Collections.synchronizedMap(new HashMap<IPath, byte[]>());
+		barrier = null;
+	}
+
+	@Test
+	public void testOperationsRunConcurrently() throws Exception
+	{
+		pool = new TestPool(3);
+		pool.connect(null);
+		for (int i = 0; i < 3; i++)
+		{
+			files.put(Path.ROOT.append("file" + i), new byte[i]);
+		}
+		// Each lookup blocks until all three are in flight, which a single connection can't do
+		barrier = new CyclicBarrier(3);
+
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 3; i++)
+		{
+			final IPath path = Path.fromPortableString("file" + i);
+			final int length = i;
+			Thread thread = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						assertEquals(length, pool.fetchInfo(path, EFS.NONE, null).getLength());
+					}
+					catch (Throwable e)
+					{
+						errors.add(e);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join(10000);
+		}
+
+		assertEquals(errors.toString(), 0, errors.size());
+		assertEquals(3, pool.members.size());
+	}
+
+	@Test
+	public void testPoolDoesntGrowPastMaximum() throws Exception
+	{
+		pool = new TestPool(2);
+		pool.connect(null);
+		files.put(Path.ROOT.append("file"), new byte[1]);
+
+		List<InputStream> streams = new ArrayList<InputStream>();
+		for (int i = 0; i < 4; i++)
+		{
+			streams.add(pool.openInputStream(Path.fromPortableString("file"), EFS.NONE, null));
+		}
+		for (InputStream stream : streams)
+		{
+			stream.close();
+		}
+
+		assertEquals(2, pool.members.size());
+	}
+
+	@Test
+	public void testWriteInvalidatesOtherMembersCache() throws Exception
+	{
+		pool = new TestPool(2);
+		pool.connect(null);
+		IPath path = Path.fromPortableString("file.txt");
+		files.put(Path.ROOT.append(path), "1".getBytes());
+
+		// An open stream keeps the first member from being picked, so the lookup caches the length on the second one
+		InputStream stream = pool.openInputStream(path, EFS.NONE, null);
+		assertEquals(1, pool.fetchInfo(path, EFS.NONE, null).getLength());
+		assertEquals(2, pool.members.size());
+		stream.close();
+
+		OutputStream out = pool.openOutputStream(path, EFS.NONE, null);
+		out.write("123".getBytes());
+		out.close();
+
+		stream = pool.openInputStream(path, EFS.NONE, null);
+		try
+		{
+			assertEquals(3, pool.fetchInfo(path, EFS.NONE, null).getLength());
+		}
+		finally
+		{
+			stream.close();
+		}
+		assertEquals(2, pool.members.size());
+	}
+
+	private class TestPool extends PooledConnectionFileManager
+	{
+		private final List<MemoryConnectionFileManager> members = Collections
+				.synchronizedList(new ArrayList<MemoryConnectionFileManager>());
+
+		private TestPool(int maxConnections)
+		{
+			super(maxConnections);
+		}
+
+		@Override
+		protected BaseConnectionFileManager createConnectionFileManager()
+		{
+			MemoryConnectionFileManager manager = new MemoryConnectionFileManager();
+			members.add(manager);
+			return manager;
+		}
+	}
+
+	/**
+	 * Serves {@link PooledConnectionFileManagerTest#files}, caching file infos like the FTP managers do.
+	 */
+	private class MemoryConnectionFileManager extends BaseConnectionFileManager
+	{
+		private boolean connected;
+
+		private MemoryConnectionFileManager()
+		{
+			basePath = Path.ROOT;
+			setCaching(true);
+		}
+
+		public void connect(IProgressMonitor monitor) throws CoreException
+		{
+			connected = true;
+		}
+
+		public boolean isConnected()
+		{
+			return connected;
+		}
+
+		public void disconnect(IProgressMonitor monitor) throws CoreException
+		{
+			connected = false;
+		}
+
+		public URI getCanonicalURI(IPath path)
+		{
+			return URI.create("memory:" + path.toPortableString());
+		}
+
+		@Override
+		protected void testConnection(boolean force)
+		{
+		}
+
+		@Override
+		protected boolean canUseTemporaryFile(IPath path, ExtendedFileInfo fileInfo, IProgressMonitor monitor)
+		{
+			return false;
+		}
+
+		@Override
+		protected void changeCurrentDir(IPath path) throws FileNotFoundException
+		{
+			if (!path.isRoot())
+			{
+				throw new FileNotFoundException(path.toPortableString());
+			}
+		}
+
+		@Override
+		protected ExtendedFileInfo fetchFile(IPath path, int options, IProgressMonitor monitor)
+				throws FileNotFoundException
+		{
+			if (barrier != null)
+			{
+				try
+				{
+					barrier.await(5, TimeUnit.SECONDS);
+				}
+				catch (Exception e)
+				{
+					throw new IllegalStateException("Lookups didn't run concurrently", e);
+				}
+			}
+			ExtendedFileInfo fileInfo = new ExtendedFileInfo(path.isRoot() ? "/" : path.lastSegment());
+			if (path.isRoot())
+			{
+				fileInfo.setExists(true);
+				fileInfo.setDirectory(true);
+				return fileInfo;
+			}
+			byte[] contents = files.get(path);
+			if (contents == null)
+			{
+				throw new FileNotFoundException(path.toPortableString());
+			}
+			fileInfo.setExists(true);
+			fileInfo.setLength(contents.length);
+			fileInfo.setPermissions(IExtendedFileInfo.PERMISSION_OWNER_READ | IExtendedFileInfo.PERMISSION_OWNER_WRITE);
+			return fileInfo;
+		}
+
+		@Override
+		protected ExtendedFileInfo[] fetchFiles(IPath path, int options, IProgressMonitor monitor)
+		{
+			return new ExtendedFileInfo[0];
+		}
+
+		@Override
+		protected String[] listDirectory(IPath path, IProgressMonitor monitor)
+		{
+			return new String[0];
+		}
+
+		@Override
+		protected InputStream readFile(IPath path, IProgressMonitor monitor) throws FileNotFoundException
+		{
+			byte[] contents = files.get(path);
+			if (contents == null)
+			{
+				throw new FileNotFoundException(path.toPortableString());
+			}
+			return new ByteArrayInputStream(contents);
+		}
+
+		@Override
+		protected OutputStream writeFile(final IPath path, boolean useTemporary, long permissions,
+				IProgressMonitor monitor)
+		{
+			return new ByteArrayOutputStream()
+			{
+				@Override
+				public void close() throws IOException
+				{
+					files.put(path, toByteArray());
+				}
+			};
+		}
+
+		@Override
+		protected void createFile(IPath path, IProgressMonitor monitor)
+		{
+			files.put(path, new byte[0]);
+		}
+
+		@Override
+		protected void createDirectory(IPath path, IProgressMonitor monitor)
+		{
+		}
+
+		@Override
+		protected void renameFile(IPath sourcePath, IPath destinationPath, IProgressMonitor monitor)
+		{
+			files.put(destinationPath, files.remove(sourcePath));
+		}
+
+		@Override
+		protected void renameDirectory(IPath sourcePath, IPath destinationPath, IProgressMonitor monitor)
+		{
+		}
+
+		@Override
+		protected void deleteFile(IPath path, IProgressMonitor monitor)
+		{
+			files.remove(path);
+		}
+
+		@Override
+		protected void deleteDirectory(IPath path, IProgressMonitor monitor)
+		{
+		}
+
+		@Override
+		protected void setModificationTime(IPath path, long modificationTime, IProgressMonitor monitor)
+		{
+		}
+
+		@Override
+		protected void changeFilePermissions(IPath path, long permissions, IProgressMonitor monitor)
+		{
+		}
+
+		@Override
+		protected void changeFileGroup(IPath path, String group, IProgressMonitor monitor)
+		{
+		}
+	}
+}
@@ -44,6 +44,7 @@ import org.junit.runners.Suite;
 	StreamUtilTest.class,
 	StringUtilTest.class,
 	SudoManagerTest.class,
+	ThreadLocalObjectPoolTest.class,
 	TimeZoneUtilTest.class,
 	URLEncoderTest.class,
 	URLUtilTest.class,
@@ -0,0 +1,267 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThreadLocalObjectPoolTest
+{
+
+	private static final int SHORT_TIMEOUT = 50; // 50 ms
+
+	private class TestPool extends ThreadLocalObjectPool<Object>
+	{
+		private boolean keep;
+
+		TestPool(int expirationTime)
+		{
+			super(expirationTime);
+		}
+
+		@Override
+		public Object create()
+		{
+			created.incrementAndGet();
+			return new Object();
+		}
+
+		@Override
+		public boolean validate(Object o)
+		{
+			return keep;
+		}
+
+		@Override
+		public void expire(Object o)
+		{
+			expired.add(o);
+		}
+	}
+
+	private AtomicInteger created;
+	private List<Object> expired;
+	private TestPool pool;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		created = new AtomicInteger();
+		expired = Collections.synchronizedList(new ArrayList<Object>());
+		pool = new TestPool(SHORT_TIMEOUT);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		pool.dispose();
+		pool = null;
+	}
+
+	@Test
+	public void testReusesInstanceOnSameThread()
+	{
+		Object o = pool.checkOut();
+		pool.checkIn(o);
+		assertSame(o, pool.checkOut());
+		assertEquals(1, created.get());
+	}
+
+	@Test
+	public void testCreatesInstanceWhenAllCheckedOut()
+	{
+		Object first = pool.checkOut();
+		Object second = pool.checkOut();
+		assertNotSame(first, second);
+		assertEquals(2, created.get());
+	}
+
+	@Test
+	public void testSharesOverflowWithOtherThreads() throws Exception
+	{
+		Object first = pool.checkOut();
+		Object second = pool.checkOut();
+		pool.checkIn(first);
+		pool.checkIn(second);
+		assertEquals(2, pool.idleItems());
+
+		final Object[] result = new Object[1];
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				result[0] = pool.checkOut();
+			}
+		};
+		thread.start();
+		thread.join();
+
+		// the first instance stays cached for this thread, the second one is up for grabs
+		assertSame(second, result[0]);
+		assertSame(first, pool.checkOut());
+		assertEquals(2, created.get());
+	}
+
+	@Test
+	public void testExpiresIdleInstancesLazily() throws Exception
+	{
+		Object first = pool.checkOut();
+		Object second = pool.checkOut();
+		pool.checkIn(first);
+		pool.checkIn(second);
+		Thread.sleep(SHORT_TIMEOUT * 2);
+		assertTrue(expired.isEmpty());
+
+		// the next check in notices both are stale
+		Object third = new Object();
+		pool.checkIn(third);
+		assertEquals(2, expired.size());
+		assertTrue(expired.contains(first));
+		assertTrue(expired.contains(second));
+		assertEquals(1, pool.idleItems());
+		assertSame(third, pool.checkOut());
+	}
+
+	@Test
+	public void testKeepsExpiredInstancesThatValidate() throws Exception
+	{
+		pool.keep = true;
+		Object o = pool.checkOut();
+		pool.checkIn(o);
+		Thread.sleep(SHORT_TIMEOUT * 2);
+		pool.checkIn(new Object());
+
+		assertTrue(expired.isEmpty());
+		assertEquals(2, pool.idleItems());
+		assertSame(o, pool.checkOut());
+	}
+
+	@Test
+	public void testNeverExpire() throws Exception
+	{
+		pool = new TestPool(-1);
+		Object first = pool.checkOut();
+		Object second = pool.checkOut();
+		pool.checkIn(first);
+		pool.checkIn(second);
+		Thread.sleep(SHORT_TIMEOUT * 2);
+		pool.checkIn(pool.checkOut());
+		assertTrue(expired.isEmpty());
+		assertEquals(2, pool.idleItems());
+	}
+
+	@Test
+	public void testExpiresInstancesOfDeadThreads() throws Exception
+	{
+		final Object[] result = new Object[1];
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				result[0] = pool.checkOut();
+				pool.checkIn(result[0]);
+			}
+		};
+		thread.start();
+		thread.join();
+		Thread.sleep(SHORT_TIMEOUT * 2);
+
+		pool.keep = true;
+		pool.checkIn(pool.checkOut());
+		assertEquals(Collections.singletonList(result[0]), expired);
+	}
+
+	@Test
+	public void testDispose()
+	{
+		Object first = pool.checkOut();
+		Object second = pool.checkOut();
+		pool.checkIn(first);
+		pool.dispose();
+		assertEquals(Collections.singletonList(first), expired);
+
+		pool.checkIn(second);
+		assertEquals(2, expired.size());
+		assertEquals(0, pool.idleItems());
+	}
+
+	@Test
+	public void testConcurrentCheckOutHandsOutEachInstanceOnce() throws Exception
+	{
+		final int threads = 8;
+		final int iterations = 10000;
+		final Map<Object, Boolean> checkedOut = Collections.synchronizedMap(new IdentityHashMap<Object, Boolean>());
+		final List<Object> failures = Collections.synchronizedList(new ArrayList<Object>());
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		pool = new TestPool(-1);
+
+		for (int i = 0; i < threads; i++)
+		{
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						for (int j = 0; j < iterations; j++)
+						{
+							// check out two at a time so instances move through the shared stack
+							Object first = pool.checkOut();
+							Object second = pool.checkOut();
+							if (checkedOut.put(first, Boolean.TRUE) != null)
+							{
+								failures.add(first);
+							}
+							if (checkedOut.put(second, Boolean.TRUE) != null)
+							{
+								failures.add(second);
+							}
+							checkedOut.remove(second);
+							checkedOut.remove(first);
+							pool.checkIn(second);
+							pool.checkIn(first);
+						}
+					}
+					catch (InterruptedException e)
+					{
+						// ignore
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+
+		assertTrue("Instances were handed out twice: " + failures, failures.isEmpty());
+		assertTrue(created.get() <= threads * 2);
+		assertEquals(created.get(), pool.idleItems());
+	}
+}
@@ -7,6 +7,7 @@
  */
 package com.aptana.css.core.index;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
@@ -32,6 +33,16 @@ public class CSSMetadataTest
 		this.loadMetadata("/metadata/css_metadata.xml");
 	}
 
+	/**
+	 * testSnapshotIsCurrent
+	 */
+	@Test
+	public void testSnapshotIsCurrent() throws Exception
+	{
+		assertFalse("metadata.snapshot is out of date, regenerate it with -Pmetadata-snapshots",
+				new CSSMetadataLoader().hasOutOfDateSnapshot());
+	}
+
 	/**
 	 * loadMetadata
 	 * 
@@ -12,7 +12,8 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ CSSTaskDetectorTest.class, CSSParserValidatorTest.class, CSSValidatorTest.class, })
+@SuiteClasses({ CSSTaskDetectorTest.class, CSSParserValidatorTest.class, CSSValidatorTest.class,
+		CSSMetadataValidationTest.class, })
 public class CSSBuildParticipantsTests
 {
 }
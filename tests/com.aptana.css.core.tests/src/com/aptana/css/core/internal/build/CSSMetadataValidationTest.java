@@ -0,0 +1,177 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.css.core.internal.build;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.junit.Test;
+
+import com.aptana.buildpath.core.tests.AbstractValidatorTestCase;
+import com.aptana.core.build.IBuildParticipant;
+import com.aptana.core.build.IProblem;
+import com.aptana.css.core.CSSCorePlugin;
+import com.aptana.css.core.ICSSConstants;
+import com.aptana.css.core.internal.index.CSSMetadataReader;
+import com.aptana.css.core.model.PropertyElement;
+import com.aptana.parsing.ParseState;
+
+public class CSSMetadataValidationTest extends AbstractValidatorTestCase
+{
+
+	@Override
+	protected IBuildParticipant createValidator()
+	{
+		return new CSSValidator()
+		{
+			@Override
+			protected String getPreferenceNode()
+			{
+				return CSSCorePlugin.PLUGIN_ID;
+			}
+
+			@Override
+			public String getId()
+			{
+				return ID;
+			}
+
+			@Override
+			protected boolean isStrict()
+			{
+				return false;
+			}
+
+			@Override
+			protected List<PropertyElement> getProperties()
+			{
+				// don't depend on the metadata index having been built
+				URL url = FileLocator.find(CSSCorePlugin.getDefault().getBundle(), new Path(
+						"/metadata/css_metadata.xml"), null);
+				InputStream stream = null;
+				try
+				{
+					CSSMetadataReader reader = new CSSMetadataReader();
+					stream = url.openStream();
+					reader.loadXML(stream, url.toString());
+					return reader.getProperties();
+				}
+				catch (Exception e)
+				{
+					fail(e.getMessage());
+					return null;
+				}
+				finally
+				{
+					if (stream != null)
+					{
+						try
+						{
+							stream.close();
+						}
+						catch (IOException e)
+						{
+						}
+					}
+				}
+			}
+		};
+	}
+
+	@Override
+	protected String getFileExtension()
+	{
+		return "css";
+	}
+
+	@Override
+	protected String getContentType()
+	{
+		return ICSSConstants.CONTENT_TYPE_CSS;
+	}
+
+	protected List<IProblem> getParseErrors(String source) throws CoreException
+	{
+		return getParseErrors(source, new ParseState(source), ICSSConstants.W3C_PROBLEM);
+	}
+
+	@Test
+	public void testValidDeclarations() throws CoreException
+	{
+		String text = "div {\ndisplay: none;\nwidth: 10px;\ncolor: #123;\nfloat: LEFT;\nposition: inherit;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(0, items.size());
+	}
+
+	@Test
+	public void testUnknownProperty() throws CoreException
+	{
+		String text = "div {\nfoo: red;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(1, items.size());
+		assertProblem(items.get(0), "Property foo doesn't exist", 2, IMarker.SEVERITY_WARNING, 6, 3);
+	}
+
+	@Test
+	public void testInvalidKeyword() throws CoreException
+	{
+		String text = "div {\ndisplay: blok;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(1, items.size());
+		assertProblem(items.get(0), "Value Error : display blok is not a display value", 2,
+				IMarker.SEVERITY_WARNING, 15, 4);
+	}
+
+	@Test
+	public void testVendorSpecificAndHacksAreIgnored() throws CoreException
+	{
+		String text = "div {\n-webkit-foo: bar;\n*zoom: 1;\n_height: 1px;\ndisplay: -webkit-box;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(0, items.size());
+	}
+
+	@Test
+	public void testCSS3PropertyMissingFromMetadata() throws CoreException
+	{
+		String text = "div {\nuser-select: none;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(0, items.size());
+	}
+
+	@Test
+	public void testDefaultFilters() throws CoreException
+	{
+		String text = "div {\ntext-shadow: 1px 1px red;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(0, items.size());
+	}
+
+	@Test
+	public void testFontFaceDescriptors() throws CoreException
+	{
+		String text = "@font-face {\nsrc: url(\"\");\nunicode-range: U+0025-00FF;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(0, items.size());
+	}
+}
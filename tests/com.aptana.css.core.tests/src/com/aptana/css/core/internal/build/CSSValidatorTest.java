@@ -41,6 +41,12 @@ public class CSSValidatorTest extends AbstractValidatorTestCase
 			{
 				return ID;
 			}
+
+			@Override
+			protected boolean isStrict()
+			{
+				return true;
+			}
 		};
 	}
 
@@ -0,0 +1,179 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.css.core.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.css.core.parsing.ast.CSSRuleNode;
+import com.aptana.parsing.ParseEdit;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+@SuppressWarnings("nls")
+public class CSSIncrementalReparseTest
+{
+	private CSSParser fParser;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		fParser = new CSSParser();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		fParser = null;
+	}
+
+	@Test
+	public void testEditInsideRule() throws Exception
+	{
+		assertReparsed("a { color: red; }\nb { margin: 0; }\n", "a { color: red; width: 10px; }\nb { margin: 0; }\n");
+	}
+
+	@Test
+	public void testRemovalInsideRule() throws Exception
+	{
+		assertReparsed("a { color: red; width: 10px; }\nb { margin: 0; }\n", "a { color: red; }\nb { margin: 0; }\n");
+	}
+
+	@Test
+	public void testEditInsideMediaRule() throws Exception
+	{
+		assertReparsed("@media print {\n  a { color: red; }\n  b { margin: 0; }\n}\nc { top: 0; }\n",
+				"@media print {\n  a { color: blue; }\n  b { margin: 0; }\n}\nc { top: 0; }\n");
+	}
+
+	@Test
+	public void testCommentsAreUpdated() throws Exception
+	{
+		assertReparsed("/* a */\na { color: red; /* b */ }\n/* c */\nb { margin: 0; }\n",
+				"/* a */\na { color: red; /* bb */ width: 1px; }\n/* c */\nb { margin: 0; }\n");
+	}
+
+	@Test
+	public void testSplittingRuleFallsBack() throws Exception
+	{
+		assertNotReparsed("a { color: red; }\nb { margin: 0; }\n", "a { color: red; } c { top: 0; }\nb { margin: 0; }\n");
+	}
+
+	@Test
+	public void testSyntaxErrorFallsBack() throws Exception
+	{
+		assertNotReparsed("a { color: red; }\n", "a { color: red; ;; : }\n");
+	}
+
+	@Test
+	public void testEditInSelector() throws Exception
+	{
+		assertReparsed("a { color: red; }\nb { margin: 0; }\n", "a { color: red; }\nb, i { margin: 0; }\n");
+	}
+
+	@Test
+	public void testEditBetweenRulesFallsBack() throws Exception
+	{
+		assertNotReparsed("a { color: red; }\nb { margin: 0; }\n", "a { color: red; }\n\nb { margin: 0; }\n");
+	}
+
+	private ParseResult parse(String source) throws Exception
+	{
+		ParseResult result = fParser.parse(new ParseState(source));
+
+		assertTrue(result.getErrors().isEmpty());
+
+		return result;
+	}
+
+	private ParseResult reparse(IParseRootNode previous, String oldSource, String newSource) throws Exception
+	{
+		return fParser.reparse(new ParseState(newSource), previous, ParseEdit.compute(oldSource, newSource));
+	}
+
+	private void assertReparsed(String oldSource, String newSource) throws Exception
+	{
+		IParseRootNode previous = parse(oldSource).getRootNode();
+		ParseResult result = reparse(previous, oldSource, newSource);
+
+		assertNotNull("Expected an incremental reparse", result);
+		assertNotSame(previous, result.getRootNode());
+		assertTrue(result.getErrors().isEmpty());
+
+		IParseRootNode expected = parse(newSource).getRootNode();
+
+		assertSameTree(expected, result.getRootNode());
+		assertEquals(expected.getCommentNodes().length, result.getRootNode().getCommentNodes().length);
+
+		for (int i = 0; i < expected.getCommentNodes().length; i++)
+		{
+			assertSameLocation(expected.getCommentNodes()[i], result.getRootNode().getCommentNodes()[i]);
+		}
+
+		// others may still be reading the previous tree
+		IParseRootNode original = parse(oldSource).getRootNode();
+
+		assertSameTree(original, previous);
+
+		for (int i = 0; i < original.getCommentNodes().length; i++)
+		{
+			assertSameLocation(original.getCommentNodes()[i], previous.getCommentNodes()[i]);
+		}
+	}
+
+	private void assertNotReparsed(String oldSource, String newSource) throws Exception
+	{
+		assertNull(reparse(parse(oldSource).getRootNode(), oldSource, newSource));
+	}
+
+	private void assertSameTree(IParseNode expected, IParseNode actual)
+	{
+		assertEquals(expected.getClass(), actual.getClass());
+		assertSameLocation(expected, actual);
+		assertEquals(expected.toString(), actual.toString());
+
+		if (expected instanceof CSSRuleNode)
+		{
+			CSSRuleNode expectedRule = (CSSRuleNode) expected;
+			CSSRuleNode actualRule = (CSSRuleNode) actual;
+
+			assertEquals(expectedRule.getSelectors().length, actualRule.getSelectors().length);
+			for (int i = 0; i < expectedRule.getSelectors().length; i++)
+			{
+				assertSameLocation(expectedRule.getSelectors()[i], actualRule.getSelectors()[i]);
+			}
+
+			assertEquals(expectedRule.getDeclarations().length, actualRule.getDeclarations().length);
+			for (int i = 0; i < expectedRule.getDeclarations().length; i++)
+			{
+				assertSameLocation(expectedRule.getDeclarations()[i], actualRule.getDeclarations()[i]);
+			}
+		}
+
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			assertSameTree(expected.getChild(i), actual.getChild(i));
+		}
+	}
+
+	private void assertSameLocation(IParseNode expected, IParseNode actual)
+	{
+		assertEquals(expected.getStartingOffset(), actual.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), actual.getEndingOffset());
+	}
+}
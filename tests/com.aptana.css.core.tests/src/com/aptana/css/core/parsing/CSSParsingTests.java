@@ -12,8 +12,8 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ CSSIdentifierTest.class, CSSKeywordTest.class, CSSLiteralTest.class, CSSNotTest.class,
-		CSSParserTest.class, CSSPunctuatorTest.class, CSSSpecialTokenHandlingTest.class, })
+@SuiteClasses({ CSSIdentifierTest.class, CSSIncrementalReparseTest.class, CSSKeywordTest.class, CSSLiteralTest.class,
+		CSSNotTest.class, CSSParserTest.class, CSSPunctuatorTest.class, CSSSpecialTokenHandlingTest.class, })
 public class CSSParsingTests
 {
 }
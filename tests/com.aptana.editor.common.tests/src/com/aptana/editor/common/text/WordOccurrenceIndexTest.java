@@ -0,0 +1,131 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class WordOccurrenceIndexTest
+{
+	private IDocument document;
+	private WordOccurrenceIndex index;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		document = new Document("foo bar\nbaz foo\n\nfoo.bar(foo)");
+		index = new WordOccurrenceIndex();
+		index.connect(document);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		index.disconnect();
+		index = null;
+		document = null;
+	}
+
+	@Test
+	public void testIsWord()
+	{
+		assertTrue(WordOccurrenceIndex.isWord("foo_1"));
+		assertFalse(WordOccurrenceIndex.isWord("foo.bar"));
+		assertFalse(WordOccurrenceIndex.isWord(""));
+		assertFalse(WordOccurrenceIndex.isWord(null));
+	}
+
+	@Test
+	public void testOccurrences()
+	{
+		assertEquals(search("foo"), offsets("foo"));
+		assertEquals(search("bar"), offsets("bar"));
+		assertTrue(index.getOccurrences("fo").isEmpty());
+	}
+
+	@Test
+	public void testEditWithinLine() throws Exception
+	{
+		document.replace(document.get().indexOf("baz"), 3, "foo");
+
+		assertEquals(search("foo"), offsets("foo"));
+		assertTrue(index.getOccurrences("baz").isEmpty());
+	}
+
+	@Test
+	public void testEditAcrossLines() throws Exception
+	{
+		document.replace(document.get().indexOf("bar"), 10, "x\ny\nfoo\nfoo");
+		assertEquals(search("foo"), offsets("foo"));
+
+		document.replace(0, document.get().indexOf("foo.bar"), "");
+		assertEquals(search("foo"), offsets("foo"));
+		assertEquals(search("bar"), offsets("bar"));
+
+		document.set("bar foo");
+		assertEquals(search("foo"), offsets("foo"));
+	}
+
+	@Test
+	public void testSplitAndJoinWord() throws Exception
+	{
+		document.replace(1, 0, " ");
+		assertEquals(search("foo"), offsets("foo"));
+		assertEquals(search("oo"), offsets("oo"));
+
+		document.replace(1, 1, "");
+		assertEquals(search("foo"), offsets("foo"));
+		assertTrue(index.getOccurrences("oo").isEmpty());
+	}
+
+	@Test
+	public void testDisconnect() throws Exception
+	{
+		index.disconnect();
+		document.replace(0, 0, "foo ");
+
+		assertNull(index.getOccurrences("foo"));
+	}
+
+	private List<Integer> offsets(String word)
+	{
+		List<Integer> result = new ArrayList<Integer>();
+		for (IRegion region : index.getOccurrences(word))
+		{
+			assertEquals(word.length(), region.getLength());
+			result.add(region.getOffset());
+		}
+		return result;
+	}
+
+	private List<Integer> search(String word)
+	{
+		List<Integer> result = new ArrayList<Integer>();
+		Matcher matcher = Pattern.compile("\\b" + word + "\\b").matcher(document.get());
+		while (matcher.find())
+		{
+			result.add(matcher.start());
+		}
+		return result;
+	}
+}
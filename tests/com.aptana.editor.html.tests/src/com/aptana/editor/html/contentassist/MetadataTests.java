@@ -7,6 +7,7 @@
  */
 package com.aptana.editor.html.contentassist;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
@@ -18,6 +19,7 @@ import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
 import org.junit.Test;
 
+import com.aptana.editor.html.HTMLMetadataLoader;
 import com.aptana.editor.html.HTMLPlugin;
 import com.aptana.editor.html.contentassist.index.HTMLMetadataReader;
 
@@ -32,6 +34,16 @@ public class MetadataTests
 		this.loadMetadata("/metadata/html_metadata.xml");
 	}
 
+	/**
+	 * testSnapshotIsCurrent
+	 */
+	@Test
+	public void testSnapshotIsCurrent() throws Exception
+	{
+		assertFalse("metadata.snapshot is out of date, regenerate it with -Pmetadata-snapshots",
+				new HTMLMetadataLoader().hasOutOfDateSnapshot());
+	}
+
 	/**
 	 * loadMetadata
 	 * 
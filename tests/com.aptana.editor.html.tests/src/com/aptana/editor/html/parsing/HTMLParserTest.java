@@ -9,6 +9,8 @@ package com.aptana.editor.html.parsing;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.text.MessageFormat;
 import java.util.List;
@@ -26,6 +28,7 @@ import com.aptana.editor.html.core.IHTMLConstants;
 import com.aptana.editor.html.parsing.ast.HTMLElementNode;
 import com.aptana.js.core.IJSConstants;
 import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.parsing.ParseEdit;
 import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.ast.INameNode;
 import com.aptana.parsing.ast.IParseError;
@@ -389,6 +392,65 @@ public class HTMLParserTest
 		
 	}
 	
+	@Test
+	public void testReparseRecyclesUnchangedBlocks() throws Exception
+	{
+		String script = "<script>var foo = function( {};</script>";
+		String style = "<style>p { color: red; }</style>";
+		String source = "<html><head>" + script + style + "</head></html>";
+		ParseResult first = fParser.reparse(new HTMLParseState(source), null, null);
+		IParseNode head = first.getRootNode().getChild(0).getChild(0);
+		IParseNode firstScript = head.getChild(0).getChild(0);
+		IParseNode firstStyle = head.getChild(1).getChild(0);
+		int firstScriptOffset = firstScript.getStartingOffset();
+		assertEquals(1, first.getErrors().size());
+
+		String newSource = "<html><head><title>a</title>" + script + "<style>p { color: blue; }</style></head></html>";
+		ParseResult second = fParser.reparse(new HTMLParseState(newSource), first.getRootNode(),
+				ParseEdit.compute(source, newSource));
+		head = second.getRootNode().getChild(0).getChild(0);
+		IParseNode secondScript = head.getChild(1).getChild(0);
+		IParseNode secondStyle = head.getChild(2).getChild(0);
+
+		// the script only moved, the style changed
+		assertNotSame(firstScript, secondScript);
+		assertEquals(firstScript.toString(), secondScript.toString());
+		assertEquals(28 + "<script>".length(), secondScript.getStartingOffset());
+		assertNotSame(firstStyle, secondStyle);
+
+		// the recycled block was copied, the previous tree is left as it was
+		assertEquals(firstScriptOffset, firstScript.getStartingOffset());
+		assertSame(first.getRootNode().getChild(0).getChild(0).getChild(0), firstScript.getParent());
+
+		// and can be recycled from again
+		ParseResult third = fParser.reparse(new HTMLParseState(newSource), first.getRootNode(),
+				ParseEdit.compute(source, newSource));
+		assertEquals(28 + "<script>".length(), third.getRootNode().getChild(0).getChild(0).getChild(1).getChild(0)
+				.getStartingOffset());
+		assertEquals(1, second.getErrors().size());
+		assertEquals(first.getErrors().get(0).getOffset() + 16, second.getErrors().get(0).getOffset());
+	}
+
+	@Test
+	public void testReparseSharesBlocksInPlace() throws Exception
+	{
+		String head = "<html><head><script>var foo = 1;</script><style>p { color: red; }</style></head>";
+		String source = head + "<body></body></html>";
+		ParseResult first = fParser.reparse(new HTMLParseState(source), null, null);
+		IParseNode firstScript = first.getRootNode().getChild(0).getChild(0).getChild(0).getChild(0);
+		IParseNode firstStyle = first.getRootNode().getChild(0).getChild(0).getChild(1).getChild(0);
+
+		String newSource = head + "<body><p>a</p></body></html>";
+		ParseResult second = fParser.reparse(new HTMLParseState(newSource), first.getRootNode(),
+				ParseEdit.compute(source, newSource));
+		IParseNode secondHead = second.getRootNode().getChild(0).getChild(0);
+
+		// blocks that stayed in place are shared, not copied
+		assertSame(firstScript, secondHead.getChild(0).getChild(0));
+		assertSame(firstStyle, secondHead.getChild(1).getChild(0));
+		assertSame(secondHead.getChild(0), firstScript.getParent());
+	}
+
 	/**
 	 * This method is not being used for formal testing, but it's useful to determine how effective
 	 * {@link ParseNode#trimToSize()} is.
@@ -0,0 +1,227 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.html.parsing;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.junit.experimental.categories.Category;
+
+import com.aptana.core.tests.GlobalTimePerformanceTestCase;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.ReapingObjectPool;
+import com.aptana.css.core.ICSSConstants;
+import com.aptana.css.core.parsing.CSSParser;
+import com.aptana.editor.epl.tests.Accessor;
+import com.aptana.editor.epl.tests.EditorTestHelper;
+import com.aptana.editor.html.core.IHTMLConstants;
+import com.aptana.js.core.IJSConstants;
+import com.aptana.js.core.parsing.GraalJSParser;
+import com.aptana.parsing.IParser;
+import com.aptana.parsing.IParserPool;
+import com.aptana.parsing.ParserPoolFactory;
+import com.aptana.parsing.ParsingEngine;
+import com.aptana.testing.categories.PerformanceTests;
+
+/**
+ * Parses HTML with embedded CSS and JS from several threads at once, the way reconcilers and builders do. Every parse
+ * checks parsers out of the HTML, CSS and JS pools, so this measures the pools under contention as much as the parsers.
+ * Each workload also runs as a "ReapingBaseline" scenario against pools built on {@link ReapingObjectPool}, the single
+ * lock pool the parser pools used to extend, so the results show the two side by side.
+ */
+@Category({ PerformanceTests.class })
+public class ParserPoolPerformanceTest extends GlobalTimePerformanceTestCase
+{
+
+	private static final int THREADS = 8;
+	private static final int PARSES_PER_THREAD = 5;
+
+	/**
+	 * The HTML, CSS and JS parser pools as they were before they went per thread: one {@link ReapingObjectPool} each.
+	 */
+	private static class ReapingParserPools implements ParsingEngine.IParserPoolProvider
+	{
+		private abstract static class Pool extends ReapingObjectPool<IParser> implements IParserPool
+		{
+			Pool()
+			{
+				start();
+			}
+
+			@Override
+			public boolean validate(IParser o)
+			{
+				// Always keep one available parser
+				return unlockedItems() == 1;
+			}
+
+			@Override
+			public void expire(IParser o)
+			{
+				// no need to clean the parser up
+			}
+		}
+
+		private final Map<String, Pool> pools;
+
+		ReapingParserPools()
+		{
+			pools = new HashMap<String, Pool>();
+			pools.put(IJSConstants.CONTENT_TYPE_JS, new Pool()
+			{
+				@Override
+				public IParser create()
+				{
+					return new GraalJSParser();
+				}
+			});
+			pools.put(ICSSConstants.CONTENT_TYPE_CSS, new Pool()
+			{
+				@Override
+				public IParser create()
+				{
+					return new CSSParser();
+				}
+			});
+			pools.put(IHTMLConstants.CONTENT_TYPE_HTML, new Pool()
+			{
+				@Override
+				public IParser create()
+				{
+					return new HTMLParser();
+				}
+			});
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.parsing.ParsingEngine.IParserPoolProvider#getParserPool(java.lang.String)
+		 */
+		public IParserPool getParserPool(String contentTypeId)
+		{
+			return pools.get(contentTypeId);
+		}
+
+		void dispose()
+		{
+			for (Pool pool : pools.values())
+			{
+				pool.dispose();
+			}
+		}
+	}
+
+	private ExecutorService executor;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		executor.shutdownNow();
+		executor = null;
+		super.tearDown();
+	}
+
+	public void testConcurrentReddit() throws Exception
+	{
+		parseTest("reddit.html", 20);
+	}
+
+	public void testConcurrentRedditReapingBaseline() throws Exception
+	{
+		reapingBaselineTest("reddit.html", 20);
+	}
+
+	public void testConcurrentAmazonFrontPage() throws Exception
+	{
+		parseTest("amazon.html", 50);
+	}
+
+	public void testConcurrentAmazonFrontPageReapingBaseline() throws Exception
+	{
+		reapingBaselineTest("amazon.html", 50);
+	}
+
+	private void reapingBaselineTest(String fileName, int iterations) throws Exception
+	{
+		ReapingParserPools baseline = new ReapingParserPools();
+		setParserPoolProvider(baseline);
+		try
+		{
+			parseTest(fileName, iterations);
+		}
+		finally
+		{
+			setParserPoolProvider(null);
+			baseline.dispose();
+		}
+	}
+
+	/**
+	 * The override is package private in the parsing plugin, so that it stays out of the API.
+	 */
+	private void setParserPoolProvider(ParsingEngine.IParserPoolProvider provider)
+	{
+		new Accessor(ParserPoolFactory.getInstance(), ParserPoolFactory.class).invoke("setParserPoolProvider", //$NON-NLS-1$
+				new Class[] { ParsingEngine.IParserPoolProvider.class }, new Object[] { provider });
+	}
+
+	private void parseTest(String fileName, int iterations) throws Exception
+	{
+		InputStream stream = FileLocator.openStream(Platform.getBundle("com.aptana.editor.html.tests"),
+				Path.fromOSString("performance/" + fileName), false);
+		final String src = IOUtil.read(stream);
+
+		EditorTestHelper.joinBackgroundActivities();
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(THREADS);
+		for (int i = 0; i < THREADS; i++)
+		{
+			tasks.add(new Callable<Object>()
+			{
+				public Object call() throws Exception
+				{
+					for (int j = 0; j < PARSES_PER_THREAD; j++)
+					{
+						// uncached, so that every call really goes to the pools
+						ParserPoolFactory.parseUncached(IHTMLConstants.CONTENT_TYPE_HTML, new HTMLParseState(src));
+					}
+					return null;
+				}
+			});
+		}
+
+		for (int i = 0; i < iterations; i++)
+		{
+			startMeasuring();
+			for (Future<Object> future : executor.invokeAll(tasks))
+			{
+				future.get();
+			}
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
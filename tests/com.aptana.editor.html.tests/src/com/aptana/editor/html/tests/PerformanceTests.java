@@ -13,12 +13,13 @@ import org.junit.runners.Suite.SuiteClasses;
 
 import com.aptana.editor.html.HTMLTagScannerPerformanceTest;
 import com.aptana.editor.html.parsing.HTMLParserPerformanceTest;
+import com.aptana.editor.html.parsing.ParserPoolPerformanceTest;
 import com.aptana.editor.html.tests.performance.OpenHTMLEditorTest;
 import com.aptana.editor.html.validator.HTMLTidyValidatorPerformanceTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({ HTMLParserPerformanceTest.class, HTMLTagScannerPerformanceTest.class,
-		HTMLTidyValidatorPerformanceTest.class, OpenHTMLEditorTest.class, })
+		HTMLTidyValidatorPerformanceTest.class, OpenHTMLEditorTest.class, ParserPoolPerformanceTest.class, })
 public class PerformanceTests
 {
 }
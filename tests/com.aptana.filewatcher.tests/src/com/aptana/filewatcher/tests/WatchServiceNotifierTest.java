@@ -0,0 +1,294 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.contentobjects.jnotify.IJNotify;
+import net.contentobjects.jnotify.JNotifyListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.filewatcher.nio.WatchServiceNotifier;
+
+@SuppressWarnings("nls")
+public class WatchServiceNotifierTest
+{
+	/**
+	 * How long to wait for an event before giving up.
+	 */
+	private static final long TIMEOUT = 10000;
+
+	/**
+	 * Records the events delivered to it as "created a/b.txt" and so on.
+	 */
+	private static class RecordingListener implements JNotifyListener
+	{
+		private final List<String> events = new ArrayList<String>();
+
+		public synchronized void fileCreated(int wd, String rootPath, String name)
+		{
+			add("created " + name);
+		}
+
+		public synchronized void fileDeleted(int wd, String rootPath, String name)
+		{
+			add("deleted " + name);
+		}
+
+		public synchronized void fileModified(int wd, String rootPath, String name)
+		{
+			add("modified " + name);
+		}
+
+		public synchronized void fileRenamed(int wd, String rootPath, String oldName, String newName)
+		{
+			add("renamed " + oldName + " " + newName);
+		}
+
+		private void add(String event)
+		{
+			events.add(event);
+			notifyAll();
+		}
+
+		private synchronized void waitFor(String event) throws InterruptedException
+		{
+			if (!await(event, TIMEOUT))
+			{
+				fail("Timed out waiting for '" + event + "', got " + events);
+			}
+		}
+
+		private synchronized boolean await(String event, long timeout) throws InterruptedException
+		{
+			long end = System.currentTimeMillis() + timeout;
+			while (!events.contains(event))
+			{
+				long left = end - System.currentTimeMillis();
+				if (left <= 0)
+				{
+					return false;
+				}
+				wait(left);
+			}
+			return true;
+		}
+
+		private synchronized List<String> getEvents()
+		{
+			return new ArrayList<String>(events);
+		}
+	}
+
+	private File directory;
+	private IJNotify notifier;
+	private RecordingListener listener;
+	private int watchId = -1;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		directory = Files.createTempDirectory("watchServiceNotifierTest").toFile().getCanonicalFile();
+		notifier = new WatchServiceNotifier();
+		listener = new RecordingListener();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (watchId != -1)
+		{
+			notifier.removeWatch(watchId);
+		}
+		delete(directory);
+	}
+
+	@Test
+	public void testCreate() throws Exception
+	{
+		watch();
+		write(new File(directory, "a.txt"), "a");
+
+		listener.waitFor("created a.txt");
+	}
+
+	@Test
+	public void testModify() throws Exception
+	{
+		File file = new File(directory, "a.txt");
+		write(file, "a");
+		watch();
+		write(file, "modified");
+		// make sure the time changes on file systems with coarse timestamps
+		file.setLastModified(file.lastModified() + 10000);
+
+		listener.waitFor("modified a.txt");
+		assertFalse(listener.getEvents().contains("created a.txt"));
+	}
+
+	@Test
+	public void testDelete() throws Exception
+	{
+		File file = new File(directory, "a.txt");
+		write(file, "a");
+		watch();
+		assertTrue(file.delete());
+
+		listener.waitFor("deleted a.txt");
+	}
+
+	@Test
+	public void testRename() throws Exception
+	{
+		File file = new File(directory, "a.txt");
+		write(file, "a");
+		watch();
+		assertTrue(file.renameTo(new File(directory, "b.txt")));
+
+		listener.waitFor("created b.txt");
+		listener.waitFor("deleted a.txt");
+	}
+
+	@Test
+	public void testRenameOfNewFileIsCoalesced() throws Exception
+	{
+		watch();
+		File file = new File(directory, "a.txt");
+		write(file, "a");
+		assertTrue(file.renameTo(new File(directory, "b.txt")));
+
+		listener.waitFor("created b.txt");
+		List<String> events = listener.getEvents();
+		assertFalse(events.toString(), events.contains("created a.txt"));
+		assertFalse(events.toString(), events.contains("deleted a.txt"));
+	}
+
+	@Test
+	public void testModificationsAreCoalesced() throws Exception
+	{
+		watch();
+		File file = new File(directory, "a.txt");
+		for (int i = 0; i < 10; i++)
+		{
+			write(file, Integer.toString(i));
+		}
+
+		listener.waitFor("created a.txt");
+		assertEquals(1, listener.getEvents().size());
+	}
+
+	@Test
+	public void testExistingSubdirectoriesAreWatched() throws Exception
+	{
+		File subdirectory = new File(directory, "a" + File.separator + "b" + File.separator + "c");
+		assertTrue(subdirectory.mkdirs());
+		watch();
+		// the subtree is registered by the watcher thread, so keep creating files until it notices
+		long end = System.currentTimeMillis() + TIMEOUT;
+		for (int i = 0;; i++)
+		{
+			String name = "d" + i + ".txt";
+			write(new File(subdirectory, name), "d");
+			if (listener.await("created " + path("a", "b", "c", name), 1000))
+			{
+				break;
+			}
+			if (System.currentTimeMillis() > end)
+			{
+				fail("Changes in " + subdirectory + " weren't reported, got " + listener.getEvents());
+			}
+		}
+	}
+
+	@Test
+	public void testNewSubdirectoriesAreWatched() throws Exception
+	{
+		watch();
+		File subdirectory = new File(directory, "a" + File.separator + "b");
+		assertTrue(subdirectory.mkdirs());
+		write(new File(subdirectory, "c.txt"), "c");
+
+		listener.waitFor("created " + path("a", "b", "c.txt"));
+		listener.waitFor("created " + path("a", "b"));
+		listener.waitFor("created a");
+
+		// and changes to it later on
+		write(new File(subdirectory, "d.txt"), "d");
+		listener.waitFor("created " + path("a", "b", "d.txt"));
+	}
+
+	@Test
+	public void testRemovedWatchIsQuiet() throws Exception
+	{
+		assertTrue(notifier.removeWatch(watch()));
+		watchId = -1;
+		write(new File(directory, "a.txt"), "a");
+
+		Thread.sleep(1000);
+		assertTrue(listener.getEvents().toString(), listener.getEvents().isEmpty());
+	}
+
+	private int watch() throws Exception
+	{
+		watchId = notifier.addWatch(directory.getPath(), IJNotify.FILE_ANY, true, true, listener);
+		return watchId;
+	}
+
+	private String path(String... segments)
+	{
+		StringBuilder builder = new StringBuilder();
+		for (String segment : segments)
+		{
+			if (builder.length() > 0)
+			{
+				builder.append(File.separatorChar);
+			}
+			builder.append(segment);
+		}
+		return builder.toString();
+	}
+
+	private void write(File file, String contents) throws IOException
+	{
+		FileWriter writer = new FileWriter(file);
+		try
+		{
+			writer.write(contents);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -12,8 +12,8 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ GitExecutableTest.class, GitIndexRefreshJobTest.class, GitIndexTest.class, GitRefTest.class,
-		GitRevSpecifierTest.class, GitRepositoryTest.class })
+@SuiteClasses({ GitCommitGraphTest.class, GitExecutableTest.class, GitIndexRefreshJobTest.class, GitIndexTest.class,
+		GitRefTest.class, GitRevSpecifierTest.class, GitRepositoryTest.class, GitStatusReaderTest.class })
 public class CoreModelTests
 {
 }
@@ -0,0 +1,204 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class GitCommitGraphTest extends GitTestCase
+{
+
+	@Test
+	public void testViewIsInTopologicalOrder() throws Exception
+	{
+		GitRepository repo = getRepo();
+		commit(repo, "First");
+		commit(repo, "Second\n\nWith a body");
+		assertGit(repo, "checkout", "-b", "topic");
+		commit(repo, "On topic");
+		assertGit(repo, "checkout", "master");
+		commit(repo, "On master");
+		assertGit(repo, "merge", "--no-ff", "-m", "Merge topic", "topic");
+
+		GitCommitGraph graph = update(repo);
+		GitCommitGraph.View view = graph.view(head(repo));
+		assertNotNull(view);
+		assertEquals(5, view.size());
+
+		List<GitCommit> commits = view.asList();
+		assertEquals("Merge topic", commits.get(0).getSubject());
+		assertEquals(2, commits.get(0).parents().size());
+		assertEquals("First", commits.get(4).getSubject());
+		// children come before their parents
+		for (int i = 0; i < commits.size(); i++)
+		{
+			for (int j = i + 1; j < commits.size(); j++)
+			{
+				assertFalse(graph.isAncestor(commits.get(i).sha(), commits.get(j).sha()));
+			}
+		}
+
+		GitCommit second = commits.get(3);
+		assertEquals("Second", second.getSubject());
+		assertEquals("Second\n\nWith a body", second.getComment().trim());
+	}
+
+	@Test
+	public void testGenerationsAndAncestry() throws Exception
+	{
+		GitRepository repo = getRepo();
+		commit(repo, "First");
+		String first = head(repo);
+		commit(repo, "Second");
+		String second = head(repo);
+
+		GitCommitGraph graph = update(repo);
+		assertEquals(1, graph.getGeneration(first));
+		assertEquals(2, graph.getGeneration(second));
+		assertTrue(graph.isAncestor(first, second));
+		assertFalse(graph.isAncestor(second, first));
+	}
+
+	@Test
+	public void testUpdateAddsNewCommits() throws Exception
+	{
+		GitRepository repo = getRepo();
+		commit(repo, "First");
+		GitCommitGraph graph = update(repo);
+		assertEquals(1, graph.view(head(repo)).size());
+
+		commit(repo, "Second");
+		commit(repo, "Third");
+		update(repo);
+		GitCommitGraph.View view = graph.view(head(repo));
+		assertEquals(3, view.size());
+		List<GitCommit> page = view.getCommits(1, 5);
+		assertEquals(2, page.size());
+		assertEquals("Second", page.get(0).getSubject());
+		assertEquals("First", page.get(1).getSubject());
+	}
+
+	@Test
+	public void testRevListUsesGraph() throws Exception
+	{
+		GitRepository repo = getRepo();
+		commit(repo, "First");
+		commit(repo, "Second");
+		commit(repo, "Third");
+
+		GitRevList revList = new GitRevList(repo);
+		IStatus status = revList.walkRevisionListWithSpecifier(new GitRevSpecifier("master"), 2,
+				new NullProgressMonitor());
+		assertTrue(status.getMessage(), status.isOK());
+		List<GitCommit> commits = revList.getCommits();
+		assertEquals(2, commits.size());
+		assertEquals("Third", commits.get(0).getSubject());
+		assertEquals("Second", commits.get(1).getSubject());
+		assertTrue(repo.commitGraph().contains(commits.get(0).sha()));
+	}
+
+	@Test
+	public void testRevListServesWindows() throws Exception
+	{
+		GitRepository repo = getRepo();
+		commit(repo, "First");
+		commit(repo, "Second");
+		commit(repo, "Third");
+		commit(repo, "Fourth");
+
+		GitRevList revList = new GitRevList(repo);
+		IStatus status = revList.walkRevisionListWithSpecifier(new GitRevSpecifier("master"), 1, 2,
+				new NullProgressMonitor());
+		assertTrue(status.getMessage(), status.isOK());
+		List<GitCommit> commits = revList.getCommits();
+		assertEquals(2, commits.size());
+		assertEquals("Third", commits.get(0).getSubject());
+		assertEquals("Second", commits.get(1).getSubject());
+
+		// the same window from git log
+		status = revList.walkRevisionListWithSpecifier(new GitRevSpecifier("master", "--", "."), 1, 2,
+				new NullProgressMonitor());
+		assertTrue(status.getMessage(), status.isOK());
+		commits = revList.getCommits();
+		assertEquals(2, commits.size());
+		assertEquals("Third", commits.get(0).getSubject());
+		assertEquals("Second", commits.get(1).getSubject());
+	}
+
+	@Test
+	public void testSubjectsAreReadFromFile() throws Exception
+	{
+		GitRepository repo = getRepo();
+		commit(repo, "First");
+		commit(repo, "Second");
+
+		File file = File.createTempFile("commits", ".graph");
+		file.delete();
+		try
+		{
+			GitCommitGraph graph = new GitCommitGraph(repo, file);
+			assertTrue(graph.update(new NullProgressMonitor()).isOK());
+			assertTrue(file.isFile());
+			commit(repo, "Third");
+			assertTrue(graph.update(new NullProgressMonitor()).isOK());
+			assertEquals("Third", graph.view(head(repo)).getCommits(0, 1).get(0).getSubject());
+			graph.dispose();
+
+			// a new session only has the subjects in the file
+			graph = new GitCommitGraph(repo, file);
+			assertTrue(graph.update(new NullProgressMonitor()).isOK());
+			List<GitCommit> commits = graph.view(head(repo)).getCommits(0, 3);
+			assertEquals("Third", commits.get(0).getSubject());
+			assertEquals("Second", commits.get(1).getSubject());
+			assertEquals("First", commits.get(2).getSubject());
+			graph.dispose();
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	private GitCommitGraph update(GitRepository repo)
+	{
+		GitCommitGraph graph = repo.commitGraph();
+		assertNotNull(graph);
+		IStatus status = graph.update(new NullProgressMonitor());
+		assertTrue(status.getMessage(), status.isOK());
+		return graph;
+	}
+
+	private String head(GitRepository repo)
+	{
+		IStatus status = assertGit(repo, "rev-parse", "HEAD");
+		return status.getMessage().trim();
+	}
+
+	private void commit(GitRepository repo, String message)
+	{
+		assertGit(repo, "commit", "--allow-empty", "-m", message);
+	}
+
+	private IStatus assertGit(GitRepository repo, String... args)
+	{
+		IStatus status = repo.execute(GitRepository.ReadWrite.WRITE, args);
+		assertTrue(MessageFormat.format("git {0} failed: {1}", args[0], status.getMessage()), status.isOK());
+		return status;
+	}
+}
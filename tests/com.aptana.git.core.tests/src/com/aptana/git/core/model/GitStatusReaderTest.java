@@ -0,0 +1,222 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.junit.Test;
+
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.git.core.model.ChangedFile.Status;
+
+public class GitStatusReaderTest extends GitTestCase
+{
+
+	@Test
+	public void testEveryStatusWithPackedObjects() throws Exception
+	{
+		GitRepository repo = createRepoWithEveryStatus();
+
+		Map<IPath, ChangedFile> files = readChangedFiles(repo);
+
+		assertFile(files, "file1.txt", Status.DELETED, true, false);
+		assertFile(files, "file2.txt", Status.DELETED, false, true);
+		assertFile(files, "file3.txt", Status.MODIFIED, true, false);
+		assertFile(files, "file4.txt", Status.MODIFIED, false, true);
+		assertFile(files, "dir/nested.txt", Status.MODIFIED, true, true);
+		assertFile(files, "file5.txt", Status.NEW, true, false);
+		assertFile(files, "file6.txt", Status.NEW, false, true);
+		assertFile(files, "untracked/deep/file7.txt", Status.NEW, false, true);
+		assertNull("Ignored file was listed", files.get(Path.fromPortableString("ignored.log")));
+		assertNull("File in ignored directory was listed", files.get(Path.fromPortableString("build/output.txt")));
+		assertEquals(files.toString(), 8, files.size());
+	}
+
+	@Test
+	public void testIndexVersion4() throws Exception
+	{
+		GitRepository repo = createRepoWithEveryStatus();
+		Map<IPath, ChangedFile> expected = readChangedFiles(repo);
+
+		assertGit(repo, "update-index", "--index-version", "4");
+
+		assertEquals(expected, readChangedFiles(repo));
+	}
+
+	@Test
+	public void testFilterLimitsListing() throws Exception
+	{
+		GitRepository repo = createRepoWithEveryStatus();
+
+		Map<IPath, ChangedFile> files = readChangedFiles(repo, "file1.txt", "dir", "untracked");
+
+		assertFile(files, "file1.txt", Status.DELETED, true, false);
+		assertFile(files, "dir/nested.txt", Status.MODIFIED, true, true);
+		assertFile(files, "untracked/deep/file7.txt", Status.NEW, false, true);
+		assertEquals(files.toString(), 3, files.size());
+	}
+
+	@Test
+	public void testSameSizeModificationRightAfterCommitIsDetected() throws Exception
+	{
+		GitRepository repo = createRepo();
+		write(repo, "racy.txt", "aaaa");
+		assertGit(repo, "add", "racy.txt");
+		assertGit(repo, "commit", "-m", "racy");
+
+		// Same size, and very likely the same second the index was written in
+		write(repo, "racy.txt", "bbbb");
+
+		Map<IPath, ChangedFile> files = readChangedFiles(repo);
+		assertFile(files, "racy.txt", Status.MODIFIED, false, true);
+		assertEquals(files.toString(), 1, files.size());
+	}
+
+	@Test
+	public void testUnmergedFile() throws Exception
+	{
+		GitRepository repo = createRepo();
+		write(repo, "conflict.txt", "base");
+		assertGit(repo, "add", "conflict.txt");
+		assertGit(repo, "commit", "-m", "base");
+		assertGit(repo, "checkout", "-b", "other");
+		write(repo, "conflict.txt", "other");
+		assertGit(repo, "commit", "-am", "other");
+		assertGit(repo, "checkout", "master");
+		write(repo, "conflict.txt", "mine");
+		assertGit(repo, "commit", "-am", "mine");
+		repo.execute(GitRepository.ReadWrite.WRITE, "merge", "other");
+
+		Map<IPath, ChangedFile> files = readChangedFiles(repo);
+		ChangedFile file = files.get(Path.fromPortableString("conflict.txt"));
+		assertNotNull(file);
+		assertTrue(file.hasUnmergedChanges());
+		assertTrue(file.hasUnstagedChanges());
+	}
+
+	@Test
+	public void testRefsMatchForEachRef() throws Exception
+	{
+		GitRepository repo = createRepo();
+		write(repo, "file.txt", "content");
+		assertGit(repo, "add", "file.txt");
+		assertGit(repo, "commit", "-m", "first");
+		assertGit(repo, "tag", "-a", "annotated", "-m", "annotated tag");
+		assertGit(repo, "pack-refs", "--all");
+		assertGit(repo, "tag", "lightweight");
+		assertGit(repo, "branch", "loose");
+
+		List<String> expected = new ArrayList<String>();
+		IStatus status = assertGit(repo, "for-each-ref",
+				"--format=%(refname) %(objecttype) %(objectname) %(*objectname)", "refs");
+		for (String line : StringUtil.tokenize(status.getMessage(), "\n"))
+		{
+			expected.add(line.trim());
+		}
+
+		List<String> actual = new ArrayList<String>();
+		for (GitRefDatabase.Ref ref : repo.refDatabase().refs())
+		{
+			int type = repo.objectDatabase().readType(ref.sha);
+			String peeled = StringUtil.EMPTY;
+			if (type == GitObjectDatabase.OBJ_TAG)
+			{
+				peeled = (ref.peeled != null) ? ref.peeled : repo.objectDatabase().peelTag(ref.sha);
+			}
+			actual.add(MessageFormat.format("{0} {1} {2} {3}", ref.name, GitObjectDatabase.typeName(type), ref.sha,
+					peeled).trim());
+		}
+
+		assertEquals(expected, actual);
+		assertEquals(GitRef.REFS_HEADS + "master", repo.refDatabase().readSymbolicHead());
+	}
+
+	private GitRepository createRepoWithEveryStatus() throws Exception
+	{
+		GitRepository repo = createRepo();
+		write(repo, GitRepository.GITIGNORE, "*.log\nbuild/\n");
+		for (int i = 1; i <= 4; i++)
+		{
+			write(repo, "file" + i + ".txt", "Hello World!");
+		}
+		new File(repo.workingDirectory().toFile(), "dir").mkdir();
+		write(repo, "dir/nested.txt", "nested");
+		assertGit(repo, "add", ".");
+		assertGit(repo, "commit", "-m", "initial");
+		// Force everything into a pack
+		assertGit(repo, "gc", "-q");
+
+		assertGit(repo, "rm", "-q", "file1.txt");
+		new File(repo.workingDirectory().toFile(), "file2.txt").delete();
+		write(repo, "file3.txt", "Hello World!\nAdded line");
+		assertGit(repo, "add", "file3.txt");
+		write(repo, "file4.txt", "Hello World!\nAdded line");
+		write(repo, "dir/nested.txt", "nested, staged");
+		assertGit(repo, "add", "dir/nested.txt");
+		write(repo, "dir/nested.txt", "nested, staged, then modified");
+		write(repo, "file5.txt", "Staged new file");
+		assertGit(repo, "add", "file5.txt");
+		write(repo, "file6.txt", "Untracked file");
+		new File(repo.workingDirectory().toFile(), "untracked/deep").mkdirs();
+		write(repo, "untracked/deep/file7.txt", "Untracked file");
+		write(repo, "ignored.log", "Ignored file");
+		new File(repo.workingDirectory().toFile(), "build").mkdir();
+		write(repo, "build/output.txt", "Ignored directory");
+		return repo;
+	}
+
+	private Map<IPath, ChangedFile> readChangedFiles(GitRepository repo, String... paths) throws Exception
+	{
+		GitStatusReader reader = new GitStatusReader(repo, repo.gitDir(), repo.workingDirectory().toFile(),
+				repo.refDatabase(), repo.objectDatabase());
+		return reader.changedFiles(CollectionsUtil.newSet(paths));
+	}
+
+	private IStatus assertGit(GitRepository repo, String... args)
+	{
+		IStatus status = repo.execute(GitRepository.ReadWrite.WRITE, args);
+		assertTrue(MessageFormat.format("git {0} failed: {1}", args[0], status.getMessage()), status.isOK());
+		return status;
+	}
+
+	private void write(GitRepository repo, String path, String contents) throws Exception
+	{
+		FileWriter writer = new FileWriter(repo.workingDirectory().append(path).toOSString());
+		writer.write(contents);
+		writer.close();
+	}
+
+	private void assertFile(Map<IPath, ChangedFile> files, String path, Status status, boolean staged,
+			boolean unstaged)
+	{
+		ChangedFile file = files.get(Path.fromPortableString(path));
+		assertNotNull(MessageFormat.format("{0} wasn't listed in {1}", path, files.values()), file);
+		assertEquals(status, file.getStatus());
+		assertEquals(MessageFormat.format("Staged flag of {0}", path), staged, file.hasStagedChanges());
+		assertEquals(MessageFormat.format("Unstaged flag of {0}", path), unstaged, file.hasUnstagedChanges());
+		if (staged)
+		{
+			assertFalse(file.getCommitBlobSHA() == null);
+		}
+	}
+}
@@ -2,12 +2,16 @@ package com.aptana.index.core;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.net.URI;
 import java.util.List;
 
+import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.provider.FileInfo;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -21,6 +25,7 @@ import org.junit.Test;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.FileUtil;
 import com.aptana.index.core.build.BuildContext;
+import com.aptana.internal.index.core.IndexManifest;
 
 public class IndexContainerJobTest
 {
@@ -66,8 +71,6 @@ public class IndexContainerJobTest
 	@Test
 	public void testTypicalIndex() throws Exception
 	{
-		final File indexFile = FileUtil.createTempFile("fake_indexFile", ".index");
-
 		// Generate some structure in the tmp dir
 		final File file1 = new File(tmpDir, "file1");
 		file1.createNewFile();
@@ -88,23 +91,15 @@ public class IndexContainerJobTest
 
 		final Index index = context.mock(Index.class);
 		final IFileStoreIndexingParticipant participant = context.mock(IFileStoreIndexingParticipant.class);
-		IndexContainerJob job = new IndexContainerJob(tmpDir.toURI())
-		{
-			@Override
-			protected Index getIndex()
-			{
-				return index;
-			}
-
-			@Override
-			protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
-			{
-				return CollectionsUtil.newList(participant);
-			}
-		};
+		// an index from before there were manifests
+		final IndexManifest manifest = new IndexManifest(null);
+		IndexContainerJob job = createJob(index, participant);
 		context.checking(new Expectations()
 		{
 			{
+				allowing(index).getManifest();
+				will(returnValue(manifest));
+
 				oneOf(index).queryDocumentNames(null);
 				will(returnValue(CollectionsUtil.newSet(file1.toURI().toString(), file2.toURI().toString(), dir1
 						.toURI().toString() + File.separator + "fileX", dir1.toURI().toString() + File.separator
@@ -114,9 +109,6 @@ public class IndexContainerJobTest
 				oneOf(index).remove(URI.create(dir1.toURI().toString() + File.separator + "fileY"));
 				oneOf(index).remove(URI.create(dir1.toURI().toString() + File.separator + "fileZ"));
 
-				oneOf(index).getIndexFile();
-				will(returnValue(indexFile));
-
 				// We remove and index the files.
 				oneOf(index).remove(URI.create(file1.toURI().toString()));
 				oneOf(index).remove(URI.create(file2.toURI().toString()));
@@ -132,5 +124,137 @@ public class IndexContainerJobTest
 		});
 		job.run(new NullProgressMonitor());
 		context.assertIsSatisfied();
+		assertTrue(manifest.isComplete());
+		assertEquals(5, manifest.getDocumentNames().size());
+	}
+
+	@Test
+	public void testOnlyChangedFilesAreIndexed() throws Exception
+	{
+		final File file1 = createFile("file1", "var a;");
+		final File file2 = createFile("file2", "var b;");
+		final File file3 = createFile("file3", "var c;");
+
+		final Index index = context.mock(Index.class);
+		final IFileStoreIndexingParticipant participant = context.mock(IFileStoreIndexingParticipant.class);
+		final IndexManifest manifest = new IndexManifest(null);
+		manifest.clear(true);
+		IndexContainerJob job = createJob(index, participant);
+		context.checking(new Expectations()
+		{
+			{
+				allowing(index).getManifest();
+				will(returnValue(manifest));
+
+				oneOf(index).remove(URI.create(file1.toURI().toString()));
+				oneOf(index).remove(URI.create(file2.toURI().toString()));
+				oneOf(index).remove(URI.create(file3.toURI().toString()));
+				exactly(3).of(participant).index(with(any(BuildContext.class)), with(index),
+						with(any(IProgressMonitor.class)));
+				oneOf(index).save();
+			}
+		});
+		job.run(new NullProgressMonitor());
+		context.assertIsSatisfied();
+
+		// change one file, touch another and delete the last
+		long lastModified = file2.lastModified();
+		write(file2, "var b = 1;");
+		file2.setLastModified(lastModified + 10000);
+		file1.setLastModified(file1.lastModified() + 10000);
+		file3.delete();
+
+		context.checking(new Expectations()
+		{
+			{
+				// the deleted file is dropped, the changed one indexed again
+				oneOf(index).remove(URI.create(file3.toURI().toString()));
+				oneOf(index).remove(URI.create(file2.toURI().toString()));
+				oneOf(participant).index(with(any(BuildContext.class)), with(index),
+						with(any(IProgressMonitor.class)));
+				oneOf(index).save();
+			}
+		});
+		job.run(new NullProgressMonitor());
+		context.assertIsSatisfied();
+	}
+
+	@Test
+	public void testFailedWalkRemovesNothing() throws Exception
+	{
+		final Index index = context.mock(Index.class);
+		final IFileStoreIndexingParticipant participant = context.mock(IFileStoreIndexingParticipant.class);
+		final IFileStore root = context.mock(IFileStore.class);
+		final FileInfo info = new FileInfo("root");
+		info.setExists(true);
+		info.setDirectory(true);
+		IndexContainerJob job = new IndexContainerJob(tmpDir.toURI())
+		{
+			@Override
+			protected Index getIndex()
+			{
+				return index;
+			}
+
+			@Override
+			protected IFileStore getContainerFileStore()
+			{
+				return root;
+			}
+
+			@Override
+			protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
+			{
+				return CollectionsUtil.newList(participant);
+			}
+		};
+		context.checking(new Expectations()
+		{
+			{
+				allowing(root).fetchInfo();
+				will(returnValue(info));
+				allowing(root).childInfos(EFS.NONE, null);
+				will(throwException(new IllegalStateException("listing failed")));
+
+				// no manifest lookup, so nothing is removed nor indexed
+				never(index).getManifest();
+				oneOf(index).save();
+			}
+		});
+		IStatus status = job.run(new NullProgressMonitor());
+		context.assertIsSatisfied();
+		assertEquals(IStatus.ERROR, status.getSeverity());
+	}
+
+	private IndexContainerJob createJob(final Index index, final IFileStoreIndexingParticipant participant)
+	{
+		return new IndexContainerJob(tmpDir.toURI())
+		{
+			@Override
+			protected Index getIndex()
+			{
+				return index;
+			}
+
+			@Override
+			protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
+			{
+				return CollectionsUtil.newList(participant);
+			}
+		};
+	}
+
+	private File createFile(String name, String contents) throws Exception
+	{
+		File file = new File(tmpDir, name);
+		write(file, contents);
+		return file;
+	}
+
+	private void write(File file, String contents) throws Exception
+	{
+		FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
 	}
 }
@@ -0,0 +1,178 @@
+package com.aptana.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({ "nls", "deprecation" })
+public class IndexFederationTest
+{
+	private static final String CATEGORY = "type";
+
+	/**
+	 * Returns the words of the "type" category, counting the indices it was run against.
+	 */
+	private static class TypeQuery implements IndexFederation.IIndexQuery<String>
+	{
+		final AtomicInteger count = new AtomicInteger();
+
+		public List<String> query(Index index)
+		{
+			count.incrementAndGet();
+			List<String> words = new ArrayList<String>();
+			List<QueryResult> results = index.query(new String[] { CATEGORY }, "*", SearchPattern.PATTERN_MATCH);
+			if (results != null)
+			{
+				for (QueryResult result : results)
+				{
+					words.add(result.getWord());
+				}
+			}
+			Collections.sort(words);
+			return words;
+		}
+	}
+
+	private List<Index> indexes;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		indexes = new ArrayList<Index>();
+		IndexFederation.clearCache();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		for (Index index : indexes)
+		{
+			getIndexManager().removeIndex(index.getRoot());
+		}
+		indexes = null;
+		IndexFederation.clearCache();
+	}
+
+	private Index createIndex(String name, String... types)
+	{
+		File dir = new File(System.getProperty("java.io.tmpdir"), name);
+		dir.mkdirs();
+		Index index = getIndexManager().getIndex(dir.toURI());
+		indexes.add(index);
+		for (String type : types)
+		{
+			index.addEntry(CATEGORY, type, URI.create(name + ".js"));
+		}
+		return index;
+	}
+
+	@Test
+	public void testMergesInIndexOrder()
+	{
+		IndexFederation federation = new IndexFederation(createIndex("federation_project", "Foo"), createIndex(
+				"federation_library", "Bar", "Baz"), createIndex("federation_core", "Array", "Object"));
+
+		assertEquals(Arrays.asList("Foo", "Bar", "Baz", "Array", "Object"), federation.query(new TypeQuery()));
+	}
+
+	@Test
+	public void testRemovesDuplicates()
+	{
+		IndexFederation federation = new IndexFederation(createIndex("federation_project", "Bar", "Foo"), createIndex(
+				"federation_library", "Bar", "Baz"));
+
+		assertEquals(Arrays.asList("Bar", "Foo", "Baz"), federation.query(new TypeQuery()));
+	}
+
+	@Test
+	public void testIgnoresNullIndices()
+	{
+		IndexFederation federation = new IndexFederation(null, createIndex("federation_project", "Foo"), null);
+
+		assertEquals(1, federation.getIndices().size());
+		assertEquals(Arrays.asList("Foo"), federation.query(new TypeQuery()));
+	}
+
+	@Test
+	public void testLimit()
+	{
+		IndexFederation federation = new IndexFederation(createIndex("federation_project", "Foo"), createIndex(
+				"federation_library", "Bar", "Baz"), createIndex("federation_core", "Array", "Object"));
+
+		assertEquals(Arrays.asList("Foo", "Bar"), federation.query(null, new TypeQuery(), 2));
+		assertEquals("Foo", federation.queryFirst(null, new TypeQuery()));
+		assertTrue(federation.query(null, new TypeQuery(), 0).isEmpty());
+	}
+
+	@Test
+	public void testQueryFirstWithoutMatch()
+	{
+		IndexFederation federation = new IndexFederation(createIndex("federation_project"), createIndex(
+				"federation_library"));
+
+		assertNull(federation.queryFirst(null, new TypeQuery()));
+	}
+
+	@Test
+	public void testCachesUntilIndexChanges()
+	{
+		Index project = createIndex("federation_project", "Foo");
+		Index library = createIndex("federation_library", "Bar");
+		IndexFederation federation = new IndexFederation(project, library);
+
+		TypeQuery query = new TypeQuery();
+		assertEquals(Arrays.asList("Foo", "Bar"), federation.query("types", query));
+		assertEquals(2, query.count.get());
+
+		assertEquals(Arrays.asList("Foo", "Bar"), federation.query("types", query));
+		assertEquals(2, query.count.get());
+
+		// only the changed index gets queried again
+		project.addEntry(CATEGORY, "Qux", URI.create("federation_project.js"));
+		assertEquals(Arrays.asList("Foo", "Qux", "Bar"), federation.query("types", query));
+		assertEquals(3, query.count.get());
+
+		// without a key nothing is cached
+		federation.query(query);
+		assertEquals(5, query.count.get());
+	}
+
+	@Test
+	public void testFailingIndexContributesNothing()
+	{
+		final Index broken = createIndex("federation_broken", "Foo");
+		IndexFederation federation = new IndexFederation(broken, createIndex("federation_library", "Bar"));
+
+		List<String> results = federation.query(new TypeQuery()
+		{
+			@Override
+			public List<String> query(Index index)
+			{
+				if (index == broken)
+				{
+					throw new IllegalStateException("expected");
+				}
+				return super.query(index);
+			}
+		});
+
+		assertEquals(Arrays.asList("Bar"), results);
+	}
+
+	protected IndexManager getIndexManager()
+	{
+		return IndexPlugin.getDefault().getIndexManager();
+	}
+}
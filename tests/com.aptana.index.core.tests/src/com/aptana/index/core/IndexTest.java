@@ -262,6 +262,41 @@ public class IndexTest
 		// categories/words/files?
 	}
 
+	@Test
+	public void testQueriesSpanMergedAndPendingChanges() throws Exception
+	{
+		createIndex("merged_and_pending");
+
+		// enough documents to kick off background merges along the way
+		for (int i = 0; i < 250; i++)
+		{
+			index.addEntry("category", "key", new URI("file" + i + ".js"));
+		}
+		index.save();
+
+		index.remove(new URI("file0.js"));
+		index.addEntry("category", "key", new URI("file250.js"));
+		index.addEntry("category", "other", new URI("file1.js"));
+		index.remove(new URI("file1.js"));
+
+		List<QueryResult> result = index.query(new String[] { "category" }, "key", SearchPattern.EXACT_MATCH
+				| SearchPattern.CASE_SENSITIVE);
+		assertEquals(1, result.size());
+		Set<String> docs = result.get(0).getDocuments();
+		assertEquals(249, docs.size());
+		assertFalse(docs.contains("file0.js"));
+		assertFalse(docs.contains("file1.js"));
+		assertTrue(docs.contains("file250.js"));
+
+		assertTrue(index.query(new String[] { "category" }, "other", SearchPattern.EXACT_MATCH
+				| SearchPattern.CASE_SENSITIVE).isEmpty());
+		assertEquals(249, index.queryDocumentNames(null).size());
+
+		index.save();
+		result = index.query(new String[] { "category" }, "k*", SearchPattern.PATTERN_MATCH);
+		assertEquals(249, result.get(0).getDocuments().size());
+	}
+
 	@Test
 	public void testSave() throws Exception
 	{
@@ -0,0 +1,186 @@
+package com.aptana.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({ "nls", "deprecation" })
+public class MetadataSnapshotTest
+{
+	private static final double VERSION = 1.5;
+	private static final long CHECKSUM = 0xCAFEL;
+
+	private List<Index> indexes;
+	private List<File> files;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		indexes = new ArrayList<Index>();
+		files = new ArrayList<File>();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		for (Index index : indexes)
+		{
+			getIndexManager().removeIndex(index.getRoot());
+		}
+		for (File file : files)
+		{
+			file.delete();
+		}
+		indexes = null;
+		files = null;
+	}
+
+	private Index createIndex(String name) throws IOException
+	{
+		File dir = new File(System.getProperty("java.io.tmpdir"), name);
+		dir.mkdirs();
+		files.add(dir);
+		Index index = getIndexManager().getIndex(dir.toURI());
+		indexes.add(index);
+		return index;
+	}
+
+	private File createSnapshot() throws Exception
+	{
+		Index source = createIndex("snapshot_source");
+		source.addEntry("type", "Window", URI.create("metadata"));
+		source.addEntry("type", "Document", URI.create("metadata"));
+		source.addEntry("property", "Window.document", URI.create("metadata"));
+		source.save();
+
+		File snapshot = File.createTempFile("metadata", ".snapshot");
+		files.add(snapshot);
+		MetadataSnapshot.write(snapshot, VERSION, CHECKSUM, source.getIndexFile());
+		return snapshot;
+	}
+
+	private boolean extract(File snapshot, double version, long checksum, File file) throws IOException
+	{
+		InputStream stream = new FileInputStream(snapshot);
+		try
+		{
+			return MetadataSnapshot.extract(stream, version, checksum, file);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	@Test
+	public void testReplaceIndexWithSnapshot() throws Exception
+	{
+		File snapshot = createSnapshot();
+		Index target = createIndex("snapshot_target");
+		target.addEntry("type", "Stale", URI.create("metadata"));
+		long stamp = target.getModificationStamp();
+
+		File file = new File(target.getIndexFile().getPath() + ".snapshot");
+		files.add(file);
+		assertTrue(extract(snapshot, VERSION, CHECKSUM, file));
+		target.replaceWith(file);
+
+		assertFalse(stamp == target.getModificationStamp());
+		List<QueryResult> types = target.query(new String[] { "type" }, "", SearchPattern.PREFIX_MATCH);
+		assertNotNull(types);
+		assertEquals(2, types.size());
+		List<QueryResult> documents = target.query(new String[] { "property" }, "Window.",
+				SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE);
+		assertEquals(1, documents.size());
+		assertEquals("Window.document", documents.get(0).getWord());
+
+		// the snapshot is a regular index from then on
+		target.addEntry("type", "Node", URI.create("metadata"));
+		target.save();
+		assertEquals(3, target.query(new String[] { "type" }, "", SearchPattern.PREFIX_MATCH).size());
+	}
+
+	@Test
+	public void testIgnoreOutOfDateSnapshot() throws Exception
+	{
+		File snapshot = createSnapshot();
+		File file = File.createTempFile("metadata", ".index");
+		files.add(file);
+		file.delete();
+
+		assertFalse(extract(snapshot, VERSION + 1, CHECKSUM, file));
+		assertFalse(extract(snapshot, VERSION, CHECKSUM + 1, file));
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testIsCurrent() throws Exception
+	{
+		File snapshot = createSnapshot();
+
+		assertTrue(isCurrent(snapshot, VERSION, CHECKSUM));
+		assertFalse(isCurrent(snapshot, VERSION + 1, CHECKSUM));
+		assertFalse(isCurrent(snapshot, VERSION, CHECKSUM + 1));
+	}
+
+	private boolean isCurrent(File snapshot, double version, long checksum) throws IOException
+	{
+		InputStream stream = new FileInputStream(snapshot);
+		try
+		{
+			return MetadataSnapshot.isCurrent(stream, version, checksum);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectInvalidIndexFile() throws Exception
+	{
+		Index target = createIndex("snapshot_invalid");
+		target.addEntry("type", "Kept", URI.create("metadata"));
+		target.save();
+		File file = new File(target.getIndexFile().getPath() + ".snapshot");
+		files.add(file);
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write("not an index".getBytes());
+		}
+		finally
+		{
+			out.close();
+		}
+
+		try
+		{
+			target.replaceWith(file);
+		}
+		finally
+		{
+			assertEquals(1, target.query(new String[] { "type" }, "Kept", SearchPattern.EXACT_MATCH).size());
+		}
+	}
+
+	protected IndexManager getIndexManager()
+	{
+		return IndexPlugin.getDefault().getIndexManager();
+	}
+}
@@ -7,9 +7,14 @@ import org.junit.runners.Suite.SuiteClasses;
 import com.aptana.index.core.IndexCoreTests;
 import com.aptana.index.core.build.BuildContextTest;
 import com.aptana.internal.index.core.DiskIndexTest;
+import com.aptana.internal.index.core.IndexManifestTest;
+import com.aptana.internal.index.core.MappedDiskIndexTest;
+import com.aptana.internal.index.core.ParseCacheTest;
+import com.aptana.internal.index.core.PatternCacheTest;
 
 @RunWith(Suite.class)
-@SuiteClasses({ DiskIndexTest.class, BuildContextTest.class, IndexCoreTests.class, })
+@SuiteClasses({ DiskIndexTest.class, MappedDiskIndexTest.class, PatternCacheTest.class, ParseCacheTest.class,
+		IndexManifestTest.class, BuildContextTest.class, IndexCoreTests.class, })
 public class AllIndexCoreTests
 {
 
@@ -0,0 +1,167 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.FileUtil;
+
+@SuppressWarnings("nls")
+public class IndexManifestTest
+{
+	private File directory;
+	private File manifestFile;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		directory = FileUtil.getTempDirectory().append("indexManifestTest" + System.currentTimeMillis()).toFile();
+		directory.mkdirs();
+		manifestFile = new File(directory, "test.index.manifest");
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		FileUtil.deleteRecursively(directory);
+	}
+
+	@Test
+	public void testUnknownDocumentIsNotCurrent() throws Exception
+	{
+		IFileStore file = createFile("a.js", "var a;");
+		IndexManifest manifest = new IndexManifest(manifestFile);
+
+		assertFalse(manifest.isComplete());
+		assertFalse(manifest.isCurrent(name(file), file, file.fetchInfo()));
+	}
+
+	@Test
+	public void testIndexedFileIsCurrent() throws Exception
+	{
+		IFileStore file = createFile("a.js", "var a;");
+		IndexManifest manifest = new IndexManifest(manifestFile);
+		manifest.put(name(file), IndexManifest.Fingerprint.of(file, file.fetchInfo()));
+
+		assertTrue(manifest.isCurrent(name(file), file, file.fetchInfo()));
+	}
+
+	@Test
+	public void testTouchedFileIsCurrent() throws Exception
+	{
+		IFileStore file = createFile("a.js", "var a;");
+		IndexManifest manifest = new IndexManifest(manifestFile);
+		manifest.put(name(file), IndexManifest.Fingerprint.of(file, file.fetchInfo()));
+
+		File localFile = file.toLocalFile(EFS.NONE, null);
+		localFile.setLastModified(localFile.lastModified() + 10000);
+
+		assertTrue(manifest.isCurrent(name(file), file, file.fetchInfo()));
+	}
+
+	@Test
+	public void testChangedFileIsNotCurrent() throws Exception
+	{
+		IFileStore file = createFile("a.js", "var a;");
+		IndexManifest manifest = new IndexManifest(manifestFile);
+		manifest.put(name(file), IndexManifest.Fingerprint.of(file, file.fetchInfo()));
+
+		// same length, different contents
+		File localFile = file.toLocalFile(EFS.NONE, null);
+		long lastModified = localFile.lastModified();
+		write(localFile, "var b;");
+		localFile.setLastModified(lastModified + 10000);
+
+		assertFalse(manifest.isCurrent(name(file), file, file.fetchInfo()));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		IFileStore file = createFile("a.js", "var a;");
+		IndexManifest manifest = new IndexManifest(manifestFile);
+		manifest.put(name(file), IndexManifest.Fingerprint.of(file, file.fetchInfo()));
+		manifest.setComplete();
+		manifest.snapshot().write();
+
+		IndexManifest loaded = new IndexManifest(manifestFile);
+		assertTrue(loaded.isComplete());
+		assertEquals(CollectionsUtil.newSet(name(file)), loaded.getDocumentNames());
+		assertTrue(loaded.isCurrent(name(file), file, file.fetchInfo()));
+	}
+
+	@Test
+	public void testSnapshotOnlyAfterChanges() throws Exception
+	{
+		IFileStore file = createFile("a.js", "var a;");
+		IndexManifest manifest = new IndexManifest(manifestFile);
+		assertNull(manifest.snapshot());
+
+		manifest.put(name(file), IndexManifest.Fingerprint.of(file, file.fetchInfo()));
+		IndexManifest.Snapshot snapshot = manifest.snapshot();
+		assertNotNull(snapshot);
+		assertNull(manifest.snapshot());
+
+		// a snapshot that couldn't be written is taken again
+		snapshot.discard();
+		assertNotNull(manifest.snapshot());
+	}
+
+	@Test
+	public void testClearDropsPendingSnapshot() throws Exception
+	{
+		IFileStore file = createFile("a.js", "var a;");
+		IndexManifest manifest = new IndexManifest(manifestFile);
+		manifest.put(name(file), IndexManifest.Fingerprint.of(file, file.fetchInfo()));
+		manifest.snapshot().write();
+		assertTrue(manifestFile.isFile());
+
+		manifest.remove(name(file));
+		IndexManifest.Snapshot snapshot = manifest.snapshot();
+		manifest.clear(false);
+		assertFalse(manifestFile.exists());
+
+		snapshot.write();
+		assertFalse(manifestFile.exists());
+		assertFalse(manifest.isComplete());
+		assertTrue(manifest.getDocumentNames().isEmpty());
+	}
+
+	private IFileStore createFile(String name, String contents) throws Exception
+	{
+		File file = new File(directory, name);
+		write(file, contents);
+		return EFS.getLocalFileSystem().fromLocalFile(file);
+	}
+
+	private void write(File file, String contents) throws Exception
+	{
+		FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+	}
+
+	private String name(IFileStore file)
+	{
+		return file.toURI().toString();
+	}
+}
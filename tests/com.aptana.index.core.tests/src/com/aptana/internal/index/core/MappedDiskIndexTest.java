@@ -0,0 +1,211 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+
+@SuppressWarnings("nls")
+public class MappedDiskIndexTest
+{
+	private static final int EXACT = SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE;
+	private static final int PREFIX = SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE;
+
+	private File file;
+	private PatternCache patterns = new PatternCache(8);
+
+	@Before
+	public void setUp() throws Exception
+	{
+		file = File.createTempFile("mapped", ".index");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		new File(file, "blocker").delete();
+		file.delete();
+		for (File generation : file.getAbsoluteFile().getParentFile().listFiles())
+		{
+			if (generation.getName().startsWith(file.getName() + MappedDiskIndex.GENERATION_SUFFIX))
+			{
+				generation.delete();
+			}
+		}
+		file = null;
+	}
+
+	@Test
+	public void testEmptyIndex() throws Exception
+	{
+		IDiskIndex index = MappedDiskIndex.open(file.getAbsolutePath(), true);
+
+		assertTrue(index.getCategories().isEmpty());
+		assertTrue(index.getDocuments().isEmpty());
+		assertNull(index.addQueryResults(new String[] { "category" }, "key", EXACT, null, patterns));
+	}
+
+	@Test
+	public void testExactAndPrefixQueriesSpanningBlocks() throws Exception
+	{
+		MemoryIndex memory = new MemoryIndex();
+		for (int i = 0; i < 1000; i++)
+		{
+			memory.addEntry("category", "key" + i, "doc" + (i % 37) + ".js");
+		}
+
+		IDiskIndex index = MappedDiskIndex.open(file.getAbsolutePath(), true).mergeWith(memory);
+
+		Map<String, QueryResult> results = index.addQueryResults(new String[] { "category" }, "key42", EXACT, null,
+				patterns);
+		assertEquals(1, results.size());
+		assertEquals(asSet("doc5.js"), results.get("key42").getDocuments());
+
+		results = index.addQueryResults(new String[] { "category" }, "key99", PREFIX, null, patterns);
+		assertEquals(asSet("key99", "key990", "key991", "key992", "key993", "key994", "key995", "key996", "key997",
+				"key998", "key999"), results.keySet());
+
+		results = index.addQueryResults(new String[] { "category" }, null, SearchPattern.PREFIX_MATCH, null,
+				patterns);
+		assertEquals(1000, results.size());
+
+		assertNull(index.addQueryResults(new String[] { "category" }, "key1000", EXACT, null, patterns));
+		assertNull(index.addQueryResults(new String[] { "missing" }, "key1", EXACT, null, patterns));
+	}
+
+	@Test
+	public void testMergeReplacesChangedDocuments() throws Exception
+	{
+		MemoryIndex memory = new MemoryIndex();
+		memory.addEntry("category", "shared", "a.js");
+		memory.addEntry("category", "shared", "b.js");
+		memory.addEntry("category", "onlyB", "b.js");
+
+		IDiskIndex index = MappedDiskIndex.open(file.getAbsolutePath(), true).mergeWith(memory);
+
+		memory = new MemoryIndex();
+		memory.remove("a.js");
+		memory.addEntry("category", "shared", "c.js");
+		index = index.mergeWith(memory);
+
+		assertEquals(asSet("b.js", "c.js"), new HashSet<String>(index.getDocuments()));
+		Map<String, QueryResult> results = index.addQueryResults(new String[] { "category" }, "shared", EXACT, null,
+				patterns);
+		assertEquals(asSet("b.js", "c.js"), results.get("shared").getDocuments());
+
+		// documents changed in a pending memory index are hidden from disk results
+		memory = new MemoryIndex();
+		memory.remove("b.js");
+		results = index.addQueryResults(new String[] { "category" }, "shared", EXACT, memory, patterns);
+		assertEquals(asSet("c.js"), results.get("shared").getDocuments());
+		assertEquals(asSet("c.js"), index.addDocumentNames(null, memory));
+	}
+
+	@Test
+	public void testReopenAndRemoveCategories() throws Exception
+	{
+		MemoryIndex memory = new MemoryIndex();
+		memory.addEntry("keep", "k", "a.js");
+		memory.addEntry("drop", "d", "a.js");
+		MappedDiskIndex.open(file.getAbsolutePath(), true).mergeWith(memory);
+
+		IDiskIndex index = MappedDiskIndex.open(file.getAbsolutePath(), true);
+		assertEquals(asSet("keep", "drop"), new HashSet<String>(index.getCategories()));
+
+		index = index.removeCategories(new String[] { "drop" }, new MemoryIndex());
+		assertEquals(asSet("keep"), new HashSet<String>(index.getCategories()));
+		assertEquals(asSet("a.js"),
+				index.addQueryResults(new String[] { "keep" }, "k", EXACT, null, patterns).get("k").getDocuments());
+	}
+
+	@Test
+	public void testReplacedIndexStaysReadable() throws Exception
+	{
+		MemoryIndex memory = new MemoryIndex();
+		memory.addEntry("category", "key", "a.js");
+		IDiskIndex first = MappedDiskIndex.open(file.getAbsolutePath(), true).mergeWith(memory);
+
+		// an index file that can't be replaced, like one that is still mapped on Windows
+		file.delete();
+		assertTrue(new File(file, "blocker").mkdirs());
+
+		memory = new MemoryIndex();
+		memory.addEntry("category", "key", "b.js");
+		IDiskIndex second = first.mergeWith(memory);
+
+		assertEquals(file, second.getIndexFile());
+		assertEquals(new File(file.getPath() + MappedDiskIndex.GENERATION_SUFFIX + "1"), second.getDataFile());
+		assertEquals(asSet("a.js"), first.addQueryResults(new String[] { "category" }, "key", EXACT, null, patterns)
+				.get("key").getDocuments());
+		assertEquals(asSet("a.js", "b.js"),
+				second.addQueryResults(new String[] { "category" }, "key", EXACT, null, patterns).get("key")
+						.getDocuments());
+
+		// the latest generation is moved into place once the index file is free
+		new File(file, "blocker").delete();
+		file.delete();
+		IDiskIndex reopened = MappedDiskIndex.open(file.getAbsolutePath(), true);
+
+		assertEquals(file, reopened.getDataFile());
+		assertFalse(second.getDataFile().exists());
+		assertEquals(asSet("a.js", "b.js"),
+				reopened.addQueryResults(new String[] { "category" }, "key", EXACT, null, patterns).get("key")
+						.getDocuments());
+	}
+
+	@Test
+	public void testMigratesLegacyFormat() throws Exception
+	{
+		MemoryIndex memory = new MemoryIndex();
+		for (int i = 0; i < 300; i++)
+		{
+			memory.addEntry("category", "key" + (i % 10), "doc" + i + ".js");
+		}
+
+		DiskIndex legacy = new DiskIndex(file.getAbsolutePath());
+		legacy.initialize(false);
+		legacy.mergeWith(memory);
+
+		IDiskIndex index = MappedDiskIndex.open(file.getAbsolutePath(), true);
+
+		assertEquals(300, index.getDocuments().size());
+		Map<String, QueryResult> results = index.addQueryResults(new String[] { "category" }, "key3", EXACT, null,
+				patterns);
+		assertEquals(30, results.get("key3").getDocuments().size());
+		assertTrue(results.get("key3").getDocuments().contains("doc293.js"));
+
+		// the file was rewritten in the new format
+		index = MappedDiskIndex.open(file.getAbsolutePath(), true);
+		assertEquals(300, index.getDocuments().size());
+	}
+
+	private static Set<String> asSet(String... values)
+	{
+		Set<String> set = new HashSet<String>();
+		for (String value : values)
+		{
+			set.add(value);
+		}
+		return set;
+	}
+}
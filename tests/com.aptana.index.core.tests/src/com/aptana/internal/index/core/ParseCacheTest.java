@@ -0,0 +1,218 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import beaver.Symbol;
+
+import com.aptana.core.build.IProblem.Severity;
+import com.aptana.core.util.FileUtil;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseError;
+import com.aptana.parsing.ast.ParseRootNode;
+import com.aptana.parsing.ast.TextNode;
+
+@SuppressWarnings("nls")
+public class ParseCacheTest
+{
+
+	private static class TestRootNode extends ParseRootNode
+	{
+		private static final long serialVersionUID = 1L;
+
+		TestRootNode(Symbol[] children, int start, int end)
+		{
+			super(children, start, end);
+		}
+
+		public String getLanguage()
+		{
+			return "text/test";
+		}
+	}
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		directory = FileUtil.getTempDirectory().append("parseCacheTest" + System.currentTimeMillis()).toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		FileUtil.deleteRecursively(directory);
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		ParseCache cache = new ParseCache(directory, Long.MAX_VALUE);
+		String key = cache.getKey("text/test", "first second");
+		ParseError error = new ParseError("text/test", 6, 6, "Unexpected word", Severity.ERROR);
+		error.setLineNumber(1);
+		cache.put(key, new ParseResult(createRoot("first", "second"), Collections.<IParseError> singletonList(error)));
+
+		ParseResult result = cache.get(key);
+		assertNotNull(result);
+
+		IParseRootNode root = result.getRootNode();
+		assertEquals(0, root.getStartingOffset());
+		assertEquals(11, root.getEndingOffset());
+		assertEquals(2, root.getChildCount());
+		for (IParseNode child : root.getChildren())
+		{
+			assertSame(root, child.getParent());
+		}
+		TextNode second = (TextNode) root.getChild(1);
+		assertEquals("second", second.getText());
+		assertEquals(6, second.getStartingOffset());
+		assertEquals(11, second.getEndingOffset());
+		assertEquals(1, root.getCommentNodes().length);
+
+		assertEquals(1, result.getErrors().size());
+		IParseError restored = result.getErrors().get(0);
+		assertEquals("text/test", restored.getLangauge());
+		assertEquals(6, restored.getOffset());
+		assertEquals(6, restored.getLength());
+		assertEquals(1, restored.getLineNumber());
+		assertEquals(Severity.ERROR, restored.getSeverity());
+		assertEquals("Unexpected word", restored.getMessage());
+	}
+
+	@Test
+	public void testKeyDependsOnContentTypeAndSource() throws Exception
+	{
+		ParseCache cache = new ParseCache(directory, Long.MAX_VALUE);
+		String key = cache.getKey("text/test", "source");
+
+		assertEquals(key, cache.getKey("text/test", "source"));
+		assertFalse(key.equals(cache.getKey("text/other", "source")));
+		assertFalse(key.equals(cache.getKey("text/test", "source ")));
+	}
+
+	@Test
+	public void testMiss() throws Exception
+	{
+		ParseCache cache = new ParseCache(directory, Long.MAX_VALUE);
+		cache.put(cache.getKey("text/test", "first"), new ParseResult(createRoot("first"), noErrors()));
+
+		assertNull(cache.get(cache.getKey("text/test", "second")));
+	}
+
+	@Test
+	public void testUnserializableTreeIsNotStored() throws Exception
+	{
+		ParseCache cache = new ParseCache(directory, Long.MAX_VALUE);
+		String key = cache.getKey("text/test", "");
+		// anonymous, so it drags the test along
+		IParseRootNode root = new ParseRootNode(new Symbol[0], 0, 0)
+		{
+			public String getLanguage()
+			{
+				return "text/test";
+			}
+		};
+		cache.put(key, new ParseResult(root, noErrors()));
+
+		assertNull(cache.get(key));
+		assertEquals(0, directory.list().length);
+	}
+
+	@Test
+	public void testCorruptEntryIsDropped() throws Exception
+	{
+		ParseCache cache = new ParseCache(directory, Long.MAX_VALUE);
+		String key = cache.getKey("text/test", "first");
+		cache.put(key, new ParseResult(createRoot("first"), noErrors()));
+		File[] entries = directory.listFiles();
+		assertEquals(1, entries.length);
+		FileWriter writer = new FileWriter(entries[0]);
+		writer.write("garbage");
+		writer.close();
+
+		assertNull(cache.get(key));
+		assertFalse(entries[0].exists());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception
+	{
+		ParseCache sizer = new ParseCache(new File(directory, "sizer"), Long.MAX_VALUE);
+		sizer.put("sizer", new ParseResult(createRoot("word0"), noErrors()));
+		long entrySize = new File(directory, "sizer").listFiles()[0].length();
+
+		// room for four entries
+		ParseCache cache = new ParseCache(new File(directory, "cache"), entrySize * 4 + entrySize / 2);
+		List<String> keys = new ArrayList<String>();
+		for (int i = 0; i < 4; i++)
+		{
+			String key = cache.getKey("text/test", "word" + i);
+			cache.put(key, new ParseResult(createRoot("word" + i), noErrors()));
+			keys.add(key);
+		}
+		// Make the first entry the most recently used one. Modification times may be as coarse as seconds.
+		for (int i = 1; i < 4; i++)
+		{
+			new File(new File(directory, "cache"), keys.get(i) + ".ast").setLastModified(System.currentTimeMillis()
+					- (10 - i) * 1000);
+		}
+		assertNotNull(cache.get(keys.get(0)));
+
+		String key = cache.getKey("text/test", "word4");
+		cache.put(key, new ParseResult(createRoot("word4"), noErrors()));
+
+		assertNotNull(cache.get(keys.get(0)));
+		assertNull(cache.get(keys.get(1)));
+		assertNotNull(cache.get(key));
+		assertTrue(new File(directory, "cache").list().length <= 4);
+	}
+
+	private static IParseRootNode createRoot(String... words)
+	{
+		List<Symbol> children = new ArrayList<Symbol>();
+		int offset = 0;
+		for (String word : words)
+		{
+			TextNode node = new TextNode(word);
+			node.setLocation(offset, offset + word.length() - 1);
+			children.add(node);
+			offset += word.length() + 1;
+		}
+		TestRootNode root = new TestRootNode(children.toArray(new Symbol[children.size()]), 0, offset - 2);
+		TextNode comment = new TextNode("comment");
+		comment.setLocation(0, 0);
+		root.setCommentNodes(new IParseNode[] { comment });
+		return root;
+	}
+
+	private static List<IParseError> noErrors()
+	{
+		return Collections.emptyList();
+	}
+}
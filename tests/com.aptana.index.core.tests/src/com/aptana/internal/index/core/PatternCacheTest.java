@@ -0,0 +1,56 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.aptana.index.core.SearchPattern;
+
+@SuppressWarnings("nls")
+public class PatternCacheTest
+{
+	@Test
+	public void testPatternMatch()
+	{
+		PatternCache cache = new PatternCache(4);
+
+		assertTrue(cache.getMatcher("get*", SearchPattern.PATTERN_MATCH).matches("getElementById"));
+		assertTrue(cache.getMatcher("GET*", SearchPattern.PATTERN_MATCH).matches("getElementById"));
+		assertFalse(cache.getMatcher("GET*", SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE).matches(
+				"getElementById"));
+		assertTrue(cache.getMatcher("*", SearchPattern.PATTERN_MATCH).matches("anything"));
+	}
+
+	@Test
+	public void testRegexMatch()
+	{
+		PatternCache cache = new PatternCache(4);
+
+		assertTrue(cache.getMatcher("^A.c$", SearchPattern.REGEX_MATCH).matches("abc"));
+		assertFalse(cache.getMatcher("^A.c$", SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE).matches("abc"));
+		// invalid expressions never match
+		assertFalse(cache.getMatcher("(", SearchPattern.REGEX_MATCH).matches("("));
+	}
+
+	@Test
+	public void testCacheIsBounded()
+	{
+		PatternCache cache = new PatternCache(4);
+
+		for (int i = 0; i < 10; i++)
+		{
+			assertTrue(cache.getMatcher("key" + i + "*", SearchPattern.PATTERN_MATCH).matches("key" + i + "suffix"));
+		}
+
+		assertEquals(4, cache.size());
+	}
+}
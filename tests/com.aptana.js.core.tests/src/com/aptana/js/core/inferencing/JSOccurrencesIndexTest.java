@@ -0,0 +1,123 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.inferencing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.aptana.js.core.parsing.GraalJSParser;
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.lexer.IRange;
+
+@SuppressWarnings("nls")
+public class JSOccurrencesIndexTest
+{
+	private String source;
+	private JSOccurrencesIndex index;
+
+	private void index(String source) throws Exception
+	{
+		this.source = source;
+		JSParseRootNode ast = (JSParseRootNode) new GraalJSParser().parse(new ParseState(source)).getRootNode();
+		index = new JSOccurrencesIndex(ast);
+	}
+
+	/**
+	 * Returns the offsets of the occurrences of whatever is at the nth occurrence of the text.
+	 */
+	private List<Integer> occurrences(String text, int n)
+	{
+		int offset = -1;
+		for (int i = 0; i <= n; i++)
+		{
+			offset = source.indexOf(text, offset + 1);
+		}
+		List<IRange> ranges = index.getOccurrences(offset);
+		if (ranges == null)
+		{
+			return null;
+		}
+		List<Integer> result = new ArrayList<Integer>();
+		for (IRange range : ranges)
+		{
+			assertEquals(text, source.substring(range.getStartingOffset(), range.getEndingOffset() + 1));
+			result.add(range.getStartingOffset());
+		}
+		return result;
+	}
+
+	private List<Integer> offsets(String text, int... occurrences)
+	{
+		List<Integer> result = new ArrayList<Integer>();
+		int offset = -1;
+		int n = 0;
+		for (int occurrence : occurrences)
+		{
+			while (n <= occurrence)
+			{
+				offset = source.indexOf(text, offset + 1);
+				n++;
+			}
+			result.add(offset);
+		}
+		return result;
+	}
+
+	@Test
+	public void testGlobal() throws Exception
+	{
+		index("var abc = 1;\nabc = abc + 2;\n");
+
+		assertEquals(offsets("abc", 0, 1, 2), occurrences("abc", 1));
+	}
+
+	@Test
+	public void testLocalShadowsGlobal() throws Exception
+	{
+		index("var abc = 1;\nfunction f() {\n  var abc = 2;\n  return abc;\n}\nabc++;\n");
+
+		assertEquals(offsets("abc", 0, 3), occurrences("abc", 0));
+		assertEquals(offsets("abc", 1, 2), occurrences("abc", 2));
+	}
+
+	@Test
+	public void testParameters() throws Exception
+	{
+		index("function f(abc) { return abc; }\nfunction g(abc) { return abc; }\n");
+
+		assertEquals(offsets("abc", 0, 1), occurrences("abc", 1));
+		assertEquals(offsets("abc", 2, 3), occurrences("abc", 2));
+	}
+
+	@Test
+	public void testPropertyNamesAreNotVariables() throws Exception
+	{
+		index("var abc = { abc: 1 };\nabc.abc = abc;\n");
+
+		assertNull(occurrences("abc", 1));
+		assertNull(occurrences("abc", 3));
+		assertEquals(offsets("abc", 0, 2, 4), occurrences("abc", 4));
+	}
+
+	@Test
+	public void testOffsetWithinName() throws Exception
+	{
+		index("var abc = 1;\nabc;\n");
+
+		List<IRange> ranges = index.getOccurrences(source.indexOf("bc"));
+		assertEquals(2, ranges.size());
+		assertEquals(source.indexOf("abc"), ranges.get(0).getStartingOffset());
+		assertNull(index.getOccurrences(source.indexOf(" = ")));
+	}
+}
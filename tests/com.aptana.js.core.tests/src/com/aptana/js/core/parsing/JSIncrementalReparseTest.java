@@ -0,0 +1,212 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.js.core.IJSConstants;
+import com.aptana.js.core.parsing.ast.JSBinaryOperatorNode;
+import com.aptana.js.core.parsing.ast.JSGroupNode;
+import com.aptana.js.core.parsing.ast.JSObjectNode;
+import com.aptana.parsing.ParseEdit;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ParserPoolFactory;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+import beaver.Symbol;
+
+@SuppressWarnings("nls")
+public class JSIncrementalReparseTest
+{
+	private GraalJSParser fParser;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		fParser = new GraalJSParser();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		fParser = null;
+	}
+
+	@Test
+	public void testEditInsideFunctionBody() throws Exception
+	{
+		// @formatter:off
+		assertReparsed(
+			"function foo() {\n  var a = 1;\n}\nvar b = (1 + 2);\n",
+			"function foo() {\n  var a = 10;\n  a++;\n}\nvar b = (1 + 2);\n");
+		// @formatter:on
+	}
+
+	@Test
+	public void testEditInsideNestedFunction() throws Exception
+	{
+		// @formatter:off
+		assertReparsed(
+			"function outer() {\n  function inner() {\n    return 1;\n  }\n  return inner();\n}\n",
+			"function outer() {\n  function inner() {\n    // one\n    return 1 + 1;\n  }\n  return inner();\n}\n");
+		// @formatter:on
+	}
+
+	@Test
+	public void testEnclosingSymbolsMove() throws Exception
+	{
+		// @formatter:off
+		assertReparsed(
+			"var o = {\n  f: function f() {\n    return 1;\n  },\n  g: (2 * 3)\n};\n",
+			"var o = {\n  f: function f() {\n    return 1000;\n  },\n  g: (2 * 3)\n};\n");
+		// @formatter:on
+	}
+
+	@Test
+	public void testRenamedFunctionFallsBack() throws Exception
+	{
+		assertNotReparsed("function foo() {\n  return 1;\n}\n", "function fooBar() {\n  return 1;\n}\n");
+	}
+
+	@Test
+	public void testSyntaxErrorFallsBack() throws Exception
+	{
+		assertNotReparsed("function foo() {\n  return 1;\n}\nfoo();\n", "function foo() {\n  return (1;\n}\nfoo();\n");
+	}
+
+	@Test
+	public void testEditOutsideFunctionFallsBack() throws Exception
+	{
+		assertNotReparsed("var a = 1;\nfunction foo() {\n}\n", "var a = 12;\nfunction foo() {\n}\n");
+	}
+
+	@Test
+	public void testPreviousTreeIsLeftAlone() throws Exception
+	{
+		String oldSource = "function foo() {\n  var a = 1;\n}\nvar b = (1 + 2);\n";
+		String newSource = "function foo() {\n  var a = 10;\n  a++;\n}\nvar b = (1 + 2);\n";
+		ParseResult previous = parse(oldSource);
+		String previousTree = previous.getRootNode().toString();
+		int previousEnd = previous.getRootNode().getLastChild().getEndingOffset();
+
+		// the editor hands out its trees, so the engine reparses a copy
+		ParseResult result = ParserPoolFactory.reparse(IJSConstants.CONTENT_TYPE_JS, newSource, oldSource, previous);
+
+		assertNotSame(previous.getRootNode(), result.getRootNode());
+		assertEquals(previousTree, previous.getRootNode().toString());
+		assertEquals(previousEnd, previous.getRootNode().getLastChild().getEndingOffset());
+		assertSameTree(parse(newSource).getRootNode(), result.getRootNode());
+	}
+
+	private ParseResult parse(String source) throws Exception
+	{
+		ParseResult result = fParser.parse(new ParseState(source));
+
+		assertTrue(result.getErrors().isEmpty());
+
+		return result;
+	}
+
+	private ParseResult reparse(IParseRootNode previous, String oldSource, String newSource) throws Exception
+	{
+		return fParser.reparse(new ParseState(newSource), previous, ParseEdit.compute(oldSource, newSource));
+	}
+
+	private void assertReparsed(String oldSource, String newSource) throws Exception
+	{
+		IParseRootNode previous = parse(oldSource).getRootNode();
+		ParseResult result = reparse(previous, oldSource, newSource);
+
+		assertNotNull("Expected an incremental reparse", result);
+		assertNotSame(previous, result.getRootNode());
+
+		IParseRootNode expected = parse(newSource).getRootNode();
+
+		assertSameTree(expected, result.getRootNode());
+		assertEquals(expected.getCommentNodes().length, result.getRootNode().getCommentNodes().length);
+
+		for (int i = 0; i < expected.getCommentNodes().length; i++)
+		{
+			assertSameLocation(expected.getCommentNodes()[i], result.getRootNode().getCommentNodes()[i]);
+		}
+
+		// others may still be reading the previous tree
+		IParseRootNode original = parse(oldSource).getRootNode();
+
+		assertSameTree(original, previous);
+
+		for (int i = 0; i < original.getCommentNodes().length; i++)
+		{
+			assertSameLocation(original.getCommentNodes()[i], previous.getCommentNodes()[i]);
+		}
+	}
+
+	private void assertNotReparsed(String oldSource, String newSource) throws Exception
+	{
+		assertNull(reparse(parse(oldSource).getRootNode(), oldSource, newSource));
+	}
+
+	private void assertSameTree(IParseNode expected, IParseNode actual)
+	{
+		assertEquals(expected.getClass(), actual.getClass());
+		assertSameLocation(expected, actual);
+
+		if (expected instanceof JSGroupNode)
+		{
+			assertSameLocation(((JSGroupNode) expected).getLeftParenthesis(),
+					((JSGroupNode) actual).getLeftParenthesis());
+			assertSameLocation(((JSGroupNode) expected).getRightParenthesis(),
+					((JSGroupNode) actual).getRightParenthesis());
+		}
+		else if (expected instanceof JSObjectNode)
+		{
+			assertSameLocation(((JSObjectNode) expected).getLeftBrace(), ((JSObjectNode) actual).getLeftBrace());
+			assertSameLocation(((JSObjectNode) expected).getRightBrace(), ((JSObjectNode) actual).getRightBrace());
+		}
+		else if (expected instanceof JSBinaryOperatorNode)
+		{
+			assertSameLocation(((JSBinaryOperatorNode) expected).getOperator(),
+					((JSBinaryOperatorNode) actual).getOperator());
+		}
+
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			assertSameTree(expected.getChild(i), actual.getChild(i));
+		}
+	}
+
+	private void assertSameLocation(IParseNode expected, IParseNode actual)
+	{
+		assertEquals(expected.getStartingOffset(), actual.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), actual.getEndingOffset());
+	}
+
+	private void assertSameLocation(Symbol expected, Symbol actual)
+	{
+		if (expected == null)
+		{
+			assertNull(actual);
+		}
+		else
+		{
+			assertEquals(expected.getStart(), actual.getStart());
+			assertEquals(expected.getEnd(), actual.getEnd());
+		}
+	}
+}
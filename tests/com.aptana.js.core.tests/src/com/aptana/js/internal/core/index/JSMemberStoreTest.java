@@ -0,0 +1,145 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.index.core.Index;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.js.core.index.IJSIndexConstants;
+import com.aptana.js.core.model.FunctionElement;
+import com.aptana.js.core.model.PropertyElement;
+import com.aptana.js.internal.core.index.JSMemberStore.Member;
+
+@SuppressWarnings("nls")
+public class JSMemberStoreTest
+{
+	private Index index;
+	private URI location;
+	private JSIndexWriter writer;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		File dir = File.createTempFile("member_store", "");
+		dir.delete();
+		dir.mkdirs();
+		location = dir.toURI();
+		index = IndexPlugin.getDefault().getIndexManager().getIndex(location);
+		writer = new JSIndexWriter();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		IndexPlugin.getDefault().getIndexManager().removeIndex(location);
+		new File(location).delete();
+		index = null;
+		writer = null;
+	}
+
+	@Test
+	public void testLookupByOwningTypeAndName() throws Exception
+	{
+		writeProperty("Foo", "bar", "file.js");
+		writeProperty("Foo", "baz", "file.js");
+		writeProperty("Foobar", "bar", "file.js");
+		writeFunction("Foo", "qux", "file.js");
+
+		JSMemberStore store = JSMemberStore.getStore(index);
+
+		List<Member> members = store.getMembers(IJSIndexConstants.PROPERTY, "Foo", "bar");
+		assertEquals(1, members.size());
+		assertEquals("Foo", members.get(0).getOwningType());
+		assertEquals("bar", members.get(0).getName());
+		assertTrue(members.get(0).getDocuments().contains("file.js"));
+
+		assertEquals(2, store.getMembers(IJSIndexConstants.PROPERTY, Arrays.asList("Foo")).size());
+		assertEquals(3, store.getMembers(IJSIndexConstants.PROPERTY, Arrays.asList("Foo", "Foobar")).size());
+		assertEquals(1, store.getMembers(IJSIndexConstants.FUNCTION, Arrays.asList("Foo")).size());
+		assertEquals(0, store.getMembers(IJSIndexConstants.EVENT, Arrays.asList("Foo")).size());
+	}
+
+	@Test
+	public void testStoreTracksIndexChanges() throws Exception
+	{
+		writeProperty("Foo", "bar", "a.js");
+
+		JSMemberStore store = JSMemberStore.getStore(index);
+		assertEquals(1, store.getMembers(IJSIndexConstants.PROPERTY, Arrays.asList("Foo")).size());
+
+		writeProperty("Foo", "baz", "b.js");
+		assertEquals(2, store.getMembers(IJSIndexConstants.PROPERTY, Arrays.asList("Foo")).size());
+
+		index.remove(URI.create("a.js"));
+		List<Member> members = store.getMembers(IJSIndexConstants.PROPERTY, Arrays.asList("Foo"));
+		assertEquals(1, members.size());
+		assertEquals("baz", members.get(0).getName());
+	}
+
+	@Test
+	public void testOnlyChangedTypesAreReadAgain() throws Exception
+	{
+		writeProperty("Foo", "bar", "a.js");
+		writeProperty("Baz", "qux", "b.js");
+
+		JSMemberStore store = JSMemberStore.getStore(index);
+		Member baz = store.getMembers(IJSIndexConstants.PROPERTY, "Baz", "qux").get(0);
+
+		// members of other types are carried over as they are
+		writeProperty("Foo", "quux", "c.js");
+		assertEquals(2, store.getMembers(IJSIndexConstants.PROPERTY, Arrays.asList("Foo")).size());
+		assertSame(baz, store.getMembers(IJSIndexConstants.PROPERTY, "Baz", "qux").get(0));
+
+		// removing a document reads the types it had members of again
+		Member foo = store.getMembers(IJSIndexConstants.PROPERTY, "Foo", "bar").get(0);
+		index.remove(URI.create("b.js"));
+		assertTrue(store.getMembers(IJSIndexConstants.PROPERTY, "Baz", "qux").isEmpty());
+		assertSame(foo, store.getMembers(IJSIndexConstants.PROPERTY, "Foo", "bar").get(0));
+	}
+
+	@Test
+	public void testReaderUsesStore() throws Exception
+	{
+		writeProperty("Array", "length", "file.js");
+
+		JSIndexReader reader = new JSIndexReader();
+		List<PropertyElement> properties = reader.getProperties(index, "Array<String>", "length");
+
+		assertEquals(1, properties.size());
+		assertEquals("length", properties.get(0).getName());
+		assertEquals("Array", properties.get(0).getOwningType());
+	}
+
+	private void writeProperty(String owningType, String name, String document)
+	{
+		PropertyElement property = new PropertyElement();
+		property.setOwningType(owningType);
+		property.setName(name);
+		writer.writeProperty(index, property, URI.create(document));
+	}
+
+	private void writeFunction(String owningType, String name, String document)
+	{
+		FunctionElement function = new FunctionElement();
+		function.setOwningType(owningType);
+		function.setName(name);
+		writer.writeFunction(index, function, URI.create(document));
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.index.core.Index;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.js.core.model.FunctionElement;
+import com.aptana.js.core.model.PropertyElement;
+import com.aptana.js.core.model.TypeElement;
+
+@SuppressWarnings("nls")
+public class JSTypeGraphTest
+{
+	private List<URI> locations;
+	private Index project;
+	private Index library;
+	private JSIndexWriter writer;
+	private JSTypeGraph graph;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		locations = new ArrayList<URI>();
+		project = createIndex("type_graph_project");
+		library = createIndex("type_graph_library");
+		writer = new JSIndexWriter();
+		graph = new JSTypeGraph();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		for (URI location : locations)
+		{
+			IndexPlugin.getDefault().getIndexManager().removeIndex(location);
+			new File(location).delete();
+		}
+		locations = null;
+		project = null;
+		library = null;
+		writer = null;
+		graph = null;
+	}
+
+	private Index createIndex(String name) throws Exception
+	{
+		File dir = File.createTempFile(name, "");
+		dir.delete();
+		dir.mkdirs();
+		locations.add(dir.toURI());
+		return IndexPlugin.getDefault().getIndexManager().getIndex(dir.toURI());
+	}
+
+	@Test
+	public void testAncestorsAcrossIndices() throws Exception
+	{
+		writeType(project, "Button", "View", "project.js");
+		writeType(library, "View", "EventTarget", "library.js");
+		writeType(library, "EventTarget", "Object", "library.js");
+		writeType(library, "Object", null, "library.js");
+
+		JSTypeGraph.Hierarchy hierarchy = graph.getHierarchy(Arrays.asList(project, library), "Button");
+
+		assertEquals(Arrays.asList("View", "EventTarget", "Object"), hierarchy.getAncestors());
+	}
+
+	@Test
+	public void testMembersOfTypeComeFirst() throws Exception
+	{
+		writeType(project, "Button", "View", "project.js", "title", "show()");
+		writeType(library, "View", "Object", "library.js", "show()", "width");
+
+		JSTypeGraph.Hierarchy hierarchy = graph.getHierarchy(Arrays.asList(project, library), "Button");
+
+		List<String> names = new ArrayList<String>();
+		for (PropertyElement member : hierarchy.getMembers())
+		{
+			names.add(member.getOwningType() + "." + member.getName());
+		}
+		assertEquals(Arrays.asList("Button.show", "Button.title", "View.show", "View.width"), names);
+
+		List<PropertyElement> show = hierarchy.getMembers("show");
+		assertEquals(2, show.size());
+		assertEquals("Button", show.get(0).getOwningType());
+		assertTrue(show.get(0) instanceof FunctionElement);
+		assertTrue(hierarchy.getMembers("height").isEmpty());
+	}
+
+	@Test
+	public void testHierarchyIsCached() throws Exception
+	{
+		writeType(project, "Button", "View", "project.js", "title");
+
+		List<Index> indices = Arrays.asList(project, library);
+		assertSame(graph.getHierarchy(indices, "Button"), graph.getHierarchy(indices, "Button"));
+	}
+
+	@Test
+	public void testAddedEntryDropsType() throws Exception
+	{
+		writeType(project, "Button", "View", "a.js", "title");
+		List<Index> indices = Arrays.asList(project, library);
+		assertEquals(1, graph.getHierarchy(indices, "Button").getMembers().size());
+
+		writeType(project, "Button", "View", "b.js", "enabled");
+		assertEquals(2, graph.getHierarchy(indices, "Button").getMembers().size());
+
+		// so does a new ancestor
+		writeType(library, "View", "Object", "library.js", "width");
+		JSTypeGraph.Hierarchy hierarchy = graph.getHierarchy(indices, "Button");
+		assertEquals(3, hierarchy.getMembers().size());
+		assertEquals(Arrays.asList("View", "Object"), hierarchy.getAncestors());
+	}
+
+	@Test
+	public void testRemovedDocumentDropsType() throws Exception
+	{
+		writeType(project, "Button", "View", "a.js", "title");
+		writeType(project, "Button", "View", "b.js", "enabled");
+		List<Index> indices = Arrays.asList(project);
+		assertEquals(2, graph.getHierarchy(indices, "Button").getMembers().size());
+
+		project.remove(URI.create("a.js"));
+		List<PropertyElement> members = graph.getHierarchy(indices, "Button").getMembers();
+		assertEquals(1, members.size());
+		assertEquals("enabled", members.get(0).getName());
+	}
+
+	@Test
+	public void testGenericArray() throws Exception
+	{
+		writeType(library, "Array", "Object", "library.js", "length");
+
+		JSTypeGraph.Hierarchy hierarchy = graph.getHierarchy(Arrays.asList(library), "Array<String>");
+
+		assertEquals(1, hierarchy.getMembers("length").size());
+	}
+
+	/**
+	 * Writes a type with the given members, where a name ending in "()" is a function.
+	 */
+	private void writeType(Index index, String name, String parent, String document, String... members)
+	{
+		TypeElement type = new TypeElement();
+		type.setName(name);
+		if (parent != null)
+		{
+			type.addParentType(parent);
+		}
+		for (String member : members)
+		{
+			PropertyElement property;
+			if (member.endsWith("()"))
+			{
+				property = new FunctionElement();
+				property.setName(member.substring(0, member.length() - 2));
+			}
+			else
+			{
+				property = new PropertyElement();
+				property.setName(member);
+			}
+			type.addProperty(property);
+		}
+		writer.writeType(index, type, URI.create(document));
+	}
+}
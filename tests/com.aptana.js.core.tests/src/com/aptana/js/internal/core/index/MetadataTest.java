@@ -7,6 +7,7 @@
  */
 package com.aptana.js.internal.core.index;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
@@ -52,6 +53,13 @@ public class MetadataTest
 		this.loadMetadata("/metadata/js_core.xml");
 	}
 
+	@Test
+	public void testSnapshotIsCurrent() throws Exception
+	{
+		assertFalse("metadata.snapshot is out of date, regenerate it with -Pmetadata-snapshots",
+				new JSMetadataLoader().hasOutOfDateSnapshot());
+	}
+
 	/**
 	 * loadMetadata
 	 * 
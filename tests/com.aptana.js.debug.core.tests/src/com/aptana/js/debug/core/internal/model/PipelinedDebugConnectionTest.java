@@ -0,0 +1,197 @@
+package com.aptana.js.debug.core.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.js.debug.core.model.IJSDebugConnectionHandler;
+
+public class PipelinedDebugConnectionTest
+{
+	private static final long TIMEOUT = 5000;
+
+	private ServerSocket server;
+	private Socket debugger;
+	private InputStream debuggerInput;
+	private OutputStream debuggerOutput;
+	private PipelinedDebugConnection connection;
+	private BlockingQueue<String> messages;
+	private CountDownLatch shutdown;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		server = ServerSocketChannel.open().socket();
+		server.bind(new InetSocketAddress(InetAddress.getByName(null), 0));
+		connection = new PipelinedDebugConnection();
+		connection.initialize(new InetSocketAddress(InetAddress.getByName(null), server.getLocalPort()), null, null);
+		debugger = server.accept();
+		debugger.setSoTimeout((int) TIMEOUT);
+		debuggerInput = debugger.getInputStream();
+		debuggerOutput = debugger.getOutputStream();
+		messages = new LinkedBlockingQueue<String>();
+		shutdown = new CountDownLatch(1);
+		connection.start(new IJSDebugConnectionHandler()
+		{
+			public void handleMessage(String message)
+			{
+				messages.add(message);
+			}
+
+			public void handleShutdown()
+			{
+				shutdown.countDown();
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		try
+		{
+			connection.stop();
+			connection.dispose();
+			debugger.close();
+			server.close();
+		}
+		finally
+		{
+			connection = null;
+			debugger = null;
+			server = null;
+		}
+	}
+
+	@Test
+	public void testResponsesOutOfOrder() throws Exception
+	{
+		List<Future<String[]>> responses = connection.sendCommandsAsync(Arrays.asList("frames*1",
+				"variables*1*frame[0]", "variables*1*frame[1]"));
+		String[] first = readRequest();
+		String[] second = readRequest();
+		String[] third = readRequest();
+		assertEquals("frames", first[1]);
+		assertEquals("frame[1]", third[3]);
+
+		respond(third[0] + "*c|Number|n|1");
+		respond(first[0] + "*0|f|||1|n|0|0");
+		respond(second[0] + "*a|Number|n|2");
+
+		assertEquals("c|Number|n|1", responses.get(2).get(TIMEOUT, TimeUnit.MILLISECONDS)[1]);
+		assertEquals("a|Number|n|2", responses.get(1).get(TIMEOUT, TimeUnit.MILLISECONDS)[1]);
+		assertEquals("0|f|||1|n|0|0", responses.get(0).get(TIMEOUT, TimeUnit.MILLISECONDS)[1]);
+	}
+
+	@Test
+	public void testSendCommandAndWait() throws Exception
+	{
+		Thread responder = new Thread()
+		{
+			public void run()
+			{
+				try
+				{
+					String[] request = readRequest();
+					respond(request[0] + "*2*1.0");
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		};
+		responder.start();
+		String[] args = connection.sendCommandAndWait("version");
+		assertEquals(3, args.length);
+		assertEquals("2", args[1]);
+		assertEquals("1.0", args[2]);
+		responder.join(TIMEOUT);
+	}
+
+	@Test
+	public void testMessagesSplitAcrossWrites() throws Exception
+	{
+		String event = "suspended*breakpoint*file.js*12";
+		byte[] bytes = ("junk\n" + event.length() + "*" + event + "5*a*b*c").getBytes("ASCII");
+		for (byte b : bytes)
+		{
+			debuggerOutput.write(b);
+			debuggerOutput.flush();
+		}
+		assertEquals(event, messages.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals("a*b*c", messages.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testTrailingSeparator() throws Exception
+	{
+		Future<String[]> response = connection.sendCommandAsync("frames*1");
+		String[] request = readRequest();
+		respond(request[0] + "*");
+		String[] args = response.get(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertEquals(Arrays.asList(request[0], "", " "), Arrays.asList(args));
+	}
+
+	@Test
+	public void testShutdownCompletesPendingRequests() throws Exception
+	{
+		Future<String[]> response = connection.sendCommandAsync("frames*1");
+		readRequest();
+		debugger.close();
+		assertNull(response.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(shutdown.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(connection.isTerminated());
+	}
+
+	@Test
+	public void testStopCompletesPendingRequests() throws Exception
+	{
+		Future<String[]> response = connection.sendCommandAsync("frames*1");
+		connection.stop();
+		assertNull(response.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertNull(connection.sendCommandAndWait("frames*1"));
+	}
+
+	private String[] readRequest() throws IOException
+	{
+		StringBuilder length = new StringBuilder();
+		int ch;
+		while ((ch = debuggerInput.read()) != '*')
+		{
+			length.append((char) ch);
+		}
+		byte[] request = new byte[Integer.parseInt(length.toString())];
+		int n = 0;
+		while (n < request.length)
+		{
+			n += debuggerInput.read(request, n, request.length - n);
+		}
+		return new String(request, "ASCII").split("\\*");
+	}
+
+	private void respond(String message) throws IOException
+	{
+		debuggerOutput.write((message.length() + "*" + message).getBytes("ASCII"));
+		debuggerOutput.flush();
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class ParseEditTest
+{
+	@Test
+	public void testEqualSources()
+	{
+		assertNull(ParseEdit.compute("", ""));
+		assertNull(ParseEdit.compute("abc", "abc"));
+	}
+
+	@Test
+	public void testInsertion()
+	{
+		assertEdit(ParseEdit.compute("abcd", "abXYcd"), 2, 0, 2);
+		assertEdit(ParseEdit.compute("", "abc"), 0, 0, 3);
+		assertEdit(ParseEdit.compute("abc", "abcd"), 3, 0, 1);
+	}
+
+	@Test
+	public void testRemoval()
+	{
+		assertEdit(ParseEdit.compute("abXYcd", "abcd"), 2, 2, 0);
+		assertEdit(ParseEdit.compute("abc", ""), 0, 3, 0);
+	}
+
+	@Test
+	public void testReplacement()
+	{
+		assertEdit(ParseEdit.compute("a{ x }b", "a{ yy }b"), 3, 1, 2);
+		assertEquals(1, ParseEdit.compute("a{ x }b", "a{ yy }b").getDelta());
+	}
+
+	@Test
+	public void testRepeatedCharactersDoNotOverlap()
+	{
+		// the common prefix takes the "aa", the suffix can't reuse it
+		assertEdit(ParseEdit.compute("aa", "aaa"), 2, 0, 1);
+		assertEdit(ParseEdit.compute("aaa", "aa"), 2, 1, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeLength()
+	{
+		new ParseEdit(0, -1, 0);
+	}
+
+	private void assertEdit(ParseEdit edit, int offset, int removed, int inserted)
+	{
+		assertEquals(offset, edit.getOffset());
+		assertEquals(removed, edit.getRemovedLength());
+		assertEquals(inserted, edit.getInsertedLength());
+	}
+}
@@ -10,11 +10,13 @@ package com.aptana.parsing.tests;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import com.aptana.parsing.ParseEditTest;
 import com.aptana.parsing.ParseStateCacheKeyWithCommentsTest;
 
 @RunWith(Suite.class)
 // @formatter:off
 @Suite.SuiteClasses({
+	ParseEditTest.class,
 	ParseStateCacheKeyWithCommentsTest.class,
 	ParseStateTest.class,
 	com.aptana.json.AllTests.class,
@@ -0,0 +1,130 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scope;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ScopeSelectorMatcherTests
+{
+	private static final String[] SCOPES = {
+			"text.html.markdown meta.disable-markdown meta.tag.block.any.html entity.name.tag.block.any.html",
+			"source.php string.quoted",
+			"source.php string.quoted.double.php",
+			"source.js constant.numeric.js",
+			"source.js string.quoted.single.js",
+			"text.haml",
+			"text.haml meta.line.ruby.haml",
+			"text.haml meta.line.ruby.haml source.ruby.embedded.haml",
+			"text.haml meta.line.ruby.haml source.ruby.embedded.haml comment.line.number-sign.ruby",
+			"text.html.basic meta.tag.sgml.html meta.tag.sgml.doctype.html entity.name.tag.doctype.html",
+			"text.html.basic  source.css.embedded.html\tmeta.selector.css",
+			"source.phpx string", "string.quoted.", "markup.changed", "" };
+
+	private static final String[] SELECTORS = { "entity", "meta.tag entity", "string", "source.php",
+			"string.quoted", "source string", "source.js string", "constant.numeric", "text source", "meta source",
+			"text -meta", "text -meta source", "(string | constant) & string.quoted",
+			"entity.name.tag.doctype.html, meta.tag.sgml.html, string.quoted.double.doctype.identifiers-and-DTDs.html",
+			"source.css meta.selector", "string - string.unquoted.old-plist - string.unquoted.heredoc",
+			"markup.changed", "markup" };
+
+	@Test
+	public void testSameResultsAsBestMatch()
+	{
+		List<IScopeSelector> selectors = new ArrayList<IScopeSelector>();
+		for (String selector : SELECTORS)
+		{
+			selectors.add(new ScopeSelector(selector));
+		}
+		ScopeSelectorMatcher matcher = new ScopeSelectorMatcher(selectors);
+
+		for (String scope : SCOPES)
+		{
+			assertEquals(scope, ScopeSelector.bestMatch(selectors, scope), matcher.bestMatch(scope));
+			// cached
+			assertEquals(scope, ScopeSelector.bestMatch(selectors, scope), matcher.bestMatch(scope));
+		}
+	}
+
+	@Test
+	public void testSameMatchesAsEachSelector()
+	{
+		List<IScopeSelector> selectors = new ArrayList<IScopeSelector>();
+		for (String selector : SELECTORS)
+		{
+			selectors.add(new ScopeSelector(selector));
+		}
+		ScopeSelectorMatcher matcher = new ScopeSelectorMatcher(selectors);
+
+		for (String scope : SCOPES)
+		{
+			for (IScopeSelector selector : selectors)
+			{
+				assertTrue(matcher.contains(selector));
+				assertEquals(scope + " / " + selector, selector.matches(scope), matcher.getMatches(scope).contains(
+						selector));
+			}
+		}
+		assertFalse(matcher.contains(new ScopeSelector("source.ruby")));
+		assertTrue(matcher.getMatches(null).isEmpty());
+	}
+
+	@Test
+	public void testTiesGoToLastSelector()
+	{
+		IScopeSelector first = new ScopeSelector("text -meta source");
+		IScopeSelector second = new ScopeSelector("text -meta");
+
+		assertSame(second, new ScopeSelectorMatcher(Arrays.asList(first, second)).bestMatch("text.haml"));
+		assertSame(first, new ScopeSelectorMatcher(Arrays.asList(second, first)).bestMatch("text.haml"));
+	}
+
+	@Test
+	public void testSelectorsWithoutNamesAreAlwaysCandidates()
+	{
+		IScopeSelector any = new MatchAnyScopeSelector();
+		IScopeSelector string = new ScopeSelector("string");
+		ScopeSelectorMatcher matcher = new ScopeSelectorMatcher(Arrays.asList(any, string));
+
+		assertSame(any, matcher.bestMatch("source.js"));
+		assertSame(string, matcher.bestMatch("source.js string.quoted"));
+	}
+
+	@Test
+	public void testNoMatch()
+	{
+		ScopeSelectorMatcher matcher = new ScopeSelectorMatcher(Arrays.<IScopeSelector> asList(new ScopeSelector(
+				"source.php"), new ScopeSelector("")));
+
+		assertNull(matcher.bestMatch("source.phpx"));
+		assertNull(matcher.bestMatch("source.phpx"));
+		assertNull(matcher.bestMatch(null));
+	}
+
+	@Test
+	public void testCacheIsBounded()
+	{
+		IScopeSelector string = new ScopeSelector("string");
+		ScopeSelectorMatcher matcher = new ScopeSelectorMatcher(Arrays.asList(string), 2);
+
+		for (int i = 0; i < 10; i++)
+		{
+			assertSame(string, matcher.bestMatch("source string." + i));
+		}
+		assertSame(string, matcher.bestMatch("source string.0"));
+	}
+}
@@ -0,0 +1,276 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.util.FileUtil;
+import com.aptana.core.util.IOUtil;
+
+@SuppressWarnings("nls")
+public class BundleCacherTests extends BundleTestBase
+{
+	private File bundleDirectory;
+	private File cacheDirectory;
+	private BundleCacher cacher;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		bundleDirectory = FileUtil.createTempFile("cached", "bundle");
+		bundleDirectory.delete();
+		bundleDirectory.mkdirs();
+		cacheDirectory = new File(bundleDirectory.getParentFile(), bundleDirectory.getName() + ".cache");
+
+		// keep the load job from using the shared cache so we only exercise the one created here
+		getBundleManagerInstance().setUseCache(false);
+		cacher = new BundleCacher(getBundleManagerInstance(), cacheDirectory, "test");
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		BundleManager manager = BundleManager.getInstance();
+
+		manager.unloadBundle(bundleDirectory);
+		manager.setUseCache(true);
+		FileUtil.deleteRecursively(bundleDirectory);
+		FileUtil.deleteRecursively(cacheDirectory);
+
+		super.tearDown();
+	}
+
+	@Test
+	public void testRestoresBundleFromCache() throws Exception
+	{
+		// @formatter:off
+		writeScript("bundle.rb",
+			"require 'ruble'",
+			"bundle 'cached' do |bundle|",
+			"  bundle.author = 'Appcelerator'",
+			"  bundle.description = 'A cached bundle'",
+			"  bundle.menu 'Cached' do |menu|",
+			"    menu.scope = 'source.js'",
+			"    menu.command 'Shell'",
+			"  end",
+			"end");
+		writeScript("commands/shell.rb",
+			"require 'ruble'",
+			"command 'Shell' do |cmd|",
+			"  cmd.key_binding = 'M1+M2+X'",
+			"  cmd.scope = 'source.js'",
+			"  cmd.output = :show_as_tooltip",
+			"  cmd.invoke = 'echo hello'",
+			"end");
+		writeScript("snippets/snippets.rb",
+			"require 'ruble'",
+			"snippet 'Function' do |s|",
+			"  s.trigger = 'fun'",
+			"  s.expansion = 'function ${1:name}() {}'",
+			"end");
+		// @formatter:on
+
+		String expected = loadAndCache();
+
+		BundleElement bundle = cacher.load(bundleDirectory);
+		assertNotNull(bundle);
+		assertEquals(expected, bundle.toSource(true));
+
+		CommandElement command = bundle.getCommandByName("Shell");
+		assertNotNull(command);
+		assertTrue(command.isShellCommand());
+		assertEquals("echo hello", command.getInvoke());
+		assertEquals(1, bundle.getSnippets().size());
+		assertEquals("fun", bundle.getSnippets().get(0).getTriggerTypeValues(TriggerType.PREFIX)[0]);
+	}
+
+	@Test
+	public void testBlockCommandIsEvaluatedOnDemand() throws Exception
+	{
+		// @formatter:off
+		writeScript("bundle.rb",
+			"require 'ruble'",
+			"bundle 'cached' do",
+			"end");
+		writeScript("commands/block.rb",
+			"require 'ruble'",
+			"command 'Block' do |cmd|",
+			"  cmd.invoke do",
+			"    'hello'",
+			"  end",
+			"end",
+			"command 'Another Block' do |cmd|",
+			"  cmd.invoke do",
+			"    'goodbye'",
+			"  end",
+			"end");
+		// @formatter:on
+
+		loadAndCache();
+
+		BundleElement bundle = cacher.load(bundleDirectory);
+		assertNotNull(bundle);
+
+		CommandElement command = bundle.getCommandByName("Block");
+		CommandElement another = bundle.getCommandByName("Another Block");
+		assertNotNull(command);
+		assertNotNull(another);
+		assertTrue(command.isBlockCommand());
+		assertFalse(command.isShellCommand());
+
+		final List<AbstractElement> events = new ArrayList<AbstractElement>();
+		ElementVisibilityListener listener = new ElementVisibilityListener()
+		{
+			public void elementBecameHidden(AbstractElement element)
+			{
+				events.add(element);
+			}
+
+			public void elementBecameVisible(AbstractElement element)
+			{
+				events.add(element);
+			}
+		};
+		BundleManager manager = getBundleManagerInstance();
+		List<AbstractElement> registered = AbstractElement.getElementsByPath(command.getPath());
+
+		manager.addElementVisibilityListener(listener);
+		try
+		{
+			// asking for the block evaluates the command's script, without touching the bundle
+			assertNotNull(command.getInvokeBlock());
+		}
+		finally
+		{
+			manager.removeElementVisibilityListener(listener);
+		}
+
+		assertTrue(events.isEmpty());
+		assertSame(command, bundle.getCommandByName("Block"));
+		assertEquals(registered, AbstractElement.getElementsByPath(command.getPath()));
+
+		// every cached command of the script got its own block from the one evaluation
+		assertNotNull(another.getInvokeBlock());
+		assertNotSame(command.getInvokeBlock(), another.getInvokeBlock());
+	}
+
+	@Test
+	public void testChangedScriptInvalidatesCache() throws Exception
+	{
+		// @formatter:off
+		writeScript("bundle.rb",
+			"require 'ruble'",
+			"bundle 'cached' do",
+			"end");
+		File script = writeScript("commands/shell.rb",
+			"require 'ruble'",
+			"command 'Shell' do |cmd|",
+			"  cmd.invoke = 'echo hello'",
+			"end");
+		// @formatter:on
+
+		loadAndCache();
+
+		// a touched but otherwise identical script keeps the cache
+		script.setLastModified(script.lastModified() - 10000);
+		assertNotNull(cacher.load(bundleDirectory));
+		BundleManager.getInstance().unloadBundle(bundleDirectory);
+
+		// @formatter:off
+		writeScript("commands/shell.rb",
+			"require 'ruble'",
+			"command 'Shell' do |cmd|",
+			"  cmd.invoke = 'echo goodbye'",
+			"end");
+		// @formatter:on
+
+		assertNull(cacher.load(bundleDirectory));
+
+		// as does adding a script
+		loadAndCache();
+		writeScript("commands/another.rb", "require 'ruble'");
+
+		assertNull(cacher.load(bundleDirectory));
+	}
+
+	@Test
+	public void testBundleWithEnvironmentIsNotCached() throws Exception
+	{
+		// @formatter:off
+		writeScript("bundle.rb",
+			"require 'ruble'",
+			"bundle 'cached' do",
+			"end",
+			"env 'source.js' do |e|",
+			"  e['CACHED'] = 'true'",
+			"end");
+		// @formatter:on
+
+		BundleManager manager = getBundleManagerInstance();
+		manager.loadBundle(bundleDirectory, true);
+
+		assertFalse(cacher.cache(bundleDirectory));
+		manager.unloadBundle(bundleDirectory);
+		assertNull(cacher.load(bundleDirectory));
+	}
+
+	/**
+	 * Load the bundle by evaluating its scripts, write its cache and then unload it
+	 *
+	 * @return The source of the bundle as loaded from its scripts
+	 */
+	private String loadAndCache()
+	{
+		BundleManager manager = getBundleManagerInstance();
+		manager.loadBundle(bundleDirectory, true);
+
+		BundleElement bundle = manager.getBundleFromPath(bundleDirectory);
+		assertNotNull(bundle);
+		assertTrue(cacher.cache(bundleDirectory));
+
+		String source = bundle.toSource(true);
+
+		manager.unloadBundle(bundleDirectory);
+		assertFalse(manager.hasBundleAtPath(bundleDirectory));
+
+		return source;
+	}
+
+	private File writeScript(String path, String... lines) throws IOException
+	{
+		File file = new File(bundleDirectory, path);
+		file.getParentFile().mkdirs();
+
+		StringBuilder source = new StringBuilder();
+
+		for (String line : lines)
+		{
+			source.append(line).append('\n');
+		}
+
+		IOUtil.write(new FileOutputStream(file), source.toString());
+
+		return file;
+	}
+}
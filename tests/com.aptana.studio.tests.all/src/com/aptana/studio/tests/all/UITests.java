@@ -39,6 +39,7 @@ import com.aptana.editor.common.internal.commands.NextPreviousEditorHandlerTest;
 	com.aptana.portal.ui.tests.AllTests.class,
 //	// com.aptana.scripting.ui.tests.AllTests.class, // TODO Add Tests for scripting.ui
 //	// com.aptana.syncing.ui.tests.AllTests.class, // FIXME Re-enable when we have ftp server set back up...
+	com.aptana.terminal.tests.AllTests.class,
 	com.aptana.theme.tests.AllTests.class,
 	com.aptana.ui.tests.AllTests.class,
 	org.eclipse.tm.terminal.test.AllTests.class,
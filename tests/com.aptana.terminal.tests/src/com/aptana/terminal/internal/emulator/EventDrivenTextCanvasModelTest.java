@@ -0,0 +1,175 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.terminal.internal.emulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.tm.internal.terminal.textcanvas.ITextCanvasModelListener;
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.TerminalTextDataFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs on the display thread, so nothing is drawn while a test writes to the terminal.
+ */
+public class EventDrivenTextCanvasModelTest
+{
+	private static final int LINES = 24;
+	private static final int COLUMNS = 80;
+
+	private Display display;
+	private ITerminalTextData data;
+	private EventDrivenTextCanvasModel model;
+	private FrameCounter frames;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		display = Display.getDefault();
+		data = TerminalTextDataFactory.makeTerminalTextData();
+		data.setDimensions(LINES, COLUMNS);
+		model = new EventDrivenTextCanvasModel(data.makeSnapshot(), display);
+		frames = new FrameCounter();
+		model.addCellCanvasModelListener(frames);
+		// the frame scheduled on creation
+		runEventLoop(EventDrivenTextCanvasModel.MAX_FRAME_INTERVAL);
+		frames.count = 0;
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		model.dispose();
+		model = null;
+		data = null;
+		frames = null;
+	}
+
+	@Test
+	public void testChangesAreCoalescedIntoOneFrame() throws Exception
+	{
+		for (int i = 0; i < LINES * COLUMNS; i++)
+		{
+			data.setChar(i / COLUMNS, i % COLUMNS, 'x', null);
+		}
+		assertEquals(0, frames.count);
+
+		runEventLoop(2 * EventDrivenTextCanvasModel.MAX_FRAME_INTERVAL);
+		assertEquals(1, frames.count);
+		assertEquals(0, frames.firstLine);
+		assertEquals(LINES, frames.lines);
+		assertEquals('x', model.getTerminalText().getChar(LINES - 1, COLUMNS - 1));
+	}
+
+	@Test
+	public void testIdleTerminalDrawsNothing() throws Exception
+	{
+		runEventLoop(2 * EventDrivenTextCanvasModel.MAX_FRAME_INTERVAL);
+		assertEquals(0, frames.count);
+	}
+
+	@Test
+	public void testEachBurstGetsAFrame() throws Exception
+	{
+		data.setChar(0, 0, 'a', null);
+		runEventLoop(2 * EventDrivenTextCanvasModel.MAX_FRAME_INTERVAL);
+		data.setChar(1, 0, 'b', null);
+		data.setChar(2, 0, 'c', null);
+		runEventLoop(2 * EventDrivenTextCanvasModel.MAX_FRAME_INTERVAL);
+
+		assertEquals(2, frames.count);
+		assertEquals(1, frames.firstLine);
+		assertEquals(2, frames.lines);
+	}
+
+	@Test
+	public void testFloodSlowsFramesDown() throws Exception
+	{
+		// keep writing from within each frame, like a process that never stops printing
+		frames.flood = true;
+		data.setChar(0, 0, 'a', null);
+		runEventLoop(20 * EventDrivenTextCanvasModel.MIN_FRAME_INTERVAL);
+		frames.flood = false;
+
+		assertTrue(frames.count > 1);
+		assertTrue(model.getFrameInterval() > EventDrivenTextCanvasModel.MIN_FRAME_INTERVAL);
+
+		// the first frame after a pause is drawn right away again
+		runEventLoop(4 * EventDrivenTextCanvasModel.MAX_FRAME_INTERVAL);
+		data.setChar(0, 0, 'b', null);
+		runEventLoop(2 * EventDrivenTextCanvasModel.MAX_FRAME_INTERVAL);
+		assertEquals(EventDrivenTextCanvasModel.MIN_FRAME_INTERVAL, model.getFrameInterval());
+	}
+
+	@Test
+	public void testNoFramesAfterDispose() throws Exception
+	{
+		data.setChar(0, 0, 'a', null);
+		model.dispose();
+		data.setChar(1, 0, 'b', null);
+		runEventLoop(2 * EventDrivenTextCanvasModel.MAX_FRAME_INTERVAL);
+
+		assertEquals(0, frames.count);
+	}
+
+	/**
+	 * Dispatches events for the given time, which includes the timers that draw delayed frames.
+	 */
+	private void runEventLoop(int millis)
+	{
+		final boolean[] done = new boolean[1];
+		display.timerExec(millis, new Runnable()
+		{
+			public void run()
+			{
+				done[0] = true;
+			}
+		});
+		while (!done[0])
+		{
+			if (!display.readAndDispatch())
+			{
+				display.sleep();
+			}
+		}
+	}
+
+	/**
+	 * Counts the frames that drew changes. Each one reports the changed text once, then the range of lines it covers.
+	 */
+	private class FrameCounter implements ITextCanvasModelListener
+	{
+		int count;
+		int firstLine;
+		int lines;
+		boolean flood;
+
+		public void terminalDataChanged()
+		{
+			count++;
+		}
+
+		public void rangeChanged(int col, int line, int width, int height)
+		{
+			firstLine = line;
+			lines = height;
+			if (flood)
+			{
+				data.setChar(0, count % COLUMNS, 'x', null);
+			}
+		}
+
+		public void dimensionsChanged(int cols, int rows)
+		{
+		}
+	}
+}
@@ -12,6 +12,8 @@
 package com.aptana.webserver.internal.core.builtin;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -22,6 +24,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -77,4 +80,122 @@ public class LocalWebServerTest
 			}
 		}
 	}
+
+	@Test
+	public void testConditionalGet() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(dir.toURI());
+			webServer.start(ILaunchManager.RUN_MODE, new NullProgressMonitor());
+			URL url = webServer.getBaseURL();
+
+			HttpURLConnection connection = openConnection(url);
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			String eTag = connection.getHeaderField("ETag"); //$NON-NLS-1$
+			String lastModified = connection.getHeaderField("Last-Modified"); //$NON-NLS-1$
+			assertNotNull(eTag);
+			assertNotNull(lastModified);
+			assertEquals(PAGE_CONTENTS, read(connection.getInputStream()));
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-None-Match", eTag); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+			assertEquals(eTag, connection.getHeaderField("ETag")); //$NON-NLS-1$
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-Modified-Since", lastModified); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-None-Match", "\"other\""); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertEquals(PAGE_CONTENTS, read(connection.getInputStream()));
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	@Test
+	public void testGzip() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		StringBuilder script = new StringBuilder();
+		for (int i = 0; i < 100; i++)
+		{
+			script.append("var v").append(i).append(" = ").append(i).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		write(new File(dir, "script.js"), script.toString()); //$NON-NLS-1$
+
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(dir.toURI());
+			webServer.start(ILaunchManager.RUN_MODE, new NullProgressMonitor());
+			URL url = new URL(webServer.getBaseURL(), "script.js"); //$NON-NLS-1$
+
+			HttpURLConnection connection = openConnection(url);
+			connection.setRequestProperty("Accept-Encoding", "gzip, deflate"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertEquals("gzip", connection.getContentEncoding()); //$NON-NLS-1$
+			assertEquals(script.toString(), read(new GZIPInputStream(connection.getInputStream())));
+
+			connection = openConnection(url);
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertNull(connection.getContentEncoding());
+			assertEquals(script.toString(), read(connection.getInputStream()));
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	private File createDocumentRoot() throws IOException
+	{
+		File dir = File.createTempFile(getClass().getSimpleName(), "temp"); //$NON-NLS-1$
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+		write(new File(dir, "index.html"), PAGE_CONTENTS); //$NON-NLS-1$
+		return dir;
+	}
+
+	private static void write(File file, String contents) throws IOException
+	{
+		OutputStreamWriter w = new OutputStreamWriter(new FileOutputStream(file));
+		w.write(contents);
+		w.close();
+	}
+
+	private static HttpURLConnection openConnection(URL url) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setAllowUserInteraction(false);
+		connection.setUseCaches(false);
+		return connection;
+	}
+
+	private static String read(InputStream stream) throws IOException
+	{
+		InputStreamReader in = new InputStreamReader(stream);
+		StringBuffer sb = new StringBuffer();
+		int n;
+		char[] cbuf = new char[1024];
+		while ((n = in.read(cbuf)) > 0)
+		{
+			sb.append(new String(cbuf, 0, n));
+		}
+		in.close();
+		return sb.toString();
+	}
 }
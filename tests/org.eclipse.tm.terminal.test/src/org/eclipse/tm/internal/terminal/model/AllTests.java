@@ -25,6 +25,8 @@ import org.junit.runners.Suite.SuiteClasses;
 	TerminalTextDataFastScrollTest.class,
 	TerminalTextDataFastScrollTestMaxHeigth.class,
 	TerminalTextDataPerformanceTest.class,
+	TerminalTextDataRingBufferTest.class,
+	TerminalTextDataSegmentFileTest.class,
 	TerminalTextDataSnapshotTest.class,
 	TerminalTextDataSnapshotWindowTest.class,
 	TerminalTextDataStoreTest.class,
@@ -10,6 +10,12 @@
  *******************************************************************************/
 package org.eclipse.tm.internal.terminal.model;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
 import org.eclipse.tm.terminal.model.ITerminalTextData;
 import org.eclipse.tm.terminal.model.ITerminalTextDataSnapshot;
 import org.eclipse.tm.terminal.model.Style;
@@ -53,6 +59,12 @@ public class TerminalTextDataPerformanceTest {
 		method0(term,"0b");
 		snapshot.updateSnapshot(true);
 	}
+	
+	@Test
+	public void testPerformance0r() {
+		ITerminalTextData term=new TerminalTextData(new TerminalTextDataRingBuffer());
+		method0(term,"0r");
+	}
 	private void method0(ITerminalTextData term, String label) {
 		Style style=Style.getStyle(StyleColor.getStyleColor("fg"), StyleColor.getStyleColor("bg"), false, false, false, false);
 		initPerformance(term);
@@ -100,6 +112,12 @@ public class TerminalTextDataPerformanceTest {
 		method1(term, "1b");
 		snapshot.updateSnapshot(true);
 	}
+	
+	@Test
+	public void testPerformance1r() {
+		ITerminalTextData term=new TerminalTextData(new TerminalTextDataRingBuffer());
+		method1(term, "1r");
+	}
 	private void method1(ITerminalTextData term, String label) {
 		Style style=Style.getStyle(StyleColor.getStyleColor("fg"), StyleColor.getStyleColor("bg"), false, false, false, false);
 		initPerformance(term);
@@ -245,4 +263,34 @@ public class TerminalTextDataPerformanceTest {
 			}
 		}
 	}
+	
+	@Test
+	public void testPerformanceScrollback() throws IOException {
+		scrollback(new TerminalTextDataFastScroll(100000));
+		scrollback(new TerminalTextDataRingBuffer(100000));
+		File directory=File.createTempFile("scrollback", ".test");
+		directory.delete();
+		directory.mkdirs();
+		TerminalTextDataRingBuffer spilling=new TerminalTextDataRingBuffer(100000);
+		spilling.setSpilling(directory, 1000);
+		try {
+			scrollback(spilling);
+			assertTrue(spilling.getSpilledBlockCount()>0);
+		} finally {
+			spilling.dispose();
+			directory.delete();
+		}
+	}
+	private void scrollback(ITerminalTextData term) {
+		Style style=Style.getStyle(StyleColor.getStyleColor("fg"), StyleColor.getStyleColor("bg"), false, false, false, false);
+		term.setDimensions(0, 200);
+		String s="This is a test string of a typical length for a line of output";
+		for (int i = 0; i < 200000; i++) {
+			term.addLine();
+			term.setChars(term.getHeight()-1, 0, (i+s).toCharArray(), style);
+		}
+		assertEquals(100000, term.getHeight());
+		assertEquals(100000+s, new String(term.getChars(0)).trim());
+		assertEquals(199999+s, new String(term.getChars(term.getHeight()-1)).trim());
+	}
 }
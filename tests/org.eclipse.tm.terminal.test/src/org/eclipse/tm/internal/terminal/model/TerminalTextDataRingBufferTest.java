@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import java.io.File;
+
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.LineSegment;
+import org.eclipse.tm.terminal.model.Style;
+import org.eclipse.tm.terminal.model.StyleColor;
+
+public class TerminalTextDataRingBufferTest extends AbstractITerminalTextDataTest {
+	private File fDirectory;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDirectory=File.createTempFile("scrollback", ".test");
+		fDirectory.delete();
+		fDirectory.mkdirs();
+	}
+	protected void tearDown() throws Exception {
+		File[] files=fDirectory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		fDirectory.delete();
+		super.tearDown();
+	}
+	protected ITerminalTextData makeITerminalTextData() {
+		return new TerminalTextDataRingBuffer(3);
+	}
+	private String lineText(int i) {
+		return "line " + i;
+	}
+	private void addLines(TerminalTextDataRingBuffer term, int from, int to, Style style) {
+		for (int i = from; i < to; i++) {
+			term.addLine();
+			char[] chars=lineText(i).toCharArray();
+			term.setChars(term.getHeight()-1, 0, chars, style);
+		}
+	}
+	private void assertLines(TerminalTextDataRingBuffer term, int firstLineNumber) {
+		for (int line = 0; line < term.getHeight(); line++) {
+			assertEquals(lineText(firstLineNumber+line), new String(term.getChars(line)));
+		}
+	}
+	public void testOverwriteStyleRuns() {
+		ITerminalTextData term=makeITerminalTextData();
+		Style s1=Style.getStyle(StyleColor.getStyleColor("a"), StyleColor.getStyleColor("b"));
+		Style s2=s1.setBold(true);
+		term.setDimensions(1, 10);
+		term.setChars(0, 0, "0123456789".toCharArray(), s1);
+		term.setChars(0, 3, "xyz".toCharArray(), s2);
+		term.setChar(0, 4, 'Y', s1);
+		term.setChar(0, 9, '!', null);
+		assertEquals("012xYz678!", new String(term.getChars(0)));
+		LineSegment[] segments=term.getLineSegments(0, 0, 10);
+		assertEquals(6, segments.length);
+		assertEquals("012", segments[0].getText());
+		assertSame(s1, segments[0].getStyle());
+		assertEquals("x", segments[1].getText());
+		assertSame(s2, segments[1].getStyle());
+		assertEquals("Y", segments[2].getText());
+		assertSame(s1, segments[2].getStyle());
+		assertEquals("z", segments[3].getText());
+		assertSame(s2, segments[3].getStyle());
+		assertEquals("678", segments[4].getText());
+		assertSame(s1, segments[4].getStyle());
+		assertEquals("!", segments[5].getText());
+		assertNull(segments[5].getStyle());
+		assertSame(s1, term.getStyle(0, 8));
+		assertNull(term.getStyle(0, 9));
+	}
+	public void testSpilling() {
+		Style style=Style.getStyle(StyleColor.getStyleColor("fg"), StyleColor.getStyleColor("bg"));
+		TerminalTextDataRingBuffer term=new TerminalTextDataRingBuffer(2000);
+		term.setDimensions(0, 20);
+		term.setSpilling(fDirectory, 100);
+		try {
+			addLines(term, 0, 5000, style);
+			assertTrue(term.getSpilledBlockCount()>0);
+			assertEquals(2000, term.getHeight());
+			assertLines(term, 3000);
+			assertSame(style, term.getStyle(0, 0));
+			assertNull(term.getStyle(0, 15));
+		} finally {
+			term.dispose();
+		}
+	}
+	public void testModifySpilledLines() {
+		TerminalTextDataRingBuffer term=new TerminalTextDataRingBuffer(1000);
+		term.setDimensions(0, 20);
+		term.setSpilling(fDirectory, 10);
+		try {
+			addLines(term, 0, 1500, null);
+			int spilled=term.getSpilledBlockCount();
+			assertTrue(spilled>0);
+			term.setChars(20, 0, "first".toCharArray(), null);
+			assertEquals(spilled-1, term.getSpilledBlockCount());
+			assertEquals("first520", new String(term.getChars(20)));
+			assertEquals(lineText(521), new String(term.getChars(21)));
+			// scrolling part of the lines moves them out of the spilled blocks
+			term.scroll(1, 998, -1);
+			assertEquals(lineText(502), new String(term.getChars(1)));
+			assertEquals(lineText(1499), new String(term.getChars(999)));
+			assertNull(term.getChars(998));
+		} finally {
+			term.dispose();
+		}
+	}
+	public void testRestoreSpilledLines() {
+		Style style=Style.getStyle(StyleColor.getStyleColor("fg"), StyleColor.getStyleColor("bg"));
+		TerminalTextDataRingBuffer term=new TerminalTextDataRingBuffer(1000);
+		term.setDimensions(0, 20);
+		term.setSpilling(fDirectory, 10);
+		try {
+			addLines(term, 0, 1500, style);
+			assertTrue(term.getSpilledBlockCount()>0);
+			assertEquals(1, fDirectory.listFiles().length);
+			// turning spilling off reads every block back
+			term.setSpilling(fDirectory, 0);
+			assertEquals(0, term.getSpilledBlockCount());
+			assertEquals(0, fDirectory.listFiles().length);
+			assertLines(term, 500);
+			assertSame(style, term.getStyle(0, 0));
+
+			term.setSpilling(fDirectory, 10);
+			addLines(term, 1500, 2000, style);
+			assertTrue(term.getSpilledBlockCount()>0);
+			term.dispose();
+			assertEquals(0, fDirectory.listFiles().length);
+		} finally {
+			term.dispose();
+		}
+	}
+	public void testSpillingNeedsDirectory() {
+		TerminalTextDataRingBuffer term=new TerminalTextDataRingBuffer(1000);
+		try {
+			term.setSpilling(null, 10);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		term.setSpilling(null, 0);
+	}
+	public void testTerminalTextDataDoesNotSpillByDefault() {
+		TerminalTextData term=new TerminalTextData();
+		term.setMaxHeight(1000);
+		term.setDimensions(0, 20);
+		for (int i = 0; i < 1500; i++) {
+			term.addLine();
+		}
+		assertEquals(0, ((TerminalTextDataRingBuffer)term.fData).getSpilledBlockCount());
+	}
+	public void testTerminalTextDataSpills() {
+		TerminalTextData term=new TerminalTextData(fDirectory, 100);
+		term.setMaxHeight(1000);
+		term.setDimensions(0, 20);
+		try {
+			for (int i = 0; i < 1500; i++) {
+				term.addLine();
+				term.setChars(term.getHeight()-1, 0, lineText(i).toCharArray(), null);
+			}
+			assertTrue(((TerminalTextDataRingBuffer)term.fData).getSpilledBlockCount()>0);
+			assertEquals(1, fDirectory.listFiles().length);
+			assertEquals(lineText(500), new String(term.getChars(0)));
+		} finally {
+			term.dispose();
+		}
+		assertEquals(0, fDirectory.listFiles().length);
+	}
+	public void testResizeAndCopySpilledLines() {
+		TerminalTextDataRingBuffer term=new TerminalTextDataRingBuffer(1000);
+		term.setDimensions(0, 20);
+		term.setSpilling(fDirectory, 10);
+		try {
+			addLines(term, 0, 1500, null);
+			assertTrue(term.getSpilledBlockCount()>0);
+			term.setMaxHeight(1200);
+			assertEquals(0, term.getSpilledBlockCount());
+			assertLines(term, 500);
+
+			TerminalTextDataStore copy=new TerminalTextDataStore();
+			copy.copy(term);
+			term.copy(copy);
+			assertEquals(0, term.getSpilledBlockCount());
+			assertLines(term, 500);
+		} finally {
+			term.dispose();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class TerminalTextDataSegmentFileTest extends TestCase {
+	private File fDirectory;
+	private TerminalTextDataSegmentFile fSegmentFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDirectory=File.createTempFile("segments", ".test");
+		fDirectory.delete();
+		fDirectory.mkdirs();
+		fSegmentFile=new TerminalTextDataSegmentFile(fDirectory);
+	}
+	protected void tearDown() throws Exception {
+		fSegmentFile.close();
+		File[] files=fDirectory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		fDirectory.delete();
+		super.tearDown();
+	}
+	private byte[] bytes(int length, int value) {
+		byte[] data=new byte[length];
+		Arrays.fill(data, (byte) value);
+		return data;
+	}
+	public void testNoFileUntilWritten() {
+		assertEquals(0, fDirectory.listFiles().length);
+	}
+	public void testReadBack() throws Exception {
+		int a=fSegmentFile.write(bytes(10, 1));
+		int b=fSegmentFile.write(bytes(20, 2));
+		assertEquals(1, fDirectory.listFiles().length);
+		assertTrue(Arrays.equals(bytes(20, 2), fSegmentFile.read(b)));
+		assertTrue(Arrays.equals(bytes(10, 1), fSegmentFile.read(a)));
+		assertEquals(30, fSegmentFile.getLiveBytes());
+	}
+	public void testFreedIdsAreReused() throws Exception {
+		int a=fSegmentFile.write(bytes(10, 1));
+		int b=fSegmentFile.write(bytes(10, 2));
+		fSegmentFile.free(a);
+		assertEquals(10, fSegmentFile.getLiveBytes());
+		assertEquals(a, fSegmentFile.write(bytes(5, 3)));
+		assertTrue(Arrays.equals(bytes(5, 3), fSegmentFile.read(a)));
+		assertTrue(Arrays.equals(bytes(10, 2), fSegmentFile.read(b)));
+	}
+	public void testCompact() throws Exception {
+		int[] ids=new int[8];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i]=fSegmentFile.write(bytes(1<<19, i));
+		}
+		// freeing more than half of the file rewrites it
+		for (int i = 0; i < 5; i++) {
+			fSegmentFile.free(ids[i]);
+		}
+		File[] files=fDirectory.listFiles();
+		assertEquals(1, files.length);
+		assertEquals(3<<19, files[0].length());
+		for (int i = 5; i < ids.length; i++) {
+			assertTrue(Arrays.equals(bytes(1<<19, i), fSegmentFile.read(ids[i])));
+		}
+	}
+	public void testCloseDeletesFile() throws Exception {
+		fSegmentFile.write(bytes(10, 1));
+		fSegmentFile.close();
+		assertEquals(0, fDirectory.listFiles().length);
+		assertEquals(0, fSegmentFile.getLiveBytes());
+		// and can be used again
+		int id=fSegmentFile.write(bytes(10, 2));
+		assertTrue(Arrays.equals(bytes(10, 2), fSegmentFile.read(id)));
+	}
+}